@@ -7,7 +7,8 @@
 <%@ page contentType="text/html;charset=utf-8" %>
 
 <%@page import = "java.sql.*, java.util.*,org.adl.sequencer.*,java.io.*, 
-               java.lang.Boolean.*, org.adl.samplerte.util.*" %>
+               java.lang.Boolean.*, org.adl.samplerte.util.*, 
+               org.adl.samplerte.server.*" %>
 			   
 <%
    /***************************************************************************
@@ -224,18 +225,22 @@ var menu = new MTMenu();
         && (!( courseID.equals("")) ) && (control.equals("true")) )
    {
       hasAMenu = true;
-      FileInputStream in = 
-         new FileInputStream(File.separator + "SCORM4EDSampleRTE111Files"+ File.separator + userID +
-         File.separator + courseID + File.separator + "serialize.obj");
-      ObjectInputStream ois = new ObjectInputStream(in);
-      activityTree = (SeqActivityTree)ois.readObject();
-      ois.close(); 
-      in.close();
-    
-      sequencer.setActivityTree(activityTree);
-     
-     
-      sequencer.getValidRequests(ValidRequests);
+      CommitPipeline.getInstance().drainLearner(userID);
+      java.util.concurrent.locks.Lock learnerLock = 
+         LearnerLocks.getInstance().getLock(userID, courseID);
+      learnerLock.lock();
+
+      try
+      {
+         CommitPipeline.getInstance().drain(userID, courseID);
+         activityTree = ActivityTreeCache.getInstance().getTree(userID, courseID);
+
+         sequencer.getValidRequests(activityTree, ValidRequests);
+      }
+      finally
+      {
+         learnerLock.unlock();
+      }
      
       TOCList = ValidRequests.mTOC;
    } 
@@ -583,6 +588,151 @@ var <%= menu_name%> = new MTMenu();
    } // end menu creation
 %>
 
+<% // identify the menu items by activity ID, in the order they were added
+   int tocVersion = -1;
+
+   if ( hasAMenu && ( title_vector.size() != 0 ) )
+   {
+      tocVersion = ValidRequests.mTOCVersion;
+   }
+%>
+
+var MTMTOCVersion = <%= tocVersion %>;
+var MTMTOCCourse = "<%= courseID %>";
+var MTMTOCItems = new Object();
+var MTMTOCIDs = new Array(<% 
+   for ( int k = 0; k < id_vector.size(); k++ )
+   {
+%>"<%= id_vector.elementAt(k).toString() %>"<%= ( k < id_vector.size() - 1 ) ? ", " : "" %><%
+   }
+%>);
+var MTMTOCCount = 0;
+
+/******************************************************************************
+* Functions to update the menu with just the table of contents entries that   *
+* changed since it was built, instead of building it again.                   *
+******************************************************************************/
+
+function MTMIndexItems(thisMenu)
+{
+   for ( var i = 0; i < thisMenu.items.length; i++ )
+   {
+      MTMTOCItems[MTMTOCIDs[MTMTOCCount++]] = thisMenu.items[i];
+
+      if ( thisMenu.items[i].submenu )
+      {
+         MTMIndexItems(thisMenu.items[i].submenu);
+      }
+   }
+}
+
+function MTMSetItemState(item, id, enabled, current, selectable)
+{
+   var launch = "javascript:launchItem('" + id + "')";
+
+   if ( current && enabled )
+   {
+      item.url = launch;
+      item.tooltip = "curr";
+   }
+   else if ( !selectable && enabled )
+   {
+      item.url = "";
+      item.tooltip = "nonsel";
+   }
+   else if ( enabled )
+   {
+      item.url = launch;
+      item.tooltip = null;
+   }
+   else
+   {
+      item.url = "";
+      item.tooltip = null;
+   }
+}
+
+function MTMRefreshTOC(codeLocation)
+{
+   var request = null;
+   var lines = null;
+
+   if ( MTMTOCVersion >= 0 && !MTMFirstRun )
+   {
+      if ( window.XMLHttpRequest )
+      {
+         request = new XMLHttpRequest();
+      }
+      else if ( window.ActiveXObject )
+      {
+         request = new ActiveXObject("Microsoft.XMLHTTP");
+      }
+   }
+
+   if ( request != null )
+   {
+      try
+      {
+         request.open("GET", "tocChanges.jsp?version=" + MTMTOCVersion + 
+                      "&courseID=" + encodeURIComponent(MTMTOCCourse), false);
+         request.send(null);
+
+         if ( request.status == 200 )
+         {
+            lines = request.responseText.replace(/^\s+/, "").split("\n");
+         }
+      }
+      catch ( e )
+      {
+         lines = null;
+      }
+   }
+
+   // Build the menu again if it cannot be brought up to date
+   if ( lines == null || isNaN(parseInt(lines[0])) )
+   {
+      document.location.href = codeLocation;
+      return;
+   }
+
+   var changed = new Array();
+
+   for ( var i = 1; i < lines.length; i++ )
+   {
+      var fields = lines[i].replace(/\s+$/, "").split("\t");
+
+      if ( fields.length < 5 )
+      {
+         continue;
+      }
+
+      var item = MTMTOCItems[fields[0]];
+
+      if ( item == null )
+      {
+         document.location.href = codeLocation;
+         return;
+      }
+
+      MTMSetItemState(item, fields[0], fields[1] == "true", 
+                      fields[3] == "true", fields[4] == "true");
+      changed[changed.length] = item;
+   }
+
+   MTMTOCVersion = parseInt(lines[0]);
+
+   for ( var j = 0; j < changed.length; j++ )
+   {
+      if ( !MTMUpdateItem(changed[j]) )
+      {
+         MTMDisplayMenu();
+         break;
+      }
+   }
+}
+
+MTMIndexItems(menu);
+
 </script>
    
 </head> 
@@ -369,6 +369,12 @@ function MTMDisplayItem(item, last) {
     }
   }
 
+  // Remember where the item was drawn so its row can be redrawn by itself
+  item.level = MTMLevel;
+  item.indices = MTMIndices.slice(0, MTMLevel + 1);
+  item.bars = MTMBar.slice(0, MTMLevel);
+  item.last = last;
+
   if(item.submenu) {
     var usePlusMinus = false;
     if(MTMSubsGetPlus.toLowerCase() == "always" || MTMEmulateWE) {
@@ -386,7 +392,7 @@ function MTMDisplayItem(item, last) {
     var MTMouseOutCmd = "parent.status=parent.defaultStatus;return true;";
   }
 
-  MTMOutputString = '<tr valign="top"><td nowrap>';
+  MTMOutputString = '<tr valign="top"><td nowrap id="mtm' + item.number + '">';
   if(MTMLevel > 0) {
     for (i = 0; i < MTMLevel; i++) {
       MTMOutputString += (MTMBar[i]) ? MTMakeImage("menu_bar.gif") : MTMakeImage("menu_pixel.gif");
@@ -500,6 +506,41 @@ function MTMDisplayItem(item, last) {
   MTMDoc.writeln(MTMOutputString + '</td></tr>');
   }
 
+/******************************************************************************
+*  Function to redraw the row of a single item that has already been          *
+*  displayed, after its state has changed, without redrawing the whole menu.  *
+*  Returns false if the row cannot be found.  Added by ADL team               *
+******************************************************************************/
+function MTMUpdateItem(item) {
+  var menuFrameDoc = parent.frames[MTMenuFrame].document;
+  if(MTMFirstRun || item.level == null || !menuFrameDoc.getElementById) {
+    return false;
+  }
+
+  var row = menuFrameDoc.getElementById("mtm" + item.number);
+  if(row == null) {
+    return false;
+  }
+
+  var menuDoc = MTMDoc;
+  var cookieString = MTMCookieString;
+  var rowString = "";
+
+  MTMLevel = item.level;
+  MTMIndices = item.indices.slice(0);
+  MTMBar = item.bars.slice(0);
+  MTMDoc = { writeln: function(text) { rowString = text; } };
+
+  MTMDisplayItem(item, item.last);
+
+  MTMDoc = menuDoc;
+  MTMCookieString = cookieString;
+
+  row.innerHTML = rowString.substring(rowString.indexOf(">", rowString.indexOf("<td")) + 1,
+                                      rowString.lastIndexOf("</td>"));
+  return true;
+}
+
 function MTMEscapeQuotes(myString) {
   var newString = "";
   var cur_pos = myString.indexOf("'");
@@ -1,7 +1,7 @@
 <%@ page contentType="text/html;charset=utf-8" %>
 
 <%@page import = "java.lang.*, java.sql.*,java.util.*,java.io.*, org.adl.util.*, 
-  org.adl.sequencer.*, org.adl.samplerte.util.*"%>
+  org.adl.sequencer.*, org.adl.samplerte.util.*, org.adl.samplerte.server.*"%>
 
 <%@ include file="sequencingUtil.jsp" %>
 
@@ -91,7 +91,7 @@ Nothing in this license impairs or restricts the author's moral rights.
 
    // Create sequencer, launch, UIState, Activity Tree
    // and nav event objects
-   ADLSequencer msequencer = new ADLSequencer();
+   ADLSequencer msequencer = SEQUENCER;
    ADLLaunch mlaunch = new ADLLaunch();
    SeqNavRequests mnavRequest = new SeqNavRequests();
    ADLValidRequests mValidRequests = new ADLValidRequests();
@@ -237,7 +237,8 @@ Nothing in this license impairs or restricts the author's moral rights.
 
    String exitFlag = (String)session.getAttribute( "EXITFLAG" );
    
-  
+   // Held while this learner's activity tree is being sequenced
+   java.util.concurrent.locks.Lock learnerLock = null;
 
    try
    { 
@@ -251,14 +252,11 @@ Nothing in this license impairs or restricts the author's moral rights.
        else
        {
             //  Get the users record of the course items
-            FileInputStream in = 
-            new FileInputStream
-            (File.separator + "SCORM4EDSampleRTE111Files"+ File.separator + userID + 
-                File.separator + courseID + File.separator + "serialize.obj");
-        	  ObjectInputStream i = new ObjectInputStream(in);
-            mactivityTree = (SeqActivityTree)i.readObject();
-            i.close();
-            in.close();
+            CommitPipeline.getInstance().drainLearner(userID);
+            learnerLock = LearnerLocks.getInstance().getLock(userID, courseID);
+            learnerLock.lock();
+            CommitPipeline.getInstance().drain(userID, courseID);
+            mactivityTree = ActivityTreeCache.getInstance().getTree(userID, courseID);
         
             // Set the student id in the activity tree if it has not been set yet
             String studentID = new String();
@@ -274,29 +272,24 @@ Nothing in this license impairs or restricts the author's moral rights.
                wasFirstSession = false;
             }
         
-            // Set the Activity Tree
-            msequencer.setActivityTree(mactivityTree);
-        
             // Initialize variables that help with sequencing
             String scoID = new String();
             String lessonStatus = new String();
             boolean filePersisted = false;
                   
-            // Open the connection for the sequencer
-            LMSDBHandler.getConnection();
                  
             //  If the user selected a menu option, handle appropriately
             if ( wasAMenuRequest )
             {             
-               mlaunch = msequencer.navigate( requestedSCO, false );
+               mlaunch = msequencer.navigate( mactivityTree, requestedSCO, false );
             }
             else if ( wasAJumpRequest )
             {
-               mlaunch = msequencer.navigate( requestedSCO, true );
+               mlaunch = msequencer.navigate( mactivityTree, requestedSCO, true );
             }
             else if (viewTOC.equals("true"))
             {
-               mlaunch = msequencer.navigate( SeqNavRequests.NAV_NONE ); 
+               mlaunch = msequencer.navigate( mactivityTree, SeqNavRequests.NAV_NONE ); 
 
             }  
             else // It was a next request, previous request, or first launch of 
@@ -305,12 +298,12 @@ Nothing in this license impairs or restricts the author's moral rights.
                //  If its first session
                if ( wasFirstSession  )
                {  
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_START );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_START );
                            
                }  //  Ends if it was the first time in for the session
                else if ( wasSuspended )// Its a resume request
                {
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_RESUMEALL );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_RESUMEALL );
                   
                   Connection conn;
                   PreparedStatement stmtUpdateCourseInfo;                  
@@ -339,24 +332,24 @@ Nothing in this license impairs or restricts the author's moral rights.
                }  //  Ends if its a resume request
                else if ( wasANextRequest )// Its a next request
                {  
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_CONTINUE );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_CONTINUE );
                   
                }  //  Ends if its a next request
                else if ( wasAPrevRequest )// Its a previous request
                {
                   // Handle the previous request
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_PREVIOUS );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_PREVIOUS );
                }//end previous
                else if ( wasAnExitRequest )// Its an exit request
                {  
                   // Handle an exit request
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_EXIT );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_EXIT );
                }//end exit
         
                else if ( wasAnExitAllRequest )// Its an exitAll request
                { 
                   // Handle an exitAll request
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_EXITALL );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_EXITALL );
                   
         
                }//end exitAll
@@ -364,7 +357,7 @@ Nothing in this license impairs or restricts the author's moral rights.
                else if ( wasASuspendAllRequest )// Its a suspendAll request
                {  
                   // Handle an exitAll request
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_SUSPENDALL );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_SUSPENDALL );
                  
                   Connection conn;
                   PreparedStatement stmtUpdateCourseInfo;                  
@@ -399,13 +392,13 @@ Nothing in this license impairs or restricts the author's moral rights.
                else if ( wasAnAbandonRequest )// Its an abandon request
                {
                   // Handle an abandon request
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_ABANDON );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_ABANDON );
                }//end abandon
                
                else if ( wasAnAbandonAllRequest )// Its an abandonAll request
                {
                   // Handle an abandon request
-                  mlaunch = msequencer.navigate( mnavRequest.NAV_ABANDONALL );
+                  mlaunch = msequencer.navigate( mactivityTree, mnavRequest.NAV_ABANDONALL );
                }//end abandonAll
             }  
            
@@ -424,12 +417,12 @@ Nothing in this license impairs or restricts the author's moral rights.
                  (mlaunch.mSeqNonContent).equals("_COURSECOMPLETE_") ||
                  (mlaunch.mSeqNonContent).equals("_SEQABANDONALL_")) )
             {
-               msequencer.clearSeqState();
+               msequencer.clearSeqState( mactivityTree );
                endSession = true;
         
             } 
             // Save the activity tree
-            filePersisted = persistActivityTree( msequencer.getActivityTree(),
+            filePersisted = persistActivityTree( mactivityTree,
                                                  userID, courseID );
                           
             // Get the RTE's User Interface state
@@ -562,7 +555,7 @@ Nothing in this license impairs or restricts the author's moral rights.
       if ( endSession )
       {          
          SeqActivity rootActivity = new SeqActivity();
-         rootActivity = msequencer.getRoot();      
+         rootActivity = msequencer.getRoot( mactivityTree );      
          if ( ( mactivityTree.getScopeID() != null ) && ( !rootActivity.getIsSuspended() ) )
          {       
             Vector objectives = mactivityTree.getGlobalObjectives();
@@ -573,8 +566,6 @@ Nothing in this license impairs or restricts the author's moral rights.
             }            
          }
       }
-      // Close the static connection
-      LMSDBHandler.closeConnection();
            
       //  If the course is complete redirect to the course
       //  complete page
@@ -742,7 +733,16 @@ Nothing in this license impairs or restricts the author's moral rights.
          DetectBrowser();
          
         
-         window.parent.frames['code'].document.location.href = codeLoc;
+         // Unless a new course was started, only update the menu entries
+         // that changed
+         if ( !clearLog && window.parent.frames['code'].MTMRefreshTOC )
+         {
+            window.parent.frames['code'].MTMRefreshTOC(codeLoc);
+         }
+         else
+         {
+            window.parent.frames['code'].document.location.href = codeLoc;
+         }
                
                
          if ( ( isCourse ) && (showQuit) )
@@ -799,5 +799,12 @@ Nothing in this license impairs or restricts the author's moral rights.
       out.println(errDescr);
       e.printStackTrace();
    } 
+   finally
+   {
+      if ( learnerLock != null )
+      {
+         learnerLock.unlock();
+      }
+   }
 %>
 
@@ -1,5 +1,6 @@
 <%@page import = "java.sql.PreparedStatement,java.sql.ResultSet,java.sql.Connection,
-   java.io.FileOutputStream, java.io.ObjectOutputStream, org.adl.sequencer.SeqActivityTree"%>
+   org.adl.sequencer.SeqActivityTree, org.adl.sequencer.ADLSequencer,
+   org.adl.samplerte.server.ActivityTreeCache"%>
 <%
    /***************************************************************************
    **
@@ -147,6 +148,12 @@ Nothing in this license impairs or restricts the author's moral rights.
    */
    public static String LAUNCH_SEQ_ABANDONALL = "../specialstate/abandonAll.jsp";
 
+   /**
+   * The sequencer shared by all sequencing requests.  Each request gives it
+   * the learner's activity tree, so it holds no state of its own.
+   */
+   private static final ADLSequencer SEQUENCER = new ADLSequencer();
+
 
    /****************************************************************************
    **
@@ -161,23 +168,14 @@ Nothing in this license impairs or restricts the author's moral rights.
                                         String iCourse )
    {
     boolean result = true;
-    String sampleRTERoot = File.separator + "SCORM4EDSampleRTE111Files";
-    String userDir = sampleRTERoot + File.separator + iUser + File.separator + 
-       iCourse;
-    String theWebPath = getServletConfig().getServletContext().
-                        getRealPath( "/" );
-    String serializeFileName = userDir + File.separator + "serialize.obj";
    
     // Clear the tree session state
     iTree.clearSessionState();
     
     try
     {
-       FileOutputStream fo = new FileOutputStream( serializeFileName );
-       ObjectOutputStream out_file = new ObjectOutputStream( fo );
-       out_file.writeObject( iTree );
-       out_file.close();
-       fo.close();
+       // The activity tree cache writes the tree to disk in the background
+       ActivityTreeCache.getInstance().putTree( iUser, iCourse, iTree );
     }
     catch ( Exception e )
     {
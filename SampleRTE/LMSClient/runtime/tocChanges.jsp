@@ -0,0 +1,127 @@
+<%@ page contentType="text/plain;charset=utf-8" %><%@page import = "java.util.*, org.adl.sequencer.*, org.adl.samplerte.server.*" %><%
+   /***************************************************************************
+   **
+   ** Filename:  tocChanges.jsp
+   **
+   ** File Description:   This file provides the table of contents entries 
+   ** whose state changed since the version of the table of contents that 
+   ** the menu built by code.jsp displays, so the menu can update just those
+   ** entries.  
+   **
+   ** The first line of the response is the current version of the table of
+   ** contents, followed by one line per changed entry:
+   **
+   **    activity ID <tab> enabled <tab> visible <tab> current <tab> selectable
+   **
+   ** If the menu cannot be brought up to date this way the response is 
+   ** 'reload' and the menu must be built again.
+   **
+   ** Author: ADL Technical Team
+   **
+   ** Contract Number:
+   ** Company Name: CTC
+   **
+   ** Module/Package Name: Sample RTE
+   ** Module/Package Description:
+   **
+   ** Design Issues: 
+   **
+   ** Implementation Issues:
+   ** Known Problems:
+   ** Side Effects:
+   **
+   ** References: ADL SCORM
+   **
+   /***************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+   ***************************************************************************/
+
+   // Get the session information
+   String courseID = (String)session.getAttribute("COURSEID");
+   String userID = (String)session.getAttribute("USERID");
+   String control = (String)session.getAttribute("TOC");
+   String version = request.getParameter("version");
+   ADLValidRequests ValidRequests = new ADLValidRequests();
+   Vector changes = null;
+
+   // The menu must be for the current course
+   if ( (control != null) && (control.equals("true")) && (courseID != null) &&
+        (courseID.equals(request.getParameter("courseID"))) && 
+        (version != null) )
+   {
+      ADLSequencer sequencer = new ADLSequencer();
+      CommitPipeline.getInstance().drainLearner(userID);
+      java.util.concurrent.locks.Lock learnerLock = 
+         LearnerLocks.getInstance().getLock(userID, courseID);
+      learnerLock.lock();
+
+      try
+      {
+         CommitPipeline.getInstance().drain(userID, courseID);
+         SeqActivityTree activityTree = 
+            ActivityTreeCache.getInstance().getTree(userID, courseID);
+
+         sequencer.getValidRequests(activityTree, ValidRequests);
+      }
+      finally
+      {
+         learnerLock.unlock();
+      }
+
+      try
+      {
+         changes = ValidRequests.getTOCChanges(Integer.parseInt(version));
+      }
+      catch ( NumberFormatException nfe )
+      {
+         changes = null;
+      }
+   }
+
+   if ( changes == null )
+   {
+      out.print("reload");
+   }
+   else
+   {
+      out.print(ValidRequests.mTOCVersion);
+
+      for ( int i = 0; i < changes.size(); i++ )
+      {
+         ADLTOC toc_item = (ADLTOC)changes.elementAt(i);
+
+         // Only entries that appear in the menu can be updated
+         if ( (toc_item.mTitle == null) || (toc_item.mDepth < 0) || 
+              (toc_item.mID == null) )
+         {
+            continue;
+         }
+
+         out.print("\n" + toc_item.mID + "\t" + toc_item.mIsEnabled +
+                   "\t" + toc_item.mIsVisible + "\t" + toc_item.mIsCurrent + 
+                   "\t" + toc_item.mIsSelectable);
+      }
+   }
+%>
@@ -0,0 +1,381 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+package org.adl.samplerte.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.adl.datamodels.DMFactory;
+import org.adl.datamodels.DMInterface;
+import org.adl.datamodels.SCODataManager;
+import org.adl.sequencer.SeqActivityTree;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.LegacyObjectInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <strong>Filename:</strong> CodecBenchmark.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * A JMH benchmark comparing the encode and decode time of the binary codec
+ * used to persist SCO run-time data and activity trees against Java
+ * serialization; the size of both forms is printed when each object is
+ * loaded.  By default synthetic SCOs holding <code>mInteractions</code> 
+ * interactions, with objectives and comments, are measured.  A persisted 
+ * object is measured instead by giving its file, holding SCO run-time data
+ * or an activity tree in either form, as the <code>mFile</code> parameter:
+ * <code>-DbenchmarkArgs="CodecBenchmark -p mFile=.../serialize.obj 
+ * -p mInteractions=0"</code> with the <code>runBenchmarks</code> target of
+ * <code>build.xml</code>.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This is a measurement tool; it lives in the benchmark source tree and is
+ * not part of the Sample RTE jars.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark
+{
+   /**
+    * The number of interactions of the synthetic SCO measured.
+    */
+   @Param({ "0", "10", "100" })
+   public int mInteractions = 0;
+
+   /**
+    * The file holding the object to measure instead of a synthetic SCO, or
+    * an empty string.
+    */
+   @Param({ "" })
+   public String mFile = "";
+
+   /**
+    * The SCO run-time data or activity tree measured.
+    */
+   private Object mObject = null;
+
+   /**
+    * The object in Java serialized form.
+    */
+   private byte[] mJava = null;
+
+   /**
+    * The object in encoded form.
+    */
+   private byte[] mCodec = null;
+
+   /**
+    * Loads or creates the object and prints the size of both its forms.
+    * 
+    * @throws Exception Thrown if the object can not be read or written.
+    */
+   @Setup(Level.Trial)
+   public void load() throws Exception
+   {
+      if ( mFile.length() > 0 )
+      {
+         mObject = read(new File(mFile));
+      }
+      else
+      {
+         mObject = createSCOData(mInteractions);
+      }
+
+      mJava = serialize(mObject);
+      mCodec = encode(mObject);
+
+      System.out.println("size: java " + mJava.length + " bytes, codec " + 
+                         mCodec.length + " bytes (" + 
+                         ( 100 * mCodec.length / mJava.length ) + "%)");
+   }
+
+   /**
+    * Measures Java serialization.
+    * 
+    * @return The serialized object.
+    * 
+    * @throws IOException Thrown if the object cannot be serialized.
+    */
+   @Benchmark
+   public byte[] javaEncode() throws IOException
+   {
+      return serialize(mObject);
+   }
+
+   /**
+    * Measures encoding with the codec.
+    * 
+    * @return The encoded object.
+    * 
+    * @throws IOException Thrown if the object cannot be encoded.
+    */
+   @Benchmark
+   public byte[] codecEncode() throws IOException
+   {
+      return encode(mObject);
+   }
+
+   /**
+    * Measures Java deserialization.
+    * 
+    * @return The deserialized object.
+    * 
+    * @throws Exception Thrown if the object cannot be deserialized.
+    */
+   @Benchmark
+   public Object javaDecode() throws Exception
+   {
+      return new ObjectInputStream(new ByteArrayInputStream(mJava))
+         .readObject();
+   }
+
+   /**
+    * Measures decoding with the codec.
+    * 
+    * @return The decoded object.
+    * 
+    * @throws Exception Thrown if the object cannot be decoded.
+    */
+   @Benchmark
+   public Object codecDecode() throws Exception
+   {
+      return decode(mObject, mCodec);
+   }
+
+   /**
+    * Creates SCO run-time data holding the given number of interactions, 
+    * with an objective and a comment for every tenth one.
+    * 
+    * @param iInteractions The number of interactions.
+    * 
+    * @return The run-time data.
+    */
+   private static SCODataManager createSCOData(int iInteractions)
+   {
+      SCODataManager data = new SCODataManager();
+
+      data.addDM(DMFactory.DM_SCORM_2004);
+      data.addDM(DMFactory.DM_SCORM_NAV);
+
+      if ( iInteractions > 0 )
+      {
+         set(data, "cmi.location", "page" + iInteractions);
+         set(data, "cmi.suspend_data", "visited=1,2,3,4,5,6,7,8,9");
+         set(data, "cmi.score.scaled", "0.75");
+      }
+
+      for ( int i = 0; i < iInteractions; i++ )
+      {
+         String inter = "cmi.interactions." + i + ".";
+
+         set(data, inter + "id", "question_" + i);
+         set(data, inter + "type", "choice");
+         set(data, inter + "correct_responses.0.pattern", "a[,]c");
+         set(data, inter + "learner_response", "a[,]b");
+         set(data, inter + "result", "incorrect");
+         set(data, inter + "latency", "PT12S");
+
+         if ( i % 10 == 0 )
+         {
+            String obj = "cmi.objectives." + ( i / 10 ) + ".";
+
+            set(data, obj + "id", "objective_" + i);
+            set(data, obj + "score.raw", "" + i);
+            set(data, obj + "success_status", "passed");
+            set(data, "cmi.comments_from_learner." + ( i / 10 ) + 
+                ".comment", "{lang=en}Comment " + i);
+         }
+      }
+
+      return data;
+   }
+
+   /**
+    * Sets one element of SCO run-time data.
+    * 
+    * @param ioData    The run-time data.
+    * 
+    * @param iElement  The element.
+    * 
+    * @param iValue    The value.
+    */
+   private static void set(SCODataManager ioData, String iElement, 
+                           String iValue)
+   {
+      DMInterface.processSetValue(iElement, iValue, true, ioData);
+   }
+
+   /**
+    * Reads SCO run-time data or an activity tree, in either form, from a
+    * file.
+    * 
+    * @param iFile The file.
+    * 
+    * @return The object.
+    * 
+    * @throws Exception Thrown if the file does not hold SCO run-time data or
+    *                   an activity tree.
+    */
+   private static Object read(File iFile) throws Exception
+   {
+      FileInputStream in = new FileInputStream(iFile);
+      byte[] data;
+
+      try
+      {
+         data = CodecInput.readAll(in);
+      }
+      finally
+      {
+         in.close();
+      }
+
+      Object obj = null;
+
+      if ( CodecInput.isEncoded(data) )
+      {
+         int type = new CodecInput(data).getType();
+
+         if ( type == SCODataManager.CODEC_TYPE )
+         {
+            obj = SCODataManager.fromByteArray(data);
+         }
+         else if ( type == SeqActivityTree.CODEC_TYPE )
+         {
+            obj = SeqActivityTree.fromByteArray(data);
+         }
+      }
+      else
+      {
+         LegacyObjectInputStream legacy = 
+            new LegacyObjectInputStream(new ByteArrayInputStream(data));
+
+         obj = legacy.readObject();
+         legacy.close();
+      }
+
+      if ( !( obj instanceof SCODataManager ) && 
+           !( obj instanceof SeqActivityTree ) )
+      {
+         throw new IOException(iFile + " holds neither SCO run-time data " +
+                               "nor an activity tree");
+      }
+
+      return obj;
+   }
+
+   /**
+    * Serializes an object with Java serialization.
+    * 
+    * @param iObject The object.
+    * 
+    * @return The serialized object.
+    * 
+    * @throws IOException Thrown if the object cannot be serialized.
+    */
+   private static byte[] serialize(Object iObject) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+      out.writeObject(iObject);
+      out.close();
+
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Encodes SCO run-time data or an activity tree with the codec.
+    * 
+    * @param iObject The object.
+    * 
+    * @return The encoded object.
+    * 
+    * @throws IOException Thrown if the object cannot be encoded.
+    */
+   private static byte[] encode(Object iObject) throws IOException
+   {
+      if ( iObject instanceof SCODataManager )
+      {
+         return ((SCODataManager)iObject).toByteArray();
+      }
+
+      return ((SeqActivityTree)iObject).toByteArray();
+   }
+
+   /**
+    * Decodes SCO run-time data or an activity tree of the same kind as the 
+    * given object.
+    * 
+    * @param iObject The object whose kind is decoded.
+    * 
+    * @param iData   The encoded object.
+    * 
+    * @return The decoded object.
+    * 
+    * @throws Exception Thrown if the data cannot be decoded.
+    */
+   private static Object decode(Object iObject, byte[] iData) throws Exception
+   {
+      if ( iObject instanceof SCODataManager )
+      {
+         return SCODataManager.fromByteArray(iData);
+      }
+
+      return SeqActivityTree.fromByteArray(iData);
+   }
+
+} // CodecBenchmark
@@ -0,0 +1,419 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Builds synthetic activity trees of a given shape.<br><br>
+ * 
+ * <strong>Filename:</strong> ADLSeqTreeGenerator.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * The <code>ADLSeqTreeGenerator</code> writes the manifest of a synthetic
+ * course and builds its activity tree, for measuring the sequencer on
+ * courses of controlled size and complexity.  The shape of the course is
+ * described by:
+ * <ul>
+ *     <li>its depth -- the number of cluster levels above the leaves;
+ *     <li>its fan-out -- the number of children of each cluster;
+ *     <li>its rule density -- the fraction of activities that define
+ *         sequencing rules, and of clusters that define rollup rules;
+ *     <li>its objective-map density -- the fraction of leaves whose
+ *         objectives are mapped to global objectives.
+ * </ul>
+ * <br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * The course is built from a manifest, by the same code that builds the
+ * activity trees of imported courses.  The rules defined never prevent the
+ * course from being navigated.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Which activities define rules and objective maps is decided by a random
+ * number generator with a fixed seed, so the same shape always produces the
+ * same course.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */ 
+public class ADLSeqTreeGenerator
+{
+
+   /**
+    * The number of leaves that share each global objective.
+    */
+   private static final int LEAVES_PER_GLOBAL = 4;
+
+   /**
+    * The number of cluster levels above the leaves.
+    */
+   private int mDepth = 3;
+
+   /**
+    * The number of children of each cluster.
+    */
+   private int mFanOut = 5;
+
+   /**
+    * The fraction of activities that define rules.
+    */
+   private double mRuleDensity = 0;
+
+   /**
+    * The fraction of leaves whose objectives are mapped to global objectives.
+    */
+   private double mObjectiveDensity = 0;
+
+   /**
+    * The seed used to place rules and objective maps.
+    */
+   private long mSeed = 0;
+
+   /**
+    * Initializes a generator for courses of the given shape.
+    * 
+    * @param iDepth            The number of levels below the root; at least
+    *                          one.
+    * 
+    * @param iFanOut           The number of children of each cluster.
+    * 
+    * @param iRuleDensity      The fraction, between 0 and 1, of activities
+    *                          that define rules.
+    * 
+    * @param iObjectiveDensity The fraction, between 0 and 1, of leaves whose
+    *                          objectives are mapped to global objectives.
+    */
+   public ADLSeqTreeGenerator(int iDepth, 
+                              int iFanOut, 
+                              double iRuleDensity,
+                              double iObjectiveDensity)
+   {
+      mDepth = Math.max(1, iDepth);
+      mFanOut = Math.max(1, iFanOut);
+      mRuleDensity = iRuleDensity;
+      mObjectiveDensity = iObjectiveDensity;
+   }
+
+   /**
+    * Sets the seed used to place rules and objective maps.
+    * 
+    * @param iSeed The seed.
+    */
+   public void setSeed(long iSeed)
+   {
+      mSeed = iSeed;
+   }
+
+   /**
+    * Provides a short description of the course's shape, which is also used
+    * as its course ID.
+    * 
+    * @return The description, for example <code>d3-f5-r0.5-o0.25</code>.
+    */
+   public String getName()
+   {
+      return "d" + mDepth + "-f" + mFanOut + "-r" + mRuleDensity + 
+             "-o" + mObjectiveDensity;
+   }
+
+   /**
+    * Provides the number of activities in the course.
+    * 
+    * @return The number of activities, including the root.
+    */
+   public int getActivityCount()
+   {
+      int count = 0;
+      int level = 1;
+
+      for ( int i = 0; i <= mDepth; i++ )
+      {
+         count += level;
+         level *= mFanOut;
+      }
+
+      return count;
+   }
+
+   /**
+    * Writes the manifest of the course.
+    * 
+    * @return The manifest.
+    */
+   public String toManifest()
+   {
+      StringBuffer xml = new StringBuffer();
+      Random random = new Random(mSeed);
+      int leaves = getActivityCount() - ( getActivityCount() - 1 ) / mFanOut;
+      int globals = Math.max(1, leaves / LEAVES_PER_GLOBAL);
+
+      xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+      xml.append("<manifest identifier=\"" + getName() + "\"");
+      xml.append(" xmlns=\"http://www.imsglobal.org/xsd/imscp_v1p1\"");
+      xml.append(" xmlns:adlcp=\"http://www.adlnet.org/xsd/adlcp_v1p3\"");
+      xml.append(" xmlns:imsss=\"http://www.imsglobal.org/xsd/imsss\">\n");
+      xml.append("<organizations default=\"ORG\">\n");
+      xml.append("<organization identifier=\"ORG\">\n");
+      xml.append("<title>" + getName() + "</title>\n");
+
+      appendChildren(xml, "A", 1, random, globals);
+      appendSequencing(xml, true, "ORG", random, globals);
+
+      xml.append("</organization>\n");
+      xml.append("</organizations>\n");
+      xml.append("<resources>\n");
+      xml.append("<resource identifier=\"RES\" type=\"webcontent\"");
+      xml.append(" adlcp:scormType=\"sco\" href=\"sco.html\"/>\n");
+      xml.append("</resources>\n");
+      xml.append("</manifest>\n");
+
+      return xml.toString();
+   }
+
+   /**
+    * Builds the activity tree of the course.
+    * 
+    * @return The activity tree, before any learner has attempted it.
+    * 
+    * @throws IOException Thrown if the manifest can not be parsed.
+    */
+   public SeqActivityTree build() throws IOException
+   {
+      Document doc = null;
+
+      try
+      {
+         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+         factory.setNamespaceAware(true);
+
+         doc = factory.newDocumentBuilder().parse(
+                  new InputSource(new StringReader(toManifest())));
+      }
+      catch ( ParserConfigurationException e )
+      {
+         throw new IOException(e.toString());
+      }
+      catch ( SAXException e )
+      {
+         throw new IOException(e.toString());
+      }
+
+      Node org = doc.getElementsByTagNameNS("*", "organization").item(0);
+      SeqActivityTree tree = ADLSeqUtilities.buildActivityTree(org, null);
+
+      if ( tree == null )
+      {
+         throw new IOException("Could not build the activity tree of " + 
+                               getName());
+      }
+
+      tree.setCourseID(getName());
+
+      return tree;
+   }
+
+   /**
+    * Writes the items below one cluster.
+    * 
+    * @param ioXML    The manifest being written.
+    * 
+    * @param iPrefix  The identifier of the cluster, used as the prefix of 
+    *                 its children's identifiers.
+    * 
+    * @param iLevel   The level of the children; the root's children are on
+    *                 level one.
+    * 
+    * @param iRandom  The random number generator placing rules and maps.
+    * 
+    * @param iGlobals The number of global objectives.
+    */
+   private void appendChildren(StringBuffer ioXML, String iPrefix, int iLevel,
+                               Random iRandom, int iGlobals)
+   {
+      boolean leaf = ( iLevel == mDepth );
+
+      for ( int i = 0; i < mFanOut; i++ )
+      {
+         String id = iPrefix + "_" + i;
+
+         ioXML.append("<item identifier=\"" + id + "\"");
+
+         if ( leaf )
+         {
+            ioXML.append(" identifierref=\"RES\"");
+         }
+
+         ioXML.append("><title>" + id + "</title>\n");
+
+         if ( !leaf )
+         {
+            appendChildren(ioXML, id, iLevel + 1, iRandom, iGlobals);
+         }
+
+         appendSequencing(ioXML, !leaf, id, iRandom, iGlobals);
+
+         ioXML.append("</item>\n");
+      }
+   }
+
+   /**
+    * Writes the sequencing definition of one activity.
+    * 
+    * @param ioXML     The manifest being written.
+    * 
+    * @param iCluster  Indicates if the activity is a cluster.
+    * 
+    * @param iID       The identifier of the activity.
+    * 
+    * @param iRandom   The random number generator placing rules and maps.
+    * 
+    * @param iGlobals  The number of global objectives.
+    */
+   private void appendSequencing(StringBuffer ioXML, boolean iCluster,
+                                 String iID, Random iRandom, int iGlobals)
+   {
+      boolean rules = iRandom.nextDouble() < mRuleDensity;
+      boolean maps = !iCluster && iRandom.nextDouble() < mObjectiveDensity;
+
+      ioXML.append("<imsss:sequencing>\n");
+
+      if ( iCluster )
+      {
+         ioXML.append("<imsss:controlMode choice=\"true\" flow=\"true\"/>\n");
+      }
+
+      if ( rules )
+      {
+         ioXML.append("<imsss:sequencingRules>\n");
+         ioXML.append("<imsss:preConditionRule>");
+         ioXML.append("<imsss:ruleConditions conditionCombination=\"all\">");
+         ioXML.append("<imsss:ruleCondition condition=\"satisfied\"/>");
+         ioXML.append("<imsss:ruleCondition condition=\"completed\"/>");
+         ioXML.append("</imsss:ruleConditions>");
+         ioXML.append("<imsss:ruleAction action=\"hiddenFromChoice\"/>");
+         ioXML.append("</imsss:preConditionRule>\n");
+         ioXML.append("<imsss:exitConditionRule>");
+         ioXML.append("<imsss:ruleConditions conditionCombination=\"any\">");
+         ioXML.append("<imsss:ruleCondition condition=\"attemptLimitExceeded\"/>");
+         ioXML.append("<imsss:ruleCondition condition=\"timeLimitExceeded\"/>");
+         ioXML.append("</imsss:ruleConditions>");
+         ioXML.append("<imsss:ruleAction action=\"exit\"/>");
+         ioXML.append("</imsss:exitConditionRule>\n");
+         ioXML.append("<imsss:postConditionRule>");
+         ioXML.append("<imsss:ruleConditions conditionCombination=\"any\">");
+         ioXML.append("<imsss:ruleCondition operator=\"not\"");
+         ioXML.append(" condition=\"attempted\"/>");
+         ioXML.append("<imsss:ruleCondition condition=\"attemptLimitExceeded\"/>");
+         ioXML.append("</imsss:ruleConditions>");
+         ioXML.append("<imsss:ruleAction action=\"continue\"/>");
+         ioXML.append("</imsss:postConditionRule>\n");
+         ioXML.append("</imsss:sequencingRules>\n");
+
+         if ( iCluster )
+         {
+            ioXML.append("<imsss:rollupRules>\n");
+            ioXML.append("<imsss:rollupRule childActivitySet=\"atLeastPercent\"");
+            ioXML.append(" minimumPercent=\"0.5\">");
+            ioXML.append("<imsss:rollupConditions>");
+            ioXML.append("<imsss:rollupCondition condition=\"satisfied\"/>");
+            ioXML.append("</imsss:rollupConditions>");
+            ioXML.append("<imsss:rollupAction action=\"satisfied\"/>");
+            ioXML.append("</imsss:rollupRule>\n");
+            ioXML.append("<imsss:rollupRule childActivitySet=\"any\">");
+            ioXML.append("<imsss:rollupConditions>");
+            ioXML.append("<imsss:rollupCondition operator=\"not\"");
+            ioXML.append(" condition=\"satisfied\"/>");
+            ioXML.append("</imsss:rollupConditions>");
+            ioXML.append("<imsss:rollupAction action=\"notSatisfied\"/>");
+            ioXML.append("</imsss:rollupRule>\n");
+            ioXML.append("<imsss:rollupRule childActivitySet=\"all\">");
+            ioXML.append("<imsss:rollupConditions>");
+            ioXML.append("<imsss:rollupCondition condition=\"completed\"/>");
+            ioXML.append("</imsss:rollupConditions>");
+            ioXML.append("<imsss:rollupAction action=\"completed\"/>");
+            ioXML.append("</imsss:rollupRule>\n");
+            ioXML.append("</imsss:rollupRules>\n");
+         }
+      }
+
+      if ( maps )
+      {
+         int global = iRandom.nextInt(iGlobals);
+
+         ioXML.append("<imsss:objectives>\n");
+         ioXML.append("<imsss:primaryObjective objectiveID=\"P_" + iID + "\"");
+         ioXML.append(" satisfiedByMeasure=\"true\">");
+         ioXML.append("<imsss:minNormalizedMeasure>0.6");
+         ioXML.append("</imsss:minNormalizedMeasure>");
+         appendMapInfo(ioXML, global);
+         ioXML.append("</imsss:primaryObjective>\n");
+         ioXML.append("<imsss:objective objectiveID=\"S_" + iID + "\">");
+         appendMapInfo(ioXML, ( global + 1 ) % iGlobals);
+         ioXML.append("</imsss:objective>\n");
+         ioXML.append("</imsss:objectives>\n");
+      }
+
+      ioXML.append("</imsss:sequencing>\n");
+   }
+
+   /**
+    * Writes a map from a local objective to a global objective.
+    * 
+    * @param ioXML   The manifest being written.
+    * 
+    * @param iGlobal The index of the global objective.
+    */
+   private static void appendMapInfo(StringBuffer ioXML, int iGlobal)
+   {
+      ioXML.append("<imsss:mapInfo targetObjectiveID=\"G_" + iGlobal + "\"");
+      ioXML.append(" readSatisfiedStatus=\"true\"");
+      ioXML.append(" readNormalizedMeasure=\"true\"");
+      ioXML.append(" writeSatisfiedStatus=\"true\"");
+      ioXML.append(" writeNormalizedMeasure=\"true\"/>");
+   }
+
+} // end ADLSeqTreeGenerator
@@ -0,0 +1,640 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.adl.samplerte.util.LMSDBHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the sequencer's hot paths on synthetic courses.<br><br>
+ * 
+ * <strong>Filename:</strong> ADLSequencerBenchmark.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * The <code>ADLSequencerBenchmark</code> is a JMH benchmark of the 
+ * sequencer's navigation requests ('Start', 'Continue', 'Previous', 
+ * 'Choice' and 'Jump'), of determining the valid navigation requests, of 
+ * rollup, of selection and randomization and of building the table of
+ * contents, on courses built by <code>ADLSeqTreeGenerator</code>.  Each 
+ * course is given by the <code>mShape</code> parameter as
+ * <code>depth:fanOut:ruleDensity:objectiveDensity</code> (JMH splits
+ * parameter values at commas).  Run it with the
+ * <code>runBenchmarks</code> target of <code>build.xml</code>, which writes
+ * the results to a CSV file so they can be compared from release to 
+ * release; other courses are measured with, for example, 
+ * <code>-DbenchmarkArgs="ADLSequencerBenchmark -p mShape=5:3:0.5:0"</code>.
+ * <br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This is a measurement tool; it lives in the benchmark source tree and is
+ * not part of the Sample RTE jars.  The Sample RTE database is disabled 
+ * while it runs, so global objectives are neither read nor written.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Only the measured call is timed; preparing the learner's state for the
+ * next call, such as starting a new session when the course ends, is done
+ * by a per-invocation setup of the learner's state.  Rollup, selection and
+ * randomization are private to the sequencer and are called through 
+ * reflection; the cost of the reflective call is small next to the work
+ * measured.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */ 
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ADLSequencerBenchmark
+{
+
+   /**
+    * The sequencer's rollup of an activity and its ancestors.
+    */
+   private static final Method sInvokeRollup = 
+      getMethod("invokeRollup", new Class[] { SeqActivity.class, 
+                                              Vector.class });
+
+   /**
+    * The sequencer's selection of a cluster's children.
+    */
+   private static final Method sDoSelection = 
+      getMethod("doSelection", new Class[] { SeqActivity.class });
+
+   /**
+    * The sequencer's randomization of a cluster's children.
+    */
+   private static final Method sDoRandomize = 
+      getMethod("doRandomize", new Class[] { SeqActivity.class });
+
+   /**
+    * The course being measured.
+    */
+   @State(Scope.Benchmark)
+   public static class Course
+   {
+      /**
+       * The shape of the course: depth, fan-out, rule density and 
+       * objective-map density.
+       */
+      @Param({ "2:10:0:0", "4:4:0:0", "3:5:0.5:0.5", "2:30:1:0", 
+               "3:8:0.25:1" })
+      public String mShape = null;
+
+      /**
+       * The course's definition.
+       */
+      SeqActivityTree mDefinition = null;
+
+      /**
+       * The IDs of the course's leaves, in tree order.
+       */
+      Vector mLeaves = null;
+
+      /**
+       * The IDs of the course's clusters.
+       */
+      Vector mClusters = null;
+
+      /**
+       * Builds the course.
+       * 
+       * @throws IOException Thrown if the course can not be built.
+       */
+      @Setup(Level.Trial)
+      public void build() throws IOException
+      {
+         // The benchmark runs without the Sample RTE database
+         LMSDBHandler.setEnabled(false);
+
+         StringTokenizer st = new StringTokenizer(mShape, ":");
+         double[] shape = new double[4];
+
+         for ( int i = 0; i < shape.length && st.hasMoreTokens(); i++ )
+         {
+            shape[i] = Double.parseDouble(st.nextToken());
+         }
+
+         mDefinition = new ADLSeqTreeGenerator((int)shape[0], (int)shape[1],
+                                               shape[2], shape[3]).build();
+         mLeaves = new Vector();
+         mClusters = new Vector();
+
+         collect(mDefinition.getRoot());
+      }
+
+      /**
+       * Collects the IDs of the leaves and clusters below an activity.
+       * 
+       * @param iActivity The activity.
+       */
+      private void collect(SeqActivity iActivity)
+      {
+         Vector children = iActivity.getChildren(true);
+
+         if ( children == null )
+         {
+            mLeaves.add(iActivity.getID());
+            return;
+         }
+
+         mClusters.add(iActivity.getID());
+
+         for ( int i = 0; i < children.size(); i++ )
+         {
+            collect((SeqActivity)children.elementAt(i));
+         }
+      }
+   }
+
+   /**
+    * A learner taking the course.
+    */
+   @State(Scope.Thread)
+   public static class Learner
+   {
+      /**
+       * The learner's activity tree.
+       */
+      SeqActivityTree mTree = null;
+
+      /**
+       * The learner's sequencer.
+       */
+      ADLSequencer mSequencer = null;
+
+      /**
+       * The result of the learner's last navigation request.
+       */
+      ADLLaunch mLaunch = null;
+
+      /**
+       * Chooses the targets of 'Choice' and 'Jump' requests.
+       */
+      Random mRandom = new Random(0);
+
+      /**
+       * The target of the next 'Choice' or 'Jump' request.
+       */
+      String mTarget = null;
+
+      /**
+       * The number of status changes reported.
+       */
+      int mReports = 0;
+
+      /**
+       * Gives the learner a new activity tree, without starting it.
+       * 
+       * @param iCourse The course.
+       */
+      void enroll(Course iCourse)
+      {
+         mTree = iCourse.mDefinition.copyDefinition();
+         mTree.setLearnerID("benchmark");
+
+         mSequencer = new ADLSequencer();
+         mSequencer.setActivityTree(mTree);
+         mLaunch = null;
+      }
+
+      /**
+       * Makes sure an activity is being delivered, starting a new session
+       * if the last one ended.
+       * 
+       * @param iCourse The course.
+       */
+      void deliver(Course iCourse)
+      {
+         if ( mLaunch == null || mLaunch.mEndSession || 
+              mLaunch.mSeqNonContent != null )
+         {
+            enroll(iCourse);
+            mLaunch = mSequencer.navigate(SeqNavRequests.NAV_START);
+         }
+      }
+   }
+
+   /**
+    * A learner who has not started the course.
+    */
+   @State(Scope.Thread)
+   public static class NewLearner extends Learner
+   {
+      /**
+       * Enrolls the learner again before each call.
+       * 
+       * @param iCourse The course.
+       */
+      @Setup(Level.Invocation)
+      public void prepare(Course iCourse)
+      {
+         enroll(iCourse);
+      }
+   }
+
+   /**
+    * A learner being delivered an activity.
+    */
+   @State(Scope.Thread)
+   public static class DeliveredLearner extends Learner
+   {
+      /**
+       * Makes sure an activity is delivered and chooses a target.
+       * 
+       * @param iCourse The course.
+       */
+      @Setup(Level.Invocation)
+      public void prepare(Course iCourse)
+      {
+         deliver(iCourse);
+
+         mTarget = (String)iCourse.mLeaves.elementAt(
+                      mRandom.nextInt(iCourse.mLeaves.size()));
+      }
+   }
+
+   /**
+    * A learner working back from the course's last activity.
+    */
+   @State(Scope.Thread)
+   public static class ReturningLearner extends Learner
+   {
+      /**
+       * Starts again from the last activity once the learner has moved 
+       * back past the first.
+       * 
+       * @param iCourse The course.
+       */
+      @Setup(Level.Invocation)
+      public void prepare(Course iCourse)
+      {
+         if ( mLaunch == null || mLaunch.mEndSession || 
+              mLaunch.mSeqNonContent != null )
+         {
+            deliver(iCourse);
+            mLaunch = mSequencer.navigate(
+                         (String)iCourse.mLeaves.lastElement(), false);
+         }
+      }
+   }
+
+   /**
+    * A learner whose delivered activity has just reported a status change,
+    * so the state that depends on it must be determined again.
+    */
+   @State(Scope.Thread)
+   public static class ReportingLearner extends Learner
+   {
+      /**
+       * Reports the delivered activity as completed and satisfied, or 
+       * incomplete and not satisfied, alternately.
+       * 
+       * @param iCourse The course.
+       */
+      @Setup(Level.Invocation)
+      public void prepare(Course iCourse)
+      {
+         deliver(iCourse);
+
+         String id = mLaunch.mActivityID;
+         boolean odd = ( mReports++ % 2 ) == 1;
+
+         mSequencer.setAttemptProgressStatus(id, odd ? "completed" 
+                                                     : "incomplete");
+         mSequencer.setAttemptObjSatisfied(id, null, odd ? "satisfied" 
+                                                         : "notSatisfied");
+      }
+   }
+
+   /**
+    * The course's clusters, each set up to select and reorder its children.
+    */
+   @State(Scope.Thread)
+   public static class Clusters
+   {
+      /**
+       * An independent copy of the course, so the definition's controls 
+       * are not changed.
+       */
+      SeqActivityTree mTree = null;
+
+      /**
+       * The sequencer of the copy.
+       */
+      ADLSequencer mSequencer = null;
+
+      /**
+       * The course's clusters.
+       */
+      SeqActivity[] mClusters = null;
+
+      /**
+       * Chooses the cluster of each call.
+       */
+      Random mRandom = new Random(0);
+
+      /**
+       * The cluster of the next call.
+       */
+      SeqActivity mCluster = null;
+
+      /**
+       * Copies the course and sets up its clusters.
+       * 
+       * @param iCourse The course.
+       * 
+       * @throws Exception Thrown if the course can not be copied.
+       */
+      @Setup(Level.Trial)
+      public void build(Course iCourse) throws Exception
+      {
+         mTree = SeqActivityTree.fromByteArray(
+                    iCourse.mDefinition.toByteArray());
+
+         mSequencer = new ADLSequencer();
+         mSequencer.setActivityTree(mTree);
+
+         mClusters = new SeqActivity[iCourse.mClusters.size()];
+
+         for ( int i = 0; i < mClusters.length; i++ )
+         {
+            mClusters[i] = mTree.getActivity(
+                              (String)iCourse.mClusters.elementAt(i));
+
+            mClusters[i].setSelectCount(
+               ( mClusters[i].getChildren(true).size() + 1 ) / 2);
+            mClusters[i].setReorderChildren(true);
+         }
+      }
+
+      /**
+       * Chooses the cluster of the next call.
+       */
+      @Setup(Level.Invocation)
+      public void prepare()
+      {
+         mCluster = mClusters[mRandom.nextInt(mClusters.length)];
+      }
+   }
+
+   /**
+    * Measures a 'Start' request of a new learner.
+    * 
+    * @param ioLearner The learner.
+    * 
+    * @return The launch information.
+    */
+   @Benchmark
+   public ADLLaunch navigateStart(NewLearner ioLearner)
+   {
+      ioLearner.mLaunch = 
+         ioLearner.mSequencer.navigate(SeqNavRequests.NAV_START);
+
+      return ioLearner.mLaunch;
+   }
+
+   /**
+    * Measures a 'Continue' request.
+    * 
+    * @param ioLearner The learner.
+    * 
+    * @return The launch information.
+    */
+   @Benchmark
+   public ADLLaunch navigateContinue(DeliveredLearner ioLearner)
+   {
+      ioLearner.mLaunch = 
+         ioLearner.mSequencer.navigate(SeqNavRequests.NAV_CONTINUE);
+
+      return ioLearner.mLaunch;
+   }
+
+   /**
+    * Measures a 'Previous' request.
+    * 
+    * @param ioLearner The learner.
+    * 
+    * @return The launch information.
+    */
+   @Benchmark
+   public ADLLaunch navigatePrevious(ReturningLearner ioLearner)
+   {
+      ioLearner.mLaunch = 
+         ioLearner.mSequencer.navigate(SeqNavRequests.NAV_PREVIOUS);
+
+      return ioLearner.mLaunch;
+   }
+
+   /**
+    * Measures a 'Choice' request for a random leaf.
+    * 
+    * @param ioLearner The learner.
+    * 
+    * @return The launch information.
+    */
+   @Benchmark
+   public ADLLaunch navigateChoice(DeliveredLearner ioLearner)
+   {
+      ioLearner.mLaunch = ioLearner.mSequencer.navigate(ioLearner.mTarget, 
+                                                        false);
+
+      return ioLearner.mLaunch;
+   }
+
+   /**
+    * Measures a 'Jump' request to a random leaf.
+    * 
+    * @param ioLearner The learner.
+    * 
+    * @return The launch information.
+    */
+   @Benchmark
+   public ADLLaunch navigateJump(DeliveredLearner ioLearner)
+   {
+      ioLearner.mLaunch = ioLearner.mSequencer.navigate(ioLearner.mTarget, 
+                                                        true);
+
+      return ioLearner.mLaunch;
+   }
+
+   /**
+    * Measures determining the valid navigation requests after a status 
+    * change.
+    * 
+    * @param iLearner The learner.
+    * 
+    * @return The valid navigation requests.
+    */
+   @Benchmark
+   public ADLValidRequests getValidRequests(ReportingLearner iLearner)
+   {
+      ADLValidRequests valid = new ADLValidRequests();
+
+      iLearner.mSequencer.getValidRequests(valid);
+
+      return valid;
+   }
+
+   /**
+    * Measures rollup from the delivered activity after a status change.
+    * 
+    * @param iLearner The learner.
+    * 
+    * @throws Exception Thrown if the rollup fails.
+    */
+   @Benchmark
+   public void invokeRollup(ReportingLearner iLearner) throws Exception
+   {
+      invoke(sInvokeRollup, iLearner.mSequencer, 
+             new Object[] { iLearner.mTree.getCurrentActivity(), null });
+   }
+
+   /**
+    * Measures building the table of contents after a status change.
+    * 
+    * @param iLearner The learner.
+    * 
+    * @return The table of contents.
+    */
+   @Benchmark
+   public Vector getTOC(ReportingLearner iLearner)
+   {
+      return iLearner.mSequencer.getTOC(iLearner.mTree.getRoot());
+   }
+
+   /**
+    * Measures selection of a random cluster's children.
+    * 
+    * @param iClusters The course's clusters.
+    * 
+    * @throws Exception Thrown if the selection fails.
+    */
+   @Benchmark
+   public void doSelection(Clusters iClusters) throws Exception
+   {
+      invoke(sDoSelection, iClusters.mSequencer, 
+             new Object[] { iClusters.mCluster });
+   }
+
+   /**
+    * Measures randomization of a random cluster's children.
+    * 
+    * @param iClusters The course's clusters.
+    * 
+    * @throws Exception Thrown if the randomization fails.
+    */
+   @Benchmark
+   public void doRandomize(Clusters iClusters) throws Exception
+   {
+      invoke(sDoRandomize, iClusters.mSequencer, 
+             new Object[] { iClusters.mCluster });
+   }
+
+   /**
+    * Looks up one of the sequencer's private methods.
+    * 
+    * @param iName  The name of the method.
+    * 
+    * @param iTypes The method's parameter types.
+    * 
+    * @return The method, made accessible.
+    */
+   private static Method getMethod(String iName, Class[] iTypes)
+   {
+      try
+      {
+         Method method = ADLSequencer.class.getDeclaredMethod(iName, iTypes);
+         method.setAccessible(true);
+
+         return method;
+      }
+      catch ( NoSuchMethodException e )
+      {
+         throw new IllegalStateException("ADLSequencer has no " + iName);
+      }
+   }
+
+   /**
+    * Calls one of the sequencer's private methods.
+    * 
+    * @param iMethod    The method.
+    * 
+    * @param iSequencer The sequencer.
+    * 
+    * @param iArgs      The arguments.
+    * 
+    * @throws Exception Thrown by the method.
+    */
+   private static void invoke(Method iMethod, ADLSequencer iSequencer, 
+                              Object[] iArgs) throws Exception
+   {
+      try
+      {
+         iMethod.invoke(iSequencer, iArgs);
+      }
+      catch ( InvocationTargetException e )
+      {
+         if ( e.getCause() instanceof Exception )
+         {
+            throw (Exception)e.getCause();
+         }
+
+         throw (Error)e.getCause();
+      }
+   }
+
+} // end ADLSequencerBenchmark
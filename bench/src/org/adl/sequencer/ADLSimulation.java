@@ -0,0 +1,631 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.adl.samplerte.util.LMSDBHandler;
+import org.adl.util.codec.CodecInput;
+import org.w3c.dom.Node;
+
+/**
+ * Drives simulated learners through a course without the Sample RTE.<br><br>
+ * 
+ * <strong>Filename:</strong> ADLSimulation.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * The <code>ADLSimulation</code> runs a number of simulated learners through
+ * one course, in parallel.  Each learner attempts the course in several
+ * sessions; in each session it starts or resumes the course, reports
+ * progress and satisfaction for each delivered activity and makes the
+ * navigation requests chosen by an <code>ADLSimulationPolicy</code>.  The
+ * latency of every sequencer operation and the size of the persisted
+ * learner state are recorded in an <code>ADLSimulationReport</code>.<br><br>
+ * 
+ * It can be run from the command line:<br>
+ * <code>java org.adl.sequencer.ADLSimulation [-learners n] [-threads n]
+ * [-seed n] [-policy name=value,...] course</code><br>
+ * where <code>course</code> is an imsmanifest.xml file or a serialized
+ * activity tree.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This is a measurement tool; it lives in the benchmark source tree and is
+ * not part of the Sample RTE jars.  It is built and run by the 
+ * <code>runSimulation</code> target of <code>build.xml</code>.<br><br>
+ * 
+ * Each learner's tree is a copy of the course definition and shares the
+ * definition's sequencing information, as in the Sample RTE.  Between
+ * sessions only the learner's tracking state is kept, exactly as it is
+ * persisted by the Sample RTE.<br><br>
+ * 
+ * Each learner uses its own random number generator, seeded from the
+ * simulation's seed and the learner's index, so a run can be repeated.
+ * <br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Learners are run by a fixed pool of threads; each thread records into its
+ * own report.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br>
+ * The command line disables the Sample RTE database, so global objectives
+ * and course status are not persisted between sessions.<br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */ 
+public class ADLSimulation
+{
+
+   /**
+    * The number of consecutive navigation requests that may fail to deliver
+    * an activity before a learner exits the course.
+    */
+   private static final int MAX_NONCONTENT = 3;
+
+   /**
+    * The course definition shared by all learners.
+    */
+   private SeqActivityTree mDefinition = null;
+
+   /**
+    * The behaviour of the learners.
+    */
+   private ADLSimulationPolicy mPolicy = new ADLSimulationPolicy();
+
+   /**
+    * The number of learners to simulate.
+    */
+   private int mLearners = 1000;
+
+   /**
+    * The number of threads running learners.
+    */
+   private int mThreads = Runtime.getRuntime().availableProcessors();
+
+   /**
+    * The seed of the learners' random number generators.
+    */
+   private long mSeed = 0;
+
+   /**
+    * Initializes a simulation of a course.
+    * 
+    * @param iDefinition The activity tree of the course, before any learner
+    *                    has attempted it.
+    */
+   public ADLSimulation(SeqActivityTree iDefinition)
+   {
+      mDefinition = iDefinition;
+   }
+
+   /**
+    * Sets the behaviour of the simulated learners.
+    * 
+    * @param iPolicy The learners' behaviour.
+    */
+   public void setPolicy(ADLSimulationPolicy iPolicy)
+   {
+      mPolicy = iPolicy;
+   }
+
+   /**
+    * Sets the number of learners to simulate.
+    * 
+    * @param iLearners The number of learners.
+    */
+   public void setLearners(int iLearners)
+   {
+      mLearners = iLearners;
+   }
+
+   /**
+    * Sets the number of threads running learners.
+    * 
+    * @param iThreads The number of threads.
+    */
+   public void setThreads(int iThreads)
+   {
+      mThreads = Math.max(1, iThreads);
+   }
+
+   /**
+    * Sets the seed of the learners' random number generators.
+    * 
+    * @param iSeed The seed.
+    */
+   public void setSeed(long iSeed)
+   {
+      mSeed = iSeed;
+   }
+
+   /**
+    * Runs the simulation.
+    * 
+    * @return The measurements of the simulation.
+    * 
+    * @throws InterruptedException Thrown if the calling thread is interrupted
+    *                              while waiting for the learners.
+    */
+   public ADLSimulationReport run() throws InterruptedException
+   {
+      final AtomicInteger next = new AtomicInteger(0);
+      ExecutorService pool = Executors.newFixedThreadPool(mThreads);
+      List results = new ArrayList();
+
+      long start = System.nanoTime();
+
+      try
+      {
+         for ( int i = 0; i < mThreads; i++ )
+         {
+            results.add(pool.submit(new Callable()
+            {
+               public Object call()
+               {
+                  ADLSimulationReport report = new ADLSimulationReport();
+                  int learner = next.getAndIncrement();
+
+                  while ( learner < mLearners )
+                  {
+                     runLearner(learner, report);
+                     learner = next.getAndIncrement();
+                  }
+
+                  return report;
+               }
+            }));
+         }
+
+         ADLSimulationReport total = new ADLSimulationReport();
+
+         for ( int i = 0; i < results.size(); i++ )
+         {
+            try
+            {
+               total.merge((ADLSimulationReport)((Future)results.get(i)).get());
+            }
+            catch ( ExecutionException e )
+            {
+               total.recordError(e.getCause());
+            }
+         }
+
+         total.mWallTime = System.nanoTime() - start;
+
+         return total;
+      }
+      finally
+      {
+         pool.shutdownNow();
+      }
+   }
+
+   /**
+    * Simulates all sessions of one learner.
+    * 
+    * @param iLearner The index of the learner.
+    * 
+    * @param ioReport The report to record into.
+    */
+   private void runLearner(int iLearner, ADLSimulationReport ioReport)
+   {
+      Random random = new Random(mSeed * 1000003L + iLearner);
+      String learnerID = "simulated" + iLearner;
+      byte[] state = null;
+
+      ioReport.mLearners++;
+
+      try
+      {
+         for ( int s = 0; s < mPolicy.mSessions; s++ )
+         {
+            SeqActivityTree tree = null;
+
+            if ( state == null )
+            {
+               tree = mDefinition.copyDefinition();
+               tree.setLearnerID(learnerID);
+            }
+            else
+            {
+               long begin = System.nanoTime();
+               tree = SeqActivityTree.fromTrackingByteArray(mDefinition, state);
+               ioReport.record(ADLSimulationReport.OP_RESTORE, 
+                               System.nanoTime() - begin);
+            }
+
+            runSession(tree, random, ioReport);
+
+            long begin = System.nanoTime();
+            state = tree.toTrackingByteArray();
+            ioReport.record(ADLSimulationReport.OP_SAVE, 
+                            System.nanoTime() - begin);
+
+            ioReport.recordState(state.length, tree.toByteArray().length);
+         }
+      }
+      catch ( IOException e )
+      {
+         ioReport.recordError(e);
+      }
+      catch ( RuntimeException e )
+      {
+         ioReport.recordError(e);
+      }
+   }
+
+   /**
+    * Simulates one session of a learner.
+    * 
+    * @param ioTree   The learner's activity tree.
+    * 
+    * @param iRandom  The learner's random number generator.
+    * 
+    * @param ioReport The report to record into.
+    */
+   private void runSession(SeqActivityTree ioTree, Random iRandom,
+                           ADLSimulationReport ioReport)
+   {
+      ADLSequencer sequencer = new ADLSequencer();
+      sequencer.setActivityTree(ioTree);
+
+      ioReport.mSessions++;
+
+      // As in the Sample RTE, a suspended course is resumed
+      int request = ( ioTree.getSuspendAll() != null ) 
+                    ? SeqNavRequests.NAV_RESUMEALL
+                    : SeqNavRequests.NAV_START;
+
+      ADLLaunch launch = navigate(sequencer, request, ioReport);
+      int nonContent = 0;
+
+      for ( int step = 0; step < mPolicy.mMaxSteps && !launch.mEndSession; 
+            step++ )
+      {
+         ADLValidRequests valid = null;
+
+         if ( launch.mSeqNonContent == null )
+         {
+            nonContent = 0;
+            ioReport.mDeliveries++;
+
+            deliver(sequencer, launch.mActivityID, iRandom, ioReport);
+
+            // As in the Sample RTE, the delivered SCO's navigation requests
+            valid = validRequests(sequencer, ioReport);
+         }
+         else
+         {
+            ioReport.mNonContent++;
+
+            // Without a delivered SCO, the requests offered with the result
+            valid = launch.mNavState;
+
+            if ( ++nonContent >= MAX_NONCONTENT || valid == null )
+            {
+               break;
+            }
+         }
+
+         request = mPolicy.chooseRequest(iRandom, valid);
+
+         if ( request == SeqNavRequests.NAV_NONE )
+         {
+            String target = pick(valid.mChoice, iRandom);
+
+            long begin = System.nanoTime();
+            launch = sequencer.navigate(target, false);
+            ioReport.record(ADLSimulationReport.OP_CHOICE, 
+                            System.nanoTime() - begin);
+         }
+         else
+         {
+            launch = navigate(sequencer, request, ioReport);
+         }
+      }
+
+      if ( !launch.mEndSession )
+      {
+         launch = navigate(sequencer, SeqNavRequests.NAV_EXITALL, ioReport);
+      }
+
+      // As in the Sample RTE, an ended session clears the current activity
+      String result = launch.mSeqNonContent;
+
+      if ( ADLLaunch.LAUNCH_EXITSESSION.equals(result) ||
+           ADLLaunch.LAUNCH_COURSECOMPLETE.equals(result) ||
+           ADLLaunch.LAUNCH_SEQ_ABANDONALL.equals(result) )
+      {
+         sequencer.clearSeqState();
+      }
+   }
+
+   /**
+    * Reports the learner's results for a delivered activity.
+    * 
+    * @param ioSequencer The learner's sequencer.
+    * 
+    * @param iActivityID The ID of the delivered activity.
+    * 
+    * @param iRandom     The learner's random number generator.
+    * 
+    * @param ioReport    The report to record into.
+    */
+   private void deliver(ADLSequencer ioSequencer, String iActivityID,
+                        Random iRandom, ADLSimulationReport ioReport)
+   {
+      long begin = 0;
+
+      if ( iRandom.nextDouble() < mPolicy.mReportStatus )
+      {
+         String status = ( iRandom.nextDouble() < mPolicy.mCompleted ) 
+                         ? "completed" : "incomplete";
+
+         begin = System.nanoTime();
+         ioSequencer.setAttemptProgressStatus(iActivityID, status);
+         ioReport.record(ADLSimulationReport.OP_SETPROGRESS, 
+                         System.nanoTime() - begin);
+      }
+
+      if ( iRandom.nextDouble() < mPolicy.mReportMeasure )
+      {
+         double measure = Math.round(( iRandom.nextDouble() * 2 - 1 ) * 100) 
+                          / 100.0;
+
+         begin = System.nanoTime();
+         ioSequencer.setAttemptObjMeasure(iActivityID, null, measure);
+         ioReport.record(ADLSimulationReport.OP_SETMEASURE, 
+                         System.nanoTime() - begin);
+      }
+
+      if ( iRandom.nextDouble() < mPolicy.mReportStatus )
+      {
+         String status = ( iRandom.nextDouble() < mPolicy.mSatisfied ) 
+                         ? "satisfied" : "notSatisfied";
+
+         begin = System.nanoTime();
+         ioSequencer.setAttemptObjSatisfied(iActivityID, null, status);
+         ioReport.record(ADLSimulationReport.OP_SETSATISFIED, 
+                         System.nanoTime() - begin);
+      }
+   }
+
+   /**
+    * Makes a navigation request and records its latency.
+    * 
+    * @param ioSequencer The learner's sequencer.
+    * 
+    * @param iRequest    One of the <code>SeqNavRequests</code> constants.
+    * 
+    * @param ioReport    The report to record into.
+    * 
+    * @return The result of the request.
+    */
+   private static ADLLaunch navigate(ADLSequencer ioSequencer, int iRequest,
+                                     ADLSimulationReport ioReport)
+   {
+      long begin = System.nanoTime();
+      ADLLaunch launch = ioSequencer.navigate(iRequest);
+      ioReport.record(ADLSimulationReport.OP_NAVIGATE, 
+                      System.nanoTime() - begin);
+
+      return launch;
+   }
+
+   /**
+    * Provides the currently valid navigation requests and records the
+    * latency of determining them.
+    * 
+    * @param ioSequencer The learner's sequencer.
+    * 
+    * @param ioReport    The report to record into.
+    * 
+    * @return The valid navigation requests.
+    */
+   private static ADLValidRequests validRequests(ADLSequencer ioSequencer,
+                                                 ADLSimulationReport ioReport)
+   {
+      ADLValidRequests valid = new ADLValidRequests();
+
+      long begin = System.nanoTime();
+      ioSequencer.getValidRequests(valid);
+      ioReport.record(ADLSimulationReport.OP_VALIDREQUESTS, 
+                      System.nanoTime() - begin);
+
+      return valid;
+   }
+
+   /**
+    * Picks a random target from the valid 'Choice' navigation requests.
+    * 
+    * @param iChoice The valid targets, keyed by activity ID.
+    * 
+    * @param iRandom The learner's random number generator.
+    * 
+    * @return The ID of the chosen activity.
+    */
+   private static String pick(Hashtable iChoice, Random iRandom)
+   {
+      int index = iRandom.nextInt(iChoice.size());
+      Enumeration keys = iChoice.keys();
+
+      while ( index-- > 0 )
+      {
+         keys.nextElement();
+      }
+
+      return (String)keys.nextElement();
+   }
+
+   /**
+    * Loads the activity tree of a course.
+    * 
+    * @param iFile An imsmanifest.xml file, or a serialized activity tree.
+    * 
+    * @return The activity tree of the course.
+    * 
+    * @throws IOException Thrown if the course can not be read.
+    */
+   public static SeqActivityTree loadCourse(File iFile) throws IOException
+   {
+      if ( iFile.getName().toLowerCase().endsWith(".xml") )
+      {
+         ADLSeqParser parser = new ADLSeqParser(iFile.getPath());
+         Node org = parser.findDefaultOrganization();
+
+         if ( org == null )
+         {
+            throw new IOException("No organization found in " + iFile);
+         }
+
+         SeqActivityTree tree = 
+            ADLSeqUtilities.buildActivityTree(org, 
+                                              parser.getSequencingCollection());
+
+         if ( tree == null )
+         {
+            throw new IOException("Could not build the activity tree of " + 
+                                  iFile);
+         }
+
+         tree.setCourseID(parser.getCourseID());
+         tree.setScopeID(parser.getScopeID());
+
+         return tree;
+      }
+
+      InputStream in = new FileInputStream(iFile);
+
+      try
+      {
+         return SeqActivityTree.fromByteArray(CodecInput.readAll(in));
+      }
+      catch ( ClassNotFoundException e )
+      {
+         throw new IOException("Not a serialized activity tree: " + iFile);
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   /**
+    * Runs a simulation from the command line and prints its report.
+    * 
+    * @param iArgs <code>[-learners n] [-threads n] [-seed n] 
+    *              [-policy name=value,...] course</code>
+    * 
+    * @throws Exception Thrown if the course can not be loaded or the
+    *                   simulation is interrupted.
+    */
+   public static void main(String[] iArgs) throws Exception
+   {
+      ADLSimulationPolicy policy = new ADLSimulationPolicy();
+      int learners = 1000;
+      int threads = Runtime.getRuntime().availableProcessors();
+      long seed = 0;
+      String course = null;
+
+      try
+      {
+         for ( int i = 0; i < iArgs.length; i++ )
+         {
+            if ( iArgs[i].equals("-learners") && i + 1 < iArgs.length )
+            {
+               learners = Integer.parseInt(iArgs[++i]);
+            }
+            else if ( iArgs[i].equals("-threads") && i + 1 < iArgs.length )
+            {
+               threads = Integer.parseInt(iArgs[++i]);
+            }
+            else if ( iArgs[i].equals("-seed") && i + 1 < iArgs.length )
+            {
+               seed = Long.parseLong(iArgs[++i]);
+            }
+            else if ( iArgs[i].equals("-policy") && i + 1 < iArgs.length )
+            {
+               policy.parse(iArgs[++i]);
+            }
+            else if ( course == null && !iArgs[i].startsWith("-") )
+            {
+               course = iArgs[i];
+            }
+            else
+            {
+               throw new IllegalArgumentException("Unknown argument: " + 
+                                                  iArgs[i]);
+            }
+         }
+      }
+      catch ( IllegalArgumentException e )
+      {
+         System.err.println(e.getMessage());
+         course = null;
+      }
+
+      if ( course == null )
+      {
+         System.err.println("Usage: ADLSimulation [-learners n] [-threads n]" +
+                            " [-seed n] [-policy name=value,...] course");
+         System.exit(1);
+      }
+
+      // The simulation runs without the Sample RTE database
+      LMSDBHandler.setEnabled(false);
+
+      ADLSimulation sim = new ADLSimulation(loadCourse(new File(course)));
+      sim.setPolicy(policy);
+      sim.setLearners(learners);
+      sim.setThreads(threads);
+      sim.setSeed(seed);
+
+      sim.run().print(System.out);
+   }
+
+} // end ADLSimulation
@@ -0,0 +1,290 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.util.Hashtable;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+/**
+ * Describes how simulated learners behave.<br><br>
+ * 
+ * <strong>Filename:</strong> ADLSimulationPolicy.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * The <code>ADLSimulationPolicy</code> holds the probabilities used by
+ * <code>ADLSimulation</code> to decide what each simulated learner reports
+ * for a delivered activity and which navigation request it makes next.
+ * <br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * Navigation weights are relative; only the requests that are valid for the
+ * current activity take part in each decision.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * All fields are purposefully public to allow immediate access to known data
+ * elements.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */ 
+public class ADLSimulationPolicy
+{
+
+   /**
+    * The number of sessions each learner attempts the course in.
+    */
+   public int mSessions = 2;
+
+   /**
+    * The maximum number of navigation requests a learner makes in one
+    * session.
+    */
+   public int mMaxSteps = 100;
+
+   /**
+    * The probability that a delivered activity is reported completed rather
+    * than incomplete.
+    */
+   public double mCompleted = 0.8;
+
+   /**
+    * The probability that a delivered activity reports its progress status.
+    */
+   public double mReportStatus = 0.7;
+
+   /**
+    * The probability that a delivered activity is reported satisfied rather
+    * than not satisfied.
+    */
+   public double mSatisfied = 0.6;
+
+   /**
+    * The probability that a delivered activity reports a measure for its
+    * primary objective.
+    */
+   public double mReportMeasure = 0.5;
+
+   /**
+    * The relative weight of a 'Continue' navigation request.
+    */
+   public double mContinue = 0.7;
+
+   /**
+    * The relative weight of a 'Previous' navigation request.
+    */
+   public double mPrevious = 0.05;
+
+   /**
+    * The relative weight of a 'Choice' navigation request.
+    */
+   public double mChoice = 0.15;
+
+   /**
+    * The relative weight of a 'Suspend All' navigation request.
+    */
+   public double mSuspend = 0.05;
+
+   /**
+    * The relative weight of an 'Exit All' navigation request.
+    */
+   public double mExit = 0.05;
+
+   /**
+    * Sets one field of the policy from its name, as used on the command
+    * line.
+    * 
+    * @param iName  The name of the field, without its <code>m</code> prefix,
+    *               for example <code>sessions</code> or 
+    *               <code>continue</code>.
+    * 
+    * @param iValue The new value.
+    * 
+    * @throws IllegalArgumentException Thrown if the name or value is not
+    *                                  valid.
+    */
+   public void set(String iName, String iValue)
+   {
+      String name = iName.trim();
+      String value = iValue.trim();
+
+      try
+      {
+         if ( name.equals("sessions") )
+         {
+            mSessions = Integer.parseInt(value);
+         }
+         else if ( name.equals("maxSteps") )
+         {
+            mMaxSteps = Integer.parseInt(value);
+         }
+         else if ( name.equals("completed") )
+         {
+            mCompleted = Double.parseDouble(value);
+         }
+         else if ( name.equals("reportStatus") )
+         {
+            mReportStatus = Double.parseDouble(value);
+         }
+         else if ( name.equals("satisfied") )
+         {
+            mSatisfied = Double.parseDouble(value);
+         }
+         else if ( name.equals("reportMeasure") )
+         {
+            mReportMeasure = Double.parseDouble(value);
+         }
+         else if ( name.equals("continue") )
+         {
+            mContinue = Double.parseDouble(value);
+         }
+         else if ( name.equals("previous") )
+         {
+            mPrevious = Double.parseDouble(value);
+         }
+         else if ( name.equals("choice") )
+         {
+            mChoice = Double.parseDouble(value);
+         }
+         else if ( name.equals("suspend") )
+         {
+            mSuspend = Double.parseDouble(value);
+         }
+         else if ( name.equals("exit") )
+         {
+            mExit = Double.parseDouble(value);
+         }
+         else
+         {
+            throw new IllegalArgumentException("Unknown policy setting: " + 
+                                               name);
+         }
+      }
+      catch ( NumberFormatException e )
+      {
+         throw new IllegalArgumentException("Invalid value for " + name + 
+                                            ": " + value);
+      }
+   }
+
+   /**
+    * Sets the fields named in a comma separated list of 
+    * <code>name=value</code> pairs.
+    * 
+    * @param iSettings The settings, for example 
+    *                  <code>sessions=3,choice=0.5</code>.
+    * 
+    * @throws IllegalArgumentException Thrown if a setting is not valid.
+    */
+   public void parse(String iSettings)
+   {
+      StringTokenizer st = new StringTokenizer(iSettings, ",");
+
+      while ( st.hasMoreTokens() )
+      {
+         String setting = st.nextToken();
+         int eq = setting.indexOf('=');
+
+         if ( eq == -1 )
+         {
+            throw new IllegalArgumentException("Invalid policy setting: " + 
+                                               setting);
+         }
+
+         set(setting.substring(0, eq), setting.substring(eq + 1));
+      }
+   }
+
+   /**
+    * Chooses the next navigation request of a learner from the requests that
+    * are currently valid.
+    * 
+    * @param iRandom The learner's random number generator.
+    * 
+    * @param iValid  The currently valid navigation requests.
+    * 
+    * @return One of the <code>SeqNavRequests</code> constants, or
+    *         <code>SeqNavRequests.NAV_NONE</code> if the learner should
+    *         choose an activity from <code>iValid.mChoice</code>.
+    */
+   public int chooseRequest(Random iRandom, ADLValidRequests iValid)
+   {
+      Hashtable choice = iValid.mChoice;
+
+      double cont = iValid.mContinue ? mContinue : 0;
+      double prev = iValid.mPrevious ? mPrevious : 0;
+      double ch = ( choice != null && choice.size() > 0 ) ? mChoice : 0;
+      double susp = iValid.mSuspend ? mSuspend : 0;
+
+      double total = cont + prev + ch + susp + mExit;
+
+      if ( total <= 0 )
+      {
+         return SeqNavRequests.NAV_EXITALL;
+      }
+
+      double pick = iRandom.nextDouble() * total;
+
+      if ( pick < cont )
+      {
+         return SeqNavRequests.NAV_CONTINUE;
+      }
+
+      pick -= cont;
+
+      if ( pick < prev )
+      {
+         return SeqNavRequests.NAV_PREVIOUS;
+      }
+
+      pick -= prev;
+
+      if ( pick < ch )
+      {
+         return SeqNavRequests.NAV_NONE;
+      }
+
+      pick -= ch;
+
+      if ( pick < susp )
+      {
+         return SeqNavRequests.NAV_SUSPENDALL;
+      }
+
+      return SeqNavRequests.NAV_EXITALL;
+   }
+
+} // end ADLSimulationPolicy
@@ -0,0 +1,535 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.io.PrintStream;
+
+/**
+ * Collects the measurements of a learner simulation.<br><br>
+ * 
+ * <strong>Filename:</strong> ADLSimulationReport.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * The <code>ADLSimulationReport</code> records the latency of each sequencer
+ * operation performed by <code>ADLSimulation</code>, the size of the
+ * persisted learner state and the number of learners, sessions and
+ * deliveries simulated.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * Each simulation thread records into its own report; the reports are merged
+ * when the simulation ends, so recording needs no synchronization.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Distributions are kept as log-linear histograms (eight buckets for each
+ * power of two), so percentiles are accurate to within 12.5% and the memory
+ * used does not depend on the number of samples.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */ 
+public class ADLSimulationReport
+{
+
+   /**
+    * A 'Start', 'Resume All', 'Continue', 'Previous', 'Suspend All' or
+    * 'Exit All' navigation request.
+    */
+   public static final int OP_NAVIGATE          =  0;
+
+   /**
+    * A 'Choice' navigation request.
+    */
+   public static final int OP_CHOICE            =  1;
+
+   /**
+    * A request for the currently valid navigation requests.
+    */
+   public static final int OP_VALIDREQUESTS     =  2;
+
+   /**
+    * A change to an activity's progress status.
+    */
+   public static final int OP_SETPROGRESS       =  3;
+
+   /**
+    * A change to an objective's measure.
+    */
+   public static final int OP_SETMEASURE        =  4;
+
+   /**
+    * A change to an objective's satisfaction status.
+    */
+   public static final int OP_SETSATISFIED      =  5;
+
+   /**
+    * Saving a learner's tracking state at the end of a session.
+    */
+   public static final int OP_SAVE              =  6;
+
+   /**
+    * Restoring a learner's tracking state at the start of a session.
+    */
+   public static final int OP_RESTORE           =  7;
+
+   /**
+    * The names of the operations, indexed by the <code>OP_</code> constants.
+    */
+   private static final String[] OP_NAMES = { "navigate",
+                                              "choice",
+                                              "validRequests",
+                                              "setProgress",
+                                              "setMeasure",
+                                              "setSatisfied",
+                                              "save",
+                                              "restore" };
+
+   /**
+    * The latency distribution of each operation, in nanoseconds.
+    */
+   private Distribution[] mLatency = new Distribution[OP_NAMES.length];
+
+   /**
+    * The size distribution of the persisted tracking state, in bytes.
+    */
+   private Distribution mTrackingSize = new Distribution();
+
+   /**
+    * The size distribution of the complete activity tree, in bytes.
+    */
+   private Distribution mTreeSize = new Distribution();
+
+   /**
+    * The number of learners simulated.
+    */
+   public long mLearners = 0;
+
+   /**
+    * The number of sessions simulated.
+    */
+   public long mSessions = 0;
+
+   /**
+    * The number of activities delivered.
+    */
+   public long mDeliveries = 0;
+
+   /**
+    * The number of navigation requests that did not deliver an activity.
+    */
+   public long mNonContent = 0;
+
+   /**
+    * The number of learners whose simulation failed.
+    */
+   public long mErrors = 0;
+
+   /**
+    * The message of the first failure, if any.
+    */
+   public String mFirstError = null;
+
+   /**
+    * The elapsed time of the simulation, in nanoseconds.
+    */
+   public long mWallTime = 0;
+
+   /**
+    * Initializes an empty report.
+    */
+   public ADLSimulationReport()
+   {
+      for ( int i = 0; i < mLatency.length; i++ )
+      {
+         mLatency[i] = new Distribution();
+      }
+   }
+
+   /**
+    * Records the latency of one operation.
+    * 
+    * @param iOp    One of the <code>OP_</code> constants.
+    * 
+    * @param iNanos The elapsed time of the operation, in nanoseconds.
+    */
+   public void record(int iOp, long iNanos)
+   {
+      mLatency[iOp].add(iNanos);
+   }
+
+   /**
+    * Records the size of a learner's persisted state.
+    * 
+    * @param iTracking The size of the tracking state, in bytes.
+    * 
+    * @param iTree     The size of the complete activity tree, in bytes.
+    */
+   public void recordState(int iTracking, int iTree)
+   {
+      mTrackingSize.add(iTracking);
+      mTreeSize.add(iTree);
+   }
+
+   /**
+    * Records the failure of a learner's simulation.
+    * 
+    * @param iCause The failure.
+    */
+   public void recordError(Throwable iCause)
+   {
+      mErrors++;
+
+      if ( mFirstError == null )
+      {
+         mFirstError = iCause.toString();
+      }
+   }
+
+   /**
+    * Adds the measurements of another report to this report.
+    * 
+    * @param iOther The report to add.  The elapsed time is not added.
+    */
+   public void merge(ADLSimulationReport iOther)
+   {
+      for ( int i = 0; i < mLatency.length; i++ )
+      {
+         mLatency[i].merge(iOther.mLatency[i]);
+      }
+
+      mTrackingSize.merge(iOther.mTrackingSize);
+      mTreeSize.merge(iOther.mTreeSize);
+
+      mLearners += iOther.mLearners;
+      mSessions += iOther.mSessions;
+      mDeliveries += iOther.mDeliveries;
+      mNonContent += iOther.mNonContent;
+      mErrors += iOther.mErrors;
+
+      if ( mFirstError == null )
+      {
+         mFirstError = iOther.mFirstError;
+      }
+   }
+
+   /**
+    * Provides the number of sequencer operations performed per second.
+    * 
+    * @return The throughput, or zero if no time has been recorded.
+    */
+   public double getThroughput()
+   {
+      if ( mWallTime <= 0 )
+      {
+         return 0;
+      }
+
+      long ops = 0;
+
+      for ( int i = 0; i < mLatency.length; i++ )
+      {
+         ops += mLatency[i].mCount;
+      }
+
+      return ops * 1e9 / mWallTime;
+   }
+
+   /**
+    * Provides the number of learners simulated per second.
+    * 
+    * @return The learner throughput, or zero if no time has been recorded.
+    */
+   public double getLearnerThroughput()
+   {
+      if ( mWallTime <= 0 )
+      {
+         return 0;
+      }
+
+      return mLearners * 1e9 / mWallTime;
+   }
+
+   /**
+    * Prints the report as a table.  Latencies are printed in microseconds.
+    * 
+    * @param iOut The stream to print to.
+    */
+   public void print(PrintStream iOut)
+   {
+      iOut.println("learners      " + mLearners);
+      iOut.println("sessions      " + mSessions);
+      iOut.println("deliveries    " + mDeliveries);
+      iOut.println("nonContent    " + mNonContent);
+      iOut.println("errors        " + mErrors + 
+                   ( mFirstError == null ? "" : " (" + mFirstError + ")" ));
+      iOut.println("wallTimeMs    " + ( mWallTime / 1000000 ));
+      iOut.println("learners/s    " + format(getLearnerThroughput()));
+      iOut.println("ops/s         " + format(getThroughput()));
+      iOut.println();
+
+      iOut.println(pad("operation (us)", 16) + pad("count", 10) + 
+                   pad("mean", 10) + pad("p50", 10) + pad("p90", 10) + 
+                   pad("p99", 10) + pad("max", 10));
+
+      for ( int i = 0; i < mLatency.length; i++ )
+      {
+         print(iOut, OP_NAMES[i], mLatency[i], 1000.0);
+      }
+
+      iOut.println();
+      iOut.println(pad("state (bytes)", 16) + pad("count", 10) + 
+                   pad("mean", 10) + pad("p50", 10) + pad("p90", 10) + 
+                   pad("p99", 10) + pad("max", 10));
+
+      print(iOut, "tracking", mTrackingSize, 1.0);
+      print(iOut, "tree", mTreeSize, 1.0);
+   }
+
+   /**
+    * Prints one row of the report.
+    * 
+    * @param iOut   The stream to print to.
+    * 
+    * @param iName  The name of the row.
+    * 
+    * @param iDist  The distribution to print.
+    * 
+    * @param iScale The divisor applied to each value.
+    */
+   private static void print(PrintStream iOut, String iName, 
+                             Distribution iDist, double iScale)
+   {
+      iOut.println(pad(iName, 16) + 
+                   pad(Long.toString(iDist.mCount), 10) +
+                   pad(format(iDist.getMean() / iScale), 10) + 
+                   pad(format(iDist.getPercentile(0.50) / iScale), 10) + 
+                   pad(format(iDist.getPercentile(0.90) / iScale), 10) + 
+                   pad(format(iDist.getPercentile(0.99) / iScale), 10) + 
+                   pad(format(iDist.mMax / iScale), 10));
+   }
+
+   /**
+    * Formats a value with one decimal place.
+    * 
+    * @param iValue The value.
+    * 
+    * @return The formatted value.
+    */
+   private static String format(double iValue)
+   {
+      return Double.toString(Math.round(iValue * 10) / 10.0);
+   }
+
+   /**
+    * Pads a column of the report with trailing spaces.
+    * 
+    * @param iText  The text of the column.
+    * 
+    * @param iWidth The width of the column.
+    * 
+    * @return The padded column.
+    */
+   private static String pad(String iText, int iWidth)
+   {
+      StringBuffer buf = new StringBuffer(iText);
+
+      do
+      {
+         buf.append(' ');
+      }
+      while ( buf.length() < iWidth );
+
+      return buf.toString();
+   }
+
+   /**
+    * A distribution of non-negative values.
+    */
+   private static class Distribution
+   {
+      /**
+       * The number of sub-buckets for each power of two.
+       */
+      private static final int SUB_BUCKETS = 8;
+
+      /**
+       * The number of bits used to select a sub-bucket.
+       */
+      private static final int SUB_BITS = 3;
+
+      /**
+       * The number of values in each bucket.
+       */
+      long[] mBuckets = new long[64 * SUB_BUCKETS];
+
+      /**
+       * The number of values.
+       */
+      long mCount = 0;
+
+      /**
+       * The sum of the values.
+       */
+      double mSum = 0;
+
+      /**
+       * The largest value.
+       */
+      long mMax = 0;
+
+      /**
+       * Adds a value to the distribution.
+       * 
+       * @param iValue The value; negative values are counted as zero.
+       */
+      void add(long iValue)
+      {
+         long value = ( iValue < 0 ) ? 0 : iValue;
+
+         mBuckets[bucketOf(value)]++;
+         mCount++;
+         mSum += value;
+
+         if ( value > mMax )
+         {
+            mMax = value;
+         }
+      }
+
+      /**
+       * Adds the values of another distribution to this distribution.
+       * 
+       * @param iOther The distribution to add.
+       */
+      void merge(Distribution iOther)
+      {
+         for ( int i = 0; i < mBuckets.length; i++ )
+         {
+            mBuckets[i] += iOther.mBuckets[i];
+         }
+
+         mCount += iOther.mCount;
+         mSum += iOther.mSum;
+
+         if ( iOther.mMax > mMax )
+         {
+            mMax = iOther.mMax;
+         }
+      }
+
+      /**
+       * Provides the mean of the values.
+       * 
+       * @return The mean, or zero if there are no values.
+       */
+      double getMean()
+      {
+         return ( mCount == 0 ) ? 0 : mSum / mCount;
+      }
+
+      /**
+       * Provides an upper bound of a percentile of the values.
+       * 
+       * @param iFraction The percentile, between 0 and 1.
+       * 
+       * @return The upper bound of the bucket holding the percentile, or
+       *         zero if there are no values.
+       */
+      long getPercentile(double iFraction)
+      {
+         if ( mCount == 0 )
+         {
+            return 0;
+         }
+
+         long rank = (long)Math.ceil(iFraction * mCount);
+         long seen = 0;
+
+         for ( int i = 0; i < mBuckets.length; i++ )
+         {
+            seen += mBuckets[i];
+
+            if ( seen >= rank && seen > 0 )
+            {
+               return Math.min(upperBoundOf(i), mMax);
+            }
+         }
+
+         return mMax;
+      }
+
+      /**
+       * Determines the bucket of a value.
+       * 
+       * @param iValue The non-negative value.
+       * 
+       * @return The index of the bucket.
+       */
+      private static int bucketOf(long iValue)
+      {
+         if ( iValue < SUB_BUCKETS )
+         {
+            return (int)iValue;
+         }
+
+         int exp = 63 - Long.numberOfLeadingZeros(iValue);
+         int sub = (int)( iValue >>> ( exp - SUB_BITS ) ) & ( SUB_BUCKETS - 1 );
+
+         return ( exp - SUB_BITS + 1 ) * SUB_BUCKETS + sub;
+      }
+
+      /**
+       * Determines the largest value held by a bucket.
+       * 
+       * @param iBucket The index of the bucket.
+       * 
+       * @return The largest value of the bucket.
+       */
+      private static long upperBoundOf(int iBucket)
+      {
+         if ( iBucket < SUB_BUCKETS )
+         {
+            return iBucket;
+         }
+
+         int exp = iBucket / SUB_BUCKETS + SUB_BITS - 1;
+         long sub = iBucket % SUB_BUCKETS;
+         int shift = exp - SUB_BITS;
+
+         return ( ( SUB_BUCKETS + sub + 1 ) << shift ) - 1;
+      }
+   }
+
+} // end ADLSimulationReport
@@ -0,0 +1,4 @@
+package org.adl.samplerte.util.jmh_generated;
+public class CodecBenchmark_jmhType extends CodecBenchmark_jmhType_B3 {
+}
+
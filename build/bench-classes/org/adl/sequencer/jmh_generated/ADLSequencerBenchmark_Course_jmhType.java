@@ -0,0 +1,4 @@
+package org.adl.sequencer.jmh_generated;
+public class ADLSequencerBenchmark_Course_jmhType extends ADLSequencerBenchmark_Course_jmhType_B3 {
+}
+
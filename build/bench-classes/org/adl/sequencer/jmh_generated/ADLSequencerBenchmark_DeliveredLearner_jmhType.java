@@ -0,0 +1,4 @@
+package org.adl.sequencer.jmh_generated;
+public class ADLSequencerBenchmark_DeliveredLearner_jmhType extends ADLSequencerBenchmark_DeliveredLearner_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.adl.sequencer.jmh_generated;
+public class ADLSequencerBenchmark_NewLearner_jmhType extends ADLSequencerBenchmark_NewLearner_jmhType_B3 {
+}
+
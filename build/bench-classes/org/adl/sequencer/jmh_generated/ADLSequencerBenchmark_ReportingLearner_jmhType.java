@@ -0,0 +1,4 @@
+package org.adl.sequencer.jmh_generated;
+public class ADLSequencerBenchmark_ReportingLearner_jmhType extends ADLSequencerBenchmark_ReportingLearner_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.adl.sequencer.jmh_generated;
+public class ADLSequencerBenchmark_ReturningLearner_jmhType extends ADLSequencerBenchmark_ReturningLearner_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.adl.sequencer.jmh_generated;
+public class ADLSequencerBenchmark_jmhType extends ADLSequencerBenchmark_jmhType_B3 {
+}
+
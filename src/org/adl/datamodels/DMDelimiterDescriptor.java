@@ -26,6 +26,7 @@ Nothing in this license impairs or restricts the author's moral rights.
 
 package org.adl.datamodels;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 
@@ -44,7 +45,8 @@ import java.io.Serializable;
  * 
  * <strong>Implementation Issues:</strong><br>
  * All fields are purposefully public to allow immediate access to known data
- * elements.<br><br>
+ * elements.  A delimiter descriptor registered with <code>DMSchema</code> is
+ * shared and is serialized as its ID only.<br><br>
  * 
  * <strong>Known Problems:</strong><br><br>
  * 
@@ -60,6 +62,19 @@ import java.io.Serializable;
 public class DMDelimiterDescriptor implements Serializable 
 {
 
+   /**
+    * The <code>serialVersionUID</code> computed for this class before 
+    * <code>mId</code> was added, so state files written by earlier versions
+    * can still be read.
+    */
+   private static final long serialVersionUID = -5126210327885974939L;
+
+   /**
+    * Describes the ID assigned by <code>DMSchema</code>, or <code>null</code>
+    * if this descriptor is not registered
+    */
+   public String mId = null;
+
    /**
     * Describes the name of this delimiter
     */
@@ -125,4 +140,16 @@ public class DMDelimiterDescriptor implements Serializable
    }
 
 
+   /**
+    * Serializes a registered descriptor as its ID.
+    * 
+    * @return The object to serialize in place of this descriptor.
+    * 
+    * @throws ObjectStreamException Never thrown.
+    */
+   protected Object writeReplace() throws ObjectStreamException
+   {
+      return ( mId == null ) ? (Object)this : new DMSchema.Ref(mId);
+   }
+
 }  // end DMDelimiterDescriptor
@@ -0,0 +1,215 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.datamodels;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <strong>Filename:</strong> DMDelta.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * Records the successful SetValue() requests processed against a SCO's
+ * run-time data since the data was last committed, so only those elements
+ * need to be sent to the LMS.  The recorded requests can be replayed against
+ * another copy of the same run-time data to bring it up to date.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * Only the most recent value of each data model element is kept.  An element
+ * keeps the position of its first SetValue() so elements that must be set
+ * before others (such as a collection record's <code>id</code>) are still
+ * replayed first.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */ 
+public class DMDelta implements Serializable
+{
+   /**
+    * The recorded SetValue() requests (<code>Change</code>), keyed by the
+    * dot-notation binding of the data model element.
+    */
+   private LinkedHashMap mChanges = null;
+
+   /**
+    * Default constructor.  Creates an empty set of changes.
+    */
+   public DMDelta()
+   {
+      mChanges = new LinkedHashMap();
+   }
+
+   /**
+    * Records a SetValue() request that was successfully processed.
+    * 
+    * @param iRequest  A dot-notation binding of the data model element.
+    * 
+    * @param iValue    The value that was set.
+    * 
+    * @param iAdmin    Indicates if this SetValue is an administrative action.
+    * 
+    * @param iSetBySCO Indicates if the value was set by the SCO.
+    */
+   public void record(String iRequest, String iValue, boolean iAdmin, 
+                      boolean iSetBySCO)
+   {
+      Change change = (Change)mChanges.get(iRequest);
+
+      if ( change == null )
+      {
+         mChanges.put(iRequest, 
+                      new Change(iRequest, iValue, iAdmin, iSetBySCO));
+      }
+      else
+      {
+         change.mValue = iValue;
+         change.mAdmin = iAdmin;
+         change.mSetBySCO = iSetBySCO;
+      }
+   }
+
+   /**
+    * Replays the recorded SetValue() requests against a SCO's run-time data.
+    * 
+    * @param ioSCOData The run-time data the changes are applied to.
+    * 
+    * @return The number of recorded requests that could not be applied.
+    */
+   public int apply(SCODataManager ioSCOData)
+   {
+      int failed = 0;
+
+      Iterator it = mChanges.values().iterator();
+
+      while ( it.hasNext() )
+      {
+         Change change = (Change)it.next();
+
+         int result = DMInterface.processSetValue(change.mRequest, 
+                                                  change.mValue, 
+                                                  change.mAdmin, 
+                                                  ioSCOData, 
+                                                  change.mSetBySCO);
+
+         if ( result != DMErrorCodes.NO_ERROR )
+         {
+            failed++;
+         }
+      }
+
+      return failed;
+   }
+
+   /**
+    * Discards all recorded changes.
+    */
+   public void clear()
+   {
+      mChanges.clear();
+   }
+
+   /**
+    * Indicates if any changes have been recorded.
+    * 
+    * @return <code>true</code> if no changes are recorded, otherwise
+    *         <code>false</code>.
+    */
+   public boolean isEmpty()
+   {
+      return mChanges.isEmpty();
+   }
+
+   /**
+    * Provides the number of data model elements that have changed.
+    * 
+    * @return The number of recorded changes.
+    */
+   public int size()
+   {
+      return mChanges.size();
+   }
+
+   /**
+    * A single recorded SetValue() request.
+    */
+   private static class Change implements Serializable
+   {
+      /**
+       * The dot-notation binding of the data model element.
+       */
+      String mRequest = null;
+
+      /**
+       * The value that was set.
+       */
+      String mValue = null;
+
+      /**
+       * Indicates if the SetValue was an administrative action.
+       */
+      boolean mAdmin = false;
+
+      /**
+       * Indicates if the value was set by the SCO.
+       */
+      boolean mSetBySCO = false;
+
+      /**
+       * Initializes a recorded SetValue() request.
+       * 
+       * @param iRequest  A dot-notation binding of the data model element.
+       * 
+       * @param iValue    The value that was set.
+       * 
+       * @param iAdmin    Indicates if this SetValue is an administrative
+       *                  action.
+       * 
+       * @param iSetBySCO Indicates if the value was set by the SCO.
+       */
+      Change(String iRequest, String iValue, boolean iAdmin, 
+             boolean iSetBySCO)
+      {
+         mRequest = iRequest;
+         mValue = iValue;
+         mAdmin = iAdmin;
+         mSetBySCO = iSetBySCO;
+      }
+   }
+
+}  // DMDelta
@@ -26,10 +26,16 @@ Nothing in this license impairs or restricts the author's moral rights.
 
 package org.adl.datamodels;
 
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Vector;
+import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.Serializable;
 
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
+
 
 /** 
  * <strong>Filename:</strong> DMElement.java<br><br>
@@ -40,6 +46,10 @@ import java.io.Serializable;
  */
 public abstract class DMElement implements Serializable
 {
+   /**
+    * The schema version of the encoded form of a data model element.
+    */
+   private static final int CODEC_VERSION = 1;
 
    /**
     * Describes the qualities of this data model element.
@@ -393,4 +403,262 @@ public abstract class DMElement implements Serializable
       return result;
    }
 
-}
\ No newline at end of file
+   /**
+    * Creates a data model element of the same data model as this one, as a
+    * child or record of this element.  Data models whose elements are
+    * decoded override this; by default no element is created.
+    * 
+    * @param iDescription The description of the new element.
+    * 
+    * @return The new element, or <code>null</code> if this element cannot 
+    *         create one.
+    */
+   protected DMElement createElement(DMElementDescriptor iDescription)
+   {
+      return null;
+   }
+
+   /**
+    * Finds the registered description equivalent to this element's 
+    * unregistered one, which was read from a file written before 
+    * descriptions were shared.
+    * 
+    * @param iBaseID The ID the description is registered under or derived 
+    *                from.
+    * 
+    * @return The registered description, or <code>null</code> if there is
+    *         none.
+    */
+   protected DMElementDescriptor matchDescription(String iBaseID)
+   {
+      return DMSchema.match(iBaseID, mDescription);
+   }
+
+   /**
+    * Writes the run-time state of this data model element, its delimiters,
+    * children and records.  The description is written as its 
+    * <code>DMSchema</code> ID.
+    * 
+    * @param ioOut   The output.
+    * 
+    * @param iBaseID The ID the description is registered under or derived 
+    *                from.  It is only used to match a description read from
+    *                a file written before descriptions were shared.
+    * 
+    * @throws IOException Thrown if the description cannot be matched to a
+    *                     registered description.
+    */
+   public void encode(CodecOutput ioOut, String iBaseID) throws IOException
+   {
+      DMElementDescriptor desc = mDescription;
+
+      if ( desc.mId == null )
+      {
+         desc = matchDescription(iBaseID);
+
+         if ( desc == null )
+         {
+            throw new InvalidObjectException("Unregistered data model " +
+                                             "descriptor: " + iBaseID);
+         }
+      }
+
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(desc.mId);
+      ioOut.writeString(mValue);
+      ioOut.writeBoolean(mInitialized);
+      ioOut.writeBoolean(mTruncSPM);
+      ioOut.writeBoolean(mSetBySCO);
+
+      if ( mDelimiters == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mDelimiters.size());
+
+         for ( int i = 0; i < mDelimiters.size(); i++ )
+         {
+            ioOut.writeString(((DMDelimiter)mDelimiters.elementAt(i)).mValue);
+         }
+      }
+
+      if ( mChildren == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mChildren.size());
+
+         // Written in binding order so equal state encodes identically
+         Object[] bindings = mChildren.keySet().toArray();
+         Arrays.sort(bindings);
+
+         for ( int i = 0; i < bindings.length; i++ )
+         {
+            DMElement child = (DMElement)mChildren.get(bindings[i]);
+
+            child.encode(ioOut, getChildID(desc, 
+                                           child.mDescription.mBinding));
+         }
+      }
+
+      if ( mRecords == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mRecords.size());
+
+         for ( int i = 0; i < mRecords.size(); i++ )
+         {
+            ((DMElement)mRecords.elementAt(i)).encode(ioOut, desc.mId + 
+               DMSchema.VARIANT_SEPARATOR + DMSchema.RECORD);
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Finds the ID of a child's description.  Children of records share the
+    * descriptions of the array's children, so the ID is not always derived
+    * from the parent's ID.
+    * 
+    * @param iDesc    The registered description of the parent.
+    * 
+    * @param iBinding The binding of the child.
+    * 
+    * @return The ID of the child's registered description.
+    */
+   private static String getChildID(DMElementDescriptor iDesc, 
+                                    String iBinding)
+   {
+      if ( iDesc.mChildren != null )
+      {
+         for ( int i = 0; i < iDesc.mChildren.size(); i++ )
+         {
+            DMElementDescriptor child = 
+               (DMElementDescriptor)iDesc.mChildren.elementAt(i);
+
+            if ( child.mBinding.equals(iBinding) && child.mId != null )
+            {
+               return child.mId;
+            }
+         }
+      }
+
+      return iDesc.mId + "." + iBinding;
+   }
+
+   /**
+    * Starts reading an encoded data model element, up to and including its
+    * description.  The element is then created from the description and its
+    * state is read by <code>decodeState()</code>.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The registered description of the element.
+    * 
+    * @throws IOException Thrown if the input is corrupt or the description 
+    *                     is unknown.
+    */
+   public static DMElementDescriptor decodeDescription(CodecInput iIn) 
+      throws IOException
+   {
+      iIn.beginRecord();
+
+      Object desc = DMSchema.resolve(iIn.readString());
+
+      if ( !(desc instanceof DMElementDescriptor) )
+      {
+         throw new InvalidObjectException("Not a data model element " + 
+                                          "descriptor");
+      }
+
+      return (DMElementDescriptor)desc;
+   }
+
+   /**
+    * Reads the run-time state of this data model element, which was created
+    * from the description returned by <code>decodeDescription()</code>.  
+    * Decoded children replace the element's initial children.
+    * 
+    * @param iIn The input.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   public void decodeState(CodecInput iIn) throws IOException
+   {
+      mValue = iIn.readString();
+      mInitialized = iIn.readBoolean();
+      mTruncSPM = iIn.readBoolean();
+      mSetBySCO = iIn.readBoolean();
+
+      int count = iIn.readInt();
+
+      for ( int i = 0; i < count; i++ )
+      {
+         String value = iIn.readString();
+
+         // Delimiters no longer described are dropped
+         if ( mDelimiters != null && i < mDelimiters.size() )
+         {
+            ((DMDelimiter)mDelimiters.elementAt(i)).mValue = value;
+         }
+      }
+
+      count = iIn.readInt();
+
+      for ( int i = 0; i < count; i++ )
+      {
+         DMElement child = decodeElement(iIn);
+
+         putChild(child.mDescription.mBinding, child);
+      }
+
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         mRecords = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            mRecords.add(decodeElement(iIn));
+         }
+      }
+
+      iIn.endRecord();
+   }
+
+   /**
+    * Reads an encoded child or record of this data model element.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The element.
+    * 
+    * @throws IOException Thrown if the input is corrupt or the element 
+    *                     cannot be created.
+    */
+   private DMElement decodeElement(CodecInput iIn) throws IOException
+   {
+      DMElementDescriptor desc = decodeDescription(iIn);
+      DMElement element = createElement(desc);
+
+      if ( element == null )
+      {
+         throw new InvalidObjectException("Cannot create data model " +
+                                          "element: " + desc.mId);
+      }
+
+      element.decodeState(iIn);
+
+      return element;
+   }
+
+}
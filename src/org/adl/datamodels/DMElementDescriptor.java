@@ -27,6 +27,7 @@ Nothing in this license impairs or restricts the author's moral rights.
 package org.adl.datamodels;
 
 import java.util.Vector;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 
 
@@ -45,7 +46,9 @@ import java.io.Serializable;
  * 
  * <strong>Implementation Issues:</strong><br>
  * All fields are purposefully public to allow immediate access to known data
- * elements.<br><br>
+ * elements.  Once a descriptor is registered with <code>DMSchema</code> it is
+ * shared by every data model instance and must not be modified; it is 
+ * serialized as its ID only.<br><br>
  * 
  * <strong>Known Problems:</strong><br><br>
  * 
@@ -60,6 +63,19 @@ import java.io.Serializable;
  */ 
 public class DMElementDescriptor implements Serializable, Cloneable  
 {
+   /**
+    * The <code>serialVersionUID</code> computed for this class before 
+    * <code>mId</code> was added, so state files written by earlier versions
+    * can still be read.
+    */
+   private static final long serialVersionUID = 5116199099585747285L;
+
+   /**
+    * Describes the ID assigned by <code>DMSchema</code>, or <code>null</code>
+    * if this descriptor is not registered
+    */
+   public String mId = null;
+
    /**
     * Describes the dot-notation binding of the data model element
     */
@@ -207,14 +223,17 @@ public class DMElementDescriptor implements Serializable, Cloneable
 
 
    /**
-    * Makes a copy of the object.
+    * Makes a copy of the object.  The copy is not registered.
     * 
     * @return Returns a clone of the current object
     */
    public Object clone() {
       try
       {
-         return super.clone();
+         DMElementDescriptor copy = (DMElementDescriptor)super.clone();
+         copy.mId = null;
+
+         return copy;
       }
       catch ( CloneNotSupportedException e )
       {
@@ -222,5 +241,17 @@ public class DMElementDescriptor implements Serializable, Cloneable
       }
    }
 
+   /**
+    * Serializes a registered descriptor as its ID.
+    * 
+    * @return The object to serialize in place of this descriptor.
+    * 
+    * @throws ObjectStreamException Never thrown.
+    */
+   protected Object writeReplace() throws ObjectStreamException
+   {
+      return ( mId == null ) ? (Object)this : new DMSchema.Ref(mId);
+   }
+
 
 }  // end DMElementDescriptor
@@ -117,4 +117,28 @@ public class DMFactory
       return dm;
    }
 
+   /**
+    * Identifies the type of a data model.
+    * 
+    * @param iDM The data model.
+    * 
+    * @return The enumerated type of the data model, as accepted by
+    *         <code>createDM()</code>, or <code>DM_UNKNOWN</code>.
+    */
+   public static int getType(DataModel iDM)
+   {
+      int type = DM_UNKNOWN;
+
+      if ( iDM instanceof SCORM_2004_DM )
+      {
+         type = DM_SCORM_2004;
+      }
+      else if ( iDM instanceof SCORM_2004_NAV_DM )
+      {
+         type = DM_SCORM_NAV;
+      }
+
+      return type;
+   }
+
 } // end DMFactory
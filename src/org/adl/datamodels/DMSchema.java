@@ -0,0 +1,549 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.datamodels;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Vector;
+
+import org.adl.datamodels.ieee.SCORM_2004_DM;
+import org.adl.datamodels.nav.SCORM_2004_NAV_DM;
+
+/**
+ * Registry of the data model element descriptors shared by every 
+ * <code>SCODataManager</code>.<br><br>
+ * 
+ * <strong>Filename:</strong> DMSchema.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * Each data model builds its descriptor tree (descriptors, delimiter
+ * descriptors and their validators) once and registers it here.  Every
+ * registered descriptor is given a stable ID derived from its dot-notation
+ * path, for example <code>cmi.interactions.learner_response</code>.  Data 
+ * model elements then share the registered descriptors, so a learner's data
+ * model holds only values.<br><br>
+ * 
+ * Descriptors that depend on run-time values (a record of an array, an
+ * interaction's responses once its type is known, a data store's access) are
+ * registered as variants of the descriptor they are derived from; their IDs 
+ * are the base ID followed by <code>#</code> and the variant key.<br><br>
+ * 
+ * A registered descriptor is serialized as its ID and resolved back to the 
+ * shared instance when it is read, so neither the descriptor tree nor the 
+ * validators are written to state files or sent to the client.  Descriptors
+ * read from state files written before IDs existed are unregistered copies;
+ * <code>match()</code> finds the registered descriptor they are equal to.
+ * <br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * IDs are derived from the data model definitions only, so they are the same
+ * in the LMS and in the client.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Registered descriptors must never be modified; derive a variant 
+ * instead.  Unregistered descriptors are still serialized in full.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */
+public class DMSchema
+{
+   /**
+    * Variant key of the descriptor of a single record of an array.
+    */
+   public static final String RECORD = "record";
+
+   /**
+    * Separates a variant key from the ID of its base descriptor.
+    */
+   public static final char VARIANT_SEPARATOR = '#';
+
+   /**
+    * The registered descriptors, keyed by ID.
+    */
+   private static HashMap sEntries = new HashMap();
+
+   /**
+    * Indicates the data models have been loaded, so their descriptors are 
+    * registered.
+    */
+   private static boolean sLoaded = false;
+
+   /**
+    * No instances; all access is static.
+    */
+   private DMSchema()
+   {
+      // Nothing to do
+   }
+
+   /**
+    * Registers a descriptor tree.  Descriptors already registered are left
+    * as they are.
+    * 
+    * @param iParentID The ID of the parent of the tree's root, usually the 
+    *                  data model's binding.
+    * 
+    * @param iDesc     The root of the tree.
+    */
+   public static synchronized void register(String iParentID, 
+                                            DMElementDescriptor iDesc)
+   {
+      registerTree(iParentID + "." + iDesc.mBinding, iDesc);
+   }
+
+   /**
+    * Registers a variant of a registered descriptor, unless that variant is
+    * already registered.
+    * 
+    * @param iBase    The descriptor the variant is derived from.
+    * 
+    * @param iKey     The variant key.
+    * 
+    * @param iVariant The variant.
+    * 
+    * @return The registered variant, or <code>iVariant</code> unregistered if 
+    *         <code>iBase</code> is not registered.
+    */
+   public static synchronized DMElementDescriptor 
+      addVariant(DMElementDescriptor iBase, String iKey,
+                 DMElementDescriptor iVariant)
+   {
+      if ( iBase.mId == null )
+      {
+         return iVariant;
+      }
+
+      String id = iBase.mId + VARIANT_SEPARATOR + iKey;
+      DMElementDescriptor existing = (DMElementDescriptor)sEntries.get(id);
+
+      if ( existing != null )
+      {
+         return existing;
+      }
+
+      registerTree(id, iVariant);
+
+      return iVariant;
+   }
+
+   /**
+    * Finds a registered variant of a descriptor.
+    * 
+    * @param iBase The descriptor the variant is derived from.
+    * 
+    * @param iKey  The variant key.
+    * 
+    * @return The variant, or <code>null</code> if it is not registered.
+    */
+   public static synchronized DMElementDescriptor 
+      getVariant(DMElementDescriptor iBase, String iKey)
+   {
+      if ( iBase.mId == null )
+      {
+         return null;
+      }
+
+      return (DMElementDescriptor)sEntries.get(iBase.mId + 
+                                               VARIANT_SEPARATOR + iKey);
+   }
+
+   /**
+    * Finds a registered descriptor or delimiter descriptor.
+    * 
+    * @param iID The ID of the descriptor.
+    * 
+    * @return The descriptor, or <code>null</code> if it is not registered.
+    */
+   public static synchronized Object get(String iID)
+   {
+      return sEntries.get(iID);
+   }
+
+   /**
+    * Finds the registered descriptor with the same definition as an 
+    * unregistered one, such as a descriptor read from a state file written
+    * before descriptors were shared.  The candidates are the descriptor 
+    * registered under the base ID and its variants.
+    * 
+    * @param iBaseID The ID the descriptor would be registered under, or 
+    *                derived from.
+    * 
+    * @param iDesc   The unregistered descriptor.
+    * 
+    * @return The first candidate with the same definition, the base 
+    *         descriptor if no candidate matches, or <code>null</code> if
+    *         nothing is registered under the base ID.
+    */
+   public static DMElementDescriptor match(String iBaseID, 
+                                           DMElementDescriptor iDesc)
+   {
+      loadDataModels();
+
+      synchronized ( DMSchema.class )
+      {
+         Object base = sEntries.get(iBaseID);
+
+         if ( !(base instanceof DMElementDescriptor) )
+         {
+            return null;
+         }
+
+         if ( sameDefinition((DMElementDescriptor)base, iDesc) )
+         {
+            return (DMElementDescriptor)base;
+         }
+
+         String prefix = iBaseID + VARIANT_SEPARATOR;
+         Iterator entries = sEntries.entrySet().iterator();
+
+         while ( entries.hasNext() )
+         {
+            Map.Entry entry = (Map.Entry)entries.next();
+            String id = (String)entry.getKey();
+
+            if ( id.startsWith(prefix) && 
+                 id.indexOf(VARIANT_SEPARATOR, prefix.length()) == -1 &&
+                 id.indexOf('.', prefix.length()) == -1 &&
+                 entry.getValue() instanceof DMElementDescriptor &&
+                 sameDefinition((DMElementDescriptor)entry.getValue(), iDesc) )
+            {
+               return (DMElementDescriptor)entry.getValue();
+            }
+         }
+
+         return (DMElementDescriptor)base;
+      }
+   }
+
+   /**
+    * Returns the number of registered descriptors and delimiter descriptors.
+    * 
+    * @return The number of registered descriptors.
+    */
+   public static synchronized int size()
+   {
+      return sEntries.size();
+   }
+
+   /**
+    * Assigns IDs to, and registers, a descriptor and all of its unregistered
+    * delimiters and children.
+    * 
+    * @param iID   The ID of the descriptor.
+    * 
+    * @param iDesc The descriptor.
+    */
+   private static void registerTree(String iID, DMElementDescriptor iDesc)
+   {
+      if ( iDesc.mId != null )
+      {
+         return;
+      }
+
+      iDesc.mId = iID;
+      sEntries.put(iID, iDesc);
+
+      if ( iDesc.mDelimiters != null )
+      {
+         for ( int i = 0; i < iDesc.mDelimiters.size(); i++ )
+         {
+            DMDelimiterDescriptor del = 
+               (DMDelimiterDescriptor)iDesc.mDelimiters.elementAt(i);
+
+            if ( del.mId == null )
+            {
+               del.mId = iID + "{" + del.mName + "}";
+               sEntries.put(del.mId, del);
+            }
+         }
+      }
+
+      if ( iDesc.mChildren != null )
+      {
+         for ( int i = 0; i < iDesc.mChildren.size(); i++ )
+         {
+            DMElementDescriptor child = 
+               (DMElementDescriptor)iDesc.mChildren.elementAt(i);
+
+            registerTree(iID + "." + child.mBinding, child);
+         }
+      }
+   }
+
+   /**
+    * Compares the definitions of two descriptors, including their delimiters
+    * and children.  Validators are compared by their serialized form.
+    * 
+    * @param iDesc  A descriptor.
+    * 
+    * @param iOther The descriptor to compare it with.
+    * 
+    * @return <code>true</code> if the descriptors define the same element,
+    *         otherwise <code>false</code>.
+    */
+   private static boolean sameDefinition(DMElementDescriptor iDesc,
+                                         DMElementDescriptor iOther)
+   {
+      if ( !same(iDesc.mBinding, iOther.mBinding) ||
+           !same(iDesc.mInitial, iOther.mInitial) ||
+           !same(iDesc.mDependentOn, iOther.mDependentOn) ||
+           iDesc.mIsReadable != iOther.mIsReadable ||
+           iDesc.mIsWriteable != iOther.mIsWriteable ||
+           iDesc.mIsUnique != iOther.mIsUnique ||
+           iDesc.mWriteOnce != iOther.mWriteOnce ||
+           iDesc.mValueSPM != iOther.mValueSPM ||
+           iDesc.mSPM != iOther.mSPM ||
+           iDesc.mOldSPM != iOther.mOldSPM ||
+           iDesc.mMaximum != iOther.mMaximum ||
+           iDesc.mShowChildren != iOther.mShowChildren ||
+           !sameValidator(iDesc.mValidator, iOther.mValidator) ||
+           size(iDesc.mDelimiters) != size(iOther.mDelimiters) ||
+           size(iDesc.mChildren) != size(iOther.mChildren) )
+      {
+         return false;
+      }
+
+      for ( int i = 0; i < size(iDesc.mDelimiters); i++ )
+      {
+         DMDelimiterDescriptor del = 
+            (DMDelimiterDescriptor)iDesc.mDelimiters.elementAt(i);
+         DMDelimiterDescriptor other = 
+            (DMDelimiterDescriptor)iOther.mDelimiters.elementAt(i);
+
+         if ( !same(del.mName, other.mName) || 
+              !same(del.mDefault, other.mDefault) ||
+              del.mValueSPM != other.mValueSPM ||
+              !sameValidator(del.mValidator, other.mValidator) )
+         {
+            return false;
+         }
+      }
+
+      for ( int i = 0; i < size(iDesc.mChildren); i++ )
+      {
+         if ( !sameDefinition(
+                 (DMElementDescriptor)iDesc.mChildren.elementAt(i),
+                 (DMElementDescriptor)iOther.mChildren.elementAt(i)) )
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Compares two validators by their serialized form.
+    * 
+    * @param iValidator A validator, or <code>null</code>.
+    * 
+    * @param iOther     The validator to compare it with, or 
+    *                   <code>null</code>.
+    * 
+    * @return <code>true</code> if the validators are configured the same,
+    *         otherwise <code>false</code>.
+    */
+   private static boolean sameValidator(Object iValidator, Object iOther)
+   {
+      if ( iValidator == null || iOther == null )
+      {
+         return iValidator == iOther;
+      }
+
+      if ( iValidator.getClass() != iOther.getClass() )
+      {
+         return false;
+      }
+
+      try
+      {
+         return Arrays.equals(serialize(iValidator), serialize(iOther));
+      }
+      catch ( IOException ioe )
+      {
+         return false;
+      }
+   }
+
+   /**
+    * Serializes an object.
+    * 
+    * @param iObject The object.
+    * 
+    * @return The serialized form.
+    * 
+    * @throws IOException Thrown if the object cannot be serialized.
+    */
+   private static byte[] serialize(Object iObject) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+      out.writeObject(iObject);
+      out.close();
+
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Compares two objects, either of which may be <code>null</code>.
+    * 
+    * @param iObject An object.
+    * 
+    * @param iOther  The object to compare it with.
+    * 
+    * @return <code>true</code> if the objects are equal.
+    */
+   private static boolean same(Object iObject, Object iOther)
+   {
+      return ( iObject == null ) ? iOther == null : iObject.equals(iOther);
+   }
+
+   /**
+    * Returns the size of a list that may be <code>null</code>.
+    * 
+    * @param iList The list.
+    * 
+    * @return The number of elements, zero for <code>null</code>.
+    */
+   private static int size(Vector iList)
+   {
+      return ( iList == null ) ? 0 : iList.size();
+   }
+
+   /**
+    * Resolves the ID of a serialized descriptor, loading the data models if
+    * needed.
+    * 
+    * @param iID The ID of the descriptor.
+    * 
+    * @return The registered descriptor.
+    * 
+    * @throws InvalidObjectException Thrown if no descriptor has the ID.
+    */
+   static Object resolve(String iID) throws InvalidObjectException
+   {
+      Object desc = get(iID);
+
+      if ( desc == null )
+      {
+         loadDataModels();
+         desc = get(iID);
+      }
+
+      if ( desc == null )
+      {
+         throw new InvalidObjectException("Unknown data model descriptor: " + 
+                                          iID);
+      }
+
+      return desc;
+   }
+
+   /**
+    * Makes sure every data model has registered its descriptors.
+    */
+   private static void loadDataModels()
+   {
+      synchronized ( DMSchema.class )
+      {
+         if ( sLoaded )
+         {
+            return;
+         }
+      }
+
+      // Loading a data model class registers its descriptors; this must not
+      // hold the registry's lock
+      try
+      {
+         Class.forName(SCORM_2004_DM.class.getName());
+         Class.forName(SCORM_2004_NAV_DM.class.getName());
+      }
+      catch ( ClassNotFoundException cnfe )
+      {
+         // Nothing to load
+      }
+
+      synchronized ( DMSchema.class )
+      {
+         sLoaded = true;
+      }
+   }
+
+   /**
+    * The serialized form of a registered descriptor or delimiter descriptor.
+    */
+   static class Ref implements Serializable
+   {
+      /**
+       * The ID of the descriptor.
+       */
+      private String mId = null;
+
+      /**
+       * Initializes a reference.
+       * 
+       * @param iID The ID of the descriptor.
+       */
+      Ref(String iID)
+      {
+         mId = iID;
+      }
+
+      /**
+       * Replaces the reference with the registered descriptor.
+       * 
+       * @return The registered descriptor.
+       * 
+       * @throws ObjectStreamException Thrown if no descriptor has the ID.
+       */
+      private Object readResolve() throws ObjectStreamException
+      {
+         return resolve(mId);
+      }
+   }
+
+} // DMSchema
@@ -26,6 +26,10 @@ Nothing in this license impairs or restricts the author's moral rights.
 
 package org.adl.datamodels;
 
+import java.io.IOException;
+
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Defines the interface to a run-time data model that is managed for a SCO.
@@ -189,5 +193,23 @@ public abstract class DataModel
     */
    public abstract void showAllElements();
 
+   /**
+    * Writes the run-time state of this data model.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if an element cannot be encoded.
+    */
+   public abstract void encode(CodecOutput ioOut) throws IOException;
+
+   /**
+    * Replaces the run-time state of this data model with the encoded state.
+    * 
+    * @param iIn The input.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   public abstract void decode(CodecInput iIn) throws IOException;
+
 
 } // end DataModel
@@ -26,10 +26,18 @@ Nothing in this license impairs or restricts the author's moral rights.
 
 package org.adl.datamodels;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
+import org.adl.util.codec.LegacyObjectInputStream;
+
 
 /**
  * <strong>Filename:</strong>SCODataManager.java<br><br>
@@ -56,11 +64,35 @@ import java.util.Hashtable;
  */
 public class SCODataManager implements Serializable
 {
+   /**
+    * The <code>serialVersionUID</code> computed for this class before 
+    * <code>mVersion</code> was added, so state files written by earlier 
+    * versions can still be read.
+    */
+   private static final long serialVersionUID = 1196905921412131404L;
+
    /**
     * Describes the set of run-time data models managed for the SCO.
     */
    private Hashtable mDataModels = null;
 
+   /**
+    * The version of the committed state this data was read from or written
+    * as.  Zero indicates the data has never been committed.
+    */
+   private long mVersion = 0;
+
+   /**
+    * The codec type code of an encoded <code>SCODataManager</code>.
+    */
+   public static final int CODEC_TYPE = 1;
+
+   /**
+    * The schema version of the encoded form of a 
+    * <code>SCODataManager</code>.
+    */
+   private static final int CODEC_VERSION = 2;
+
    /**
     * Default constructor required for serialization support. Its only action
     * is to create a null Hashtable mDataModels.
@@ -387,4 +419,196 @@ public class SCODataManager implements Serializable
       return result;
    }
 
+   /**
+    * Retrieves the version of the committed state this data was read from
+    * or written as.
+    * 
+    * @return The version, or zero if the data has never been committed.
+    */
+   public long getVersion()
+   {
+      return mVersion;
+   }
+
+   /**
+    * Assigns the version of the committed state this data is written as.
+    * 
+    * @param iVersion The version.
+    */
+   public void setVersion(long iVersion)
+   {
+      mVersion = iVersion;
+   }
+
+   /**
+    * Writes the run-time state of every data model managed for the SCO.
+    * The data models are written in the order of their binding strings, so
+    * equal data always has the same encoded form.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if a data model cannot be encoded.
+    */
+   public void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+
+      if ( mDataModels == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         Object[] bindings = mDataModels.keySet().toArray();
+         Arrays.sort(bindings);
+
+         ioOut.writeInt(bindings.length);
+
+         for ( int i = 0; i < bindings.length; i++ )
+         {
+            DataModel dm = (DataModel)mDataModels.get(bindings[i]);
+
+            ioOut.writeInt(DMFactory.getType(dm));
+            dm.encode(ioOut);
+         }
+      }
+
+      ioOut.writeLong(mVersion);
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Replaces the data models managed for the SCO with encoded ones.
+    * 
+    * @param iIn The input.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   public void decode(CodecInput iIn) throws IOException
+   {
+      int version = iIn.beginRecord();
+
+      int count = iIn.readInt();
+
+      mDataModels = ( count < 0 ) ? null : new Hashtable();
+
+      for ( int i = 0; i < count; i++ )
+      {
+         DataModel dm = DMFactory.createDM(iIn.readInt());
+
+         if ( dm == null )
+         {
+            throw new InvalidObjectException("Unknown data model");
+         }
+
+         dm.decode(iIn);
+         mDataModels.put(dm.getDMBindingString(), dm);
+      }
+
+      mVersion = ( version >= 2 ) ? iIn.readLong() : 0;
+
+      iIn.endRecord();
+   }
+
+   /**
+    * Encodes this SCO's run-time data.
+    * 
+    * @return The encoded data.
+    * 
+    * @throws IOException Thrown if the data cannot be encoded.
+    */
+   public byte[] toByteArray() throws IOException
+   {
+      CodecOutput out = new CodecOutput(CODEC_TYPE);
+
+      encode(out);
+
+      return out.toByteArray();
+   }
+
+   /**
+    * Reads a SCO's run-time data, either encoded by 
+    * <code>toByteArray()</code> or serialized by an earlier version of the
+    * Sample RTE.
+    * 
+    * @param iData The encoded or serialized data.
+    * 
+    * @return The SCO's run-time data.
+    * 
+    * @throws IOException Thrown if the data cannot be read.
+    * 
+    * @throws ClassNotFoundException Thrown if serialized data refers to an 
+    *                                unknown class.
+    */
+   public static SCODataManager fromByteArray(byte[] iData) 
+      throws IOException, ClassNotFoundException
+   {
+      if ( !CodecInput.isEncoded(iData) )
+      {
+         LegacyObjectInputStream in = 
+            new LegacyObjectInputStream(new ByteArrayInputStream(iData));
+
+         try
+         {
+            return (SCODataManager)in.readObject();
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+
+      CodecInput in = new CodecInput(iData);
+
+      if ( in.getType() != CODEC_TYPE )
+      {
+         throw new InvalidObjectException("Not SCO data");
+      }
+
+      SCODataManager data = new SCODataManager();
+      data.decode(in);
+
+      return data;
+   }
+
+   /**
+    * Reads the version of a SCO's run-time data without decoding the data 
+    * models.
+    * 
+    * @param iData The data, as returned by <code>toByteArray()</code>.
+    * 
+    * @return The version, or zero if the data was written before versions
+    *         were assigned.
+    * 
+    * @throws IOException Thrown if the data cannot be read.
+    */
+   public static long readVersion(byte[] iData) throws IOException
+   {
+      if ( !CodecInput.isEncoded(iData) )
+      {
+         return 0;
+      }
+
+      CodecInput in = new CodecInput(iData);
+
+      if ( in.getType() != CODEC_TYPE )
+      {
+         throw new InvalidObjectException("Not SCO data");
+      }
+
+      int version = in.beginRecord();
+      int count = in.readInt();
+
+      // Each data model is one record
+      for ( int i = 0; i < count; i++ )
+      {
+         in.readInt();
+         in.beginRecord();
+         in.endRecord();
+      }
+
+      return ( version >= 2 ) ? in.readLong() : 0;
+   }
+
 }  // SCODataManager
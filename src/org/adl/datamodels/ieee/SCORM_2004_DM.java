@@ -34,6 +34,7 @@ import org.adl.datamodels.DMErrorCodes;
 import org.adl.datamodels.DMDelimiterDescriptor;
 import org.adl.datamodels.DMProcessingInfo;
 import org.adl.datamodels.DMRequest;
+import org.adl.datamodels.DMSchema;
 import org.adl.datamodels.DMTimeUtility;
 import org.adl.datamodels.RequestDelimiter;
 import org.adl.datamodels.RequestToken;
@@ -47,9 +48,13 @@ import org.adl.datamodels.datatypes.SPMRangeValidator;
 import org.adl.datamodels.datatypes.URIValidator;
 import org.adl.datamodels.datatypes.VocabularyValidator;
 
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
+
 import java.util.Hashtable;
 import java.util.Vector;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 
@@ -89,32 +94,75 @@ public class SCORM_2004_DM extends DataModel implements Serializable
     */
    private String mBinding = "cmi";
 
+   /**
+    * The values of <code>cmi.interactions.n.type</code>.
+    */
+   static final String [] INTERACTION_TYPES = {"true-false", "choice", 
+      "fill-in", "long-fill-in", "matching", "performance", "sequencing", 
+      "likert", "numeric", "other"};
+
+   /**
+    * The descriptors of the top-level elements, shared by every instance.
+    */
+   private static final Vector sDescriptors = createSchema();
+
    /**
     * Describes the data model elements managed by this data model.
     */
    private Hashtable mElements = null;
 
+   /**
+    * The schema version of the encoded form of this data model.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * Default constructor required for serialization support.
     */
    public SCORM_2004_DM()
    {
+      mElements = new Hashtable();
+
+      // Every instance shares the registered descriptors
+      for ( int i = 0; i < sDescriptors.size(); i++ )
+      {
+         DMElementDescriptor desc = 
+            (DMElementDescriptor)sDescriptors.elementAt(i);
+         DMElement element = null;
+
+         if ( desc.mBinding.equals("_version") )
+         {
+            // Create the _version element
+            element = new Version("1.0");
+            element.setDescription(desc);
+         }
+         else
+         {
+            element = new SCORM_2004_DMElement(desc, null, this);
+         }
+
+         mElements.put(desc.mBinding, element);
+      }
+   }
+
+   /**
+    * Builds the descriptors of the data model's top-level elements.  This is
+    * done once; the descriptors are registered with <code>DMSchema</code> and
+    * shared by every instance.
+    * 
+    * @return The top-level descriptors.
+    */
+   private static Vector createDescriptors()
+   {
+      Vector descriptors = new Vector();
       Vector children = null;
       Vector subchildren = null;
-      SCORM_2004_DMElement element = null;
       DMElementDescriptor desc = null;
       DMDelimiterDescriptor del = null;
-      mElements = new Hashtable();
 
-
-      // Create and add the _version element to the data model
-      Version version = new Version("1.0");
-
-      // Add description of this element
+      // Add description of the _version element
       desc = new DMElementDescriptor("_version", null, null);
-      version.setDescription(desc);
-
-      mElements.put(version.getDMElementBindingString(), version);
+      descriptors.add(desc);
 
       // comments_from_learner
       children = new Vector();
@@ -145,9 +193,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
 
       desc = new DMElementDescriptor("comments_from_learner", children, 250);
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // comments_from_lms
       children = new Vector();
@@ -181,9 +228,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
 
       desc = new DMElementDescriptor("comments_from_lms", children, 100);
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // completion_status
       String [] vocab = {"unknown", "completed", "not attempted",
@@ -191,9 +237,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
       desc = new DMElementDescriptor("completion_status", "unknown",
                                      new VocabularyValidator(vocab));
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // completion_threshold
       desc = new DMElementDescriptor("completion_threshold", null,
@@ -201,9 +246,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                                             new Double(1.0)));
       desc.mIsWriteable = false;
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // credit
       String [] creditFormat = {"credit", "no-credit"};
@@ -212,9 +256,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                      new VocabularyValidator(creditFormat));
       desc.mIsWriteable = false;
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // entry
       String [] entryFormat = {"ab-initio", "resume", ""};
@@ -223,9 +266,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                      new VocabularyValidator(entryFormat));
       desc.mIsWriteable = false;
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // exit
       String [] exitFormat = {"time-out", "suspend", "logout", "normal", ""};
@@ -235,9 +277,8 @@ public class SCORM_2004_DM extends DataModel implements Serializable
       // exit is write only
       desc.mIsReadable = false;
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // interactions
       children = new Vector();
@@ -252,9 +293,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
       children.add(desc);
 
       // interaction type
-      String [] typeFormat = {"true-false", "choice", "fill-in", "long-fill-in",
-         "matching", "performance", "sequencing", "likert",
-         "numeric", "other"};
+      String [] typeFormat = INTERACTION_TYPES;
 
       desc = new DMElementDescriptor("type", null,
                                      new VocabularyValidator(typeFormat));
@@ -357,8 +396,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
       // Finish creating the interaction element and add to the datamodel
       desc = new DMElementDescriptor("interactions", children, 250);
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // launch_data
       desc = new DMElementDescriptor("launch_data", null,
@@ -366,8 +404,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                      new SPMRangeValidator(LONG_SPM));
       desc.mIsWriteable = false;
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // learner_id
       desc =
@@ -377,8 +414,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                                "long_identifier_type"));
       desc.mIsWriteable = false;
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // learner_name
       desc = new DMElementDescriptor("learner_name", null,
@@ -392,8 +428,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
       desc.mDelimiters.add(del);
       desc.mIsWriteable = false;
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // learner_preference
       children = new Vector();
@@ -428,24 +463,21 @@ public class SCORM_2004_DM extends DataModel implements Serializable
 
       //  Now add the children to learner_preference and add to the Data Model
       desc = new DMElementDescriptor("learner_preference", children);
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // location
       desc = new DMElementDescriptor("location", null,
                                      1000,
                                      new SPMRangeValidator(1000));
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // max_time_allowed
       desc = new DMElementDescriptor("max_time_allowed", null,
                                      new DurationValidator());
       desc.mIsWriteable = false;
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // mode
       String [] modeFormat = {"browse", "normal", "review"};
@@ -454,8 +486,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                      new VocabularyValidator(modeFormat));
       desc.mIsWriteable = false;
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // objectives
       children = new Vector();
@@ -549,15 +580,13 @@ public class SCORM_2004_DM extends DataModel implements Serializable
 
       // Create the objectives element and add it to the data model
       desc = new DMElementDescriptor("objectives", children, 100);
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // progress_measure
       desc = new DMElementDescriptor("progress_measure", null,
                                      new RealRangeValidator(new Double(0),
                                                             new Double(1.0)));
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // scaled_passing_score
       desc = new DMElementDescriptor("scaled_passing_score", null,
@@ -565,8 +594,7 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                                             new Double(1.0)));
       desc.mIsWriteable = false;
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // score
       children = new Vector();
@@ -594,31 +622,27 @@ public class SCORM_2004_DM extends DataModel implements Serializable
 
       // Create the score element and add it to the data model
       desc = new DMElementDescriptor("score", children);
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // session_time
       desc = new DMElementDescriptor("session_time", null,
                                      new DurationValidator());
       desc.mIsReadable = false;
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // success_status
       desc = new DMElementDescriptor("success_status", "unknown",
                                      new VocabularyValidator(successFormat));
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // suspend_data
       desc = new DMElementDescriptor("suspend_data", null,
                                      SUSPEND_DATA_SPM,
                                      new SPMRangeValidator(SUSPEND_DATA_SPM));
 
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      descriptors.add(desc);
 
       // time_limit_action
       String [] actionFormat = {"exit,message", "continue,message",
@@ -627,18 +651,85 @@ public class SCORM_2004_DM extends DataModel implements Serializable
                                      new VocabularyValidator(actionFormat));
       desc.mIsWriteable = false;
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
 
       // total_time
       desc = new DMElementDescriptor("total_time", "PT0H0M0S",
                                      new DurationValidator());
       desc.mIsWriteable = false;
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_DMElement(desc, null, this);
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
+
+      return descriptors;
+   }
+
+   /**
+    * Builds and registers the data model's descriptors, along with every 
+    * variant an element can switch to at run-time: the record of each array
+    * and the responses of each interaction type.
+    * 
+    * @return The registered top-level descriptors.
+    */
+   private static Vector createSchema()
+   {
+      Vector descriptors = createDescriptors();
+
+      for ( int i = 0; i < descriptors.size(); i++ )
+      {
+         DMElementDescriptor desc = 
+            (DMElementDescriptor)descriptors.elementAt(i);
+
+         DMSchema.register("cmi", desc);
+         addVariants(desc);
+      }
+
+      return descriptors;
+   }
+
+   /**
+    * Registers the run-time variants of a descriptor and its children.
+    * 
+    * @param iDesc A registered descriptor.
+    */
+   private static void addVariants(DMElementDescriptor iDesc)
+   {
+      if ( iDesc.mSPM != -1 && iDesc.mChildren != null )
+      {
+         DMSchema.addVariant(iDesc, DMSchema.RECORD, 
+            SCORM_2004_DMElement.createRecordDescriptor(iDesc));
+      }
+
+      if ( iDesc.mChildren == null )
+      {
+         return;
+      }
+
+      for ( int i = 0; i < iDesc.mChildren.size(); i++ )
+      {
+         DMElementDescriptor child = 
+            (DMElementDescriptor)iDesc.mChildren.elementAt(i);
+
+         addVariants(child);
+
+         if ( iDesc.mBinding.equals("interactions") && 
+              ( child.mBinding.equals("correct_responses") ||
+                child.mBinding.equals("learner_response") ) )
+         {
+            for ( int j = 0; j < INTERACTION_TYPES.length; j++ )
+            {
+               DMElementDescriptor typed = SCORM_2004_DMElement.
+                  createTypedDescriptor(child, INTERACTION_TYPES[j]);
+
+               typed = DMSchema.addVariant(child, 
+                  SCORM_2004_DMElement.TYPE_VARIANT + INTERACTION_TYPES[j], 
+                  typed);
+
+               addVariants(typed);
+            }
+         }
+      }
    }
 
    /**
@@ -917,6 +1008,69 @@ public class SCORM_2004_DM extends DataModel implements Serializable
       // At this time, there is no defined implementation for this method.
    }
 
+   /**
+    * Writes the run-time state of this data model.  The 
+    * <code>_version</code> element is not written; it never changes.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if an element cannot be encoded.
+    */
+   public void encode(CodecOutput ioOut) throws IOException
+   {
+      Vector elements = new Vector();
+
+      for ( int i = 0; i < sDescriptors.size(); i++ )
+      {
+         DMElementDescriptor desc = 
+            (DMElementDescriptor)sDescriptors.elementAt(i);
+         Object element = mElements.get(desc.mBinding);
+
+         if ( element instanceof SCORM_2004_DMElement )
+         {
+            elements.add(element);
+         }
+      }
+
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeInt(elements.size());
+
+      for ( int i = 0; i < elements.size(); i++ )
+      {
+         DMElement element = (DMElement)elements.elementAt(i);
+
+         element.encode(ioOut, mBinding + "." + 
+                        element.getDMElementBindingString());
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Replaces the run-time state of this data model with the encoded state.
+    * 
+    * @param iIn The input.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   public void decode(CodecInput iIn) throws IOException
+   {
+      iIn.beginRecord();
+
+      int count = iIn.readInt();
+
+      for ( int i = 0; i < count; i++ )
+      {
+         DMElementDescriptor desc = DMElement.decodeDescription(iIn);
+         DMElement element = new SCORM_2004_DMElement(desc, null, this);
+
+         element.decodeState(iIn);
+         mElements.put(desc.mBinding, element);
+      }
+
+      iIn.endRecord();
+   }
+
    /**
     * Performs data model specific termination.  Called when the API processes
     * a Terminate request from a SCO.
@@ -39,6 +39,7 @@ import org.adl.datamodels.DMElementDescriptor;
 import org.adl.datamodels.DMErrorCodes;
 import org.adl.datamodels.DMProcessingInfo;
 import org.adl.datamodels.DMRequest;
+import org.adl.datamodels.DMSchema;
 import org.adl.datamodels.DataModel;
 import org.adl.datamodels.RequestDelimiter;
 import org.adl.datamodels.RequestToken;
@@ -76,6 +77,12 @@ import org.adl.logging.DetailedLogMessageCollection;
 public class SCORM_2004_DMElement extends DMElement implements Serializable
 {
 
+   /**
+    * Prefix of the variant key of a descriptor specialized for an interaction
+    * type.
+    */
+   static final String TYPE_VARIANT = "type=";
+
    /** 
     * Describes the data model this element is a member of
     */
@@ -89,6 +96,61 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
       // The default constructor - no explicit functionallity defined
    }
 
+   /**
+    * Finds the registered description equivalent to this element's 
+    * unregistered one.  An interaction's responses are described by the 
+    * interaction's type, as they are when the type is set.
+    * 
+    * @param iBaseID The ID the description is registered under or derived 
+    *                from.
+    * 
+    * @return The registered description, or <code>null</code> if there is
+    *         none.
+    */
+   protected DMElementDescriptor matchDescription(String iBaseID)
+   {
+      String binding = mDescription.mBinding;
+
+      if ( mParent instanceof SCORM_2004_DMElement &&
+           ( binding.equals("correct_responses") || 
+             binding.equals("learner_response") ) )
+      {
+         SCORM_2004_DMElement parent = (SCORM_2004_DMElement)mParent;
+         Object type = ( parent.mChildren != null ) ? 
+            parent.mChildren.get("type") : null;
+         Object base = DMSchema.get(iBaseID);
+
+         if ( type instanceof SCORM_2004_DMElement && 
+              ((SCORM_2004_DMElement)type).isInitialized() && 
+              base instanceof DMElementDescriptor )
+         {
+            DMElementDescriptor desc = 
+               DMSchema.getVariant((DMElementDescriptor)base, 
+                                   TYPE_VARIANT + 
+                                   ((SCORM_2004_DMElement)type).mValue);
+
+            if ( desc != null )
+            {
+               return desc;
+            }
+         }
+      }
+
+      return super.matchDescription(iBaseID);
+   }
+
+   /**
+    * Creates a child or record of this element when its state is decoded.
+    * 
+    * @param iDescription The description of the new element.
+    * 
+    * @return The new element.
+    */
+   protected DMElement createElement(DMElementDescriptor iDescription)
+   {
+      return new SCORM_2004_DMElement(iDescription, this, mDM);
+   }
+
    /**
     * Initializes one data model element of the SCORM 2004 data model.
     * 
@@ -747,12 +809,15 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
                         if ( isWriteable || ioRequest.isAdminRequest() )
                         {
 
-                           // Create the new record
-                           DMElementDescriptor desc =
-                           (DMElementDescriptor)mDescription.clone();
+                           // Create the new record, sharing the registered
+                           // record descriptor when there is one
+                           DMElementDescriptor desc = 
+                           DMSchema.getVariant(mDescription, DMSchema.RECORD);
 
-                           desc.mOldSPM = desc.mSPM;
-                           desc.mSPM = -1;
+                           if ( desc == null )
+                           {
+                              desc = createRecordDescriptor(mDescription);
+                           }
 
                            SCORM_2004_DMElement element = 
                            new SCORM_2004_DMElement(desc, this, mDM);
@@ -1025,10 +1090,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
                   if ( curChild.mBinding.equals("correct_responses") )
                   {
 
-                     child = (DMElementDescriptor)curChild.clone();
-
-                     // Switch the SPM and data type of the correct_responses
-                     handleCorrectResponses(child);  
+                     child = getTypedDescriptor(curChild, mValue);
 
                      // Create an element of the appropriate type & replace 
                      SCORM_2004_DMElement element = 
@@ -1039,10 +1101,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
                   else if ( curChild.mBinding.equals("learner_response") )
                   {
 
-                     child = (DMElementDescriptor)curChild.clone();
-
-                     // Switch the SPM and data type of the learner_response
-                     handleLearnerResponse(child);
+                     child = getTypedDescriptor(curChild, mValue);
 
                      // Create an element of the appropriate type & replace 
                      SCORM_2004_DMElement element = 
@@ -1212,8 +1271,11 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
     * 
     * @param ioChild The <code>DMElementDescriptor</code> for the interaction
     *               element whose type is being changed.
+    * 
+    * @param iType  The interaction type.
     */
-   private void handleLearnerResponse(DMElementDescriptor ioChild)
+   private static void handleLearnerResponse(DMElementDescriptor ioChild,
+                                             String iType)
    {
 
       // We know what data model element we will be validating, so inform the
@@ -1222,24 +1284,24 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
 
       DMDelimiterDescriptor del = null;
 
-      if ( mValue.equals("true-false") )
+      if ( iType.equals("true-false") )
       {
          String [] boolVocab = {"true", "false"};
          ioChild.mValidator = new VocabularyValidator(boolVocab);
       }
-      else if ( mValue.equals("choice") )
+      else if ( iType.equals("choice") )
       {
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.MULTIPLE_CHOICE, e);
       }
-      else if ( mValue.equals("fill-in") )
+      else if ( iType.equals("fill-in") )
       {
          ioChild.mValueSPM = -2;
 
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.FILL_IN, e);
       }
-      else if ( mValue.equals("long-fill-in") )
+      else if ( iType.equals("long-fill-in") )
       {
          // Add the lang delimiter
          del = new DMDelimiterDescriptor("lang", "en",
@@ -1253,21 +1315,21 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.LONG_FILL_IN, e);
       }
-      else if ( mValue.equals("likert") )
+      else if ( iType.equals("likert") )
       {
          ioChild.mValueSPM = -2;
 
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.LIKERT, e);
       }
-      else if ( mValue.equals("matching") )
+      else if ( iType.equals("matching") )
       {
          ioChild.mValueSPM = -2;
 
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.MATCHING, e);
       }
-      else if ( mValue.equals("performance") )
+      else if ( iType.equals("performance") )
       {
          ioChild.mValueSPM = -2;
 
@@ -1275,21 +1337,21 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
          new InteractionValidator(InteractionValidator.PERFORMANCE,
                                   false, e);
       }
-      else if ( mValue.equals("sequencing") )
+      else if ( iType.equals("sequencing") )
       {
          ioChild.mValueSPM = -2;
 
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.SEQUENCING, e);
       }
-      else if ( mValue.equals("numeric") )
+      else if ( iType.equals("numeric") )
       {
          ioChild.mValueSPM = -2;
 
          ioChild.mValidator = 
          new InteractionValidator(InteractionValidator.NUMERIC, e);
       }
-      else if ( mValue.equals("other") )
+      else if ( iType.equals("other") )
       {
          ioChild.mValueSPM = DataModel.LONG_SPM;
          ioChild.mValidator = new SPMRangeValidator(DataModel.LONG_SPM);
@@ -1302,8 +1364,11 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
     * 
     * @param ioChild The <code>DMElementDescriptor</code> for the interaction
     *                element whose type is being changed.
+    * 
+    * @param iType   The interaction type.
     */ 
-   private void handleCorrectResponses(DMElementDescriptor ioChild)
+   private static void handleCorrectResponses(DMElementDescriptor ioChild,
+                                              String iType)
    {
 
       // We know what data model element we will be validating, so inform the
@@ -1326,7 +1391,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
 
       if ( pattern.mBinding.equals("pattern") )
       {
-         if ( mValue.equals("true-false") )
+         if ( iType.equals("true-false") )
          {
             ioChild.mSPM = 1;
             ioChild.mMaximum = true;
@@ -1334,7 +1399,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             String [] boolVocab = {"true", "false"};
             pattern.mValidator = new VocabularyValidator(boolVocab);
          }
-         else if ( mValue.equals("choice") )
+         else if ( iType.equals("choice") )
          {
             ioChild.mSPM = 10;
             ioChild.mMaximum = false;
@@ -1345,7 +1410,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             pattern.mValidator =
             new InteractionValidator(InteractionValidator.MULTIPLE_CHOICE, e);
          }
-         else if ( mValue.equals("fill-in") )
+         else if ( iType.equals("fill-in") )
          {
             // Add the case_matters delimiter
             String [] boolVocab = {"true", "false"};
@@ -1370,7 +1435,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             ioChild.mSPM = 5;
             ioChild.mMaximum = false;
          }
-         else if ( mValue.equals("long-fill-in") )
+         else if ( iType.equals("long-fill-in") )
          {
             // Add the case_matters delimiter
             String [] boolVocab = {"true", "false"};
@@ -1396,7 +1461,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             ioChild.mSPM = 5;
             ioChild.mMaximum = false;
          }
-         else if ( mValue.equals("likert") )
+         else if ( iType.equals("likert") )
          {
             ioChild.mSPM = 1;
             ioChild.mMaximum = true;
@@ -1406,7 +1471,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             pattern.mValidator =
             new InteractionValidator(InteractionValidator.LIKERT, e);
          }
-         else if ( mValue.equals("matching") )
+         else if ( iType.equals("matching") )
          {
             ioChild.mSPM = 5;
             ioChild.mMaximum = false;
@@ -1416,7 +1481,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             pattern.mValidator = 
             new InteractionValidator(InteractionValidator.MATCHING, false, e);
          }
-         else if ( mValue.equals("performance") )
+         else if ( iType.equals("performance") )
          {
             // Add the order_matters delimiter
             String [] boolVocab = {"true", "false"};
@@ -1435,7 +1500,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             ioChild.mSPM = 5;
             ioChild.mMaximum = false;
          }
-         else if ( mValue.equals("sequencing") )
+         else if ( iType.equals("sequencing") )
          {
             ioChild.mSPM = 5;
             ioChild.mMaximum = false;
@@ -1447,7 +1512,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             pattern.mValidator = 
             new InteractionValidator(InteractionValidator.SEQUENCING, e);
          }
-         else if ( mValue.equals("numeric") )
+         else if ( iType.equals("numeric") )
          {
             ioChild.mSPM = 1;
             ioChild.mMaximum = true;
@@ -1457,7 +1522,7 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
             pattern.mValidator = 
             new InteractionValidator(InteractionValidator.NUMERIC, e);
          }
-         else if ( mValue.equals("other") )
+         else if ( iType.equals("other") )
          {
             ioChild.mSPM = 1;
             ioChild.mMaximum = true;
@@ -1473,11 +1538,79 @@ public class SCORM_2004_DMElement extends DMElement implements Serializable
          // Really bad error condition
       }
 
-      // Replace existing descriptor
+      // Replace existing descriptor; the children are copied first so the
+      // descriptor this one was cloned from keeps its own pattern
+      ioChild.mChildren = new Vector(ioChild.mChildren);
       ioChild.mChildren.removeElementAt(0);
       ioChild.mChildren.insertElementAt(pattern, 0);
 
 
    }
 
+   /**
+    * Creates the descriptor of a single record of an array.
+    * 
+    * @param iArray The descriptor of the array.
+    * 
+    * @return The record's descriptor.
+    */
+   static DMElementDescriptor createRecordDescriptor(DMElementDescriptor iArray)
+   {
+      DMElementDescriptor desc = (DMElementDescriptor)iArray.clone();
+
+      desc.mOldSPM = desc.mSPM;
+      desc.mSPM = -1;
+
+      return desc;
+   }
+
+   /**
+    * Creates the descriptor of an interaction's correct_responses or 
+    * learner_response element for an interaction type.
+    * 
+    * @param iBase The descriptor the element has before the type is known.
+    * 
+    * @param iType The interaction type.
+    * 
+    * @return The descriptor for the type.
+    */
+   static DMElementDescriptor createTypedDescriptor(DMElementDescriptor iBase,
+                                                    String iType)
+   {
+      DMElementDescriptor desc = (DMElementDescriptor)iBase.clone();
+
+      if ( desc.mBinding.equals("correct_responses") )
+      {
+         // Switch the SPM and data type of the correct_responses
+         handleCorrectResponses(desc, iType);
+      }
+      else
+      {
+         // Switch the SPM and data type of the learner_response
+         handleLearnerResponse(desc, iType);
+      }
+
+      return desc;
+   }
+
+   /**
+    * Provides the descriptor of an interaction's correct_responses or 
+    * learner_response element for an interaction type, sharing the 
+    * registered one when there is one.
+    * 
+    * @param iBase The descriptor the element has before the type is known.
+    * 
+    * @param iType The interaction type.
+    * 
+    * @return The descriptor for the type.
+    */
+   private static DMElementDescriptor 
+      getTypedDescriptor(DMElementDescriptor iBase, String iType)
+   {
+      DMElementDescriptor desc = 
+         DMSchema.getVariant(iBase, TYPE_VARIANT + iType);
+
+      return ( desc != null ) ? desc : createTypedDescriptor(iBase, iType);
+   }
+
 }  // end SCORM_2004_DMElement
@@ -32,6 +32,7 @@ import org.adl.datamodels.DMDelimiterDescriptor;
 import org.adl.datamodels.DMRequest;
 import org.adl.datamodels.DMErrorCodes;
 import org.adl.datamodels.DMProcessingInfo;
+import org.adl.datamodels.DMSchema;
 import org.adl.datamodels.RequestToken;
 import org.adl.datamodels.DMElement;
 
@@ -42,9 +43,13 @@ import org.adl.datamodels.datatypes.URIValidator;
 import org.adl.sequencer.ADLValidRequests;
 import org.adl.sequencer.SeqNavRequests;
 
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
+
 import java.util.Hashtable;
 import java.util.Vector;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -91,6 +96,16 @@ public class SCORM_2004_NAV_DM extends DataModel implements Serializable
     * Describes the data model elements managed by this data model.
     */
    private Hashtable mElements = null;
+
+   /**
+    * The schema version of the encoded form of this data model.
+    */
+   private static final int CODEC_VERSION = 1;
+
+   /**
+    * The descriptors of the top-level elements, shared by every instance.
+    */
+   private static final Vector sDescriptors = createSchema();
    
    /**
     * Default constructor required for serialization support.  Creates a 
@@ -98,14 +113,35 @@ public class SCORM_2004_NAV_DM extends DataModel implements Serializable
     */
    public SCORM_2004_NAV_DM()
    {
+      mElements = new Hashtable();
+
+      // Every instance shares the registered descriptors
+      for ( int i = 0; i < sDescriptors.size(); i++ )
+      {
+         DMElementDescriptor desc = 
+            (DMElementDescriptor)sDescriptors.elementAt(i);
+
+         DMElement element = new SCORM_2004_NAV_DMElement(desc, null, this);
+
+         mElements.put(desc.mBinding, element);
+      }
+   }
+
+   /**
+    * Builds the descriptors of the data model's top-level elements.  This is
+    * done once; the descriptors are registered with <code>DMSchema</code> and
+    * shared by every instance.
+    * 
+    * @return The top-level descriptors.
+    */
+   private static Vector createDescriptors()
+   {
+      Vector descriptors = new Vector();
       Vector children = null;
 
-      DMElement element = null;
       DMElementDescriptor desc = null;
       DMDelimiterDescriptor del = null;
 
-      mElements = new Hashtable();
-
       children = new Vector();
 
       // request
@@ -161,10 +197,8 @@ public class SCORM_2004_NAV_DM extends DataModel implements Serializable
 
       desc = new DMElementDescriptor("nav", children);
 
-      // Create and add this element to the data model
-      element = new SCORM_2004_NAV_DMElement(desc, null, this);
-
-      mElements.put(desc.mBinding, element);
+      // Add this element to the data model
+      descriptors.add(desc);
       
       // data
       children = new Vector();
@@ -189,10 +223,70 @@ public class SCORM_2004_NAV_DM extends DataModel implements Serializable
       // adl.data
       desc = new DMElementDescriptor("data", children, DATA_SPM);
       
-      // Create and add to data model
-      element = new SCORM_2004_NAV_DMElement(desc, null, this);
-      
-      mElements.put(desc.mBinding, element);
+      // Add to data model
+      descriptors.add(desc);
+
+      return descriptors;
+   }
+
+   /**
+    * Builds and registers the data model's descriptors, along with every 
+    * variant an element can switch to at run-time: the record of each array
+    * and each access setting of each leaf element.
+    * 
+    * @return The registered top-level descriptors.
+    */
+   private static Vector createSchema()
+   {
+      Vector descriptors = createDescriptors();
+
+      for ( int i = 0; i < descriptors.size(); i++ )
+      {
+         DMElementDescriptor desc = 
+            (DMElementDescriptor)descriptors.elementAt(i);
+
+         DMSchema.register("adl", desc);
+         addVariants(desc);
+      }
+
+      return descriptors;
+   }
+
+   /**
+    * Registers the run-time variants of a descriptor and its children.
+    * 
+    * @param iDesc A registered descriptor.
+    */
+   private static void addVariants(DMElementDescriptor iDesc)
+   {
+      if ( iDesc.mChildren == null )
+      {
+         boolean [] flags = { true, false };
+
+         for ( int i = 0; i < flags.length; i++ )
+         {
+            for ( int j = 0; j < flags.length; j++ )
+            {
+               DMSchema.addVariant(iDesc, 
+                  SCORM_2004_NAV_DMElement.getAccessKey(flags[i], flags[j]),
+                  SCORM_2004_NAV_DMElement.createAccessDescriptor(iDesc, 
+                     flags[i], flags[j]));
+            }
+         }
+
+         return;
+      }
+
+      if ( iDesc.mSPM != -1 )
+      {
+         DMSchema.addVariant(iDesc, DMSchema.RECORD, 
+            SCORM_2004_NAV_DMElement.createRecordDescriptor(iDesc));
+      }
+
+      for ( int i = 0; i < iDesc.mChildren.size(); i++ )
+      {
+         addVariants((DMElementDescriptor)iDesc.mChildren.elementAt(i));
+      }
    }
 
    /**
@@ -494,6 +588,63 @@ public class SCORM_2004_NAV_DM extends DataModel implements Serializable
      // Not implemented at this time
    }
 
+   /**
+    * Writes the run-time state of this data model.  The set of valid 
+    * navigation requests is not written; the LMS provides it again each 
+    * time the SCO is initialized.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if an element cannot be encoded.
+    */
+   public void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mCurRequest);
+      ioOut.writeString(mJumpLocation);
+      ioOut.writeInt(sDescriptors.size());
+
+      for ( int i = 0; i < sDescriptors.size(); i++ )
+      {
+         DMElementDescriptor desc = 
+            (DMElementDescriptor)sDescriptors.elementAt(i);
+         DMElement element = (DMElement)mElements.get(desc.mBinding);
+
+         element.encode(ioOut, mBinding + "." + desc.mBinding);
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Replaces the run-time state of this data model with the encoded state.
+    * 
+    * @param iIn The input.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   public void decode(CodecInput iIn) throws IOException
+   {
+      iIn.beginRecord();
+
+      mCurRequest = iIn.readString();
+      mJumpLocation = iIn.readString();
+      mNavRequests = null;
+
+      int count = iIn.readInt();
+
+      for ( int i = 0; i < count; i++ )
+      {
+         DMElementDescriptor desc = DMElement.decodeDescription(iIn);
+         DMElement element = new SCORM_2004_NAV_DMElement(desc, null, this);
+
+         element.decodeState(iIn);
+         mElements.put(desc.mBinding, element);
+      }
+
+      iIn.endRecord();
+   }
+
    /**
     * Performs data model specific termination.
     * 
@@ -35,6 +35,7 @@ import org.adl.datamodels.DMDelimiterDescriptor;
 import org.adl.datamodels.DMDelimiter;
 import org.adl.datamodels.DMProcessingInfo;
 import org.adl.datamodels.DMRequest;
+import org.adl.datamodels.DMSchema;
 import org.adl.datamodels.Children;
 import org.adl.datamodels.Count;
 
@@ -73,6 +74,12 @@ import java.io.Serializable;
 public class SCORM_2004_NAV_DMElement extends DMElement implements Serializable
 {
 
+   /**
+    * Prefix of the variant key of a descriptor whose access was set through
+    * <code>_access</code>.
+    */
+   static final String ACCESS_VARIANT = "access=";
+
    /** 
     * Describes the navigation data model this element is a member of.
     */
@@ -86,6 +93,18 @@ public class SCORM_2004_NAV_DMElement extends DMElement implements Serializable
      // The default constructor does not explicitly define a functionallity   
    }
 
+   /**
+    * Creates a child or record of this element when its state is decoded.
+    * 
+    * @param iDescription The description of the new element.
+    * 
+    * @return The new element.
+    */
+   protected DMElement createElement(DMElementDescriptor iDescription)
+   {
+      return new SCORM_2004_NAV_DMElement(iDescription, this, mDM);
+   }
+
    /**
     * Constructs one data model element of this the SCORM 2004 navigation
     * data model.
@@ -656,15 +675,12 @@ public class SCORM_2004_NAV_DMElement extends DMElement implements Serializable
                   String[] value = val.getValue().split("<>");
                   if ( value.length == 2 )
                   {
-                     // had to make a copy of the description so that each
-                     // store had separate attributes 
-                     Vector dep = mDescription.mDependentOn;
-                     mDescription = new DMElementDescriptor(mDescription.mBinding, null, mDescription.mSPM, 
-                           mDescription.mValidator);
-                     
-                     mDescription.mDependentOn = dep;
-                     mDescription.mIsReadable = Boolean.valueOf(value[0]).booleanValue();
-                     mDescription.mIsWriteable = Boolean.valueOf(value[1]).booleanValue();
+                     // each store has separate attributes, so switch to the
+                     // shared description with the requested access
+                     boolean readable = Boolean.valueOf(value[0]).booleanValue();
+                     boolean writeable = Boolean.valueOf(value[1]).booleanValue();
+
+                     mDescription = getAccessDescriptor(mDescription, readable, writeable);
                      oInfo.mValue = "_access";
                   }
                   else
@@ -874,8 +890,12 @@ public class SCORM_2004_NAV_DMElement extends DMElement implements Serializable
                         // read-only and is not an admin request
                         if ( isWriteable || ioRequest.isAdminRequest() )
                         { // Create the new record
-                           DMElementDescriptor desc = (DMElementDescriptor) mDescription.clone();
-                           desc.mSPM = -1;
+                           DMElementDescriptor desc = DMSchema.getVariant(mDescription, DMSchema.RECORD);
+
+                           if ( desc == null )
+                           {
+                              desc = createRecordDescriptor(mDescription);
+                           }
 
                            DMElement element = new SCORM_2004_NAV_DMElement(desc, this, mDM);
 
@@ -1189,4 +1209,103 @@ public class SCORM_2004_NAV_DMElement extends DMElement implements Serializable
       return result;
    }
 
+   /**
+    * Creates the descriptor of a single record of an array.
+    * 
+    * @param iArray The descriptor of the array.
+    * 
+    * @return The record's descriptor.
+    */
+   static DMElementDescriptor createRecordDescriptor(DMElementDescriptor iArray)
+   {
+      DMElementDescriptor desc = (DMElementDescriptor)iArray.clone();
+      desc.mSPM = -1;
+
+      return desc;
+   }
+
+   /**
+    * Builds the variant key of a descriptor with the given access.
+    * 
+    * @param iReadable  Indicates if the element can be read.
+    * 
+    * @param iWriteable Indicates if the element can be written.
+    * 
+    * @return The variant key.
+    */
+   static String getAccessKey(boolean iReadable, boolean iWriteable)
+   {
+      return ACCESS_VARIANT + iReadable + "," + iWriteable;
+   }
+
+   /**
+    * Creates a copy of a leaf element's descriptor with the given access.
+    * 
+    * @param iBase      The element's descriptor.
+    * 
+    * @param iReadable  Indicates if the element can be read.
+    * 
+    * @param iWriteable Indicates if the element can be written.
+    * 
+    * @return The descriptor with the given access.
+    */
+   static DMElementDescriptor createAccessDescriptor(DMElementDescriptor iBase,
+                                                     boolean iReadable,
+                                                     boolean iWriteable)
+   {
+      DMElementDescriptor desc = new DMElementDescriptor(iBase.mBinding, null,
+                                                         iBase.mSPM,
+                                                         iBase.mValidator);
+
+      desc.mDependentOn = iBase.mDependentOn;
+      desc.mIsReadable = iReadable;
+      desc.mIsWriteable = iWriteable;
+
+      return desc;
+   }
+
+   /**
+    * Provides the descriptor of a leaf element with the given access, sharing
+    * the registered one when there is one.
+    * 
+    * @param iCurrent   The element's current descriptor, which may itself 
+    *                   have had its access set.
+    * 
+    * @param iReadable  Indicates if the element can be read.
+    * 
+    * @param iWriteable Indicates if the element can be written.
+    * 
+    * @return The descriptor with the given access.
+    */
+   private static DMElementDescriptor 
+      getAccessDescriptor(DMElementDescriptor iCurrent, boolean iReadable,
+                          boolean iWriteable)
+   {
+      DMElementDescriptor base = iCurrent;
+
+      // Access variants are registered against the original descriptor
+      if ( iCurrent.mId != null )
+      {
+         int idx = iCurrent.mId.indexOf(DMSchema.VARIANT_SEPARATOR + 
+                                        ACCESS_VARIANT);
+
+         if ( idx != -1 )
+         {
+            Object original = DMSchema.get(iCurrent.mId.substring(0, idx));
+
+            if ( original != null )
+            {
+               base = (DMElementDescriptor)original;
+            }
+         }
+      }
+
+      DMElementDescriptor desc = 
+         DMSchema.getVariant(base, getAccessKey(iReadable, iWriteable));
+
+      return ( desc != null ) ? desc 
+                              : createAccessDescriptor(base, iReadable, 
+                                                       iWriteable);
+   }
+
 }  // end SCORM_2004_NAV_DMElement
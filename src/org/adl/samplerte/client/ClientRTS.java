@@ -29,10 +29,13 @@ package org.adl.samplerte.client;
 import java.applet.Applet;
 import java.awt.Color;
 import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.adl.api.ecmascript.APIErrorCodes;
 import org.adl.api.ecmascript.APIErrorManager;
 import org.adl.api.ecmascript.SCORM13APIInterface;
+import org.adl.datamodels.DMDelta;
 import org.adl.datamodels.DMErrorCodes;
 import org.adl.datamodels.DMInterface;
 import org.adl.datamodels.DMProcessingInfo;
@@ -40,6 +43,7 @@ import org.adl.datamodels.SCODataManager;
 import org.adl.datamodels.nav.SCORM_2004_NAV_DM;
 import org.adl.samplerte.server.LMSCMIServletRequest;
 import org.adl.samplerte.server.LMSCMIServletResponse;
+import org.adl.samplerte.util.CommittedState;
 import org.adl.util.MessageCollection;
 import org.adl.util.debug.DebugIndicator;
 
@@ -156,6 +160,11 @@ public class ClientRTS extends Applet implements SCORM13APIInterface
     */
    private static final int NO_ERROR = 0;
 
+   /**
+    * The number of committed SCO states kept for relaunching.
+    */
+   private static final int MAX_COMMITTED_STATES = 16;
+
    /**
     * This controls display of log messages to the java console.
     */
@@ -181,6 +190,31 @@ public class ClientRTS extends Applet implements SCORM13APIInterface
     */
    private SCODataManager mSCOData = null;
 
+   /**
+    * The run-time data changed since the last successful commit.
+    */
+   private DMDelta mPendingChanges = new DMDelta();
+
+   /**
+    * The commit sequence number provided by the <code>LMSCMIServlet</code>
+    * with the last successful commit.  Zero indicates the complete run-time
+    * data must be sent.
+    */
+   private long mCommitSequence = 0;
+
+   /**
+    * The run-time data last committed by recently delivered SCOs
+    * (<code>CommittedState</code>), keyed by <code>getStateKey()</code>.  A 
+    * SCO that is launched again is only sent its data if it changed since.
+    */
+   private Map mCommittedStates = new LinkedHashMap(16, 0.75f, true)
+   {
+      protected boolean removeEldestEntry(Map.Entry iEldest)
+      {
+         return size() > MAX_COMMITTED_STATES;
+      }
+   };
+
    /**
     * Indicates if the SCO is in a 'terminated' state.
     */
@@ -461,6 +495,14 @@ setBackground(new Color(54,60,84));
          Long longObj = new Long(mNumAttempts);
          request.mNumAttempt = longObj.toString();
 
+         String stateKey = getStateKey();
+         CommittedState known = (CommittedState)mCommittedStates.get(stateKey);
+
+         if( known != null )
+         {
+            request.mKnownVersion = known.getVersion();
+         }
+
          if( _Debug )
          {
             System.out.println("Trying to get SCO Data from servlet...");
@@ -477,10 +519,35 @@ setBackground(new Color(54,60,84));
          
          
          // Get the SCODataManager from the servlet response object
-         mSCOData = response.mActivityData;
+         if( response.mNotModified )
+         {
+            mSCOData = restoreSCOData(known, response);
+
+            if( mSCOData == null )
+            {
+               if( _Debug )
+               {
+                  System.out.println("Committed state does not match, " + 
+                                     "requesting complete run-time data");
+               }
+
+               mCommittedStates.remove(stateKey);
+
+               request.mKnownVersion = 0;
+               response = proxy.postLMSRequest(request);
+               mSCOData = response.mActivityData;
+            }
+         }
+         else
+         {
+            mSCOData = response.mActivityData;
+         }
+
          SCORM_2004_NAV_DM navDM = (SCORM_2004_NAV_DM)mSCOData.getDataModel("adl");
 
          navDM.setValidRequests(response.mValidRequests);
+         mPendingChanges.clear();
+         mCommitSequence = response.mCommitSequence;
          mInitializedState = true;
 
          // No errors were detected
@@ -600,8 +667,7 @@ setBackground(new Color(54,60,84));
          if ( mLMSSuspendAllPushed || mNextButtonPushed || mPreviousButtonPushed ||
                mQuitButtonPushed || mTOCPushed )
          {
-            int err = DMInterface.processSetValue("adl.nav.request", mUserNavRequest, 
-                  true, mSCOData);
+            int err = processSetValue("adl.nav.request", mUserNavRequest, true, false);
          }
          
          //check if adl.nav.request is equal to suspend all, or if the suspend button was pushed, set cmi.exit equal to suspend.
@@ -617,7 +683,7 @@ setBackground(new Color(54,60,84));
             if ( check != 0 || !pi.mValue.equals("log-out") )
             {
                // Process 'SET' on cmi.exit
-               DMInterface.processSetValue("cmi.exit", "suspend", true, mSCOData);
+               processSetValue("cmi.exit", "suspend", true, false);
             }
          }
 
@@ -1131,7 +1197,7 @@ setBackground(new Color(54,60,84));
 
       // Send off
       // Process 'SET'
-      int dmErrorCode = DMInterface.processSetValue(iDataModelElement, setValue, false, mSCOData, true);
+      int dmErrorCode = processSetValue(iDataModelElement, setValue, false, true);
 
       // Set the LMS Error Manager from the DataModel Manager
       mLMSErrorManager.setCurrentErrorCode(dmErrorCode);
@@ -1274,9 +1340,20 @@ setBackground(new Color(54,60,84));
             // Prepare the request before it goes across the socket
             LMSCMIServletRequest request = new LMSCMIServletRequest();
 
-            request.mActivityData = mSCOData;
+            // Only send the changed elements if the servlet holds our data
+            if( mCommitSequence > 0 )
+            {
+               request.mDelta = mPendingChanges;
+               request.mCommitSequence = mCommitSequence;
+               request.mRequestType = LMSCMIServletRequest.TYPE_SET_DELTA;
+            }
+            else
+            {
+               request.mActivityData = mSCOData;
+               request.mRequestType = LMSCMIServletRequest.TYPE_SET;
+            }
+
             request.mIsFinished = mTerminateCalled;
-            request.mRequestType = LMSCMIServletRequest.TYPE_SET;
             request.mCourseID = mCourseID;
             request.mStudentID = mUserID;
             request.mUserName = mUserName;
@@ -1292,6 +1369,21 @@ setBackground(new Color(54,60,84));
 
             LMSCMIServletResponse response = proxy.postLMSRequest(request);
 
+            if( response.mError.equals("OK") && response.mResyncRequired )
+            {
+               if( _Debug )
+               {
+                  System.out.println("Servlet could not merge changes, " + 
+                                     "sending complete run-time data");
+               }
+
+               request.mDelta = null;
+               request.mActivityData = mSCOData;
+               request.mRequestType = LMSCMIServletRequest.TYPE_SET;
+
+               response = proxy.postLMSRequest(request);
+            }
+
             if( !response.mError.equals("OK") )
             {
 
@@ -1308,6 +1400,15 @@ setBackground(new Color(54,60,84));
 
                result = STRING_TRUE;
 
+               // The servlet now holds everything set so far
+               mPendingChanges.clear();
+               mCommitSequence = response.mCommitSequence;
+
+               if( request.mIsFinished )
+               {
+                  rememberCommittedState(response);
+               }
+
                SCORM_2004_NAV_DM navDM = (SCORM_2004_NAV_DM)mSCOData.getDataModel("adl");
 
                // Update the ADLValidRequests object from the servlet
@@ -1347,6 +1448,132 @@ setBackground(new Color(54,60,84));
       return result;
    }
 
+   /**
+    * Processes a SetValue() against the local run-time data and records the
+    * change so it is sent to the LMS with the next commit.
+    *
+    * @param iDataModelElement The dot-notation binding of the data model 
+    *                          element.
+    *
+    * @param iValue            The value to set.
+    *
+    * @param iAdmin            Indicates if this SetValue is an administrative
+    *                          action.
+    *
+    * @param iSetBySCO         Indicates if the value is being set by the SCO.
+    *
+    * @return The data model error code indicating the result of the request.
+    */
+   private int processSetValue(String iDataModelElement, String iValue, 
+                               boolean iAdmin, boolean iSetBySCO)
+   {
+      int dmErrorCode = DMInterface.processSetValue(iDataModelElement, iValue, 
+                                                    iAdmin, mSCOData, iSetBySCO);
+
+      if( dmErrorCode == NO_ERROR )
+      {
+         mPendingChanges.record(iDataModelElement, iValue, iAdmin, iSetBySCO);
+      }
+
+      return dmErrorCode;
+   }
+
+   /**
+    * Builds the key the committed state of the current SCO attempt is kept
+    * under.
+    *
+    * @return The key.
+    */
+   private String getStateKey()
+   {
+      return mUserID + "/" + mCourseID + "/" + mStateID + "/" + mNumAttempts;
+   }
+
+   /**
+    * Rebuilds the run-time data delivered by a <code>TYPE_INIT</code> 
+    * request from the committed state held by the client.
+    *
+    * @param iKnown    The committed state held for the SCO attempt.
+    *
+    * @param iResponse The servlet's response, carrying the changes made to
+    *                  the committed state before delivery.
+    *
+    * @return The run-time data, or <code>null</code> if it does not match
+    *         the data the servlet delivered.
+    */
+   private SCODataManager restoreSCOData(CommittedState iKnown, 
+                                         LMSCMIServletResponse iResponse)
+   {
+      try
+      {
+         SCODataManager scoData = iKnown.getData();
+
+         if( iResponse.mDelta != null && iResponse.mDelta.apply(scoData) != 0 )
+         {
+            return null;
+         }
+
+         if( CommittedState.checksum(scoData.toByteArray()) != 
+             iResponse.mStateChecksum )
+         {
+            return null;
+         }
+
+         return scoData;
+      }
+      catch( Exception e )
+      {
+         return null;
+      }
+   }
+
+   /**
+    * Keeps the run-time data of the current SCO attempt as the servlet 
+    * committed it, so relaunching the SCO does not need it sent again.  The
+    * servlet terminates the data before writing it, so the same is done to
+    * a copy here; the copy is only kept if its checksum matches the one
+    * reported by the servlet.
+    *
+    * @param iResponse The servlet's response to the final commit.
+    */
+   private void rememberCommittedState(LMSCMIServletResponse iResponse)
+   {
+      String stateKey = getStateKey();
+
+      mCommittedStates.remove(stateKey);
+
+      if( iResponse.mStateVersion == 0 )
+      {
+         return;
+      }
+
+      try
+      {
+         SCODataManager committed = 
+            SCODataManager.fromByteArray(mSCOData.toByteArray());
+
+         committed.terminate();
+         committed.setVersion(iResponse.mStateVersion);
+
+         byte[] data = committed.toByteArray();
+
+         if( CommittedState.checksum(data) == iResponse.mStateChecksum )
+         {
+            mCommittedStates.put(stateKey, 
+                                 new CommittedState(iResponse.mStateVersion,
+                                                    data));
+         }
+      }
+      catch( Exception e )
+      {
+         // Nothing is kept; the next launch is sent the data
+         if( _Debug )
+         {
+            System.out.println("Could not keep committed state: " + e);
+         }
+      }
+   }
+
    /**
 
   /**
@@ -1602,7 +1829,7 @@ setBackground(new Color(54,60,84));
          mUserNavRequest = "_none_";
          Commit("");
          int dmErrorCode = 0;
-         dmErrorCode = DMInterface.processSetValue("adl.nav.request", "_none_", true, mSCOData);         
+         dmErrorCode = processSetValue("adl.nav.request", "_none_", true, false);         
       }      
    }
    
@@ -1616,7 +1843,7 @@ setBackground(new Color(54,60,84));
          mPreviousButtonPushed = true;
          mUserNavRequest = "previous";
          int dmErrorCode = 0;
-         dmErrorCode = DMInterface.processSetValue("adl.nav.request", "_none_", true, mSCOData);         
+         dmErrorCode = processSetValue("adl.nav.request", "_none_", true, false);         
       }      
    }
    
@@ -1630,7 +1857,7 @@ setBackground(new Color(54,60,84));
          mNextButtonPushed = true;
          mUserNavRequest = "continue";
          int dmErrorCode = 0;
-         dmErrorCode = DMInterface.processSetValue("adl.nav.request", "_none_", true, mSCOData);         
+         dmErrorCode = processSetValue("adl.nav.request", "_none_", true, false);         
       }      
    }
 
@@ -1645,7 +1872,7 @@ setBackground(new Color(54,60,84));
          int dmErrorCode = 0;    
          mUserNavRequest = "{target=" + iScoID + "}choice";
          
-         dmErrorCode = DMInterface.processSetValue("adl.nav.request", "_none_", true, mSCOData);
+         dmErrorCode = processSetValue("adl.nav.request", "_none_", true, false);
       }      
    }
    
@@ -0,0 +1,809 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Logger;
+
+import org.adl.sequencer.SeqActivityTree;
+import org.adl.util.DurableFiles;
+import org.adl.util.PhaseTimer;
+import org.adl.util.codec.CodecInput;
+
+/**
+ * <strong>Filename:</strong> ActivityTreeCache.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Maintains a bounded, in-memory set of learner activity trees
+ * (<code>SeqActivityTree</code>) keyed by learner and course.  Trees are
+ * loaded on the first request and are served from memory afterwards.  The
+ * learner's <code>serialize.obj</code> file holds the learner's tracking
+ * state, which is applied to the course's shared definition 
+ * (<code>CourseDefinitions</code>); files holding a complete tree, written
+ * by earlier versions, are still read.  Trees that are modified
+ * are marked dirty and written back to the file system by a background
+ * flush, when they are evicted, or when the cache is shut down.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition
+ * Sample RTE.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The least recently used tree is evicted once the number of cached trees
+ * exceeds the configured maximum.  A dirty tree that is evicted stays
+ * reachable until the background flush has written it.  The cached tree is
+ * the live object handed to every caller; callers must hold the learner's
+ * lock (<code>LearnerLocks</code>) while the tree is being sequenced, and the
+ * flush does the same while it serializes the tree.  A tree is written to
+ * a temporary file which is renamed over the learner's file
+ * (<code>DurableFiles</code>), so a crash leaves the old or the new 
+ * tree.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br>
+ * Changes made to a tree are not on disk until the tree is flushed.<br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition</li>
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class ActivityTreeCache
+{
+   /**
+    * The default maximum number of activity trees held in memory.
+    */
+   public static final int DEFAULT_MAX_ENTRIES = 500;
+
+   /**
+    * The default interval, in milliseconds, between write-behind flushes.
+    */
+   public static final long DEFAULT_FLUSH_INTERVAL = 5000L;
+
+   /**
+    * The name of the file each learner's activity tree is persisted in.
+    */
+   private static final String TREE_FILE = "serialize.obj";
+
+   /**
+    * The name of the file each learner's data store collection is persisted
+    * in.
+    */
+   private static final String DATA_STORE_FILE = "DS.obj";
+
+   /**
+    * This string contains the name of the SampleRTEFiles directory.
+    */
+   private static final String SRTEFILESDIR = "SCORM4EDSampleRTE111Files";
+
+   /**
+    * The single instance shared by the servlets and JSPs of the Sample RTE.
+    */
+   private static ActivityTreeCache sInstance = null;
+
+   /**
+    * The cached entries, in least recently used order.
+    */
+   private LinkedHashMap mEntries = null;
+
+   /**
+    * Dirty entries that have been evicted but not yet written, keyed like
+    * <code>mEntries</code>.
+    */
+   private Map mEvicted = null;
+
+   /**
+    * The directory holding each learner's course directories.
+    */
+   private String mRoot = null;
+
+   /**
+    * The maximum number of activity trees held in memory.
+    */
+   private int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+   /**
+    * The interval, in milliseconds, between write-behind flushes.
+    */
+   private long mFlushInterval = DEFAULT_FLUSH_INTERVAL;
+
+   /**
+    * The background timer performing the write-behind flushes.
+    */
+   private Timer mFlushTimer = null;
+
+   /**
+    * The number of requests satisfied from memory.
+    */
+   private long mHits = 0;
+
+   /**
+    * The number of requests that required the tree to be read from disk.
+    */
+   private long mMisses = 0;
+
+   /**
+    * The number of trees removed from memory to honor the size bound.
+    */
+   private long mEvictions = 0;
+
+   /**
+    * The number of dirty trees written to disk.
+    */
+   private long mFlushes = 0;
+
+   /**
+    * The number of dirty trees that could not be written to disk.
+    */
+   private long mFlushErrors = 0;
+
+   /**
+    * Provides the activity tree cache shared by the Sample RTE.
+    *
+    * @return The shared <code>ActivityTreeCache</code>.
+    */
+   public static synchronized ActivityTreeCache getInstance()
+   {
+      if ( sInstance == null )
+      {
+         sInstance = new ActivityTreeCache(DEFAULT_MAX_ENTRIES, 
+                                           DEFAULT_FLUSH_INTERVAL);
+      }
+
+      return sInstance;
+   }
+
+   /**
+    * Initializes an activity tree cache.
+    *
+    * @param iMaxEntries    The maximum number of trees held in memory.
+    *
+    * @param iFlushInterval The interval, in milliseconds, between write-behind
+    *                       flushes.
+    */
+   public ActivityTreeCache(int iMaxEntries, long iFlushInterval)
+   {
+      this(iMaxEntries, iFlushInterval, File.separator + SRTEFILESDIR);
+   }
+
+   /**
+    * Initializes an activity tree cache over a given directory.
+    *
+    * @param iMaxEntries    The maximum number of trees held in memory.
+    *
+    * @param iFlushInterval The interval, in milliseconds, between write-behind
+    *                       flushes.
+    *
+    * @param iRoot          The directory holding each learner's course 
+    *                       directories.
+    */
+   ActivityTreeCache(int iMaxEntries, long iFlushInterval, String iRoot)
+   {
+      mRoot = iRoot;
+      mEntries = new LinkedHashMap(16, 0.75f, true);
+      mEvicted = new HashMap();
+
+      configure(iMaxEntries, iFlushInterval);
+   }
+
+   /**
+    * Changes the size bound and flush interval of this cache.  Trees beyond
+    * the new bound are evicted immediately.
+    *
+    * @param iMaxEntries    The maximum number of trees held in memory.
+    *
+    * @param iFlushInterval The interval, in milliseconds, between write-behind
+    *                       flushes.
+    */
+   public synchronized void configure(int iMaxEntries, long iFlushInterval)
+   {
+      mMaxEntries = ( iMaxEntries > 0 ) ? iMaxEntries : 1;
+      mFlushInterval = ( iFlushInterval > 0 ) ? iFlushInterval 
+                                              : DEFAULT_FLUSH_INTERVAL;
+
+      if ( mFlushTimer != null )
+      {
+         mFlushTimer.cancel();
+      }
+
+      mFlushTimer = new Timer(true);
+      mFlushTimer.schedule(new TimerTask()
+      {
+         public void run()
+         {
+            flushAll();
+         }
+      }, mFlushInterval, mFlushInterval);
+
+      evictOverflow();
+   }
+
+   /**
+    * Retrieves the activity tree of a learner for a course, reading it from
+    * the file system if it is not already held in memory.  The caller should
+    * hold the learner's lock (<code>LearnerLocks</code>).
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The learner's activity tree.
+    *
+    * @throws IOException Thrown if the tree can not be read.
+    *
+    * @throws ClassNotFoundException Thrown if the persisted tree can not be
+    *                                deserialized.
+    */
+   public SeqActivityTree getTree(String iUserID, String iCourseID) 
+      throws IOException, ClassNotFoundException
+   {
+      String key = getKey(iUserID, iCourseID);
+
+      synchronized( this )
+      {
+         Entry entry = (Entry)mEntries.get(key);
+
+         if ( entry == null )
+         {
+            // An evicted tree that has not been written yet is still current
+            entry = (Entry)mEvicted.remove(key);
+
+            if ( entry != null )
+            {
+               mEntries.put(key, entry);
+               evictOverflow();
+            }
+         }
+
+         if ( entry != null )
+         {
+            mHits++;
+
+            return entry.mTree;
+         }
+
+         mMisses++;
+      }
+
+      SeqActivityTree tree = readTree(iUserID, iCourseID);
+
+      synchronized( this )
+      {
+         Entry entry = (Entry)mEntries.get(key);
+
+         // Another request may have loaded the tree while it was being read
+         if ( entry != null )
+         {
+            return entry.mTree;
+         }
+
+         entry = new Entry(iUserID, iCourseID, tree);
+         mEntries.put(key, entry);
+
+         evictOverflow();
+      }
+
+      return tree;
+   }
+
+   /**
+    * Records that the activity tree of a learner for a course has changed.
+    * The tree replaces any tree currently cached for the learner and course,
+    * and is written to the file system by the next flush.  The caller should
+    * hold the learner's lock (<code>LearnerLocks</code>).
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param iTree     The learner's updated activity tree.
+    */
+   public synchronized void putTree(String iUserID, String iCourseID, 
+                                    SeqActivityTree iTree)
+   {
+      String key = getKey(iUserID, iCourseID);
+
+      Entry entry = (Entry)mEntries.get(key);
+
+      if ( entry == null )
+      {
+         mEvicted.remove(key);
+
+         entry = new Entry(iUserID, iCourseID, iTree);
+         mEntries.put(key, entry);
+      }
+      else
+      {
+         entry.mTree = iTree;
+      }
+
+      setDataStoreLocation(iUserID, iCourseID, iTree);
+      entry.mDirty = true;
+
+      evictOverflow();
+   }
+
+   /**
+    * Discards the cached activity tree of a learner for a course without
+    * writing it to the file system.  This is used when the persisted tree is
+    * replaced or removed outside of the cache (registration changes).
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    */
+   public synchronized void invalidate(String iUserID, String iCourseID)
+   {
+      String key = getKey(iUserID, iCourseID);
+
+      mEntries.remove(key);
+      mEvicted.remove(key);
+   }
+
+   /**
+    * Writes every dirty activity tree to the file system.
+    */
+   public void flushAll()
+   {
+      List dirty = new ArrayList();
+
+      synchronized( this )
+      {
+         dirty.addAll(mEvicted.values());
+
+         Iterator it = mEntries.values().iterator();
+
+         while ( it.hasNext() )
+         {
+            Entry entry = (Entry)it.next();
+
+            if ( entry.mDirty )
+            {
+               dirty.add(entry);
+            }
+         }
+      }
+
+      flushEntries(dirty);
+   }
+
+   /**
+    * Stops the background flush and writes every dirty activity tree to the
+    * file system.
+    */
+   public void shutdown()
+   {
+      synchronized( this )
+      {
+         if ( mFlushTimer != null )
+         {
+            mFlushTimer.cancel();
+            mFlushTimer = null;
+         }
+      }
+
+      flushAll();
+   }
+
+   /**
+    * Provides the number of requests satisfied from memory.
+    *
+    * @return The number of cache hits.
+    */
+   public synchronized long getHits()
+   {
+      return mHits;
+   }
+
+   /**
+    * Provides the number of requests that required a tree to be read from
+    * the file system.
+    *
+    * @return The number of cache misses.
+    */
+   public synchronized long getMisses()
+   {
+      return mMisses;
+   }
+
+   /**
+    * Provides the number of trees removed from memory to honor the size
+    * bound.
+    *
+    * @return The number of evictions.
+    */
+   public synchronized long getEvictions()
+   {
+      return mEvictions;
+   }
+
+   /**
+    * Provides the number of dirty trees written to the file system.
+    *
+    * @return The number of flushed trees.
+    */
+   public synchronized long getFlushes()
+   {
+      return mFlushes;
+   }
+
+   /**
+    * Provides the number of dirty trees that could not be written.
+    *
+    * @return The number of failed flushes.
+    */
+   public synchronized long getFlushErrors()
+   {
+      return mFlushErrors;
+   }
+
+   /**
+    * Provides the number of trees currently held in memory.
+    *
+    * @return The number of cached trees.
+    */
+   public synchronized int getSize()
+   {
+      return mEntries.size();
+   }
+
+   /**
+    * Provides the maximum number of trees held in memory.
+    *
+    * @return The size bound of this cache.
+    */
+   public synchronized int getMaxEntries()
+   {
+      return mMaxEntries;
+   }
+
+   /**
+    * Describes the current state of the cache counters.
+    *
+    * @return A one-line summary of the cache counters.
+    */
+   public synchronized String getStatistics()
+   {
+      return "size=" + mEntries.size() + "/" + mMaxEntries +
+             " hits=" + mHits + " misses=" + mMisses +
+             " evictions=" + mEvictions + " flushes=" + mFlushes +
+             " flushErrors=" + mFlushErrors;
+   }
+
+   /**
+    * Removes least recently used entries until the size bound is honored.
+    * Dirty entries are parked until the background flush writes them; they
+    * are never written here because the caller may hold another learner's
+    * lock.  Must be called while holding the lock on this cache.
+    */
+   private void evictOverflow()
+   {
+      boolean parked = false;
+
+      Iterator it = mEntries.entrySet().iterator();
+
+      while ( mEntries.size() > mMaxEntries && it.hasNext() )
+      {
+         Map.Entry next = (Map.Entry)it.next();
+         Entry entry = (Entry)next.getValue();
+
+         it.remove();
+         mEvictions++;
+
+         if ( entry.mDirty )
+         {
+            mEvicted.put(next.getKey(), entry);
+            parked = true;
+         }
+      }
+
+      if ( parked && mFlushTimer != null )
+      {
+         mFlushTimer.schedule(new TimerTask()
+         {
+            public void run()
+            {
+               flushAll();
+            }
+         }, 0);
+      }
+   }
+
+   /**
+    * Writes a set of entries to the file system.  Each entry is written while
+    * holding its learner's lock, one learner at a time.
+    *
+    * @param iEntries The entries (<code>Entry</code>) to write.
+    */
+   private void flushEntries(List iEntries)
+   {
+      for ( int i = 0; i < iEntries.size(); i++ )
+      {
+         Entry entry = (Entry)iEntries.get(i);
+         String key = getKey(entry.mUserID, entry.mCourseID);
+
+         Lock lock = LearnerLocks.getInstance().getLock(entry.mUserID, 
+                                                        entry.mCourseID);
+         lock.lock();
+
+         try
+         {
+            synchronized( this )
+            {
+               // Skip trees that were invalidated or replaced meanwhile
+               if ( mEntries.get(key) != entry && mEvicted.get(key) != entry )
+               {
+                  continue;
+               }
+            }
+
+            if ( entry.mDirty )
+            {
+               entry.mDirty = false;
+
+               writeTree(entry.mUserID, entry.mCourseID, entry.mTree);
+
+               synchronized( this )
+               {
+                  mFlushes++;
+               }
+            }
+
+            synchronized( this )
+            {
+               if ( mEvicted.get(key) == entry )
+               {
+                  mEvicted.remove(key);
+               }
+            }
+         }
+         catch ( IOException ioe )
+         {
+            Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
+            logger.severe("Could not flush activity tree for " + 
+                          entry.mUserID + " / " + entry.mCourseID);
+            logger.severe(ioe.toString());
+
+            synchronized( this )
+            {
+               mFlushErrors++;
+            }
+
+            // Keep the change so it is retried by the next flush
+            entry.mDirty = true;
+         }
+         finally
+         {
+            lock.unlock();
+         }
+      }
+   }
+
+   /**
+    * Reads a learner's activity tree from the file system.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The deserialized activity tree.
+    *
+    * @throws IOException Thrown if the tree can not be read.
+    *
+    * @throws ClassNotFoundException Thrown if the tree can not be
+    *                                deserialized.
+    */
+   private SeqActivityTree readTree(String iUserID, String iCourseID) 
+      throws IOException, ClassNotFoundException
+   {
+      FileInputStream fi = new FileInputStream(getPath(iUserID, iCourseID, 
+                                                       TREE_FILE));
+      byte[] data = null;
+      int phase = PhaseTimer.enter(PhaseTimer.FILE_IO);
+
+      try
+      {
+         data = CodecInput.readAll(fi);
+      }
+      finally
+      {
+         fi.close();
+         PhaseTimer.exit(phase);
+      }
+
+      SeqActivityTree definition = null;
+
+      if ( SeqActivityTree.isTrackingData(data) )
+      {
+         definition = CourseDefinitions.getInstance().getDefinition(iCourseID);
+      }
+
+      phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+      try
+      {
+         SeqActivityTree tree = null;
+
+         if ( definition != null )
+         {
+            tree = SeqActivityTree.fromTrackingByteArray(definition, data);
+         }
+         else
+         {
+            tree = SeqActivityTree.fromByteArray(data);
+         }
+
+         setDataStoreLocation(iUserID, iCourseID, tree);
+
+         return tree;
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+   }
+
+   /**
+    * Writes a learner's activity tree to the file system.  Only the tracking
+    * state is written, unless the course's definition is not available.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param iTree     The activity tree to write.
+    *
+    * @throws IOException Thrown if the tree can not be written.
+    */
+   private void writeTree(String iUserID, String iCourseID, 
+                          SeqActivityTree iTree) throws IOException
+   {
+      byte[] data = null;
+
+      if ( CourseDefinitions.getInstance().hasDefinition(iCourseID) )
+      {
+         data = iTree.toTrackingByteArray();
+      }
+      else
+      {
+         // Without the course's definition the tree could not be read back
+         data = iTree.toByteArray();
+      }
+
+      // Replace the file whole, so a crash never leaves a partial tree
+      DurableFiles.write(new File(getPath(iUserID, iCourseID, TREE_FILE)), 
+                         data);
+   }
+
+   /**
+    * Points an activity tree at its learner's data store collection.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param ioTree    The learner's activity tree.
+    */
+   private void setDataStoreLocation(String iUserID, String iCourseID, 
+                                     SeqActivityTree ioTree)
+   {
+      if ( ioTree != null && ioTree.getDataStoreLocation() == null )
+      {
+         ioTree.setDataStoreLocation(getPath(iUserID, iCourseID, 
+                                             DATA_STORE_FILE));
+      }
+   }
+
+   /**
+    * Builds the path of a file in a learner's course directory.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param iFile     The name of the file.
+    *
+    * @return The path of the file.
+    */
+   private String getPath(String iUserID, String iCourseID, String iFile)
+   {
+      return mRoot + File.separator + iUserID + File.separator + 
+             iCourseID + File.separator + iFile;
+   }
+
+   /**
+    * Builds the cache key of a learner and course.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The key identifying the pair.
+    */
+   private static String getKey(String iUserID, String iCourseID)
+   {
+      return iUserID + File.separator + iCourseID;
+   }
+
+   /**
+    * A cached activity tree and its write-behind state.
+    */
+   private static class Entry
+   {
+      /**
+       * The ID of the learner owning the tree.
+       */
+      String mUserID = null;
+
+      /**
+       * The ID of the course the tree belongs to.
+       */
+      String mCourseID = null;
+
+      /**
+       * The cached activity tree.
+       */
+      SeqActivityTree mTree = null;
+
+      /**
+       * Indicates the tree has changed since it was last written.
+       */
+      volatile boolean mDirty = false;
+
+      /**
+       * Initializes a cache entry.
+       *
+       * @param iUserID   The ID of the learner.
+       *
+       * @param iCourseID The ID of the course.
+       *
+       * @param iTree     The activity tree.
+       */
+      Entry(String iUserID, String iCourseID, SeqActivityTree iTree)
+      {
+         mUserID = iUserID;
+         mCourseID = iCourseID;
+         mTree = iTree;
+      }
+   }
+
+} // ActivityTreeCache
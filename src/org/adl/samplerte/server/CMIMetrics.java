@@ -0,0 +1,253 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <strong>Filename:</strong> CMIMetrics.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Collects the metrics of the requests handled by <code>LMSCMIServlet</code>,
+ * one <code>CMIRequestMetrics</code> per request type.  The metrics are
+ * published as MBeans named 
+ * <code>org.adl.samplerte:type=LMSCMIServlet,request=&lt;type&gt;</code>
+ * and by <code>MetricsServlet</code>.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition
+ * Sample RTE.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * Requests that could not be read, or are of a type the servlet does not
+ * handle, are recorded as <code>unknown</code>.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class CMIMetrics
+{
+   /**
+    * The domain and type of the MBean names.
+    */
+   private static final String MBEAN_PREFIX = 
+      "org.adl.samplerte:type=LMSCMIServlet,request=";
+
+   /**
+    * The request types with their own metrics.
+    */
+   private static final int[] TYPES = 
+      { LMSCMIServletRequest.TYPE_INIT, LMSCMIServletRequest.TYPE_GET, 
+        LMSCMIServletRequest.TYPE_SET, LMSCMIServletRequest.TYPE_SET_DELTA,
+        LMSCMIServletRequest.TYPE_TIMEOUT };
+
+   /**
+    * The names of the request types, in the order of <code>TYPES</code>,
+    * followed by the name used for all other requests.
+    */
+   private static final String[] NAMES = 
+      { "init", "get", "set", "setDelta", "timeout", "unknown" };
+
+   /**
+    * The single instance shared by the servlets of the Sample RTE.
+    */
+   private static CMIMetrics sInstance = new CMIMetrics();
+
+   /**
+    * The metrics of each request type, in the order of <code>NAMES</code>.
+    */
+   private CMIRequestMetrics[] mMetrics = 
+      new CMIRequestMetrics[NAMES.length];
+
+   /**
+    * Indicates if the MBeans are registered.
+    */
+   private boolean mRegistered = false;
+
+   /**
+    * Creates the metrics of every request type.
+    */
+   private CMIMetrics()
+   {
+      for ( int i = 0; i < NAMES.length; i++ )
+      {
+         mMetrics[i] = new CMIRequestMetrics(NAMES[i]);
+      }
+   }
+
+   /**
+    * Provides the metrics shared by the servlets of the Sample RTE.
+    * 
+    * @return The shared metrics.
+    */
+   public static CMIMetrics getInstance()
+   {
+      return sInstance;
+   }
+
+   /**
+    * Provides the metrics of a request type.
+    * 
+    * @param iType The request type, one of the 
+    *              <code>LMSCMIServletRequest</code> <code>TYPE_</code> 
+    *              constants.
+    * 
+    * @return The metrics of the type.
+    */
+   public CMIRequestMetrics getMetrics(int iType)
+   {
+      int index = 0;
+
+      while ( index < TYPES.length && TYPES[index] != iType )
+      {
+         index++;
+      }
+
+      return mMetrics[index];
+   }
+
+   /**
+    * Records a handled request.
+    * 
+    * @param iType          The request type.
+    * 
+    * @param iNanos         The latency, in nanoseconds.
+    * 
+    * @param iRequestBytes  The size of the request.
+    * 
+    * @param iResponseBytes The size of the response.
+    * 
+    * @param iPhases        The nanoseconds spent in each 
+    *                       <code>PhaseTimer</code> phase, or 
+    *                       <code>null</code>.
+    * 
+    * @param iError         Indicates if the request failed.
+    */
+   public void record(int iType, long iNanos, long iRequestBytes, 
+                      long iResponseBytes, long[] iPhases, boolean iError)
+   {
+      getMetrics(iType).record(iNanos, iRequestBytes, iResponseBytes, 
+                               iPhases, iError);
+   }
+
+   /**
+    * Registers an MBean for each request type with the platform MBean 
+    * server.  Registering again has no effect.
+    */
+   public synchronized void register()
+   {
+      if ( mRegistered )
+      {
+         return;
+      }
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      try
+      {
+         for ( int i = 0; i < mMetrics.length; i++ )
+         {
+            ObjectName name = new ObjectName(MBEAN_PREFIX + NAMES[i]);
+
+            if ( !server.isRegistered(name) )
+            {
+               server.registerMBean(mMetrics[i], name);
+            }
+         }
+
+         mRegistered = true;
+      }
+      catch ( Exception e )
+      {
+         Logger.getLogger("org.adl.util.debug.samplerte").warning(
+            "Unable to register LMSCMIServlet metrics: " + e);
+      }
+   }
+
+   /**
+    * Removes the MBeans registered by <code>register()</code>.
+    */
+   public synchronized void unregister()
+   {
+      if ( !mRegistered )
+      {
+         return;
+      }
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      for ( int i = 0; i < mMetrics.length; i++ )
+      {
+         try
+         {
+            ObjectName name = new ObjectName(MBEAN_PREFIX + NAMES[i]);
+
+            if ( server.isRegistered(name) )
+            {
+               server.unregisterMBean(name);
+            }
+         }
+         catch ( Exception e )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Unable to unregister LMSCMIServlet metrics: " + e);
+         }
+      }
+
+      mRegistered = false;
+   }
+
+   /**
+    * Writes the metrics of every request type in the Prometheus text format.
+    * 
+    * @param ioOut The writer.
+    */
+   public void write(PrintWriter ioOut)
+   {
+      ioOut.println("# TYPE lmscmi_requests_total counter");
+      ioOut.println("# TYPE lmscmi_errors_total counter");
+      ioOut.println("# TYPE lmscmi_latency_seconds histogram");
+      ioOut.println("# TYPE lmscmi_request_bytes_total counter");
+      ioOut.println("# TYPE lmscmi_response_bytes_total counter");
+      ioOut.println("# TYPE lmscmi_phase_seconds_total counter");
+
+      for ( int i = 0; i < mMetrics.length; i++ )
+      {
+         mMetrics[i].write(ioOut);
+      }
+   }
+
+} // CMIMetrics
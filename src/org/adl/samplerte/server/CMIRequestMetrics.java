@@ -0,0 +1,492 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.io.PrintWriter;
+
+import org.adl.util.PhaseTimer;
+
+/**
+ * <strong>Filename:</strong> CMIRequestMetrics.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * The latency histogram, payload sizes and phase times of one type of 
+ * <code>LMSCMIServlet</code> request.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition
+ * Sample RTE.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * Latencies are counted in fixed buckets, so percentiles are reported as the
+ * upper bound of the bucket they fall in.  All methods synchronize on the
+ * instance; recording a request only adds to a few counters.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class CMIRequestMetrics implements CMIRequestMetricsMBean
+{
+   /**
+    * The upper bound, in microseconds, of each latency bucket but the last.
+    */
+   private static final long[] BUCKETS = 
+      { 250L, 500L, 1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 
+        250000L, 500000L, 1000000L, 2500000L, 5000000L };
+
+   /**
+    * The name of the request type.
+    */
+   private String mName = null;
+
+   /**
+    * The number of requests handled.
+    */
+   private long mCount = 0;
+
+   /**
+    * The number of requests that failed.
+    */
+   private long mErrors = 0;
+
+   /**
+    * The number of requests in each latency bucket.
+    */
+   private long[] mHistogram = new long[BUCKETS.length + 1];
+
+   /**
+    * The total latency, in nanoseconds.
+    */
+   private long mLatency = 0;
+
+   /**
+    * The highest latency, in nanoseconds.
+    */
+   private long mMaxLatency = 0;
+
+   /**
+    * The number of bytes read from requests.
+    */
+   private long mRequestBytes = 0;
+
+   /**
+    * The number of bytes written to responses.
+    */
+   private long mResponseBytes = 0;
+
+   /**
+    * The largest request, in bytes.
+    */
+   private long mMaxRequestBytes = 0;
+
+   /**
+    * The largest response, in bytes.
+    */
+   private long mMaxResponseBytes = 0;
+
+   /**
+    * The nanoseconds spent in each phase, indexed by 
+    * <code>PhaseTimer</code> phase.
+    */
+   private long[] mPhases = new long[PhaseTimer.PHASES];
+
+   /**
+    * Creates the metrics of a request type.
+    * 
+    * @param iName The name of the request type.
+    */
+   CMIRequestMetrics(String iName)
+   {
+      mName = iName;
+   }
+
+   /**
+    * Provides the name of the request type.
+    * 
+    * @return The name of the request type.
+    */
+   public String getName()
+   {
+      return mName;
+   }
+
+   /**
+    * Records a handled request.
+    * 
+    * @param iNanos         The latency, in nanoseconds.
+    * 
+    * @param iRequestBytes  The size of the request.
+    * 
+    * @param iResponseBytes The size of the response.
+    * 
+    * @param iPhases        The nanoseconds spent in each phase, or 
+    *                       <code>null</code> if the phases were not timed.
+    * 
+    * @param iError         Indicates if the request failed.
+    */
+   synchronized void record(long iNanos, long iRequestBytes, 
+                            long iResponseBytes, long[] iPhases, 
+                            boolean iError)
+   {
+      mCount++;
+
+      if ( iError )
+      {
+         mErrors++;
+      }
+
+      long micros = iNanos / 1000;
+      int bucket = 0;
+
+      while ( bucket < BUCKETS.length && micros > BUCKETS[bucket] )
+      {
+         bucket++;
+      }
+
+      mHistogram[bucket]++;
+      mLatency += iNanos;
+      mMaxLatency = Math.max(mMaxLatency, iNanos);
+
+      mRequestBytes += iRequestBytes;
+      mResponseBytes += iResponseBytes;
+      mMaxRequestBytes = Math.max(mMaxRequestBytes, iRequestBytes);
+      mMaxResponseBytes = Math.max(mMaxResponseBytes, iResponseBytes);
+
+      if ( iPhases != null )
+      {
+         for ( int i = 0; i < mPhases.length; i++ )
+         {
+            mPhases[i] += iPhases[i];
+         }
+      }
+   }
+
+   /**
+    * Retrieves the number of requests handled.
+    * 
+    * @return The number of requests handled.
+    */
+   public synchronized long getCount()
+   {
+      return mCount;
+   }
+
+   /**
+    * Retrieves the number of requests that failed with an exception.
+    * 
+    * @return The number of requests that failed with an exception.
+    */
+   public synchronized long getErrors()
+   {
+      return mErrors;
+   }
+
+   /**
+    * Retrieves the mean latency, in milliseconds.
+    * 
+    * @return The mean latency, in milliseconds.
+    */
+   public synchronized double getMeanLatencyMillis()
+   {
+      return ( mCount == 0 ) ? 0 : millis(mLatency) / mCount;
+   }
+
+   /**
+    * Retrieves the highest latency, in milliseconds.
+    * 
+    * @return The highest latency, in milliseconds.
+    */
+   public synchronized double getMaxLatencyMillis()
+   {
+      return millis(mMaxLatency);
+   }
+
+   /**
+    * Retrieves the median latency, in milliseconds, to the resolution of the
+    * latency histogram.
+    * 
+    * @return The median latency, in milliseconds, to the resolution of the
+    *         latency histogram.
+    */
+   public double getLatency50thPercentileMillis()
+   {
+      return getPercentileMillis(0.50);
+   }
+
+   /**
+    * Retrieves the 95th percentile latency, in milliseconds, to the
+    * resolution of the latency histogram.
+    * 
+    * @return The 95th percentile latency, in milliseconds, to the resolution
+    *         of the latency histogram.
+    */
+   public double getLatency95thPercentileMillis()
+   {
+      return getPercentileMillis(0.95);
+   }
+
+   /**
+    * Retrieves the 99th percentile latency, in milliseconds, to the
+    * resolution of the latency histogram.
+    * 
+    * @return The 99th percentile latency, in milliseconds, to the resolution
+    *         of the latency histogram.
+    */
+   public double getLatency99thPercentileMillis()
+   {
+      return getPercentileMillis(0.99);
+   }
+
+   /**
+    * Retrieves the upper bound, in microseconds, of each latency histogram
+    * bucket but the last, which is unbounded.
+    * 
+    * @return The upper bound, in microseconds, of each latency histogram
+    *         bucket but the last, which is unbounded.
+    */
+   public long[] getLatencyBucketBoundsMicros()
+   {
+      return (long[])BUCKETS.clone();
+   }
+
+   /**
+    * Retrieves the number of requests in each latency histogram bucket.
+    * 
+    * @return The number of requests in each latency histogram bucket.
+    */
+   public synchronized long[] getLatencyHistogram()
+   {
+      return (long[])mHistogram.clone();
+   }
+
+   /**
+    * Retrieves the number of bytes read from requests.
+    * 
+    * @return The number of bytes read from requests.
+    */
+   public synchronized long getRequestBytes()
+   {
+      return mRequestBytes;
+   }
+
+   /**
+    * Retrieves the number of bytes written to responses.
+    * 
+    * @return The number of bytes written to responses.
+    */
+   public synchronized long getResponseBytes()
+   {
+      return mResponseBytes;
+   }
+
+   /**
+    * Retrieves the largest request, in bytes.
+    * 
+    * @return The largest request, in bytes.
+    */
+   public synchronized long getMaxRequestBytes()
+   {
+      return mMaxRequestBytes;
+   }
+
+   /**
+    * Retrieves the largest response, in bytes.
+    * 
+    * @return The largest response, in bytes.
+    */
+   public synchronized long getMaxResponseBytes()
+   {
+      return mMaxResponseBytes;
+   }
+
+   /**
+    * Retrieves the milliseconds spent reading and writing serialized objects.
+    * 
+    * @return The milliseconds spent reading and writing serialized objects.
+    */
+   public double getSerializationMillis()
+   {
+      return getPhaseMillis(PhaseTimer.SERIALIZATION);
+   }
+
+   /**
+    * Retrieves the milliseconds spent sequencing.
+    * 
+    * @return The milliseconds spent sequencing.
+    */
+   public double getSequencingMillis()
+   {
+      return getPhaseMillis(PhaseTimer.SEQUENCING);
+   }
+
+   /**
+    * Retrieves the milliseconds spent in global objective database calls.
+    * 
+    * @return The milliseconds spent in global objective database calls.
+    */
+   public double getDatabaseMillis()
+   {
+      return getPhaseMillis(PhaseTimer.DATABASE);
+   }
+
+   /**
+    * Retrieves the milliseconds spent reading and writing learner state
+    * files.
+    * 
+    * @return The milliseconds spent reading and writing learner state files.
+    */
+   public double getFileIOMillis()
+   {
+      return getPhaseMillis(PhaseTimer.FILE_IO);
+   }
+
+   /**
+    * Retrieves the milliseconds not spent in any of the other phases.
+    * 
+    * @return The milliseconds not spent in any of the other phases.
+    */
+   public double getOtherMillis()
+   {
+      return getPhaseMillis(PhaseTimer.OTHER);
+   }
+
+   /**
+    * Clears all counters.
+    */
+   public synchronized void reset()
+   {
+      mCount = 0;
+      mErrors = 0;
+      mHistogram = new long[BUCKETS.length + 1];
+      mLatency = 0;
+      mMaxLatency = 0;
+      mRequestBytes = 0;
+      mResponseBytes = 0;
+      mMaxRequestBytes = 0;
+      mMaxResponseBytes = 0;
+      mPhases = new long[PhaseTimer.PHASES];
+   }
+
+   /**
+    * Provides the milliseconds spent in a phase.
+    * 
+    * @param iPhase The <code>PhaseTimer</code> phase.
+    * 
+    * @return The milliseconds spent in the phase.
+    */
+   public synchronized double getPhaseMillis(int iPhase)
+   {
+      return millis(mPhases[iPhase]);
+   }
+
+   /**
+    * Estimates a latency percentile from the histogram.
+    * 
+    * @param iFraction The percentile, as a fraction.
+    * 
+    * @return The upper bound, in milliseconds, of the bucket holding the
+    *         percentile; the highest latency if that is the last bucket.
+    */
+   public synchronized double getPercentileMillis(double iFraction)
+   {
+      if ( mCount == 0 )
+      {
+         return 0;
+      }
+
+      long rank = (long)Math.ceil(iFraction * mCount);
+      long seen = 0;
+
+      for ( int i = 0; i < BUCKETS.length; i++ )
+      {
+         seen += mHistogram[i];
+
+         if ( seen >= rank )
+         {
+            return Math.min(BUCKETS[i] / 1000.0, millis(mMaxLatency));
+         }
+      }
+
+      return millis(mMaxLatency);
+   }
+
+   /**
+    * Writes these metrics in the Prometheus text format.
+    * 
+    * @param ioOut The writer.
+    */
+   synchronized void write(PrintWriter ioOut)
+   {
+      String label = "{type=\"" + mName + "\"";
+
+      ioOut.println("lmscmi_requests_total" + label + "} " + mCount);
+      ioOut.println("lmscmi_errors_total" + label + "} " + mErrors);
+
+      long cumulative = 0;
+
+      for ( int i = 0; i < BUCKETS.length; i++ )
+      {
+         cumulative += mHistogram[i];
+         ioOut.println("lmscmi_latency_seconds_bucket" + label + ",le=\"" + 
+                       ( BUCKETS[i] / 1000000.0 ) + "\"} " + cumulative);
+      }
+
+      ioOut.println("lmscmi_latency_seconds_bucket" + label + 
+                    ",le=\"+Inf\"} " + mCount);
+      ioOut.println("lmscmi_latency_seconds_sum" + label + "} " + 
+                    ( mLatency / 1000000000.0 ));
+      ioOut.println("lmscmi_latency_seconds_count" + label + "} " + mCount);
+      ioOut.println("lmscmi_request_bytes_total" + label + "} " + 
+                    mRequestBytes);
+      ioOut.println("lmscmi_response_bytes_total" + label + "} " + 
+                    mResponseBytes);
+
+      for ( int i = 0; i < mPhases.length; i++ )
+      {
+         ioOut.println("lmscmi_phase_seconds_total" + label + ",phase=\"" + 
+                       PhaseTimer.getName(i) + "\"} " + 
+                       ( mPhases[i] / 1000000000.0 ));
+      }
+   }
+
+   /**
+    * Converts nanoseconds to milliseconds.
+    * 
+    * @param iNanos The nanoseconds.
+    * 
+    * @return The milliseconds.
+    */
+   private static double millis(long iNanos)
+   {
+      return iNanos / 1000000.0;
+   }
+
+} // CMIRequestMetrics
@@ -0,0 +1,192 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+/**
+ * <strong>Filename:</strong> CMIRequestMetricsMBean.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * The management interface of the metrics kept for one type of 
+ * <code>LMSCMIServlet</code> request.  Counts, byte sizes and phase times 
+ * are totals since start up or the last <code>reset()</code>.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition
+ * Sample RTE.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public interface CMIRequestMetricsMBean
+{
+   /**
+    * Retrieves the number of requests handled.
+    * 
+    * @return The number of requests handled.
+    */
+   long getCount();
+
+   /**
+    * Retrieves the number of requests that failed with an exception.
+    * 
+    * @return The number of requests that failed with an exception.
+    */
+   long getErrors();
+
+   /**
+    * Retrieves the mean latency, in milliseconds.
+    * 
+    * @return The mean latency, in milliseconds.
+    */
+   double getMeanLatencyMillis();
+
+   /**
+    * Retrieves the highest latency, in milliseconds.
+    * 
+    * @return The highest latency, in milliseconds.
+    */
+   double getMaxLatencyMillis();
+
+   /**
+    * Retrieves the median latency, in milliseconds, to the resolution of the
+    * latency histogram.
+    * 
+    * @return The median latency, in milliseconds, to the resolution of the
+    *         latency histogram.
+    */
+   double getLatency50thPercentileMillis();
+
+   /**
+    * Retrieves the 95th percentile latency, in milliseconds, to the
+    * resolution of the latency histogram.
+    * 
+    * @return The 95th percentile latency, in milliseconds, to the resolution
+    *         of the latency histogram.
+    */
+   double getLatency95thPercentileMillis();
+
+   /**
+    * Retrieves the 99th percentile latency, in milliseconds, to the
+    * resolution of the latency histogram.
+    * 
+    * @return The 99th percentile latency, in milliseconds, to the resolution
+    *         of the latency histogram.
+    */
+   double getLatency99thPercentileMillis();
+
+   /**
+    * Retrieves the upper bound, in microseconds, of each latency histogram
+    * bucket but the last, which is unbounded.
+    * 
+    * @return The upper bound, in microseconds, of each latency histogram
+    *         bucket but the last, which is unbounded.
+    */
+   long[] getLatencyBucketBoundsMicros();
+
+   /**
+    * Retrieves the number of requests in each latency histogram bucket.
+    * 
+    * @return The number of requests in each latency histogram bucket.
+    */
+   long[] getLatencyHistogram();
+
+   /**
+    * Retrieves the number of bytes read from requests.
+    * 
+    * @return The number of bytes read from requests.
+    */
+   long getRequestBytes();
+
+   /**
+    * Retrieves the number of bytes written to responses.
+    * 
+    * @return The number of bytes written to responses.
+    */
+   long getResponseBytes();
+
+   /**
+    * Retrieves the largest request, in bytes.
+    * 
+    * @return The largest request, in bytes.
+    */
+   long getMaxRequestBytes();
+
+   /**
+    * Retrieves the largest response, in bytes.
+    * 
+    * @return The largest response, in bytes.
+    */
+   long getMaxResponseBytes();
+
+   /**
+    * Retrieves the milliseconds spent reading and writing serialized objects.
+    * 
+    * @return The milliseconds spent reading and writing serialized objects.
+    */
+   double getSerializationMillis();
+
+   /**
+    * Retrieves the milliseconds spent sequencing.
+    * 
+    * @return The milliseconds spent sequencing.
+    */
+   double getSequencingMillis();
+
+   /**
+    * Retrieves the milliseconds spent in global objective database calls.
+    * 
+    * @return The milliseconds spent in global objective database calls.
+    */
+   double getDatabaseMillis();
+
+   /**
+    * Retrieves the milliseconds spent reading and writing learner state
+    * files.
+    * 
+    * @return The milliseconds spent reading and writing learner state files.
+    */
+   double getFileIOMillis();
+
+   /**
+    * Retrieves the milliseconds not spent in any of the other phases.
+    * 
+    * @return The milliseconds not spent in any of the other phases.
+    */
+   double getOtherMillis();
+
+   /**
+    * Clears all counters.
+    */
+   void reset();
+
+} // CMIRequestMetricsMBean
@@ -0,0 +1,627 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+package org.adl.samplerte.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Logger;
+
+import org.adl.samplerte.util.CommitJournal;
+
+/**
+ * <strong>Filename:</strong> CommitPipeline.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Applies the SCO commits accepted by <code>LMSCMIServlet</code> in the
+ * background.  A commit is made durable in the <code>CommitJournal</code>
+ * and queued for its (learner, course) pair; a pool of worker threads then
+ * maps it onto the learner's activity tree and writes it to the learner 
+ * state store, in the order the learner's commits were accepted.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * A learner must always see their own commits.  Global objectives are 
+ * shared by all of a learner's courses, so every request that reads a 
+ * learner's activity tree, global objectives or stored run-time data first
+ * calls <code>drainLearner()</code>, which applies the commits still queued
+ * for any of the learner's courses, and then calls <code>drain()</code> 
+ * once it holds the learner's lock (<code>LearnerLocks</code>) for its 
+ * course.  Workers take the same lock before applying a learner's commits,
+ * so a commit is applied exactly once and never concurrently with a read 
+ * of the same learner and course.  Only one learner lock is held at a 
+ * time, since the locks are striped and taking a second could 
+ * deadlock.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * With no worker threads configured every commit is applied on the request
+ * that accepted it, as before.  A commit that fails to apply is logged and
+ * stays at the head of its learner's queue, which stalls: the learner's 
+ * later commits are never applied ahead of it.  The head is tried again by
+ * the next <code>drain()</code> for the learner, by a worker when another
+ * commit is queued behind it, and at shut down; until it succeeds it is 
+ * left unapplied in the journal, so it is also tried again when the 
+ * journal is next opened.  Commits found unapplied in the journal at start
+ * up are queued again by <code>configure()</code>.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition</li>
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class CommitPipeline
+{
+   /**
+    * The default number of worker threads.
+    */
+   public static final int DEFAULT_WORKERS = 4;
+
+   /**
+    * The single instance shared by the servlets and JSPs of the Sample RTE.
+    */
+   private static final CommitPipeline sInstance = new CommitPipeline();
+
+   /**
+    * Maps an accepted commit onto the learner's activity tree and stored 
+    * run-time data.
+    */
+   public interface Applier
+   {
+      /**
+       * Applies one commit.  Called with the learner's lock held.
+       * 
+       * @param iEntry The commit.
+       * 
+       * @throws IOException Thrown if the commit could not be applied.
+       * 
+       * @throws ClassNotFoundException Thrown if the commit's run-time data
+       *                                can not be decoded.
+       */
+      void apply(CommitJournal.Entry iEntry) 
+         throws IOException, ClassNotFoundException;
+   }
+
+   /**
+    * The journal holding the accepted commits.
+    */
+   private CommitJournal mJournal = null;
+
+   /**
+    * Applies the commits.
+    */
+   private Applier mApplier = null;
+
+   /**
+    * The worker threads, or <code>null</code> if commits are applied on the
+    * request that accepted them.
+    */
+   private ExecutorService mWorkers = null;
+
+   /**
+    * The queued commits (<code>LinkedList</code> of 
+    * <code>CommitJournal.Entry</code>) of each (learner, course) pair.
+    */
+   private HashMap mQueues = new HashMap();
+
+   /**
+    * The keys of the queues whose first commit failed to apply.
+    */
+   private HashSet mStalled = new HashSet();
+
+   /**
+    * The number of commits queued.
+    */
+   private long mQueued = 0;
+
+   /**
+    * The number of commits applied by the workers.
+    */
+   private long mAppliedByWorkers = 0;
+
+   /**
+    * The number of commits applied on a request thread, either by a request
+    * that needed them or because there are no workers.
+    */
+   private long mAppliedByRequests = 0;
+
+   /**
+    * The number of commits that could not be applied.
+    */
+   private long mFailures = 0;
+
+   /**
+    * No outside instances; use <code>getInstance()</code>.
+    */
+   private CommitPipeline()
+   {
+      // Nothing to do
+   }
+
+   /**
+    * Provides the pipeline shared by the Sample RTE.
+    *
+    * @return The shared <code>CommitPipeline</code>.
+    */
+   public static CommitPipeline getInstance()
+   {
+      return sInstance;
+   }
+
+   /**
+    * Starts the pipeline and queues any commits left unapplied in the 
+    * journal.  The pipeline must have been shut down if it was configured
+    * before.
+    * 
+    * @param iJournal The journal holding the accepted commits.  The pipeline
+    *                 closes it when it is shut down.
+    * 
+    * @param iApplier Applies the commits.
+    * 
+    * @param iWorkers The number of worker threads; zero applies every commit
+    *                 on the request that accepted it.
+    */
+   public void configure(CommitJournal iJournal, Applier iApplier, 
+                         int iWorkers)
+   {
+      synchronized ( this )
+      {
+         mJournal = iJournal;
+         mApplier = iApplier;
+
+         if ( iWorkers > 0 )
+         {
+            mWorkers = Executors.newFixedThreadPool(iWorkers, 
+                                                    new ThreadFactory()
+            {
+               public Thread newThread(Runnable iTask)
+               {
+                  Thread worker = new Thread(iTask, "CommitPipeline");
+                  worker.setDaemon(true);
+
+                  return worker;
+               }
+            });
+         }
+      }
+
+      List pending = iJournal.getPending();
+
+      for ( int i = 0; i < pending.size(); i++ )
+      {
+         enqueue((CommitJournal.Entry)pending.get(i));
+      }
+   }
+
+   /**
+    * Accepts a commit: it is made durable in the journal and queued to be
+    * applied.  The caller must hold the learner's lock.
+    * 
+    * @param ioEntry The commit; its journal sequence number is assigned.
+    * 
+    * @throws IOException Thrown if the commit could not be made durable.
+    */
+   public void commit(CommitJournal.Entry ioEntry) throws IOException
+   {
+      CommitJournal journal = null;
+      boolean inline = false;
+
+      synchronized ( this )
+      {
+         if ( mJournal == null )
+         {
+            throw new IOException("The commit pipeline is not running");
+         }
+
+         journal = mJournal;
+         inline = ( mWorkers == null );
+      }
+
+      journal.append(ioEntry);
+
+      enqueue(ioEntry);
+
+      if ( inline )
+      {
+         drain(ioEntry.mUserID, ioEntry.mCourseID);
+      }
+   }
+
+   /**
+    * Applies every queued commit of a learner in a course.  The caller must
+    * hold the learner's lock.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    */
+   public void drain(String iUserID, String iCourseID)
+   {
+      apply(iUserID, iCourseID, false);
+   }
+
+   /**
+    * Applies every queued commit of a learner, in all of the learner's 
+    * courses, taking the learner's lock for each course in turn.  The caller
+    * must not hold a learner lock.
+    * 
+    * @param iUserID The ID of the learner.
+    */
+   public void drainLearner(String iUserID)
+   {
+      String prefix = getKey(iUserID, "");
+      List courses = new ArrayList();
+
+      synchronized ( this )
+      {
+         Iterator it = mQueues.keySet().iterator();
+
+         while ( it.hasNext() )
+         {
+            String key = (String)it.next();
+
+            if ( key.startsWith(prefix) )
+            {
+               courses.add(key.substring(prefix.length()));
+            }
+         }
+      }
+
+      for ( int i = 0; i < courses.size(); i++ )
+      {
+         applyLocked(iUserID, (String)courses.get(i), false);
+      }
+   }
+
+   /**
+    * Drops the queued commits of a learner in a course without applying 
+    * them, because the learner's state for the course is being removed.  The
+    * caller must hold the learner's lock.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    */
+   public void discard(String iUserID, String iCourseID)
+   {
+      LinkedList queue = null;
+      CommitJournal journal = null;
+
+      synchronized ( this )
+      {
+         String key = getKey(iUserID, iCourseID);
+
+         queue = (LinkedList)mQueues.remove(key);
+         mStalled.remove(key);
+         journal = mJournal;
+      }
+
+      if ( queue == null )
+      {
+         return;
+      }
+
+      for ( int i = 0; i < queue.size(); i++ )
+      {
+         try
+         {
+            journal.applied(((CommitJournal.Entry)queue.get(i)).mSequence);
+         }
+         catch ( IOException ioe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Unable to mark discarded commit: " + ioe);
+         }
+      }
+   }
+
+   /**
+    * Stops the workers, applies every commit still queued and closes the 
+    * journal.
+    */
+   public void shutdown()
+   {
+      ExecutorService workers = null;
+
+      synchronized ( this )
+      {
+         workers = mWorkers;
+         mWorkers = null;
+      }
+
+      if ( workers != null )
+      {
+         workers.shutdown();
+
+         try
+         {
+            workers.awaitTermination(60, TimeUnit.SECONDS);
+         }
+         catch ( InterruptedException ie )
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      List keys = null;
+
+      synchronized ( this )
+      {
+         keys = new ArrayList(mQueues.values());
+      }
+
+      for ( int i = 0; i < keys.size(); i++ )
+      {
+         LinkedList queue = (LinkedList)keys.get(i);
+         CommitJournal.Entry first = null;
+
+         synchronized ( this )
+         {
+            if ( queue.isEmpty() )
+            {
+               continue;
+            }
+
+            first = (CommitJournal.Entry)queue.getFirst();
+         }
+
+         applyLocked(first.mUserID, first.mCourseID, true);
+      }
+
+      synchronized ( this )
+      {
+         if ( mJournal != null )
+         {
+            mJournal.close();
+            mJournal = null;
+         }
+
+         mQueues.clear();
+         mStalled.clear();
+      }
+   }
+
+   /**
+    * Describes the commits queued and applied and the journal.
+    * 
+    * @return The statistics.
+    */
+   public String getStatistics()
+   {
+      CommitJournal journal = null;
+      String counts = null;
+
+      synchronized ( this )
+      {
+         journal = mJournal;
+         counts = "queued=" + mQueued + " appliedByWorkers=" + 
+                  mAppliedByWorkers + " appliedByRequests=" + 
+                  mAppliedByRequests + " failures=" + mFailures + 
+                  " learnersWaiting=" + mQueues.size() + " learnersStalled=" +
+                  mStalled.size();
+      }
+
+      return "commit pipeline: " + counts + 
+             ( journal == null ? "" : " " + journal.getStatistics() );
+   }
+
+   /**
+    * Queues a commit behind any others of the same learner and course, and
+    * hands the pair to a worker if it had nothing queued or its queue is
+    * stalled.
+    * 
+    * @param iEntry The commit.
+    */
+   private void enqueue(final CommitJournal.Entry iEntry)
+   {
+      synchronized ( this )
+      {
+         String key = getKey(iEntry.mUserID, iEntry.mCourseID);
+         LinkedList queue = (LinkedList)mQueues.get(key);
+
+         mQueued++;
+
+         if ( queue != null )
+         {
+            queue.addLast(iEntry);
+
+            // A worker is already on its way unless the queue has stalled
+            if ( !mStalled.remove(key) )
+            {
+               return;
+            }
+         }
+         else
+         {
+            queue = new LinkedList();
+            queue.addLast(iEntry);
+            mQueues.put(key, queue);
+         }
+
+         if ( mWorkers == null )
+         {
+            return;
+         }
+
+         mWorkers.execute(new Runnable()
+         {
+            public void run()
+            {
+               applyLocked(iEntry.mUserID, iEntry.mCourseID, true);
+            }
+         });
+      }
+   }
+
+   /**
+    * Applies the queued commits of a learner in a course, taking the 
+    * learner's lock.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iWorker   Indicates the caller is not a request thread.
+    */
+   private void applyLocked(String iUserID, String iCourseID, 
+                            boolean iWorker)
+   {
+      Lock learnerLock = LearnerLocks.getInstance().getLock(iUserID, 
+                                                            iCourseID);
+      learnerLock.lock();
+
+      try
+      {
+         apply(iUserID, iCourseID, iWorker);
+      }
+      finally
+      {
+         learnerLock.unlock();
+      }
+   }
+
+   /**
+    * Applies the queued commits of a learner in a course, oldest first, 
+    * stopping at the first that fails; it is left at the head of the queue.
+    * The caller must hold the learner's lock.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iWorker   Indicates the caller is a worker thread.
+    */
+   private void apply(String iUserID, String iCourseID, boolean iWorker)
+   {
+      String key = getKey(iUserID, iCourseID);
+      Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
+
+      while ( true )
+      {
+         CommitJournal.Entry entry = null;
+         LinkedList queue = null;
+         CommitJournal journal = null;
+         Applier applier = null;
+
+         synchronized ( this )
+         {
+            queue = (LinkedList)mQueues.get(key);
+
+            if ( queue == null )
+            {
+               return;
+            }
+
+            if ( queue.isEmpty() )
+            {
+               mQueues.remove(key);
+
+               return;
+            }
+
+            entry = (CommitJournal.Entry)queue.getFirst();
+            journal = mJournal;
+            applier = mApplier;
+            mStalled.remove(key);
+         }
+
+         try
+         {
+            applier.apply(entry);
+         }
+         catch ( Exception e )
+         {
+            logger.severe("Unable to apply commit " + entry.mSequence + 
+                          " of " + entry.mStateID + " for " + 
+                          entry.mUserID + ": " + e);
+            e.printStackTrace();
+
+            synchronized ( this )
+            {
+               // Later commits wait until this one has been applied
+               mStalled.add(key);
+               mFailures++;
+            }
+
+            return;
+         }
+
+         try
+         {
+            journal.applied(entry.mSequence);
+         }
+         catch ( IOException ioe )
+         {
+            // The commit has been applied; only its mark is missing
+            logger.warning("Unable to mark applied commit " + 
+                           entry.mSequence + ": " + ioe);
+         }
+
+         synchronized ( this )
+         {
+            queue.removeFirst();
+
+            if ( iWorker )
+            {
+               mAppliedByWorkers++;
+            }
+            else
+            {
+               mAppliedByRequests++;
+            }
+         }
+      }
+   }
+
+   /**
+    * Builds the queue key of a learner's course.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @return The key.
+    */
+   private static String getKey(String iUserID, String iCourseID)
+   {
+      return iUserID + '\u0000' + iCourseID;
+   }
+
+} // CommitPipeline
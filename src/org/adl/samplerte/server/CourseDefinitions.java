@@ -0,0 +1,301 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.adl.sequencer.SeqActivityTree;
+import org.adl.util.PhaseTimer;
+import org.adl.util.codec.CodecInput;
+
+/**
+ * <strong>Filename:</strong> CourseDefinitions.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Holds the sequencing definition of each imported course -- the activity
+ * tree written to <code>CourseImports/&lt;course&gt;/serialize.obj</code> 
+ * when the course was imported.  The definition is read once per course and
+ * shared by the activity trees of every learner registered for it; each
+ * learner's <code>serialize.obj</code> only holds the learner's tracking 
+ * state (<code>SeqActivityTree.toTrackingByteArray()</code>).<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * A definition is never sequenced.  Learners' trees are created from it 
+ * with <code>SeqActivityTree.copyDefinition()</code>, which shares the rules,
+ * objectives and other definition elements of its activities.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The location of the course imports is taken from the web application's
+ * root, configured when <code>LMSCMIServlet</code> starts.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition</li>
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class CourseDefinitions
+{
+   /**
+    * The name of the file each course's definition is persisted in.
+    */
+   private static final String TREE_FILE = "serialize.obj";
+
+   /**
+    * The single instance shared by the servlets and JSPs of the Sample RTE.
+    */
+   private static CourseDefinitions sInstance = null;
+
+   /**
+    * The definitions read so far, keyed by course ID.
+    */
+   private Map mDefinitions = new HashMap();
+
+   /**
+    * The root of the web application, which holds the course imports.
+    */
+   private String mWebPath = null;
+
+   /**
+    * The number of definitions read from the file system.
+    */
+   private long mLoads = 0;
+
+   /**
+    * Provides the course definitions shared by the Sample RTE.
+    *
+    * @return The shared <code>CourseDefinitions</code>.
+    */
+   public static synchronized CourseDefinitions getInstance()
+   {
+      if ( sInstance == null )
+      {
+         sInstance = new CourseDefinitions();
+      }
+
+      return sInstance;
+   }
+
+   /**
+    * Sets the root of the web application, which holds the course imports.
+    *
+    * @param iWebPath The real path of the web application's root.
+    */
+   public synchronized void configure(String iWebPath)
+   {
+      mWebPath = iWebPath;
+   }
+
+   /**
+    * Indicates whether the definition of a course is available from the 
+    * configured web application, without reading it.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return <code>true</code> if the definition is held or its file 
+    *         exists, otherwise <code>false</code>.
+    */
+   public boolean hasDefinition(String iCourseID)
+   {
+      String webPath = null;
+
+      synchronized( this )
+      {
+         if ( mDefinitions.containsKey(iCourseID) )
+         {
+            return true;
+         }
+
+         webPath = mWebPath;
+      }
+
+      return webPath != null && getDefinitionFile(webPath, iCourseID).isFile();
+   }
+
+   /**
+    * Retrieves the definition of a course, from the configured web 
+    * application.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The course's activity tree, as imported.  It must not be 
+    *         changed.
+    *
+    * @throws IOException Thrown if the definition can not be read.
+    */
+   public SeqActivityTree getDefinition(String iCourseID) throws IOException
+   {
+      String webPath = null;
+
+      synchronized( this )
+      {
+         webPath = mWebPath;
+      }
+
+      if ( webPath == null )
+      {
+         throw new IOException("The location of the course imports is " +
+                               "not configured");
+      }
+
+      return getDefinition(webPath, iCourseID);
+   }
+
+   /**
+    * Retrieves the definition of a course.
+    *
+    * @param iWebPath  The real path of the web application's root.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The course's activity tree, as imported.  It must not be 
+    *         changed.
+    *
+    * @throws IOException Thrown if the definition can not be read.
+    */
+   public synchronized SeqActivityTree getDefinition(String iWebPath, 
+                                                     String iCourseID)
+      throws IOException
+   {
+      SeqActivityTree definition = 
+         (SeqActivityTree)mDefinitions.get(iCourseID);
+
+      if ( definition == null )
+      {
+         definition = readDefinition(iWebPath, iCourseID);
+
+         // Scan the objectives now, so sharing the tree never changes it
+         definition.getGlobalObjectives();
+
+         mDefinitions.put(iCourseID, definition);
+         mLoads++;
+      }
+
+      return definition;
+   }
+
+   /**
+    * Forgets the definition of a course, so it is read again when next 
+    * needed.
+    *
+    * @param iCourseID The ID of the course.
+    */
+   public synchronized void invalidate(String iCourseID)
+   {
+      mDefinitions.remove(iCourseID);
+   }
+
+   /**
+    * Forgets the definitions of all courses.
+    */
+   public synchronized void clear()
+   {
+      mDefinitions.clear();
+   }
+
+   /**
+    * Describes the current state of the definition counters.
+    *
+    * @return A one-line summary of the definition counters.
+    */
+   public synchronized String getStatistics()
+   {
+      return "size=" + mDefinitions.size() + " loads=" + mLoads;
+   }
+
+   /**
+    * Reads the definition of a course from the file system.
+    *
+    * @param iWebPath  The real path of the web application's root.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The course's activity tree.
+    *
+    * @throws IOException Thrown if the definition can not be read.
+    */
+   private SeqActivityTree readDefinition(String iWebPath, String iCourseID)
+      throws IOException
+   {
+      FileInputStream in = 
+         new FileInputStream(getDefinitionFile(iWebPath, iCourseID));
+      byte[] data = null;
+      int phase = PhaseTimer.enter(PhaseTimer.FILE_IO);
+
+      try
+      {
+         data = CodecInput.readAll(in);
+      }
+      finally
+      {
+         in.close();
+         PhaseTimer.exit(phase);
+      }
+
+      phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+      try
+      {
+         return SeqActivityTree.fromByteArray(data);
+      }
+      catch ( ClassNotFoundException cnfe )
+      {
+         throw new IOException("Invalid course definition: " + 
+                               cnfe.getMessage());
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+   }
+
+   /**
+    * Locates the file holding the definition of a course.
+    *
+    * @param iWebPath  The real path of the web application's root.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The definition's file.
+    */
+   private static File getDefinitionFile(String iWebPath, String iCourseID)
+   {
+      return new File(iWebPath + "CourseImports" + File.separator + 
+                      iCourseID + File.separator + TREE_FILE);
+   }
+
+} // CourseDefinitions
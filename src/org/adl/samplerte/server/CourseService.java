@@ -31,8 +31,6 @@ import java.io.IOException;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -40,15 +38,20 @@ import java.sql.SQLException;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
 
+import org.adl.samplerte.util.CommittedStateCache;
 import org.adl.samplerte.util.LMSDBHandler;
 import org.adl.samplerte.util.LMSDatabaseHandler;
+import org.adl.samplerte.util.LearnerStateStores;
 import org.adl.samplerte.util.RTEFileHandler;
 import org.adl.sequencer.ADLSeqUtilities;
 import org.adl.sequencer.SeqActivityTree;
+import org.adl.util.DurableFiles;
 import org.adl.util.decode.decodeHandler;
 import org.adl.validator.util.ResultCollection;
 
@@ -614,8 +617,6 @@ public class CourseService
 
       PreparedStatement stmtSelectCourse;
       PreparedStatement stmtSelectUserCourse;
-      PreparedStatement stmtInsertUserCourse;
-      PreparedStatement stmtInsertCourseStatus;
       PreparedStatement stmtDeleteUserCourse;
       PreparedStatement stmtDeleteCourseStatus;
       PreparedStatement stmtDeleteCourseObjectives;
@@ -624,12 +625,8 @@ public class CourseService
 
       String sqlSelectCourse = "SELECT * FROM UserCourseInfo WHERE UserID = ?";
 
-      String sqlInsertUserCourse = "INSERT INTO UserCourseInfo (UserID, CourseID) VALUES(?,?)";
-
       String sqlDeleteUserCourse = "DELETE FROM UserCourseInfo WHERE UserID = ? AND CourseID = ?";
 
-      String sqlInsertCourseStatus = "INSERT INTO CourseStatus (learnerID, courseID) VALUES(?,?)";
-
       String sqlDeleteCourseStatus = "DELETE FROM CourseStatus WHERE learnerID = ? AND courseID = ?";
 
       String sqlDeleteCourseObjectives = "DELETE FROM Objectives WHERE learnerID = ? AND scopeID = ?";
@@ -640,13 +637,10 @@ public class CourseService
          csConn = LMSDBHandler.getConnection();
          stmtSelectCourse = conn.prepareStatement(sqlSelectCourse);
          stmtSelectUserCourse = conn.prepareStatement(sqlSelectUserCourse);
-         stmtInsertUserCourse = conn.prepareStatement(sqlInsertUserCourse);
          stmtDeleteUserCourse = conn.prepareStatement(sqlDeleteUserCourse);
-         stmtInsertCourseStatus = csConn.prepareStatement(sqlInsertCourseStatus);
          stmtDeleteCourseStatus = csConn.prepareStatement(sqlDeleteCourseStatus);
          
          stmtDeleteCourseObjectives = csConn.prepareStatement(sqlDeleteCourseObjectives);
-         SeqActivityTree mySeqActivityTree;
 
          //String selectedCourses = "|";
          
@@ -686,61 +680,10 @@ public class CourseService
 
                if( userCourseRS.next() == false )
                {
-                  synchronized( stmtInsertUserCourse )
-                  {
-                     stmtInsertUserCourse.setString(1, mUserID);
-                     stmtInsertUserCourse.setString(2, courseID);
-                     stmtInsertUserCourse.executeUpdate();
-                  }
-
-                  synchronized( stmtInsertCourseStatus )
-                  {
-                     stmtInsertCourseStatus.setString(1, mUserID);
-                     stmtInsertCourseStatus.setString(2, courseID);
-                     stmtInsertCourseStatus.executeUpdate();
-                  }
-
-                  String tree = iPath + "CourseImports" + File.separator + courseID + File.separator + "serialize.obj";
-                  FileInputStream in = new FileInputStream(tree);
-                  ObjectInputStream ie = new ObjectInputStream(in);
-                  mySeqActivityTree = (SeqActivityTree)ie.readObject();
-                  ie.close();
-                  in.close();
-                  // Set the student ID
-                  mySeqActivityTree.setLearnerID(mUserID);
-
-                  String scope = mySeqActivityTree.getScopeID();
-
-                  // Get any global objectives identified in the manifest
-                  // from the activity tree.
-                  Vector theGobalObjectiveList = mySeqActivityTree.getGlobalObjectives();
-
-                  if( theGobalObjectiveList != null )
-                  {
-                     ADLSeqUtilities.createGlobalObjs(mUserID, scope, theGobalObjectiveList);
-                  }
-                  String userDir = File.separator + SRTEFILESDIR + File.separator + mUserID + File.separator
-                     + courseID;
-
-                  File theRTESCODataDir = new File(userDir);
-
-                  // The course directory should not exist yet
-                  if( !theRTESCODataDir.isDirectory() )
-                  {
-                     theRTESCODataDir.mkdirs();
-                  }
-
-                  //Serialize the activity tree out to the user directory
-                  String sampleRTERoot = File.separator + SRTEFILESDIR;
-                  String serializeFileName = sampleRTERoot + File.separator + mUserID + File.separator + courseID
-                     + File.separator + "serialize.obj";
+                  Vector learners = new Vector();
+                  learners.add(mUserID);
 
-                  FileOutputStream outFile = new FileOutputStream(serializeFileName);
-                  ObjectOutputStream s = new ObjectOutputStream(outFile);
-                  s.writeObject(mySeqActivityTree);
-                  s.flush();
-                  s.close();
-                  outFile.close();
+                  addRegistrations(conn, csConn, learners, iPath, courseID);
 
                   userCourseRS.close();
                }
@@ -774,34 +717,342 @@ public class CourseService
                {
                   // if adlseq:objectivesGlobalToSystem = "false" in the manifest related to this course
                   // scopeID will be == to courseID and should be removed upon deletion of that course
+                  ADLSeqUtilities.flushGlobalObjs(mUserID);
                   stmtDeleteCourseObjectives.setString(1, mUserID);
                   stmtDeleteCourseObjectives.setString(2, courseID);
                   stmtDeleteCourseObjectives.executeUpdate();
+                  ADLSeqUtilities.invalidateGlobalObjs(mUserID);
 
                   stmtDeleteCourseStatus.setString(1, mUserID);
                   stmtDeleteCourseStatus.setString(2, courseID);
                   stmtDeleteCourseStatus.executeUpdate();
                }
-               fileHandler.deleteCourseFiles(courseID, mUserID);
+               Lock learnerLock = LearnerLocks.getInstance().getLock(mUserID, courseID);
+               learnerLock.lock();
+
+               try
+               {
+                  CommitPipeline.getInstance().discard(mUserID, courseID);
+                  ActivityTreeCache.getInstance().invalidate(mUserID, courseID);
+                  CommittedStateCache.getInstance().invalidate(mUserID, courseID);
+                  LearnerStateStores.getStore().deleteCourse(mUserID, courseID);
+                  fileHandler.deleteCourseFiles(courseID, mUserID);
+               }
+               finally
+               {
+                  learnerLock.unlock();
+               }
             }
          }
          stmtSelectCourse.close();
          stmtSelectUserCourse.close();
-         stmtInsertUserCourse.close();
          stmtDeleteUserCourse.close();
-         stmtInsertCourseStatus.close();
          stmtDeleteCourseStatus.close();
          conn.close();
-         LMSDBHandler.closeConnection();
       }
       catch( Exception e )
       {
          result = "false";
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
 
       return result;
    }
    
+   /**
+    * Registers a set of users for a course.  Users already registered are
+    * skipped.  The registrations are made in batches of
+    * <code>ADLSeqUtilities.REGISTRATION_BATCH_SIZE</code> users, each with
+    * one transaction on each database, so a whole cohort is registered
+    * without a round trip per user and objective.  If the registration 
+    * fails, registering the same users again completes it.
+    * @param iUserIDs The IDs of the users
+    * @param iPath The web path
+    * @param iCourseID The ID of the course
+    * @return String representation of the success of this action (true or false)
+    */
+   public String registerLearners(Vector iUserIDs, String iPath, String iCourseID)
+   {
+      String result = "true";
+
+      Connection conn = null;
+      Connection csConn;
+
+      PreparedStatement stmtSelectRegistered;
+
+      String sqlSelectRegistered = "SELECT UserID FROM UserCourseInfo WHERE CourseID = ?";
+
+      try
+      {
+         conn = LMSDatabaseHandler.getConnection();
+         csConn = LMSDBHandler.getConnection();
+         stmtSelectRegistered = conn.prepareStatement(sqlSelectRegistered);
+
+         // Find the users already registered for the course
+         HashSet registered = new HashSet();
+         ResultSet registeredRS;
+
+         stmtSelectRegistered.setString(1, iCourseID);
+         registeredRS = stmtSelectRegistered.executeQuery();
+
+         while( registeredRS.next() )
+         {
+            registered.add(registeredRS.getString("UserID"));
+         }
+
+         registeredRS.close();
+         stmtSelectRegistered.close();
+
+         Vector learners = new Vector();
+
+         for( int i = 0; i < iUserIDs.size(); i++ )
+         {
+            String userID = (String)iUserIDs.elementAt(i);
+
+            if( userID != null && registered.add(userID) )
+            {
+               learners.add(userID);
+            }
+         }
+
+         addRegistrations(conn, csConn, learners, iPath, iCourseID);
+      }
+      catch( Exception e )
+      {
+         result = "false";
+         e.printStackTrace();
+      }
+      finally
+      {
+         if( conn != null )
+         {
+            try
+            {
+               conn.close();
+            }
+            catch( SQLException se )
+            {
+               // The connection is returned to the pool regardless
+            }
+         }
+
+         LMSDBHandler.closeConnection();
+      }
+
+      return result;
+   }
+
+   /**
+    * Registers users, none of whom is registered yet, for a course.  For
+    * each batch of <code>ADLSeqUtilities.REGISTRATION_BATCH_SIZE</code> 
+    * users, the course status records and global objectives are inserted 
+    * with batched statements and committed together on the global 
+    * objectives database, each user's tracking state is initialized, and 
+    * only then are the registrations inserted and committed.  A user is 
+    * therefore recorded as registered only once everything else is in 
+    * place.  Records left by a registration that failed part way are kept,
+    * so the users it did not record as registered can simply be registered
+    * again.
+    * @param iConn The connection to the RTE database
+    * @param iCSConn The connection to the global objectives database
+    * @param iUserIDs The IDs of the users
+    * @param iPath The web path
+    * @param iCourseID The ID of the course
+    * @throws Exception Thrown if the registrations could not be made; the
+    *         transaction being made is rolled back
+    */
+   private void addRegistrations(Connection iConn, Connection iCSConn, Vector iUserIDs, String iPath,
+                                 String iCourseID) throws Exception
+   {
+      String sqlInsertUserCourse = "INSERT INTO UserCourseInfo (UserID, CourseID) VALUES(?,?)";
+
+      String sqlSelectCourseStatus = "SELECT learnerID FROM CourseStatus WHERE courseID = ?";
+
+      String sqlInsertCourseStatus = "INSERT INTO CourseStatus (learnerID, courseID) VALUES(?,?)";
+
+      // The learner's tree shares the course's definition
+      SeqActivityTree mySeqActivityTree = CourseDefinitions.getInstance().getDefinition(iPath, iCourseID);
+
+      String scope = mySeqActivityTree.getScopeID();
+
+      // Get any global objectives identified in the manifest
+      // from the activity tree.
+      Vector theGobalObjectiveList = mySeqActivityTree.getGlobalObjectives();
+
+      // Find the users that already have a course status record, left by a
+      // registration that failed or by an earlier registration
+      HashSet hasStatus = new HashSet();
+
+      PreparedStatement stmtSelectCourseStatus = iCSConn.prepareStatement(sqlSelectCourseStatus);
+      stmtSelectCourseStatus.setString(1, iCourseID);
+
+      ResultSet statusRS = stmtSelectCourseStatus.executeQuery();
+
+      while( statusRS.next() )
+      {
+         hasStatus.add(statusRS.getString("learnerID"));
+      }
+
+      statusRS.close();
+      stmtSelectCourseStatus.close();
+
+      boolean autoCommit = iConn.getAutoCommit();
+      boolean csAutoCommit = iCSConn.getAutoCommit();
+
+      PreparedStatement stmtInsertUserCourse = iConn.prepareStatement(sqlInsertUserCourse);
+      PreparedStatement stmtInsertCourseStatus = iCSConn.prepareStatement(sqlInsertCourseStatus);
+
+      try
+      {
+         iConn.setAutoCommit(false);
+         iCSConn.setAutoCommit(false);
+
+         for( int start = 0; start < iUserIDs.size(); start += ADLSeqUtilities.REGISTRATION_BATCH_SIZE )
+         {
+            int end = Math.min(iUserIDs.size(), start + ADLSeqUtilities.REGISTRATION_BATCH_SIZE);
+            Vector batch = new Vector(iUserIDs.subList(start, end));
+
+            if( theGobalObjectiveList != null )
+            {
+               // Writes not yet made must be made first
+               for( int i = 0; i < batch.size(); i++ )
+               {
+                  ADLSeqUtilities.flushGlobalObjs((String)batch.elementAt(i));
+               }
+            }
+
+            int created = 0;
+
+            for( int i = 0; i < batch.size(); i++ )
+            {
+               String userID = (String)batch.elementAt(i);
+
+               if( hasStatus.add(userID) )
+               {
+                  stmtInsertCourseStatus.setString(1, userID);
+                  stmtInsertCourseStatus.setString(2, iCourseID);
+                  stmtInsertCourseStatus.addBatch();
+                  created++;
+               }
+            }
+
+            try
+            {
+               if( created > 0 )
+               {
+                  stmtInsertCourseStatus.executeBatch();
+               }
+
+               if( theGobalObjectiveList != null )
+               {
+                  ADLSeqUtilities.addGlobalObjs(iCSConn, batch, scope, theGobalObjectiveList);
+               }
+
+               iCSConn.commit();
+            }
+            catch( SQLException se )
+            {
+               iCSConn.rollback();
+
+               throw se;
+            }
+            finally
+            {
+               if( theGobalObjectiveList != null )
+               {
+                  for( int i = 0; i < batch.size(); i++ )
+                  {
+                     ADLSeqUtilities.invalidateGlobalObjs((String)batch.elementAt(i));
+                  }
+               }
+            }
+
+            for( int i = 0; i < batch.size(); i++ )
+            {
+               initializeRegistration((String)batch.elementAt(i), iCourseID);
+            }
+
+            // The users are recorded as registered last
+            for( int i = 0; i < batch.size(); i++ )
+            {
+               stmtInsertUserCourse.setString(1, (String)batch.elementAt(i));
+               stmtInsertUserCourse.setString(2, iCourseID);
+               stmtInsertUserCourse.addBatch();
+            }
+
+            try
+            {
+               stmtInsertUserCourse.executeBatch();
+
+               iConn.commit();
+            }
+            catch( SQLException se )
+            {
+               iConn.rollback();
+
+               throw se;
+            }
+         }
+      }
+      finally
+      {
+         stmtInsertUserCourse.close();
+         stmtInsertCourseStatus.close();
+
+         iConn.setAutoCommit(autoCommit);
+         iCSConn.setAutoCommit(csAutoCommit);
+      }
+   }
+
+   /**
+    * Initializes the tracking state of a user newly registered for a course,
+    * dropping anything still held in memory from a previous registration.
+    * @param iUserID The ID of the user
+    * @param iCourseID The ID of the course
+    * @throws IOException Thrown if the tracking state can not be written
+    */
+   private void initializeRegistration(String iUserID, String iCourseID) throws IOException
+   {
+      String userDir = File.separator + SRTEFILESDIR + File.separator + iUserID + File.separator
+         + iCourseID;
+
+      File theRTESCODataDir = new File(userDir);
+
+      // The course directory should not exist yet
+      if( !theRTESCODataDir.isDirectory() )
+      {
+         theRTESCODataDir.mkdirs();
+      }
+
+      //Serialize the activity tree out to the user directory
+      String sampleRTERoot = File.separator + SRTEFILESDIR;
+      String serializeFileName = sampleRTERoot + File.separator + iUserID + File.separator + iCourseID
+         + File.separator + "serialize.obj";
+
+      Lock learnerLock = LearnerLocks.getInstance().getLock(iUserID, iCourseID);
+      learnerLock.lock();
+
+      try
+      {
+         // Drop anything still held in memory from a previous registration
+         CommitPipeline.getInstance().discard(iUserID, iCourseID);
+         ActivityTreeCache.getInstance().invalidate(iUserID, iCourseID);
+         CommittedStateCache.getInstance().invalidate(iUserID, iCourseID);
+         LearnerStateStores.getStore().deleteCourse(iUserID, iCourseID);
+
+         // Replaced atomically, so a failure never leaves a torn tree
+         DurableFiles.write(new File(serializeFileName), 
+                            SeqActivityTree.toTrackingByteArray(iCourseID, iUserID));
+      }
+      finally
+      {
+         learnerLock.unlock();
+      }
+   }
+
    /**
     * Resets the list of courses for which a chosen user is registered.
     * @param iCourseIDs The list of courses that are selected
@@ -878,14 +1129,16 @@ public class CourseService
          statusRS.close();
 
          stmtSelectStatus.close();
-
-         LMSDBHandler.closeConnection();
       }
 
       catch( Exception e )
       {
          e.printStackTrace();
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
       return cs;
    }
 
@@ -1011,12 +1264,30 @@ public class CourseService
             }
             while( courseRS.next() )
             {
-               fileHandler.deleteCourseFiles(courseRS.getString("CourseID"), user);
+               String courseID = courseRS.getString("CourseID");
+               Lock learnerLock = LearnerLocks.getInstance().getLock(user, courseID);
+               learnerLock.lock();
+
+               try
+               {
+                  CommitPipeline.getInstance().discard(user, courseID);
+                  ActivityTreeCache.getInstance().invalidate(user, courseID);
+                  CommittedStateCache.getInstance().invalidate(user, courseID);
+                  LearnerStateStores.getStore().deleteCourse(user, courseID);
+                  fileHandler.deleteCourseFiles(courseID, user);
+               }
+               finally
+               {
+                  learnerLock.unlock();
+               }
             }
          }
 
          String theWebPath = iPath;
          String mCourseDir = theWebPath + "CourseImports" + File.separator;
+
+         // Course IDs are reused once the database is cleared
+         CourseDefinitions.getInstance().clear();
          ResultSet courseListRS = null;
          courseListRS = stmtGetCourses.executeQuery();
          //delete the template course files from the CourseImports folder
@@ -1043,14 +1314,15 @@ public class CourseService
          conn.close();
 
          // Delete global objectives
+         ADLSeqUtilities.flushGlobalObjs(null);
          objConn = LMSDBHandler.getConnection();
          stmtDeleteObj = objConn.prepareStatement(sqlDeleteCourseObjs);
          stmtDeleteObj.executeUpdate();
          stmtDeleteObj.close();
+         ADLSeqUtilities.invalidateGlobalObjs(null);
          stmtDeleteStatus = objConn.prepareStatement(sqlDeleteCourseStatus);
          stmtDeleteStatus.executeUpdate();
          stmtDeleteStatus.close();
-         LMSDBHandler.closeConnection();
       }
       catch( SQLException e )
       {
@@ -1063,6 +1335,10 @@ public class CourseService
          result = "false";
          e.printStackTrace();
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
 
       return result;
    }
@@ -1127,6 +1403,7 @@ public class CourseService
       
       try
       {
+         ADLSeqUtilities.flushGlobalObjs(mUserID);
          conn = LMSDBHandler.getConnection();
          stmtSelectObjectives = conn.prepareStatement(sqlSelectObjectives);
 
@@ -1159,6 +1436,7 @@ public class CourseService
                stmtInsertObjective.setString(9, ioObject.mProgressMeasure);
                stmtInsertObjective.setString(10, newCompletionStatus);
                stmtInsertObjective.executeUpdate();
+               ADLSeqUtilities.invalidateGlobalObjs(mUserID);
             }
          }
       }
@@ -1167,6 +1445,10 @@ public class CourseService
          result = "false";
          e.printStackTrace();
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
 
       return result;
    }
@@ -1185,6 +1467,7 @@ public class CourseService
          Connection conn;
          PreparedStatement stmtSelectGlobals;
 
+         ADLSeqUtilities.flushGlobalObjs(iUserID);
          conn = LMSDBHandler.getConnection();
 
          String sqlSelectGlobals = "SELECT * FROM Objectives where " + "learnerID = ? and scopeID = ''";
@@ -1236,12 +1519,15 @@ public class CourseService
          }
          globalsRS.close();
          stmtSelectGlobals.close();
-         LMSDBHandler.closeConnection();
       }
       catch( Exception e )
       {
          e.printStackTrace();
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
 
       return obj;
    }
@@ -1263,6 +1549,7 @@ public class CourseService
          Connection conn;
          PreparedStatement stmtSelectObjectives;
 
+         ADLSeqUtilities.flushGlobalObjs(mUserID);
          conn = LMSDBHandler.getConnection();
 
          //Query String to obtain Courses
@@ -1301,12 +1588,15 @@ public class CourseService
          }
          objectivesRS.close();
          stmtSelectObjectives.close();
-         LMSDBHandler.closeConnection();
       }
       catch( Exception e )
       {
          e.printStackTrace();
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
       return obj;
    }
 
@@ -1368,31 +1658,38 @@ public class CourseService
                {
                   synchronized( stmtUpdateObjective )
                   {
+                     ADLSeqUtilities.flushGlobalObjs(learnerID);
                      stmtUpdateObjective.setString(1, objID);
                      stmtUpdateObjective.setString(2, learnerID);
                      stmtUpdateObjective.executeUpdate();
+                     ADLSeqUtilities.invalidateGlobalObjs(learnerID);
                   }
                }
                else if( paramValue.equals("delete") )
                {
                   synchronized( stmtDeleteObjective )
                   {
+                     ADLSeqUtilities.flushGlobalObjs(learnerID);
                      stmtDeleteObjective.setString(1, objID);
                      stmtDeleteObjective.setString(2, learnerID);
                      stmtDeleteObjective.executeUpdate();
+                     ADLSeqUtilities.invalidateGlobalObjs(learnerID);
                   }
                }
             }
          }
          stmtUpdateObjective.close();
          stmtDeleteObjective.close();
-         LMSDBHandler.closeConnection();
       }
       catch( Exception e )
       {
          result = "false";
          System.out.println(e);
       }
+      finally
+      {
+         LMSDBHandler.closeConnection();
+      }
       return result;
    }
 
@@ -29,14 +29,19 @@ package org.adl.samplerte.server;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
@@ -45,12 +50,22 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.adl.datamodels.DMDelta;
 import org.adl.datamodels.DMErrorCodes;
 import org.adl.datamodels.DMInterface;
 import org.adl.datamodels.DMProcessingInfo;
 import org.adl.datamodels.DMRequest;
 import org.adl.datamodels.SCODataManager;
+import org.adl.samplerte.util.CommitJournal;
+import org.adl.samplerte.util.CommittedState;
+import org.adl.samplerte.util.CommittedStateCache;
+import org.adl.samplerte.util.ConnectionPool;
+import org.adl.samplerte.util.GroupCommit;
+import org.adl.samplerte.util.LMSDBHandler;
+import org.adl.samplerte.util.LMSDatabaseHandler;
+import org.adl.samplerte.util.LearnerStateStores;
 import org.adl.samplerte.util.RTEFileHandler;
+import org.adl.sequencer.ADLGlobalObjStore;
 import org.adl.sequencer.ADLObjStatus;
 import org.adl.sequencer.ADLSeqUtilities;
 import org.adl.sequencer.ADLSequencer;
@@ -60,6 +75,7 @@ import org.adl.sequencer.SeqActivity;
 import org.adl.sequencer.SeqActivityTree;
 import org.adl.sequencer.SeqObjective;
 import org.adl.sequencer.SeqActivity.DataStore;
+import org.adl.util.PhaseTimer;
 
 /**
  * <strong>Filename:</strong> LMSCMIServletjava<br>
@@ -98,14 +114,365 @@ public class LMSCMIServlet extends HttpServlet
    private final String mPRIMARY_OBJ_ID = null;
 
    /**
-    * This string contains the name of the SampleRTEFiles directory.
+    * The server's copy of the run-time data of the SCO attempts being
+    * delivered, used to merge <code>TYPE_SET_DELTA</code> requests.
     */
-   private final String SRTEFILESDIR = "SCORM4EDSampleRTE111Files";
+   private SCODataCache mSCODataCache = 
+      new SCODataCache(SCODataCache.DEFAULT_MAX_ENTRIES);
+
+   /**
+    * The sequencer shared by the requests of this servlet.  Each request 
+    * gives it the learner's activity tree, so it holds no state of its own.
+    */
+   private ADLSequencer mSequencer = new ADLSequencer();
+
+   /**
+    * Initializes the servlet, registers its metrics with JMX (see 
+    * <code>CMIMetrics</code>) and configures the activity tree cache from the
+    * <code>treeCacheSize</code> and <code>treeCacheFlushInterval</code> 
+    * servlet init parameters, the run-time data cache from the 
+    * <code>scoDataCacheSize</code> servlet init parameter, the committed
+    * state cache from the <code>stateCacheSize</code> servlet init 
+    * parameter and the number of threads applying commits in the background
+    * from the <code>commitWorkers</code> servlet init parameter.  Commits 
+    * left unapplied in the commit journal are queued again.  The database
+    * connection pools are sized from the <code>dbPoolSize</code>, 
+    * <code>dbPoolMaxWait</code>, <code>dbPoolLeakThreshold</code> and 
+    * <code>dbStatementCacheSize</code> servlet init parameters, and the
+    * global objective store from the <code>globalObjShards</code>, 
+    * <code>globalObjCacheSize</code> and <code>globalObjFlushLag</code> 
+    * servlet init parameters.
+    * 
+    * @exception ServletException
+    */
+   public void init() throws ServletException
+   {
+      int maxEntries = ActivityTreeCache.DEFAULT_MAX_ENTRIES;
+      long flushInterval = ActivityTreeCache.DEFAULT_FLUSH_INTERVAL;
+
+      String param = getInitParameter("treeCacheSize");
+
+      if( param != null )
+      {
+         try
+         {
+            maxEntries = Integer.parseInt(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid treeCacheSize: " + param);
+         }
+      }
+
+      param = getInitParameter("treeCacheFlushInterval");
+
+      if( param != null )
+      {
+         try
+         {
+            flushInterval = Long.parseLong(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid treeCacheFlushInterval: " + param);
+         }
+      }
+
+      ActivityTreeCache.getInstance().configure(maxEntries, flushInterval);
+      CourseDefinitions.getInstance().configure(
+         getServletConfig().getServletContext().getRealPath("/"));
+
+      param = getInitParameter("scoDataCacheSize");
+
+      if( param != null )
+      {
+         try
+         {
+            mSCODataCache = new SCODataCache(Integer.parseInt(param.trim()));
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid scoDataCacheSize: " + param);
+         }
+      }
+
+      param = getInitParameter("stateCacheSize");
+
+      if( param != null )
+      {
+         try
+         {
+            CommittedStateCache.getInstance().configure(Integer.parseInt(param.trim()));
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid stateCacheSize: " + param);
+         }
+      }
+
+      long syncLatency = GroupCommit.DEFAULT_LATENCY_BUDGET;
+
+      param = getInitParameter("stateSyncLatency");
+
+      if( param != null )
+      {
+         try
+         {
+            syncLatency = Long.parseLong(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid stateSyncLatency: " + param);
+         }
+      }
+
+      try
+      {
+         LearnerStateStores.configure(getInitParameter("learnerStateStore"), syncLatency);
+      }
+      catch( IOException ioe )
+      {
+         throw new ServletException("Unable to open learner state store", ioe);
+      }
+
+      int workers = CommitPipeline.DEFAULT_WORKERS;
+
+      param = getInitParameter("commitWorkers");
+
+      if( param != null )
+      {
+         try
+         {
+            workers = Integer.parseInt(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid commitWorkers: " + param);
+         }
+      }
+
+      try
+      {
+         CommitJournal journal = new CommitJournal(CommitJournal.DEFAULT_DIR, 
+                                                   CommitJournal.DEFAULT_SEGMENT_SIZE, 
+                                                   syncLatency);
+
+         CommitPipeline.getInstance().configure(journal, new CommitPipeline.Applier()
+         {
+            public void apply(CommitJournal.Entry iEntry) 
+               throws IOException, ClassNotFoundException
+            {
+               ADLSeqUtilities.beginGlobalObjReads();
+               ADLSeqUtilities.beginGlobalObjWrites();
+
+               try
+               {
+                  applyCommit(iEntry);
+               }
+               finally
+               {
+                  ADLSeqUtilities.endGlobalObjWrites();
+                  ADLSeqUtilities.endGlobalObjReads();
+               }
+            }
+         }, workers);
+      }
+      catch( IOException ioe )
+      {
+         throw new ServletException("Unable to open commit journal", ioe);
+      }
+
+      int poolSize = ConnectionPool.DEFAULT_MAX_SIZE;
+
+      param = getInitParameter("dbPoolSize");
+
+      if( param != null )
+      {
+         try
+         {
+            poolSize = Integer.parseInt(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid dbPoolSize: " + param);
+         }
+      }
+
+      long poolMaxWait = ConnectionPool.DEFAULT_MAX_WAIT;
+
+      param = getInitParameter("dbPoolMaxWait");
+
+      if( param != null )
+      {
+         try
+         {
+            poolMaxWait = Long.parseLong(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid dbPoolMaxWait: " + param);
+         }
+      }
+
+      long leakThreshold = ConnectionPool.DEFAULT_LEAK_THRESHOLD;
+
+      param = getInitParameter("dbPoolLeakThreshold");
+
+      if( param != null )
+      {
+         try
+         {
+            leakThreshold = Long.parseLong(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid dbPoolLeakThreshold: " + param);
+         }
+      }
+
+      int statementCacheSize = ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE;
+
+      param = getInitParameter("dbStatementCacheSize");
+
+      if( param != null )
+      {
+         try
+         {
+            statementCacheSize = Integer.parseInt(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid dbStatementCacheSize: " + param);
+         }
+      }
+
+      LMSDatabaseHandler.getPool().configure(poolSize, poolMaxWait, 
+                                             leakThreshold, statementCacheSize);
+      LMSDBHandler.getPool().configure(poolSize, poolMaxWait, 
+                                       leakThreshold, statementCacheSize);
+
+      int globalObjShards = ADLGlobalObjStore.DEFAULT_SHARDS;
+
+      param = getInitParameter("globalObjShards");
+
+      if( param != null )
+      {
+         try
+         {
+            globalObjShards = Integer.parseInt(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid globalObjShards: " + param);
+         }
+      }
+
+      int globalObjCacheSize = ADLGlobalObjStore.DEFAULT_MAX_LEARNERS;
+
+      param = getInitParameter("globalObjCacheSize");
+
+      if( param != null )
+      {
+         try
+         {
+            globalObjCacheSize = Integer.parseInt(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid globalObjCacheSize: " + param);
+         }
+      }
+
+      long globalObjFlushLag = ADLGlobalObjStore.DEFAULT_FLUSH_LAG;
+
+      param = getInitParameter("globalObjFlushLag");
+
+      if( param != null )
+      {
+         try
+         {
+            globalObjFlushLag = Long.parseLong(param.trim());
+         }
+         catch( NumberFormatException nfe )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Invalid globalObjFlushLag: " + param);
+         }
+      }
+
+      ADLGlobalObjStore.configure(globalObjShards, globalObjCacheSize, 
+                                  globalObjFlushLag);
+
+      CMIMetrics.getInstance().register();
+   }
+
+   /**
+    * Applies any queued commits and writes any activity trees and global
+    * objectives still held in memory before the servlet is taken out of 
+    * service.
+    */
+   public void destroy()
+   {
+      Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
+
+      CommitPipeline pipeline = CommitPipeline.getInstance();
+      pipeline.shutdown();
+
+      logger.info("Commit pipeline shut down: " + pipeline.getStatistics());
+
+      ActivityTreeCache cache = ActivityTreeCache.getInstance();
+      cache.shutdown();
+
+      logger.info("Activity tree cache shut down: " + cache.getStatistics());
+
+      logger.info("Committed state cache: " + 
+                  CommittedStateCache.getInstance().getStatistics());
+
+      logger.info("Learner state store shut down: " + 
+                  LearnerStateStores.getStore().getStatistics());
+
+      LearnerStateStores.shutdown();
+
+      logger.info("Global objective store shut down: " + 
+                  ADLGlobalObjStore.getStoreStatistics());
+
+      ADLGlobalObjStore.shutdown();
+
+      logger.info("RTE database pool: " + 
+                  LMSDatabaseHandler.getPool().getStatistics());
+      logger.info("Objectives database pool: " + 
+                  LMSDBHandler.getPool().getStatistics());
+
+      LMSDatabaseHandler.getPool().closeIdle();
+      LMSDBHandler.getPool().closeIdle();
+
+      CMIMetrics.getInstance().unregister();
+   }
 
    /**
     * This method handles the 'POST' message sent to the servlet. This servlet
     * will handle <code>LMSServletRequest</code> objects and respond with a
-    * <code>LMSServletResponse</code> object.
+    * <code>LMSServletResponse</code> object.  The latency, sizes and phase
+    * times of every request are recorded in <code>CMIMetrics</code>.
+    * 
+    * <code>TYPE_INIT</code> and <code>TYPE_GET</code> requests are 
+    * conditional: when the client already holds the committed version of 
+    * the run-time data (<code>mKnownVersion</code>) the data is not sent
+    * again.  Both first apply any of the learner's commits still queued in
+    * the <code>CommitPipeline</code>, so a learner always reads their own
+    * commits.
     * 
     * @param iRequest The request 'POST'ed to the servlet.
     * @param oResponse The response returned by the servlet.<br>
@@ -121,11 +488,24 @@ public class LMSCMIServlet extends HttpServlet
    public void doPost(HttpServletRequest iRequest, HttpServletResponse oResponse) throws ServletException, IOException
    {
       Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
+      boolean trace = logger.isLoggable(Level.FINE);
       
       logger.entering("---LMSCMIServlet", "doPost()");
-      logger.info("POST received by LMSCMIServlet");
+      logger.fine("POST received by LMSCMIServlet");
 
-      String scoFile = null;
+      long started = System.nanoTime();
+      boolean failed = false;
+      int phase;
+
+      PhaseTimer.start();
+      ADLSeqUtilities.beginGlobalObjReads();
+      ADLSeqUtilities.beginGlobalObjWrites();
+
+      CountingInputStream requestBytes = null;
+      CountingOutputStream responseBytes = null;
+
+      String stateID = null;
+      String stateKey = null;
       String userID = null;
       String userName = null;
       String courseID = null;
@@ -137,16 +517,21 @@ public class LMSCMIServlet extends HttpServlet
       LMSCMIServletResponse response = null;
       
       SCODataManager mSCOData = null;
+
+      Lock learnerLock = null;
       
       try
       {
-         logger.info("Requested session: " + iRequest.getRequestedSessionId());
-         logger.info("query string: " + iRequest.getQueryString());
-         logger.info("header string: " + iRequest.getContextPath());
-
-         for( Enumeration e = iRequest.getHeaderNames(); e.hasMoreElements(); )
+         if( trace )
          {
-            logger.info(e.nextElement().toString());
+            logger.fine("Requested session: " + iRequest.getRequestedSessionId());
+            logger.fine("query string: " + iRequest.getQueryString());
+            logger.fine("header string: " + iRequest.getContextPath());
+
+            for( Enumeration e = iRequest.getHeaderNames(); e.hasMoreElements(); )
+            {
+               logger.fine(e.nextElement().toString());
+            }
          }
 
          // Retrieve the current session ID
@@ -155,23 +540,31 @@ public class LMSCMIServlet extends HttpServlet
          {
             logger.severe("  ERROR - No session ID in LMSCMIServlet.");
          }
-         else
+         else if( trace )
          {
-            logger.info("Session ID is: " + session.getId());
+            logger.fine("Session ID is: " + session.getId());
          }
 
-         logger.info("Checking attributes");
+         requestBytes = new CountingInputStream(iRequest.getInputStream());
+         responseBytes = new CountingOutputStream(oResponse.getOutputStream());
 
-         ObjectInputStream in = new ObjectInputStream(iRequest.getInputStream());
+         ObjectInputStream in = null;
+         ObjectOutputStream out = null;
 
-         logger.info("Created REQUEST object INPUT stream successfully");
+         phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
 
-         ObjectOutputStream out = new ObjectOutputStream(oResponse.getOutputStream());
-
-         logger.info("Created RESPONSE object OUTPUT stream successfully");
+         try
+         {
+            in = new ObjectInputStream(requestBytes);
+            out = new ObjectOutputStream(responseBytes);
 
-         // Read the LMSCMIServletRequest object
-         request = (LMSCMIServletRequest)in.readObject();
+            // Read the LMSCMIServletRequest object
+            request = (LMSCMIServletRequest)in.readObject();
+         }
+         finally
+         {
+            PhaseTimer.exit(phase);
+         }
 
          // Set servlet state
          scoID = request.mStateID;
@@ -181,26 +574,45 @@ public class LMSCMIServlet extends HttpServlet
          numAttempt = request.mNumAttempt;
          userName = request.mUserName;
 
-         logger.info("ScoID: " + scoID);
-
-         // Set the run-time data model path
-         if( numAttempt != null )
+         if( trace )
          {
-            scoFile = File.separator + SRTEFILESDIR + File.separator + userID + File.separator + courseID
-               + File.separator + scoID + "__" + numAttempt;
+            logger.fine("ScoID: " + scoID);
          }
-         else
+
+         // Identify the run-time data model state
+         if( numAttempt == null )
          {
             logger.fine("  ERROR: NULL # attempt");
+         }
 
-            scoFile = File.separator + SRTEFILESDIR + File.separator + userID + File.separator + courseID
-               + File.separator + scoID;
+         stateID = RTEFileHandler.getStateID(scoID, numAttempt);
+         stateKey = userID + File.separator + courseID + File.separator + stateID;
+
+         if( trace )
+         {
+            logger.fine("Data model state:  " + stateKey);
          }
 
-         logger.info("Data model path:  " + scoFile);
-         
-         FileInputStream fi = null;
-         ObjectInputStream fileIn = null;
+         RTEFileHandler fileHandler = new RTEFileHandler();
+
+         boolean reads = ( request.mRequestType == LMSCMIServletRequest.TYPE_INIT || 
+                           request.mRequestType == LMSCMIServletRequest.TYPE_GET );
+
+         if( reads )
+         {
+            // Commits to the learner's other courses may change the shared
+            // global objectives
+            CommitPipeline.getInstance().drainLearner(userID);
+         }
+
+         // Requests for the same learner and course are handled one at a time
+         learnerLock = LearnerLocks.getInstance().getLock(userID, courseID);
+         learnerLock.lock();
+
+         if( reads )
+         {
+            CommitPipeline.getInstance().drain(userID, courseID);
+         }
 
          // Handle the request
          switch( request.mRequestType )
@@ -208,85 +620,68 @@ public class LMSCMIServlet extends HttpServlet
 
             case LMSCMIServletRequest.TYPE_INIT:
                
-               logger.info("CMI Servlet - doPost() - entering case INIT ");
-
-               logger.info("Processing 'init' request");
+               logger.fine("Processing 'init' request");
 
                // create response object to return
                response = new LMSCMIServletResponse();
 
-               // Serialize the users activity tree for the selected course
-
-               SeqActivityTree mSeqActivityTree = new SeqActivityTree();
+               // Get the users activity tree for the selected course
+               SeqActivityTree mSeqActivityTree = 
+                  ActivityTreeCache.getInstance().getTree(userID, courseID);
                
-               // location of the stored data store, assuming there is one
-               SeqActivityTree.dataStoreLoc = File.separator + SRTEFILESDIR + File.separator + userID + File.separator + courseID
-               + File.separator + "DS.obj";
-               
-               String mTreePath = File.separator + SRTEFILESDIR + File.separator + userID + File.separator + courseID
-                  + File.separator + "serialize.obj";
-
-               FileInputStream mFileIn = new FileInputStream(mTreePath);
-               ObjectInputStream mObjectIn = new ObjectInputStream(mFileIn);
-               mSeqActivityTree = (SeqActivityTree)mObjectIn.readObject();
-               mObjectIn.close();
-               mFileIn.close();
-               
-               boolean newFile = true;
-               RTEFileHandler fileHandler = new RTEFileHandler();
+               boolean newFile = false;
 
-               // Try to open the state file
-               try
-               {
-                  fi = new FileInputStream(scoFile);
-                  newFile = false;
+               // Try to read the stored state
+               CommittedState committed = fileHandler.readState(userID, courseID, stateID);
 
-               }
-               catch( FileNotFoundException fnfe )
+               if( committed == null )
                {
-                  logger.info("State file does not exist...");
-
-                  // data model file does not exist so initialize values
+                  logger.fine("State does not exist...");
 
-                  logger.info("Created file handler");
-                  logger.info("About to create file");
+                  // data model state does not exist so initialize values
+                  newFile = true;
 
                   fileHandler.initializeStateFile(numAttempt, userID, userName, courseID, scoID, scoID);
 
-                  logger.info("after initialize state file");
-                  logger.info("State File Created");
+                  logger.fine("State Created");
 
-                  fi = new FileInputStream(scoFile);
+                  // Initialize the new attempt
+                  committed = fileHandler.readState(userID, courseID, stateID);
                }
 
-               logger.info("Created LMSSCODataFile File input stream " + "successfully");
-
-               fileIn = new ObjectInputStream(fi);
-
-               logger.info("Created OBJECT input stream successfully");
+               mSCOData = committed.getData();
 
-               // Initialize the new attempt
-               mSCOData = (SCODataManager)fileIn.readObject();
+               // Everything set below, so a client holding the committed 
+               // state can be told what changed instead of sent all of it
+               DMDelta initChanges = new DMDelta();
 
-               fileIn.close();
-               fi.close();
+               logger.fine("Read SCO data successfully");
 
-               // Create the sequencer and set the tree
-               ADLSequencer mSequencer = new ADLSequencer();
                ADLValidRequests mState = new ADLValidRequests();
                SeqActivity mSeqActivity = mSeqActivityTree.getActivity(scoID);
-               mSequencer.setActivityTree(mSeqActivityTree);
-               
-               
-               // get UIState
-               mSequencer.getValidRequests(mState);
-               response.mValidRequests = mState;
-               logger.info("continue  " + response.mValidRequests.mContinue);
-               logger.info("previous  " + response.mValidRequests.mPrevious);
+               Vector mStatusVector = null;
+
+               phase = PhaseTimer.enter(PhaseTimer.SEQUENCING);
+
+               try
+               {
+                  // get UIState
+                  mSequencer.getValidRequests(mSeqActivityTree, mState);
 
-               Vector mStatusVector = new Vector();
+                  mStatusVector = mSequencer.getObjStatusSet(mSeqActivityTree, 
+                                                             scoID);
+               }
+               finally
+               {
+                  PhaseTimer.exit(phase);
+               }
 
-               mStatusVector = mSequencer.getObjStatusSet(scoID);
+               response.mValidRequests = mState;
+               if( trace )
+               {
+                  logger.fine("continue  " + response.mValidRequests.mContinue);
+                  logger.fine("previous  " + response.mValidRequests.mPrevious);
+               }
 
                ADLObjStatus mObjStatus = new ADLObjStatus();
                
@@ -304,7 +699,7 @@ public class LMSCMIServlet extends HttpServlet
                         // initialize objective status from sequencer
                         mObjStatus = (ADLObjStatus)mStatusVector.get(i);
                        
-                        initializeObjectives(mSCOData, mObjStatus, i);
+                        initializeObjectives(mSCOData, mObjStatus, i, initChanges);
                      }
                   }
                   else
@@ -341,11 +736,11 @@ public class LMSCMIServlet extends HttpServlet
 
                         if( idx != -1 )
                         {
-                           initializeObjectives(mSCOData, mObjStatus, i);
+                           initializeObjectives(mSCOData, mObjStatus, i, initChanges);
                         }
                         else
                         {
-                           System.out.println("  OBJ NOT FOUND --> " + mObjStatus.mObjID);
+                           logger.warning("  OBJ NOT FOUND --> " + mObjStatus.mObjID);
                         }
 
                      }
@@ -357,79 +752,146 @@ public class LMSCMIServlet extends HttpServlet
                // otherwise initialize from default list in activity
                try
                {
-                  readDataStores(mSCOData, mSeqActivity);
+                  readDataStores(mSCOData, mSeqActivity, mSeqActivityTree, initChanges);
                }
                catch(FileNotFoundException fnfe)
                {
-                  initializeDataStores(mSCOData, mSeqActivity.getDataStores());
+                  initializeDataStores(mSCOData, mSeqActivity.getDataStores(), mSeqActivityTree,
+                                       initChanges);
                }
-               
-               response.mActivityData = mSCOData;
+
+               response.mStateVersion = committed.getVersion();
+
+               if( request.mKnownVersion != 0 && request.mKnownVersion == committed.getVersion() )
+               {
+                  response.mNotModified = true;
+                  response.mDelta = initChanges;
+
+                  phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+                  try
+                  {
+                     response.mStateChecksum = CommittedState.checksum(mSCOData.toByteArray());
+                  }
+                  finally
+                  {
+                     PhaseTimer.exit(phase);
+                  }
+               }
+               else
+               {
+                  response.mActivityData = mSCOData;
+               }
+
+               // Keep our own copy so later commits only need to send changes
+               response.mCommitSequence = mSCODataCache.open(stateKey, mSCOData);
 
                // Need to return time tracking information
                // -+- TODO -+-
 
-               out.writeObject(response);
-               logger.info("LMSCMIServlet processed init");
+               logger.fine("LMSCMIServlet processed init");
 
                break;
 
             case LMSCMIServletRequest.TYPE_GET:
 
-               logger.info("Processing 'get' request");
+               logger.fine("Processing 'get' request");
 
                response = new LMSCMIServletResponse();
 
-               // Try to open the state file
-               try
+               // Try to read the stored state
+               CommittedState stored = fileHandler.readState(userID, courseID, stateID);
+
+               if( stored == null )
                {
-                  fi = new FileInputStream(scoFile);
+                  logger.fine("ERROR == State data not created");
 
-                  logger.info("Created SCO data file input stream " + "successfully");
+                  response.mError = "NO DATA";
+               }
+               else
+               {
+                  response.mStateVersion = stored.getVersion();
 
-                  fileIn = new ObjectInputStream(fi);
+                  if( request.mKnownVersion != 0 && request.mKnownVersion == stored.getVersion() )
+                  {
+                     response.mNotModified = true;
+                  }
+                  else
+                  {
+                     response.mActivityData = stored.getData();
+                  }
+               }
 
-                  logger.info("Created OBJECT input stream successfully");
+               logger.fine("LMSCMIServlet processed get for SCO Data\n");
+
+               break;
+
+            case LMSCMIServletRequest.TYPE_SET:
 
-                  response.mActivityData = (SCODataManager)fileIn.readObject();
+               logger.fine("Processing 'set' request");
 
+               // handleData() terminates the data it is given, so keep an
+               // untouched copy for merging later changes
+               SCODataManager current = SCODataCache.copy(request.mActivityData);
+
+               response = handleData(request.mActivityData, userID, courseID,
+                                       response, request, activityID, scoID, stateID);
+
+               if( request.mIsFinished )
+               {
+                  mSCODataCache.close(stateKey);
                }
-               catch( FileNotFoundException fnfe )
+               else
                {
-                  logger.fine("ERROR == State data not created");
-
-                  response.mError = "NO DATA";
+                  response.mCommitSequence = mSCODataCache.open(stateKey, current);
                }
 
-               fileIn.close();
-               fi.close();
+               logger.fine("LMSCMIServlet processed set.");
 
-               out.writeObject(response);
+               break;
 
-               logger.info("LMSCMIServlet processed get for SCO Data\n");
+            case LMSCMIServletRequest.TYPE_SET_DELTA:
 
-               break;
+               logger.fine("Processing 'set delta' request");
 
-            case LMSCMIServletRequest.TYPE_SET:
+               SCODataManager merged = mSCODataCache.merge(stateKey, request.mCommitSequence,
+                                                           request.mDelta);
 
-               logger.info("Processing 'set' request");
+               if( merged == null )
+               {
+                  logger.info("Could not merge changes, requesting full commit");
 
-               response = handleData(request.mActivityData, userID, courseID,
-                                       response, request, activityID, scoID, scoFile);
+                  response = new LMSCMIServletResponse();
+                  response.mResyncRequired = true;
+               }
+               else
+               {
+                  request.mActivityData = merged;
 
-               out.writeObject(response);
+                  response = handleData(request.mActivityData, userID, courseID,
+                                          response, request, activityID, scoID, stateID);
+
+                  if( request.mIsFinished )
+                  {
+                     mSCODataCache.close(stateKey);
+                  }
+                  else
+                  {
+                     response.mCommitSequence = request.mCommitSequence + 1;
+                  }
+               }
 
-               logger.info("LMSCMIServlet processed set.");
+               logger.fine("LMSCMIServlet processed set delta.");
 
                break;
 
             case LMSCMIServletRequest.TYPE_TIMEOUT:
 
-               logger.info("Processing 'timeout' request");
+               logger.fine("Processing 'timeout' request");
 
                // -+- TODO -+-
 
-               logger.info("LMSCMIServlet processed 'timeout'");
+               logger.fine("LMSCMIServlet processed 'timeout'");
 
                break;
 
@@ -440,24 +902,61 @@ public class LMSCMIServlet extends HttpServlet
                break;
          }
 
-         // Close the input and output streams
-         in.close();
-         out.close();
+         phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
 
+         try
+         {
+            if( response != null )
+            {
+               out.writeObject(response);
+            }
+
+            // Close the input and output streams
+            in.close();
+            out.close();
+         }
+         finally
+         {
+            PhaseTimer.exit(phase);
+         }
       }
       catch( Exception e )
       {
+         failed = true;
+
          logger.severe(" :: doPost :: EXCEPTION");
          logger.severe(e.toString());
          e.printStackTrace();
       }
+      finally
+      {
+         // Global objectives written are made before other requests of the
+         // learner may run
+         ADLSeqUtilities.endGlobalObjWrites();
+         ADLSeqUtilities.endGlobalObjReads();
+
+         if( learnerLock != null )
+         {
+            learnerLock.unlock();
+         }
+
+         CMIMetrics.getInstance().record(
+            ( request != null ) ? request.mRequestType : LMSCMIServletRequest.TYPE_UNKNOWN,
+            System.nanoTime() - started,
+            ( requestBytes != null ) ? requestBytes.mCount : 0,
+            ( responseBytes != null ) ? responseBytes.mCount : 0,
+            PhaseTimer.stop(), failed);
+      }
    }
 
    
 
    /**
     * This method handles processing of the core data being sent from the client
-    * to the LMS. The data needs to be processed and made persistent.
+    * to the LMS.  The data is terminated, given its next version and made
+    * durable in the commit journal; mapping it onto the activity tree and
+    * writing it to the learner state store is left to the 
+    * <code>CommitPipeline</code> (see <code>applyCommit()</code>).
     * 
     * @param iSCOData The run-time data to be processed.
     * @param iUserID The ID of the learner associated with the persisted run-time data.
@@ -466,8 +965,10 @@ public class LMSCMIServlet extends HttpServlet
     * @param iRequest request issued by the LMS Client.
     * @param iActivityID The ID of the activity associated with the persisted run-time data.
     * @param iScoID The ID of the SCO associated with the persisted run-time data.
-    * @param iScoFile The name of the target persisted run-time data model file.
+    * @param iStateID The ID of the target persisted run-time data model state.
     * @return An updated LMSCMIServletResponse response
+    * @throws IOException Thrown if the commit could not be journaled; the 
+    *         request fails, so the client does not take it as committed
     */
    private LMSCMIServletResponse handleData(SCODataManager iSCOData,
                            String iUserID,
@@ -476,124 +977,162 @@ public class LMSCMIServlet extends HttpServlet
                            LMSCMIServletRequest iRequest,
                            String iActivityID,
                            String iScoID,
-                           String iScoFile)
+                           String iStateID) throws IOException
    {
       Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
-      logger.info("LMSCMIServlet - Entering handleData()");
+      logger.fine("LMSCMIServlet - Entering handleData()");
       
       iResponse = new LMSCMIServletResponse();
 
-      String sampleRTERoot = File.separator + SRTEFILESDIR;
-      String userDir = sampleRTERoot + File.separator + iUserID + File.separator + iCourseID;
-      
+      // call terminate on the sco data
+      iSCOData.terminate();
+
+      CommittedState committed = new RTEFileHandler().prepareStateData(
+         iUserID, iCourseID, iStateID, iSCOData);
+
+      CommitJournal.Entry entry = new CommitJournal.Entry();
+      entry.mUserID = iUserID;
+      entry.mCourseID = iCourseID;
+      entry.mStateID = iStateID;
+      entry.mActivityID = iActivityID;
+      entry.mScoID = iScoID;
+      entry.mIsFinished = iRequest.mIsFinished;
+      entry.mQuitPushed = iRequest.mQuitPushed;
+      entry.mSuspendPushed = iRequest.mSuspendPushed;
+      entry.mData = committed.getEncoded();
+
+      // The commit is durable once it is journaled
+      CommitPipeline.getInstance().commit(entry);
+
+      // Reads of this state see the new version even before it is applied
+      CommittedStateCache.getInstance().put(iUserID, iCourseID, iStateID, committed);
+
+      iResponse.mStateVersion = committed.getVersion();
+      iResponse.mStateChecksum = committed.getChecksum();
+
+      return iResponse;
+   }
+
+   /**
+    * Applies a commit accepted by <code>handleData()</code>: on Terminate, 
+    * Quit or Suspend All the run-time data is mapped onto the learner's 
+    * activity tree, then the data is written to the learner state store.  
+    * Called by the <code>CommitPipeline</code> with the learner's lock held.
+    * 
+    * @param iEntry The commit.
+    * 
+    * @throws IOException Thrown if the tree or the data could not be 
+    *                     written.
+    * 
+    * @throws ClassNotFoundException Thrown if the run-time data could not be
+    *                                decoded.
+    */
+   private void applyCommit(CommitJournal.Entry iEntry) 
+      throws IOException, ClassNotFoundException
+   {
+      Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
+      logger.fine("LMSCMIServlet - Entering applyCommit()");
+
       boolean setPrimaryObjScore = false;
       boolean suspended = false;
 
+      String completionStatus = null;
+      String progressMeasure = null;
+      String scoEntry = null;
+      double normalScore = -1.0;
+      String masteryStatus = null;
+      String sessionTime = null;
+      String score = null;
+
+      SCODataManager scoData = null;
+      int phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
       try
       {
-         String completionStatus = null;
-         String progressMeasure = null;
-         String scoEntry = null;
-         double normalScore = -1.0;
-         String masteryStatus = null;
-         String sessionTime = null;
-         String score = null;
-
-         SCODataManager scoData = iRequest.mActivityData;
-
-         int err = 0;
-         DMProcessingInfo dmInfo = new DMProcessingInfo();        
-         
-         // Get the current entry
-         err = DMInterface.processGetValue("cmi.exit", true, true, scoData, dmInfo);
-         scoEntry = dmInfo.mValue;         
-         
-         // call terminate on the sco data
-         scoData.terminate();
+         scoData = SCODataManager.fromByteArray(iEntry.mData);
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
 
-         // Get the current completion_status
-         err = DMInterface.processGetValue("cmi.completion_status", true, scoData, dmInfo);
-         completionStatus = dmInfo.mValue;
-         boolean completionSetBySCO = dmInfo.mSetBySCO;
+      int err = 0;
+      DMProcessingInfo dmInfo = new DMProcessingInfo();        
 
-         if( completionStatus.equals("not attempted") )
-         {
-            completionStatus = "incomplete";
-         }
-         
-         dmInfo = new DMProcessingInfo();
-         err = DMInterface.processGetValue("cmi.progress_measure", true, scoData, dmInfo);
-         if ( err == DMErrorCodes.NO_ERROR )
-         {
-            progressMeasure = dmInfo.mValue;
-         }
+      // Get the current completion_status
+      err = DMInterface.processGetValue("cmi.completion_status", true, scoData, dmInfo);
+      completionStatus = dmInfo.mValue;
+      boolean completionSetBySCO = dmInfo.mSetBySCO;
 
-         // Get the current success_status
-         err = DMInterface.processGetValue("cmi.success_status", true, scoData, dmInfo);
-         masteryStatus = dmInfo.mValue;
-         boolean masterySetBySCO = dmInfo.mSetBySCO;
+      if( completionStatus.equals("not attempted") )
+      {
+         completionStatus = "incomplete";
+      }
+      
+      dmInfo = new DMProcessingInfo();
+      err = DMInterface.processGetValue("cmi.progress_measure", true, scoData, dmInfo);
+      if ( err == DMErrorCodes.NO_ERROR )
+      {
+         progressMeasure = dmInfo.mValue;
+      }
 
-         // Get the current entry
-         err = DMInterface.processGetValue("cmi.entry", true, true, scoData, dmInfo);
-         scoEntry = dmInfo.mValue;        
+      // Get the current success_status
+      err = DMInterface.processGetValue("cmi.success_status", true, scoData, dmInfo);
+      masteryStatus = dmInfo.mValue;
+      boolean masterySetBySCO = dmInfo.mSetBySCO;
 
-         // Get the current scaled score
-         err = DMInterface.processGetValue("cmi.score.scaled", true, scoData, dmInfo);
+      // Get the current entry
+      err = DMInterface.processGetValue("cmi.entry", true, true, scoData, dmInfo);
+      scoEntry = dmInfo.mValue;        
 
-         if( err == DMErrorCodes.NO_ERROR )
-         {
-            logger.info("Got score, with no error");
-            score = dmInfo.mValue;
-         }
-         else
-         {
-            logger.info("Failed getting score, got err: " + err);
-            score = "";
-         }
+      // Get the current scaled score
+      err = DMInterface.processGetValue("cmi.score.scaled", true, scoData, dmInfo);
 
-         // Get the current session time
-         err = DMInterface.processGetValue("cmi.session_time", true, scoData, dmInfo);
-         if( err == DMErrorCodes.NO_ERROR )
+      if( err == DMErrorCodes.NO_ERROR )
+      {
+         logger.fine("Got score, with no error");
+         score = dmInfo.mValue;
+      }
+      else
+      {
+         if( logger.isLoggable(Level.FINE) )
          {
-            sessionTime = dmInfo.mValue;
+            logger.fine("Failed getting score, got err: " + err);
          }
+         score = "";
+      }
 
-         logger.info("Saving Data to the File ...  PRIOR TO SAVE");
-         logger.info("The SCO Data Manager for the current SCO contains the " + "following:");
+      // Get the current session time
+      err = DMInterface.processGetValue("cmi.session_time", true, scoData, dmInfo);
+      if( err == DMErrorCodes.NO_ERROR )
+      {
+         sessionTime = dmInfo.mValue;
+      }
 
-         // Open the Activity tree flat file associated with the
-         // logged in user
-         String theWebPath = getServletConfig().getServletContext().getRealPath("/");
+      logger.fine("Saving Data to the File ...  PRIOR TO SAVE");
 
-         String actFile = userDir + File.separator + "serialize.obj";
-         // Only perform data mapping on Terminate or if the Quit button was pushed.
-         if( iRequest.mIsFinished || iRequest.mQuitPushed || iRequest.mSuspendPushed)
-         {
-            logger.info("About to get and update activity tree");
-            FileInputStream fi;
-            try
-            {
-               fi = new FileInputStream(actFile);
-            }
-            catch( FileNotFoundException fnfe )
-            {
-               logger.severe("Can not open Activity tree file");
-               fi = new FileInputStream(actFile);
-            }
-            logger.info("Created Activity FILE input stream successfully");
+      // Open the Activity tree flat file associated with the
+      // logged in user
+      String theWebPath = getServletConfig().getServletContext().getRealPath("/");
 
-            ObjectInputStream fileIn = new ObjectInputStream(fi);
+      // Only perform data mapping on Terminate or if the Quit button was pushed.
+      if( iEntry.mIsFinished || iEntry.mQuitPushed || iEntry.mSuspendPushed)
+      {
+         phase = PhaseTimer.enter(PhaseTimer.SEQUENCING);
+         ADLSequencer theSequencer = null;
 
-            logger.info("Created Activity Tree OBJECT input stream " + "successfully");
+         try
+         {
+            logger.fine("About to get and update activity tree");
 
-            SeqActivityTree theTree = (SeqActivityTree)fileIn.readObject();
-            fileIn.close();
-            fi.close();
-            logger.info("(*********DUMPING ActivityTree***********)");
+            SeqActivityTree theTree = 
+               ActivityTreeCache.getInstance().getTree(iEntry.mUserID, iEntry.mCourseID);
+
+            logger.fine("(*********DUMPING ActivityTree***********)");
             if( theTree == null )
             {
 
-               logger.info("The activity tree is NULL");
+               logger.fine("The activity tree is NULL");
             }
             else
             {
@@ -601,20 +1140,22 @@ public class LMSCMIServlet extends HttpServlet
             }
             if( theTree != null )
             {
-               // Create the sequencer and set the tree
-               ADLSequencer theSequencer = new ADLSequencer();
-               theSequencer.setActivityTree(theTree);
+               // Begin a request on the tree with the shared sequencer
+               theSequencer = mSequencer.beginInvocation(theTree);
 
-               SeqActivity act = theTree.getActivity(iActivityID);
-               populateMap(iSCOData, act);
+               SeqActivity act = theTree.getActivity(iEntry.mActivityID);
+               populateMap(scoData, act, theTree);
 
                // Only modify the TM if the activity is tracked
                if( act.getIsTracked() )
                {
 
                   // Update the activity's status
-                  logger.info(act.getID() + " is TRACKED -- ");
-                  logger.info("Performing default mapping to TM");
+                  if( logger.isLoggable(Level.FINE) )
+                  {
+                     logger.fine(act.getID() + " is TRACKED -- ");
+                  }
+                  logger.fine("Performing default mapping to TM");
 
                   String primaryObjID = null;
                   boolean foundPrimaryObj = false;
@@ -648,7 +1189,7 @@ public class LMSCMIServlet extends HttpServlet
                   // Loop through objectives updating TM
                   for( int i = 0; i < numObjs; i++ )
                   {
-                     logger.info("CMISerlet - IN MAP OBJ LOOP");
+                     logger.fine("CMISerlet - IN MAP OBJ LOOP");
                      String objID = new String("");
                      String objMS = new String("");
                      String objScore = new String("");
@@ -675,7 +1216,7 @@ public class LMSCMIServlet extends HttpServlet
                      // Report the success status
                      if( objMS.equals("passed") )
                      {
-                        theSequencer.setAttemptObjSatisfied(iActivityID, objID, "satisfied");
+                        theSequencer.setAttemptObjSatisfied(iEntry.mActivityID, objID, "satisfied");
                         if( foundPrimaryObj )
                         {
                            act.primaryStatusSetBySCO(dmInfo.mSetBySCO);
@@ -685,7 +1226,7 @@ public class LMSCMIServlet extends HttpServlet
                      }
                      else if( objMS.equals("failed") )
                      {
-                        theSequencer.setAttemptObjSatisfied(iActivityID, objID, "notSatisfied");
+                        theSequencer.setAttemptObjSatisfied(iEntry.mActivityID, objID, "notSatisfied");
 
                         if( foundPrimaryObj )
                         {
@@ -698,8 +1239,8 @@ public class LMSCMIServlet extends HttpServlet
                      {
                         if ( dmInfo.mSetBySCO )
                         {
-                           theSequencer.setAttemptObjSatisfied(iActivityID, objID, "unknown");
-                           
+                           theSequencer.setAttemptObjSatisfied(iEntry.mActivityID, objID, "unknown");
+                        
                            Vector globs = act.getObjIDs(objID, false);
 
                            if ( globs != null )
@@ -707,7 +1248,7 @@ public class LMSCMIServlet extends HttpServlet
                               for ( int w = 0; w < globs.size(); w++)
                               {
                                  ADLSeqUtilities.setGlobalObjSatisfied((String)globs.get(w), 
-                                    iUserID,
+                                    iEntry.mUserID,
                                     act.getScopeID(),
                                     ADLTracking.TRACK_UNKNOWN);
                               }
@@ -735,7 +1276,7 @@ public class LMSCMIServlet extends HttpServlet
                         try
                         {
                            normalScore = ( new Double(objScore) ).doubleValue();
-                           theSequencer.setAttemptObjMeasure(iActivityID, objID, normalScore);
+                           theSequencer.setAttemptObjMeasure(iEntry.mActivityID, objID, normalScore);
 
                            if( foundPrimaryObj )
                            {
@@ -753,11 +1294,11 @@ public class LMSCMIServlet extends HttpServlet
                      }
                      else
                      {
-                        theSequencer.clearAttemptObjMeasure(iActivityID, objID);
+                        theSequencer.clearAttemptObjMeasure(iEntry.mActivityID, objID);
                      }
+                  
+                  
                      
-                     
-                        
                      // Get this objectives completion status
                      dmInfo = new DMProcessingInfo();
                      obj = "cmi.objectives." + i + ".completion_status";
@@ -772,7 +1313,7 @@ public class LMSCMIServlet extends HttpServlet
                      if( (!completion.equals("") && !completion.equals(ADLTracking.TRACK_UNKNOWN)) ||
                            (completion.equals(ADLTracking.TRACK_UNKNOWN) && dmInfo.mSetBySCO) )
                      {
-                        
+                     
                         if ( foundPrimaryObj && ! completionSetBySCO )
                         {
                            completionStatus = (completion.equals("not attempted"))?"incomplete":completion;
@@ -780,16 +1321,16 @@ public class LMSCMIServlet extends HttpServlet
                         }
                         else
                         {
-                           theSequencer.setAttemptObjCompletionStatus(iActivityID, objID, completion);
+                           theSequencer.setAttemptObjCompletionStatus(iEntry.mActivityID, objID, completion);
                         }
                      }
                      else
                      {
-                        theSequencer.clearAttemptObjCompletionStatus(iActivityID, objID);
+                        theSequencer.clearAttemptObjCompletionStatus(iEntry.mActivityID, objID);
                      }
-                     
-                     
-                     
+                  
+                  
+                  
                      // Get this objectives progress measure
                      dmInfo = new DMProcessingInfo();
                      objScore = "";
@@ -806,14 +1347,14 @@ public class LMSCMIServlet extends HttpServlet
                         try
                         {
                            normalScore = Double.parseDouble(objScore);
-                           
+                        
                            if ( foundPrimaryObj && progressMeasure == null )
                            {
                               progressMeasure = objScore;
                            }
                            else
                            {
-                              theSequencer.setAttemptObjProgressMeasure(iActivityID, objID, normalScore);
+                              theSequencer.setAttemptObjProgressMeasure(iEntry.mActivityID, objID, normalScore);
                            }
                         }
                         catch( NumberFormatException e )
@@ -827,47 +1368,47 @@ public class LMSCMIServlet extends HttpServlet
                      }
                      else
                      {
-                        theSequencer.clearAttemptObjProgressMeasure(iActivityID, objID);
+                        theSequencer.clearAttemptObjProgressMeasure(iEntry.mActivityID, objID);
                      }
-                     
-                     
-                     
+                  
+                  
+                  
 
-                     setObjectiveValues(theSequencer, logger, iActivityID, objID, scoData, i);
+                     setObjectiveValues(theSequencer, logger, iEntry.mActivityID, objID, scoData, i);
                   }
                   // Report the completion status
                   act.primaryProgressSetBySCO(completionSetBySCO);
-                  theSequencer.setAttemptProgressStatus(iActivityID, completionStatus);
+                  theSequencer.setAttemptProgressStatus(iEntry.mActivityID, completionStatus);
                   if ( progressMeasure != null )
                   {
-                     theSequencer.setAttemptProgressMeasure(iActivityID, progressMeasure);
+                     theSequencer.setAttemptProgressMeasure(iEntry.mActivityID, progressMeasure);
                   }
 
-                  theSequencer.reportSuspension(iActivityID, scoEntry.equals("resume"));
-                  
+                  theSequencer.reportSuspension(iEntry.mActivityID, scoEntry.equals("resume"));
+               
                   // Report the success status
                   if( masteryStatus.equals("passed") )
                   {
-                     theSequencer.setAttemptObjSatisfied(iActivityID, mPRIMARY_OBJ_ID, "satisfied");
+                     theSequencer.setAttemptObjSatisfied(iEntry.mActivityID, mPRIMARY_OBJ_ID, "satisfied");
                   }
                   else if( masteryStatus.equals("failed") )
                   {
-                     theSequencer.setAttemptObjSatisfied(iActivityID, mPRIMARY_OBJ_ID, "notSatisfied");
+                     theSequencer.setAttemptObjSatisfied(iEntry.mActivityID, mPRIMARY_OBJ_ID, "notSatisfied");
                   }
                   else
                   {
                      if( masterySetBySCO )
                      {
                         act.primaryStatusSetBySCO(masterySetBySCO);
-                        theSequencer.setAttemptObjSatisfied(iActivityID, mPRIMARY_OBJ_ID, "unknown");
-                        
+                        theSequencer.setAttemptObjSatisfied(iEntry.mActivityID, mPRIMARY_OBJ_ID, "unknown");
+                     
                         Vector globs = act.getObjIDs(mPRIMARY_OBJ_ID, false);
                         if ( globs != null )
                         {
                            for ( int w = 0; w < globs.size(); w++)
                            {
                               ADLSeqUtilities.setGlobalObjSatisfied((String)globs.get(w), 
-                                 iUserID,
+                                 iEntry.mUserID,
                                  act.getScopeID(),
                                  ADLTracking.TRACK_UNKNOWN);
                            }
@@ -881,7 +1422,7 @@ public class LMSCMIServlet extends HttpServlet
                      try
                      {
                         normalScore = ( new Double(score) ).doubleValue();
-                        theSequencer.setAttemptObjMeasure(iActivityID, mPRIMARY_OBJ_ID, normalScore);
+                        theSequencer.setAttemptObjMeasure(iEntry.mActivityID, mPRIMARY_OBJ_ID, normalScore);
                      }
                      catch( Exception e )
                      {
@@ -896,7 +1437,7 @@ public class LMSCMIServlet extends HttpServlet
                   {
                      if( !setPrimaryObjScore )
                      {
-                        theSequencer.clearAttemptObjMeasure(iActivityID, mPRIMARY_OBJ_ID);
+                        theSequencer.clearAttemptObjMeasure(iEntry.mActivityID, mPRIMARY_OBJ_ID);
                      }
                   }
                }
@@ -909,7 +1450,7 @@ public class LMSCMIServlet extends HttpServlet
                   // Loop through objectives updating TM
                   for( int i = 0; i < numObjs; i++ )
                   {
-                     logger.info("CMISerlet - IN MAP OBJ LOOP - tracking == false");
+                     logger.fine("CMISerlet - IN MAP OBJ LOOP - tracking == false");
                      String objID = new String("");
                      String objMS = new String("");
                      String objScore = new String("");
@@ -921,57 +1462,36 @@ public class LMSCMIServlet extends HttpServlet
 
                      objID = dmInfo.mValue;
 
-                     setObjectiveValues(theSequencer, logger, iActivityID, objID, scoData, i);
+                     setObjectiveValues(theSequencer, logger, iEntry.mActivityID, objID, scoData, i);
                   }
-     
+  
                }
 
-               // May need to get the current valid requests
-               iResponse.mValidRequests = new ADLValidRequests();
-               theSequencer.getValidRequests(iResponse.mValidRequests);
-
-               logger.info("Sequencer is initialized and statuses have been " + "set");
-               logger.info("Now re-serialize the file");
-
-               FileOutputStream fo = new FileOutputStream(actFile);
-
-               ObjectOutputStream outFile = new ObjectOutputStream(fo);
+               logger.fine("Sequencer is initialized and statuses have been set");
+               logger.fine("Now hand the tree back to the cache");
 
                SeqActivityTree theTempTree = theSequencer.getActivityTree();
 
                theTempTree.clearSessionState();
 
-               outFile.writeObject(theTempTree);
-               outFile.close();
-
+               // The tree is written to disk by the cache's background flush
+               ActivityTreeCache.getInstance().putTree(iEntry.mUserID, iEntry.mCourseID, theTempTree);
             }
          }
+         finally
+         {
+            if( theSequencer != null )
+            {
+               mSequencer.endInvocation(theSequencer);
+            }
 
-         // Persist the run-time data model
-         FileOutputStream fo = new FileOutputStream(iScoFile);
-         ObjectOutputStream outFile = new ObjectOutputStream(fo);
-         outFile.writeObject(iRequest.mActivityData);
-         outFile.close();
-         fo.close();
-
-      }
-      catch( FileNotFoundException fnfe )
-      {
-         logger.severe(fnfe.toString());
-         fnfe.printStackTrace();
-      }
-      catch( IOException ioe )
-      {
-         logger.severe(ioe.toString());
-         ioe.printStackTrace();
-      }
-      catch( ClassNotFoundException cnfe )
-      {
-         logger.severe(cnfe.toString());
-         cnfe.printStackTrace();
+            PhaseTimer.exit(phase);
+         }
       }
-      
-      return iResponse;
+
+      // Persist the run-time data model
+      new RTEFileHandler().writeState(iEntry.mUserID, iEntry.mCourseID, iEntry.mStateID, 
+                                      new CommittedState(scoData.getVersion(), iEntry.mData));
    }
    
    /**
@@ -1097,8 +1617,11 @@ public class LMSCMIServlet extends HttpServlet
     * @param ioObjStatus The objective status from the sequencer.
     * 
     * @param iIndex The location within the objectives collection in which to store the status.
+    * 
+    * @param ioChanges The changes made to the run-time data.
     */
-   private void initializeObjectives(SCODataManager ioSCOData, ADLObjStatus ioObjStatus, int iIndex)
+   private void initializeObjectives(SCODataManager ioSCOData, ADLObjStatus ioObjStatus, int iIndex,
+                                     DMDelta ioChanges)
    {
       int err;
       String obj;
@@ -1106,24 +1629,24 @@ public class LMSCMIServlet extends HttpServlet
       // Set the objectives id
       obj = "cmi.objectives." + iIndex + ".id";
 
-      err = DMInterface.processSetValue(obj, ioObjStatus.mObjID, true, ioSCOData);
+      err = initializeValue(obj, ioObjStatus.mObjID, ioSCOData, ioChanges);
 
       // Set the objectives success status
       obj = "cmi.objectives." + iIndex + ".success_status";
 
       if( ioObjStatus.mStatus.equalsIgnoreCase("satisfied") )
       {
-         err = DMInterface.processSetValue(obj, "passed", true, ioSCOData);
+         err = initializeValue(obj, "passed", ioSCOData, ioChanges);
       }
       else if( ioObjStatus.mStatus.equalsIgnoreCase("notSatisfied") )
       {
-         err = DMInterface.processSetValue(obj, "failed", true, ioSCOData);
+         err = initializeValue(obj, "failed", ioSCOData, ioChanges);
       }
       
       // Set the objectives completion status
       obj = "cmi.objectives." + iIndex + ".completion_status";
 
-      err = DMInterface.processSetValue(obj, ioObjStatus.mCompletionStatus, true, ioSCOData);
+      err = initializeValue(obj, ioObjStatus.mCompletionStatus, ioSCOData, ioChanges);
 
       // Set the objectives scaled score
       obj = "cmi.objectives." + iIndex + ".score.scaled";
@@ -1131,7 +1654,7 @@ public class LMSCMIServlet extends HttpServlet
       if( ioObjStatus.mHasMeasure )
       {
          Double norm = new Double(ioObjStatus.mMeasure);
-         err = DMInterface.processSetValue(obj, norm.toString(), true, ioSCOData);
+         err = initializeValue(obj, norm.toString(), ioSCOData, ioChanges);
       }
       
       // Set the objectives raw score
@@ -1140,7 +1663,7 @@ public class LMSCMIServlet extends HttpServlet
       if( ioObjStatus.mHasRawScore )
       {
          Double norm = new Double(ioObjStatus.mRawScore);
-         err = DMInterface.processSetValue(obj, norm.toString(), true, ioSCOData);
+         err = initializeValue(obj, norm.toString(), ioSCOData, ioChanges);
       }
       
       // Set the objectives min score
@@ -1149,7 +1672,7 @@ public class LMSCMIServlet extends HttpServlet
       if( ioObjStatus.mHasMinScore )
       {
          Double norm = new Double(ioObjStatus.mMinScore);
-         err = DMInterface.processSetValue(obj, norm.toString(), true, ioSCOData);
+         err = initializeValue(obj, norm.toString(), ioSCOData, ioChanges);
       }
       
       // Set the objectives max score
@@ -1158,7 +1681,7 @@ public class LMSCMIServlet extends HttpServlet
       if( ioObjStatus.mHasMaxScore )
       {
          Double norm = new Double(ioObjStatus.mMaxScore);
-         err = DMInterface.processSetValue(obj, norm.toString(), true, ioSCOData);
+         err = initializeValue(obj, norm.toString(), ioSCOData, ioChanges);
       }
       
       // Set the objectives progress measure
@@ -1167,20 +1690,78 @@ public class LMSCMIServlet extends HttpServlet
       if( ioObjStatus.mHasProgressMeasure )
       {
          Double norm = new Double(ioObjStatus.mProgressMeasure);
-         err = DMInterface.processSetValue(obj, norm.toString(), true, ioSCOData);
+         err = initializeValue(obj, norm.toString(), ioSCOData, ioChanges);
       }
    }
 
+   /**
+    * Sets a run-time data model element as an administrative action while
+    * the data is initialized for delivery, and records the change.
+    * 
+    * @param iElement The dot-notation binding of the element.
+    * 
+    * @param iValue The value.
+    * 
+    * @param ioSCOData The run-time data to be processed.
+    * 
+    * @param ioChanges The changes made to the run-time data.
+    * 
+    * @return The data model error code of the request.
+    */
+   private int initializeValue(String iElement, String iValue, SCODataManager ioSCOData, DMDelta ioChanges)
+   {
+      int err = DMInterface.processSetValue(iElement, iValue, true, ioSCOData);
+
+      if( err == DMErrorCodes.NO_ERROR )
+      {
+         ioChanges.record(iElement, iValue, true, false);
+      }
+
+      return err;
+   }
+
    /**
     * Populate the collection of data stores.
     * 
     * @param iSCOData The run-time data to be processed.
     * @param iSeqActivity The current activity.
+    * @param ioTree The activity tree holding the data store collection.
     */
-   private void populateMap(SCODataManager iSCOData, SeqActivity iSeqActivity)
+   private void populateMap(SCODataManager iSCOData, SeqActivity iSeqActivity, SeqActivityTree ioTree)
    {
+      HashMap dsMap = ioTree.getDataStoreMap();
+
+      // The tree was reloaded since the SCO was launched; pick the collection up again
+      if ( dsMap == null && ioTree.getDataStoreLocation() != null )
+      {
+         int phase = PhaseTimer.enter(PhaseTimer.FILE_IO);
+
+         try
+         {
+            FileInputStream fin = new FileInputStream(ioTree.getDataStoreLocation());
+            ObjectInputStream oin = new ObjectInputStream(fin);
+            dsMap = (HashMap)oin.readObject();
+            oin.close();
+            fin.close();
+         }
+         catch ( Exception e )
+         {
+            // No collection has been persisted yet
+         }
+         finally
+         {
+            PhaseTimer.exit(phase);
+         }
+
+         if ( dsMap == null )
+         {
+            dsMap = new HashMap();
+         }
+         ioTree.setDataStoreMap(dsMap);
+      }
+
       // get list of data ids for this activity
-      if ( iSeqActivity != null && SeqActivityTree.dsMap != null )
+      if ( iSeqActivity != null && dsMap != null )
       {
          List dataStores = iSeqActivity.getDataStores();
          for ( int i = 0; i < dataStores.size(); i++ )
@@ -1191,7 +1772,7 @@ public class LMSCMIServlet extends HttpServlet
             {            
                // write to maps
                String val = getValue(iSCOData, ds.getId());
-               SeqActivityTree.dsMap.put(ds, val);
+               dsMap.put(ds, val);
             }
          }
       }
@@ -1233,16 +1814,20 @@ public class LMSCMIServlet extends HttpServlet
     * 
     * @param ioSCOData The run-time data to be processed
     * @param iSeqActivity The current activity.
+    * @param ioTree The activity tree holding the data store collection.
+    * @param ioChanges The changes made to the run-time data.
     */
-   private void restoreDataStores(SCODataManager ioSCOData, SeqActivity iSeqActivity)
+   private void restoreDataStores(SCODataManager ioSCOData, SeqActivity iSeqActivity, SeqActivityTree ioTree,
+                                  DMDelta ioChanges)
    {
       List dataStores = iSeqActivity.getDataStores();
-      initializeDataStores(ioSCOData, dataStores);
+      initializeDataStores(ioSCOData, dataStores, ioTree, ioChanges);
+      HashMap dsMap = ioTree.getDataStoreMap();
       for ( int i = 0; i < dataStores.size(); i++ )
       {
-         if ( SeqActivityTree.dsMap.get(dataStores.get(i)) != null )
+         if ( dsMap.get(dataStores.get(i)) != null )
          {
-            ioSCOData.setValue(new DMRequest("adl.data." + i + ".store", (String)SeqActivityTree.dsMap.get(dataStores.get(i)), true));
+            initializeValue("adl.data." + i + ".store", (String)dsMap.get(dataStores.get(i)), ioSCOData, ioChanges);
          }
       }
    }
@@ -1253,24 +1838,29 @@ public class LMSCMIServlet extends HttpServlet
     * 
     * @param ioSCOData The run-time data to be processed.
     * @param iDataStores The list of data stores for the current activity.
+    * @param ioTree The activity tree holding the data store collection.
+    * @param ioChanges The changes made to the run-time data.
     */
-   private void initializeDataStores(SCODataManager ioSCOData, List iDataStores)
+   private void initializeDataStores(SCODataManager ioSCOData, List iDataStores, SeqActivityTree ioTree,
+                                     DMDelta ioChanges)
    {
-      if ( SeqActivityTree.dsMap == null )
+      if ( ioTree.getDataStoreMap() == null )
       {
-         SeqActivityTree.dsMap = new HashMap();
+         ioTree.setDataStoreMap(new HashMap());
       }
+      HashMap dsMap = ioTree.getDataStoreMap();
 
       // loop through
       for ( int i = 0; i < iDataStores.size(); i++ )
       {
          // initialize id and r/w values per record
          DataStore ds = (DataStore)iDataStores.get(i);
-         ioSCOData.setValue(new DMRequest("adl.data." + i + ".id", ds.getId(), true));
-         ioSCOData.setValue(new DMRequest("adl.data." + i + ".store._access", ds.isReadable() + "<>" + ds.isWriteable(), true));
-         if ( ! SeqActivityTree.dsMap.containsKey(ds) )
+         initializeValue("adl.data." + i + ".id", ds.getId(), ioSCOData, ioChanges);
+         initializeValue("adl.data." + i + ".store._access", ds.isReadable() + "<>" + ds.isWriteable(), ioSCOData,
+                         ioChanges);
+         if ( ! dsMap.containsKey(ds) )
          {
-            SeqActivityTree.dsMap.put(ds, null);
+            dsMap.put(ds, null);
          }
       }
    }
@@ -1280,20 +1870,145 @@ public class LMSCMIServlet extends HttpServlet
     * 
     * @param iSCOData The run-time data to be processed
     * @param iSeqActivity The current activity.
+    * @param ioTree The activity tree holding the data store collection.
+    * @param ioChanges The changes made to the run-time data.
     * 
     * @throws FileNotFoundException Thrown if the data store is not found at the
     *                               expected location. 
     * @throws IOException Thrown if there's an i/o exception.
     * @throws ClassNotFoundException Thrown if read object can't find the specified class.
     */
-   private void readDataStores(SCODataManager iSCOData, SeqActivity iSeqActivity) throws FileNotFoundException, IOException, ClassNotFoundException
+   private void readDataStores(SCODataManager iSCOData, SeqActivity iSeqActivity, SeqActivityTree ioTree,
+                               DMDelta ioChanges) throws FileNotFoundException, IOException, ClassNotFoundException
+   {
+      int phase = PhaseTimer.enter(PhaseTimer.FILE_IO);
+
+      try
+      {
+         FileInputStream fin = new FileInputStream(ioTree.getDataStoreLocation());
+         ObjectInputStream oin = new ObjectInputStream(fin);
+         ioTree.setDataStoreMap((HashMap)oin.readObject());
+         oin.close();
+         fin.close();
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+
+      restoreDataStores(iSCOData, iSeqActivity, ioTree, ioChanges);
+   }
+
+   /**
+    * Counts the bytes read from a request.
+    */
+   private static class CountingInputStream extends FilterInputStream
+   {
+      /**
+       * The number of bytes read.
+       */
+      long mCount = 0;
+
+      /**
+       * Wraps a stream.
+       * 
+       * @param iIn The stream read from.
+       */
+      CountingInputStream(InputStream iIn)
+      {
+         super(iIn);
+      }
+
+      /**
+       * Reads a byte.
+       * 
+       * @return The byte, or -1 at the end of the stream.
+       * 
+       * @throws IOException Thrown if the stream can not be read.
+       */
+      public int read() throws IOException
+      {
+         int b = super.read();
+
+         if ( b != -1 )
+         {
+            mCount++;
+         }
+
+         return b;
+      }
+
+      /**
+       * Reads bytes into an array.
+       * 
+       * @param oBuf  The array.
+       * @param iOff  The first index filled.
+       * @param iLen  The most bytes read.
+       * 
+       * @return The number of bytes read, or -1 at the end of the stream.
+       * 
+       * @throws IOException Thrown if the stream can not be read.
+       */
+      public int read(byte[] oBuf, int iOff, int iLen) throws IOException
+      {
+         int n = super.read(oBuf, iOff, iLen);
+
+         if ( n > 0 )
+         {
+            mCount += n;
+         }
+
+         return n;
+      }
+   }
+
+   /**
+    * Counts the bytes written to a response.
+    */
+   private static class CountingOutputStream extends FilterOutputStream
    {
-      FileInputStream fin = new FileInputStream(SeqActivityTree.dataStoreLoc);
-      ObjectInputStream oin = new ObjectInputStream(fin);
-      SeqActivityTree.dsMap = (HashMap)oin.readObject();
-      restoreDataStores(iSCOData, iSeqActivity);
-      oin.close();
-      fin.close();
+      /**
+       * The number of bytes written.
+       */
+      long mCount = 0;
+
+      /**
+       * Wraps a stream.
+       * 
+       * @param iOut The stream written to.
+       */
+      CountingOutputStream(OutputStream iOut)
+      {
+         super(iOut);
+      }
+
+      /**
+       * Writes a byte.
+       * 
+       * @param iByte The byte.
+       * 
+       * @throws IOException Thrown if the stream can not be written.
+       */
+      public void write(int iByte) throws IOException
+      {
+         out.write(iByte);
+         mCount++;
+      }
+
+      /**
+       * Writes bytes from an array.
+       * 
+       * @param iBuf  The array.
+       * @param iOff  The first index written.
+       * @param iLen  The number of bytes written.
+       * 
+       * @throws IOException Thrown if the stream can not be written.
+       */
+      public void write(byte[] iBuf, int iOff, int iLen) throws IOException
+      {
+         out.write(iBuf, iOff, iLen);
+         mCount += iLen;
+      }
    }
 
 } // LMSCMIServlet
@@ -28,6 +28,7 @@ package org.adl.samplerte.server;
 
 import java.io.Serializable;
 
+import org.adl.datamodels.DMDelta;
 import org.adl.datamodels.SCODataManager;
 
 /**
@@ -93,11 +94,37 @@ public class LMSCMIServletRequest implements Serializable
     */
    public static final int TYPE_NAV = 5;
 
+   /**
+    * Enumeration of possible request types that are processed by the <code>
+    * LMSCMIServlet</code>.  A commit carrying only the data model elements
+    * changed since the last successful commit.
+    */
+   public static final int TYPE_SET_DELTA = 6;
+
    /**
     * The run-time data that is being send from the client
     */
    public SCODataManager mActivityData = null;
 
+   /**
+    * The run-time data changed since the last successful commit; only used
+    * by <code>TYPE_SET_DELTA</code> requests.
+    */
+   public DMDelta mDelta = null;
+
+   /**
+    * The commit sequence number, provided by the servlet, that 
+    * <code>mDelta</code> was built against.
+    */
+   public long mCommitSequence = 0;
+
+   /**
+    * The version of the committed run-time data the client holds for the
+    * SCO attempt; only used by <code>TYPE_INIT</code> and 
+    * <code>TYPE_GET</code> requests.  Zero indicates the client holds none.
+    */
+   public long mKnownVersion = 0;
+
    /**
     * Indicates if the request is being sent due to an LMSFinish
     */
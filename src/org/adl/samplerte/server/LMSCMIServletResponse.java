@@ -29,6 +29,7 @@ package org.adl.samplerte.server;
 import java.io.Serializable;
 import java.util.Vector;
 
+import org.adl.datamodels.DMDelta;
 import org.adl.datamodels.SCODataManager;
 import org.adl.sequencer.ADLValidRequests;
 
@@ -106,6 +107,50 @@ public class LMSCMIServletResponse implements Serializable
     */
    public boolean mAuto = false;
 
+   /**
+    * The commit sequence number the client must send with its next
+    * <code>TYPE_SET_DELTA</code> request.  Zero indicates the servlet is not
+    * tracking the run-time data and a complete commit is required.
+    */
+   public long mCommitSequence = 0;
+
+   /**
+    * Indicates a <code>TYPE_SET_DELTA</code> request could not be merged and
+    * the client must resend its complete run-time data.
+    */
+   public boolean mResyncRequired = false;
+
+   /**
+    * The version of the committed run-time data the response is based on:
+    * the version read by <code>TYPE_INIT</code> and <code>TYPE_GET</code>
+    * requests, or the version written by a commit.  Zero indicates the data
+    * is not versioned.
+    */
+   public long mStateVersion = 0;
+
+   /**
+    * Indicates <code>mActivityData</code> was left out because the client
+    * already holds <code>mStateVersion</code>
+    * (<code>LMSCMIServletRequest.mKnownVersion</code>).
+    */
+   public boolean mNotModified = false;
+
+   /**
+    * The changes a <code>TYPE_INIT</code> request made to the committed
+    * run-time data before delivery (objectives and data stores initialized
+    * from the activity tree), sent with <code>mNotModified</code> so the 
+    * client can apply them to the copy it holds.
+    */
+   public DMDelta mDelta = null;
+
+   /**
+    * The checksum (<code>CommittedState.checksum()</code>) of the encoded 
+    * run-time data: the data delivered by a <code>TYPE_INIT</code> request 
+    * with <code>mNotModified</code>, or the data written by a commit.  Lets
+    * the client confirm its own copy matches.
+    */
+   public long mStateChecksum = 0;
+
    /**
     * Default constructor
     */
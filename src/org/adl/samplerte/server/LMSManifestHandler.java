@@ -33,7 +33,6 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -703,7 +702,6 @@ public class LMSManifestHandler implements Serializable
                String sqlDeleteCourse1 = "DELETE FROM CourseInfo WHERE CourseID = ?";
                PreparedStatement stmtDeleteCourse2;
                String sqlDeleteCourse2 = "DELETE FROM ItemInfo WHERE CourseID = ?";
-               conn = LMSDatabaseHandler.getConnection();
                stmtDeleteCourse1 = conn.prepareStatement(sqlDeleteCourse1);
                stmtDeleteCourse2 = conn.prepareStatement(sqlDeleteCourse2);
                synchronized (stmtDeleteCourse1)
@@ -750,11 +748,10 @@ public class LMSManifestHandler implements Serializable
             java.io.File serializeFile = new java.io.File(serializeFileName);
             
             FileOutputStream outFile = new FileOutputStream(serializeFile);
-            ObjectOutputStream s = new ObjectOutputStream(outFile);
-            s.writeObject(mySeqActivityTree);
-            s.flush(); 
-            s.close();
+            outFile.write(mySeqActivityTree.toByteArray());
             outFile.close();
+
+            CourseDefinitions.getInstance().invalidate(mCourseID);
             
             /////////////////////////////////////////////////////////
             ADLSequencer theSequencer = new ADLSequencer();
@@ -0,0 +1,122 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <strong>Filename:</strong> LearnerLocks.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Orders the work done on behalf of a learner in a course.  Every request
+ * that reads or changes a learner's activity tree, run-time data or data
+ * stores for a course holds the lock for that (learner, course) pair, so two
+ * requests for the same pair never interleave while requests for different
+ * learners run in parallel.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * The locks are striped: each (learner, course) pair hashes onto one of a
+ * fixed set of locks, so no per-learner state has to be created or cleaned
+ * up.  Unrelated pairs sharing a stripe only wait on each other for the
+ * length of a single request.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The locks are reentrant.  A thread holding one learner's lock must never
+ * wait on another learner's lock.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition</li>
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class LearnerLocks
+{
+   /**
+    * The number of lock stripes; must be a power of two.
+    */
+   private static final int STRIPES = 256;
+
+   /**
+    * The single instance shared by the servlets and JSPs of the Sample RTE.
+    */
+   private static final LearnerLocks sInstance = new LearnerLocks();
+
+   /**
+    * The lock stripes.
+    */
+   private final Lock[] mLocks = new Lock[STRIPES];
+
+   /**
+    * Initializes the lock stripes.
+    */
+   private LearnerLocks()
+   {
+      for ( int i = 0; i < STRIPES; i++ )
+      {
+         mLocks[i] = new ReentrantLock();
+      }
+   }
+
+   /**
+    * Provides the locks shared by the Sample RTE.
+    *
+    * @return The shared <code>LearnerLocks</code>.
+    */
+   public static LearnerLocks getInstance()
+   {
+      return sInstance;
+   }
+
+   /**
+    * Provides the lock guarding a learner's state for a course.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @return The lock for the (learner, course) pair.
+    */
+   public Lock getLock(String iUserID, String iCourseID)
+   {
+      int hash = 31 * String.valueOf(iUserID).hashCode() + 
+                 String.valueOf(iCourseID).hashCode();
+
+      // Spread the high bits so similar IDs land on different stripes
+      hash ^= ( hash >>> 16 );
+
+      return mLocks[hash & ( STRIPES - 1 )];
+   }
+
+} // LearnerLocks
@@ -0,0 +1,115 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.adl.samplerte.util.CommittedStateCache;
+import org.adl.samplerte.util.LMSDBHandler;
+import org.adl.samplerte.util.LMSDatabaseHandler;
+import org.adl.samplerte.util.LearnerStateStores;
+import org.adl.sequencer.ADLGlobalObjStore;
+import org.adl.sequencer.ADLSeqUtilities;
+
+/**
+ * <strong>Filename:</strong> MetricsServlet.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Serves the <code>LMSCMIServlet</code> request metrics as plain text in the
+ * Prometheus text format, followed by the activity tree cache, learner
+ * state store and database pool statistics as comments.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition
+ * Sample RTE.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The same metrics are available through JMX; see 
+ * <code>CMIMetrics</code>.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class MetricsServlet extends HttpServlet
+{
+   /**
+    * Writes the current metrics.
+    * 
+    * @param iRequest  The request.
+    * 
+    * @param oResponse The response.
+    * 
+    * @throws ServletException Not thrown.
+    * 
+    * @throws IOException Thrown if the response can not be written.
+    */
+   public void doGet(HttpServletRequest iRequest, 
+                     HttpServletResponse oResponse) 
+      throws ServletException, IOException
+   {
+      oResponse.setContentType("text/plain; version=0.0.4");
+      oResponse.setHeader("Cache-Control", "no-cache");
+
+      PrintWriter out = oResponse.getWriter();
+
+      CMIMetrics.getInstance().write(out);
+
+      out.println("# activityTreeCache " + 
+                  ActivityTreeCache.getInstance().getStatistics());
+      out.println("# courseDefinitions " + 
+                  CourseDefinitions.getInstance().getStatistics());
+      out.println("# committedStateCache " + 
+                  CommittedStateCache.getInstance().getStatistics());
+      out.println("# commitPipeline " + 
+                  CommitPipeline.getInstance().getStatistics());
+      out.println("# learnerStateStore " + 
+                  LearnerStateStores.getStore().getStatistics());
+      out.println("# globalObjectiveReads " + 
+                  ADLSeqUtilities.getGlobalObjReadStatistics());
+      out.println("# globalObjectiveWrites " + 
+                  ADLSeqUtilities.getGlobalObjWriteStatistics());
+      out.println("# globalObjectiveStore " + 
+                  ADLGlobalObjStore.getStoreStatistics());
+      out.println("# rteDatabase " + 
+                  LMSDatabaseHandler.getPool().getStatistics());
+      out.println("# objectivesDatabase " + 
+                  LMSDBHandler.getPool().getStatistics());
+
+      out.close();
+   }
+
+} // MetricsServlet
@@ -0,0 +1,253 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.server;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.adl.datamodels.DMDelta;
+import org.adl.datamodels.SCODataManager;
+import org.adl.util.PhaseTimer;
+
+/**
+ * <strong>Filename:</strong> SCODataCache.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Holds the server's copy of the run-time data of each SCO attempt that is
+ * currently being delivered, so <code>LMSCMIServlet</code> can merge the
+ * changes (<code>DMDelta</code>) sent by the client on Commit instead of
+ * receiving the whole <code>SCODataManager</code>.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * Each copy carries a commit sequence number.  A change set is only merged
+ * when it was built against the sequence number the server holds; otherwise
+ * the client is asked to resend its complete run-time data.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The cached copies are never terminated.  Termination is applied to a
+ * private copy of the data before it is persisted, exactly as it is applied
+ * to the data received with a complete Commit.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition</li>
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class SCODataCache
+{
+   /**
+    * The default maximum number of SCO attempts held in memory.
+    */
+   public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+   /**
+    * The cached run-time data, keyed by the SCO attempt's state file.
+    */
+   private Map mEntries = null;
+
+   /**
+    * Initializes a run-time data cache.
+    *
+    * @param iMaxEntries The maximum number of SCO attempts held in memory.
+    */
+   public SCODataCache(final int iMaxEntries)
+   {
+      mEntries = new LinkedHashMap(16, 0.75f, true)
+      {
+         protected boolean removeEldestEntry(Map.Entry iEldest)
+         {
+            return size() > iMaxEntries;
+         }
+      };
+   }
+
+   /**
+    * Starts tracking the run-time data of a SCO attempt, replacing any data
+    * already held for it.
+    *
+    * @param iKey     The state file of the SCO attempt.
+    *
+    * @param iSCOData The current run-time data of the attempt.  The cache
+    *                 takes ownership of this object.
+    *
+    * @return The commit sequence number the client must send with its next
+    *         change set.
+    */
+   public long open(String iKey, SCODataManager iSCOData)
+   {
+      Entry entry = new Entry(iSCOData);
+
+      synchronized( this )
+      {
+         Entry old = (Entry)mEntries.get(iKey);
+
+         if ( old != null )
+         {
+            entry.mSequence = old.mSequence + 1;
+         }
+
+         mEntries.put(iKey, entry);
+      }
+
+      return entry.mSequence;
+   }
+
+   /**
+    * Merges a change set into the run-time data of a SCO attempt.  When the
+    * changes are merged the attempt's commit sequence number becomes
+    * <code>iSequence + 1</code>.
+    *
+    * @param iKey      The state file of the SCO attempt.
+    *
+    * @param iSequence The commit sequence number the change set was built
+    *                  against.
+    *
+    * @param iDelta    The changes made since that commit.
+    *
+    * @return A private copy of the merged run-time data, or <code>null</code>
+    *         if the client must resend its complete run-time data.
+    */
+   public SCODataManager merge(String iKey, long iSequence, DMDelta iDelta)
+   {
+      Entry entry = null;
+
+      synchronized( this )
+      {
+         entry = (Entry)mEntries.get(iKey);
+      }
+
+      if ( entry == null || iDelta == null )
+      {
+         return null;
+      }
+
+      SCODataManager result = null;
+
+      synchronized( entry )
+      {
+         if ( entry.mSequence != iSequence || entry.mData == null )
+         {
+            return null;
+         }
+
+         if ( iDelta.apply(entry.mData) != 0 )
+         {
+            // The copies no longer agree; drop ours until the client resyncs
+            entry.mData = null;
+
+            return null;
+         }
+
+         try
+         {
+            result = copy(entry.mData);
+         }
+         catch ( Exception e )
+         {
+            entry.mData = null;
+
+            return null;
+         }
+
+         entry.mSequence++;
+      }
+
+      return result;
+   }
+
+   /**
+    * Stops tracking the run-time data of a SCO attempt.
+    *
+    * @param iKey The state file of the SCO attempt.
+    */
+   public synchronized void close(String iKey)
+   {
+      mEntries.remove(iKey);
+   }
+
+   /**
+    * Creates an independent copy of a SCO's run-time data.
+    *
+    * @param iSCOData The run-time data to copy.
+    *
+    * @return The copy.
+    *
+    * @throws IOException Thrown if the data can not be serialized.
+    *
+    * @throws ClassNotFoundException Thrown if the data can not be
+    *                                deserialized.
+    */
+   public static SCODataManager copy(SCODataManager iSCOData) 
+      throws IOException, ClassNotFoundException
+   {
+      int phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+      try
+      {
+         return SCODataManager.fromByteArray(iSCOData.toByteArray());
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+   }
+
+   /**
+    * The cached run-time data of one SCO attempt.
+    */
+   private static class Entry
+   {
+      /**
+       * The server's copy of the run-time data.
+       */
+      SCODataManager mData = null;
+
+      /**
+       * The sequence number of the last commit merged into the data.
+       */
+      long mSequence = 1;
+
+      /**
+       * Initializes a cache entry.
+       *
+       * @param iSCOData The run-time data of the attempt.
+       */
+      Entry(SCODataManager iSCOData)
+      {
+         mData = iSCOData;
+      }
+   }
+
+} // SCODataCache
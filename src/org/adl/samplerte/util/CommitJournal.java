@@ -0,0 +1,835 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * <strong>Filename:</strong> CommitJournal.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * A durable record of the SCO commits accepted by <code>LMSCMIServlet</code>
+ * that have not yet been applied to the learner's activity tree and written
+ * to the learner state store.  A commit is appended and synced before the
+ * SCO is told it succeeded; once it has been applied it is marked as such.
+ * Commits still unapplied when the journal is opened are returned by
+ * <code>getPending()</code> so they can be applied again.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * The journal is kept in append-only segment files named
+ * <code>journal-NNNNNN.log</code>.  Each record is laid out as:
+ * <pre>
+ *    int    body length
+ *    byte   operation (COMMIT or APPLIED)
+ *    long   journal sequence number
+ *    UTF    user ID           (COMMIT only)
+ *    UTF    course ID         (COMMIT only)
+ *    UTF    state ID          (COMMIT only)
+ *    UTF    activity ID       (COMMIT only)
+ *    UTF    SCO ID            (COMMIT only)
+ *    byte   request flags     (COMMIT only)
+ *    byte[] encoded run-time data (COMMIT only)
+ *    long   CRC32 of the body
+ * </pre>
+ * A new segment is started once the active one reaches the configured 
+ * size.  The oldest segments are removed once every commit in them has been
+ * applied, so an <code>APPLIED</code> record never outlives the commit it 
+ * refers to.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Commits are synced through a <code>GroupCommit</code>, so one sync covers
+ * every commit appended while the previous sync ran.  <code>APPLIED</code>
+ * records are not synced on their own; they become durable with the next
+ * commit.  A commit whose <code>APPLIED</code> record was lost in a crash is
+ * applied a second time, which writes the same data again.  A torn record at
+ * the end of the newest segment is truncated away when the journal is 
+ * opened.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public class CommitJournal
+{
+   /**
+    * The default size at which a new segment is started.
+    */
+   public static final long DEFAULT_SEGMENT_SIZE = 4L * 1024L * 1024L;
+
+   /**
+    * The directory, below the Sample RTE's files, holding the segments of the
+    * journal.
+    */
+   public static final String DEFAULT_DIR = File.separator + 
+      "SCORM4EDSampleRTE111Files" + File.separator + "commitJournal";
+
+   /**
+    * Operation code of a record holding an accepted commit.
+    */
+   private static final byte OP_COMMIT = 1;
+
+   /**
+    * Operation code of a record marking a commit as applied.
+    */
+   private static final byte OP_APPLIED = 2;
+
+   /**
+    * Request flag set when the SCO has terminated.
+    */
+   private static final int FLAG_FINISHED = 1;
+
+   /**
+    * Request flag set when the learner pushed Quit.
+    */
+   private static final int FLAG_QUIT = 2;
+
+   /**
+    * Request flag set when the learner pushed Suspend All.
+    */
+   private static final int FLAG_SUSPEND = 4;
+
+   /**
+    * The size of the length prefix and CRC surrounding each record body.
+    */
+   private static final int RECORD_OVERHEAD = 4 + 8;
+
+   /**
+    * The prefix of every segment's file name.
+    */
+   private static final String SEGMENT_PREFIX = "journal-";
+
+   /**
+    * The suffix of every segment's file name.
+    */
+   private static final String SEGMENT_SUFFIX = ".log";
+
+   /**
+    * The logger used to report damaged segments.
+    */
+   private static Logger mLogger = 
+      Logger.getLogger("org.adl.util.debug.samplerte");
+
+   /**
+    * The directory holding the segments.
+    */
+   private File mDir = null;
+
+   /**
+    * The size at which a new segment is started.
+    */
+   private long mSegmentSize = DEFAULT_SEGMENT_SIZE;
+
+   /**
+    * The open segments, keyed by segment number (<code>Integer</code>).
+    */
+   private TreeMap mSegments = new TreeMap();
+
+   /**
+    * The number of unapplied commits in each segment, keyed by segment 
+    * number (<code>Integer</code>) with <code>int[1]</code> values.
+    */
+   private TreeMap mUnapplied = new TreeMap();
+
+   /**
+    * The segment each unapplied commit was appended to, keyed by journal
+    * sequence number (<code>Long</code>).
+    */
+   private HashMap mCommitSegments = new HashMap();
+
+   /**
+    * The commits found unapplied when the journal was opened, in journal 
+    * order.
+    */
+   private LinkedHashMap mRecovered = new LinkedHashMap();
+
+   /**
+    * The segment new records are appended to.
+    */
+   private int mActiveSegment = 0;
+
+   /**
+    * The journal sequence number given to the next commit.
+    */
+   private long mNextSequence = 1;
+
+   /**
+    * The number of commits appended since the journal was opened.
+    */
+   private long mAppended = 0;
+
+   /**
+    * The number of commits marked applied since the journal was opened.
+    */
+   private long mApplied = 0;
+
+   /**
+    * Indicates the journal has been closed.
+    */
+   private boolean mClosed = false;
+
+   /**
+    * Syncs appended commits in batches.
+    */
+   private GroupCommit mGroupCommit = null;
+
+   /**
+    * Opens a commit journal, recovering the commits that were not applied 
+    * from any existing segments.
+    * 
+    * @param iDir           The directory holding the segments; it is 
+    *                       created if needed.
+    * 
+    * @param iSegmentSize   The size at which a new segment is started.
+    * 
+    * @param iLatencyBudget The number of milliseconds a commit may wait for 
+    *                       others to share its sync.
+    * 
+    * @throws IOException Thrown if the segments can not be opened.
+    */
+   public CommitJournal(String iDir, long iSegmentSize, long iLatencyBudget)
+      throws IOException
+   {
+      mDir = new File(iDir);
+      mSegmentSize = iSegmentSize > 0 ? iSegmentSize : DEFAULT_SEGMENT_SIZE;
+      mGroupCommit = new GroupCommit(new JournalSyncer(), iLatencyBudget, 
+                                     GroupCommit.DEFAULT_MAX_BATCH);
+
+      if ( !mDir.isDirectory() && !mDir.mkdirs() )
+      {
+         throw new IOException("Unable to create commit journal directory " + 
+                               mDir);
+      }
+
+      recover();
+   }
+
+   /**
+    * Appends a commit and waits until it is durable.  The commit is given 
+    * the next journal sequence number.
+    * 
+    * @param ioEntry The commit.
+    * 
+    * @throws IOException Thrown if the commit can not be written or synced.
+    */
+   public void append(Entry ioEntry) throws IOException
+   {
+      synchronized ( this )
+      {
+         checkOpen();
+
+         ioEntry.mSequence = mNextSequence++;
+
+         appendRecord(OP_COMMIT, ioEntry);
+
+         Integer segment = new Integer(mActiveSegment);
+
+         mCommitSegments.put(new Long(ioEntry.mSequence), segment);
+         getUnapplied(segment)[0]++;
+         mAppended++;
+      }
+
+      mGroupCommit.commit(null);
+   }
+
+   /**
+    * Marks a commit as applied.  Segments holding only applied commits are
+    * removed.
+    * 
+    * @param iSequence The journal sequence number of the commit.
+    * 
+    * @throws IOException Thrown if the mark can not be written.
+    */
+   public synchronized void applied(long iSequence) throws IOException
+   {
+      checkOpen();
+
+      Integer segment = (Integer)mCommitSegments.remove(new Long(iSequence));
+
+      if ( segment == null )
+      {
+         return;
+      }
+
+      Entry mark = new Entry();
+      mark.mSequence = iSequence;
+
+      appendRecord(OP_APPLIED, mark);
+
+      getUnapplied(segment)[0]--;
+      mApplied++;
+
+      removeAppliedSegments();
+   }
+
+   /**
+    * Provides the commits that were not applied before the journal was last
+    * closed, in the order they were accepted.  They remain in the journal
+    * until they are marked applied.
+    * 
+    * @return The unapplied commits (<code>Entry</code>).
+    */
+   public synchronized List getPending()
+   {
+      return new ArrayList(mRecovered.values());
+   }
+
+   /**
+    * Describes the journal's size, the commits it holds and how its commits
+    * were synced.
+    * 
+    * @return The statistics.
+    */
+   public String getStatistics()
+   {
+      String sizes = null;
+
+      synchronized ( this )
+      {
+         sizes = "segments=" + mSegments.size() + " appended=" + mAppended +
+                 " applied=" + mApplied + " unapplied=" + 
+                 mCommitSegments.size();
+      }
+
+      return "commit journal: " + sizes + " " + mGroupCommit.getStatistics();
+   }
+
+   /**
+    * Closes all segments.  The journal must not be used afterwards.
+    */
+   public synchronized void close()
+   {
+      mClosed = true;
+
+      Iterator it = mSegments.values().iterator();
+
+      while ( it.hasNext() )
+      {
+         try
+         {
+            ((RandomAccessFile)it.next()).close();
+         }
+         catch ( IOException ioe )
+         {
+            mLogger.warning("Unable to close commit journal segment: " + ioe);
+         }
+      }
+
+      mSegments.clear();
+   }
+
+   /**
+    * Appends a record to the active segment, starting a new segment if the
+    * active one is full.
+    * 
+    * @param iOp    The operation code.
+    * 
+    * @param iEntry The commit, or for <code>APPLIED</code> records an entry
+    *               holding only the sequence number.
+    * 
+    * @throws IOException Thrown if the record can not be written.
+    */
+   private void appendRecord(byte iOp, Entry iEntry) throws IOException
+   {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(
+         128 + (iEntry.mData == null ? 0 : iEntry.mData.length));
+      DataOutputStream dos = new DataOutputStream(bos);
+
+      dos.writeInt(0);
+      dos.writeByte(iOp);
+      dos.writeLong(iEntry.mSequence);
+
+      if ( iOp == OP_COMMIT )
+      {
+         int flags = 0;
+
+         if ( iEntry.mIsFinished )
+         {
+            flags |= FLAG_FINISHED;
+         }
+         if ( iEntry.mQuitPushed )
+         {
+            flags |= FLAG_QUIT;
+         }
+         if ( iEntry.mSuspendPushed )
+         {
+            flags |= FLAG_SUSPEND;
+         }
+
+         dos.writeUTF(iEntry.mUserID);
+         dos.writeUTF(iEntry.mCourseID);
+         dos.writeUTF(iEntry.mStateID);
+         dos.writeUTF(iEntry.mActivityID == null ? "" : iEntry.mActivityID);
+         dos.writeUTF(iEntry.mScoID == null ? "" : iEntry.mScoID);
+         dos.writeByte(flags);
+         dos.write(iEntry.mData);
+      }
+
+      int bodyLength = dos.size() - 4;
+      dos.writeLong(0L);
+      dos.flush();
+
+      byte[] record = bos.toByteArray();
+
+      writeInt(record, 0, bodyLength);
+
+      CRC32 crc = new CRC32();
+      crc.update(record, 4, bodyLength);
+      writeLong(record, 4 + bodyLength, crc.getValue());
+
+      RandomAccessFile raf = getSegment(mActiveSegment);
+
+      if ( raf.length() > 0 && raf.length() + record.length > mSegmentSize )
+      {
+         // Nothing is synced in a segment once it is no longer active
+         raf.getFD().sync();
+
+         mActiveSegment++;
+         raf = openSegment(mActiveSegment);
+      }
+
+      raf.seek(raf.length());
+      raf.write(record);
+   }
+
+   /**
+    * Removes the oldest segments for as long as they are no longer active and
+    * hold no unapplied commits.
+    */
+   private void removeAppliedSegments()
+   {
+      while ( !mSegments.isEmpty() )
+      {
+         Integer oldest = (Integer)mSegments.firstKey();
+
+         if ( oldest.intValue() >= mActiveSegment || 
+              getUnapplied(oldest)[0] > 0 )
+         {
+            break;
+         }
+
+         try
+         {
+            ((RandomAccessFile)mSegments.remove(oldest)).close();
+         }
+         catch ( IOException ioe )
+         {
+            mLogger.warning("Unable to close commit journal segment: " + ioe);
+         }
+
+         mUnapplied.remove(oldest);
+
+         File file = getSegmentFile(oldest.intValue());
+
+         if ( !file.delete() )
+         {
+            mLogger.warning("Unable to remove commit journal segment " + file);
+         }
+      }
+   }
+
+   /**
+    * Rebuilds the unapplied commits by scanning the existing segments in 
+    * order.
+    * 
+    * @throws IOException Thrown if a segment can not be read.
+    */
+   private void recover() throws IOException
+   {
+      String[] names = mDir.list();
+      int[] numbers = new int[names == null ? 0 : names.length];
+      int count = 0;
+
+      for ( int i = 0; i < numbers.length; i++ )
+      {
+         if ( names[i].startsWith(SEGMENT_PREFIX) && 
+              names[i].endsWith(SEGMENT_SUFFIX) )
+         {
+            try
+            {
+               numbers[count] = Integer.parseInt(names[i].substring(
+                  SEGMENT_PREFIX.length(), 
+                  names[i].length() - SEGMENT_SUFFIX.length()));
+               count++;
+            }
+            catch ( NumberFormatException nfe )
+            {
+               mLogger.warning("Ignoring unexpected file in commit journal: " +
+                               names[i]);
+            }
+         }
+      }
+
+      int[] segments = new int[count];
+      System.arraycopy(numbers, 0, segments, 0, count);
+      Arrays.sort(segments);
+
+      for ( int i = 0; i < segments.length; i++ )
+      {
+         scan(segments[i], i == segments.length - 1);
+      }
+
+      if ( segments.length == 0 )
+      {
+         mActiveSegment = 1;
+         openSegment(mActiveSegment);
+      }
+      else
+      {
+         // Start afresh so the recovered segments can be removed once applied
+         mActiveSegment = segments[segments.length - 1] + 1;
+         openSegment(mActiveSegment);
+         removeAppliedSegments();
+      }
+
+      if ( !mRecovered.isEmpty() )
+      {
+         mLogger.info("Commit journal holds " + mRecovered.size() + 
+                      " unapplied commits");
+      }
+   }
+
+   /**
+    * Replays the records of one segment.  A damaged tail of the newest 
+    * segment is truncated; a damaged record in an older segment ends the 
+    * scan of that segment.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @param iLast    Indicates this is the newest segment.
+    * 
+    * @throws IOException Thrown if the segment can not be read.
+    */
+   private void scan(int iSegment, boolean iLast) throws IOException
+   {
+      RandomAccessFile raf = openSegment(iSegment);
+      Integer segment = new Integer(iSegment);
+      long length = raf.length();
+      long pos = 0;
+
+      getUnapplied(segment);
+      raf.seek(0);
+
+      while ( pos + RECORD_OVERHEAD <= length )
+      {
+         int bodyLength = raf.readInt();
+
+         if ( bodyLength <= 0 || pos + RECORD_OVERHEAD + bodyLength > length )
+         {
+            break;
+         }
+
+         byte[] body = new byte[bodyLength];
+         raf.readFully(body);
+         long stored = raf.readLong();
+
+         CRC32 crc = new CRC32();
+         crc.update(body, 0, bodyLength);
+
+         if ( crc.getValue() != stored )
+         {
+            break;
+         }
+
+         DataInputStream dis = 
+            new DataInputStream(new ByteArrayInputStream(body));
+         byte op = dis.readByte();
+         Long sequence = new Long(dis.readLong());
+
+         if ( op == OP_COMMIT )
+         {
+            Entry entry = new Entry();
+            entry.mSequence = sequence.longValue();
+            entry.mUserID = dis.readUTF();
+            entry.mCourseID = dis.readUTF();
+            entry.mStateID = dis.readUTF();
+            entry.mActivityID = dis.readUTF();
+            entry.mScoID = dis.readUTF();
+
+            int flags = dis.readByte();
+            entry.mIsFinished = ( flags & FLAG_FINISHED ) != 0;
+            entry.mQuitPushed = ( flags & FLAG_QUIT ) != 0;
+            entry.mSuspendPushed = ( flags & FLAG_SUSPEND ) != 0;
+
+            entry.mData = new byte[dis.available()];
+            dis.readFully(entry.mData);
+
+            mRecovered.put(sequence, entry);
+            mCommitSegments.put(sequence, segment);
+            getUnapplied(segment)[0]++;
+
+            mNextSequence = Math.max(mNextSequence, 
+                                     entry.mSequence + 1);
+         }
+         else if ( op == OP_APPLIED )
+         {
+            Integer committed = (Integer)mCommitSegments.remove(sequence);
+
+            if ( committed != null )
+            {
+               mRecovered.remove(sequence);
+               getUnapplied(committed)[0]--;
+            }
+         }
+
+         pos += RECORD_OVERHEAD + bodyLength;
+      }
+
+      if ( pos < length )
+      {
+         mLogger.warning("Damaged commit journal record in " + 
+                         getSegmentFile(iSegment) + " at offset " + pos);
+
+         if ( iLast )
+         {
+            raf.setLength(pos);
+         }
+      }
+   }
+
+   /**
+    * Returns the unapplied commit count of a segment, creating it if needed.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The count, as the only element of the array.
+    */
+   private int[] getUnapplied(Integer iSegment)
+   {
+      int[] count = (int[])mUnapplied.get(iSegment);
+
+      if ( count == null )
+      {
+         count = new int[1];
+         mUnapplied.put(iSegment, count);
+      }
+
+      return count;
+   }
+
+   /**
+    * Returns an open segment, opening it if needed.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The segment file.
+    * 
+    * @throws IOException Thrown if the segment can not be opened.
+    */
+   private RandomAccessFile getSegment(int iSegment) throws IOException
+   {
+      RandomAccessFile raf = 
+         (RandomAccessFile)mSegments.get(new Integer(iSegment));
+
+      return raf == null ? openSegment(iSegment) : raf;
+   }
+
+   /**
+    * Opens, creating if needed, a segment.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The segment file.
+    * 
+    * @throws IOException Thrown if the segment can not be opened.
+    */
+   private RandomAccessFile openSegment(int iSegment) throws IOException
+   {
+      RandomAccessFile raf = 
+         new RandomAccessFile(getSegmentFile(iSegment), "rw");
+
+      mSegments.put(new Integer(iSegment), raf);
+
+      return raf;
+   }
+
+   /**
+    * Builds the file of a segment.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The segment's file.
+    */
+   private File getSegmentFile(int iSegment)
+   {
+      String num = Integer.toString(iSegment);
+
+      while ( num.length() < 6 )
+      {
+         num = "0" + num;
+      }
+
+      return new File(mDir, SEGMENT_PREFIX + num + SEGMENT_SUFFIX);
+   }
+
+   /**
+    * Verifies the journal has not been closed.
+    * 
+    * @throws IOException Thrown if the journal has been closed.
+    */
+   private void checkOpen() throws IOException
+   {
+      if ( mClosed )
+      {
+         throw new IOException("The commit journal is closed");
+      }
+   }
+
+   /**
+    * Stores an int, big-endian, in a byte array.
+    * 
+    * @param ioBuf    The array.
+    * 
+    * @param iOffset  Where to store the value.
+    * 
+    * @param iValue   The value.
+    */
+   private static void writeInt(byte[] ioBuf, int iOffset, int iValue)
+   {
+      for ( int i = 3; i >= 0; i-- )
+      {
+         ioBuf[iOffset + i] = (byte)iValue;
+         iValue >>>= 8;
+      }
+   }
+
+   /**
+    * Stores a long, big-endian, in a byte array.
+    * 
+    * @param ioBuf    The array.
+    * 
+    * @param iOffset  Where to store the value.
+    * 
+    * @param iValue   The value.
+    */
+   private static void writeLong(byte[] ioBuf, int iOffset, long iValue)
+   {
+      for ( int i = 7; i >= 0; i-- )
+      {
+         ioBuf[iOffset + i] = (byte)iValue;
+         iValue >>>= 8;
+      }
+   }
+
+   /**
+    * One commit accepted from a SCO: the terminated, encoded run-time data 
+    * and what the request asked to be done with it.
+    */
+   public static class Entry
+   {
+      /**
+       * The journal sequence number, assigned when the commit is appended.
+       */
+      public long mSequence = 0;
+
+      /**
+       * The ID of the learner.
+       */
+      public String mUserID = null;
+
+      /**
+       * The ID of the course.
+       */
+      public String mCourseID = null;
+
+      /**
+       * The ID of the SCO attempt's state.
+       */
+      public String mStateID = null;
+
+      /**
+       * The ID of the activity the SCO was delivered for.
+       */
+      public String mActivityID = null;
+
+      /**
+       * The ID of the SCO.
+       */
+      public String mScoID = null;
+
+      /**
+       * Indicates the SCO has terminated.
+       */
+      public boolean mIsFinished = false;
+
+      /**
+       * Indicates the learner pushed Quit.
+       */
+      public boolean mQuitPushed = false;
+
+      /**
+       * Indicates the learner pushed Suspend All.
+       */
+      public boolean mSuspendPushed = false;
+
+      /**
+       * The encoded run-time data (see <code>CommittedState</code>).
+       */
+      public byte[] mData = null;
+   }
+
+   /**
+    * Syncs the active segment, covering every record appended to it.
+    */
+   private class JournalSyncer implements GroupCommit.Syncer
+   {
+      /**
+       * Syncs the active segment.
+       * 
+       * @param iBatch Not used; every commit is covered by the one sync.
+       * 
+       * @throws IOException Thrown if the segment can not be synced.
+       */
+      public void sync(List iBatch) throws IOException
+      {
+         synchronized ( CommitJournal.this )
+         {
+            checkOpen();
+
+            getSegment(mActiveSegment).getFD().sync();
+         }
+      }
+   }
+
+} // CommitJournal
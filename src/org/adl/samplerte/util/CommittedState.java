@@ -0,0 +1,190 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import org.adl.datamodels.SCODataManager;
+import org.adl.util.PhaseTimer;
+
+/**
+ * <strong>Filename:</strong> CommittedState.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * One committed version of a SCO attempt's run-time data: the version
+ * number assigned when it was written, the encoded data and a checksum of
+ * the encoded data.  The LMS client keeps the committed state of recently
+ * delivered SCOs so that relaunching one only needs the version confirmed
+ * by <code>LMSCMIServlet</code>, not the data itself.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * Version numbers only ever increase for a given SCO attempt, even when its
+ * state is deleted and created again, so a client can never mistake a new
+ * state for one it holds (see <code>nextVersion()</code>).<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The encoded form of equal run-time data is always the same, so the
+ * checksum tells whether two copies agree.  Instances are immutable; the
+ * encoded data must not be modified once handed over.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class CommittedState
+{
+   /**
+    * The version of the state.
+    */
+   private long mVersion = 0;
+
+   /**
+    * The encoded run-time data.
+    */
+   private byte[] mData = null;
+
+   /**
+    * The checksum of the encoded run-time data.
+    */
+   private long mChecksum = 0;
+
+   /**
+    * Initializes a committed state.
+    *
+    * @param iVersion The version of the state.
+    *
+    * @param iData    The encoded run-time data.  The state takes ownership of
+    *                 the array.
+    */
+   public CommittedState(long iVersion, byte[] iData)
+   {
+      mVersion = iVersion;
+      mData = iData;
+      mChecksum = checksum(iData);
+   }
+
+   /**
+    * Retrieves the version of the state.
+    *
+    * @return The version, or zero if the state was written before versions
+    *         were assigned.
+    */
+   public long getVersion()
+   {
+      return mVersion;
+   }
+
+   /**
+    * Retrieves the checksum of the encoded run-time data.
+    *
+    * @return The checksum.
+    */
+   public long getChecksum()
+   {
+      return mChecksum;
+   }
+
+   /**
+    * Retrieves the size of the encoded run-time data.
+    *
+    * @return The number of bytes.
+    */
+   public int getSize()
+   {
+      return mData.length;
+   }
+
+   /**
+    * Retrieves the encoded run-time data.  The array must not be modified.
+    *
+    * @return The encoded run-time data.
+    */
+   public byte[] getEncoded()
+   {
+      return mData;
+   }
+
+   /**
+    * Decodes a private copy of the run-time data.
+    *
+    * @return The run-time data.
+    *
+    * @throws IOException Thrown if the data can not be decoded.
+    *
+    * @throws ClassNotFoundException Thrown if the data refers to an unknown
+    *                                class.
+    */
+   public SCODataManager getData() throws IOException, ClassNotFoundException
+   {
+      int phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+      try
+      {
+         return SCODataManager.fromByteArray(mData);
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+   }
+
+   /**
+    * Computes the checksum of encoded run-time data.
+    *
+    * @param iData The encoded run-time data.
+    *
+    * @return The checksum.
+    */
+   public static long checksum(byte[] iData)
+   {
+      CRC32 crc = new CRC32();
+      crc.update(iData, 0, iData.length);
+
+      return crc.getValue();
+   }
+
+   /**
+    * Provides the version a state is written as when it replaces another.
+    * The version is one more than the replaced version, but never less than
+    * the current time in milliseconds, so a state that is deleted and
+    * written again still gets a version larger than any it had before.
+    *
+    * @param iPrevious The version of the state being replaced, or zero if
+    *                  there is none.
+    *
+    * @return The new version.
+    */
+   public static long nextVersion(long iPrevious)
+   {
+      return Math.max(iPrevious + 1, System.currentTimeMillis());
+   }
+
+} // CommittedState
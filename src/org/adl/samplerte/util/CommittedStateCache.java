@@ -0,0 +1,244 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * <strong>Filename:</strong> CommittedStateCache.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Holds the most recently committed state (<code>CommittedState</code>) of
+ * a bounded number of SCO attempts, so <code>RTEFileHandler</code> can 
+ * answer reads, and tell which version of a state is current, without going
+ * to the learner state store.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * Every state written through <code>RTEFileHandler</code> passes through
+ * this cache, so a cached state is always the current one.  Anything that
+ * removes states from the store directly must invalidate them here as well.
+ * <br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The least recently used state is evicted once the number of cached states
+ * exceeds the configured maximum.  States are held in their encoded form.
+ * <br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class CommittedStateCache
+{
+   /**
+    * The default maximum number of committed states held in memory.
+    */
+   public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+   /**
+    * The single instance shared by the Sample RTE.
+    */
+   private static CommittedStateCache sInstance = null;
+
+   /**
+    * The cached states, keyed by learner, course and state ID, in least 
+    * recently used order.
+    */
+   private LinkedHashMap mEntries = new LinkedHashMap(16, 0.75f, true);
+
+   /**
+    * The maximum number of states held in memory.
+    */
+   private int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+   /**
+    * The number of reads answered from memory.
+    */
+   private long mHits = 0;
+
+   /**
+    * The number of reads that had to go to the learner state store.
+    */
+   private long mMisses = 0;
+
+   /**
+    * The number of states removed from memory to honor the size bound.
+    */
+   private long mEvictions = 0;
+
+   /**
+    * Provides the committed state cache shared by the Sample RTE.
+    *
+    * @return The shared <code>CommittedStateCache</code>.
+    */
+   public static synchronized CommittedStateCache getInstance()
+   {
+      if ( sInstance == null )
+      {
+         sInstance = new CommittedStateCache();
+      }
+
+      return sInstance;
+   }
+
+   /**
+    * Changes the size bound of this cache.  States beyond the new bound are
+    * evicted immediately.
+    *
+    * @param iMaxEntries The maximum number of states held in memory.
+    */
+   public synchronized void configure(int iMaxEntries)
+   {
+      mMaxEntries = ( iMaxEntries > 0 ) ? iMaxEntries : 1;
+
+      evictOverflow();
+   }
+
+   /**
+    * Retrieves the committed state of a SCO attempt, if it is held in 
+    * memory.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param iStateID  The ID of the SCO attempt's state.
+    *
+    * @return The committed state, or <code>null</code> if it is not held.
+    */
+   public synchronized CommittedState get(String iUserID, String iCourseID,
+                                          String iStateID)
+   {
+      CommittedState state = 
+         (CommittedState)mEntries.get(getKey(iUserID, iCourseID, iStateID));
+
+      if ( state == null )
+      {
+         mMisses++;
+      }
+      else
+      {
+         mHits++;
+      }
+
+      return state;
+   }
+
+   /**
+    * Records the committed state of a SCO attempt.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param iStateID  The ID of the SCO attempt's state.
+    *
+    * @param iState    The committed state.
+    */
+   public synchronized void put(String iUserID, String iCourseID, 
+                                String iStateID, CommittedState iState)
+   {
+      mEntries.put(getKey(iUserID, iCourseID, iStateID), iState);
+
+      evictOverflow();
+   }
+
+   /**
+    * Drops every state held for a learner's course, because the states have
+    * been removed from the learner state store.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    */
+   public synchronized void invalidate(String iUserID, String iCourseID)
+   {
+      String prefix = getKey(iUserID, iCourseID, "");
+
+      Iterator it = mEntries.keySet().iterator();
+
+      while ( it.hasNext() )
+      {
+         if ( ((String)it.next()).startsWith(prefix) )
+         {
+            it.remove();
+         }
+      }
+   }
+
+   /**
+    * Describes the current state of this cache for logging.
+    *
+    * @return A one line summary of the cache statistics.
+    */
+   public synchronized String getStatistics()
+   {
+      return "size=" + mEntries.size() + "/" + mMaxEntries +
+             " hits=" + mHits + " misses=" + mMisses +
+             " evictions=" + mEvictions;
+   }
+
+   /**
+    * Removes least recently used entries until the size bound is honored.
+    * Must be called while holding the lock on this cache.
+    */
+   private void evictOverflow()
+   {
+      Iterator it = mEntries.keySet().iterator();
+
+      while ( mEntries.size() > mMaxEntries && it.hasNext() )
+      {
+         it.next();
+         it.remove();
+
+         mEvictions++;
+      }
+   }
+
+   /**
+    * Builds the key a SCO attempt's state is cached under.
+    *
+    * @param iUserID   The ID of the learner.
+    *
+    * @param iCourseID The ID of the course.
+    *
+    * @param iStateID  The ID of the SCO attempt's state.
+    *
+    * @return The key.
+    */
+   private static String getKey(String iUserID, String iCourseID, 
+                                String iStateID)
+   {
+      return iUserID + File.separator + iCourseID + File.separator + iStateID;
+   }
+
+} // CommittedStateCache
@@ -0,0 +1,1198 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <strong>Filename:</strong> ConnectionPool.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Hands out connections to one JDBC database from a bounded pool of open
+ * connections, and caches the prepared statements of each connection, so
+ * concurrent requests neither open a connection per call nor share a single
+ * connection.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * A connection obtained from the pool must be closed; closing it returns it
+ * to the pool.  Statements prepared with <code>prepareStatement(String)</code>
+ * are taken from the connection's statement cache, and closing them returns
+ * them to the cache.  Any statement still open when the connection is closed
+ * is closed, or returned to the cache, then.  A connection left in manual
+ * commit mode is rolled back before it is reused.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * When every connection is in use, a request waits up to the configured
+ * maximum wait for one to be returned and then fails with an
+ * <code>SQLException</code>.  Connections held longer than the leak
+ * threshold are logged, once, with the stack of the code that obtained them.
+ * Connections that become unreachable without being closed are returned to
+ * the pool the next time a connection is requested.<br><br>
+ *
+ * Since the pool is configured with a driver class and URL, it can be
+ * pointed at an embedded database.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class ConnectionPool
+{
+   /**
+    * The default maximum number of open connections.
+    */
+   public static final int DEFAULT_MAX_SIZE = 10;
+
+   /**
+    * The default number of milliseconds a request waits for a connection.
+    */
+   public static final long DEFAULT_MAX_WAIT = 10000;
+
+   /**
+    * The default number of milliseconds a connection may be held before it
+    * is reported as leaked.
+    */
+   public static final long DEFAULT_LEAK_THRESHOLD = 60000;
+
+   /**
+    * The default maximum number of prepared statements cached per connection.
+    */
+   public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+   /**
+    * The name of this pool, used in log messages and statistics.
+    */
+   private String mName = null;
+
+   /**
+    * The class name of the JDBC driver, or <code>null</code> if the driver is
+    * already registered.
+    */
+   private String mDriver = null;
+
+   /**
+    * The JDBC URL of the database.
+    */
+   private String mURL = null;
+
+   /**
+    * The connection properties.
+    */
+   private Properties mProperties = null;
+
+   /**
+    * The maximum number of open connections.
+    */
+   private int mMaxSize = DEFAULT_MAX_SIZE;
+
+   /**
+    * The number of milliseconds a request waits for a connection.
+    */
+   private long mMaxWait = DEFAULT_MAX_WAIT;
+
+   /**
+    * The number of milliseconds a connection may be held before it is 
+    * reported as leaked, or 0 if leaks are not detected.
+    */
+   private long mLeakThreshold = DEFAULT_LEAK_THRESHOLD;
+
+   /**
+    * The maximum number of prepared statements cached per connection.
+    */
+   private int mStatementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+   /**
+    * The open connections not in use (<code>PooledConnection</code>), most
+    * recently returned first.
+    */
+   private LinkedList mIdle = new LinkedList();
+
+   /**
+    * The leases (<code>Lease</code>) of the connections in use.
+    */
+   private HashSet mLent = new HashSet();
+
+   /**
+    * The number of connections being opened.
+    */
+   private int mOpening = 0;
+
+   /**
+    * The leases whose connection handle became unreachable.
+    */
+   private ReferenceQueue mAbandoned = new ReferenceQueue();
+
+   /**
+    * The number of connections requested.
+    */
+   private long mRequests = 0;
+
+   /**
+    * The number of connections opened.
+    */
+   private long mCreated = 0;
+
+   /**
+    * The number of requests that had to wait for a connection.
+    */
+   private long mWaits = 0;
+
+   /**
+    * The total time, in nanoseconds, requests waited for a connection.
+    */
+   private long mWaitNanos = 0;
+
+   /**
+    * The longest time, in nanoseconds, a request waited for a connection.
+    */
+   private long mMaxWaitNanos = 0;
+
+   /**
+    * The number of requests that gave up waiting for a connection.
+    */
+   private long mTimeouts = 0;
+
+   /**
+    * The number of connections reported as leaked.
+    */
+   private long mLeaks = 0;
+
+   /**
+    * The number of unreachable connections returned to the pool.
+    */
+   private long mReclaimed = 0;
+
+   /**
+    * The number of statements taken from a statement cache.
+    */
+   private long mStatementHits = 0;
+
+   /**
+    * The number of statements prepared because they were not cached.
+    */
+   private long mStatementMisses = 0;
+
+   /**
+    * Creates a pool of connections to a database.
+    *
+    * @param iName       The name of the pool, used in log messages.
+    *
+    * @param iDriver     The class name of the JDBC driver, or 
+    *                    <code>null</code> if it is already registered.
+    *
+    * @param iURL        The JDBC URL of the database.
+    *
+    * @param iProperties The connection properties.
+    */
+   public ConnectionPool(String iName, String iDriver, String iURL, 
+                         Properties iProperties)
+   {
+      mName = iName;
+      mDriver = iDriver;
+      mURL = iURL;
+      mProperties = ( iProperties == null ) ? new Properties() : iProperties;
+   }
+
+   /**
+    * Changes the limits of this pool.  Connections beyond a smaller maximum
+    * size are closed as they are returned.
+    *
+    * @param iMaxSize            The maximum number of open connections.
+    *
+    * @param iMaxWait            The number of milliseconds a request waits
+    *                            for a connection.
+    *
+    * @param iLeakThreshold      The number of milliseconds a connection may
+    *                            be held before it is reported as leaked, or 
+    *                            0 to not detect leaks.
+    *
+    * @param iStatementCacheSize The maximum number of prepared statements 
+    *                            cached per connection, or 0 to not cache 
+    *                            statements.
+    */
+   public synchronized void configure(int iMaxSize, long iMaxWait, 
+                                      long iLeakThreshold, 
+                                      int iStatementCacheSize)
+   {
+      mMaxSize = Math.max(1, iMaxSize);
+      mMaxWait = Math.max(0, iMaxWait);
+      mLeakThreshold = Math.max(0, iLeakThreshold);
+      mStatementCacheSize = Math.max(0, iStatementCacheSize);
+
+      notifyAll();
+   }
+
+   /**
+    * Provides a connection from this pool, opening one if none is idle and
+    * the pool is not at its maximum size.
+    *
+    * @return A connection, which must be closed to return it to the pool.
+    *
+    * @throws SQLException Thrown if a connection cannot be opened, or none
+    *                      is returned to the pool within the maximum wait.
+    */
+   public Connection getConnection() throws SQLException
+   {
+      reclaimAbandoned();
+
+      long start = System.nanoTime();
+      PooledConnection pooled = null;
+      boolean opened = false;
+
+      synchronized ( this )
+      {
+         mRequests++;
+         boolean waited = false;
+
+         while ( pooled == null )
+         {
+            if ( !mIdle.isEmpty() )
+            {
+               pooled = (PooledConnection)mIdle.removeFirst();
+            }
+            else if ( mLent.size() + mOpening < mMaxSize )
+            {
+               mOpening++;
+               break;
+            }
+            else
+            {
+               long remaining = mMaxWait - 
+                                ( System.nanoTime() - start ) / 1000000;
+
+               if ( !waited )
+               {
+                  waited = true;
+                  mWaits++;
+                  reportLeaks();
+               }
+
+               if ( remaining <= 0 )
+               {
+                  mTimeouts++;
+                  recordWait(start);
+
+                  throw new SQLException("No connection to " + mName + 
+                                         " became available within " + 
+                                         mMaxWait + " ms");
+               }
+
+               try
+               {
+                  wait(remaining);
+               }
+               catch ( InterruptedException ie )
+               {
+                  Thread.currentThread().interrupt();
+                  recordWait(start);
+
+                  throw new SQLException("Interrupted while waiting for a " +
+                                         "connection to " + mName);
+               }
+            }
+         }
+
+         if ( waited )
+         {
+            recordWait(start);
+         }
+      }
+
+      if ( pooled != null && pooled.isClosed() )
+      {
+         // The database closed the idle connection; open another instead
+         pooled.close();
+         pooled = null;
+
+         synchronized ( this )
+         {
+            mOpening++;
+         }
+      }
+
+      if ( pooled == null )
+      {
+         try
+         {
+            pooled = new PooledConnection(connect());
+            opened = true;
+         }
+         finally
+         {
+            if ( pooled == null )
+            {
+               synchronized ( this )
+               {
+                  mOpening--;
+                  notifyAll();
+               }
+            }
+         }
+      }
+
+      ConnectionHandle handler = new ConnectionHandle();
+      Connection handle = 
+         (Connection)Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), 
+                                            new Class[] { Connection.class }, 
+                                            handler);
+
+      Lease lease = new Lease(handle, pooled);
+      handler.mLease = lease;
+
+      synchronized ( this )
+      {
+         if ( opened )
+         {
+            mOpening--;
+            mCreated++;
+         }
+
+         mLent.add(lease);
+      }
+
+      return handle;
+   }
+
+   /**
+    * Retrieves the number of connections in use.
+    *
+    * @return The number of connections in use.
+    */
+   public synchronized int getActiveCount()
+   {
+      return mLent.size();
+   }
+
+   /**
+    * Retrieves the number of open connections not in use.
+    *
+    * @return The number of open connections not in use.
+    */
+   public synchronized int getIdleCount()
+   {
+      return mIdle.size();
+   }
+
+   /**
+    * Describes the use of this pool since it was created.  Connections held
+    * longer than the leak threshold are reported as well.
+    *
+    * @return The pool statistics.
+    */
+   public synchronized String getStatistics()
+   {
+      reportLeaks();
+
+      return "active=" + mLent.size() + " idle=" + mIdle.size() + 
+             " max=" + mMaxSize + " requests=" + mRequests +
+             " created=" + mCreated + " waits=" + mWaits + 
+             " waitMillis=" + ( mWaitNanos / 1000000 ) + 
+             " maxWaitMillis=" + ( mMaxWaitNanos / 1000000 ) +
+             " timeouts=" + mTimeouts + " leaks=" + mLeaks + 
+             " reclaimed=" + mReclaimed + 
+             " statementHits=" + mStatementHits + 
+             " statementMisses=" + mStatementMisses;
+   }
+
+   /**
+    * Closes the open connections not in use.  The pool remains usable, and
+    * opens connections again as they are requested.
+    */
+   public void closeIdle()
+   {
+      List idle = null;
+
+      synchronized ( this )
+      {
+         idle = new ArrayList(mIdle);
+         mIdle.clear();
+      }
+
+      for ( int i = 0; i < idle.size(); i++ )
+      {
+         ((PooledConnection)idle.get(i)).close();
+      }
+   }
+
+   /**
+    * Opens a connection to the database.
+    *
+    * @return The connection.
+    *
+    * @throws SQLException Thrown if the connection cannot be opened.
+    */
+   private Connection connect() throws SQLException
+   {
+      if ( mDriver != null )
+      {
+         try
+         {
+            Class.forName(mDriver);
+         }
+         catch ( ClassNotFoundException cnfe )
+         {
+            throw new SQLException("JDBC driver not found: " + mDriver);
+         }
+      }
+
+      return DriverManager.getConnection(mURL, mProperties);
+   }
+
+   /**
+    * Adds the time a request waited for a connection to the statistics.
+    * Must be called while holding the lock on this pool.
+    *
+    * @param iStart The time, from <code>System.nanoTime()</code>, the 
+    *               request started.
+    */
+   private void recordWait(long iStart)
+   {
+      long nanos = System.nanoTime() - iStart;
+
+      mWaitNanos += nanos;
+
+      if ( nanos > mMaxWaitNanos )
+      {
+         mMaxWaitNanos = nanos;
+      }
+   }
+
+   /**
+    * Logs the connections held longer than the leak threshold that have not
+    * been reported yet.  Must be called while holding the lock on this pool.
+    */
+   private void reportLeaks()
+   {
+      if ( mLeakThreshold <= 0 )
+      {
+         return;
+      }
+
+      long now = System.currentTimeMillis();
+      Iterator it = mLent.iterator();
+
+      while ( it.hasNext() )
+      {
+         Lease lease = (Lease)it.next();
+
+         if ( !lease.mReported && now - lease.mStart > mLeakThreshold )
+         {
+            lease.mReported = true;
+            mLeaks++;
+
+            Logger.getLogger("org.adl.util.debug.samplerte").log(Level.WARNING,
+               "Connection to " + mName + " held by " + lease.mThread + 
+               " for " + ( now - lease.mStart ) + " ms", lease.mOrigin);
+         }
+      }
+   }
+
+   /**
+    * Returns to the pool the connections whose handles became unreachable
+    * without being closed.
+    */
+   private void reclaimAbandoned()
+   {
+      Lease lease = null;
+
+      while ( ( lease = (Lease)mAbandoned.poll() ) != null )
+      {
+         boolean lent = false;
+
+         synchronized ( this )
+         {
+            lent = mLent.contains(lease);
+
+            if ( lent )
+            {
+               mReclaimed++;
+            }
+         }
+
+         if ( lent )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").log(Level.WARNING,
+               "Connection to " + mName + " was not closed by " + 
+               lease.mThread, lease.mOrigin);
+
+            release(lease);
+         }
+      }
+   }
+
+   /**
+    * Returns a leased connection to the pool, closing the statements still
+    * open and restoring automatic commit.  The connection is closed instead
+    * if it is unusable or the pool is above its maximum size.
+    *
+    * @param iLease The lease of the connection.
+    */
+   private void release(Lease iLease)
+   {
+      PooledConnection pooled = iLease.mConnection;
+      boolean usable = pooled.reset(iLease);
+
+      synchronized ( this )
+      {
+         iLease.clear();
+
+         if ( !mLent.remove(iLease) )
+         {
+            return;
+         }
+
+         if ( usable && mLent.size() + mIdle.size() < mMaxSize )
+         {
+            mIdle.addFirst(pooled);
+            pooled = null;
+         }
+
+         notifyAll();
+      }
+
+      if ( pooled != null )
+      {
+         pooled.close();
+      }
+   }
+
+   /**
+    * An open connection owned by the pool, and its statement cache.
+    */
+   private class PooledConnection
+   {
+      /**
+       * The connection to the database.
+       */
+      Connection mPhysical = null;
+
+      /**
+       * The cached statements (<code>CachedStatement</code>) keyed by SQL, in
+       * least recently used order.
+       */
+      LinkedHashMap mStatements = new LinkedHashMap(16, 0.75f, true);
+
+      /**
+       * Creates a pooled connection.
+       *
+       * @param iPhysical The connection to the database.
+       */
+      PooledConnection(Connection iPhysical)
+      {
+         mPhysical = iPhysical;
+      }
+
+      /**
+       * Provides a prepared statement for the given SQL, from the statement
+       * cache if one is cached and not in use.
+       *
+       * @param iLease The lease the statement is used under.
+       *
+       * @param iSQL   The SQL.
+       *
+       * @return The statement.
+       *
+       * @throws SQLException Thrown if the statement cannot be prepared.
+       */
+      PreparedStatement prepare(Lease iLease, String iSQL)
+         throws SQLException
+      {
+         int cacheSize = 0;
+
+         synchronized ( ConnectionPool.this )
+         {
+            cacheSize = mStatementCacheSize;
+         }
+
+         CachedStatement cached = (CachedStatement)mStatements.get(iSQL);
+         boolean hit = ( cached != null && !cached.mInUse );
+
+         synchronized ( ConnectionPool.this )
+         {
+            if ( hit )
+            {
+               mStatementHits++;
+            }
+            else
+            {
+               mStatementMisses++;
+            }
+         }
+
+         if ( !hit )
+         {
+            PreparedStatement stmt = mPhysical.prepareStatement(iSQL);
+
+            if ( cached != null || cacheSize == 0 )
+            {
+               // The cached statement is in use; this one is not cached
+               return (PreparedStatement)handle(iLease, stmt, null, 
+                                                PreparedStatement.class);
+            }
+
+            cached = new CachedStatement(iSQL, stmt);
+            mStatements.put(iSQL, cached);
+
+            evictOverflow(cacheSize);
+         }
+
+         cached.mInUse = true;
+
+         return (PreparedStatement)handle(iLease, cached.mStatement, cached, 
+                                          PreparedStatement.class);
+      }
+
+      /**
+       * Closes the least recently used statements not in use until the 
+       * statement cache is within its size.
+       *
+       * @param iCacheSize The maximum number of cached statements.
+       */
+      void evictOverflow(int iCacheSize)
+      {
+         Iterator it = mStatements.values().iterator();
+
+         while ( mStatements.size() > iCacheSize && it.hasNext() )
+         {
+            CachedStatement cached = (CachedStatement)it.next();
+
+            if ( !cached.mInUse )
+            {
+               it.remove();
+               closeQuietly(cached.mStatement);
+            }
+         }
+      }
+
+      /**
+       * Prepares this connection to be lent again after the given lease.
+       *
+       * @param iLease The lease ending.
+       *
+       * @return <code>true</code> if the connection can be lent again; 
+       *         otherwise <code>false</code>.
+       */
+      boolean reset(Lease iLease)
+      {
+         for ( int i = 0; i < iLease.mStatements.size(); i++ )
+         {
+            StatementHandle handle = (StatementHandle)iLease.mStatements.get(i);
+            handle.mClosed = true;
+
+            if ( handle.mCached != null )
+            {
+               if ( handle.mBatched )
+               {
+                  try
+                  {
+                     handle.mCached.mStatement.clearBatch();
+                  }
+                  catch ( SQLException se )
+                  {
+                     return false;
+                  }
+               }
+
+               handle.mCached.mInUse = false;
+            }
+            else
+            {
+               closeQuietly(handle.mStatement);
+            }
+         }
+
+         iLease.mStatements.clear();
+
+         try
+         {
+            if ( iLease.mAutoCommitChanged && !mPhysical.getAutoCommit() )
+            {
+               mPhysical.rollback();
+               mPhysical.setAutoCommit(true);
+            }
+
+            return !mPhysical.isClosed();
+         }
+         catch ( SQLException se )
+         {
+            return false;
+         }
+      }
+
+      /**
+       * Determines if the database closed this connection.
+       *
+       * @return <code>true</code> if this connection is closed; otherwise
+       *         <code>false</code>.
+       */
+      boolean isClosed()
+      {
+         try
+         {
+            return mPhysical.isClosed();
+         }
+         catch ( SQLException se )
+         {
+            return true;
+         }
+      }
+
+      /**
+       * Closes this connection and its cached statements.
+       */
+      void close()
+      {
+         if ( mStatements != null )
+         {
+            Iterator it = mStatements.values().iterator();
+
+            while ( it.hasNext() )
+            {
+               closeQuietly(((CachedStatement)it.next()).mStatement);
+            }
+
+            mStatements.clear();
+         }
+
+         try
+         {
+            mPhysical.close();
+         }
+         catch ( SQLException se )
+         {
+            Logger.getLogger("org.adl.util.debug.samplerte").warning(
+               "Unable to close connection to " + mName + ": " + se);
+         }
+      }
+   }
+
+   /**
+    * Closes a statement, ignoring failures.
+    *
+    * @param iStatement The statement.
+    */
+   private static void closeQuietly(Statement iStatement)
+   {
+      try
+      {
+         iStatement.close();
+      }
+      catch ( SQLException se )
+      {
+         // The statement is discarded either way
+      }
+   }
+
+   /**
+    * A prepared statement in a statement cache.
+    */
+   private static class CachedStatement
+   {
+      /**
+       * The SQL of the statement.
+       */
+      String mSQL = null;
+
+      /**
+       * The statement.
+       */
+      PreparedStatement mStatement = null;
+
+      /**
+       * Indicates if the statement has been handed out and not closed.
+       */
+      boolean mInUse = false;
+
+      /**
+       * Creates a cached statement.
+       *
+       * @param iSQL       The SQL of the statement.
+       *
+       * @param iStatement The statement.
+       */
+      CachedStatement(String iSQL, PreparedStatement iStatement)
+      {
+         mSQL = iSQL;
+         mStatement = iStatement;
+      }
+   }
+
+   /**
+    * The use of a pooled connection through one connection handle.  The 
+    * lease is enqueued once the handle becomes unreachable.
+    */
+   private class Lease extends WeakReference
+   {
+      /**
+       * The connection lent.
+       */
+      PooledConnection mConnection = null;
+
+      /**
+       * The time, in milliseconds, the connection was lent.
+       */
+      long mStart = 0;
+
+      /**
+       * The name of the thread the connection was lent to.
+       */
+      String mThread = null;
+
+      /**
+       * Where the connection was obtained, or <code>null</code> if leaks are
+       * not detected.
+       */
+      Throwable mOrigin = null;
+
+      /**
+       * Indicates if the connection has been reported as leaked.
+       */
+      boolean mReported = false;
+
+      /**
+       * Indicates if automatic commit was changed through the handle.
+       */
+      boolean mAutoCommitChanged = false;
+
+      /**
+       * The statements (<code>StatementHandle</code>) handed out and not
+       * closed.
+       */
+      List mStatements = new ArrayList();
+
+      /**
+       * Creates a lease.
+       *
+       * @param iHandle     The connection handle.
+       *
+       * @param iConnection The connection lent.
+       */
+      Lease(Connection iHandle, PooledConnection iConnection)
+      {
+         super(iHandle, mAbandoned);
+
+         mConnection = iConnection;
+         mStart = System.currentTimeMillis();
+         mThread = Thread.currentThread().getName();
+
+         if ( mLeakThreshold > 0 )
+         {
+            mOrigin = new Throwable("Connection obtained here");
+         }
+      }
+   }
+
+   /**
+    * Forwards calls on a connection handle to the pooled connection until the
+    * handle is closed.
+    */
+   private class ConnectionHandle implements InvocationHandler
+   {
+      /**
+       * The lease of the connection, or <code>null</code> once the handle is
+       * closed.
+       */
+      Lease mLease = null;
+
+      /**
+       * Forwards a call.
+       *
+       * @param iProxy  The proxy called.
+       *
+       * @param iMethod The method called.
+       *
+       * @param iArgs   The arguments of the call.
+       *
+       * @return The result of the call.
+       *
+       * @throws Throwable The exception thrown by the connection.
+       */
+      public Object invoke(Object iProxy, Method iMethod, Object[] iArgs) 
+         throws Throwable
+      {
+         String name = iMethod.getName();
+
+         if ( iMethod.getDeclaringClass() == Object.class )
+         {
+            return invokeObject(iProxy, name, iArgs);
+         }
+
+         Lease lease = mLease;
+
+         if ( name.equals("close") )
+         {
+            if ( lease != null )
+            {
+               mLease = null;
+               release(lease);
+            }
+
+            return null;
+         }
+         else if ( name.equals("isClosed") )
+         {
+            return Boolean.valueOf(lease == null);
+         }
+         else if ( lease == null )
+         {
+            throw new SQLException("Connection has been returned to the pool");
+         }
+
+         if ( name.equals("prepareStatement") && iArgs.length == 1 )
+         {
+            return lease.mConnection.prepare(lease, (String)iArgs[0]);
+         }
+
+         if ( name.equals("setAutoCommit") )
+         {
+            lease.mAutoCommitChanged = true;
+         }
+
+         try
+         {
+            Object result = iMethod.invoke(lease.mConnection.mPhysical, iArgs);
+
+            if ( result instanceof Statement )
+            {
+               result = handle(lease, (Statement)result, null, 
+                               iMethod.getReturnType());
+            }
+
+            return result;
+         }
+         catch ( InvocationTargetException e )
+         {
+            throw e.getTargetException();
+         }
+      }
+   }
+
+   /**
+    * Wraps a statement handed out under a lease, so it can be closed, or 
+    * returned to the statement cache, when the connection is returned to the
+    * pool.
+    *
+    * @param iLease     The lease the statement is used under.
+    *
+    * @param iStatement The statement.
+    *
+    * @param iCached    The statement cache entry of the statement, or 
+    *                   <code>null</code> if it is not cached.
+    *
+    * @param iType      The JDBC interface of the statement.
+    *
+    * @return The wrapped statement.
+    */
+   private Object handle(Lease iLease, Statement iStatement, 
+                         CachedStatement iCached, Class iType)
+   {
+      StatementHandle handler = 
+         new StatementHandle(iLease, iStatement, iCached);
+
+      iLease.mStatements.add(handler);
+
+      return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), 
+                                    new Class[] { iType }, handler);
+   }
+
+   /**
+    * Forwards calls on a statement until it is closed.  Closing a cached
+    * statement returns it to the statement cache.
+    */
+   private class StatementHandle implements InvocationHandler
+   {
+      /**
+       * The lease the statement is used under.
+       */
+      Lease mLease = null;
+
+      /**
+       * The statement.
+       */
+      Statement mStatement = null;
+
+      /**
+       * The statement cache entry of the statement, or <code>null</code> if
+       * it is not cached.
+       */
+      CachedStatement mCached = null;
+
+      /**
+       * Indicates if the statement has been closed.
+       */
+      boolean mClosed = false;
+
+      /**
+       * Indicates if commands have been added to the batch of the statement.
+       */
+      boolean mBatched = false;
+
+      /**
+       * Creates a statement handle.
+       *
+       * @param iLease     The lease the statement is used under.
+       *
+       * @param iStatement The statement.
+       *
+       * @param iCached    The statement cache entry of the statement, or
+       *                   <code>null</code> if it is not cached.
+       */
+      StatementHandle(Lease iLease, Statement iStatement, 
+                      CachedStatement iCached)
+      {
+         mLease = iLease;
+         mStatement = iStatement;
+         mCached = iCached;
+      }
+
+      /**
+       * Forwards a call.
+       *
+       * @param iProxy  The proxy called.
+       *
+       * @param iMethod The method called.
+       *
+       * @param iArgs   The arguments of the call.
+       *
+       * @return The result of the call.
+       *
+       * @throws Throwable The exception thrown by the statement.
+       */
+      public Object invoke(Object iProxy, Method iMethod, Object[] iArgs) 
+         throws Throwable
+      {
+         String name = iMethod.getName();
+
+         if ( iMethod.getDeclaringClass() == Object.class )
+         {
+            return invokeObject(iProxy, name, iArgs);
+         }
+
+         if ( name.equals("close") )
+         {
+            if ( !mClosed && mLease.mStatements.remove(this) )
+            {
+               mClosed = true;
+
+               if ( mCached == null )
+               {
+                  mStatement.close();
+               }
+               else
+               {
+                  if ( mBatched )
+                  {
+                     mCached.mStatement.clearBatch();
+                  }
+
+                  mCached.mStatement.clearParameters();
+                  mCached.mInUse = false;
+               }
+            }
+
+            return null;
+         }
+         else if ( name.equals("isClosed") )
+         {
+            return Boolean.valueOf(mClosed);
+         }
+         else if ( name.equals("getConnection") )
+         {
+            // The lease refers to the connection handle weakly, so open 
+            // statements do not keep an abandoned connection from the pool
+            return mLease.get();
+         }
+         else if ( mClosed )
+         {
+            throw new SQLException("Statement has been closed");
+         }
+         else if ( name.equals("addBatch") )
+         {
+            mBatched = true;
+         }
+
+         try
+         {
+            return iMethod.invoke(mStatement, iArgs);
+         }
+         catch ( InvocationTargetException e )
+         {
+            throw e.getTargetException();
+         }
+      }
+   }
+
+   /**
+    * Answers the <code>Object</code> methods of a handle by identity.
+    *
+    * @param iProxy The handle.
+    *
+    * @param iName  The method called.
+    *
+    * @param iArgs  The arguments of the call.
+    *
+    * @return The result of the call.
+    */
+   private static Object invokeObject(Object iProxy, String iName, 
+                                      Object[] iArgs)
+   {
+      if ( iName.equals("equals") )
+      {
+         return Boolean.valueOf(iProxy == iArgs[0]);
+      }
+      else if ( iName.equals("hashCode") )
+      {
+         return new Integer(System.identityHashCode(iProxy));
+      }
+
+      return "Pooled " + iProxy.getClass().getInterfaces()[0].getName() + "@" +
+             Integer.toHexString(System.identityHashCode(iProxy));
+   }
+
+} // ConnectionPool
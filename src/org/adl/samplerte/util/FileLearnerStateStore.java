@@ -0,0 +1,282 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.adl.util.DurableFiles;
+
+/**
+ * <strong>Filename:</strong> FileLearnerStateStore.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * A <code>LearnerStateStore</code> that keeps each state record in its own
+ * file, <code>&lt;root&gt;/&lt;user&gt;/&lt;course&gt;/&lt;stateID&gt;</code>.
+ * This is the layout the Sample RTE has always used.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition 
+ * Sample Run-Time Environment.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * The learner's course directory also holds the activity tree 
+ * (<code>serialize.obj</code>) and the data store collection 
+ * (<code>DS.obj</code>); these are not state records and are left alone by
+ * <code>deleteCourse()</code>.<br><br>
+ * 
+ * A record is written to a <code>.tmp</code> file which is synced and then
+ * renamed over the record, and the learner's course directory is synced 
+ * after the rename (<code>DurableFiles</code>), so a crash leaves either 
+ * the old or the new contents.  Every record is a separate file needing 
+ * its own sync, so there is nothing for a <code>GroupCommit</code> to 
+ * share; each write is synced on its own request thread.  Stores that 
+ * need many writes per sync should use the log store.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public class FileLearnerStateStore implements LearnerStateStore
+{
+   /**
+    * The root directory of the learners' course directories.
+    */
+   private String mRoot = null;
+
+   /**
+    * The number of records written.
+    */
+   private long mWrites = 0;
+
+   /**
+    * The number of records that could not be written.
+    */
+   private long mFailures = 0;
+
+   /**
+    * Initializes a file per record store.
+    * 
+    * @param iRoot The root directory of the learners' course directories.
+    */
+   public FileLearnerStateStore(String iRoot)
+   {
+      mRoot = iRoot;
+   }
+
+   /**
+    * Reads a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return The record's contents, or <code>null</code> if it does not
+    *         exist.
+    * 
+    * @throws IOException Thrown if the record can not be read.
+    */
+   public byte[] read(String iUserID, String iCourseID, String iStateID) 
+      throws IOException
+   {
+      File file = getFile(iUserID, iCourseID, iStateID);
+
+      if ( !file.isFile() )
+      {
+         return null;
+      }
+
+      FileInputStream fis = new FileInputStream(file);
+
+      try
+      {
+         byte[] data = new byte[(int)file.length()];
+         int read = 0;
+
+         while ( read < data.length )
+         {
+            int count = fis.read(data, read, data.length - read);
+
+            if ( count < 0 )
+            {
+               throw new IOException("Unexpected end of state file " + file);
+            }
+
+            read += count;
+         }
+
+         return data;
+      }
+      finally
+      {
+         fis.close();
+      }
+   }
+
+   /**
+    * Writes a state record, replacing any previous contents.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @param iData     The record's contents.
+    * 
+    * @throws IOException Thrown if the record can not be written.
+    */
+   public void write(String iUserID, String iCourseID, String iStateID, 
+                     byte[] iData) throws IOException
+   {
+      File file = getFile(iUserID, iCourseID, iStateID);
+
+      file.getParentFile().mkdirs();
+
+      try
+      {
+         DurableFiles.write(file, iData);
+      }
+      catch ( IOException ioe )
+      {
+         DurableFiles.getTempFile(file).delete();
+
+         synchronized ( this )
+         {
+            mFailures++;
+         }
+
+         throw ioe;
+      }
+
+      synchronized ( this )
+      {
+         mWrites++;
+      }
+   }
+
+   /**
+    * Indicates if a state record exists.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return <code>true</code> if the record exists, otherwise 
+    *         <code>false</code>.
+    */
+   public boolean exists(String iUserID, String iCourseID, String iStateID)
+   {
+      return getFile(iUserID, iCourseID, iStateID).isFile();
+   }
+
+   /**
+    * Removes a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    */
+   public void delete(String iUserID, String iCourseID, String iStateID)
+   {
+      getFile(iUserID, iCourseID, iStateID).delete();
+   }
+
+   /**
+    * Removes every state record of a learner for a course.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    */
+   public void deleteCourse(String iUserID, String iCourseID)
+   {
+      File[] files = new File(mRoot + File.separator + iUserID + 
+                              File.separator + iCourseID).listFiles();
+
+      if ( files != null )
+      {
+         for ( int i = 0; i < files.length; i++ )
+         {
+            String name = files[i].getName();
+
+            if ( files[i].isFile() && !name.equals("serialize.obj") && 
+                 !name.equals("DS.obj") )
+            {
+               files[i].delete();
+            }
+         }
+      }
+   }
+
+   /**
+    * Describes the store's writes.
+    * 
+    * @return The statistics.
+    */
+   public synchronized String getStatistics()
+   {
+      return "file store: writes=" + mWrites + " failures=" + mFailures;
+   }
+
+   /**
+    * Releases any resources held by the store.  Nothing is held open by this
+    * implementation.
+    */
+   public void close()
+   {
+      // Nothing to release
+   }
+
+   /**
+    * Builds the file holding a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return The record's file.
+    */
+   private File getFile(String iUserID, String iCourseID, String iStateID)
+   {
+      return new File(mRoot + File.separator + iUserID + File.separator + 
+                      iCourseID + File.separator + iStateID);
+   }
+
+} // FileLearnerStateStore
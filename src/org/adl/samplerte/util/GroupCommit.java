@@ -0,0 +1,455 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <strong>Filename:</strong> GroupCommit.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Coalesces concurrent commits into shared sync batches.  A caller that has
+ * written its data calls <code>commit()</code> and is blocked until a sync
+ * covering its data has completed.  The first caller to find no sync in 
+ * progress becomes the leader: it waits up to the latency budget for other
+ * callers to join, then hands the whole batch to the <code>Syncer</code> and
+ * releases everyone in it.  Callers arriving while a sync is running form 
+ * the next batch.<br><br>
+ * 
+ * The number of commits covered by each sync and the commit latency 
+ * percentiles (over the most recent commits) are reported by
+ * <code>getStatistics()</code>.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition 
+ * Sample Run-Time Environment.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * There is no background thread; the leader performs the sync on its own
+ * request thread.  A latency budget of zero still coalesces, since commits
+ * that arrive during a sync wait for the next one together.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public class GroupCommit
+{
+   /**
+    * The default number of milliseconds a leader waits for other commits to
+    * join its batch.
+    */
+   public static final long DEFAULT_LATENCY_BUDGET = 2L;
+
+   /**
+    * The default number of commits after which a batch is synced without
+    * waiting out the latency budget.
+    */
+   public static final int DEFAULT_MAX_BATCH = 64;
+
+   /**
+    * The number of recent commit latencies kept for the percentiles.
+    */
+   private static final int LATENCY_SAMPLES = 1024;
+
+   /**
+    * Makes a batch of commits durable.
+    */
+   public interface Syncer
+   {
+      /**
+       * Makes the data of every commit in a batch durable.
+       * 
+       * @param iBatch The pending objects passed to <code>commit()</code>, in
+       *               arrival order.
+       * 
+       * @throws IOException Thrown if the batch could not be synced; every
+       *                     commit in the batch fails.
+       */
+      void sync(List iBatch) throws IOException;
+   }
+
+   /**
+    * Guards the queue, the batch state and the statistics.
+    */
+   private final Object mLock = new Object();
+
+   /**
+    * Performs the syncs.
+    */
+   private Syncer mSyncer = null;
+
+   /**
+    * The number of milliseconds a leader waits for other commits.
+    */
+   private long mLatencyBudget = DEFAULT_LATENCY_BUDGET;
+
+   /**
+    * The number of commits after which a batch is synced at once.
+    */
+   private int mMaxBatch = DEFAULT_MAX_BATCH;
+
+   /**
+    * The tickets waiting for the next sync.
+    */
+   private ArrayList mQueue = new ArrayList();
+
+   /**
+    * Indicates a leader is collecting or syncing a batch.
+    */
+   private boolean mSyncing = false;
+
+   /**
+    * The number of completed commits.
+    */
+   private long mCommits = 0;
+
+   /**
+    * The number of completed syncs.
+    */
+   private long mSyncs = 0;
+
+   /**
+    * The number of failed syncs.
+    */
+   private long mFailures = 0;
+
+   /**
+    * The largest batch synced.
+    */
+   private int mLargestBatch = 0;
+
+   /**
+    * The most recent commit latencies, in microseconds.
+    */
+   private long[] mLatencies = new long[LATENCY_SAMPLES];
+
+   /**
+    * The number of latencies recorded.
+    */
+   private long mLatencyCount = 0;
+
+   /**
+    * Initializes a group commit.
+    * 
+    * @param iSyncer        Performs the syncs.
+    * 
+    * @param iLatencyBudget The number of milliseconds a leader waits for 
+    *                       other commits to join its batch.
+    * 
+    * @param iMaxBatch      The number of commits after which a batch is 
+    *                       synced without waiting out the latency budget.
+    */
+   public GroupCommit(Syncer iSyncer, long iLatencyBudget, int iMaxBatch)
+   {
+      mSyncer = iSyncer;
+      mLatencyBudget = iLatencyBudget < 0 ? 0 : iLatencyBudget;
+      mMaxBatch = iMaxBatch < 1 ? 1 : iMaxBatch;
+   }
+
+   /**
+    * Waits until a sync covering the caller's data has completed.  The 
+    * caller's data must already have been written.
+    * 
+    * @param iPending Passed to the <code>Syncer</code> with the rest of the
+    *                 batch; may be <code>null</code>.
+    * 
+    * @throws IOException Thrown if the sync failed.
+    */
+   public void commit(Object iPending) throws IOException
+   {
+      long startNanos = System.nanoTime();
+      boolean interrupted = false;
+      Ticket ticket = new Ticket(iPending);
+
+      synchronized ( mLock )
+      {
+         mQueue.add(ticket);
+
+         if ( mQueue.size() >= mMaxBatch )
+         {
+            mLock.notifyAll();
+         }
+      }
+
+      while ( true )
+      {
+         List batch = null;
+
+         synchronized ( mLock )
+         {
+            while ( !ticket.mDone && mSyncing )
+            {
+               try
+               {
+                  mLock.wait();
+               }
+               catch ( InterruptedException ie )
+               {
+                  interrupted = true;
+               }
+            }
+
+            if ( ticket.mDone )
+            {
+               break;
+            }
+
+            // Lead the next batch, giving others a chance to join
+            mSyncing = true;
+
+            long deadline = System.currentTimeMillis() + mLatencyBudget;
+            long remaining = mLatencyBudget;
+
+            while ( mQueue.size() < mMaxBatch && remaining > 0 && 
+                    !interrupted )
+            {
+               try
+               {
+                  mLock.wait(remaining);
+               }
+               catch ( InterruptedException ie )
+               {
+                  interrupted = true;
+               }
+
+               remaining = deadline - System.currentTimeMillis();
+            }
+
+            batch = mQueue;
+            mQueue = new ArrayList();
+         }
+
+         IOException failure = null;
+
+         try
+         {
+            List pending = new ArrayList(batch.size());
+
+            for ( int i = 0; i < batch.size(); i++ )
+            {
+               pending.add(((Ticket)batch.get(i)).mPending);
+            }
+
+            mSyncer.sync(pending);
+         }
+         catch ( IOException ioe )
+         {
+            failure = ioe;
+         }
+         catch ( RuntimeException re )
+         {
+            failure = new IOException("Sync failed: " + re);
+         }
+         finally
+         {
+            synchronized ( mLock )
+            {
+               for ( int i = 0; i < batch.size(); i++ )
+               {
+                  Ticket done = (Ticket)batch.get(i);
+                  done.mFailure = failure;
+                  done.mDone = true;
+               }
+
+               mSyncs++;
+
+               if ( failure != null )
+               {
+                  mFailures++;
+               }
+
+               if ( batch.size() > mLargestBatch )
+               {
+                  mLargestBatch = batch.size();
+               }
+
+               mSyncing = false;
+               mLock.notifyAll();
+            }
+         }
+      }
+
+      long latency = ( System.nanoTime() - startNanos ) / 1000L;
+
+      synchronized ( mLock )
+      {
+         mCommits++;
+         mLatencies[(int)( mLatencyCount % LATENCY_SAMPLES )] = latency;
+         mLatencyCount++;
+      }
+
+      if ( interrupted )
+      {
+         Thread.currentThread().interrupt();
+      }
+
+      if ( ticket.mFailure != null )
+      {
+         throw ticket.mFailure;
+      }
+   }
+
+   /**
+    * Returns the number of completed commits.
+    * 
+    * @return The number of commits.
+    */
+   public long getCommits()
+   {
+      synchronized ( mLock )
+      {
+         return mCommits;
+      }
+   }
+
+   /**
+    * Returns the number of completed syncs.
+    * 
+    * @return The number of syncs.
+    */
+   public long getSyncs()
+   {
+      synchronized ( mLock )
+      {
+         return mSyncs;
+      }
+   }
+
+   /**
+    * Returns the average number of commits covered by each sync.
+    * 
+    * @return The commits per sync.
+    */
+   public double getCommitsPerSync()
+   {
+      synchronized ( mLock )
+      {
+         return mSyncs == 0 ? 0.0 : (double)mCommits / (double)mSyncs;
+      }
+   }
+
+   /**
+    * Returns a percentile of the most recent commit latencies.
+    * 
+    * @param iPercentile The percentile, from 0 to 100.
+    * 
+    * @return The latency in microseconds, or <code>0</code> if no commits
+    *         have been made.
+    */
+   public long getLatencyPercentile(double iPercentile)
+   {
+      long[] samples = null;
+
+      synchronized ( mLock )
+      {
+         int count = (int)Math.min(mLatencyCount, LATENCY_SAMPLES);
+
+         samples = new long[count];
+         System.arraycopy(mLatencies, 0, samples, 0, count);
+      }
+
+      if ( samples.length == 0 )
+      {
+         return 0;
+      }
+
+      Arrays.sort(samples);
+
+      int idx = (int)Math.ceil(iPercentile / 100.0 * samples.length) - 1;
+
+      return samples[Math.max(0, Math.min(idx, samples.length - 1))];
+   }
+
+   /**
+    * Describes the commits, syncs and commit latencies.
+    * 
+    * @return The statistics.
+    */
+   public String getStatistics()
+   {
+      long commits;
+      long syncs;
+      long failures;
+      int largest;
+
+      synchronized ( mLock )
+      {
+         commits = mCommits;
+         syncs = mSyncs;
+         failures = mFailures;
+         largest = mLargestBatch;
+      }
+
+      return "commits=" + commits + " syncs=" + syncs + 
+             " failedSyncs=" + failures + 
+             " commitsPerSync=" + ( syncs == 0 ? 0 : commits * 100 / syncs ) / 
+             100.0 + " largestBatch=" + largest + 
+             " latencyMicros[p50=" + getLatencyPercentile(50) + 
+             " p90=" + getLatencyPercentile(90) + 
+             " p99=" + getLatencyPercentile(99) + 
+             " max=" + getLatencyPercentile(100) + "]";
+   }
+
+   /**
+    * A commit waiting for its sync.
+    */
+   private static class Ticket
+   {
+      /**
+       * The object handed to the <code>Syncer</code>.
+       */
+      Object mPending = null;
+
+      /**
+       * Indicates the sync covering this commit has completed.
+       */
+      boolean mDone = false;
+
+      /**
+       * The failure of the sync covering this commit, if any.
+       */
+      IOException mFailure = null;
+
+      /**
+       * Initializes a ticket.
+       * 
+       * @param iPending The object handed to the <code>Syncer</code>.
+       */
+      Ticket(Object iPending)
+      {
+         mPending = iPending;
+      }
+   }
+
+} // GroupCommit
@@ -26,10 +26,15 @@ Nothing in this license impairs or restricts the author's moral rights.
 
 package org.adl.samplerte.util;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
+import org.adl.util.PhaseTimer;
 import org.adl.util.debug.DebugIndicator;
 
 
@@ -45,7 +50,14 @@ import org.adl.util.debug.DebugIndicator;
  * SCORM 2004 4th Edition Sample RTE 1.1.1. <br>
  * <br>
  * 
- * <strong>Implementation Issues:</strong><br><br>
+ * <strong>Implementation Issues:</strong><br>
+ * The connection handed out charges the time spent connecting and executing
+ * statements to the <code>PhaseTimer.DATABASE</code> phase.<br><br>
+ * 
+ * Connections are taken from a <code>ConnectionPool</code>.  A thread holds
+ * one connection from its first <code>getConnection()</code> call until the
+ * matching <code>closeConnection()</code> call, so nested calls share it and
+ * concurrent threads do not.<br><br>
  * 
  * <strong>Known Problems:</strong><br><br>
  * 
@@ -69,9 +81,19 @@ public class LMSDBHandler
    
    
    /**
-    * Connection to the DB.
+    * The pool of connections to the DB.
     */
-   private static Connection conn = null; 
+   private static ConnectionPool sPool = createPool();
+
+   /**
+    * The connection held by each thread (<code>HeldConnection</code>).
+    */
+   private static ThreadLocal sHeld = new ThreadLocal();
+
+   /**
+    * Indicates if connections to the DB may be made.
+    */
+   private static volatile boolean sEnabled = true;
 
    /**
     * Default Constructor
@@ -79,106 +101,316 @@ public class LMSDBHandler
     */
    public LMSDBHandler()
    {
-      LMSDBHandler.getConnection();
+      /* default constructor*/
    }
 
    /**
-    * Initializes the database connection.
+    * Initializes the database connection.  Each successful call must be 
+    * matched by a call to <code>closeConnection()</code> on the same thread;
+    * closing the connection itself has no effect.
     * 
     * @return A connection to the DB or <code>null</code> if the connection can
     *         not be established.
     */
    public static Connection getConnection()
    {  
-      if ( conn == null )
+      if ( !sEnabled )
       {
-         try
+         return null;
+      }
+
+      HeldConnection held = (HeldConnection)sHeld.get();
+
+      if ( held != null )
+      {
+         held.mDepth++;
+
+         return held.mTimed;
+      }
+
+      try
+      {
+         if ( _Debug )
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> Connecting to the Obj DB");
-            }
-           
-            String driverName = "sun.jdbc.odbc.JdbcOdbcDriver";
-            String connectionURL = "jdbc:odbc:SCORM4EDGlobalObjs111";
+            System.out.println("  ::--> Connecting to the Obj DB");
+         }
+                     
+         int phase = PhaseTimer.enter(PhaseTimer.DATABASE);
 
-            java.util.Properties prop = new java.util.Properties();
-            prop.put("charSet", "utf-8");
-                        
-            Class.forName(driverName).newInstance();
-            conn = DriverManager.getConnection(connectionURL, prop);
+         try
+         {
+            held = new HeldConnection(getPool().getConnection());
+         }
+         finally
+         {
+            PhaseTimer.exit(phase);
+         }
 
-            if ( _Debug )
-            {
-               System.out.println("  ::--> Connection successful");
-            }
+         sHeld.set(held);
 
+         if ( _Debug )
+         {
+            System.out.println("  ::--> Connection successful");
          }
-         catch ( SQLException ex )
+
+      }
+      catch ( SQLException ex )
+      {
+         if ( _Debug )
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR:  Could not connect to " +
-                                  "Obj DB");
-               System.out.println("  ::-->  " + ex.getSQLState());
-            }
-            ex.printStackTrace();
+            System.out.println("  ::--> ERROR:  Could not connect to " +
+                               "Obj DB");
+            System.out.println("  ::-->  " + ex.getSQLState());
          }
-         catch ( Exception e )
+         ex.printStackTrace();
+      }
+      catch ( Exception e )
+      {
+         if ( _Debug )
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR:  Unexpected exception");
-            }
-            e.printStackTrace();
+            System.out.println("  ::--> ERROR:  Unexpected exception");
          }
+         e.printStackTrace();
       }
 
-      return conn;
+      return ( held == null ) ? null : held.mTimed;
    }
 
 
    /**
-    * Closes the connection to the global objectives DB.
+    * Allows or prevents connections to the global objectives DB.  While
+    * connections are prevented, <code>getConnection</code> returns 
+    * <code>null</code>, so global objectives and course status are neither
+    * read nor persisted.  This lets the sequencer run without the Sample RTE,
+    * as it does in simulations.
+    * 
+    * @param iEnabled Indicates if connections may be made.
+    */
+   public static void setEnabled(boolean iEnabled)
+   {
+      sEnabled = iEnabled;
+   }
+
+   /**
+    * Ends the use of the connection to the global objectives DB started by
+    * the matching <code>getConnection()</code> call.  The connection is
+    * returned to the pool once every such call on this thread is matched.
     */
    public static void closeConnection()
    {   
-      try{
-  
-         if ( ( conn != null) && ( ! conn.isClosed() )   )
-         {
-            try
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> Closing Obj DB connection.");
-               }
+      HeldConnection held = (HeldConnection)sHeld.get();
 
-               //conn.commit();
-               conn.close();
-            }
-            catch ( SQLException ex )
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR:  Could not close Obj DB");
-                  System.out.println("  ::-->  " + ex.getSQLState());
-               }
-               ex.printStackTrace();
-            }
+      if ( held == null || --held.mDepth > 0 )
+      {
+         return;
+      }
+
+      sHeld.set(null);
+
+      try
+      {
+         if ( _Debug )
+         {
+            System.out.println("  ::--> Closing Obj DB connection.");
          }
 
-         conn = null;
+         held.mPooled.close();
       }
       catch ( SQLException ex )
+      {
+         if ( _Debug )
+         {
+            System.out.println("  ::--> ERROR:  Could not close Obj DB");
+            System.out.println("  ::-->  " + ex.getSQLState());
+         }
+         ex.printStackTrace();
+      }
+   }
+
+   /**
+    * Provides the pool connections to the global objectives DB are taken 
+    * from.
+    * 
+    * @return The connection pool.
+    */
+   public static synchronized ConnectionPool getPool()
+   {
+      return sPool;
+   }
+
+   /**
+    * Replaces the pool connections to the global objectives DB are taken 
+    * from, for example with one connecting to an embedded database.  The idle
+    * connections of the replaced pool are closed.
+    * 
+    * @param iPool The connection pool.
+    */
+   public static void setPool(ConnectionPool iPool)
+   {
+      ConnectionPool old = null;
+
+      synchronized ( LMSDBHandler.class )
+      {
+         old = sPool;
+         sPool = iPool;
+      }
+
+      old.closeIdle();
+   }
+
+   /**
+    * Creates the pool of connections to the global objectives DB.
+    * 
+    * @return The connection pool.
+    */
+   private static ConnectionPool createPool()
+   {
+      Properties prop = new Properties();
+      prop.put("charSet", "utf-8");
+
+      return new ConnectionPool("SCORM4EDGlobalObjs111", 
+                                "sun.jdbc.odbc.JdbcOdbcDriver", 
+                                "jdbc:odbc:SCORM4EDGlobalObjs111", prop);
+   }
+
+   /**
+    * Wraps a connection, or a statement created by one, so that executing
+    * statements is charged to the <code>PhaseTimer.DATABASE</code> phase.
+    * 
+    * @param iTarget The connection or statement.
+    * 
+    * @param iType   The JDBC interface of the target.
+    * 
+    * @return The wrapped target.
+    */
+   private static Object timed(Object iTarget, Class iType)
+   {
+      return Proxy.newProxyInstance(LMSDBHandler.class.getClassLoader(), 
+                                    new Class[] { iType }, 
+                                    new TimedInvocation(iTarget));
+   }
+
+   /**
+    * Wraps a connection so that executing its statements is timed.
+    * 
+    * @param iConn The connection.
+    * 
+    * @return The wrapped connection.
+    */
+   private static Connection timed(Connection iConn)
+   {
+      return ( iConn == null ) ? null : 
+         (Connection)timed(iConn, Connection.class);
+   }
+
+   /**
+    * Forwards calls to a connection or statement, timing statement execution
+    * and wrapping the statements the connection creates.
+    */
+   private static class TimedInvocation implements InvocationHandler
+   {
+      /**
+       * The connection or statement calls are forwarded to.
+       */
+      private Object mTarget = null;
+
+      /**
+       * Creates a handler forwarding to the given target.
+       * 
+       * @param iTarget The connection or statement.
+       */
+      TimedInvocation(Object iTarget)
+      {
+         mTarget = iTarget;
+      }
+
+      /**
+       * Forwards a call.
+       * 
+       * @param iProxy  The proxy called.
+       * 
+       * @param iMethod The method called.
+       * 
+       * @param iArgs   The arguments of the call.
+       * 
+       * @return The result of the call.
+       * 
+       * @throws Throwable The exception thrown by the target.
+       */
+      public Object invoke(Object iProxy, Method iMethod, Object[] iArgs) 
+         throws Throwable
+      {
+         String name = iMethod.getName();
+
+         // The held connection is returned to the pool by closeConnection()
+         if ( mTarget instanceof Connection && name.equals("close") )
+         {
+            return null;
+         }
+
+         boolean execute = name.startsWith("execute");
+         int phase = execute ? PhaseTimer.enter(PhaseTimer.DATABASE) : 0;
+
+         try
+         {
+            Object result = iMethod.invoke(mTarget, iArgs);
+
+            if ( mTarget instanceof Connection && 
+                 ( name.equals("createStatement") || 
+                   name.equals("prepareStatement") || 
+                   name.equals("prepareCall") ) )
+            {
+               result = timed(result, iMethod.getReturnType());
+            }
+
+            return result;
+         }
+         catch ( InvocationTargetException e )
          {
-            if ( _Debug )
+            throw e.getTargetException();
+         }
+         finally
+         {
+            if ( execute )
             {
-               System.out.println("  ::--> ERROR: in conn.IsClosed Obj DB ");
-               System.out.println("  ::-->  " + ex.getSQLState());
+               PhaseTimer.exit(phase);
             }
-            ex.printStackTrace();
          }
+      }
    }
 
+   /**
+    * The connection held by a thread between its first 
+    * <code>getConnection()</code> call and the matching 
+    * <code>closeConnection()</code> call.
+    */
+   private static class HeldConnection
+   {
+      /**
+       * The connection from the pool.
+       */
+      Connection mPooled = null;
+
+      /**
+       * The connection handed out, which times statement execution.
+       */
+      Connection mTimed = null;
+
+      /**
+       * The number of <code>getConnection()</code> calls not yet matched by
+       * a <code>closeConnection()</code> call.
+       */
+      int mDepth = 1;
+
+      /**
+       * Creates a held connection.
+       * 
+       * @param iPooled The connection from the pool.
+       */
+      HeldConnection(Connection iPooled)
+      {
+         mPooled = iPooled;
+         mTimed = timed(iPooled);
+      }
+   }
 }  // LMSDBHandler
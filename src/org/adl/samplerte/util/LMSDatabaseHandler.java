@@ -27,8 +27,8 @@ Nothing in this license impairs or restricts the author's moral rights.
 package org.adl.samplerte.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 import org.adl.util.debug.DebugIndicator;
 
@@ -46,7 +46,9 @@ import org.adl.util.debug.DebugIndicator;
  * SCORM 2004 4th Edition Sample RTE 1.1.1. <br>
  * <br>
  * 
- * <strong>Implementation Issues:</strong><br><br>
+ * <strong>Implementation Issues:</strong><br>
+ * Connections are taken from a <code>ConnectionPool</code>; closing a
+ * connection returns it to the pool.<br><br>
  * 
  * <strong>Known Problems:</strong><br><br>
  * 
@@ -68,6 +70,11 @@ public class LMSDatabaseHandler
     */
    private static boolean _Debug = DebugIndicator.ON; 
 
+   /**
+    * The pool of connections to the DB.
+    */
+   private static ConnectionPool sPool = createPool();
+
    /**
     * Default Constructor
     */
@@ -81,7 +88,8 @@ public class LMSDatabaseHandler
     * Initializes the database connection.
     * 
     *
-    * @return  Returns a database connection.
+    * @return  Returns a database connection, which must be closed, or 
+    *          <code>null</code> if the connection can not be established.
     */
    public static Connection getConnection() 
    {
@@ -95,14 +103,7 @@ public class LMSDatabaseHandler
             System.out.println("  ::--> Connecting to the DB");
          }
 
-         String driverName = "sun.jdbc.odbc.JdbcOdbcDriver";
-         String connectionURL = "jdbc:odbc:SCORM4EDSRTE111";
-         
-         java.util.Properties prop = new java.util.Properties();
-         prop.put("charSet", "utf-8");
-                  
-         Class.forName(driverName).newInstance();
-         conn = DriverManager.getConnection(connectionURL, prop);         
+         conn = getPool().getConnection();
 
       }
       catch ( SQLException ex )
@@ -119,4 +120,49 @@ public class LMSDatabaseHandler
 
       return conn;
    }
+
+   /**
+    * Provides the pool connections to the DB are taken from.
+    * 
+    * @return The connection pool.
+    */
+   public static synchronized ConnectionPool getPool()
+   {
+      return sPool;
+   }
+
+   /**
+    * Replaces the pool connections to the DB are taken from, for example 
+    * with one connecting to an embedded database.  The idle connections of
+    * the replaced pool are closed.
+    * 
+    * @param iPool The connection pool.
+    */
+   public static void setPool(ConnectionPool iPool)
+   {
+      ConnectionPool old = null;
+
+      synchronized ( LMSDatabaseHandler.class )
+      {
+         old = sPool;
+         sPool = iPool;
+      }
+
+      old.closeIdle();
+   }
+
+   /**
+    * Creates the pool of connections to the Sample RTE DB.
+    * 
+    * @return The connection pool.
+    */
+   private static ConnectionPool createPool()
+   {
+      Properties prop = new Properties();
+      prop.put("charSet", "utf-8");
+
+      return new ConnectionPool("SCORM4EDSRTE111", 
+                                "sun.jdbc.odbc.JdbcOdbcDriver", 
+                                "jdbc:odbc:SCORM4EDSRTE111", prop);
+   }
 }
@@ -0,0 +1,160 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.IOException;
+
+
+/**
+ * Provides persistent storage for the run-time state of a learner's SCO
+ * attempts.<br><br>
+ * 
+ * <strong>Filename:</strong> LearnerStateStore.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * Each record is identified by the learner, the course and a state ID (the
+ * SCO's ID and attempt number) and holds an opaque serialized
+ * <code>SCODataManager</code>.  Callers never build file paths for SCO state
+ * themselves; the store decides how records are laid out on disk.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the 
+ * SCORM 2004 4th Edition Sample RTE.<br>
+ * <br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Implementations must be safe for use by concurrent requests.  A write
+ * must be durable when it returns, and a crash part way through a write 
+ * must leave the previous contents of the record intact.<br><br>
+ *  
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */
+public interface LearnerStateStore
+{
+
+   /**
+    * Reads a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return The record's contents, or <code>null</code> if it does not
+    *         exist.
+    * 
+    * @throws IOException Thrown if the record can not be read.
+    */
+   byte[] read(String iUserID, String iCourseID, String iStateID) 
+      throws IOException;
+
+
+   /**
+    * Writes a state record, replacing any previous contents.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @param iData     The record's contents.
+    * 
+    * @throws IOException Thrown if the record can not be written.
+    */
+   void write(String iUserID, String iCourseID, String iStateID, 
+              byte[] iData) throws IOException;
+
+
+   /**
+    * Indicates if a state record exists.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return <code>true</code> if the record exists, otherwise 
+    *         <code>false</code>.
+    */
+   boolean exists(String iUserID, String iCourseID, String iStateID);
+
+
+   /**
+    * Removes a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @throws IOException Thrown if the removal can not be recorded.
+    */
+   void delete(String iUserID, String iCourseID, String iStateID) 
+      throws IOException;
+
+
+   /**
+    * Removes every state record of a learner for a course.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @throws IOException Thrown if the removal can not be recorded.
+    */
+   void deleteCourse(String iUserID, String iCourseID) throws IOException;
+
+
+   /**
+    * Describes the store's activity, such as how its writes were synced.
+    * 
+    * @return The statistics.
+    */
+   String getStatistics();
+
+
+   /**
+    * Releases any resources held by the store.  The store must not be used
+    * afterwards.
+    */
+   void close();
+
+} // LearnerStateStore
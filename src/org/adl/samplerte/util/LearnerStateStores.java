@@ -0,0 +1,167 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <strong>Filename:</strong> LearnerStateStores.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Holds the <code>LearnerStateStore</code> shared by the Sample RTE's
+ * servlets and services.  The store is selected once, at start up, by name:
+ * <ul>
+ *    <li><code>file</code> - one file per SCO attempt (the default)</li>
+ *    <li><code>log</code> - append-only segment files</li>
+ * </ul>
+ * Both keep their data under the Sample RTE files directory.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition 
+ * Sample Run-Time Environment.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * If no store has been configured when one is first needed, the file store
+ * is used.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public class LearnerStateStores
+{
+   /**
+    * Name of the store keeping one file per SCO attempt.
+    */
+   public static final String FILE = "file";
+
+   /**
+    * Name of the store keeping append-only segment files.
+    */
+   public static final String LOG = "log";
+
+   /**
+    * The root directory of the Sample RTE's files.
+    */
+   private static final String SRTEFILESDIR = "SCORM4EDSampleRTE111Files";
+
+   /**
+    * The directory, below the Sample RTE's files, holding the segments of the
+    * log store.
+    */
+   private static final String STATELOGDIR = "stateLog";
+
+   /**
+    * The configured store.
+    */
+   private static LearnerStateStore sStore = null;
+
+   /**
+    * No instances; all access is static.
+    */
+   private LearnerStateStores()
+   {
+      // Nothing to do
+   }
+
+   /**
+    * Selects the store to use, closing any previously selected store.
+    * 
+    * @param iType          The name of the store, <code>file</code> or 
+    *                       <code>log</code>.  <code>null</code> selects the
+    *                       file store.
+    * 
+    * @param iLatencyBudget The number of milliseconds a write to the log 
+    *                       store may wait for others to share its sync.  
+    *                       The file store syncs each write on its own.
+    * 
+    * @throws IOException Thrown if the store can not be opened.
+    */
+   public static synchronized void configure(String iType, 
+                                             long iLatencyBudget) 
+      throws IOException
+   {
+      String root = File.separator + SRTEFILESDIR;
+      LearnerStateStore store = null;
+
+      if ( iType == null || iType.trim().length() == 0 || 
+           iType.trim().equalsIgnoreCase(FILE) )
+      {
+         store = new FileLearnerStateStore(root);
+      }
+      else if ( iType.trim().equalsIgnoreCase(LOG) )
+      {
+         store = new LogLearnerStateStore(root + File.separator + STATELOGDIR,
+                                          LogLearnerStateStore.
+                                          DEFAULT_SEGMENT_SIZE, 
+                                          iLatencyBudget);
+      }
+      else
+      {
+         throw new IOException("Unknown learner state store: " + iType);
+      }
+
+      if ( sStore != null )
+      {
+         sStore.close();
+      }
+
+      sStore = store;
+   }
+
+   /**
+    * Returns the configured store.
+    * 
+    * @return The store.
+    */
+   public static synchronized LearnerStateStore getStore()
+   {
+      if ( sStore == null )
+      {
+         sStore = new FileLearnerStateStore(File.separator + SRTEFILESDIR);
+      }
+
+      return sStore;
+   }
+
+   /**
+    * Closes the configured store.
+    */
+   public static synchronized void shutdown()
+   {
+      if ( sStore != null )
+      {
+         sStore.close();
+         sStore = null;
+      }
+   }
+
+} // LearnerStateStores
@@ -0,0 +1,1023 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.samplerte.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * <strong>Filename:</strong> LogLearnerStateStore.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * A <code>LearnerStateStore</code> that appends every state record to a
+ * small number of large segment files instead of writing one file per SCO
+ * attempt.  An in-memory index maps each record to the position of its most
+ * recent contents, so a read is a single positioned read.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * Segments are named <code>segment-NNNNNN.log</code> and are only ever 
+ * appended to; a new segment is started once the active one reaches the
+ * configured size.  Each record is laid out as:
+ * <pre>
+ *    int    body length
+ *    byte   operation (PUT, DELETE or DELETE_COURSE)
+ *    UTF    user ID
+ *    UTF    course ID
+ *    UTF    state ID
+ *    byte[] data (PUT only)
+ *    long   CRC32 of the body
+ * </pre>
+ * Replacing or removing a record leaves its old bytes behind as garbage.
+ * Once the garbage outweighs the live records the live records are copied
+ * into fresh segments and the old segments are removed, oldest first, so a
+ * crash part way through compaction replays to the same state.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * The index is rebuilt by scanning the segments when the store is opened.
+ * A torn record at the end of the newest segment (from a crash during a
+ * write) is truncated away.  All access is synchronized on the store; 
+ * callers already serialize work per learner, so contention is limited to 
+ * the short append or positioned read.<br><br>
+ * 
+ * A write returns once the active segment has been synced.  Writers wait for
+ * the sync outside the store's lock through a <code>GroupCommit</code>, so
+ * one sync covers every record appended while the previous sync ran.  A 
+ * segment is synced before a new one is started.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br>
+ * Compaction runs inline on the request that triggers it.<br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public class LogLearnerStateStore implements LearnerStateStore
+{
+   /**
+    * The default size at which a new segment is started.
+    */
+   public static final long DEFAULT_SEGMENT_SIZE = 16L * 1024L * 1024L;
+
+   /**
+    * Operation code of a record holding a SCO attempt's state.
+    */
+   private static final byte OP_PUT = 1;
+
+   /**
+    * Operation code of a record removing a SCO attempt's state.
+    */
+   private static final byte OP_DELETE = 2;
+
+   /**
+    * Operation code of a record removing all of a learner's state for a 
+    * course.
+    */
+   private static final byte OP_DELETE_COURSE = 3;
+
+   /**
+    * The size of the length prefix and CRC surrounding each record body.
+    */
+   private static final int RECORD_OVERHEAD = 4 + 8;
+
+   /**
+    * Prefix of segment file names.
+    */
+   private static final String SEGMENT_PREFIX = "segment-";
+
+   /**
+    * Suffix of segment file names.
+    */
+   private static final String SEGMENT_SUFFIX = ".log";
+
+   /**
+    * The logger.
+    */
+   private static Logger mLogger = 
+      Logger.getLogger("org.adl.util.debug.samplerte");
+
+   /**
+    * The directory holding the segments.
+    */
+   private File mDir = null;
+
+   /**
+    * The size at which a new segment is started.
+    */
+   private long mSegmentSize = DEFAULT_SEGMENT_SIZE;
+
+   /**
+    * The open segments, keyed by segment number (<code>Integer</code>).
+    */
+   private TreeMap mSegments = new TreeMap();
+
+   /**
+    * The number of the segment being appended to.
+    */
+   private int mActiveSegment = 0;
+
+   /**
+    * The index; maps a learner/course key to a map of state ID to 
+    * <code>Location</code>.
+    */
+   private HashMap mIndex = new HashMap();
+
+   /**
+    * The number of bytes, in all segments, of records still referenced by 
+    * the index.
+    */
+   private long mLiveBytes = 0;
+
+   /**
+    * The number of bytes in all segments.
+    */
+   private long mTotalBytes = 0;
+
+   /**
+    * The number of compactions performed since the store was opened.
+    */
+   private long mCompactions = 0;
+
+   /**
+    * Indicates the store has been closed.
+    */
+   private boolean mClosed = false;
+
+   /**
+    * Syncs appended records in batches.
+    */
+   private GroupCommit mGroupCommit = null;
+
+   /**
+    * Opens a log-structured store, recovering its index from any existing
+    * segments.
+    * 
+    * @param iDir         The directory holding the segments; it is created
+    *                     if needed.
+    * 
+    * @param iSegmentSize The size at which a new segment is started.
+    * 
+    * @param iLatencyBudget The number of milliseconds a write may wait for 
+    *                       others to share its sync.
+    * 
+    * @throws IOException Thrown if the segments can not be opened.
+    */
+   public LogLearnerStateStore(String iDir, long iSegmentSize, 
+                               long iLatencyBudget) throws IOException
+   {
+      mDir = new File(iDir);
+      mSegmentSize = iSegmentSize > 0 ? iSegmentSize : DEFAULT_SEGMENT_SIZE;
+      mGroupCommit = new GroupCommit(new LogSyncer(), iLatencyBudget, 
+                                     GroupCommit.DEFAULT_MAX_BATCH);
+
+      if ( !mDir.isDirectory() && !mDir.mkdirs() )
+      {
+         throw new IOException("Unable to create state log directory " + 
+                               mDir);
+      }
+
+      recover();
+   }
+
+   /**
+    * Reads a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return The record's contents, or <code>null</code> if it does not
+    *         exist.
+    * 
+    * @throws IOException Thrown if the record can not be read.
+    */
+   public synchronized byte[] read(String iUserID, String iCourseID, 
+                                   String iStateID) throws IOException
+   {
+      checkOpen();
+
+      Location loc = find(iUserID, iCourseID, iStateID);
+
+      if ( loc == null )
+      {
+         return null;
+      }
+
+      RandomAccessFile raf = getSegment(loc.mSegment);
+      byte[] data = new byte[loc.mDataLength];
+
+      raf.seek(loc.mDataOffset);
+      raf.readFully(data);
+
+      return data;
+   }
+
+   /**
+    * Writes a state record, replacing any previous contents.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @param iData     The record's contents.
+    * 
+    * @throws IOException Thrown if the record can not be written.
+    */
+   public void write(String iUserID, String iCourseID, String iStateID, 
+                     byte[] iData) throws IOException
+   {
+      synchronized ( this )
+      {
+         checkOpen();
+
+         Location loc = append(OP_PUT, iUserID, iCourseID, iStateID, iData);
+
+         index(OP_PUT, iUserID, iCourseID, iStateID, loc);
+         compactIfNeeded();
+      }
+
+      mGroupCommit.commit(null);
+   }
+
+   /**
+    * Indicates if a state record exists.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return <code>true</code> if the record exists, otherwise 
+    *         <code>false</code>.
+    */
+   public synchronized boolean exists(String iUserID, String iCourseID, 
+                                      String iStateID)
+   {
+      return find(iUserID, iCourseID, iStateID) != null;
+   }
+
+   /**
+    * Removes a state record.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @throws IOException Thrown if the removal can not be recorded.
+    */
+   public void delete(String iUserID, String iCourseID, String iStateID) 
+      throws IOException
+   {
+      synchronized ( this )
+      {
+         checkOpen();
+
+         if ( find(iUserID, iCourseID, iStateID) == null )
+         {
+            return;
+         }
+
+         Location loc = append(OP_DELETE, iUserID, iCourseID, iStateID, null);
+
+         index(OP_DELETE, iUserID, iCourseID, iStateID, loc);
+         compactIfNeeded();
+      }
+
+      mGroupCommit.commit(null);
+   }
+
+   /**
+    * Removes every state record of a learner for a course.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @throws IOException Thrown if the removal can not be recorded.
+    */
+   public void deleteCourse(String iUserID, String iCourseID) 
+      throws IOException
+   {
+      synchronized ( this )
+      {
+         checkOpen();
+
+         if ( !mIndex.containsKey(getCourseKey(iUserID, iCourseID)) )
+         {
+            return;
+         }
+
+         Location loc = append(OP_DELETE_COURSE, iUserID, iCourseID, "", 
+                               null);
+
+         index(OP_DELETE_COURSE, iUserID, iCourseID, "", loc);
+         compactIfNeeded();
+      }
+
+      mGroupCommit.commit(null);
+   }
+
+   /**
+    * Describes the store's size and how its writes were synced.
+    * 
+    * @return The statistics.
+    */
+   public String getStatistics()
+   {
+      String sizes = null;
+
+      synchronized ( this )
+      {
+         sizes = "segments=" + mSegments.size() + " liveBytes=" + 
+                 mLiveBytes + " totalBytes=" + mTotalBytes + 
+                 " compactions=" + mCompactions;
+      }
+
+      return "log store: " + sizes + " " + mGroupCommit.getStatistics();
+   }
+
+   /**
+    * Closes all segments.  The store must not be used afterwards.
+    */
+   public synchronized void close()
+   {
+      mClosed = true;
+      closeSegments();
+   }
+
+   /**
+    * Returns the number of bytes of live records.
+    * 
+    * @return The number of live bytes.
+    */
+   public synchronized long getLiveBytes()
+   {
+      return mLiveBytes;
+   }
+
+   /**
+    * Returns the number of bytes in all segments.
+    * 
+    * @return The number of bytes on disk.
+    */
+   public synchronized long getTotalBytes()
+   {
+      return mTotalBytes;
+   }
+
+   /**
+    * Returns the number of compactions performed since the store was opened.
+    * 
+    * @return The number of compactions.
+    */
+   public synchronized long getCompactions()
+   {
+      return mCompactions;
+   }
+
+   /**
+    * Copies the live records into fresh segments and removes the old ones.
+    * 
+    * @throws IOException Thrown if the live records can not be copied.
+    */
+   public synchronized void compact() throws IOException
+   {
+      checkOpen();
+
+      int firstNew = mActiveSegment + 1;
+      List oldSegments = new ArrayList(mSegments.keySet());
+
+      // Start a fresh segment so no old segment is appended to again
+      openSegment(firstNew);
+      mActiveSegment = firstNew;
+
+      Iterator courses = mIndex.entrySet().iterator();
+
+      while ( courses.hasNext() )
+      {
+         Map.Entry course = (Map.Entry)courses.next();
+         Iterator states = ((HashMap)course.getValue()).values().iterator();
+
+         while ( states.hasNext() )
+         {
+            Location old = (Location)states.next();
+            byte[] data = new byte[old.mDataLength];
+            RandomAccessFile raf = getSegment(old.mSegment);
+
+            raf.seek(old.mDataOffset);
+            raf.readFully(data);
+
+            Location loc = append(OP_PUT, old.mUserID, old.mCourseID, 
+                                  old.mStateID, data);
+
+            old.mSegment = loc.mSegment;
+            old.mDataOffset = loc.mDataOffset;
+            old.mRecordLength = loc.mRecordLength;
+         }
+      }
+
+      getSegment(mActiveSegment).getFD().sync();
+
+      // Remove the old segments oldest first so an interrupted compaction
+      // never leaves a delete without the write it removes
+      for ( int i = 0; i < oldSegments.size(); i++ )
+      {
+         Integer num = (Integer)oldSegments.get(i);
+         RandomAccessFile raf = (RandomAccessFile)mSegments.remove(num);
+
+         mTotalBytes -= raf.length();
+         raf.close();
+
+         if ( !getSegmentFile(num.intValue()).delete() )
+         {
+            mLogger.warning("Unable to remove state log segment " + 
+                            getSegmentFile(num.intValue()));
+         }
+      }
+
+      mCompactions++;
+   }
+
+   /**
+    * Compacts the store once the garbage outweighs the live records and is
+    * at least one segment's worth.
+    * 
+    * @throws IOException Thrown if the compaction fails.
+    */
+   private void compactIfNeeded() throws IOException
+   {
+      long dead = mTotalBytes - mLiveBytes;
+
+      if ( dead > mLiveBytes && dead > mSegmentSize )
+      {
+         compact();
+      }
+   }
+
+   /**
+    * Appends a record to the active segment, starting a new segment if the
+    * active one is full.
+    * 
+    * @param iOp       The operation code.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @param iData     The record's contents, or <code>null</code>.
+    * 
+    * @return The location of the appended record.
+    * 
+    * @throws IOException Thrown if the record can not be written.
+    */
+   private Location append(byte iOp, String iUserID, String iCourseID, 
+                           String iStateID, byte[] iData) throws IOException
+   {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(
+         64 + (iData == null ? 0 : iData.length));
+      DataOutputStream dos = new DataOutputStream(bos);
+
+      dos.writeInt(0);
+      dos.writeByte(iOp);
+      dos.writeUTF(iUserID);
+      dos.writeUTF(iCourseID);
+      dos.writeUTF(iStateID);
+
+      int headerLength = dos.size();
+
+      if ( iData != null )
+      {
+         dos.write(iData);
+      }
+
+      int bodyLength = dos.size() - 4;
+      dos.writeLong(0L);
+      dos.flush();
+
+      byte[] record = bos.toByteArray();
+
+      writeInt(record, 0, bodyLength);
+
+      CRC32 crc = new CRC32();
+      crc.update(record, 4, bodyLength);
+      writeLong(record, 4 + bodyLength, crc.getValue());
+
+      RandomAccessFile raf = getSegment(mActiveSegment);
+
+      if ( raf.length() > 0 && raf.length() + record.length > mSegmentSize )
+      {
+         // Nothing is synced in a segment once it is no longer active
+         raf.getFD().sync();
+
+         mActiveSegment++;
+         raf = openSegment(mActiveSegment);
+      }
+
+      long start = raf.length();
+
+      raf.seek(start);
+      raf.write(record);
+      mTotalBytes += record.length;
+
+      Location loc = new Location(iUserID, iCourseID, iStateID);
+      loc.mSegment = mActiveSegment;
+      loc.mDataOffset = start + headerLength;
+      loc.mDataLength = iData == null ? 0 : iData.length;
+      loc.mRecordLength = record.length;
+
+      return loc;
+   }
+
+   /**
+    * Applies a record to the index, keeping the live byte count current.
+    * 
+    * @param iOp       The operation code.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @param iLoc      The location of the record.
+    */
+   private void index(byte iOp, String iUserID, String iCourseID, 
+                      String iStateID, Location iLoc)
+   {
+      String key = getCourseKey(iUserID, iCourseID);
+      HashMap states = (HashMap)mIndex.get(key);
+
+      if ( iOp == OP_DELETE_COURSE )
+      {
+         if ( states != null )
+         {
+            Iterator it = states.values().iterator();
+
+            while ( it.hasNext() )
+            {
+               mLiveBytes -= ((Location)it.next()).mRecordLength;
+            }
+
+            mIndex.remove(key);
+         }
+
+         return;
+      }
+
+      Location old = null;
+
+      if ( iOp == OP_PUT )
+      {
+         if ( states == null )
+         {
+            states = new HashMap();
+            mIndex.put(key, states);
+         }
+
+         old = (Location)states.put(iStateID, iLoc);
+         mLiveBytes += iLoc.mRecordLength;
+      }
+      else if ( states != null )
+      {
+         old = (Location)states.remove(iStateID);
+
+         if ( states.isEmpty() )
+         {
+            mIndex.remove(key);
+         }
+      }
+
+      if ( old != null )
+      {
+         mLiveBytes -= old.mRecordLength;
+      }
+   }
+
+   /**
+    * Finds the location of a record's most recent contents.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @param iStateID  The ID of the SCO attempt's state.
+    * 
+    * @return The location, or <code>null</code> if there is no record.
+    */
+   private Location find(String iUserID, String iCourseID, String iStateID)
+   {
+      HashMap states = (HashMap)mIndex.get(getCourseKey(iUserID, iCourseID));
+
+      return states == null ? null : (Location)states.get(iStateID);
+   }
+
+   /**
+    * Rebuilds the index by scanning the existing segments in order.
+    * 
+    * @throws IOException Thrown if a segment can not be read.
+    */
+   private void recover() throws IOException
+   {
+      String[] names = mDir.list();
+      int[] numbers = new int[names == null ? 0 : names.length];
+      int count = 0;
+
+      for ( int i = 0; i < numbers.length; i++ )
+      {
+         if ( names[i].startsWith(SEGMENT_PREFIX) && 
+              names[i].endsWith(SEGMENT_SUFFIX) )
+         {
+            try
+            {
+               numbers[count] = Integer.parseInt(names[i].substring(
+                  SEGMENT_PREFIX.length(), 
+                  names[i].length() - SEGMENT_SUFFIX.length()));
+               count++;
+            }
+            catch ( NumberFormatException nfe )
+            {
+               mLogger.warning("Ignoring unexpected file in state log: " + 
+                               names[i]);
+            }
+         }
+      }
+
+      numbers = copyOf(numbers, count);
+      Arrays.sort(numbers);
+
+      for ( int i = 0; i < numbers.length; i++ )
+      {
+         scan(numbers[i], i == numbers.length - 1);
+      }
+
+      if ( numbers.length == 0 )
+      {
+         mActiveSegment = 1;
+         openSegment(mActiveSegment);
+      }
+      else
+      {
+         mActiveSegment = numbers[numbers.length - 1];
+      }
+   }
+
+   /**
+    * Replays the records of one segment into the index.  A damaged tail of 
+    * the newest segment is truncated; a damaged record in an older segment 
+    * ends the scan of that segment.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @param iLast    Indicates this is the newest segment.
+    * 
+    * @throws IOException Thrown if the segment can not be read.
+    */
+   private void scan(int iSegment, boolean iLast) throws IOException
+   {
+      RandomAccessFile raf = openSegment(iSegment);
+      long length = raf.length();
+      long pos = 0;
+
+      raf.seek(0);
+
+      while ( pos + RECORD_OVERHEAD <= length )
+      {
+         int bodyLength = raf.readInt();
+
+         if ( bodyLength <= 0 || pos + RECORD_OVERHEAD + bodyLength > length )
+         {
+            break;
+         }
+
+         byte[] body = new byte[bodyLength];
+         raf.readFully(body);
+         long stored = raf.readLong();
+
+         CRC32 crc = new CRC32();
+         crc.update(body, 0, bodyLength);
+
+         if ( crc.getValue() != stored )
+         {
+            break;
+         }
+
+         DataInputStream dis = 
+            new DataInputStream(new ByteArrayInputStream(body));
+         byte op = dis.readByte();
+         String userID = dis.readUTF();
+         String courseID = dis.readUTF();
+         String stateID = dis.readUTF();
+         int dataLength = dis.available();
+
+         Location loc = new Location(userID, courseID, stateID);
+         loc.mSegment = iSegment;
+         loc.mDataOffset = pos + 4 + bodyLength - dataLength;
+         loc.mDataLength = dataLength;
+         loc.mRecordLength = RECORD_OVERHEAD + bodyLength;
+
+         index(op, userID, courseID, stateID, loc);
+
+         pos += loc.mRecordLength;
+      }
+
+      if ( pos < length )
+      {
+         mLogger.warning("Damaged state log record in " + 
+                         getSegmentFile(iSegment) + " at offset " + pos);
+
+         if ( iLast )
+         {
+            raf.setLength(pos);
+            length = pos;
+         }
+      }
+
+      mTotalBytes += length;
+   }
+
+   /**
+    * Returns an open segment, opening it if needed.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The segment file.
+    * 
+    * @throws IOException Thrown if the segment can not be opened.
+    */
+   private RandomAccessFile getSegment(int iSegment) throws IOException
+   {
+      RandomAccessFile raf = 
+         (RandomAccessFile)mSegments.get(new Integer(iSegment));
+
+      return raf == null ? openSegment(iSegment) : raf;
+   }
+
+   /**
+    * Opens, creating if needed, a segment.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The segment file.
+    * 
+    * @throws IOException Thrown if the segment can not be opened.
+    */
+   private RandomAccessFile openSegment(int iSegment) throws IOException
+   {
+      RandomAccessFile raf = 
+         new RandomAccessFile(getSegmentFile(iSegment), "rw");
+
+      mSegments.put(new Integer(iSegment), raf);
+
+      return raf;
+   }
+
+   /**
+    * Closes all open segments.
+    */
+   private void closeSegments()
+   {
+      Iterator it = mSegments.values().iterator();
+
+      while ( it.hasNext() )
+      {
+         try
+         {
+            ((RandomAccessFile)it.next()).close();
+         }
+         catch ( IOException ioe )
+         {
+            mLogger.warning("Unable to close state log segment: " + ioe);
+         }
+      }
+
+      mSegments.clear();
+   }
+
+   /**
+    * Builds the file of a segment.
+    * 
+    * @param iSegment The segment number.
+    * 
+    * @return The segment's file.
+    */
+   private File getSegmentFile(int iSegment)
+   {
+      String num = Integer.toString(iSegment);
+
+      while ( num.length() < 6 )
+      {
+         num = "0" + num;
+      }
+
+      return new File(mDir, SEGMENT_PREFIX + num + SEGMENT_SUFFIX);
+   }
+
+   /**
+    * Verifies the store has not been closed.
+    * 
+    * @throws IOException Thrown if the store has been closed.
+    */
+   private void checkOpen() throws IOException
+   {
+      if ( mClosed )
+      {
+         throw new IOException("The learner state store is closed");
+      }
+   }
+
+   /**
+    * Builds the index key of a learner's course.
+    * 
+    * @param iUserID   The ID of the learner.
+    * 
+    * @param iCourseID The ID of the course.
+    * 
+    * @return The key.
+    */
+   private static String getCourseKey(String iUserID, String iCourseID)
+   {
+      return iUserID + '\u0000' + iCourseID;
+   }
+
+   /**
+    * Copies the first elements of an array.
+    * 
+    * @param iArray  The array.
+    * 
+    * @param iLength The number of elements to copy.
+    * 
+    * @return The copy.
+    */
+   private static int[] copyOf(int[] iArray, int iLength)
+   {
+      int[] copy = new int[iLength];
+
+      System.arraycopy(iArray, 0, copy, 0, iLength);
+
+      return copy;
+   }
+
+   /**
+    * Stores an int, big-endian, in a byte array.
+    * 
+    * @param ioBuf    The array.
+    * 
+    * @param iOffset  Where to store the value.
+    * 
+    * @param iValue   The value.
+    */
+   private static void writeInt(byte[] ioBuf, int iOffset, int iValue)
+   {
+      for ( int i = 3; i >= 0; i-- )
+      {
+         ioBuf[iOffset + i] = (byte)iValue;
+         iValue >>>= 8;
+      }
+   }
+
+   /**
+    * Stores a long, big-endian, in a byte array.
+    * 
+    * @param ioBuf    The array.
+    * 
+    * @param iOffset  Where to store the value.
+    * 
+    * @param iValue   The value.
+    */
+   private static void writeLong(byte[] ioBuf, int iOffset, long iValue)
+   {
+      for ( int i = 7; i >= 0; i-- )
+      {
+         ioBuf[iOffset + i] = (byte)iValue;
+         iValue >>>= 8;
+      }
+   }
+
+   /**
+    * The position of a record's most recent contents.
+    */
+   private static class Location
+   {
+      /**
+       * The ID of the learner.
+       */
+      String mUserID = null;
+
+      /**
+       * The ID of the course.
+       */
+      String mCourseID = null;
+
+      /**
+       * The ID of the SCO attempt's state.
+       */
+      String mStateID = null;
+
+      /**
+       * The segment holding the record.
+       */
+      int mSegment = 0;
+
+      /**
+       * The offset of the record's data within its segment.
+       */
+      long mDataOffset = 0;
+
+      /**
+       * The length of the record's data.
+       */
+      int mDataLength = 0;
+
+      /**
+       * The length of the whole record, including framing.
+       */
+      int mRecordLength = 0;
+
+      /**
+       * Initializes a location.
+       * 
+       * @param iUserID   The ID of the learner.
+       * 
+       * @param iCourseID The ID of the course.
+       * 
+       * @param iStateID  The ID of the SCO attempt's state.
+       */
+      Location(String iUserID, String iCourseID, String iStateID)
+      {
+         mUserID = iUserID;
+         mCourseID = iCourseID;
+         mStateID = iStateID;
+      }
+   }
+
+   /**
+    * Syncs the active segment, covering every record appended to it.
+    */
+   private class LogSyncer implements GroupCommit.Syncer
+   {
+      /**
+       * Syncs the active segment.
+       * 
+       * @param iBatch Not used; every commit is covered by the one sync.
+       * 
+       * @throws IOException Thrown if the segment can not be synced.
+       */
+      public void sync(List iBatch) throws IOException
+      {
+         synchronized ( LogLearnerStateStore.this )
+         {
+            checkOpen();
+
+            getSegment(mActiveSegment).getFD().sync();
+         }
+      }
+   }
+
+} // LogLearnerStateStore
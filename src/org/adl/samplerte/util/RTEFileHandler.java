@@ -27,8 +27,7 @@ package org.adl.samplerte.util;
 
 //Native java imports
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -36,6 +35,8 @@ import java.sql.ResultSet;
 import org.adl.datamodels.DMFactory;
 import org.adl.datamodels.DMInterface;
 import org.adl.datamodels.SCODataManager;
+import org.adl.util.PhaseTimer;
+import org.adl.util.codec.CodecInput;
 import org.adl.util.debug.DebugIndicator;
 
 /**
@@ -48,7 +49,10 @@ import org.adl.util.debug.DebugIndicator;
  * contains a method that queries teh database for initialized datamodel values 
  * and stores those values in String array.  In  addition, this class contains 
  * logic to delete any course files and temporary uploaded packages after a 
- * successful import.<br><br>
+ * successful import.  SCO state is read and written through the configured
+ * <code>LearnerStateStore</code>; each write is given a new version and the
+ * latest version of recently used states is kept in memory by
+ * <code>CommittedStateCache</code>.<br><br>
  * 
  * <strong>Design Issues:</strong><br>
  * This implementation is intended to be used by the SCORM 2004 4th Edition Sample 
@@ -108,62 +112,30 @@ public class RTEFileHandler
             System.out.println("**** IN INITIALIZESTATEFILE****");
          }
          
-         String userDir = mSampleRTERoot + File.separator + iUserID + 
-                           File.separator + iCourseID;
-
-         File scoDataDir = new File( userDir );
-
-         // The course directory should not exist yet
-         if ( !scoDataDir.isDirectory() )
-         {                              
-            if ( _Debug )
-            {
-               System.out.println("User directory does not exist");
-            }
-            scoDataDir.mkdirs();
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("In RTEFileHandler user directory " + 
-                                  "already exists.");
-            }
-         }
-
          if ( _Debug )
          {
             System.out.println("In RTEFileHandler - scoID is " + iItemID);
          }
 
-         // Now create a SCODataManager object, initialize values, and 
-         // serialize to file for SCO
-         String scoDataPath = userDir + File.separator + iItemID + "__" 
-                                  + iNumAttempt;
-         SCODataManager scoData = new SCODataManager();
-         
-         //  Add a SCORM 2004 Data Model
-         scoData.addDM(DMFactory.DM_SCORM_2004);
+         String stateID = getStateID(iItemID, iNumAttempt);
+         LearnerStateStore store = LearnerStateStores.getStore();
 
-         //  Add a SCORM 2004 Nav Data Model
-         scoData.addDM(DMFactory.DM_SCORM_NAV);
+         // Create the state if and only if it doesn't already exist
+         if ( !store.exists(iUserID, iCourseID, stateID) )
+         {
+            // Now create a SCODataManager object, initialize values, and 
+            // store it for the SCO
+            SCODataManager scoData = new SCODataManager();
 
-         initSCOData(scoData, iUserID, iUserName, iCourseID, iDbID);
+            //  Add a SCORM 2004 Data Model
+            scoData.addDM(DMFactory.DM_SCORM_2004);
 
-         File scoDataFile = new File(scoDataPath);
+            //  Add a SCORM 2004 Nav Data Model
+            scoData.addDM(DMFactory.DM_SCORM_NAV);
 
-         // Create a new file if and only if it doesn't already exist
-         boolean mNoFileExists = scoDataFile.createNewFile();
+            initSCOData(scoData, iUserID, iUserName, iCourseID, iDbID);
 
-         //new file was created
-         if ( mNoFileExists )
-         {
-            // Write out the data to disk using serialization
-            FileOutputStream fos = new FileOutputStream(scoDataFile);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(scoData);
-            oos.close();
-            fos.close();
+            writeStateData(iUserID, iCourseID, stateID, scoData);
 
             if ( _Debug )
             {
@@ -180,6 +152,225 @@ public class RTEFileHandler
    }
 
 
+   /**
+    * Builds the ID under which the state of a SCO attempt is stored.
+    * 
+    * @param iItemID  The item's identifier
+    * 
+    * @param iNumAttempt  Number of the attempt on the item, or 
+    *        <code>null</code> if attempts are not tracked
+    * 
+    * @return The state ID
+    */
+   public static String getStateID(String iItemID, String iNumAttempt)
+   {
+      return ( iNumAttempt == null ) ? iItemID : iItemID + "__" + iNumAttempt;
+   }
+
+   /**
+    * Reads the state of a SCO attempt from the configured store.
+    * 
+    * @param iUserID  The Sample RTE's unique user identifier for a learner
+    * 
+    * @param iCourseID  The unique course identifier
+    * 
+    * @param iStateID  The ID of the SCO attempt's state
+    * 
+    * @return The SCO's data, or <code>null</code> if none has been stored
+    * 
+    * @throws IOException  Thrown if the state can not be read
+    * 
+    * @throws ClassNotFoundException  Thrown if the state can not be 
+    *         deserialized
+    */
+   public SCODataManager readStateData(String iUserID, String iCourseID, 
+                                       String iStateID) 
+      throws IOException, ClassNotFoundException
+   {
+      CommittedState state = readState(iUserID, iCourseID, iStateID);
+
+      return ( state == null ) ? null : state.getData();
+   }
+
+   /**
+    * Reads the current version of the state of a SCO attempt, from memory if
+    * it was used recently and otherwise from the configured store.
+    * 
+    * @param iUserID  The Sample RTE's unique user identifier for a learner
+    * 
+    * @param iCourseID  The unique course identifier
+    * 
+    * @param iStateID  The ID of the SCO attempt's state
+    * 
+    * @return The committed state, or <code>null</code> if none has been 
+    *         stored
+    * 
+    * @throws IOException  Thrown if the state can not be read
+    * 
+    * @throws ClassNotFoundException  Thrown if the state can not be 
+    *         deserialized
+    */
+   public CommittedState readState(String iUserID, String iCourseID, 
+                                   String iStateID) 
+      throws IOException, ClassNotFoundException
+   {
+      CommittedStateCache cache = CommittedStateCache.getInstance();
+      CommittedState state = cache.get(iUserID, iCourseID, iStateID);
+
+      if ( state != null )
+      {
+         return state;
+      }
+
+      byte[] data = null;
+      int phase = PhaseTimer.enter(PhaseTimer.FILE_IO);
+
+      try
+      {
+         data = LearnerStateStores.getStore().read(iUserID, iCourseID, 
+                                                   iStateID);
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+
+      if ( data == null )
+      {
+         return null;
+      }
+
+      phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+      try
+      {
+         if ( !CodecInput.isEncoded(data) )
+         {
+            // Written before the codec; keep it in the encoded form
+            data = SCODataManager.fromByteArray(data).toByteArray();
+         }
+
+         state = new CommittedState(SCODataManager.readVersion(data), data);
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+
+      cache.put(iUserID, iCourseID, iStateID, state);
+
+      return state;
+   }
+
+   /**
+    * Writes the state of a SCO attempt to the configured store as a new
+    * version.  The version is assigned to <code>iSCOData</code>.
+    * 
+    * @param iUserID  The Sample RTE's unique user identifier for a learner
+    * 
+    * @param iCourseID  The unique course identifier
+    * 
+    * @param iStateID  The ID of the SCO attempt's state
+    * 
+    * @param iSCOData  The SCO's data
+    * 
+    * @return The committed state
+    * 
+    * @throws IOException  Thrown if the state can not be written
+    */
+   public CommittedState writeStateData(String iUserID, String iCourseID, 
+                                        String iStateID, 
+                                        SCODataManager iSCOData) 
+      throws IOException
+   {
+      CommittedState state = prepareStateData(iUserID, iCourseID, iStateID, 
+                                              iSCOData);
+
+      writeState(iUserID, iCourseID, iStateID, state);
+      CommittedStateCache.getInstance().put(iUserID, iCourseID, iStateID, 
+                                            state);
+
+      return state;
+   }
+
+   /**
+    * Assigns the next version to the state of a SCO attempt and encodes it,
+    * without writing it.  The version is assigned to <code>iSCOData</code>.
+    * 
+    * @param iUserID  The Sample RTE's unique user identifier for a learner
+    * 
+    * @param iCourseID  The unique course identifier
+    * 
+    * @param iStateID  The ID of the SCO attempt's state
+    * 
+    * @param iSCOData  The SCO's data
+    * 
+    * @return The state to be committed
+    * 
+    * @throws IOException  Thrown if the state can not be encoded
+    */
+   public CommittedState prepareStateData(String iUserID, String iCourseID, 
+                                          String iStateID, 
+                                          SCODataManager iSCOData) 
+      throws IOException
+   {
+      CommittedState previous = 
+         CommittedStateCache.getInstance().get(iUserID, iCourseID, iStateID);
+      long version = iSCOData.getVersion();
+
+      if ( previous != null )
+      {
+         version = Math.max(version, previous.getVersion());
+      }
+
+      iSCOData.setVersion(CommittedState.nextVersion(version));
+
+      byte[] data = null;
+      int phase = PhaseTimer.enter(PhaseTimer.SERIALIZATION);
+
+      try
+      {
+         data = iSCOData.toByteArray();
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+
+      return new CommittedState(iSCOData.getVersion(), data);
+   }
+
+   /**
+    * Writes an already encoded state of a SCO attempt to the configured 
+    * store.
+    * 
+    * @param iUserID  The Sample RTE's unique user identifier for a learner
+    * 
+    * @param iCourseID  The unique course identifier
+    * 
+    * @param iStateID  The ID of the SCO attempt's state
+    * 
+    * @param iState  The state to write
+    * 
+    * @throws IOException  Thrown if the state can not be written
+    */
+   public void writeState(String iUserID, String iCourseID, String iStateID,
+                          CommittedState iState) 
+      throws IOException
+   {
+      int phase = PhaseTimer.enter(PhaseTimer.FILE_IO);
+
+      try
+      {
+         LearnerStateStores.getStore().write(iUserID, iCourseID, iStateID, 
+                                             iState.getEncoded());
+      }
+      finally
+      {
+         PhaseTimer.exit(phase);
+      }
+   }
+
    /**
     * This method deletes the course files for a student/course when a 
     * registration is removed.
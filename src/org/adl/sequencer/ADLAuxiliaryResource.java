@@ -28,6 +28,9 @@ package org.adl.sequencer;
 
 import org.adl.util.debug.DebugIndicator;
 import java.io.Serializable;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * <strong>Filename:</strong> ADLAuxiliaryResource.java<br><br>
@@ -65,6 +68,11 @@ public class ADLAuxiliaryResource implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * The type of the available auxillary resource.
     */
@@ -98,4 +106,42 @@ public class ADLAuxiliaryResource implements Serializable
       }
    }
 
+   /**
+    * Writes this auxiliary resource.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mType);
+      ioOut.writeString(mResourceID);
+      ioOut.writeString(mParameter);
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads an auxiliary resource.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The auxiliary resource.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static ADLAuxiliaryResource decode(CodecInput iIn) throws IOException
+   {
+      ADLAuxiliaryResource res = new ADLAuxiliaryResource();
+
+      iIn.beginRecord();
+      res.mType = iIn.readString();
+      res.mResourceID = iIn.readString();
+      res.mParameter = iIn.readString();
+      iIn.endRecord();
+
+      return res;
+   }
+
 }  // end ADLAuxiliaryResource
\ No newline at end of file
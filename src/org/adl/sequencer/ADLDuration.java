@@ -28,6 +28,9 @@ package org.adl.sequencer;
 import org.adl.util.debug.DebugIndicator;
 
 import java.io.Serializable;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * <strong>Filename:</strong> ADLDuration.java<br><br>
@@ -367,4 +370,45 @@ public class ADLDuration implements Serializable
 
       return relation;
    }
+
+   /**
+    * Writes a duration, which may be <code>null</code>.  A duration is a 
+    * single value, so it is written inline rather than as a record.
+    * 
+    * @param ioOut     The output.
+    * 
+    * @param iDuration The duration.
+    */
+   static void encode(CodecOutput ioOut, ADLDuration iDuration)
+   {
+      ioOut.writeBoolean(iDuration != null);
+
+      if ( iDuration != null )
+      {
+         ioOut.writeDouble(iDuration.mDuration);
+      }
+   }
+
+   /**
+    * Reads a duration written by <code>encode()</code>.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The duration, or <code>null</code>.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static ADLDuration decode(CodecInput iIn) throws IOException
+   {
+      ADLDuration duration = null;
+
+      if ( iIn.readBoolean() )
+      {
+         duration = new ADLDuration();
+         duration.mDuration = iIn.readDouble();
+      }
+
+      return duration;
+   }
+
 }  // end ADLDuration
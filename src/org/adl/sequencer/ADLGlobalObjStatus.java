@@ -0,0 +1,119 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+
+/**
+ * Encapsulation of the status of a global shared objective for one learner,
+ * as held in one row of the global objective DB.<br><br>
+ * 
+ * <strong>Filename:</strong> ADLGlobalObjStatus.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * Returned by <code>ADLSeqUtilities.getGlobalObj()</code>, so every status
+ * element of a global objective is read with one query.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the 
+ * SCORM 2004 4th Edition Sample RTE. <br>
+ * <br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * All fields are purposefully public to allow immediate access to known data
+ * elements.  Each element holds the value stored in the DB, or 
+ * <code>null</code> if none is stored.  Instances may be shared through the
+ * global objective read cache and must not be changed.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */
+public class ADLGlobalObjStatus 
+{
+
+   /**
+    * Identifier of the global shared objective.
+    */
+   public String mObjID = null;
+
+   /**
+    * Identifier of the learner.
+    */
+   public String mLearnerID = null;
+
+   /**
+    * Identifier of the objective's scope, or <code>null</code> if the
+    * objective is global to the system.
+    */
+   public String mScopeID = null;
+
+   /**
+    * The satisfied status of the objective.<br><br>
+    * Valid vocab: <code>unknown, satisfied, notSatisfied</code>
+    */
+   public String mSatisfied = null;
+
+   /**
+    * The normalized measure of the objective, or <code>unknown</code>.
+    */
+   public String mMeasure = null;
+
+   /**
+    * The raw score of the objective, or <code>unknown</code>.
+    */
+   public String mRawScore = null;
+
+   /**
+    * The minimum score of the objective, or <code>unknown</code>.
+    */
+   public String mMinScore = null;
+
+   /**
+    * The maximum score of the objective, or <code>unknown</code>.
+    */
+   public String mMaxScore = null;
+
+   /**
+    * The completion status of the objective.<br><br>
+    * Valid vocab: <code>unknown, completed, incomplete</code>
+    */
+   public String mCompletion = null;
+
+   /**
+    * The progress measure of the objective, or <code>unknown</code>.
+    */
+   public String mProgressMeasure = null;
+
+}  // end ADLGlobalObjStatus
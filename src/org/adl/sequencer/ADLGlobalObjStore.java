@@ -0,0 +1,808 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work.
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes.
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one.
+
+For any reuse or distribution, you must make clear to others the license terms of this work.
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative.
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.Vector;
+
+/**
+ * <strong>Filename:</strong> ADLGlobalObjStore.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Holds the global objectives of recently active learners in memory, so the
+ * status of a global objective is read with a hash lookup instead of a query
+ * of the global objective DB.  The store is divided into shards by learner
+ * ID, each with its own lock; all of a learner's global objectives are read
+ * with one query the first time any of them is needed.  Writes are either
+ * made to the DB before they are applied in memory (write-through), or
+ * applied in memory and written to the DB by a background flush no later
+ * than the configured flush lag (write-behind).<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * The global objective DB remains the durable copy and keeps its schema.
+ * Anything that changes the DB directly, such as the administrative edits
+ * made through <code>CourseService</code>, must first make the writes held
+ * by the store durable (<code>ADLSeqUtilities.flushGlobalObjs()</code>) and
+ * afterward drop the learner's objectives from the store
+ * (<code>ADLSeqUtilities.invalidateGlobalObjs()</code>).<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The least recently used learners of a shard are dropped once the shard
+ * holds more than its share of the configured maximum; a learner with
+ * writes not yet flushed is kept until they are.  Flushes are made one at a
+ * time, so a learner is never dropped while its writes are in flight.
+ * <br><br>
+ *
+ * <strong>Known Problems:</strong><br>
+ * In write-behind mode, writes made within the flush lag are lost if the
+ * process stops without <code>shutdown()</code> being called.<br><br>
+ *
+ * <strong>Side Effects:</strong><br>
+ * A learner's objectives are loaded while the lock of the learner's shard is
+ * held, so other learners of the same shard wait for the query.<br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition</li>
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class ADLGlobalObjStore
+{
+   /**
+    * The default number of shards.
+    */
+   public static final int DEFAULT_SHARDS = 16;
+
+   /**
+    * The default maximum number of learners held in memory.
+    */
+   public static final int DEFAULT_MAX_LEARNERS = 10000;
+
+   /**
+    * The default flush lag, in milliseconds; writes are made through to the
+    * DB.
+    */
+   public static final long DEFAULT_FLUSH_LAG = 0L;
+
+   /**
+    * The store shared by the sequencer, or <code>null</code> if global
+    * objectives are read from the DB.
+    */
+   private static ADLGlobalObjStore sStore = null;
+
+   /**
+    * The shards, each holding the learners whose IDs hash to it.
+    */
+   private Shard[] mShards = null;
+
+   /**
+    * The maximum number of learners held by each shard.
+    */
+   private int mMaxLearners = DEFAULT_MAX_LEARNERS;
+
+   /**
+    * The longest time, in milliseconds, a write is held before it is made to
+    * the DB, or zero if writes are made through.
+    */
+   private long mFlushLag = DEFAULT_FLUSH_LAG;
+
+   /**
+    * The background timer performing the write-behind flushes.
+    */
+   private Timer mFlushTimer = null;
+
+   /**
+    * Serializes the flushes, and dropping learners while none is in flight.
+    */
+   private final Object mFlushLock = new Object();
+
+   /**
+    * The number of reads answered from memory.
+    */
+   private long mHits = 0;
+
+   /**
+    * The number of learners whose objectives were read from the DB.
+    */
+   private long mLoads = 0;
+
+   /**
+    * The number of learners dropped to honor the size bound.
+    */
+   private long mEvictions = 0;
+
+   /**
+    * The number of learners dropped because the DB was changed directly.
+    */
+   private long mInvalidations = 0;
+
+   /**
+    * The number of objectives written to the DB.
+    */
+   private long mRowsWritten = 0;
+
+   /**
+    * The number of flushes that could not be written to the DB.
+    */
+   private long mFlushErrors = 0;
+
+   /**
+    * Configures the global objective store shared by the sequencer.  Any
+    * store already configured is flushed and replaced.
+    *
+    * @param iShards      The number of shards, or zero to read global
+    *                     objectives from the DB.
+    *
+    * @param iMaxLearners The maximum number of learners held in memory.
+    *
+    * @param iFlushLag    The longest time, in milliseconds, a write is held
+    *                     before it is made to the DB, or zero to make writes
+    *                     through.
+    */
+   public static synchronized void configure(int iShards,
+                                             int iMaxLearners,
+                                             long iFlushLag)
+   {
+      if ( sStore != null )
+      {
+         sStore.close();
+         sStore = null;
+      }
+
+      if ( iShards > 0 )
+      {
+         sStore = new ADLGlobalObjStore(iShards, iMaxLearners, iFlushLag);
+      }
+   }
+
+   /**
+    * Provides the global objective store shared by the sequencer.
+    *
+    * @return The store, or <code>null</code> if global objectives are read
+    *         from the DB.
+    */
+   public static synchronized ADLGlobalObjStore getStore()
+   {
+      return sStore;
+   }
+
+   /**
+    * Makes the writes held by the shared store durable and stops using it.
+    */
+   public static synchronized void shutdown()
+   {
+      if ( sStore != null )
+      {
+         sStore.close();
+         sStore = null;
+      }
+   }
+
+   /**
+    * Describes the shared store.
+    *
+    * @return The statistics, as space separated <code>name=value</code>
+    *         pairs.
+    */
+   public static synchronized String getStoreStatistics()
+   {
+      if ( sStore == null )
+      {
+         return "shards=0";
+      }
+
+      return sStore.getStatistics();
+   }
+
+   /**
+    * Initializes a global objective store.
+    *
+    * @param iShards      The number of shards.
+    *
+    * @param iMaxLearners The maximum number of learners held in memory.
+    *
+    * @param iFlushLag    The longest time, in milliseconds, a write is held
+    *                     before it is made to the DB, or zero to make writes
+    *                     through.
+    */
+   public ADLGlobalObjStore(int iShards, int iMaxLearners, long iFlushLag)
+   {
+      int shards = ( iShards > 0 ) ? iShards : DEFAULT_SHARDS;
+      int maxLearners = ( iMaxLearners > 0 ) ? iMaxLearners
+                                             : DEFAULT_MAX_LEARNERS;
+
+      mShards = new Shard[shards];
+
+      for ( int i = 0; i < shards; i++ )
+      {
+         mShards[i] = new Shard();
+      }
+
+      mMaxLearners = Math.max(1, ( maxLearners + shards - 1 ) / shards);
+      mFlushLag = ( iFlushLag > 0 ) ? iFlushLag : 0L;
+
+      if ( mFlushLag > 0 )
+      {
+         mFlushTimer = new Timer(true);
+         mFlushTimer.schedule(new TimerTask()
+         {
+            public void run()
+            {
+               flush(null);
+            }
+         }, mFlushLag, mFlushLag);
+      }
+   }
+
+   /**
+    * Indicates if writes are held in memory before they are made to the DB.
+    *
+    * @return <code>true</code> if writes are made by the background flush,
+    *         or <code>false</code> if they are made through.
+    */
+   public boolean isWriteBehind()
+   {
+      return mFlushLag > 0;
+   }
+
+   /**
+    * Retrieves the status associated with the global objective and the
+    * student, reading all of the learner's global objectives from the DB if
+    * they are not held in memory.
+    *
+    * @param iObjID     The ID identifying the global shared objective.
+    *
+    * @param iLearnerID The ID identifying the student.
+    *
+    * @param iScopeID   The identifier of the objective's scope.
+    *
+    * @return The status associated with the global objective, which must not
+    *         be changed, or <code>null</code> if it does not exist or can not
+    *         be read.
+    */
+   public ADLGlobalObjStatus get(String iObjID,
+                                 String iLearnerID,
+                                 String iScopeID)
+   {
+      if ( iObjID == null || iLearnerID == null )
+      {
+         return null;
+      }
+
+      Shard shard = getShard(iLearnerID);
+
+      synchronized ( shard )
+      {
+         Learner learner = (Learner)shard.mLearners.get(iLearnerID);
+
+         if ( learner != null )
+         {
+            synchronized ( this )
+            {
+               mHits++;
+            }
+         }
+         else
+         {
+            learner = load(shard, iLearnerID);
+
+            if ( learner == null )
+            {
+               return null;
+            }
+         }
+
+         return (ADLGlobalObjStatus)learner.mObjs.get(getKey(iObjID,
+                                                             iScopeID));
+      }
+   }
+
+   /**
+    * Writes values to global objectives, either to the DB and then to
+    * memory, or to memory only, to be made to the DB by the next flush.
+    *
+    * @param iPending The values written to each objective
+    *                 (<code>ADLSeqUtilities.PendingGlobalObj</code>).
+    */
+   void write(Collection iPending)
+   {
+      if ( !isWriteBehind() )
+      {
+         if ( ADLSeqUtilities.updateGlobalObjs(iPending) )
+         {
+            synchronized ( this )
+            {
+               mRowsWritten += iPending.size();
+            }
+
+            // Only learners already in memory are changed
+            Iterator it = iPending.iterator();
+
+            while ( it.hasNext() )
+            {
+               ADLSeqUtilities.PendingGlobalObj pending =
+                  (ADLSeqUtilities.PendingGlobalObj)it.next();
+               Shard shard = getShard(pending.mLearnerID);
+
+               synchronized ( shard )
+               {
+                  Learner learner =
+                     (Learner)shard.mLearners.get(pending.mLearnerID);
+
+                  if ( learner != null )
+                  {
+                     apply(learner, pending);
+                  }
+               }
+            }
+         }
+
+         return;
+      }
+
+      // Objectives of learners that can not be read are made through
+      Vector through = new Vector();
+      Iterator it = iPending.iterator();
+
+      while ( it.hasNext() )
+      {
+         ADLSeqUtilities.PendingGlobalObj pending =
+            (ADLSeqUtilities.PendingGlobalObj)it.next();
+         Shard shard = getShard(pending.mLearnerID);
+
+         synchronized ( shard )
+         {
+            Learner learner = (Learner)shard.mLearners.get(pending.mLearnerID);
+
+            if ( learner == null )
+            {
+               learner = load(shard, pending.mLearnerID);
+            }
+
+            if ( learner == null )
+            {
+               through.add(pending);
+            }
+            else if ( apply(learner, pending) )
+            {
+               String key = getKey(pending.mObjID, pending.mScopeID);
+               ADLSeqUtilities.PendingGlobalObj dirty =
+                  (ADLSeqUtilities.PendingGlobalObj)learner.mDirty.get(key);
+
+               if ( dirty == null )
+               {
+                  learner.mDirty.put(key, pending);
+               }
+               else
+               {
+                  dirty.mColumns.putAll(pending.mColumns);
+               }
+            }
+         }
+      }
+
+      if ( !through.isEmpty() && ADLSeqUtilities.updateGlobalObjs(through) )
+      {
+         synchronized ( this )
+         {
+            mRowsWritten += through.size();
+         }
+      }
+   }
+
+   /**
+    * Makes the writes held in memory for a learner, or for all learners, to
+    * the DB.
+    *
+    * @param iLearnerID The ID identifying the student, or <code>null</code>
+    *                   for all learners.
+    */
+   public void flush(String iLearnerID)
+   {
+      synchronized ( mFlushLock )
+      {
+         flushLocked(iLearnerID);
+      }
+   }
+
+   /**
+    * Drops the objectives of a learner, or of all learners, from memory after
+    * making the writes held for them to the DB.  Must be called when the DB
+    * is changed directly.
+    *
+    * @param iLearnerID The ID identifying the student, or <code>null</code>
+    *                   for all learners.
+    */
+   public void invalidate(String iLearnerID)
+   {
+      synchronized ( mFlushLock )
+      {
+         flushLocked(iLearnerID);
+
+         int dropped = 0;
+
+         for ( int i = 0; i < mShards.length; i++ )
+         {
+            Shard shard = mShards[i];
+
+            if ( iLearnerID != null && shard != getShard(iLearnerID) )
+            {
+               continue;
+            }
+
+            synchronized ( shard )
+            {
+               if ( iLearnerID == null )
+               {
+                  dropped += shard.mLearners.size();
+                  shard.mLearners.clear();
+               }
+               else if ( shard.mLearners.remove(iLearnerID) != null )
+               {
+                  dropped++;
+               }
+            }
+         }
+
+         synchronized ( this )
+         {
+            mInvalidations += dropped;
+         }
+      }
+   }
+
+   /**
+    * Describes this store.
+    *
+    * @return The statistics, as space separated <code>name=value</code>
+    *         pairs.
+    */
+   public String getStatistics()
+   {
+      int learners = 0;
+      int dirty = 0;
+
+      for ( int i = 0; i < mShards.length; i++ )
+      {
+         synchronized ( mShards[i] )
+         {
+            learners += mShards[i].mLearners.size();
+
+            Iterator it = mShards[i].mLearners.values().iterator();
+
+            while ( it.hasNext() )
+            {
+               dirty += ((Learner)it.next()).mDirty.size();
+            }
+         }
+      }
+
+      synchronized ( this )
+      {
+         return "shards=" + mShards.length +
+                " flushLag=" + mFlushLag +
+                " learners=" + learners +
+                " dirty=" + dirty +
+                " hits=" + mHits +
+                " loads=" + mLoads +
+                " evictions=" + mEvictions +
+                " invalidations=" + mInvalidations +
+                " rowsWritten=" + mRowsWritten +
+                " flushErrors=" + mFlushErrors;
+      }
+   }
+
+   /**
+    * Stops the background flush and makes the writes held to the DB.
+    */
+   private void close()
+   {
+      if ( mFlushTimer != null )
+      {
+         mFlushTimer.cancel();
+         mFlushTimer = null;
+      }
+
+      flush(null);
+   }
+
+   /**
+    * Makes the writes held in memory for a learner, or for all learners, to
+    * the DB.  The caller must hold <code>mFlushLock</code>.
+    *
+    * @param iLearnerID The ID identifying the student, or <code>null</code>
+    *                   for all learners.
+    */
+   private void flushLocked(String iLearnerID)
+   {
+      // Take the writes held, remembering whose they were
+      Vector pending = new Vector();
+      HashMap owners = new HashMap();
+
+      for ( int i = 0; i < mShards.length; i++ )
+      {
+         Shard shard = mShards[i];
+
+         if ( iLearnerID != null && shard != getShard(iLearnerID) )
+         {
+            continue;
+         }
+
+         synchronized ( shard )
+         {
+            Iterator it = shard.mLearners.values().iterator();
+
+            while ( it.hasNext() )
+            {
+               Learner learner = (Learner)it.next();
+
+               if ( learner.mDirty.isEmpty() ||
+                    ( iLearnerID != null &&
+                      !iLearnerID.equals(learner.mLearnerID) ) )
+               {
+                  continue;
+               }
+
+               pending.addAll(learner.mDirty.values());
+               owners.put(learner.mLearnerID, learner);
+
+               learner.mDirty = new LinkedHashMap();
+               learner.mFlushing = true;
+            }
+         }
+      }
+
+      if ( pending.isEmpty() )
+      {
+         return;
+      }
+
+      boolean success = ADLSeqUtilities.updateGlobalObjs(pending);
+
+      synchronized ( this )
+      {
+         if ( success )
+         {
+            mRowsWritten += pending.size();
+         }
+         else
+         {
+            mFlushErrors++;
+         }
+      }
+
+      for ( int i = 0; i < pending.size(); i++ )
+      {
+         ADLSeqUtilities.PendingGlobalObj obj =
+            (ADLSeqUtilities.PendingGlobalObj)pending.elementAt(i);
+         Learner learner = (Learner)owners.get(obj.mLearnerID);
+         Shard shard = getShard(obj.mLearnerID);
+
+         synchronized ( shard )
+         {
+            learner.mFlushing = false;
+
+            if ( success )
+            {
+               continue;
+            }
+
+            // Hold the writes again, unless they have been written since
+            String key = getKey(obj.mObjID, obj.mScopeID);
+            ADLSeqUtilities.PendingGlobalObj dirty =
+               (ADLSeqUtilities.PendingGlobalObj)learner.mDirty.get(key);
+
+            if ( dirty != null )
+            {
+               LinkedHashMap columns = new LinkedHashMap(obj.mColumns);
+               columns.putAll(dirty.mColumns);
+               dirty.mColumns = columns;
+            }
+            else
+            {
+               LinkedHashMap dirtyObjs = new LinkedHashMap();
+               dirtyObjs.put(key, obj);
+               dirtyObjs.putAll(learner.mDirty);
+               learner.mDirty = dirtyObjs;
+            }
+
+            // A learner dropped by the size bound must be held again
+            if ( shard.mLearners.get(learner.mLearnerID) == null )
+            {
+               shard.mLearners.put(learner.mLearnerID, learner);
+            }
+         }
+      }
+   }
+
+   /**
+    * Reads all of a learner's global objectives from the DB into a shard.
+    * The caller must hold the shard's lock.
+    *
+    * @param iShard     The shard the learner belongs to.
+    *
+    * @param iLearnerID The ID identifying the student.
+    *
+    * @return The learner's objectives, or <code>null</code> if they could
+    *         not be read.
+    */
+   private Learner load(Shard iShard, String iLearnerID)
+   {
+      Vector objs = ADLSeqUtilities.loadGlobalObjs(iLearnerID);
+
+      if ( objs == null )
+      {
+         return null;
+      }
+
+      Learner learner = new Learner();
+      learner.mLearnerID = iLearnerID;
+
+      for ( int i = 0; i < objs.size(); i++ )
+      {
+         ADLGlobalObjStatus obj = (ADLGlobalObjStatus)objs.elementAt(i);
+
+         learner.mObjs.put(getKey(obj.mObjID, obj.mScopeID), obj);
+      }
+
+      iShard.mLearners.put(iLearnerID, learner);
+
+      synchronized ( this )
+      {
+         mLoads++;
+      }
+
+      // Drop the least recently used learners with nothing to write
+      Iterator it = iShard.mLearners.values().iterator();
+      int evicted = 0;
+
+      while ( iShard.mLearners.size() > mMaxLearners && it.hasNext() )
+      {
+         Learner oldest = (Learner)it.next();
+
+         if ( oldest != learner && oldest.mDirty.isEmpty() &&
+              !oldest.mFlushing )
+         {
+            it.remove();
+            evicted++;
+         }
+      }
+
+      synchronized ( this )
+      {
+         mEvictions += evicted;
+      }
+
+      return learner;
+   }
+
+   /**
+    * Applies values written to an objective held in memory.  The caller must
+    * hold the lock of the learner's shard.
+    *
+    * @param iLearner The learner's objectives.
+    *
+    * @param iPending The values written.
+    *
+    * @return <code>true</code> if the objective exists, or
+    *         <code>false</code> if the write has no effect.
+    */
+   private boolean apply(Learner iLearner,
+                         ADLSeqUtilities.PendingGlobalObj iPending)
+   {
+      String key = getKey(iPending.mObjID, iPending.mScopeID);
+      ADLGlobalObjStatus obj = (ADLGlobalObjStatus)iLearner.mObjs.get(key);
+
+      if ( obj == null )
+      {
+         return false;
+      }
+
+      // Objectives handed out are never changed
+      iLearner.mObjs.put(key, iPending.applyTo(obj));
+
+      return true;
+   }
+
+   /**
+    * Provides the shard a learner belongs to.
+    *
+    * @param iLearnerID The ID identifying the student.
+    *
+    * @return The shard.
+    */
+   private Shard getShard(String iLearnerID)
+   {
+      int hash = iLearnerID.hashCode();
+
+      return mShards[( hash & 0x7fffffff ) % mShards.length];
+   }
+
+   /**
+    * Provides the key of an objective within a learner's objectives.
+    *
+    * @param iObjID   The ID identifying the global shared objective.
+    *
+    * @param iScopeID The identifier of the objective's scope.
+    *
+    * @return The key.
+    */
+   private static String getKey(String iObjID, String iScopeID)
+   {
+      return iObjID + "\u0000" + ( ( iScopeID == null ) ? "" : iScopeID );
+   }
+
+   /**
+    * The learners whose IDs hash to one shard.
+    */
+   private static class Shard
+   {
+      /**
+       * The learners held (<code>Learner</code>), keyed by learner ID, in
+       * least recently used order.
+       */
+      Map mLearners = new LinkedHashMap(16, 0.75f, true);
+   }
+
+   /**
+    * The global objectives of one learner held in memory.
+    */
+   private static class Learner
+   {
+      /**
+       * The ID identifying the student.
+       */
+      String mLearnerID = null;
+
+      /**
+       * The learner's objectives (<code>ADLGlobalObjStatus</code>), keyed by
+       * objective and scope ID.
+       */
+      HashMap mObjs = new HashMap();
+
+      /**
+       * The writes not yet made to the DB
+       * (<code>ADLSeqUtilities.PendingGlobalObj</code>), keyed like
+       * <code>mObjs</code>, in the order first written.
+       */
+      LinkedHashMap mDirty = new LinkedHashMap();
+
+      /**
+       * Indicates the learner's writes are being made to the DB.
+       */
+      boolean mFlushing = false;
+   }
+
+}  // end ADLGlobalObjStore
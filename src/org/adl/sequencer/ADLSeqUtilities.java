@@ -31,7 +31,11 @@ import org.adl.util.decode.decodeHandler;
 
 import org.adl.samplerte.util.LMSDBHandler;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Vector;
 
 import java.io.File;
@@ -42,6 +46,7 @@ import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -79,6 +84,157 @@ public class ADLSeqUtilities
    */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The number of learners whose global objectives or course status 
+    * records are created in one transaction.
+    */
+   public static final int REGISTRATION_BATCH_SIZE = 500;
+
+   /**
+    * The generation of the most recent change this process made to any
+    * learner's global objectives.
+    */
+   private static long sGlobalObjGeneration = 0;
+
+   /**
+    * The generation of the most recent change to all learners' global 
+    * objectives at once.
+    */
+   private static long sAllGlobalObjsChanged = 0;
+
+   /**
+    * The generation of the most recent change to each learner's global
+    * objectives, keyed by learner ID.
+    */
+   private static HashMap sGlobalObjsChanged = new HashMap();
+
+   /**
+    * The global objectives read by the current thread during the request it
+    * is processing (<code>GlobalObjReads</code>), or <code>null</code> if the
+    * thread is not processing a request.
+    */
+   private static final ThreadLocal sGlobalObjReads = new ThreadLocal();
+
+   /**
+    * The global objective writes the current thread is holding until the end
+    * of its unit of work (<code>GlobalObjWrites</code>), or <code>null</code>
+    * if the thread is not in a unit of work.
+    */
+   private static final ThreadLocal sGlobalObjWrites = new ThreadLocal();
+
+   /**
+    * The number of global objective writes held for the end of a unit of 
+    * work.
+    */
+   private static long sGlobalObjWritesBuffered = 0;
+
+   /**
+    * The number of global objective rows updated when units of work ended.
+    */
+   private static long sGlobalObjRowsFlushed = 0;
+
+   /**
+    * The number of transactions that updated global objective rows when 
+    * units of work ended.
+    */
+   private static long sGlobalObjFlushes = 0;
+
+   /**
+    * The number of global objectives read from the DB.
+    */
+   private static long sGlobalObjQueries = 0;
+
+   /**
+    * The number of global objective reads answered by the read cache.
+    */
+   private static long sGlobalObjHits = 0;
+
+   /**
+    * Retrieves the generation of a learner's global objectives.  The 
+    * generation increases whenever this process changes any of the learner's
+    * global objectives, so anything derived from them stays valid for as long
+    * as the generation is unchanged.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @return The generation of the learner's global objectives.
+    */
+   public static synchronized long getGlobalObjGeneration(String iLearnerID)
+   {
+      Long changed = (Long)sGlobalObjsChanged.get(iLearnerID);
+
+      if ( changed == null )
+      {
+         return sAllGlobalObjsChanged;
+      }
+
+      return Math.max(changed.longValue(), sAllGlobalObjsChanged);
+   }
+
+   /**
+    * Records a change to a learner's global objectives.  Must be called by
+    * anything that changes the global objective DB outside of this class.
+    * 
+    * @param iLearnerID The ID identifying the student, or <code>null</code> 
+    *                   if the global objectives of all learners changed.
+    */
+   public static synchronized void globalObjsChanged(String iLearnerID)
+   {
+      sGlobalObjGeneration++;
+
+      if ( iLearnerID == null )
+      {
+         sAllGlobalObjsChanged = sGlobalObjGeneration;
+      }
+      else
+      {
+         sGlobalObjsChanged.put(iLearnerID, new Long(sGlobalObjGeneration));
+      }
+   }
+
+   /**
+    * Makes the global objective writes not yet made to the global objective
+    * DB, those of the current thread's unit of work and those held by the
+    * global objective store (<code>ADLGlobalObjStore</code>), to the DB.
+    * Must be called by anything that reads or changes the global objective
+    * DB outside of this class.
+    * 
+    * @param iLearnerID The ID identifying the student, or <code>null</code> 
+    *                   for all learners.
+    */
+   public static void flushGlobalObjs(String iLearnerID)
+   {
+      flushGlobalObjWrites();
+
+      ADLGlobalObjStore store = ADLGlobalObjStore.getStore();
+
+      if ( store != null )
+      {
+         store.flush(iLearnerID);
+      }
+   }
+
+   /**
+    * Records a change made to a learner's global objectives directly in the
+    * global objective DB, so they are read from the DB again.  Must be called
+    * by anything that changes the global objective DB outside of this class,
+    * after calling <code>flushGlobalObjs()</code> and making the change.
+    * 
+    * @param iLearnerID The ID identifying the student, or <code>null</code> 
+    *                   if the global objectives of all learners changed.
+    */
+   public static void invalidateGlobalObjs(String iLearnerID)
+   {
+      ADLGlobalObjStore store = ADLGlobalObjStore.getStore();
+
+      if ( store != null )
+      {
+         store.invalidate(iLearnerID);
+      }
+
+      globalObjsChanged(iLearnerID);
+   }
+
    /**
     * Initializes an activity tree (<code>SeqActivityTree</code>) from the
     * contents of a content package.<br><br>
@@ -204,133 +360,106 @@ public class ADLSeqUtilities
    public static void createGlobalObjs(String iLearnerID,
                                        String iScopeID,
                                        Vector iObjList)
+   {
+      Vector learners = new Vector();
+      learners.add(iLearnerID);
+
+      createGlobalObjs(learners, iScopeID, iObjList);
+   }
+
+   /**
+    * This method ensures that global objective information exists for a set of
+    * referenced global objectives, for each of a set of students.  The 
+    * objectives each student already has are read with one query, and the
+    * missing ones are inserted in batches, in one transaction for every
+    * <code>REGISTRATION_BATCH_SIZE</code> students.
+    * 
+    * @param iLearnerIDs The identifiers of the students being tracked.
+    * 
+    * @param iScopeID    The identifier of the objective's scope.
+    * 
+    * @param iObjList    A list of global objective IDs.
+    */
+   public static void createGlobalObjs(Vector iLearnerIDs,
+                                       String iScopeID,
+                                       Vector iObjList)
    {
       if ( _Debug )
       {
          System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
                             "createGlobalObjs");
-         System.out.println("  ::-->  " + iLearnerID);
+         System.out.println("  ::-->  " + iLearnerIDs);
          System.out.println("  ::-->  " + iScopeID);
       }
 
+      String scopeID = ( iScopeID == null ) ? "" : iScopeID;
+
+      // Writes not yet made must be made first
+      for ( int i = 0; iLearnerIDs != null && i < iLearnerIDs.size(); i++ )
+      {
+         if ( iLearnerIDs.elementAt(i) != null )
+         {
+            flushGlobalObjs((String)iLearnerIDs.elementAt(i));
+         }
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         boolean autoCommit = true;
+
+         try
          {
-            if ( iObjList != null )
+            if ( iLearnerIDs != null )
             {
-               try
+               if ( iObjList != null )
                {
-                  PreparedStatement stmtCheckRecord = null;
+                  try
+                  {
+                     autoCommit = conn.getAutoCommit();
+                     conn.setAutoCommit(false);
 
-                  // Create the SQL string, convert it to a prepared stat.
-                  String sqlCheckRecord = "SELECT * FROM Objectives WHERE " +
-                                          "objID = ? AND " + 
-                                          "learnerID = ? AND scopeID = ?";
+                     // Commit each batch of students
+                     for ( int start = 0; start < iLearnerIDs.size(); 
+                           start += REGISTRATION_BATCH_SIZE )
+                     {
+                        int end = Math.min(iLearnerIDs.size(), 
+                                           start + REGISTRATION_BATCH_SIZE);
 
-                  stmtCheckRecord = conn.prepareStatement( sqlCheckRecord );
-                  ResultSet objRS = null;
+                        addGlobalObjs(conn, 
+                                      new Vector(iLearnerIDs.subList(start, 
+                                                                     end)),
+                                      scopeID, iObjList);
 
-                  for ( int i = 0; i < iObjList.size(); i++ )
+                        conn.commit();
+                     }
+                  }
+                  catch ( Exception e )
                   {
-
-                     String objID = 
-                        decodeHandler.encodeObjectiveID((String)iObjList.elementAt(i));
-
                      if ( _Debug )
                      {
-                        System.out.println("  ::--> Checking for objective " +
-                                           "--> " + iLearnerID +
-                                           " [" + iScopeID + "]" +
-                                           " // " + objID);
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
                      }
 
-                     synchronized(stmtCheckRecord)
+                     try
                      {
-                        stmtCheckRecord.setString(1, objID);
-                        stmtCheckRecord.setString(2, iLearnerID);
-
-                        if ( iScopeID == null )
-                        {
-                           stmtCheckRecord.setString(3, "");     
-                        }
-                        else
-                        {
-                           stmtCheckRecord.setString(3, iScopeID);
-                        }
-
-                        objRS = stmtCheckRecord.executeQuery();
+                        conn.rollback();
                      }
-
-                     PreparedStatement stmtCreateRecord = null;
-
-                     // the objective does not exist, add it
-                     if ( !objRS.next() )
+                     catch ( SQLException se )
                      {
-
-                        if ( _Debug )
-                        {
-                           System.out.println("  ::--> Creating objective " +
-                                              "--> " + iLearnerID +
-                                              " [" + iScopeID + "]" +
-                                              " // " + objID);
-                        }
-
-                        // Create the SQL string, 
-                        //   convert it to a prepared statement
-                        String sqlCreateRecord = "INSERT INTO Objectives " +
-                        "(objID, learnerID, scopeID, satisfied, measure, " +
-                        "rawscore, minscore, maxscore, completion, progressmeasure) " +
-                        "VALUES (?, ?, ? ,?, ?, ?, ?, ?, ?, ?)";
-
-                        stmtCreateRecord =
-                        conn.prepareStatement(sqlCreateRecord);
-
-                        // Insert values into the prepared statement and 
-                        // execute the query.
-                        synchronized(stmtCreateRecord)
-                        {
-                           stmtCreateRecord.setString(1, objID);
-                           stmtCreateRecord.setString(2, iLearnerID);
-
-                           if ( iScopeID == null )
-                           {
-                              stmtCreateRecord.setString(3, "");
-                           }
-                           else
-                           {
-                              stmtCreateRecord.setString(3, iScopeID);
-                           }
-
-                           stmtCreateRecord.setString(4, "unknown");
-                           stmtCreateRecord.setString(5, "unknown");
-                           stmtCreateRecord.setString(6, "unknown");
-                           stmtCreateRecord.setString(7, "unknown");
-                           stmtCreateRecord.setString(8, "unknown");
-                           stmtCreateRecord.setString(9, "unknown");
-                           stmtCreateRecord.setString(10, "unknown");
-
-                           stmtCreateRecord.executeUpdate();
-                        }
-
-                        // Close the prepared statement
-                        stmtCreateRecord.close();
+                        // The connection is reset when it is returned to the
+                        // pool
                      }
                   }
-
-                  // Close the result set and prepared statement
-                  objRS.close();
-                  stmtCheckRecord.close();
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL Objective List");
                   }
                }
             }
@@ -338,16 +467,22 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL Objective List");
+                  System.out.println("  ::--> ERROR: NULL StudentID");
                }
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
+            try
+            {
+               conn.setAutoCommit(autoCommit);
+            }
+            catch ( SQLException se )
             {
-               System.out.println("  ::--> ERROR: NULL StudentID");
+               // The connection is reset when it is returned to the pool
             }
+
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -363,6 +498,169 @@ public class ADLSeqUtilities
          System.out.println("  :: ADLSeqUtilities  --> END   - " +
                             "createGlobalObjs");
       }
+
+      for ( int i = 0; iLearnerIDs != null && i < iLearnerIDs.size(); i++ )
+      {
+         if ( iLearnerIDs.elementAt(i) != null )
+         {
+            invalidateGlobalObjs((String)iLearnerIDs.elementAt(i));
+         }
+      }
+   }
+
+   /**
+    * Inserts the global objectives each of a set of students does not have
+    * yet, as part of the current transaction of a connection to the global 
+    * objective DB.  The caller commits the transaction, and must make any
+    * writes not yet made (<code>flushGlobalObjs()</code>) before and 
+    * invalidate the cached objectives (<code>invalidateGlobalObjs()</code>)
+    * after.
+    * 
+    * @param iConn       The connection to the global objective DB.
+    * 
+    * @param iLearnerIDs The identifiers of the students being tracked.
+    * 
+    * @param iScopeID    The identifier of the objective's scope, or 
+    *                    <code>null</code>.
+    * 
+    * @param iObjList    A list of global objective IDs.
+    * 
+    * @throws SQLException Thrown if the objectives can not be read or 
+    *                      inserted.
+    */
+   public static void addGlobalObjs(Connection iConn,
+                                    Vector iLearnerIDs,
+                                    String iScopeID,
+                                    Vector iObjList) throws SQLException
+   {
+      String scopeID = ( iScopeID == null ) ? "" : iScopeID;
+
+      // Create the SQL strings, convert them to prepared stats.
+      String sqlSelectObjs = "SELECT objID FROM Objectives " + 
+                             "WHERE learnerID = ? AND " +
+                             "scopeID = ?";
+
+      String sqlCreateRecord = "INSERT INTO Objectives " +
+      "(objID, learnerID, scopeID, satisfied, measure, " +
+      "rawscore, minscore, maxscore, completion, progressmeasure) " +
+      "VALUES (?, ?, ? ,?, ?, ?, ?, ?, ?, ?)";
+
+      PreparedStatement stmtSelectObjs = iConn.prepareStatement(sqlSelectObjs);
+      PreparedStatement stmtCreateRecord = 
+         iConn.prepareStatement(sqlCreateRecord);
+
+      try
+      {
+         int created = 0;
+
+         for ( int i = 0; i < iLearnerIDs.size(); i++ )
+         {
+            String learnerID = (String)iLearnerIDs.elementAt(i);
+
+            if ( learnerID == null )
+            {
+               if ( _Debug )
+               {
+                  System.out.println("  ::--> ERROR: NULL StudentID");
+               }
+            }
+            else
+            {
+               created += addGlobalObjs(stmtSelectObjs, stmtCreateRecord,
+                                        learnerID, scopeID, iObjList);
+            }
+         }
+
+         if ( created > 0 )
+         {
+            stmtCreateRecord.executeBatch();
+         }
+      }
+      finally
+      {
+         // Close the prepared statements
+         stmtSelectObjs.close();
+         stmtCreateRecord.close();
+      }
+   }
+
+   /**
+    * Adds the global objectives a student does not have yet to a batch of
+    * inserts.
+    * 
+    * @param iSelectObjs   The statement reading a student's objectives in a
+    *                      scope.
+    * 
+    * @param iCreateRecord The batch of inserts.
+    * 
+    * @param iLearnerID    The identifier of the student being tracked.
+    * 
+    * @param iScopeID      The identifier of the objective's scope, or an 
+    *                      empty string.
+    * 
+    * @param iObjList      A list of global objective IDs.
+    * 
+    * @return The number of objectives added to the batch.
+    * 
+    * @throws SQLException Thrown if the student's objectives can not be 
+    *                      read.
+    */
+   private static int addGlobalObjs(PreparedStatement iSelectObjs,
+                                    PreparedStatement iCreateRecord,
+                                    String iLearnerID,
+                                    String iScopeID,
+                                    Vector iObjList) throws SQLException
+   {
+      int created = 0;
+
+      // Find the objectives the student already has
+      HashSet existing = new HashSet();
+
+      iSelectObjs.setString(1, iLearnerID);
+      iSelectObjs.setString(2, iScopeID);
+
+      ResultSet objRS = iSelectObjs.executeQuery();
+
+      while ( objRS.next() )
+      {
+         existing.add(objRS.getString("objID"));
+      }
+
+      objRS.close();
+
+      for ( int i = 0; i < iObjList.size(); i++ )
+      {
+         String objID = 
+            decodeHandler.encodeObjectiveID((String)iObjList.elementAt(i));
+
+         // the objective does not exist, add it
+         if ( existing.add(objID) )
+         {
+            if ( _Debug )
+            {
+               System.out.println("  ::--> Creating objective " +
+                                  "--> " + iLearnerID +
+                                  " [" + iScopeID + "]" +
+                                  " // " + objID);
+            }
+
+            iCreateRecord.setString(1, objID);
+            iCreateRecord.setString(2, iLearnerID);
+            iCreateRecord.setString(3, iScopeID);
+            iCreateRecord.setString(4, "unknown");
+            iCreateRecord.setString(5, "unknown");
+            iCreateRecord.setString(6, "unknown");
+            iCreateRecord.setString(7, "unknown");
+            iCreateRecord.setString(8, "unknown");
+            iCreateRecord.setString(9, "unknown");
+            iCreateRecord.setString(10, "unknown");
+
+            iCreateRecord.addBatch();
+            created++;
+         }
+      }
+
+      return created;
    }
 
    /**
@@ -385,45 +683,48 @@ public class ADLSeqUtilities
                             "deleteGlobalObjs");
       }
 
+      // Writes not yet made must be made first
+      flushGlobalObjs(iLearnerID);
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         try
          {
-            if ( iObjList != null )
+            if ( iLearnerID != null )
             {
-               try
+               if ( iObjList != null )
                {
-                  PreparedStatement stmtDeleteRecord = null;
+                  try
+                  {
+                     PreparedStatement stmtDeleteRecord = null;
 
-                  // Create the SQL string, convert it to a prepared statement. 
-                  String sqlDeleteRecord = "DELETE FROM Objectives " +
-                                           "WHERE objID = ? AND " + 
-                                           "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string, convert it to a prepared statement. 
+                     String sqlDeleteRecord = "DELETE FROM Objectives " +
+                                              "WHERE objID = ? AND " + 
+                                              "learnerID = ? AND scopeID = ?";
 
-                  stmtDeleteRecord = conn.prepareStatement(sqlDeleteRecord);
+                     stmtDeleteRecord = conn.prepareStatement(sqlDeleteRecord);
 
 
-                  for ( int i = 0; i < iObjList.size(); i++ )
-                  {
+                     for ( int i = 0; i < iObjList.size(); i++ )
+                     {
 
-                     String objID = 
-                        decodeHandler.encodeObjectiveID((String)iObjList.elementAt(i));
+                        String objID = 
+                           decodeHandler.encodeObjectiveID((String)iObjList.elementAt(i));
 
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> Attempting to delete " +
-                                           "record for --> " + iLearnerID +
-                                           " [" + iScopeID + "]" +
-                                           " // " + objID);
-                     }
+                        if ( _Debug )
+                        {
+                           System.out.println("  ::--> Attempting to delete " +
+                                              "record for --> " + iLearnerID +
+                                              " [" + iScopeID + "]" +
+                                              " // " + objID);
+                        }
 
-                     // Insert values into the prepared statement and 
-                     // execute the query.
-                     synchronized(stmtDeleteRecord)
-                     {
+                        // Insert values into the prepared statement and 
+                        // execute the query.
                         stmtDeleteRecord.setString(1, objID);
                         stmtDeleteRecord.setString(2, iLearnerID);
 
@@ -438,34 +739,38 @@ public class ADLSeqUtilities
 
                         stmtDeleteRecord.executeUpdate();
                      }
-                  }
 
-                  // Close the prepared statement
-                  stmtDeleteRecord.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     // Close the prepared statement
+                     stmtDeleteRecord.close();
                   }
-               }
-            }
-            else
-            {
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
+                  }
+               }
+               else
+               {
+                  if ( _Debug )
+                  {
+                     System.out.println("  ::--> ERROR: NULL objective list");
+                  }
+               }
+            }
+            else
+            {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL objective list");
+                  System.out.println("  ::--> ERROR: NULL StudentID");
                }
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL StudentID");
-            }
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -481,6 +786,8 @@ public class ADLSeqUtilities
          System.out.println("  :: ADLSeqUtilities  --> END   - " +
                             "deleteGlobalObjs");
       }
+
+      invalidateGlobalObjs(iLearnerID);
    }
 
    /**
@@ -504,49 +811,52 @@ public class ADLSeqUtilities
                             "clearGlobalObjs");
       }
 
+      // Writes not yet made must be made first
+      flushGlobalObjs(iLearnerID);
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         try
          {
-            if ( iObjList != null )
+            if ( iLearnerID != null )
             {
-
-               try
+               if ( iObjList != null )
                {
-                  PreparedStatement stmtClearRecord = null;
-
-                  // Create the SQL string, convert it to a prepared statement. 
-                  String sqlClearRecord = "UPDATE Objectives " +
-                                          "SET satisfied = ?, measure = ?, " +
-                                          " rawscore = ?, minscore = ?, " +
-                                          " maxscore = ?, completion = ?, " +
-                                          " progressmeasure = ? " +
-                                          "WHERE objID = ? AND " +  
-                                          "learnerID = ? AND scopeID = ?";
 
-                  stmtClearRecord = conn.prepareStatement(sqlClearRecord);
-
-                  for ( int i = 0; i < iObjList.size(); i++ )
+                  try
                   {
+                     PreparedStatement stmtClearRecord = null;
 
-                     String objID = 
-                        decodeHandler.encodeObjectiveID((String)iObjList.elementAt(i));
+                     // Create the SQL string, convert it to a prepared statement. 
+                     String sqlClearRecord = "UPDATE Objectives " +
+                                             "SET satisfied = ?, measure = ?, " +
+                                             " rawscore = ?, minscore = ?, " +
+                                             " maxscore = ?, completion = ?, " +
+                                             " progressmeasure = ? " +
+                                             "WHERE objID = ? AND " +  
+                                             "learnerID = ? AND scopeID = ?";
 
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> Attempting to clear " +
-                                           "record for --> " + iLearnerID +
-                                           " [" + iScopeID + "]" +
-                                           " // " + objID);
-                     }
+                     stmtClearRecord = conn.prepareStatement(sqlClearRecord);
 
-                     // Insert values into the prepared statement and execute 
-                     // the query.
-                     synchronized(stmtClearRecord)
+                     for ( int i = 0; i < iObjList.size(); i++ )
                      {
+
+                        String objID = 
+                           decodeHandler.encodeObjectiveID((String)iObjList.elementAt(i));
+
+                        if ( _Debug )
+                        {
+                           System.out.println("  ::--> Attempting to clear " +
+                                              "record for --> " + iLearnerID +
+                                              " [" + iScopeID + "]" +
+                                              " // " + objID);
+                        }
+
+                        // Insert values into the prepared statement and execute 
+                        // the query.
                         stmtClearRecord.setString(1, "unknown");
                         stmtClearRecord.setString(2, "unknown");
                         stmtClearRecord.setString(3, "unknown");
@@ -568,17 +878,24 @@ public class ADLSeqUtilities
 
                         stmtClearRecord.executeUpdate();
                      }
-                  }
 
-                  // Close the prepared statement.
-                  stmtClearRecord.close();
+                     // Close the prepared statement.
+                     stmtClearRecord.close();
+                  }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL objectives list");
                   }
                }
             }
@@ -586,16 +903,13 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL objectives list");
+                  System.out.println("  ::--> ERROR: NULL learnerID");
                }
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL learnerID");
-            }
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -612,11 +926,120 @@ public class ADLSeqUtilities
          System.out.println("  :: ADLSeqUtilities  --> END   - " +
                             "clearGlobalObjs");
       }
+
+      invalidateGlobalObjs(iLearnerID);
    }
 
    /**
-    * Retrieves the satisfied status associated with the global objective and
-    * the student.
+    * Starts caching the global objectives read by the current thread, until
+    * the matching call to <code>endGlobalObjReads()</code>.  Calls may be
+    * nested; the cache lives until the outermost one ends.  Cached objectives
+    * of a learner are read again once the learner's global objectives change
+    * (see <code>getGlobalObjGeneration()</code>), so writes made through this
+    * class are always seen.
+    */
+   public static void beginGlobalObjReads()
+   {
+      GlobalObjReads reads = (GlobalObjReads)sGlobalObjReads.get();
+
+      if ( reads == null )
+      {
+         reads = new GlobalObjReads();
+         sGlobalObjReads.set(reads);
+      }
+
+      reads.mDepth++;
+   }
+
+   /**
+    * Ends a call to <code>beginGlobalObjReads()</code>, discarding the 
+    * cached global objectives if it is the outermost one.
+    */
+   public static void endGlobalObjReads()
+   {
+      GlobalObjReads reads = (GlobalObjReads)sGlobalObjReads.get();
+
+      if ( reads != null )
+      {
+         reads.mDepth--;
+
+         if ( reads.mDepth <= 0 )
+         {
+            sGlobalObjReads.set(null);
+         }
+      }
+   }
+
+   /**
+    * Describes the global objective reads since the process started.
+    * 
+    * @return The statistics, as space separated <code>name=value</code>
+    *         pairs.
+    */
+   public static synchronized String getGlobalObjReadStatistics()
+   {
+      return "queries=" + sGlobalObjQueries + " hits=" + sGlobalObjHits;
+   }
+
+   /**
+    * Starts a unit of work on the global objective DB for the current 
+    * thread, until the matching call to <code>endGlobalObjWrites()</code>.
+    * Calls may be nested; the unit ends with the outermost one.  Within a
+    * unit of work, the <code>setGlobalObj</code> methods only record the 
+    * value written, and the values written to each objective are made with
+    * one update, in one transaction, when the unit ends.  Reads on the same
+    * thread see the recorded values.
+    */
+   public static void beginGlobalObjWrites()
+   {
+      GlobalObjWrites writes = (GlobalObjWrites)sGlobalObjWrites.get();
+
+      if ( writes == null )
+      {
+         writes = new GlobalObjWrites();
+         sGlobalObjWrites.set(writes);
+      }
+
+      writes.mDepth++;
+   }
+
+   /**
+    * Ends a call to <code>beginGlobalObjWrites()</code>, making the writes
+    * recorded if it is the outermost one.
+    */
+   public static void endGlobalObjWrites()
+   {
+      GlobalObjWrites writes = (GlobalObjWrites)sGlobalObjWrites.get();
+
+      if ( writes != null )
+      {
+         writes.mDepth--;
+
+         if ( writes.mDepth <= 0 )
+         {
+            flushGlobalObjWrites();
+            sGlobalObjWrites.set(null);
+         }
+      }
+   }
+
+   /**
+    * Describes the global objective writes made at the end of units of work
+    * since the process started.
+    * 
+    * @return The statistics, as space separated <code>name=value</code>
+    *         pairs.
+    */
+   public static synchronized String getGlobalObjWriteStatistics()
+   {
+      return "buffered=" + sGlobalObjWritesBuffered + 
+             " rows=" + sGlobalObjRowsFlushed +
+             " transactions=" + sGlobalObjFlushes;
+   }
+
+   /**
+    * Records a value written to a global objective, if the current thread is
+    * in a unit of work.
     * 
     * @param iObjID     The ID identifying the global shared objective.
     * 
@@ -624,184 +1047,157 @@ public class ADLSeqUtilities
     * 
     * @param iScopeID   The identifier of the objective's scope.
     * 
-    * @return The satisfied status associated with the global objective,
-    *         or <code>null</code> if either the obj or learner ID is invalid.
+    * @param iColumn    The column of the <code>Objectives</code> table 
+    *                   written.
+    * 
+    * @param iValue     The value written.
+    * 
+    * @return <code>true</code> if the write was recorded, or 
+    *         <code>false</code> if it must be made now.  Without a unit of
+    *         work, writes are made at once through the global objective
+    *         store, if one is configured.
     */
-   public static String getGlobalObjSatisfied(String iObjID,
-                                              String iLearnerID,
-                                              String iScopeID)
+   private static boolean bufferGlobalObjWrite(String iObjID, 
+                                               String iLearnerID,
+                                               String iScopeID,
+                                               String iColumn,
+                                               String iValue)
    {
-      if ( _Debug )
+      if ( iObjID == null || iLearnerID == null )
       {
-         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjSatisfied");
-         System.out.println("  ::--> " + iObjID);
-         System.out.println("  ::--> " + iLearnerID);
-         System.out.println("  ::--> " + iScopeID);
+         return false;
       }
 
-      String satisfiedStatus = null;
-
-      // Get a connection to the global objective DB
-      Connection conn = LMSDBHandler.getConnection();
+      GlobalObjWrites writes = (GlobalObjWrites)sGlobalObjWrites.get();
 
-      if ( conn != null )
+      if ( writes == null )
       {
-         if ( iLearnerID != null )
+         if ( ADLGlobalObjStore.getStore() == null )
          {
-            if ( iObjID != null )
-            {
+            return false;
+         }
 
-               try
-               {
-                  PreparedStatement stmtSelectSatisfied= null;
-                  ResultSet objRS = null;
+         // Writes kept in memory are always made through the store
+         beginGlobalObjWrites();
 
-                  // Create the SQL string, convert it to a prepared statement.
-                  String sqlSelectSatisfied = "SELECT satisfied FROM " + 
-                                              "Objectives WHERE " +
-                                              "objID = ? AND " + 
-                                              "learnerID = ? AND scopeID = ?";
+         try
+         {
+            return bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, 
+                                        iColumn, iValue);
+         }
+         finally
+         {
+            endGlobalObjWrites();
+         }
+      }
 
-                  stmtSelectSatisfied = 
-                  conn.prepareStatement(sqlSelectSatisfied);
+      String key = iObjID + "\u0000" + iLearnerID + "\u0000" + 
+                   ( ( iScopeID == null ) ? "" : iScopeID );
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Insert values into the prepared statement 
-                  //  and execute the query.
-                  synchronized(stmtSelectSatisfied)
-                  {
-                     stmtSelectSatisfied.setString(1, objID);
-                     stmtSelectSatisfied.setString(2, iLearnerID);
+      PendingGlobalObj pending = (PendingGlobalObj)writes.mObjs.get(key);
 
-                     if ( iScopeID == null )
-                     {
-                        stmtSelectSatisfied.setString(3, ""); 
-                     }
-                     else
-                     {
-                        stmtSelectSatisfied.setString(3, iScopeID);
-                     }
+      if ( pending == null )
+      {
+         pending = new PendingGlobalObj();
+         pending.mObjID = iObjID;
+         pending.mLearnerID = iLearnerID;
+         pending.mScopeID = ( iScopeID == null ) ? "" : iScopeID;
 
-                     objRS = stmtSelectSatisfied.executeQuery();
-                  }
+         writes.mObjs.put(key, pending);
+      }
 
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     satisfiedStatus = objRS.getString("satisfied");
-                  }
-                  else
-                  {
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> No result set");
-                     }
+      pending.mColumns.put(iColumn, iValue);
 
-                     satisfiedStatus = null;
-                  }
+      synchronized ( ADLSeqUtilities.class )
+      {
+         sGlobalObjWritesBuffered++;
+      }
 
-                  // Close result set
-                  objRS.close();
+      return true;
+   }
 
-                  // Close the prepared statement
-                  stmtSelectSatisfied.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
-                  }
-               }
-            }
-            else
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR : NULL comp ID");
-               }
-            }
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL learnerID");
-            }
-         }
+   /**
+    * Makes the global objective writes recorded by the current thread, 
+    * through the global objective store if one is configured 
+    * (<code>ADLGlobalObjStore</code>).
+    */
+   private static void flushGlobalObjWrites()
+   {
+      GlobalObjWrites writes = (GlobalObjWrites)sGlobalObjWrites.get();
+
+      if ( writes == null || writes.mObjs.isEmpty() )
+      {
+         return;
+      }
+
+      Vector pending = new Vector(writes.mObjs.values());
+      writes.mObjs.clear();
+
+      ADLGlobalObjStore store = ADLGlobalObjStore.getStore();
+
+      if ( store != null )
+      {
+         store.write(pending);
       }
       else
       {
-         if ( _Debug )
-         {
-            System.out.println("  ::--> ERROR : NULL connection");
-         }
+         updateGlobalObjs(pending);
       }
 
-      if ( _Debug )
+      // Readers must see what is now in the DB
+      HashSet learners = new HashSet();
+
+      for ( int i = 0; i < pending.size(); i++ )
       {
-         System.out.println("  ::-->  " + satisfiedStatus);
-         System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjSatisfied");
-      }
+         PendingGlobalObj obj = (PendingGlobalObj)pending.elementAt(i);
 
-      return satisfiedStatus;
+         if ( learners.add(obj.mLearnerID) )
+         {
+            globalObjsChanged(obj.mLearnerID);
+         }
+      }
    }
 
    /**
-    * Sets the satisfied status associated with a global objective and student.
-    * 
-    * @param iObjID     The ID identifying the global objective information.
+    * Writes values to global objectives in the global objective DB.  The 
+    * values written to each objective are set with one update, the updates
+    * setting the same columns are sent as one batch, and all of them are 
+    * made in one transaction.
     * 
-    * @param iLearnerID The ID identifying the student.
-    * 
-    * @param iScopeID   The identifier of the objective's scope.
-    * 
-    * @param iSatisfied The desired satisfied status.
+    * @param iPending The values written to each objective 
+    *                 (<code>PendingGlobalObj</code>).
     * 
-    * @return <code>true</code> if the set was successful; if an error occurred
-    *         <code>false</code>.
+    * @return <code>true</code> if the values were written; if an error
+    *         occurred <code>false</code>.
     */
-   public static boolean setGlobalObjSatisfied(String iObjID, 
-                                               String iLearnerID,
-                                               String iScopeID,
-                                               String iSatisfied)
+   static boolean updateGlobalObjs(Collection iPending)
    {
-
       if ( _Debug )
       {
          System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "setGlobalObjSatisfied");
-
-         System.out.println("  ::--> " + iObjID);
-         System.out.println("  ::--> " + iLearnerID);
-         System.out.println("  ::--> " + iScopeID);
-         System.out.println("  ::--> " + iSatisfied);
+                            "updateGlobalObjs");
+         System.out.println("  ::--> " + iPending.size());
       }
 
-      boolean success = true;
+      boolean success = false;
 
+      // Group the objectives by the columns written
+      LinkedHashMap batches = new LinkedHashMap();
+      Iterator it = iPending.iterator();
 
-      // Validate vocabulary
-      if ( !(iSatisfied.equals("unknown") || iSatisfied.equals("satisfied") || 
-             iSatisfied.equals("notSatisfied")) )
+      while ( it.hasNext() )
       {
+         PendingGlobalObj pending = (PendingGlobalObj)it.next();
+         String columns = pending.mColumns.keySet().toString();
+         Vector batch = (Vector)batches.get(columns);
 
-         success = false;
-
-         if ( _Debug )
+         if ( batch == null )
          {
-            System.out.println("  ::--> Invalid value: " + iSatisfied);
-            System.out.println("  ::-->  " + success);
-            System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                               "setGlobalObjSatisfied");
+            batch = new Vector();
+            batches.put(columns, batch);
          }
 
-         return success;
+         batch.add(pending);
       }
 
       // Get a connection to the global objective DB
@@ -809,231 +1205,657 @@ public class ADLSeqUtilities
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         boolean autoCommit = true;
+
+         try
          {
-            if ( iObjID != null )
+            autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            it = batches.values().iterator();
+
+            while ( it.hasNext() )
             {
-               try
+               Vector batch = (Vector)it.next();
+               PendingGlobalObj first = (PendingGlobalObj)batch.elementAt(0);
+
+               // Create the SQL string
+               StringBuffer sqlUpdateObj = 
+                  new StringBuffer("UPDATE Objectives SET ");
+               Iterator columns = first.mColumns.keySet().iterator();
+
+               while ( columns.hasNext() )
                {
+                  sqlUpdateObj.append((String)columns.next()).append(" = ?");
+                  sqlUpdateObj.append(columns.hasNext() ? ", " : " ");
+               }
 
-                  PreparedStatement stmtUpdateSatisfied = null;
+               sqlUpdateObj.append("WHERE objID = ? AND " +
+                                   "learnerID = ? AND scopeID = ?");
 
-                  // Create the SQL string
-                  String sqlUpdateSatisfied = "UPDATE Objectives SET " +
-                                              "satisfied = ? " +
-                                              "WHERE objID = ? AND " +
-                                              "learnerID = ? AND scopeID = ?";
+               PreparedStatement stmtUpdateObj = 
+                  conn.prepareStatement(sqlUpdateObj.toString());
 
-                  stmtUpdateSatisfied = 
-                  conn.prepareStatement(sqlUpdateSatisfied);
+               for ( int i = 0; i < batch.size(); i++ )
+               {
+                  PendingGlobalObj pending = 
+                     (PendingGlobalObj)batch.elementAt(i);
+                  int param = 1;
+                  Iterator values = pending.mColumns.values().iterator();
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Execute the query
-                  synchronized(stmtUpdateSatisfied)
+                  while ( values.hasNext() )
                   {
-                     stmtUpdateSatisfied.setString(1, iSatisfied);
-                     stmtUpdateSatisfied.setString(2, objID);
-                     stmtUpdateSatisfied.setString(3, iLearnerID);
+                     stmtUpdateObj.setString(param++, (String)values.next());
+                  }
 
-                     if ( iScopeID == null )
-                     {
-                        stmtUpdateSatisfied.setString(4, "");
-                     }
-                     else
-                     {
-                        stmtUpdateSatisfied.setString(4, iScopeID);
-                     }
+                  stmtUpdateObj.setString(param++, 
+                     decodeHandler.encodeObjectiveID(pending.mObjID));
+                  stmtUpdateObj.setString(param++, pending.mLearnerID);
+                  stmtUpdateObj.setString(param, pending.mScopeID);
 
-                     stmtUpdateSatisfied.executeUpdate();
-                  }
+                  stmtUpdateObj.addBatch();
+               }
+
+               stmtUpdateObj.executeBatch();
+
+               // Close the prepared statement
+               stmtUpdateObj.close();
+            }
+
+            conn.commit();
+            success = true;
+
+            synchronized ( ADLSeqUtilities.class )
+            {
+               sGlobalObjRowsFlushed += iPending.size();
+               sGlobalObjFlushes++;
+            }
+         }
+         catch ( Exception e )
+         {
+            if ( _Debug )
+            {
+               System.out.println("  ::--> ERROR: DB Failure");
+            }
+
+            e.printStackTrace();
+
+            try
+            {
+               conn.rollback();
+            }
+            catch ( SQLException se )
+            {
+               // The connection is reset when it is returned to the pool
+            }
+         }
+         finally
+         {
+            try
+            {
+               conn.setAutoCommit(autoCommit);
+            }
+            catch ( SQLException se )
+            {
+               // The connection is reset when it is returned to the pool
+            }
+
+            LMSDBHandler.closeConnection();
+         }
+      }
+      else
+      {
+         if ( _Debug )
+         {
+            System.out.println("  ::--> ERROR: NULL connection");
+         }
+      }
+
+      if ( _Debug )
+      {
+         System.out.println("  ::--> " + success);
+         System.out.println("  :: ADLSeqUtilities  --> END   - " +
+                            "updateGlobalObjs");
+      }
+
+      return success;
+   }
+
+   /**
+    * Retrieves the status associated with the global objective and the 
+    * student, with one read of the global objective DB.  Within a call to
+    * <code>beginGlobalObjReads()</code> the status is read once and cached.
+    * 
+    * @param iObjID     The ID identifying the global shared objective.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @param iScopeID   The identifier of the objective's scope.
+    * 
+    * @return The status associated with the global objective, which must not
+    *         be changed, or <code>null</code> if either the obj or learner ID
+    *         is invalid.
+    */
+   public static ADLGlobalObjStatus getGlobalObj(String iObjID,
+                                                 String iLearnerID,
+                                                 String iScopeID)
+   {
+      if ( iObjID == null || iLearnerID == null )
+      {
+         return readGlobalObj(iObjID, iLearnerID, iScopeID);
+      }
+
+      String key = iObjID + "\u0000" + iLearnerID + "\u0000" + 
+                   ( ( iScopeID == null ) ? "" : iScopeID );
+
+      ADLGlobalObjStatus obj = null;
+      GlobalObjReads reads = (GlobalObjReads)sGlobalObjReads.get();
+
+      if ( reads == null )
+      {
+         obj = readGlobalObj(iObjID, iLearnerID, iScopeID);
+      }
+      else
+      {
+         long generation = getGlobalObjGeneration(iLearnerID);
+         CachedGlobalObj cached = (CachedGlobalObj)reads.mObjs.get(key);
+
+         if ( cached != null && cached.mGeneration == generation )
+         {
+            synchronized ( ADLSeqUtilities.class )
+            {
+               sGlobalObjHits++;
+            }
+         }
+         else
+         {
+            cached = new CachedGlobalObj();
+            cached.mGeneration = generation;
+            cached.mObj = readGlobalObj(iObjID, iLearnerID, iScopeID);
+
+            reads.mObjs.put(key, cached);
+         }
+
+         obj = cached.mObj;
+      }
+
+      // Writes not yet made are seen by the thread holding them
+      GlobalObjWrites writes = (GlobalObjWrites)sGlobalObjWrites.get();
+
+      if ( obj != null && writes != null )
+      {
+         PendingGlobalObj pending = (PendingGlobalObj)writes.mObjs.get(key);
+
+         if ( pending != null )
+         {
+            obj = pending.applyTo(obj);
+         }
+      }
+
+      return obj;
+   }
+
+   /**
+    * Reads the status associated with the global objective and the student
+    * from the global objective store (<code>ADLGlobalObjStore</code>) if one
+    * is configured, or else from the global objective DB.
+    * 
+    * @param iObjID     The ID identifying the global shared objective.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @param iScopeID   The identifier of the objective's scope.
+    * 
+    * @return The status associated with the global objective, or 
+    *         <code>null</code> if either the obj or learner ID is invalid.
+    */
+   private static ADLGlobalObjStatus readGlobalObj(String iObjID,
+                                                   String iLearnerID,
+                                                   String iScopeID)
+   {
+      if ( _Debug )
+      {
+         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
+                            "readGlobalObj");
+         System.out.println("  ::--> " + iObjID);
+         System.out.println("  ::--> " + iLearnerID);
+         System.out.println("  ::--> " + iScopeID);
+      }
+
+      ADLGlobalObjStatus obj = null;
+      ADLGlobalObjStore store = ADLGlobalObjStore.getStore();
 
-                  // Close the prepared statement
-                  stmtUpdateSatisfied.close();
+      if ( iObjID == null )
+      {
+         if ( _Debug )
+         {
+            System.out.println("  ::--> ERROR : NULL objective ID");
+         }
+      }
+      else if ( iLearnerID == null )
+      {
+         if ( _Debug )
+         {
+            System.out.println("  ::--> ERROR : NULL learnerID");
+         }
+      }
+      else if ( store != null )
+      {
+         obj = store.get(iObjID, iLearnerID, iScopeID);
+      }
+      else
+      {
+         // Get a connection to the global objective DB
+         Connection conn = LMSDBHandler.getConnection();
+
+         if ( conn != null )
+         {
+            try
+            {
+               synchronized ( ADLSeqUtilities.class )
+               {
+                  sGlobalObjQueries++;
+               }
+
+               // Create the SQL string, convert it to a prepared statement.
+               String sqlSelectObj = "SELECT satisfied, measure, rawscore, " +
+                                     "minscore, maxscore, completion, " +
+                                     "progressmeasure FROM Objectives " +
+                                     "WHERE objID = ? AND " +
+                                     "learnerID = ? AND scopeID = ?";
+
+               PreparedStatement stmtSelectObj = 
+                  conn.prepareStatement(sqlSelectObj);
+
+               // Insert values into the prepared statement 
+               //  and execute the query.
+               stmtSelectObj.setString(1, 
+                  decodeHandler.encodeObjectiveID(iObjID));
+               stmtSelectObj.setString(2, iLearnerID);
+               stmtSelectObj.setString(3, ( iScopeID == null ) ? "" 
+                                                               : iScopeID);
+
+               ResultSet objRS = stmtSelectObj.executeQuery();
+
+               // Make sure a result set is returned
+               if ( objRS.next() )
+               {
+                  obj = new ADLGlobalObjStatus();
+                  obj.mObjID = iObjID;
+                  obj.mLearnerID = iLearnerID;
+                  obj.mScopeID = iScopeID;
+                  obj.mSatisfied = objRS.getString("satisfied");
+                  obj.mMeasure = objRS.getString("measure");
+                  obj.mRawScore = objRS.getString("rawscore");
+                  obj.mMinScore = objRS.getString("minscore");
+                  obj.mMaxScore = objRS.getString("maxscore");
+                  obj.mCompletion = objRS.getString("completion");
+                  obj.mProgressMeasure = objRS.getString("progressmeasure");
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::--> ERROR: DB Failure");
-                     System.out.println(e.getMessage());
-
-                     e.printStackTrace();
+                     System.out.println("  ::--> No result set");
                   }
-
-                  success = false;
                }
+
+               // Close result set
+               objRS.close();
+
+               // Close the prepared statement
+               stmtSelectObj.close();
             }
-            else
+            catch ( Exception e )
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL objective ID");
+                  System.out.println("  ::-->  ERROR : DB Failure");
+                  e.printStackTrace();
                }
-
-               success = false;
+            }
+            finally
+            {
+               LMSDBHandler.closeConnection();
             }
          }
          else
          {
             if ( _Debug )
             {
-               System.out.println("  ::--> ERROR: NULL learnerID");
+               System.out.println("  ::--> ERROR : NULL connection");
             }
+         }
+      }
 
-            success = false;
+      if ( _Debug )
+      {
+         System.out.println("  :: ADLSeqUtilities  --> END   - " +
+                            "readGlobalObj");
+      }
+
+      return obj;
+   }
+
+   /**
+    * Reads the status of all of a student's global objectives from the 
+    * global objective DB.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @return The status of each of the learner's global objectives 
+    *         (<code>ADLGlobalObjStatus</code>), or <code>null</code> if they
+    *         could not be read.
+    */
+   static Vector loadGlobalObjs(String iLearnerID)
+   {
+      if ( _Debug )
+      {
+         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
+                            "loadGlobalObjs");
+         System.out.println("  ::--> " + iLearnerID);
+      }
+
+      Vector objs = null;
+
+      // Get a connection to the global objective DB
+      Connection conn = LMSDBHandler.getConnection();
+
+      if ( conn != null )
+      {
+         try
+         {
+            synchronized ( ADLSeqUtilities.class )
+            {
+               sGlobalObjQueries++;
+            }
+
+            // Create the SQL string, convert it to a prepared statement.
+            String sqlSelectObjs = "SELECT * FROM Objectives " +
+                                   "WHERE learnerID = ?";
+
+            PreparedStatement stmtSelectObjs = 
+               conn.prepareStatement(sqlSelectObjs);
+
+            // Insert values into the prepared statement 
+            //  and execute the query.
+            stmtSelectObjs.setString(1, iLearnerID);
+
+            ResultSet objRS = stmtSelectObjs.executeQuery();
+
+            objs = new Vector();
+
+            while ( objRS.next() )
+            {
+               String scopeID = objRS.getString("scopeID");
+
+               ADLGlobalObjStatus obj = new ADLGlobalObjStatus();
+               obj.mObjID = 
+                  decodeHandler.decodeObjectiveID(objRS.getString("objID"));
+               obj.mLearnerID = iLearnerID;
+               obj.mScopeID = ( scopeID == null || scopeID.length() == 0 ) 
+                              ? null : scopeID;
+               obj.mSatisfied = objRS.getString("satisfied");
+               obj.mMeasure = objRS.getString("measure");
+               obj.mRawScore = objRS.getString("rawscore");
+               obj.mMinScore = objRS.getString("minscore");
+               obj.mMaxScore = objRS.getString("maxscore");
+               obj.mCompletion = objRS.getString("completion");
+               obj.mProgressMeasure = objRS.getString("progressmeasure");
+
+               objs.add(obj);
+            }
+
+            // Close result set
+            objRS.close();
+
+            // Close the prepared statement
+            stmtSelectObjs.close();
+         }
+         catch ( Exception e )
+         {
+            objs = null;
+
+            if ( _Debug )
+            {
+               System.out.println("  ::-->  ERROR : DB Failure");
+               e.printStackTrace();
+            }
+         }
+         finally
+         {
+            LMSDBHandler.closeConnection();
          }
       }
       else
       {
          if ( _Debug )
          {
-            System.out.println("  ::--> ERROR: NULL connection");
+            System.out.println("  ::--> ERROR : NULL connection");
          }
-
-         success = false;
       }
 
       if ( _Debug )
       {
-         System.out.println("  ::--> " + success);
+         System.out.println("  ::--> " + 
+                            ( ( objs == null ) ? -1 : objs.size() ));
          System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "setGlobalObjSatisfied");
+                            "loadGlobalObjs");
       }
 
-      return success;
+      return objs;
    }
 
    /**
-    * Retrieves the measure associated with the global objective and
+    * Retrieves the satisfied status associated with the global objective and
     * the student.
     * 
-    * @param iObjID     The ID identifying the desired global objective.
+    * @param iObjID     The ID identifying the global shared objective.
     * 
     * @param iLearnerID The ID identifying the student.
     * 
     * @param iScopeID   The identifier of the objective's scope.
     * 
-    * @return The score associated with the shared competency, or
-    *         <code>null</code> if either the obj or learner ID is invalid.
+    * @return The satisfied status associated with the global objective,
+    *         or <code>null</code> if either the obj or learner ID is invalid.
     */
-   public static String getGlobalObjMeasure(String iObjID, 
-                                            String iLearnerID,
-                                            String iScopeID)
+   public static String getGlobalObjSatisfied(String iObjID,
+                                              String iLearnerID,
+                                              String iScopeID)
+   {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
+
+      return ( obj == null ) ? null : obj.mSatisfied;
+   }
+
+   /**
+    * Sets the satisfied status associated with a global objective and student.
+    * 
+    * @param iObjID     The ID identifying the global objective information.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @param iScopeID   The identifier of the objective's scope.
+    * 
+    * @param iSatisfied The desired satisfied status.
+    * 
+    * @return <code>true</code> if the set was successful; if an error occurred
+    *         <code>false</code>.
+    */
+   public static boolean setGlobalObjSatisfied(String iObjID, 
+                                               String iLearnerID,
+                                               String iScopeID,
+                                               String iSatisfied)
    {
 
       if ( _Debug )
       {
          System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjMeasure");
+                            "setGlobalObjSatisfied");
+
+         System.out.println("  ::--> " + iObjID);
+         System.out.println("  ::--> " + iLearnerID);
+         System.out.println("  ::--> " + iScopeID);
+         System.out.println("  ::--> " + iSatisfied);
+      }
+
+      boolean success = true;
+
+
+      // Validate vocabulary
+      if ( !(iSatisfied.equals("unknown") || iSatisfied.equals("satisfied") || 
+             iSatisfied.equals("notSatisfied")) )
+      {
+
+         success = false;
+
+         if ( _Debug )
+         {
+            System.out.println("  ::--> Invalid value: " + iSatisfied);
+            System.out.println("  ::-->  " + success);
+            System.out.println("  :: ADLSeqUtilities  --> END   - " +
+                               "setGlobalObjSatisfied");
+         }
+
+         return success;
       }
 
-      String measure = null;
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "satisfied", 
+                                iSatisfied) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
 
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iObjID != null )
+         try
          {
             if ( iLearnerID != null )
             {
-               try
+               if ( iObjID != null )
                {
-                  PreparedStatement stmtSelectMeasure = null;
-                  ResultSet objRS = null;
+                  try
+                  {
+
+                     PreparedStatement stmtUpdateSatisfied = null;
 
-                  // Create the SQL string and convert it to 
-                  // a prepared statement.
-                  String sqlSelectMeasure = "SELECT measure FROM Objectives " + 
-                                            "WHERE objID = ? AND " +
-                                            "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string
+                     String sqlUpdateSatisfied = "UPDATE Objectives SET " +
+                                                 "satisfied = ? " +
+                                                 "WHERE objID = ? AND " +
+                                                 "learnerID = ? AND scopeID = ?";
 
-                  stmtSelectMeasure = conn.prepareStatement(sqlSelectMeasure);
+                     stmtUpdateSatisfied = 
+                     conn.prepareStatement(sqlUpdateSatisfied);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Insert values into the prepared statement and execute the 
-                  // query
-                  synchronized( stmtSelectMeasure)
-                  {
-                     stmtSelectMeasure.setString(1, objID);
-                     stmtSelectMeasure.setString(2, iLearnerID);
+                     // Execute the query
+                     stmtUpdateSatisfied.setString(1, iSatisfied);
+                     stmtUpdateSatisfied.setString(2, objID);
+                     stmtUpdateSatisfied.setString(3, iLearnerID);
 
                      if ( iScopeID == null )
                      {
-                        stmtSelectMeasure.setString(3, "");    
+                        stmtUpdateSatisfied.setString(4, "");
                      }
                      else
                      {
-                        stmtSelectMeasure.setString(3, iScopeID);
+                        stmtUpdateSatisfied.setString(4, iScopeID);
                      }
 
-                     objRS = stmtSelectMeasure.executeQuery();
-                  }
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     measure = objRS.getString("measure");
+                     stmtUpdateSatisfied.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateSatisfied.close();
                   }
-                  else
+                  catch ( Exception e )
                   {
                      if ( _Debug )
                      {
-                        System.out.println("  ::--> No resultset");
-                     }
-                  }
+                        System.out.println("  ::--> ERROR: DB Failure");
+                        System.out.println(e.getMessage());
 
-                  // Close result set
-                  objRS.close();
+                        e.printStackTrace();
+                     }
 
-                  // Close the prepared statement 
-                  stmtSelectMeasure.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL objective ID");
                   }
+
+                  success = false;
                }
             }
             else
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR : NULL student ID");
+                  System.out.println("  ::--> ERROR: NULL learnerID");
                }
+
+               success = false;
             }
          }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL objective ID");
-            }
-         }
+         finally
+         {
+            LMSDBHandler.closeConnection();
+         }
       }
       else
       {
          if ( _Debug )
          {
-            System.out.println("  ::--> ERROR : NULL connection");
+            System.out.println("  ::--> ERROR: NULL connection");
          }
+
+         success = false;
       }
 
       if ( _Debug )
       {
-         System.out.println("  ::-->  " + measure);
+         System.out.println("  ::--> " + success);
          System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjMeasure");
+                            "setGlobalObjSatisfied");
       }
 
-      return measure;
+      globalObjsChanged(iLearnerID);
+
+      return success;
+   }
+
+   /**
+    * Retrieves the measure associated with the global objective and
+    * the student.
+    * 
+    * @param iObjID     The ID identifying the desired global objective.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @param iScopeID   The identifier of the objective's scope.
+    * 
+    * @return The score associated with the shared competency, or
+    *         <code>null</code> if either the obj or learner ID is invalid.
+    */
+   public static String getGlobalObjMeasure(String iObjID, 
+                                            String iLearnerID,
+                                            String iScopeID)
+   {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
+
+      return ( obj == null ) ? null : obj.mMeasure;
    }
 
    /**
@@ -1115,34 +1937,43 @@ public class ADLSeqUtilities
          }
       }
 
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "measure", 
+                                iMeasure) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iObjID != null )
+         try
          {
-            if ( iLearnerID != null )
+            if ( iObjID != null )
             {
-               try
+               if ( iLearnerID != null )
                {
-                  PreparedStatement stmtUpdateMeasure = null;
+                  try
+                  {
+                     PreparedStatement stmtUpdateMeasure = null;
 
-                  // Create the SQL string and covert it to a prepared statement
-                  String sqlUpdateMeasure = "UPDATE Objectives SET " + 
-                                            "measure = ? " +
-                                            "WHERE objID = ? AND " + 
-                                            "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string and covert it to a prepared statement
+                     String sqlUpdateMeasure = "UPDATE Objectives SET " + 
+                                               "measure = ? " +
+                                               "WHERE objID = ? AND " + 
+                                               "learnerID = ? AND scopeID = ?";
 
-                  stmtUpdateMeasure = conn.prepareStatement(sqlUpdateMeasure);
+                     stmtUpdateMeasure = conn.prepareStatement(sqlUpdateMeasure);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Insert values into the prepared statement and execute the 
-                  // update query
-                  synchronized( stmtUpdateMeasure )
-                  {
+                     // Insert values into the prepared statement and execute the 
+                     // update query
                      stmtUpdateMeasure.setString(1, iMeasure);
                      stmtUpdateMeasure.setString(2, objID);
                      stmtUpdateMeasure.setString(3, iLearnerID);
@@ -1157,17 +1988,26 @@ public class ADLSeqUtilities
                      }
 
                      stmtUpdateMeasure.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateMeasure.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
 
-                  // Close the prepared statement
-                  stmtUpdateMeasure.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL learnerID");
                   }
 
                   success = false;
@@ -1177,20 +2017,15 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL learnerID");
+                  System.out.println("  ::--> ERROR: NULL obj ID");
                }
 
                success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL obj ID");
-            }
-
-            success = false;
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -1210,6 +2045,8 @@ public class ADLSeqUtilities
                             "setGlobalObjMeasure");
       }
 
+      globalObjsChanged(iLearnerID);
+
       return success;
    }
 
@@ -1230,118 +2067,9 @@ public class ADLSeqUtilities
                                             String iLearnerID,
                                             String iScopeID)
    {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
 
-      if ( _Debug )
-      {
-         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjRawScore");
-      }
-
-      String rawscore = null;
-
-      // Get a connection to the global objective DB
-      Connection conn = LMSDBHandler.getConnection();
-
-      if ( conn != null )
-      {
-         if ( iObjID != null )
-         {
-            if ( iLearnerID != null )
-            {
-               try
-               {
-                  PreparedStatement stmtSelectRawScore = null;
-                  ResultSet objRS = null;
-
-                  // Create the SQL string and convert it to 
-                  // a prepared statement.
-                  String sqlSelectRawScore = "SELECT rawscore FROM Objectives " + 
-                                            "WHERE objID = ? AND " +
-                                            "learnerID = ? AND scopeID = ?";
-
-                  stmtSelectRawScore = conn.prepareStatement(sqlSelectRawScore);
-
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Insert values into the prepared statement and execute the 
-                  // query
-                  synchronized( stmtSelectRawScore )
-                  {
-                     stmtSelectRawScore.setString(1, objID);
-                     stmtSelectRawScore.setString(2, iLearnerID);
-
-                     if ( iScopeID == null )
-                     {
-                        stmtSelectRawScore.setString(3, "");    
-                     }
-                     else
-                     {
-                        stmtSelectRawScore.setString(3, iScopeID);
-                     }
-
-                     objRS = stmtSelectRawScore.executeQuery();
-                  }
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     rawscore = objRS.getString("rawscore");
-                  }
-                  else
-                  {
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> No resultset");
-                     }
-                  }
-
-                  // Close result set
-                  objRS.close();
-
-                  // Close the prepared statement 
-                  stmtSelectRawScore.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
-                  }
-               }
-            }
-            else
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR : NULL student ID");
-               }
-            }
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL objective ID");
-            }
-         }
-      }
-      else
-      {
-         if ( _Debug )
-         {
-            System.out.println("  ::--> ERROR : NULL connection");
-         }
-      }
-
-      if ( _Debug )
-      {
-         System.out.println("  ::-->  " + rawscore);
-         System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjRawScore");
-      }
-
-      return rawscore;
+      return ( obj == null ) ? null : obj.mRawScore;
    }
 
    /**
@@ -1405,34 +2133,43 @@ public class ADLSeqUtilities
          
       }
 
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "rawscore", 
+                                iRawScore) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iObjID != null )
+         try
          {
-            if ( iLearnerID != null )
+            if ( iObjID != null )
             {
-               try
+               if ( iLearnerID != null )
                {
-                  PreparedStatement stmtUpdateRawScore = null;
+                  try
+                  {
+                     PreparedStatement stmtUpdateRawScore = null;
 
-                  // Create the SQL string and covert it to a prepared statement
-                  String sqlUpdateRawScore = "UPDATE Objectives SET " + 
-                                            "rawscore = ? " +
-                                            "WHERE objID = ? AND " + 
-                                            "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string and covert it to a prepared statement
+                     String sqlUpdateRawScore = "UPDATE Objectives SET " + 
+                                               "rawscore = ? " +
+                                               "WHERE objID = ? AND " + 
+                                               "learnerID = ? AND scopeID = ?";
 
-                  stmtUpdateRawScore = conn.prepareStatement(sqlUpdateRawScore);
+                     stmtUpdateRawScore = conn.prepareStatement(sqlUpdateRawScore);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Insert values into the prepared statement and execute the 
-                  // update query
-                  synchronized( stmtUpdateRawScore )
-                  {
+                     // Insert values into the prepared statement and execute the 
+                     // update query
                      stmtUpdateRawScore.setString(1, iRawScore);
                      stmtUpdateRawScore.setString(2, objID);
                      stmtUpdateRawScore.setString(3, iLearnerID);
@@ -1447,191 +2184,88 @@ public class ADLSeqUtilities
                      }
 
                      stmtUpdateRawScore.executeUpdate();
-                  }
-
-                  // Close the prepared statement
-                  stmtUpdateRawScore.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
-                  }
-
-                  success = false;
-               }
-            }
-            else
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR: NULL learnerID");
-               }
-
-               success = false;
-            }
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL obj ID");
-            }
-
-            success = false;
-         }
-      }
-      else
-      {
-         if ( _Debug )
-         {
-            System.out.println("  ::--> ERROR: NULL connection");
-         }
-
-         success = false;
-      }
-
-      if ( _Debug )
-      {
-         System.out.println("  ::--> " + success);
-         System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "setGlobalObjRawScore");
-      }
-
-      return success;
-   }
-   
-   /**
-    * Retrieves the min score associated with the global objective and
-    * the student.
-    * 
-    * @param iObjID     The ID identifying the desired global objective.
-    * 
-    * @param iLearnerID The ID identifying the student.
-    * 
-    * @param iScopeID   The identifier of the objective's scope.
-    * 
-    * @return The min score associated with the shared competency, or
-    *         <code>null</code> if either the obj or learner ID is invalid.
-    */
-   public static String getGlobalObjMinScore(String iObjID, 
-                                            String iLearnerID,
-                                            String iScopeID)
-   {
-
-      if ( _Debug )
-      {
-         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjMinScore");
-      }
-
-      String minscore = null;
-
-      // Get a connection to the global objective DB
-      Connection conn = LMSDBHandler.getConnection();
 
-      if ( conn != null )
-      {
-         if ( iObjID != null )
-         {
-            if ( iLearnerID != null )
-            {
-               try
-               {
-                  PreparedStatement stmtSelectMinScore = null;
-                  ResultSet objRS = null;
-
-                  // Create the SQL string and convert it to 
-                  // a prepared statement.
-                  String sqlSelectMinScore = "SELECT minscore FROM Objectives " + 
-                                            "WHERE objID = ? AND " +
-                                            "learnerID = ? AND scopeID = ?";
-
-                  stmtSelectMinScore = conn.prepareStatement(sqlSelectMinScore);
-
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Insert values into the prepared statement and execute the 
-                  // query
-                  synchronized( stmtSelectMinScore)
-                  {
-                     stmtSelectMinScore.setString(1, objID);
-                     stmtSelectMinScore.setString(2, iLearnerID);
-
-                     if ( iScopeID == null )
-                     {
-                        stmtSelectMinScore.setString(3, "");    
-                     }
-                     else
-                     {
-                        stmtSelectMinScore.setString(3, iScopeID);
-                     }
-
-                     objRS = stmtSelectMinScore.executeQuery();
-                  }
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     minscore = objRS.getString("minscore");
+                     // Close the prepared statement
+                     stmtUpdateRawScore.close();
                   }
-                  else
+                  catch ( Exception e )
                   {
                      if ( _Debug )
                      {
-                        System.out.println("  ::--> No resultset");
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
                      }
-                  }
-
-                  // Close result set
-                  objRS.close();
 
-                  // Close the prepared statement 
-                  stmtSelectMinScore.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL learnerID");
                   }
+
+                  success = false;
                }
             }
             else
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR : NULL student ID");
+                  System.out.println("  ::--> ERROR: NULL obj ID");
                }
+
+               success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL objective ID");
-            }
+            LMSDBHandler.closeConnection();
          }
       }
       else
       {
          if ( _Debug )
          {
-            System.out.println("  ::--> ERROR : NULL connection");
+            System.out.println("  ::--> ERROR: NULL connection");
          }
+
+         success = false;
       }
 
       if ( _Debug )
       {
-         System.out.println("  ::-->  " + minscore);
+         System.out.println("  ::--> " + success);
          System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjMinScore");
+                            "setGlobalObjRawScore");
       }
 
-      return minscore;
+      globalObjsChanged(iLearnerID);
+
+      return success;
+   }
+   
+   /**
+    * Retrieves the min score associated with the global objective and
+    * the student.
+    * 
+    * @param iObjID     The ID identifying the desired global objective.
+    * 
+    * @param iLearnerID The ID identifying the student.
+    * 
+    * @param iScopeID   The identifier of the objective's scope.
+    * 
+    * @return The min score associated with the shared competency, or
+    *         <code>null</code> if either the obj or learner ID is invalid.
+    */
+   public static String getGlobalObjMinScore(String iObjID, 
+                                            String iLearnerID,
+                                            String iScopeID)
+   {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
+
+      return ( obj == null ) ? null : obj.mMinScore;
    }
 
    /**
@@ -1696,34 +2330,43 @@ public class ADLSeqUtilities
          
       }
 
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "minscore", 
+                                iMinScore) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iObjID != null )
+         try
          {
-            if ( iLearnerID != null )
+            if ( iObjID != null )
             {
-               try
+               if ( iLearnerID != null )
                {
-                  PreparedStatement stmtUpdateMinScore = null;
+                  try
+                  {
+                     PreparedStatement stmtUpdateMinScore = null;
 
-                  // Create the SQL string and covert it to a prepared statement
-                  String sqlUpdateMinScore = "UPDATE Objectives SET " + 
-                                            "minscore = ? " +
-                                            "WHERE objID = ? AND " + 
-                                            "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string and covert it to a prepared statement
+                     String sqlUpdateMinScore = "UPDATE Objectives SET " + 
+                                               "minscore = ? " +
+                                               "WHERE objID = ? AND " + 
+                                               "learnerID = ? AND scopeID = ?";
 
-                  stmtUpdateMinScore = conn.prepareStatement(sqlUpdateMinScore);
+                     stmtUpdateMinScore = conn.prepareStatement(sqlUpdateMinScore);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Insert values into the prepared statement and execute the 
-                  // update query
-                  synchronized( stmtUpdateMinScore )
-                  {
+                     // Insert values into the prepared statement and execute the 
+                     // update query
                      stmtUpdateMinScore.setString(1, iMinScore);
                      stmtUpdateMinScore.setString(2, objID);
                      stmtUpdateMinScore.setString(3, iLearnerID);
@@ -1738,17 +2381,26 @@ public class ADLSeqUtilities
                      }
 
                      stmtUpdateMinScore.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateMinScore.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
 
-                  // Close the prepared statement
-                  stmtUpdateMinScore.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL learnerID");
                   }
 
                   success = false;
@@ -1758,20 +2410,15 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL learnerID");
+                  System.out.println("  ::--> ERROR: NULL obj ID");
                }
 
                success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL obj ID");
-            }
-
-            success = false;
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -1791,6 +2438,8 @@ public class ADLSeqUtilities
                             "setGlobalObjMinScore");
       }
 
+      globalObjsChanged(iLearnerID);
+
       return success;
    }
    
@@ -1811,118 +2460,9 @@ public class ADLSeqUtilities
                                             String iLearnerID,
                                             String iScopeID)
    {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
 
-      if ( _Debug )
-      {
-         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjMaxScore");
-      }
-
-      String maxscore = null;
-
-      // Get a connection to the global objective DB
-      Connection conn = LMSDBHandler.getConnection();
-
-      if ( conn != null )
-      {
-         if ( iObjID != null )
-         {
-            if ( iLearnerID != null )
-            {
-               try
-               {
-                  PreparedStatement stmtSelectMaxScore = null;
-                  ResultSet objRS = null;
-
-                  // Create the SQL string and convert it to 
-                  // a prepared statement.
-                  String sqlSelectMaxScore = "SELECT maxscore FROM Objectives " + 
-                                            "WHERE objID = ? AND " +
-                                            "learnerID = ? AND scopeID = ?";
-
-                  stmtSelectMaxScore = conn.prepareStatement(sqlSelectMaxScore);
-
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Insert values into the prepared statement and execute the 
-                  // query
-                  synchronized( stmtSelectMaxScore)
-                  {
-                     stmtSelectMaxScore.setString(1, objID);
-                     stmtSelectMaxScore.setString(2, iLearnerID);
-
-                     if ( iScopeID == null )
-                     {
-                        stmtSelectMaxScore.setString(3, "");    
-                     }
-                     else
-                     {
-                        stmtSelectMaxScore.setString(3, iScopeID);
-                     }
-
-                     objRS = stmtSelectMaxScore.executeQuery();
-                  }
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     maxscore = objRS.getString("maxscore");
-                  }
-                  else
-                  {
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> No resultset");
-                     }
-                  }
-
-                  // Close result set
-                  objRS.close();
-
-                  // Close the prepared statement 
-                  stmtSelectMaxScore.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
-                  }
-               }
-            }
-            else
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR : NULL student ID");
-               }
-            }
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL objective ID");
-            }
-         }
-      }
-      else
-      {
-         if ( _Debug )
-         {
-            System.out.println("  ::--> ERROR : NULL connection");
-         }
-      }
-
-      if ( _Debug )
-      {
-         System.out.println("  ::-->  " + maxscore);
-         System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjMaxScore");
-      }
-
-      return maxscore;
+      return ( obj == null ) ? null : obj.mMaxScore;
    }
 
    /**
@@ -1987,34 +2527,43 @@ public class ADLSeqUtilities
          
       }
 
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "maxscore", 
+                                iMaxScore) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iObjID != null )
+         try
          {
-            if ( iLearnerID != null )
+            if ( iObjID != null )
             {
-               try
+               if ( iLearnerID != null )
                {
-                  PreparedStatement stmtUpdateMaxScore = null;
+                  try
+                  {
+                     PreparedStatement stmtUpdateMaxScore = null;
 
-                  // Create the SQL string and covert it to a prepared statement
-                  String sqlUpdateMaxScore = "UPDATE Objectives SET " + 
-                                            "maxscore = ? " +
-                                            "WHERE objID = ? AND " + 
-                                            "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string and covert it to a prepared statement
+                     String sqlUpdateMaxScore = "UPDATE Objectives SET " + 
+                                               "maxscore = ? " +
+                                               "WHERE objID = ? AND " + 
+                                               "learnerID = ? AND scopeID = ?";
 
-                  stmtUpdateMaxScore = conn.prepareStatement(sqlUpdateMaxScore);
+                     stmtUpdateMaxScore = conn.prepareStatement(sqlUpdateMaxScore);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Insert values into the prepared statement and execute the 
-                  // update query
-                  synchronized( stmtUpdateMaxScore )
-                  {
+                     // Insert values into the prepared statement and execute the 
+                     // update query
                      stmtUpdateMaxScore.setString(1, iMaxScore);
                      stmtUpdateMaxScore.setString(2, objID);
                      stmtUpdateMaxScore.setString(3, iLearnerID);
@@ -2029,17 +2578,26 @@ public class ADLSeqUtilities
                      }
 
                      stmtUpdateMaxScore.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateMaxScore.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
 
-                  // Close the prepared statement
-                  stmtUpdateMaxScore.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL learnerID");
                   }
 
                   success = false;
@@ -2049,20 +2607,15 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL learnerID");
+                  System.out.println("  ::--> ERROR: NULL obj ID");
                }
 
                success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL obj ID");
-            }
-
-            success = false;
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -2082,6 +2635,8 @@ public class ADLSeqUtilities
                             "setGlobalObjMaxScore");
       }
 
+      globalObjsChanged(iLearnerID);
+
       return success;
    }
    
@@ -2102,118 +2657,9 @@ public class ADLSeqUtilities
                                             String iLearnerID,
                                             String iScopeID)
    {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
 
-      if ( _Debug )
-      {
-         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjCompletion");
-      }
-
-      String completion = null;
-
-      // Get a connection to the global objective DB
-      Connection conn = LMSDBHandler.getConnection();
-
-      if ( conn != null )
-      {
-         if ( iObjID != null )
-         {
-            if ( iLearnerID != null )
-            {
-               try
-               {
-                  PreparedStatement stmtSelectCompletion = null;
-                  ResultSet objRS = null;
-
-                  // Create the SQL string and convert it to 
-                  // a prepared statement.
-                  String sqlSelectCompletion = "SELECT completion FROM Objectives " + 
-                                            "WHERE objID = ? AND " +
-                                            "learnerID = ? AND scopeID = ?";
-
-                  stmtSelectCompletion = conn.prepareStatement(sqlSelectCompletion);
-
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Insert values into the prepared statement and execute the 
-                  // query
-                  synchronized( stmtSelectCompletion )
-                  {
-                     stmtSelectCompletion.setString(1, objID);
-                     stmtSelectCompletion.setString(2, iLearnerID);
-
-                     if ( iScopeID == null )
-                     {
-                        stmtSelectCompletion.setString(3, "");    
-                     }
-                     else
-                     {
-                        stmtSelectCompletion.setString(3, iScopeID);
-                     }
-
-                     objRS = stmtSelectCompletion.executeQuery();
-                  }
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     completion = objRS.getString("completion");
-                  }
-                  else
-                  {
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> No resultset");
-                     }
-                  }
-
-                  // Close result set
-                  objRS.close();
-
-                  // Close the prepared statement 
-                  stmtSelectCompletion.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
-                  }
-               }
-            }
-            else
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR : NULL student ID");
-               }
-            }
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL objective ID");
-            }
-         }
-      }
-      else
-      {
-         if ( _Debug )
-         {
-            System.out.println("  ::--> ERROR : NULL connection");
-         }
-      }
-
-      if ( _Debug )
-      {
-         System.out.println("  ::-->  " + completion);
-         System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjCompletion");
-      }
-
-      return completion;
+      return ( obj == null ) ? null : obj.mCompletion;
    }
 
    /**
@@ -2267,35 +2713,45 @@ public class ADLSeqUtilities
          return success;
       }
 
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "completion", 
+                                ( iCompletion.equals("not attempted") ) 
+                                   ? "incomplete" : iCompletion) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         try
          {
-            if ( iObjID != null )
+            if ( iLearnerID != null )
             {
-               try
+               if ( iObjID != null )
                {
+                  try
+                  {
 
-                  PreparedStatement stmtUpdateCompletion = null;
+                     PreparedStatement stmtUpdateCompletion = null;
 
-                  // Create the SQL string
-                  String sqlUpdateCompletion = "UPDATE Objectives SET " +
-                                              "completion = ? " +
-                                              "WHERE objID = ? AND " +
-                                              "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string
+                     String sqlUpdateCompletion = "UPDATE Objectives SET " +
+                                                 "completion = ? " +
+                                                 "WHERE objID = ? AND " +
+                                                 "learnerID = ? AND scopeID = ?";
 
-                  stmtUpdateCompletion = 
-                  conn.prepareStatement(sqlUpdateCompletion);
+                     stmtUpdateCompletion = 
+                     conn.prepareStatement(sqlUpdateCompletion);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Execute the query
-                  synchronized(stmtUpdateCompletion)
-                  {
+                     // Execute the query
                      stmtUpdateCompletion.setString(1, (iCompletion.equals("not attempted"))?"incomplete":iCompletion);
                      stmtUpdateCompletion.setString(2, objID);
                      stmtUpdateCompletion.setString(3, iLearnerID);
@@ -2310,19 +2766,28 @@ public class ADLSeqUtilities
                      }
 
                      stmtUpdateCompletion.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateCompletion.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::--> ERROR: DB Failure");
+                        System.out.println(e.getMessage());
 
-                  // Close the prepared statement
-                  stmtUpdateCompletion.close();
+                        e.printStackTrace();
+                     }
+
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::--> ERROR: DB Failure");
-                     System.out.println(e.getMessage());
-
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL objective ID");
                   }
 
                   success = false;
@@ -2332,20 +2797,15 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL objective ID");
+                  System.out.println("  ::--> ERROR: NULL learnerID");
                }
 
                success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL learnerID");
-            }
-
-            success = false;
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -2365,6 +2825,8 @@ public class ADLSeqUtilities
                             "setGlobalObjCompletion");
       }
 
+      globalObjsChanged(iLearnerID);
+
       return success;
    }
    
@@ -2385,118 +2847,9 @@ public class ADLSeqUtilities
                                             String iLearnerID,
                                             String iScopeID)
    {
+      ADLGlobalObjStatus obj = getGlobalObj(iObjID, iLearnerID, iScopeID);
 
-      if ( _Debug )
-      {
-         System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
-                            "getGlobalObjProgressMeasure");
-      }
-
-      String measure = null;
-
-      // Get a connection to the global objective DB
-      Connection conn = LMSDBHandler.getConnection();
-
-      if ( conn != null )
-      {
-         if ( iObjID != null )
-         {
-            if ( iLearnerID != null )
-            {
-               try
-               {
-                  PreparedStatement stmtSelectMeasure = null;
-                  ResultSet objRS = null;
-
-                  // Create the SQL string and convert it to 
-                  // a prepared statement.
-                  String sqlSelectMeasure = "SELECT progressmeasure FROM Objectives " + 
-                                            "WHERE objID = ? AND " +
-                                            "learnerID = ? AND scopeID = ?";
-
-                  stmtSelectMeasure = conn.prepareStatement(sqlSelectMeasure);
-
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
-                  
-                  // Insert values into the prepared statement and execute the 
-                  // query
-                  synchronized( stmtSelectMeasure)
-                  {
-                     stmtSelectMeasure.setString(1, objID);
-                     stmtSelectMeasure.setString(2, iLearnerID);
-
-                     if ( iScopeID == null )
-                     {
-                        stmtSelectMeasure.setString(3, "");    
-                     }
-                     else
-                     {
-                        stmtSelectMeasure.setString(3, iScopeID);
-                     }
-
-                     objRS = stmtSelectMeasure.executeQuery();
-                  }
-                  // Make sure a result set is returned
-                  if ( objRS.next() )
-                  {
-                     measure = objRS.getString("progressmeasure");
-                  }
-                  else
-                  {
-                     if ( _Debug )
-                     {
-                        System.out.println("  ::--> No resultset");
-                     }
-                  }
-
-                  // Close result set
-                  objRS.close();
-
-                  // Close the prepared statement 
-                  stmtSelectMeasure.close();
-               }
-               catch ( Exception e )
-               {
-                  if ( _Debug )
-                  {
-                     System.out.println("  ::-->  ERROR : DB Failure");
-                     e.printStackTrace();
-                  }
-               }
-            }
-            else
-            {
-               if ( _Debug )
-               {
-                  System.out.println("  ::--> ERROR : NULL student ID");
-               }
-            }
-         }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR : NULL objective ID");
-            }
-         }
-      }
-      else
-      {
-         if ( _Debug )
-         {
-            System.out.println("  ::--> ERROR : NULL connection");
-         }
-      }
-
-      if ( _Debug )
-      {
-         System.out.println("  ::-->  " + measure);
-         System.out.println("  :: ADLSeqUtilities  --> END   - " +
-                            "getGlobalObjProgressMeasure");
-      }
-
-      return measure;
+      return ( obj == null ) ? null : obj.mProgressMeasure;
    }
 
    /**
@@ -2577,34 +2930,43 @@ public class ADLSeqUtilities
          }
       }
 
+      // Within a unit of work the write is made when the unit ends
+      if ( bufferGlobalObjWrite(iObjID, iLearnerID, iScopeID, "progressmeasure", 
+                                iProgMeasure) )
+      {
+         globalObjsChanged(iLearnerID);
+
+         return success;
+      }
+
       // Get a connection to the global objective DB
       Connection conn = LMSDBHandler.getConnection();
 
       if ( conn != null )
       {
-         if ( iObjID != null )
+         try
          {
-            if ( iLearnerID != null )
+            if ( iObjID != null )
             {
-               try
+               if ( iLearnerID != null )
                {
-                  PreparedStatement stmtUpdateMeasure = null;
+                  try
+                  {
+                     PreparedStatement stmtUpdateMeasure = null;
 
-                  // Create the SQL string and covert it to a prepared statement
-                  String sqlUpdateMeasure = "UPDATE Objectives SET " + 
-                                            "progressmeasure = ? " +
-                                            "WHERE objID = ? AND " + 
-                                            "learnerID = ? AND scopeID = ?";
+                     // Create the SQL string and covert it to a prepared statement
+                     String sqlUpdateMeasure = "UPDATE Objectives SET " + 
+                                               "progressmeasure = ? " +
+                                               "WHERE objID = ? AND " + 
+                                               "learnerID = ? AND scopeID = ?";
 
-                  stmtUpdateMeasure = conn.prepareStatement(sqlUpdateMeasure);
+                     stmtUpdateMeasure = conn.prepareStatement(sqlUpdateMeasure);
 
-                  String objID = 
-                     decodeHandler.encodeObjectiveID(iObjID);
+                     String objID = 
+                        decodeHandler.encodeObjectiveID(iObjID);
                   
-                  // Insert values into the prepared statement and execute the 
-                  // update query
-                  synchronized( stmtUpdateMeasure )
-                  {
+                     // Insert values into the prepared statement and execute the 
+                     // update query
                      stmtUpdateMeasure.setString(1, iProgMeasure);
                      stmtUpdateMeasure.setString(2, objID);
                      stmtUpdateMeasure.setString(3, iLearnerID);
@@ -2619,17 +2981,26 @@ public class ADLSeqUtilities
                      }
 
                      stmtUpdateMeasure.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateMeasure.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
 
-                  // Close the prepared statement
-                  stmtUpdateMeasure.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL learnerID");
                   }
 
                   success = false;
@@ -2639,20 +3010,15 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL learnerID");
+                  System.out.println("  ::--> ERROR: NULL obj ID");
                }
 
                success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL obj ID");
-            }
-
-            success = false;
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -2672,6 +3038,8 @@ public class ADLSeqUtilities
                             "setGlobalObjProgressMeasure");
       }
 
+      globalObjsChanged(iLearnerID);
+
       return success;
    }
 
@@ -2685,13 +3053,33 @@ public class ADLSeqUtilities
     */
    public static void createCourseStatus(String iCourseID,
                                          String iLearnerID)
+   {  
+      Vector learners = new Vector();
+      learners.add(iLearnerID);
+
+      createCourseStatus(iCourseID, learners);
+   }
+
+   /**
+    * Creates a status record associated with a given activity tree's root
+    * for each of a set of learners.  The learners that already have one are
+    * read with one query, and the missing records are inserted in batches, 
+    * in one transaction for every <code>REGISTRATION_BATCH_SIZE</code> 
+    * learners.
+    * 
+    * @param iCourseID   The ID identifying the activity tree.
+    * 
+    * @param iLearnerIDs The IDs identifying the students.
+    */
+   public static void createCourseStatus(String iCourseID,
+                                         Vector iLearnerIDs)
    {  
       if ( _Debug )
       {
          System.out.println("  :: ADLSeqUtilities  --> BEGIN - " +
                             "createCourseStatus");
          System.out.println("  ::-->  " + iCourseID);
-         System.out.println("  ::-->  " + iLearnerID);
+         System.out.println("  ::-->  " + iLearnerIDs);
       }
 
       // Get a connection to the global objective DB
@@ -2699,43 +3087,41 @@ public class ADLSeqUtilities
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         boolean autoCommit = true;
+
+         try
          {
-            if ( iCourseID != null )
+            if ( iLearnerIDs != null )
             {
-               try
+               if ( iCourseID != null )
                {
-                  PreparedStatement stmtCheckRecord = null;
-
-                  // Create the SQL string, convert it to a prepared stat.
-                  String sqlCheckRecord = "SELECT * FROM CourseStatus WHERE " +
-                                          "courseID = ? AND " + 
-                                          "learnerID = ?";
-
-                  stmtCheckRecord = conn.prepareStatement( sqlCheckRecord );
-                  ResultSet objRS = null;
-
-                  synchronized(stmtCheckRecord)
+                  try
                   {
-                     stmtCheckRecord.setString(1, iCourseID);
-                     stmtCheckRecord.setString(2, iLearnerID);
+                     autoCommit = conn.getAutoCommit();
+                     conn.setAutoCommit(false);
 
-                     objRS = stmtCheckRecord.executeQuery();
-                  }
+                     // Find the learners that already have a record
+                     String sqlSelectLearners = "SELECT learnerID FROM " +
+                                                "CourseStatus WHERE " +
+                                                "courseID = ?";
 
-                  PreparedStatement stmtCreateRecord = null;
+                     PreparedStatement stmtSelectLearners = 
+                        conn.prepareStatement(sqlSelectLearners);
 
-                  // the objective does not exist, add it
-                  if ( !objRS.next() )
-                  {
+                     stmtSelectLearners.setString(1, iCourseID);
 
-                     if ( _Debug )
+                     ResultSet statusRS = stmtSelectLearners.executeQuery();
+                     HashSet existing = new HashSet();
+
+                     while ( statusRS.next() )
                      {
-                        System.out.println("  ::--> Creating course status " +
-                                           "--> " + iCourseID +
-                                           "--> " + iLearnerID);
+                        existing.add(statusRS.getString("learnerID"));
                      }
 
+                     // Close the result set and prepared statement
+                     statusRS.close();
+                     stmtSelectLearners.close();
+
                      // Create the SQL string, 
                      //   convert it to a prepared statement
                      String sqlCreateRecord = "INSERT INTO CourseStatus " +
@@ -2744,39 +3130,75 @@ public class ADLSeqUtilities
                                               "completed, progmeasure) " +
                                               "VALUES (?, ?, ? ,?, ?, ?)";
 
-                     stmtCreateRecord =
-                     conn.prepareStatement(sqlCreateRecord);
+                     PreparedStatement stmtCreateRecord =
+                        conn.prepareStatement(sqlCreateRecord);
 
-                     // Insert values into the prepared statement and 
-                     // execute the query.
-                     synchronized(stmtCreateRecord)
+                     int created = 0;
+
+                     for ( int i = 0; i < iLearnerIDs.size(); i++ )
                      {
-                        stmtCreateRecord.setString(1, iCourseID);
-                        stmtCreateRecord.setString(2, iLearnerID);
+                        String learnerID = (String)iLearnerIDs.elementAt(i);
+
+                        // the record does not exist, add it
+                        if ( learnerID != null && existing.add(learnerID) )
+                        {
+                           if ( _Debug )
+                           {
+                              System.out.println("  ::--> Creating course " +
+                                                 "status --> " + iCourseID +
+                                                 "--> " + learnerID);
+                           }
+
+                           stmtCreateRecord.setString(1, iCourseID);
+                           stmtCreateRecord.setString(2, learnerID);
+                           stmtCreateRecord.setString(3, "unknown");
+                           stmtCreateRecord.setString(4, "unknown");
+                           stmtCreateRecord.setString(5, "unknown");
+                           stmtCreateRecord.setString(6, "unknown");
+
+                           stmtCreateRecord.addBatch();
+                           created++;
+                        }
 
-                        stmtCreateRecord.setString(3, "unknown");
-                        stmtCreateRecord.setString(4, "unknown");
-                        stmtCreateRecord.setString(5, "unknown");
-                        stmtCreateRecord.setString(6, "unknown");
+                        // Commit each batch of learners
+                        if ( created > 0 && 
+                             ( created == REGISTRATION_BATCH_SIZE || 
+                               i == iLearnerIDs.size() - 1 ) )
+                        {
+                           stmtCreateRecord.executeBatch();
+                           conn.commit();
 
-                        stmtCreateRecord.executeUpdate();
+                           created = 0;
+                        }
                      }
 
                      // Close the prepared statement
                      stmtCreateRecord.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
 
-
-                  // Close the result set and prepared statement
-                  objRS.close();
-                  stmtCheckRecord.close();
+                     try
+                     {
+                        conn.rollback();
+                     }
+                     catch ( SQLException se )
+                     {
+                        // The connection is reset when it is returned to the
+                        // pool
+                     }
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL Course ID");
                   }
                }
             }
@@ -2784,16 +3206,22 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL Course ID");
+                  System.out.println("  ::--> ERROR: NULL Student ID");
                }
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
+            try
+            {
+               conn.setAutoCommit(autoCommit);
+            }
+            catch ( SQLException se )
             {
-               System.out.println("  ::--> ERROR: NULL Student ID");
+               // The connection is reset when it is returned to the pool
             }
+
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -2952,31 +3380,31 @@ public class ADLSeqUtilities
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         try
          {
-            if ( iCourseID != null )
+            if ( iLearnerID != null )
             {
-               try
+               if ( iCourseID != null )
                {
+                  try
+                  {
 
-                  PreparedStatement stmtUpdateSatisfied = null;
+                     PreparedStatement stmtUpdateSatisfied = null;
 
-                  // Create the SQL string
-                  String sqlUpdateSatisfied = "UPDATE CourseStatus " + 
-                                              "SET " +
-                                              "satisfied = ? ," +
-                                              "measure = ? ," +
-                                              "completed = ? ," +
-                                              "progmeasure = ? " +
-                                              "WHERE courseID = ? AND " +
-                                              "learnerID = ?";
+                     // Create the SQL string
+                     String sqlUpdateSatisfied = "UPDATE CourseStatus " + 
+                                                 "SET " +
+                                                 "satisfied = ? ," +
+                                                 "measure = ? ," +
+                                                 "completed = ? ," +
+                                                 "progmeasure = ? " +
+                                                 "WHERE courseID = ? AND " +
+                                                 "learnerID = ?";
 
-                  stmtUpdateSatisfied = 
-                  conn.prepareStatement(sqlUpdateSatisfied);
+                     stmtUpdateSatisfied = 
+                     conn.prepareStatement(sqlUpdateSatisfied);
 
-                  // Execute the query
-                  synchronized(stmtUpdateSatisfied)
-                  {
+                     // Execute the query
                      stmtUpdateSatisfied.setString(1, iSatisfied);
                      stmtUpdateSatisfied.setString(2, iMeasure);
                      stmtUpdateSatisfied.setString(3, iCompleted);
@@ -2985,19 +3413,28 @@ public class ADLSeqUtilities
                      stmtUpdateSatisfied.setString(6, iLearnerID);
 
                      stmtUpdateSatisfied.executeUpdate();
+
+                     // Close the prepared statement
+                     stmtUpdateSatisfied.close();
                   }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::--> ERROR: DB Failure");
+                        System.out.println(e.getMessage());
+
+                        e.printStackTrace();
+                     }
 
-                  // Close the prepared statement
-                  stmtUpdateSatisfied.close();
+                     success = false;
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::--> ERROR: DB Failure");
-                     System.out.println(e.getMessage());
-
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL course ID");
                   }
 
                   success = false;
@@ -3007,20 +3444,15 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL course ID");
+                  System.out.println("  ::--> ERROR: NULL learner ID");
                }
 
                success = false;
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL learner ID");
-            }
-
-            success = false;
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -3066,40 +3498,47 @@ public class ADLSeqUtilities
 
       if ( conn != null )
       {
-         if ( iLearnerID != null )
+         try
          {
-            if ( iCourseID != null )
+            if ( iLearnerID != null )
             {
-               try
+               if ( iCourseID != null )
                {
-                  PreparedStatement stmtDeleteRecord = null;
+                  try
+                  {
+                     PreparedStatement stmtDeleteRecord = null;
 
-                  // Create the SQL string, convert it to a prepared statement. 
-                  String sqlDeleteRecord = "DELETE * FROM CourseStatus " +
-                                           "WHERE courseID = ? AND " + 
-                                           "learnerID = ?";
+                     // Create the SQL string, convert it to a prepared statement. 
+                     String sqlDeleteRecord = "DELETE * FROM CourseStatus " +
+                                              "WHERE courseID = ? AND " + 
+                                              "learnerID = ?";
 
-                  stmtDeleteRecord = conn.prepareStatement(sqlDeleteRecord);
+                     stmtDeleteRecord = conn.prepareStatement(sqlDeleteRecord);
 
-                  // Insert values into the prepared statement and 
-                  // execute the query.
-                  synchronized(stmtDeleteRecord)
-                  {
+                     // Insert values into the prepared statement and 
+                     // execute the query.
                      stmtDeleteRecord.setString(1, iCourseID);
                      stmtDeleteRecord.setString(2, iLearnerID);
 
                      stmtDeleteRecord.executeUpdate();
-                  }
 
-                  // Close the prepared statement
-                  stmtDeleteRecord.close();
+                     // Close the prepared statement
+                     stmtDeleteRecord.close();
+                  }
+                  catch ( Exception e )
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::-->  ERROR: DB Failure");
+                        e.printStackTrace();
+                     }
+                  }
                }
-               catch ( Exception e )
+               else
                {
                   if ( _Debug )
                   {
-                     System.out.println("  ::-->  ERROR: DB Failure");
-                     e.printStackTrace();
+                     System.out.println("  ::--> ERROR: NULL course ID");
                   }
                }
             }
@@ -3107,16 +3546,13 @@ public class ADLSeqUtilities
             {
                if ( _Debug )
                {
-                  System.out.println("  ::--> ERROR: NULL course ID");
+                  System.out.println("  ::--> ERROR: NULL student ID");
                }
             }
          }
-         else
+         finally
          {
-            if ( _Debug )
-            {
-               System.out.println("  ::--> ERROR: NULL student ID");
-            }
+            LMSDBHandler.closeConnection();
          }
       }
       else
@@ -4762,6 +5198,7 @@ public class ADLSeqUtilities
       {
          // Add the conditions to the condition set 
          condSet.mConditions = conditions;         
+         condSet.compile();
       }
       else
       {
@@ -5014,6 +5451,7 @@ public class ADLSeqUtilities
 
                // Add the conditions to the condition set for the rule
                rule.mConditions.mConditions = conditions;
+               rule.mConditions.compile();
 
                // Add the rule to the ruleset
                rollupRules.add(rule);
@@ -5506,14 +5944,17 @@ public class ADLSeqUtilities
    /**
     * Tells this utility whether to delete the data store or to save it.
     * 
+    * @param iTree   The activity tree owning the data store collection.
+    * 
     * @param iDelete Value whether for not to delete the data store.
     */
-   public static void deleteDataStore(boolean iDelete)
+   public static void deleteDataStore(SeqActivityTree iTree, boolean iDelete)
    {
-      if ( SeqActivityTree.dataStoreLoc != null )
+      if ( iTree.getDataStoreLocation() != null &&
+           ( iDelete || iTree.getDataStoreMap() != null ) )
       {
-         String location = SeqActivityTree.dataStoreLoc;
-         HashMap tempmap = SeqActivityTree.dsMap;
+         String location = iTree.getDataStoreLocation();
+         HashMap tempmap = iTree.getDataStoreMap();
          File map = new File(location);
          boolean success = false;
          for ( int i = 0; i < 100; i++ )
@@ -5566,7 +6007,129 @@ public class ADLSeqUtilities
          }
       }
       // clearing map
-      SeqActivityTree.dsMap = null;
+      iTree.setDataStoreMap(null);
+   }
+
+   /**
+    * The global objectives read by a thread during one request.
+    */
+   private static class GlobalObjReads
+   {
+      /**
+       * The number of calls to <code>beginGlobalObjReads()</code> not yet
+       * ended.
+       */
+      int mDepth = 0;
+
+      /**
+       * The objectives read (<code>CachedGlobalObj</code>), keyed by 
+       * objective, learner and scope ID.
+       */
+      HashMap mObjs = new HashMap();
+   }
+
+   /**
+    * A global objective read during a request.
+    */
+   private static class CachedGlobalObj
+   {
+      /**
+       * The generation of the learner's global objectives when the objective
+       * was read.
+       */
+      long mGeneration = 0;
+
+      /**
+       * The objective, or <code>null</code> if it was not found.
+       */
+      ADLGlobalObjStatus mObj = null;
+   }
+
+   /**
+    * The global objective writes recorded by a thread during one unit of 
+    * work.
+    */
+   private static class GlobalObjWrites
+   {
+      /**
+       * The number of calls to <code>beginGlobalObjWrites()</code> not yet
+       * ended.
+       */
+      int mDepth = 0;
+
+      /**
+       * The objectives written (<code>PendingGlobalObj</code>), keyed by 
+       * objective, learner and scope ID, in the order first written.
+       */
+      LinkedHashMap mObjs = new LinkedHashMap();
+   }
+
+   /**
+    * The values written to one global objective during a unit of work.
+    */
+   static class PendingGlobalObj
+   {
+      /**
+       * The ID identifying the global shared objective.
+       */
+      String mObjID = null;
+
+      /**
+       * The ID identifying the student.
+       */
+      String mLearnerID = null;
+
+      /**
+       * The identifier of the objective's scope, or an empty string.
+       */
+      String mScopeID = null;
+
+      /**
+       * The last value written to each column, keyed by column name, in the
+       * order first written.
+       */
+      LinkedHashMap mColumns = new LinkedHashMap();
+
+      /**
+       * Provides the status of the objective once the values written are
+       * made.
+       * 
+       * @param iObj The status of the objective in the DB.
+       * 
+       * @return The status of the objective.
+       */
+      ADLGlobalObjStatus applyTo(ADLGlobalObjStatus iObj)
+      {
+         ADLGlobalObjStatus obj = new ADLGlobalObjStatus();
+         obj.mObjID = iObj.mObjID;
+         obj.mLearnerID = iObj.mLearnerID;
+         obj.mScopeID = iObj.mScopeID;
+         obj.mSatisfied = value("satisfied", iObj.mSatisfied);
+         obj.mMeasure = value("measure", iObj.mMeasure);
+         obj.mRawScore = value("rawscore", iObj.mRawScore);
+         obj.mMinScore = value("minscore", iObj.mMinScore);
+         obj.mMaxScore = value("maxscore", iObj.mMaxScore);
+         obj.mCompletion = value("completion", iObj.mCompletion);
+         obj.mProgressMeasure = value("progressmeasure", 
+                                      iObj.mProgressMeasure);
+
+         return obj;
+      }
+
+      /**
+       * Provides the value of a column once the values written are made.
+       * 
+       * @param iColumn The column.
+       * 
+       * @param iValue  The value of the column in the DB.
+       * 
+       * @return The value of the column.
+       */
+      private String value(String iColumn, String iValue)
+      {
+         return mColumns.containsKey(iColumn) ? (String)mColumns.get(iColumn)
+                                              : iValue;
+      }
    }
 
 }  // end ADLSeqUtilities
@@ -30,6 +30,7 @@ import org.adl.util.debug.DebugIndicator;
 
 import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.Vector;
 import java.util.Hashtable;
 import java.util.Enumeration;
@@ -70,6 +71,13 @@ import java.util.Random;
  * To ensure the activity tree remains in a consistent state, the success of
  * requests are tracked globally by the sequencer.<br><br>
  * 
+ * A sequencer that is given an activity tree with 
+ * <code>setActivityTree()</code> holds the working state of its requests and 
+ * must only be used by one request at a time.  The methods that take the 
+ * activity tree as a parameter keep that state in a sequencer of their own, 
+ * so one instance can be shared by concurrent requests on different activity 
+ * trees.<br><br>
+ * 
  * This implementation has not been optimized.<br><br>
  * 
  * <strong>Known Problems:</strong><br><br>
@@ -253,6 +261,18 @@ SeqReportActivityStatus, Serializable
     */
    private static String SEQ_PREVIOUS           = "_PREVIOUS_"; 
    
+   /**
+    * The sequencer each thread reuses for the requests it begins on shared 
+    * sequencers (see <code>beginInvocation()</code>).
+    */
+   private static final ThreadLocal sInvocation = new ThreadLocal()
+   {
+      protected Object initialValue()
+      {
+         return new ADLSequencer();
+      }
+   };
+
    /**
     * Internal activity tree this instance of the sequencer acts upon.
     */
@@ -376,7 +396,18 @@ SeqReportActivityStatus, Serializable
 
          if ( valid != null )
          {
-            validateRequests();
+            ADLSeqUtilities.beginGlobalObjReads();
+            ADLSeqUtilities.beginGlobalObjWrites();
+
+            try
+            {
+               refreshValidRequests();
+            }
+            finally
+            {
+               ADLSeqUtilities.endGlobalObjWrites();
+               ADLSeqUtilities.endGlobalObjReads();
+            }
 
             valid = mSeqTree.getValidRequests();
          }
@@ -388,6 +419,8 @@ SeqReportActivityStatus, Serializable
          oValid.mContinue = valid.mContinue;
          oValid.mContinueExit = valid.mContinueExit;
          oValid.mPrevious = valid.mPrevious;
+         oValid.mTOCVersion = valid.mTOCVersion;
+         oValid.mTOCBase = valid.mTOCBase;
 
          if ( valid.mTOC != null )
          {
@@ -417,6 +450,8 @@ SeqReportActivityStatus, Serializable
          oValid.mPrevious = false;
          oValid.mChoice = null;
          oValid.mTOC = null;
+         oValid.mTOCVersion = 0;
+         oValid.mTOCBase = 0;
          oValid.mJump = null;
       }
 
@@ -570,6 +605,7 @@ SeqReportActivityStatus, Serializable
             {
                // Set the activity's suspended state
                target.setIsSuspended(iSuspended);
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -647,8 +683,8 @@ SeqReportActivityStatus, Serializable
             {
                target.setCurAttemptExDur(iDur);
 
-               // Revalidate the navigation requests
-               validateRequests();
+               // The navigation requests are revalidated when next needed
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -720,8 +756,8 @@ SeqReportActivityStatus, Serializable
 
                if ( statusChange )
                {
-                  // Revalidate the navigation requests
-                  validateRequests();
+                  // The navigation requests are revalidated when next needed
+                  mSeqTree.activityChanged(target);
                }
             }
             else
@@ -799,8 +835,8 @@ SeqReportActivityStatus, Serializable
 
                if ( true /* statusChange */ )
                {
-                  // Revalidate the navigation requests
-                  validateRequests();
+                  // The navigation requests are revalidated when next needed
+                  mSeqTree.activityChanged(target);
                }
             }
             else
@@ -878,8 +914,8 @@ SeqReportActivityStatus, Serializable
 
                if ( statusChange )
                {
-                  // Revalidate the navigation requests
-                  validateRequests();
+                  // The navigation requests are revalidated when next needed
+                  mSeqTree.activityChanged(target);
                }
             }
             else
@@ -951,8 +987,8 @@ SeqReportActivityStatus, Serializable
 
                if ( statusChange )
                {
-                  // Revalidate the navigation requests
-                  validateRequests();
+                  // The navigation requests are revalidated when next needed
+                  mSeqTree.activityChanged(target);
                }
             }
             else
@@ -1005,7 +1041,23 @@ SeqReportActivityStatus, Serializable
     */
    public ADLLaunch navigate(String iTarget, boolean iJumpRequest)
    {
-      return iJumpRequest ? jump(iTarget) : choice(iTarget);
+      if ( mSeqTree != null )
+      {
+         mSeqTree.invalidateValidRequests();
+      }
+
+      ADLSeqUtilities.beginGlobalObjReads();
+      ADLSeqUtilities.beginGlobalObjWrites();
+
+      try
+      {
+         return iJumpRequest ? jump(iTarget) : choice(iTarget);
+      }
+      finally
+      {
+         ADLSeqUtilities.endGlobalObjWrites();
+         ADLSeqUtilities.endGlobalObjReads();
+      }
    }
    
    
@@ -1020,6 +1072,32 @@ SeqReportActivityStatus, Serializable
     *         error.
     */
    public ADLLaunch navigate(int iRequest)
+   {
+      ADLSeqUtilities.beginGlobalObjReads();
+      ADLSeqUtilities.beginGlobalObjWrites();
+
+      try
+      {
+         return processNavigation(iRequest);
+      }
+      finally
+      {
+         ADLSeqUtilities.endGlobalObjWrites();
+         ADLSeqUtilities.endGlobalObjReads();
+      }
+   }
+
+   /**
+    * Processes a navigation request, other than 'Choice', while the global
+    * objectives read are cached and the global objectives written are held
+    * until the request has been processed.
+    * 
+    * @param iRequest Indicates which navigation request should be processed.
+    * 
+    * @return Information about the 'Next' activity to delivery or a processing
+    *         error.
+    */
+   private ADLLaunch processNavigation(int iRequest)
    {
 
       // This method implements all cases, except case #7 of the Navigation
@@ -1058,6 +1136,9 @@ SeqReportActivityStatus, Serializable
          return launch;
       }
 
+      // Processing the request changes the state of the tree
+      mSeqTree.invalidateValidRequests();
+
       // If this is a new session, we start at the root.
       boolean newSession = false;
 
@@ -1241,7 +1322,7 @@ SeqReportActivityStatus, Serializable
                if ( cur.getIsActive() )
                {
                   // Issue a termination request of 'exit'
-                  seqReq = doTerminationRequest(ADLSequencer.TER_EXIT, false);
+                  seqReq = doTerminationRequest(ADLSequencer.TER_EXIT);
                }
 
                if ( mValidTermination )
@@ -1287,7 +1368,7 @@ SeqReportActivityStatus, Serializable
                if ( cur.getIsActive() )
                {
                   // Issue a termination request of 'exit'
-                  seqReq = doTerminationRequest(ADLSequencer.TER_EXIT, false);
+                  seqReq = doTerminationRequest(ADLSequencer.TER_EXIT);
                }
 
                if ( mValidTermination )
@@ -1331,7 +1412,7 @@ SeqReportActivityStatus, Serializable
             case SeqNavRequests.NAV_ABANDON:
 
                // Issue a termination request of 'abandon'
-               seqReq = doTerminationRequest(ADLSequencer.TER_ABANDON, false);
+               seqReq = doTerminationRequest(ADLSequencer.TER_ABANDON);
 
                // The termination process cannot return a sequencing request 
                // because post condition rules are not evaluated.
@@ -1390,8 +1471,7 @@ SeqReportActivityStatus, Serializable
             case SeqNavRequests.NAV_ABANDONALL:
 
                // Issue a termination request of 'abandonAll'
-               seqReq = doTerminationRequest(ADLSequencer.TER_ABANDONALL,
-                                             false);
+               seqReq = doTerminationRequest(ADLSequencer.TER_ABANDONALL);
 
                // The termination process cannot return a sequencing request 
                // because post condition rules are not evaluated.
@@ -1438,8 +1518,7 @@ SeqReportActivityStatus, Serializable
             case SeqNavRequests.NAV_SUSPENDALL:
 
                // Issue a termination request of 'suspendAll'
-               seqReq = doTerminationRequest(ADLSequencer.TER_SUSPENDALL,
-                                             false);
+               seqReq = doTerminationRequest(ADLSequencer.TER_SUSPENDALL);
 
                // The termination process cannot return a sequencing request 
                // because post condition rules are not evaluated.
@@ -1486,7 +1565,7 @@ SeqReportActivityStatus, Serializable
             case SeqNavRequests.NAV_EXIT:
 
                // Issue a termination request of 'exit'
-               seqReq = doTerminationRequest(ADLSequencer.TER_EXIT, false);
+               seqReq = doTerminationRequest(ADLSequencer.TER_EXIT);
 
 
                if ( mValidTermination )
@@ -1540,7 +1619,7 @@ SeqReportActivityStatus, Serializable
             case SeqNavRequests.NAV_EXITALL:
 
                // Issue a termination request of 'exitAll'
-               seqReq = doTerminationRequest(ADLSequencer.TER_EXITALL, false);
+               seqReq = doTerminationRequest(ADLSequencer.TER_EXITALL);
 
                // The termination process cannot return a sequencing request 
                // because post condition rules are not evaluated.
@@ -1795,7 +1874,7 @@ SeqReportActivityStatus, Serializable
                if ( cur.getIsActive() )
                {
                   // Issue a termination request of 'exit'
-                  seqReq = doTerminationRequest(ADLSequencer.TER_EXIT, false);
+                  seqReq = doTerminationRequest(ADLSequencer.TER_EXIT);
 
                   if ( seqReq == null )
                   {
@@ -1984,7 +2063,7 @@ SeqReportActivityStatus, Serializable
             if ( cur.getIsActive() )
             {
                // Issue a termination request of 'exit'
-               seqReq = doTerminationRequest(ADLSequencer.TER_EXIT, false);
+               seqReq = doTerminationRequest(ADLSequencer.TER_EXIT);
    
                if ( seqReq == null )
                {
@@ -2097,6 +2176,195 @@ SeqReportActivityStatus, Serializable
 
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
 
+   Shared Use
+
+   -*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*/
+
+   /**
+    * Begins a request on an activity tree, returning the sequencer that 
+    * carries the request's working state.  The methods that take the 
+    * activity tree as their first parameter process each request on such a
+    * sequencer and never change this one, so a sequencer that has not been
+    * given an activity tree can be shared by concurrent requests on 
+    * different activity trees.  Callers that make several calls on the same
+    * tree (for example, reporting tracking status) may begin a request 
+    * themselves; every request must be ended with 
+    * <code>endInvocation()</code>.
+    * 
+    * <br><br>Each thread reuses one sequencer for its requests; a new one is
+    * created only if the thread begins a request while another is in 
+    * progress.
+    * 
+    * @param iTree The activity tree the request acts on.
+    * 
+    * @return The sequencer.
+    */
+   public ADLSequencer beginInvocation(SeqActivityTree iTree)
+   {
+      ADLSequencer seq = (ADLSequencer)sInvocation.get();
+
+      if ( seq.mSeqTree != null )
+      {
+         seq = new ADLSequencer();
+      }
+
+      seq.mSeqTree = iTree;
+      seq.mEndSession = false;
+      seq.mExitCourse = false;
+      seq.mRetry = false;
+      seq.mExitAll = false;
+      seq.mValidTermination = true;
+      seq.mValidSequencing = true;
+      seq.mIsJump = false;
+
+      return seq;
+   }
+
+   /**
+    * Ends a request begun with <code>beginInvocation()</code>, so the 
+    * thread's sequencer does not keep the activity tree and can be reused.
+    * 
+    * @param iInvocation The sequencer returned by 
+    *                    <code>beginInvocation()</code>.
+    */
+   public void endInvocation(ADLSequencer iInvocation)
+   {
+      iInvocation.mSeqTree = null;
+   }
+
+   /**
+    * Processes a navigation request, other than 'Choice', on an activity
+    * tree.
+    * 
+    * @param iTree    The activity tree to act on.
+    * 
+    * @param iRequest Indicates which navigation request should be processed.
+    * 
+    * @return Information about the 'Next' activity to delivery or a processing
+    *         error.
+    */
+   public ADLLaunch navigate(SeqActivityTree iTree, int iRequest)
+   {
+      ADLSequencer seq = beginInvocation(iTree);
+
+      try
+      {
+         return seq.navigate(iRequest);
+      }
+      finally
+      {
+         endInvocation(seq);
+      }
+   }
+
+   /**
+    * Processes a 'Choice' or 'Jump' navigation request on an activity tree.
+    * 
+    * @param iTree        The activity tree to act on.
+    * 
+    * @param iTarget      ID (<code>String</code>) of the target activity.
+    * 
+    * @param iJumpRequest Indicates if this is a jump request or not.
+    * 
+    * @return Information about the 'Next' activity to delivery or a processing
+    *         error.
+    */
+   public ADLLaunch navigate(SeqActivityTree iTree, 
+                             String iTarget, 
+                             boolean iJumpRequest)
+   {
+      ADLSequencer seq = beginInvocation(iTree);
+
+      try
+      {
+         return seq.navigate(iTarget, iJumpRequest);
+      }
+      finally
+      {
+         endInvocation(seq);
+      }
+   }
+
+   /**
+    * Retrieves the current set of valid navigation requests of an activity
+    * tree.
+    * 
+    * @param iTree  The activity tree to act on.
+    * 
+    * @param oValid Upon return, contains the set of valid navigation reqeusts.
+    */
+   public void getValidRequests(SeqActivityTree iTree, ADLValidRequests oValid)
+   {
+      ADLSequencer seq = beginInvocation(iTree);
+
+      try
+      {
+         seq.getValidRequests(oValid);
+      }
+      finally
+      {
+         endInvocation(seq);
+      }
+   }
+
+   /**
+    * Retrieves the set of objective status records associated with an 
+    * activity of an activity tree.
+    * 
+    * @param iTree       The activity tree to act on.
+    * 
+    * @param iActivityID The ID of the activity whose objectives are requested.
+    * 
+    * @return A <code>Vector</code> of <code>ADLObjStatus</code> objects for
+    *         the requested activity or <code>null</code> if none are defined.
+    */
+   public Vector getObjStatusSet(SeqActivityTree iTree, String iActivityID)
+   {
+      ADLSequencer seq = beginInvocation(iTree);
+
+      try
+      {
+         return seq.getObjStatusSet(iActivityID);
+      }
+      finally
+      {
+         endInvocation(seq);
+      }
+   }
+
+   /**
+    * Clears the current activity of an activity tree.
+    * 
+    * @param iTree The activity tree to act on.
+    */
+   public void clearSeqState(SeqActivityTree iTree)
+   {
+      ADLSequencer seq = beginInvocation(iTree);
+
+      try
+      {
+         seq.clearSeqState();
+      }
+      finally
+      {
+         endInvocation(seq);
+      }
+   }
+
+   /**
+    * Gets the root of an activity tree.
+    * 
+    * @param iTree The activity tree.
+    * 
+    * @return The root activity of the activity tree (<code>SeqActivity</code>).
+    */
+   public SeqActivity getRoot(SeqActivityTree iTree)
+   {
+      return iTree.getRoot();
+   }
+
+   /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
+
    Navigation Behavior
 
    -*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*/
@@ -2374,6 +2642,82 @@ SeqReportActivityStatus, Serializable
     * rollup has been performed.
     */
    private void validateRequests()
+   {
+      validateRequests(null);
+   }
+
+   /**
+    * Creates a sequencer that acts on a copy of the activity tree, so 
+    * 'what-if' sequencing and delivery requests can be processed without
+    * changing the learner's tracking information or the state of this 
+    * sequencer.
+    * 
+    * @return The sequencer.
+    */
+   private ADLSequencer getWhatIfSequencer()
+   {
+      ADLSequencer seq = new ADLSequencer();
+      seq.mSeqTree = mSeqTree.snapshot();
+
+      return seq;
+   }
+
+   /**
+    * Brings the set of valid navigation requests associated with the activity
+    * tree up to date, evaluating it again only if the tree has changed since
+    * it was last refreshed.  When only the tracking status of some activities
+    * changed, the 'Jump' targets are re-checked for those activities alone;
+    * the rest of the set is evaluated in full (see 
+    * <code>validateRequests()</code>).
+    */
+   private void refreshValidRequests()
+   {
+      // The learner's global objectives may have been changed by another
+      // activity tree since the set was refreshed
+      long globalObjs = 0;
+
+      if ( mSeqTree.getGlobalObjectives() != null )
+      {
+         globalObjs = 
+            ADLSeqUtilities.getGlobalObjGeneration(mSeqTree.getLearnerID());
+      }
+
+      Set changed = mSeqTree.getChangedActivities(globalObjs);
+
+      if ( changed != null && changed.isEmpty() )
+      {
+         if ( _Debug )
+         {
+            System.out.println("  ::--> Valid requests are current");
+         }
+
+         return;
+      }
+
+      validateRequests(changed);
+
+      mSeqTree.validRequestsRefreshed(globalObjs);
+   }
+
+   /**
+    * Performs 'what-if' evaluations of possible sequencing requests originating
+    * from the current activity, given the current state of the activity tree.
+    *
+    * <br><br>This method assumes that content has already reported status and
+    * rollup has been performed.
+    * 
+    * <br><br>Only the 'Jump' targets use <code>iChanged</code>.  The TOC and
+    * the 'Choice' set are rebuilt from the whole tree: whether an activity
+    * can be chosen depends on the rules, limit conditions and control modes
+    * of its ancestors and on its position relative to the current activity, 
+    * so a change to one activity can hide or disable others that did not
+    * change.  'Continue' and 'Previous' are evaluated on a copy of the tree.
+    * 
+    * @param iChanged The IDs of the activities whose tracking status changed
+    *                 since the set of valid requests was last evaluated, or 
+    *                 <code>null</code> if every activity must be evaluated.
+    */
+   private void validateRequests(Set iChanged)
    {
       
       if ( _Debug )
@@ -2382,6 +2726,16 @@ SeqReportActivityStatus, Serializable
       }
 
       ADLValidRequests valid = mSeqTree.getValidRequests();
+      ADLValidRequests prevValid = valid;
+
+      // Only the disabled state of the changed activities needs to be
+      // evaluated again to determine the 'Jump' targets
+      Hashtable prevJump = null;
+
+      if ( iChanged != null && valid != null )
+      {
+         prevJump = valid.mJump;
+      }
 
       // If there is no current activity or the current activity is inactive,
       // no state change could have occurred since the last validation.
@@ -2410,7 +2764,7 @@ SeqReportActivityStatus, Serializable
          }
 
          // If the current activity does not prevent choiceExit,
-         // Test all 'Choice' requests
+         // Test all 'Choice' requests; this always walks the whole tree
          if ( cur.getControlModeChoiceExit() || !cur.getIsActive() )
          {
             
@@ -2433,7 +2787,7 @@ SeqReportActivityStatus, Serializable
             }
          }
          
-         valid.mJump = getJumpSet();
+         valid.mJump = getJumpSet(prevJump, iChanged);
 
          if ( cur.getParent() != null )
          {
@@ -2458,13 +2812,14 @@ SeqReportActivityStatus, Serializable
 
             if ( test )
             {
-               // Test the 'Previous' request
-               mValidSequencing = true;
+               // Test the 'Previous' request on a copy of the activity tree
+               ADLSequencer whatIf = getWhatIfSequencer();
 
-               delReq = doSequencingRequest(ADLSequencer.SEQ_PREVIOUS);
-               if ( mValidSequencing )
+               delReq = whatIf.doSequencingRequest(ADLSequencer.SEQ_PREVIOUS);
+               if ( whatIf.mValidSequencing )
                {
-                  valid.mPrevious = doDeliveryRequest(delReq, true, tempLaunch);
+                  valid.mPrevious = 
+                     whatIf.doDeliveryRequest(delReq, true, tempLaunch);
                }
             }           
          }     
@@ -2490,11 +2845,14 @@ SeqReportActivityStatus, Serializable
          }
          else
          {
-            // Test Start Navigation Request
+            // Test Start Navigation Request on a copy of the activity tree
+            ADLSequencer whatIf = getWhatIfSequencer();
+
             Walk walk = new Walk();
-            walk.at = mSeqTree.getRoot();
+            walk.at = whatIf.mSeqTree.getRoot();
 
-            valid.mStart = processFlow(ADLSequencer.FLOW_FORWARD, true, walk, false);
+            valid.mStart = whatIf.processFlow(ADLSequencer.FLOW_FORWARD, true, 
+                                              walk, false);
 
             // Validate availablity of the identfied activity if one was
             // identified
@@ -2509,7 +2867,7 @@ SeqReportActivityStatus, Serializable
                      System.out.println("  ::-->  Checking --> " + walk.at.getID());
                   }
 
-                  ok = !checkActivity(walk.at);
+                  ok = !whatIf.checkActivity(walk.at);
 
                   if ( ok )
                   {
@@ -2574,13 +2932,18 @@ SeqReportActivityStatus, Serializable
             }
          }
          
-         valid.mJump = getJumpSet();
+         valid.mJump = getJumpSet(prevJump, iChanged);
       }
 
       // If an updated set of valid requests has completed, associated it with
       // the activity tree
       if ( valid != null )
       {
+         if ( valid != prevValid )
+         {
+            versionTOC(prevValid, valid);
+         }
+
          mSeqTree.setValidRequests(valid);
       }
 
@@ -2590,13 +2953,107 @@ SeqReportActivityStatus, Serializable
       }
    }
 
+   /**
+    * Assigns a version to a newly evaluated table of contents, and to each of
+    * its entries, relative to the table of contents it replaces.  The
+    * version only changes if the state of some entry changed, so a client
+    * can be brought up to date with just the changed entries.
+    * 
+    * @param iPrevious The set of valid requests being replaced, or 
+    *                  <code>null</code> if there is none.
+    * 
+    * @param ioValid   The newly evaluated set of valid requests.
+    */
+   private void versionTOC(ADLValidRequests iPrevious, ADLValidRequests ioValid)
+   {
+      int version = 0;
+      int base = 0;
+      Vector prevTOC = null;
+
+      if ( iPrevious != null )
+      {
+         version = iPrevious.mTOCVersion;
+         base = iPrevious.mTOCBase;
+         prevTOC = iPrevious.mTOC;
+      }
+
+      Vector toc = ioValid.mTOC;
+
+      // Determine if the entries are the same, in the same order
+      boolean sameEntries = ( prevTOC == null ) ? ( toc == null ) :
+                            ( toc != null && toc.size() == prevTOC.size() );
+
+      for ( int i = 0; sameEntries && toc != null && i < toc.size(); i++ )
+      {
+         sameEntries = ((ADLTOC)toc.elementAt(i)).
+                          isSameEntry((ADLTOC)prevTOC.elementAt(i));
+      }
+
+      if ( !sameEntries )
+      {
+         version++;
+         base = version;
+
+         for ( int i = 0; toc != null && i < toc.size(); i++ )
+         {
+            ((ADLTOC)toc.elementAt(i)).mVersion = version;
+         }
+      }
+      else if ( toc != null )
+      {
+         boolean changed = false;
+
+         for ( int i = 0; i < toc.size(); i++ )
+         {
+            ADLTOC entry = (ADLTOC)toc.elementAt(i);
+            ADLTOC prevEntry = (ADLTOC)prevTOC.elementAt(i);
+
+            if ( entry.isSameState(prevEntry) )
+            {
+               entry.mVersion = prevEntry.mVersion;
+            }
+            else
+            {
+               entry.mVersion = version + 1;
+               changed = true;
+            }
+         }
+
+         if ( changed )
+         {
+            version++;
+         }
+      }
+
+      if ( _Debug )
+      {
+         System.out.println("  ::--> TOC version: " + version + 
+                            " [" + base + "]");
+      }
+
+      ioValid.mTOCVersion = version;
+      ioValid.mTOCBase = base;
+   }
+
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
 
    Termination Behavior
 
    -*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*/
 
-   private Hashtable getJumpSet()
+   /**
+    * Determines the set of leaf activities that are valid 'Jump' targets.
+    * 
+    * @param iPrevious The previously determined set of targets, or 
+    *                  <code>null</code> if every activity must be evaluated.
+    * 
+    * @param iChanged  The IDs of the activities whose tracking status changed
+    *                  since <code>iPrevious</code> was determined.
+    * 
+    * @return The valid 'Jump' targets (<code>SeqActivity</code>) keyed by
+    *         activity ID.
+    */
+   private Hashtable getJumpSet(Hashtable iPrevious, Set iChanged)
    {
       if ( _Debug )
       {
@@ -2604,7 +3061,30 @@ SeqReportActivityStatus, Serializable
       }
       
       Hashtable jumptargets = new Hashtable();
-      if ( mSeqTree != null && mSeqTree.getActivityMap() != null )
+      if ( iPrevious != null && iChanged != null && mSeqTree != null &&
+           mSeqTree.getActivityMap() != null )
+      {
+         jumptargets = (Hashtable)iPrevious.clone();
+
+         Iterator changed = iChanged.iterator();
+         while ( changed.hasNext() )
+         {
+            SeqActivity act = getActivity((String)changed.next());
+
+            if ( act != null && act.getChildren(true) == null )
+            {
+               if ( !checkActivity(act) )
+               {
+                  jumptargets.put(act.getID(), act);
+               }
+               else
+               {
+                  jumptargets.remove(act.getID());
+               }
+            }
+         }
+      }
+      else if ( mSeqTree != null && mSeqTree.getActivityMap() != null )
       {
          Iterator activities = mSeqTree.getActivityMap().values().iterator();
          while ( activities.hasNext() )
@@ -2662,17 +3142,13 @@ SeqReportActivityStatus, Serializable
     * This method evaluates 'Exit' rules of all active clusters.
     * <br><br>This is an implementation of the Sequencing Exit Action Rules
     * Subprocess (TB.2.1).
-    *
-    * @param iTentative Indicates if descendent activities should be terminated.
     */
-   private void evaluateExitRules(boolean iTentative)
+   private void evaluateExitRules()
    {
 
       if ( _Debug )
       {
          System.out.println("  :: ADLSequencer --> BEGIN - evaluateExitRules");
-         System.out.println("  ::--> REAL? -- " +
-                            ((iTentative) ? "NO" : "YES"));
       }
 
       // Clear global state
@@ -2750,16 +3226,12 @@ SeqReportActivityStatus, Serializable
                }
             }
 
-            // If this was a 'real' evaluation, end the appropriate attempts.
-            if ( !iTentative )
-            {
-               // If an activity exited, end attempts at all remaining cluster
-               // on the 'active' branch.
-               terminateDescendentAttempts(exitAt);
+            // If an activity exited, end attempts at all remaining cluster
+            // on the 'active' branch.
+            terminateDescendentAttempts(exitAt);
 
-               // End the attempt on the 'exited' activity
-               endAttempt(exitAt, false);
-            }
+            // End the attempt on the 'exited' activity
+            endAttempt(exitAt);
 
             // Sequencing requests begin at the 'exited' activity
             mSeqTree.setFirstCandidate(exitAt);
@@ -2785,13 +3257,11 @@ SeqReportActivityStatus, Serializable
     *
     * @param iRequest   Identifies the termination request being processed.
     *
-    * @param iTentative Indicates if attempts should ended.
-    *
     * @return May return a sequencing request (<code>String</code>) that over
     *         rides any existing sequencing request, or
     *         <code>null</code>.
     */
-   private String doTerminationRequest(String iRequest, boolean iTentative)
+   private String doTerminationRequest(String iRequest)
    {
 
       // This method implements the Termination Request Process (TB.2.3).
@@ -2810,8 +3280,6 @@ SeqReportActivityStatus, Serializable
          System.out.println("  :: ADLSequencer --> BEGIN - " +
                             "doTerminationRequest");
          System.out.println("  ::--> Request:  " + iRequest);
-         System.out.println("  ::--> Real?     " + 
-                            ((iTentative) ? "NO" : "YES"));
       }
 
       // The Termination Request Process may return a sequencing request
@@ -2867,10 +3335,10 @@ SeqReportActivityStatus, Serializable
          {
 
             // End the attempt on the current activity
-            endAttempt(cur, iTentative);
+            endAttempt(cur);
 
             // Evaluate exit action rules
-            evaluateExitRules(iTentative);
+            evaluateExitRules();
 
             if ( ! cur.getIsSuspended() )
             {
@@ -2963,7 +3431,7 @@ SeqReportActivityStatus, Serializable
                               {
    
                                  mSeqTree.setFirstCandidate(process);
-                                 endAttempt(process, iTentative);
+                                 endAttempt(process);
    
                                  exited = true;
                               }
@@ -3036,35 +3504,21 @@ SeqReportActivityStatus, Serializable
             System.out.println("  ::--> Processing EXIT ALL");
          }
 
-         // Don't modify the activity tree if this is only a tentative exit
-         if ( !iTentative )
-         {
-            SeqActivity process = mSeqTree.getFirstCandidate();
+         SeqActivity process = mSeqTree.getFirstCandidate();
 
-            if ( process.getIsActive() )
-            {
-               endAttempt(process, false);
-            }
-
-            terminateDescendentAttempts(mSeqTree.getRoot());
+         if ( process.getIsActive() )
+         {
+            endAttempt(process);
+         }
 
-            endAttempt(mSeqTree.getRoot(), false);
-            
-            // only exit if we're not retrying the root
-            if ( seqReq != ADLSequencer.SEQ_RETRY )
-            {
-               seqReq = ADLSequencer.SEQ_EXIT;
-            }
-            
-            // Start any subsequent seqencing request from the root
-            mSeqTree.setFirstCandidate(mSeqTree.getRoot());
+         terminateDescendentAttempts(mSeqTree.getRoot());
 
-            }
-         else
+         endAttempt(mSeqTree.getRoot());
+         
+         // only exit if we're not retrying the root
+         if ( seqReq != ADLSequencer.SEQ_RETRY )
          {
-            // Although this was a tentative evaluation, remember that we
-            // processed the exitAll so that a retry from the root can be
-            // tested
+            seqReq = ADLSequencer.SEQ_EXIT;
          }
 
          // Start any subsequent seqencing request from the root
@@ -3073,52 +3527,48 @@ SeqReportActivityStatus, Serializable
       }
       else if ( iRequest.equals(ADLSequencer.TER_SUSPENDALL) )
       {
-         // Don't modify the activty tree if this is only a tentative exit
-         if ( !iTentative )
-         {
-            SeqActivity process = mSeqTree.getFirstCandidate();
+         SeqActivity process = mSeqTree.getFirstCandidate();
 
-            reportSuspension(process.getID(), true);
+         reportSuspension(process.getID(), true);
+         
+         if ( process.getIsActive() )
+         {
+            // Invoke rollup
+            invokeRollup(process, null);
             
-            if ( process.getIsActive() )
-            {
-               // Invoke rollup
-               invokeRollup(process, null);
-               
-               mSeqTree.setSuspendAll(process);
+            mSeqTree.setSuspendAll(process);
 
-               // Check to see if the SCO's learner attempt ended
-               if ( !process.getIsSuspended() )
-               {
-                  process.incrementSCOAttempt();
-               }
+            // Check to see if the SCO's learner attempt ended
+            if ( !process.getIsSuspended() )
+            {
+               process.incrementSCOAttempt();
             }
-            else
+         }
+         else
+         {
+            if ( !process.getIsSuspended() )
             {
-               if ( !process.getIsSuspended() )
-               {
-                  mSeqTree.setSuspendAll(process.getParent());
+               mSeqTree.setSuspendAll(process.getParent());
 
-                  // Make sure there was a an activity to suspend
-                  if ( mSeqTree.getSuspendAll() == null )
-                  {
-                     mValidTermination = false;
-                  }
+               // Make sure there was a an activity to suspend
+               if ( mSeqTree.getSuspendAll() == null )
+               {
+                  mValidTermination = false;
                }
             }
+         }
 
-            if ( mValidTermination )
-            {
-               SeqActivity start = mSeqTree.getSuspendAll();
+         if ( mValidTermination )
+         {
+            SeqActivity start = mSeqTree.getSuspendAll();
 
-               // This process suspends all clusters up to the root
-               while ( start != null )
-               {
-                  start.setIsActive(false);
-                  start.setIsSuspended(true);
+            // This process suspends all clusters up to the root
+            while ( start != null )
+            {
+               start.setIsActive(false);
+               start.setIsSuspended(true);
 
-                  start = start.getParent();
-               }
+               start = start.getParent();
             }
          }
 
@@ -3128,53 +3578,45 @@ SeqReportActivityStatus, Serializable
       }
       else if ( iRequest.equals(ADLSequencer.TER_ABANDON) )
       {
-         // Don't modify the activty tree if this is only a tentativen exit
-         if ( !iTentative )
-         {
-            SeqActivity process = mSeqTree.getFirstCandidate();
+         SeqActivity process = mSeqTree.getFirstCandidate();
 
-            if ( _Debug )
-            {
-               System.out.println("  --> CLEARING STATE ABANDON");
-            }
+         if ( _Debug )
+         {
+            System.out.println("  --> CLEARING STATE ABANDON");
+         }
 
-            // Ignore any status values reported by the content
-            process.setProgress(ADLTracking.TRACK_UNKNOWN);
-            process.setObjSatisfied(null, ADLTracking.TRACK_UNKNOWN);
-            process.clearObjMeasure(null);
+         // Ignore any status values reported by the content
+         process.setProgress(ADLTracking.TRACK_UNKNOWN);
+         process.setObjSatisfied(null, ADLTracking.TRACK_UNKNOWN);
+         process.clearObjMeasure(null);
 
-            process.setIsActive(false);
-         }
+         process.setIsActive(false);
       }
       else if ( iRequest.equals(ADLSequencer.TER_ABANDONALL) )
       {
-         // Don't modify the activty tree if this is only a tentative exit
-         if ( !iTentative )
-         {
-            SeqActivity process = mSeqTree.getFirstCandidate();
+         SeqActivity process = mSeqTree.getFirstCandidate();
 
-            if ( _Debug )
-            {
-               System.out.println("  --> CLEARING STATE ABANDONALL");
-            }
+         if ( _Debug )
+         {
+            System.out.println("  --> CLEARING STATE ABANDONALL");
+         }
 
-            // Ignore any status values reported by the content
-            process.setProgress(ADLTracking.TRACK_UNKNOWN);
-            process.setObjSatisfied(null, ADLTracking.TRACK_UNKNOWN);
-            process.clearObjMeasure(null);
+         // Ignore any status values reported by the content
+         process.setProgress(ADLTracking.TRACK_UNKNOWN);
+         process.setObjSatisfied(null, ADLTracking.TRACK_UNKNOWN);
+         process.clearObjMeasure(null);
 
-            while ( process != null )
-            {
-               process.setIsActive(false);
+         while ( process != null )
+         {
+            process.setIsActive(false);
 
-               process = process.getParent();
-            }
+            process = process.getParent();
+         }
 
-            seqReq = ADLSequencer.SEQ_EXIT;
+         seqReq = ADLSequencer.SEQ_EXIT;
 
-            // Start any subsequent seqencing request from the root
-            mSeqTree.setFirstCandidate(mSeqTree.getRoot());
-         }
+         // Start any subsequent seqencing request from the root
+         mSeqTree.setFirstCandidate(mSeqTree.getRoot());
       }
       else
       {
@@ -3187,11 +3629,7 @@ SeqReportActivityStatus, Serializable
          mValidTermination = false;
       }
 
-      // If this was a 'real' termination request, move the current activity
-      if ( !iTentative )
-      {
-         mSeqTree.setCurrentActivity(mSeqTree.getFirstCandidate());
-      }
+      mSeqTree.setCurrentActivity(mSeqTree.getFirstCandidate());
 
       String tmpID = mSeqTree.getFirstCandidate().getID();
 
@@ -3208,7 +3646,8 @@ SeqReportActivityStatus, Serializable
        
       }
       
-      ADLSeqUtilities.deleteDataStore((iRequest.equals(TER_ABANDONALL) || 
+      ADLSeqUtilities.deleteDataStore(mSeqTree,
+                                      (iRequest.equals(TER_ABANDONALL) || 
                                        iRequest.equals(TER_EXITALL)) &&
                                        !getRoot().getIsSuspended() && 
                                        !mSeqTree.dataScopedForAllAttempts());
@@ -3454,7 +3893,18 @@ SeqReportActivityStatus, Serializable
             }
          }
 
-         if ( deepest != null )
+         if ( deepest != null && deepest.isRollupCurrent() )
+         {
+            if ( _Debug )
+            {
+               System.out.println("  ::--> Unchanged :: " + deepest.getID());
+            }
+
+            // Nothing this activity's rollup reads has changed, so its status
+            // can not change either
+            rollupSet.remove(deepest.getID());
+         }
+         else if ( deepest != null )
          {
             doOverallRollup(deepest, rollupSet);
 
@@ -3533,15 +3983,20 @@ SeqReportActivityStatus, Serializable
       }
 
       // Attempt to get Rollup Rule information from the activity node
-      SeqRollupRuleset rollupRules = ioTarget.getRollupRules();
+      SeqRollupRuleset rollupRules = ioTarget.getRollupRuleset();
+
+      // Apply the rollup processes to the activity -- its parent is only
+      // affected if the activity's status changes
+      double[] previous = ioTarget.beginRollup();
 
-      if ( rollupRules == null )
+      try
       {
-         rollupRules = new SeqRollupRuleset();
+         rollupRules.evaluate(ioTarget);
+      }
+      finally
+      {
+         ioTarget.endRollup(previous);
       }
-
-      // Apply the rollup processes to the activity
-      rollupRules.evaluate(ioTarget);
 
       if ( _Debug )
       {
@@ -4026,7 +4481,7 @@ SeqReportActivityStatus, Serializable
 
                   terminateDescendentAttempts(mSeqTree.getRoot());
 
-                  endAttempt(mSeqTree.getRoot(), false);
+                  endAttempt(mSeqTree.getRoot());
             
                   // Start any subsequent seqencing request from the root
                   mSeqTree.setFirstCandidate(mSeqTree.getRoot());
@@ -4580,7 +5035,7 @@ SeqReportActivityStatus, Serializable
 
                            terminateDescendentAttempts(common);
 
-                           endAttempt(common, false);
+                           endAttempt(common);
 
                            // Move the current activity
                            mSeqTree.setCurrentActivity(target);
@@ -4664,24 +5119,16 @@ SeqReportActivityStatus, Serializable
          }
       }
 
-      while ( !done )
+      if ( !done )
       {
-         // Test if the 'to' activity is a decendent of 'from' parent
-         boolean success = isDescendent(stepFrom, iTo);
-
-         // If we found the target activity, we are done
-         if ( success )
-         {
-            ancestor = stepFrom;
-            done = true;
-
-            continue;
-         }
-
-         // If this isn't the common parent, move up the tree
-         if ( !done )
+         // Move up from the 'from' parent until the 'to' activity is a 
+         // descendent
+         if ( stepFrom != null )
          {
-            stepFrom = stepFrom.getParent();
+            // Everything is a descendent of the root
+            ancestor = ( iTo != null ) ? 
+                       mSeqTree.getCommonAncestor(stepFrom, iTo) :
+                       mSeqTree.getRoot();
          }
       }
 
@@ -4756,15 +5203,8 @@ SeqReportActivityStatus, Serializable
       }
       else if ( iRoot != null && iTarget != null )
       {
-         while ( iTarget != null && !found )
-         {
-            if ( iTarget == iRoot )
-            {
-               found = true;
-            }
-
-            iTarget = iTarget.getParent();
-         }
+         // Compare the activities' positions in the tree
+         found = mSeqTree.isAncestor(iRoot, iTarget);
       }
 
       if ( _Debug )
@@ -6013,7 +6453,7 @@ SeqReportActivityStatus, Serializable
          while ( walk != common )
          {
 
-            endAttempt(walk, false);
+            endAttempt(walk);
 
             walk = walk.getParent();
          }
@@ -6038,10 +6478,8 @@ SeqReportActivityStatus, Serializable
     * maintenance on the activity tree.
     *
     * @param iTarget Activity for which an attempt will end.
-    *
-    * @param iTentative Indicates if the attempt should 'really' end.
     */
-   private void endAttempt(SeqActivity iTarget, boolean iTentative)
+   private void endAttempt(SeqActivity iTarget)
    {
       // This is an implementation of the End Attempt Process (UP.4)
 
@@ -6058,8 +6496,6 @@ SeqReportActivityStatus, Serializable
             System.out.println("  ::--> ERROR : NULL Activity");
          }
 
-         System.out.println("  ::--> REAL?    -- " +
-                            ((iTentative) ? "NO" : "YES"));
       }
 
       if ( iTarget != null )
@@ -6103,58 +6539,49 @@ SeqReportActivityStatus, Serializable
             // The activity is a cluster, check if any of its children are
             // suspended.
 
-            // Only set suspended state if this is a 'real' termiantion
-            if ( !iTentative )
-            {
+            iTarget.setIsSuspended(false);
 
-               iTarget.setIsSuspended(false);
+            for ( int i = 0; i < children.size(); i++ )
+            {
+               SeqActivity act = (SeqActivity)children.elementAt(i);
 
-               for ( int i = 0; i < children.size(); i++ )
+               if ( act.getIsSuspended() )
                {
-                  SeqActivity act = (SeqActivity)children.elementAt(i);
-
-                  if ( act.getIsSuspended() )
-                  {
-                     iTarget.setIsSuspended(true);
-                     break;
-                  }
+                  iTarget.setIsSuspended(true);
+                  break;
                }
+            }
 
-               // If the cluster is not suspended check for selection and
-               // randomization 
-               if ( !iTarget.getIsSuspended() )
+            // If the cluster is not suspended check for selection and
+            // randomization 
+            if ( !iTarget.getIsSuspended() )
+            {
+               if ( iTarget.getSelectionTiming().
+                    equals(SeqActivity.TIMING_EACHNEW) )
                {
-                  if ( iTarget.getSelectionTiming().
-                       equals(SeqActivity.TIMING_EACHNEW) )
-                  {
-                     doSelection(iTarget);
-                     iTarget.setSelection(true);
-                  }
+                  doSelection(iTarget);
+                  iTarget.setSelection(true);
+               }
 
-                  if ( iTarget.getRandomTiming().
-                       equals(SeqActivity.TIMING_EACHNEW) )
-                  {
-                     doRandomize(iTarget);
-                     iTarget.setRandomized(true);
-                  }
+               if ( iTarget.getRandomTiming().
+                    equals(SeqActivity.TIMING_EACHNEW) )
+               {
+                  doRandomize(iTarget);
+                  iTarget.setRandomized(true);
                }
             }
          }
 
-         // The activity becomes inactive if this is a 'real' termination
-         if ( !iTentative )
-         {
-            iTarget.setIsActive(false);
-
-            if ( iTarget.getIsTracked() )
-            {
-               // Make sure satisfaction is updated according to measure
-               iTarget.triggerObjMeasure();
-            }
+         iTarget.setIsActive(false);
 
-            // Invoke rollup
-            invokeRollup(iTarget, getGlobalObjs(iTarget));//null);            
+         if ( iTarget.getIsTracked() )
+         {
+            // Make sure satisfaction is updated according to measure
+            iTarget.triggerObjMeasure();
          }
+
+         // Invoke rollup
+         invokeRollup(iTarget, getGlobalObjs(iTarget));//null);            
       }
 
       if ( _Debug )
@@ -7493,6 +7920,10 @@ SeqReportActivityStatus, Serializable
             {
                boolean statusChange = target.clearObjCompletionStatus(iObjID);
 
+               if ( statusChange )
+               {
+                  mSeqTree.activityChanged(target);
+               }
             }
             else
             {
@@ -7558,6 +7989,7 @@ SeqReportActivityStatus, Serializable
                  mSeqTree.getCurrentActivity() == target )
             {
                target.setObjCompletionStatus(iObjID, iCompletion);
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -7623,6 +8055,10 @@ SeqReportActivityStatus, Serializable
             {
                boolean statusChange = target.clearObjProgressMeasure(iObjID);
 
+               if ( statusChange )
+               {
+                  mSeqTree.activityChanged(target);
+               }
             }
             else
             {
@@ -7688,6 +8124,7 @@ SeqReportActivityStatus, Serializable
                  mSeqTree.getCurrentActivity() == target )
             {
                target.setObjProgressMeasure(iObjID, iProgressMeasure);
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -7753,6 +8190,10 @@ SeqReportActivityStatus, Serializable
             {
                boolean statusChange = target.clearObjMaxScore(iObjID);
 
+               if ( statusChange )
+               {
+                  mSeqTree.activityChanged(target);
+               }
             }
             else
             {
@@ -7818,6 +8259,7 @@ SeqReportActivityStatus, Serializable
                  mSeqTree.getCurrentActivity() == target )
             {
                target.setObjMaxScore(iObjID, iMaxScore);
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -7883,6 +8325,10 @@ SeqReportActivityStatus, Serializable
             {
                boolean statusChange = target.clearObjMinScore(iObjID);
 
+               if ( statusChange )
+               {
+                  mSeqTree.activityChanged(target);
+               }
             }
             else
             {
@@ -7947,6 +8393,7 @@ SeqReportActivityStatus, Serializable
                  mSeqTree.getCurrentActivity() == target )
             {
                target.setObjMinScore(iObjID, iMinScore);
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -8011,6 +8458,10 @@ SeqReportActivityStatus, Serializable
             {
                boolean statusChange = target.clearObjRawScore(iObjID);
 
+               if ( statusChange )
+               {
+                  mSeqTree.activityChanged(target);
+               }
             }
             else
             {
@@ -8076,6 +8527,7 @@ SeqReportActivityStatus, Serializable
                  mSeqTree.getCurrentActivity() == target )
             {
                target.setObjRawScore(iObjID, iRawScore);
+               mSeqTree.activityChanged(target);
             }
             else
             {
@@ -8141,8 +8593,8 @@ SeqReportActivityStatus, Serializable
 
                if ( statusChange )
                {
-                  // Revalidate the navigation requests
-                  validateRequests();
+                  // The navigation requests are revalidated when next needed
+                  mSeqTree.activityChanged(target);
                }
             }
             else
@@ -29,6 +29,9 @@ package org.adl.sequencer;
 import java.io.Serializable;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation of information required to display a valid table of contents
@@ -69,6 +72,11 @@ public class ADLTOC implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 2;
+
    /**
     * The title of this entry in the TOC.
     */
@@ -124,6 +132,12 @@ public class ADLTOC implements Serializable
     */
    public String mID = null;
 
+   /**
+    * The version of the table of contents in which the enabled, visible,
+    * current or selectable state of this entry last changed.
+    */
+   public int mVersion = 0;
+
 
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
    
@@ -152,9 +166,105 @@ public class ADLTOC implements Serializable
          System.out.println("  ::--> Visible:     " + mIsVisible);
          System.out.println("  ::--> Current:     " + mIsCurrent);
          System.out.println("  ::--> Selectable:  " + mIsSelectable);
+         System.out.println("  ::--> Version:     " + mVersion);
 
          System.out.println("  :: ADLTOC       --> END   - dumpState");
       }
    }
 
+   /**
+    * Determines if this entry describes the same activity, at the same
+    * position in the table of contents, as another entry.
+    * 
+    * @param iOther The other entry.
+    * 
+    * @return <code>true</code> if only the state of the two entries may
+    *         differ; otherwise <code>false</code>.
+    */
+   boolean isSameEntry(ADLTOC iOther)
+   {
+      return iOther != null &&
+             mDepth == iOther.mDepth &&
+             mCount == iOther.mCount &&
+             mParent == iOther.mParent &&
+             mLeaf == iOther.mLeaf &&
+             mInChoice == iOther.mInChoice &&
+             ( mID == null ? iOther.mID == null : mID.equals(iOther.mID) ) &&
+             ( mTitle == null ? iOther.mTitle == null : 
+                                mTitle.equals(iOther.mTitle) );
+   }
+
+   /**
+    * Determines if this entry has the same enabled, visible, current and
+    * selectable state as another entry.
+    * 
+    * @param iOther The other entry.
+    * 
+    * @return <code>true</code> if the state of the two entries is the same;
+    *         otherwise <code>false</code>.
+    */
+   boolean isSameState(ADLTOC iOther)
+   {
+      return mIsEnabled == iOther.mIsEnabled &&
+             mIsVisible == iOther.mIsVisible &&
+             mIsCurrent == iOther.mIsCurrent &&
+             mIsSelectable == iOther.mIsSelectable;
+   }
+
+   /**
+    * Writes this table of contents entry.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mTitle);
+      ioOut.writeString(mID);
+      ioOut.writeInt(mDepth);
+      ioOut.writeInt(mCount);
+      ioOut.writeInt(mParent);
+      ioOut.writeBoolean(mLeaf);
+      ioOut.writeBoolean(mInChoice);
+      ioOut.writeBoolean(mIsEnabled);
+      ioOut.writeBoolean(mIsVisible);
+      ioOut.writeBoolean(mIsCurrent);
+      ioOut.writeBoolean(mIsSelectable);
+      ioOut.writeInt(mVersion);
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a table of contents entry.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The entry.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static ADLTOC decode(CodecInput iIn) throws IOException
+   {
+      ADLTOC toc = new ADLTOC();
+
+      int version = iIn.beginRecord();
+      toc.mTitle = iIn.readString();
+      toc.mID = iIn.readString();
+      toc.mDepth = iIn.readInt();
+      toc.mCount = iIn.readInt();
+      toc.mParent = iIn.readInt();
+      toc.mLeaf = iIn.readBoolean();
+      toc.mInChoice = iIn.readBoolean();
+      toc.mIsEnabled = iIn.readBoolean();
+      toc.mIsVisible = iIn.readBoolean();
+      toc.mIsCurrent = iIn.readBoolean();
+      toc.mIsSelectable = iIn.readBoolean();
+      toc.mVersion = ( version >= 2 ) ? iIn.readInt() : 0;
+      iIn.endRecord();
+
+      return toc;
+   }
+
 }  // end ADLTOC
@@ -29,9 +29,13 @@ package org.adl.sequencer;
 import org.adl.util.debug.DebugIndicator;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Vector;
 import java.util.Enumeration;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation of information tracked for each attempt at an activity.<br><br>
@@ -63,7 +67,7 @@ import java.util.Enumeration;
  * 
  * @author ADL Technical Team
  */
-public class ADLTracking implements Serializable
+public class ADLTracking implements Serializable, Cloneable
 {
 
    /**
@@ -117,6 +121,11 @@ public class ADLTracking implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * Indicates if the recorded Progress status is invalid
     */
@@ -178,6 +187,15 @@ public class ADLTracking implements Serializable
    
    -*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*/
 
+   /**
+    * Initializes empty tracking information, which is then read by 
+    * <code>decode()</code>.
+    */
+   private ADLTracking()
+   {
+      // Filled in by decode()
+   }
+
    /**
     * Initializes tracking status information for this attempt on the
     * associated activity.
@@ -582,4 +600,134 @@ public class ADLTracking implements Serializable
       return mProgressThreshold;
    }
 
+   /**
+    * Creates a copy of this attempt's tracking information.  The status of
+    * each objective is copied; the objective definitions are shared.
+    * 
+    * @return The copy.
+    */
+   ADLTracking copy()
+   {
+      ADLTracking track = null;
+
+      try
+      {
+         track = (ADLTracking)super.clone();
+      }
+      catch ( CloneNotSupportedException e )
+      {
+         throw new InternalError(e.toString());
+      }
+
+      if ( mObjectives != null )
+      {
+         track.mObjectives = new Hashtable();
+
+         Enumeration theEnum = mObjectives.keys();
+
+         while ( theEnum.hasMoreElements() )
+         {
+            String key = (String)theEnum.nextElement();
+
+            track.mObjectives.put(key, 
+               ((SeqObjectiveTracking)mObjectives.get(key)).copy());
+         }
+      }
+
+      return track;
+   }
+
+   /**
+    * Writes this attempt's tracking information.
+    * 
+    * @param ioOut The output.
+    * 
+    * @param iObjs The activity's objectives (<code>SeqObjective</code>), or
+    *              <code>null</code>.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut, Vector iObjs) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeBoolean(mDirtyPro);
+      ioOut.writeBoolean(mProgressDeterminedByMeasure);
+      ioOut.writeString(mPrimaryObj);
+      ioOut.writeDouble(mProgressThreshold);
+      ioOut.writeDouble(mProgressWeight);
+      ADLDuration.encode(ioOut, mAttemptAbDur);
+      ADLDuration.encode(ioOut, mAttemptExDur);
+      ioOut.writeLong(mAttempt);
+
+      if ( mObjectives == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mObjectives.size());
+
+         // Written in ID order so equal state encodes identically
+         Object[] ids = mObjectives.keySet().toArray();
+         Arrays.sort(ids);
+
+         for ( int i = 0; i < ids.length; i++ )
+         {
+            String objID = (String)ids[i];
+
+            ioOut.writeString(objID);
+            ((SeqObjectiveTracking)mObjectives.get(objID)).encode(ioOut, 
+                                                                  iObjs);
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads an attempt's tracking information.
+    * 
+    * @param iIn   The input.
+    * 
+    * @param iObjs The activity's objectives (<code>SeqObjective</code>), or
+    *              <code>null</code>.
+    * 
+    * @return The tracking information.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static ADLTracking decode(CodecInput iIn, Vector iObjs) throws IOException
+   {
+      ADLTracking track = new ADLTracking();
+
+      iIn.beginRecord();
+      track.mDirtyPro = iIn.readBoolean();
+      track.mProgressDeterminedByMeasure = iIn.readBoolean();
+      track.mPrimaryObj = iIn.readString();
+      track.mProgressThreshold = iIn.readDouble();
+      track.mProgressWeight = iIn.readDouble();
+      track.mAttemptAbDur = ADLDuration.decode(iIn);
+      track.mAttemptExDur = ADLDuration.decode(iIn);
+      track.mAttempt = iIn.readLong();
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         track.mObjectives = new Hashtable();
+
+         for ( int i = 0; i < count; i++ )
+         {
+            String objID = iIn.readString();
+
+            track.mObjectives.put(objID, 
+                                  SeqObjectiveTracking.decode(iIn, iObjs));
+         }
+      }
+
+      iIn.endRecord();
+
+      return track;
+   }
+
 }  // end ADLTracking
@@ -26,11 +26,16 @@ Nothing in this license impairs or restricts the author's moral rights.
 
 package org.adl.sequencer;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Enumeration;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Vector;
 
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
+
 /**
  * Encapsulation of information required for delivery.<br><br>
  * 
@@ -118,4 +123,265 @@ public class ADLValidRequests implements Serializable
     */
    public Vector mTOC = null;
 
+   /**
+    * The version of the table of contents.  It is incremented each time the
+    * state of one of its entries, or the set of entries itself, changes.
+    */
+   public int mTOCVersion = 0;
+
+   /**
+    * The version in which the set of table of contents entries last changed.
+    * Versions before this one cannot be brought up to date by changing the
+    * state of individual entries.
+    */
+   public int mTOCBase = 0;
+
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 2;
+
+
+   /**
+    * Provides the table of contents entries whose state changed since a
+    * given version of the table of contents, so a client that displays that
+    * version only needs to update those entries.
+    * 
+    * @param iVersion The version of the table of contents the client
+    *                 displays.
+    * 
+    * @return The changed entries (list of <code>ADLTOC</code>), or
+    *         <code>null</code> if the whole table of contents must be
+    *         displayed again.
+    */
+   public Vector getTOCChanges(int iVersion)
+   {
+      if ( iVersion < mTOCBase || iVersion > mTOCVersion )
+      {
+         return null;
+      }
+
+      Vector changes = new Vector();
+
+      if ( mTOC != null )
+      {
+         for ( int i = 0; i < mTOC.size(); i++ )
+         {
+            ADLTOC toc = (ADLTOC)mTOC.elementAt(i);
+
+            if ( toc.mVersion > iVersion )
+            {
+               changes.add(toc);
+            }
+         }
+      }
+
+      return changes;
+   }
+
+   /**
+    * Writes this set of valid requests.  Choice targets that are also 
+    * table of contents entries are written as their index in the table of
+    * contents; jump targets are written as activity IDs.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeBoolean(mStart);
+      ioOut.writeBoolean(mResume);
+      ioOut.writeBoolean(mContinue);
+      ioOut.writeBoolean(mContinueExit);
+      ioOut.writeBoolean(mPrevious);
+      ioOut.writeBoolean(mSuspend);
+      ioOut.writeInt(mTOCVersion);
+      ioOut.writeInt(mTOCBase);
+
+      if ( mTOC == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mTOC.size());
+
+         for ( int i = 0; i < mTOC.size(); i++ )
+         {
+            ((ADLTOC)mTOC.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      if ( mChoice == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mChoice.size());
+
+         // Written in ID order so equal state encodes identically
+         Object[] ids = mChoice.keySet().toArray();
+         Arrays.sort(ids);
+
+         for ( int i = 0; i < ids.length; i++ )
+         {
+            String id = (String)ids[i];
+            ADLTOC toc = (ADLTOC)mChoice.get(id);
+            int index = ( mTOC != null ) ? indexOf(mTOC, toc) : -1;
+
+            ioOut.writeString(id);
+            ioOut.writeInt(index);
+
+            if ( index == -1 )
+            {
+               toc.encode(ioOut);
+            }
+         }
+      }
+
+      if ( mJump == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mJump.size());
+
+         Object[] ids = mJump.keySet().toArray();
+         Arrays.sort(ids);
+
+         for ( int i = 0; i < ids.length; i++ )
+         {
+            String id = (String)ids[i];
+
+            ioOut.writeString(id);
+            ioOut.writeString(((SeqActivity)mJump.get(id)).getID());
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a set of valid requests.
+    * 
+    * @param iIn         The input.
+    * 
+    * @param iActivities The activities of the tree, keyed by ID, used to 
+    *                    resolve jump targets.
+    * 
+    * @return The set of valid requests.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static ADLValidRequests decode(CodecInput iIn, Hashtable iActivities) 
+      throws IOException
+   {
+      ADLValidRequests valid = new ADLValidRequests();
+
+      int version = iIn.beginRecord();
+      valid.mStart = iIn.readBoolean();
+      valid.mResume = iIn.readBoolean();
+      valid.mContinue = iIn.readBoolean();
+      valid.mContinueExit = iIn.readBoolean();
+      valid.mPrevious = iIn.readBoolean();
+      valid.mSuspend = iIn.readBoolean();
+
+      if ( version >= 2 )
+      {
+         valid.mTOCVersion = iIn.readInt();
+         valid.mTOCBase = iIn.readInt();
+      }
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         valid.mTOC = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            valid.mTOC.add(ADLTOC.decode(iIn));
+         }
+      }
+
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         valid.mChoice = new Hashtable();
+
+         for ( int i = 0; i < count; i++ )
+         {
+            String id = iIn.readString();
+            int index = iIn.readInt();
+            ADLTOC toc = null;
+
+            if ( index == -1 )
+            {
+               toc = ADLTOC.decode(iIn);
+            }
+            else if ( valid.mTOC != null && index >= 0 && 
+                      index < valid.mTOC.size() )
+            {
+               toc = (ADLTOC)valid.mTOC.elementAt(index);
+            }
+            else
+            {
+               throw new IOException("Unknown table of contents entry: " + 
+                                     index);
+            }
+
+            valid.mChoice.put(id, toc);
+         }
+      }
+
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         valid.mJump = new Hashtable();
+
+         for ( int i = 0; i < count; i++ )
+         {
+            String id = iIn.readString();
+            Object target = iActivities.get(iIn.readString());
+
+            if ( target != null )
+            {
+               valid.mJump.put(id, target);
+            }
+         }
+      }
+
+      iIn.endRecord();
+
+      return valid;
+   }
+
+   /**
+    * Finds an object in a list by identity.
+    * 
+    * @param iList   The list.
+    * 
+    * @param iObject The object.
+    * 
+    * @return The index of the object, or -1 if it is not in the list.
+    */
+   private static int indexOf(Vector iList, Object iObject)
+   {
+      for ( int i = 0; i < iList.size(); i++ )
+      {
+         if ( iList.elementAt(i) == iObject )
+         {
+            return i;
+         }
+      }
+
+      return -1;
+   }
+
 }  // end ADLValidRequests
@@ -29,10 +29,15 @@ import org.adl.util.debug.DebugIndicator;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Vector;
 import java.util.Hashtable;
 import java.util.Enumeration;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Implementation of one node of an activity tree.<br>
@@ -112,6 +117,11 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * This describes the sequencing definition model element 2
     */
@@ -190,6 +200,43 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
     */
    private int mActiveOrder = -1;
 
+   /**
+    * The position of this activity in a preorder traversal of all activities
+    * in the activity tree; its dense index in the tree.  This is derived from
+    * the tree's structure and is not persisted.
+    */
+   private transient int mPreOrder = -1;
+
+   /**
+    * The preorder position of the last descendent of this activity, or of
+    * this activity if it has no children.  This is derived from the tree's
+    * structure and is not persisted.
+    */
+   private transient int mLastDescendent = -1;
+
+   /**
+    * Indicates that nothing this activity's rollup reads has changed since
+    * the activity was last rolled up.  This is not persisted; an activity is
+    * always rolled up the first time it is in a rollup set.
+    */
+   private transient boolean mRollupCurrent = false;
+
+   /**
+    * Indicates that this activity is being rolled up.
+    */
+   private transient boolean mInRollup = false;
+
+   /**
+    * The running totals of this activity's rollup inputs, maintained for
+    * wide clusters.
+    */
+   private transient SeqRollupAggregate mRollupAggregate = null;
+
+   /**
+    * The default rollup rules used when none are defined for this activity.
+    */
+   private transient SeqRollupRuleset mDefaultRollupRules = null;
+
    /**
     * This describes if the activity is in the 'selected' set
     */
@@ -3072,6 +3119,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::-->  " + iSuspended);
       }
 
+      rollupStateChanged();
+
       mIsSuspended = iSuspended;
 
       if ( _Debug )
@@ -3177,6 +3226,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::-->  " + iProgress);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mIsTracked )
@@ -3451,6 +3502,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  :: SeqActivity     --> BEGIN - " + "clearObjMeasure");
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mCurTracking != null )
@@ -3504,6 +3557,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iObjID);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       // A null objective indicates the primary objective
@@ -3562,6 +3617,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iMeasure);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mIsTracked )
@@ -3633,6 +3690,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iMeasure);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mIsTracked )
@@ -3963,6 +4022,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  :: SeqActivity     --> BEGIN - " + "triggerObjMeasure");
       }
 
+      rollupStateChanged();
+
       double measure = 0.0;
 
       if ( mIsTracked )
@@ -4267,6 +4328,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iStatus);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mIsTracked )
@@ -4345,6 +4408,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iStatus);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mIsTracked )
@@ -4582,6 +4647,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          }
       }
 
+      rollupStateChanged();
+
       if ( mCurTracking != null )
       {
          mCurTracking.mAttemptAbDur = iDur;
@@ -4755,6 +4822,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::-->  " + mActivityID);
       }
 
+      rollupStateChanged();
+
       // Store existing tracking information for historical purposes
       if ( mCurTracking != null )
       {
@@ -4825,6 +4894,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
    void setDirtyObj()
    {
 
+      rollupStateChanged();
+
       if ( mCurTracking != null )
       {
          mCurTracking.setDirtyObj();
@@ -4851,6 +4922,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
     */
    void setDirtyPro()
    {
+      rollupStateChanged();
+
       if ( mCurTracking != null )
       {
          mCurTracking.mDirtyPro = true;
@@ -4882,6 +4955,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  :: SeqActivity     --> BEGIN - " + "resetNumAttempt");
       }
 
+      rollupStateChanged();
+
       // Clear all current and historical tracking information.
       mNumAttempt = 0;
       mCurTracking = null;
@@ -5322,6 +5397,9 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
 
       ioChild.setParent(this);
 
+      mRollupAggregate = null;
+      mRollupCurrent = false;
+
       if ( _Debug )
       {
          System.out.println("  :: SeqActivity     --> END   - addChild");
@@ -5385,6 +5463,9 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          }
       }
 
+      mRollupAggregate = null;
+      mRollupCurrent = false;
+
       if ( _Debug )
       {
          System.out.println("  :: SeqActivity     --> END   - setChildren");
@@ -5814,6 +5895,248 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
       }
    }
 
+   /**
+    * Retrieves the position of this activity in a preorder traversal of the
+    * activity tree.
+    * 
+    * @return The preorder position of this activity.
+    */
+   int getPreOrder()
+   {
+      return mPreOrder;
+   }
+
+   /**
+    * Retrieves the preorder position of the last descendent of this activity.
+    * 
+    * @return The preorder position of the last descendent.
+    */
+   int getLastDescendent()
+   {
+      return mLastDescendent;
+   }
+
+   /**
+    * Sets the interval of preorder positions covered by this activity and
+    * its descendents.
+    * 
+    * @param iPreOrder       The preorder position of this activity.
+    * 
+    * @param iLastDescendent The preorder position of its last descendent.
+    */
+   void setInterval(int iPreOrder, int iLastDescendent)
+   {
+      mPreOrder = iPreOrder;
+      mLastDescendent = iLastDescendent;
+   }
+
+   /**
+    * Retrieves the set of rollup rules applied to this activity; the default
+    * rules are used if none are defined.
+    * 
+    * @return The set (<code>SeqRollupRuleset</code>) of rollup rules.
+    */
+   SeqRollupRuleset getRollupRuleset()
+   {
+      if ( mRollupRules != null )
+      {
+         return mRollupRules;
+      }
+
+      if ( mDefaultRollupRules == null )
+      {
+         mDefaultRollupRules = new SeqRollupRuleset();
+      }
+
+      return mDefaultRollupRules;
+   }
+
+   /**
+    * Retrieves the running totals of this activity's rollup inputs.
+    * 
+    * @return The aggregate (<code>SeqRollupAggregate</code>), or
+    *         <code>null</code> if this activity is not a wide cluster.
+    */
+   SeqRollupAggregate getRollupAggregate()
+   {
+      if ( mActiveChildren == null || 
+           mActiveChildren.size() < SeqRollupAggregate.MIN_CHILDREN )
+      {
+         mRollupAggregate = null;
+      }
+      else if ( mRollupAggregate == null || 
+                !mRollupAggregate.isFor(mActiveChildren) )
+      {
+         mRollupAggregate = new SeqRollupAggregate(mActiveChildren);
+      }
+
+      return mRollupAggregate;
+   }
+
+   /**
+    * Determines if rolling up this activity would leave its status unchanged,
+    * because nothing its rollup reads has changed since it was last rolled
+    * up.
+    * 
+    * @return <code>true</code> if the rollup of this activity can be skipped,
+    *         otherwise <code>false</code>.
+    */
+   boolean isRollupCurrent()
+   {
+      if ( !mRollupCurrent || getRollupRuleset().isTimeDependent() )
+      {
+         return false;
+      }
+
+      SeqRollupAggregate aggregate = getRollupAggregate();
+
+      if ( aggregate != null )
+      {
+         return !aggregate.isVolatile();
+      }
+
+      if ( mActiveChildren != null )
+      {
+         for ( int i = 0; i < mActiveChildren.size(); i++ )
+         {
+            SeqActivity child = (SeqActivity)mActiveChildren.elementAt(i);
+
+            if ( SeqRollupAggregate.isVolatile(child) )
+            {
+               return false;
+            }
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Indicates that this activity's rollup is starting.
+    * 
+    * @return The status of this activity, as read by its parent's rollup, 
+    *         before this rollup.
+    */
+   double[] beginRollup()
+   {
+      mInRollup = true;
+
+      return getRollupStatus();
+   }
+
+   /**
+    * Indicates that this activity's rollup is complete.  The parent is only
+    * told about the rollup if it changed this activity's status.
+    * 
+    * @param iPrevious The status returned by <code>beginRollup</code>.
+    */
+   void endRollup(double[] iPrevious)
+   {
+      mInRollup = false;
+
+      // If the rollup created the tracking information, some of its status
+      // changes were not applied; the next rollup may apply them
+      mRollupCurrent = ( iPrevious != null || mCurTracking == null );
+
+      if ( mParent != null && !Arrays.equals(iPrevious, getRollupStatus()) )
+      {
+         mParent.childRollupStateChanged(this);
+      }
+   }
+
+   /**
+    * Indicates that the state of one of this activity's children, as read by
+    * this activity's rollup, may have changed.
+    * 
+    * @param iChild The child activity.
+    */
+   void childRollupStateChanged(SeqActivity iChild)
+   {
+      mRollupCurrent = false;
+
+      if ( mRollupAggregate != null )
+      {
+         mRollupAggregate.childChanged(iChild);
+      }
+   }
+
+   /**
+    * Determines if any of this activity's objectives read the status of a 
+    * global shared objective.
+    * 
+    * @return <code>true</code> if an objective has read maps, otherwise
+    *         <code>false</code>.
+    */
+   boolean readsGlobalObjectives()
+   {
+      if ( mObjMaps != null )
+      {
+         Enumeration maps = mObjMaps.elements();
+
+         while ( maps.hasMoreElements() )
+         {
+            Vector mapSet = (Vector)maps.nextElement();
+
+            for ( int i = 0; i < mapSet.size(); i++ )
+            {
+               if ( ((SeqObjectiveMap)mapSet.elementAt(i)).hasReadMaps() )
+               {
+                  return true;
+               }
+            }
+         }
+      }
+
+      return false;
+   }
+
+   /**
+    * Indicates that state read by this activity's rollup, or by its parent's
+    * rollup, may have changed.  Changes made by this activity's own rollup
+    * are reported when the rollup ends.
+    */
+   private void rollupStateChanged()
+   {
+      if ( !mInRollup )
+      {
+         mRollupCurrent = false;
+
+         if ( mParent != null )
+         {
+            mParent.childRollupStateChanged(this);
+         }
+      }
+   }
+
+   /**
+    * Captures the status of this activity that is read by its parent's 
+    * rollup.
+    * 
+    * @return The objective, measure, progress and progress measure status,
+    *         or <code>null</code> if the activity has no tracking information.
+    */
+   private double[] getRollupStatus()
+   {
+      // Reading the status would create the tracking information
+      if ( mCurTracking == null )
+      {
+         return null;
+      }
+
+      double[] status = new double[8];
+
+      status[0] = getObjStatus(false) ? 1 : 0;
+      status[1] = getObjSatisfied(false) ? 1 : 0;
+      status[2] = getObjMeasureStatus(false) ? 1 : 0;
+      status[3] = getObjMeasure(false);
+      status[4] = getProgressStatus(false) ? 1 : 0;
+      status[5] = getAttemptCompleted(false) ? 1 : 0;
+      status[6] = getProMeasureStatus(false) ? 1 : 0;
+      status[7] = getProMeasure(false);
+
+      return status;
+   }
+
    /**
     * Retrieves the count (order) of this activity in the activity tree
     * 
@@ -6473,6 +6796,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iProgressMeasure);
       }
 
+      rollupStateChanged();
+
       // A null objective indicates the primary objective
       SeqObjectiveTracking obj;
       if ( iObjID == null )
@@ -6517,6 +6842,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iObjID);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
       SeqObjectiveTracking obj;
       
@@ -6566,6 +6893,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iCompletion);
       }
 
+      rollupStateChanged();
+
       // A null objective indicates the primary objective
       SeqObjectiveTracking obj;
       if ( iObjID == null )
@@ -6610,6 +6939,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iObjID);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
       SeqObjectiveTracking obj;
       
@@ -6678,6 +7009,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::-->  " + iProgressMeasure);
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
       
       if ( mIsTracked )
@@ -6854,6 +7187,9 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          // set progress measure stuff
          track.setProgressMeasureThreshold(mProgressThreshold);
          track.setProgressMeasureWeight(mProgressWeight);
+
+         // Rollup can set status once tracking information exists
+         rollupStateChanged();
       }
    }
 
@@ -6933,6 +7269,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  ::--> " + iProMeasure);
       }
 
+      rollupStateChanged();
+
       if ( mIsTracked )
       {
          if ( mCurTracking != null )
@@ -6971,6 +7309,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  :: SeqActivity     --> BEGIN - clearProMeasure");
       }
 
+      rollupStateChanged();
+
       if ( mCurTracking != null )
       {
          if ( mCurTracking != null )
@@ -7068,6 +7408,8 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
          System.out.println("  :: SeqActivity     --> BEGIN - " + "clearObjStatus");
       }
 
+      rollupStateChanged();
+
       boolean statusChange = false;
 
       if ( mCurTracking != null )
@@ -7232,5 +7574,730 @@ public class SeqActivity extends SeqActivityTrackingAccess implements SeqActivit
       
       return status;
    }
-   
+
+   /**
+    * Writes this activity, its definition, its tracking information and its
+    * children.  The parent and the objective maps are not written; they are
+    * rebuilt when the activity is read.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+
+      // Identity and position in the tree
+      ioOut.writeString(mActivityID);
+      ioOut.writeString(mResourceID);
+      ioOut.writeString(mStateID);
+      ioOut.writeString(mTitle);
+      ioOut.writeString(mXML);
+      ioOut.writeString(mLearnerID);
+      ioOut.writeString(mScopeID);
+      ioOut.writeString(mDeliveryMode);
+      ioOut.writeInt(mDepth);
+      ioOut.writeInt(mCount);
+      ioOut.writeInt(mOrder);
+      ioOut.writeInt(mActiveOrder);
+      ioOut.writeBoolean(mIsVisible);
+      ioOut.writeBoolean(mSelected);
+      ioOut.writeBoolean(mIsActive);
+      ioOut.writeBoolean(mIsSuspended);
+
+      // Sequencing definition
+      ioOut.writeBoolean(mControl_choice);
+      ioOut.writeBoolean(mControl_choiceExit);
+      ioOut.writeBoolean(mControl_flow);
+      ioOut.writeBoolean(mControl_forwardOnly);
+      ioOut.writeBoolean(mConstrainChoice);
+      ioOut.writeBoolean(mPreventActivation);
+      ioOut.writeBoolean(mUseCurObj);
+      ioOut.writeBoolean(mUseCurPro);
+      ioOut.writeBoolean(mMaxAttemptControl);
+      ioOut.writeBoolean(mAttemptAbDurControl);
+      ioOut.writeBoolean(mAttemptExDurControl);
+      ioOut.writeBoolean(mActivityAbDurControl);
+      ioOut.writeBoolean(mActivityExDurControl);
+      ioOut.writeBoolean(mBeginTimeControl);
+      ioOut.writeBoolean(mEndTimeControl);
+      ioOut.writeLong(mMaxAttempt);
+      ADLDuration.encode(ioOut, mAttemptAbDur);
+      ADLDuration.encode(ioOut, mAttemptExDur);
+      ADLDuration.encode(ioOut, mActivityAbDur);
+      ADLDuration.encode(ioOut, mActivityExDur);
+      ioOut.writeString(mBeginTime);
+      ioOut.writeString(mEndTime);
+
+      SeqRuleset[] rulesets = 
+         { mPreConditionRules, mPostConditionRules, mExitActionRules };
+
+      for ( int i = 0; i < rulesets.length; i++ )
+      {
+         ioOut.writeBoolean(rulesets[i] != null);
+
+         if ( rulesets[i] != null )
+         {
+            rulesets[i].encode(ioOut);
+         }
+      }
+
+      ioOut.writeBoolean(mRollupRules != null);
+
+      if ( mRollupRules != null )
+      {
+         mRollupRules.encode(ioOut);
+      }
+
+      ioOut.writeBoolean(mActiveMeasure);
+      ioOut.writeBoolean(mIsObjectiveRolledUp);
+      ioOut.writeBoolean(mIsProgressRolledUp);
+      ioOut.writeString(mRequiredForSatisfied);
+      ioOut.writeString(mRequiredForNotSatisfied);
+      ioOut.writeString(mRequiredForCompleted);
+      ioOut.writeString(mRequiredForIncomplete);
+      ioOut.writeDouble(mObjMeasureWeight);
+      ioOut.writeString(mSelectTiming);
+      ioOut.writeString(mRandomTiming);
+      ioOut.writeBoolean(mSelectStatus);
+      ioOut.writeBoolean(mSelection);
+      ioOut.writeBoolean(mReorder);
+      ioOut.writeBoolean(mRandomized);
+      ioOut.writeInt(mSelectCount);
+      ioOut.writeBoolean(mIsTracked);
+      ioOut.writeBoolean(mContentSetsCompletion);
+      ioOut.writeBoolean(mContentSetsObj);
+      ioOut.writeBoolean(mProgressDeterminedByMeasure);
+      ioOut.writeBoolean(mPrimaryStatusSetBySCO);
+      ioOut.writeBoolean(mPrimaryProgressSetBySCO);
+      ioOut.writeDouble(mProgressThreshold);
+      ioOut.writeDouble(mProgressWeight);
+
+      if ( mAuxResources == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mAuxResources.size());
+
+         for ( int i = 0; i < mAuxResources.size(); i++ )
+         {
+            ((ADLAuxiliaryResource)mAuxResources.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      if ( mObjectives == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mObjectives.size());
+
+         for ( int i = 0; i < mObjectives.size(); i++ )
+         {
+            ((SeqObjective)mObjectives.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      int stores = ( dataStores != null ) ? dataStores.size() : 0;
+
+      ioOut.writeInt(stores);
+
+      for ( int i = 0; i < stores; i++ )
+      {
+         DataStore store = (DataStore)dataStores.get(i);
+
+         ioOut.writeString(store.mId);
+         ioOut.writeBoolean(store.mReadable);
+         ioOut.writeBoolean(store.mWriteable);
+      }
+
+      // Tracking information
+      ioOut.writeLong(mNumAttempt);
+      ioOut.writeLong(mNumSCOAttempt);
+      ADLDuration.encode(ioOut, mActivityAbDur_track);
+      ADLDuration.encode(ioOut, mActivityExDur_track);
+
+      if ( mTracking == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mTracking.size());
+
+         for ( int i = 0; i < mTracking.size(); i++ )
+         {
+            ((ADLTracking)mTracking.elementAt(i)).encode(ioOut, mObjectives);
+         }
+      }
+
+      ioOut.writeBoolean(mCurTracking != null);
+
+      if ( mCurTracking != null )
+      {
+         mCurTracking.encode(ioOut, mObjectives);
+      }
+
+      // Children; the active children are a subset, written as indexes
+      if ( mChildren == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mChildren.size());
+
+         for ( int i = 0; i < mChildren.size(); i++ )
+         {
+            ((SeqActivity)mChildren.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      if ( mActiveChildren == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mActiveChildren.size());
+
+         for ( int i = 0; i < mActiveChildren.size(); i++ )
+         {
+            ioOut.writeInt(mChildren.indexOf(mActiveChildren.elementAt(i)));
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Creates an activity, with its descendents, that shares this activity's
+    * sequencing definition.  The rules, objectives, auxiliary resources and
+    * other definition elements are shared, not copied; the copy has its own
+    * rollup rule set, because evaluating one changes it.  This activity must
+    * not have been sequenced -- no tracking information is copied.
+    * 
+    * @return The copy.
+    */
+   SeqActivity copyDefinition()
+   {
+      return copy(false);
+   }
+
+   /**
+    * Creates an activity, with its descendents, that shares this activity's
+    * sequencing definition and starts from a copy of its tracking 
+    * information.  Sequencing the copy does not change this activity.
+    * 
+    * @return The copy.
+    */
+   SeqActivity snapshot()
+   {
+      return copy(true);
+   }
+
+   /**
+    * Creates an activity, with its descendents, that shares this activity's
+    * sequencing definition.
+    * 
+    * @param iTracking Indicates if the tracking information for the current
+    *                  attempt and the activity's duration are copied.
+    * 
+    * @return The copy.
+    */
+   private SeqActivity copy(boolean iTracking)
+   {
+      SeqActivity act = new SeqActivity();
+
+      // Identity and position in the tree
+      act.mActivityID = mActivityID;
+      act.mResourceID = mResourceID;
+      act.mStateID = mStateID;
+      act.mTitle = mTitle;
+      act.mXML = mXML;
+      act.mLearnerID = mLearnerID;
+      act.mScopeID = mScopeID;
+      act.mDeliveryMode = mDeliveryMode;
+      act.mDepth = mDepth;
+      act.mCount = mCount;
+      act.mOrder = mOrder;
+      act.mActiveOrder = mActiveOrder;
+      act.mIsVisible = mIsVisible;
+      act.mSelected = mSelected;
+      act.mIsActive = mIsActive;
+      act.mIsSuspended = mIsSuspended;
+
+      // Sequencing definition
+      act.mControl_choice = mControl_choice;
+      act.mControl_choiceExit = mControl_choiceExit;
+      act.mControl_flow = mControl_flow;
+      act.mControl_forwardOnly = mControl_forwardOnly;
+      act.mConstrainChoice = mConstrainChoice;
+      act.mPreventActivation = mPreventActivation;
+      act.mUseCurObj = mUseCurObj;
+      act.mUseCurPro = mUseCurPro;
+      act.mMaxAttemptControl = mMaxAttemptControl;
+      act.mAttemptAbDurControl = mAttemptAbDurControl;
+      act.mAttemptExDurControl = mAttemptExDurControl;
+      act.mActivityAbDurControl = mActivityAbDurControl;
+      act.mActivityExDurControl = mActivityExDurControl;
+      act.mBeginTimeControl = mBeginTimeControl;
+      act.mEndTimeControl = mEndTimeControl;
+      act.mMaxAttempt = mMaxAttempt;
+      act.mAttemptAbDur = mAttemptAbDur;
+      act.mAttemptExDur = mAttemptExDur;
+      act.mActivityAbDur = mActivityAbDur;
+      act.mActivityExDur = mActivityExDur;
+      act.mBeginTime = mBeginTime;
+      act.mEndTime = mEndTime;
+      act.mPreConditionRules = mPreConditionRules;
+      act.mPostConditionRules = mPostConditionRules;
+      act.mExitActionRules = mExitActionRules;
+
+      if ( mRollupRules != null )
+      {
+         act.mRollupRules = mRollupRules.copy();
+      }
+
+      act.mActiveMeasure = mActiveMeasure;
+      act.mIsObjectiveRolledUp = mIsObjectiveRolledUp;
+      act.mIsProgressRolledUp = mIsProgressRolledUp;
+      act.mRequiredForSatisfied = mRequiredForSatisfied;
+      act.mRequiredForNotSatisfied = mRequiredForNotSatisfied;
+      act.mRequiredForCompleted = mRequiredForCompleted;
+      act.mRequiredForIncomplete = mRequiredForIncomplete;
+      act.mObjMeasureWeight = mObjMeasureWeight;
+      act.mSelectTiming = mSelectTiming;
+      act.mRandomTiming = mRandomTiming;
+      act.mSelectStatus = mSelectStatus;
+      act.mSelection = mSelection;
+      act.mReorder = mReorder;
+      act.mRandomized = mRandomized;
+      act.mSelectCount = mSelectCount;
+      act.mIsTracked = mIsTracked;
+      act.mContentSetsCompletion = mContentSetsCompletion;
+      act.mContentSetsObj = mContentSetsObj;
+      act.mProgressDeterminedByMeasure = mProgressDeterminedByMeasure;
+      act.mPrimaryStatusSetBySCO = mPrimaryStatusSetBySCO;
+      act.mPrimaryProgressSetBySCO = mPrimaryProgressSetBySCO;
+      act.mProgressThreshold = mProgressThreshold;
+      act.mProgressWeight = mProgressWeight;
+      act.mAuxResources = mAuxResources;
+      act.mObjectives = mObjectives;
+      act.mObjMaps = mObjMaps;
+      act.dataStores = dataStores;
+
+      // Tracking information
+      act.mNumAttempt = mNumAttempt;
+      act.mNumSCOAttempt = mNumSCOAttempt;
+
+      if ( iTracking )
+      {
+         act.mActivityAbDur_track = mActivityAbDur_track;
+         act.mActivityExDur_track = mActivityExDur_track;
+
+         // Tracking information of earlier attempts is never changed
+         if ( mTracking != null )
+         {
+            act.mTracking = new Vector(mTracking);
+         }
+
+         if ( mCurTracking != null )
+         {
+            act.mCurTracking = mCurTracking.copy();
+         }
+      }
+
+      // Children
+      if ( mChildren != null )
+      {
+         act.mChildren = new Vector(mChildren.size());
+
+         for ( int i = 0; i < mChildren.size(); i++ )
+         {
+            SeqActivity child = 
+               ((SeqActivity)mChildren.elementAt(i)).copy(iTracking);
+
+            child.mParent = act;
+            act.mChildren.add(child);
+         }
+      }
+
+      if ( mActiveChildren == mChildren )
+      {
+         act.mActiveChildren = act.mChildren;
+      }
+      else if ( mActiveChildren != null )
+      {
+         act.mActiveChildren = new Vector(mActiveChildren.size());
+
+         for ( int i = 0; i < mActiveChildren.size(); i++ )
+         {
+            int pos = mChildren.indexOf(mActiveChildren.elementAt(i));
+
+            act.mActiveChildren.add(act.mChildren.elementAt(pos));
+         }
+      }
+
+      return act;
+   }
+
+   /**
+    * Writes the tracking information of this activity -- the state that
+    * changes as the learner progresses, but not the activity's definition
+    * or its children.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encodeTracking(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mActivityID);
+      ioOut.writeInt(mActiveOrder);
+      ioOut.writeBoolean(mSelected);
+      ioOut.writeBoolean(mIsActive);
+      ioOut.writeBoolean(mIsSuspended);
+      ioOut.writeBoolean(mSelection);
+      ioOut.writeBoolean(mRandomized);
+      ioOut.writeBoolean(mPrimaryStatusSetBySCO);
+      ioOut.writeBoolean(mPrimaryProgressSetBySCO);
+      ioOut.writeLong(mNumAttempt);
+      ioOut.writeLong(mNumSCOAttempt);
+      ADLDuration.encode(ioOut, mActivityAbDur_track);
+      ADLDuration.encode(ioOut, mActivityExDur_track);
+
+      if ( mTracking == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mTracking.size());
+
+         for ( int i = 0; i < mTracking.size(); i++ )
+         {
+            ((ADLTracking)mTracking.elementAt(i)).encode(ioOut, mObjectives);
+         }
+      }
+
+      ioOut.writeBoolean(mCurTracking != null);
+
+      if ( mCurTracking != null )
+      {
+         mCurTracking.encode(ioOut, mObjectives);
+      }
+
+      if ( mActiveChildren == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mActiveChildren.size());
+
+         for ( int i = 0; i < mActiveChildren.size(); i++ )
+         {
+            ioOut.writeInt(mChildren.indexOf(mActiveChildren.elementAt(i)));
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads the tracking information of this activity, written by 
+    * <code>encodeTracking()</code>, replacing its current tracking 
+    * information.
+    * 
+    * @param iIn The input.
+    * 
+    * @throws IOException Thrown if the input is corrupt or was written for a
+    *                     different activity.
+    */
+   void decodeTracking(CodecInput iIn) throws IOException
+   {
+      iIn.beginRecord();
+
+      String id = iIn.readString();
+
+      if ( id == null || !id.equals(mActivityID) )
+      {
+         throw new InvalidObjectException("Tracking information of '" + id +
+                                          "' read for '" + mActivityID + "'");
+      }
+
+      mActiveOrder = iIn.readInt();
+      mSelected = iIn.readBoolean();
+      mIsActive = iIn.readBoolean();
+      mIsSuspended = iIn.readBoolean();
+      mSelection = iIn.readBoolean();
+      mRandomized = iIn.readBoolean();
+      mPrimaryStatusSetBySCO = iIn.readBoolean();
+      mPrimaryProgressSetBySCO = iIn.readBoolean();
+      mNumAttempt = iIn.readLong();
+      mNumSCOAttempt = iIn.readLong();
+      mActivityAbDur_track = ADLDuration.decode(iIn);
+      mActivityExDur_track = ADLDuration.decode(iIn);
+
+      int count = iIn.readInt();
+
+      mTracking = null;
+
+      if ( count >= 0 )
+      {
+         mTracking = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            mTracking.add(ADLTracking.decode(iIn, mObjectives));
+         }
+      }
+
+      mCurTracking = null;
+
+      if ( iIn.readBoolean() )
+      {
+         mCurTracking = ADLTracking.decode(iIn, mObjectives);
+      }
+
+      count = iIn.readInt();
+
+      mActiveChildren = null;
+
+      if ( count >= 0 )
+      {
+         mActiveChildren = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            int pos = iIn.readInt();
+
+            if ( mChildren == null || pos < 0 || pos >= mChildren.size() )
+            {
+               throw new InvalidObjectException("Invalid child of '" + 
+                                                mActivityID + "'");
+            }
+
+            mActiveChildren.add(mChildren.elementAt(pos));
+         }
+      }
+
+      iIn.endRecord();
+   }
+
+   /**
+    * Reads an activity and its children.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The activity.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqActivity decode(CodecInput iIn) throws IOException
+   {
+      SeqActivity act = new SeqActivity();
+
+      iIn.beginRecord();
+
+      // Identity and position in the tree
+      act.mActivityID = iIn.readString();
+      act.mResourceID = iIn.readString();
+      act.mStateID = iIn.readString();
+      act.mTitle = iIn.readString();
+      act.mXML = iIn.readString();
+      act.mLearnerID = iIn.readString();
+      act.mScopeID = iIn.readString();
+      act.mDeliveryMode = iIn.readString();
+      act.mDepth = iIn.readInt();
+      act.mCount = iIn.readInt();
+      act.mOrder = iIn.readInt();
+      act.mActiveOrder = iIn.readInt();
+      act.mIsVisible = iIn.readBoolean();
+      act.mSelected = iIn.readBoolean();
+      act.mIsActive = iIn.readBoolean();
+      act.mIsSuspended = iIn.readBoolean();
+
+      // Sequencing definition
+      act.mControl_choice = iIn.readBoolean();
+      act.mControl_choiceExit = iIn.readBoolean();
+      act.mControl_flow = iIn.readBoolean();
+      act.mControl_forwardOnly = iIn.readBoolean();
+      act.mConstrainChoice = iIn.readBoolean();
+      act.mPreventActivation = iIn.readBoolean();
+      act.mUseCurObj = iIn.readBoolean();
+      act.mUseCurPro = iIn.readBoolean();
+      act.mMaxAttemptControl = iIn.readBoolean();
+      act.mAttemptAbDurControl = iIn.readBoolean();
+      act.mAttemptExDurControl = iIn.readBoolean();
+      act.mActivityAbDurControl = iIn.readBoolean();
+      act.mActivityExDurControl = iIn.readBoolean();
+      act.mBeginTimeControl = iIn.readBoolean();
+      act.mEndTimeControl = iIn.readBoolean();
+      act.mMaxAttempt = iIn.readLong();
+      act.mAttemptAbDur = ADLDuration.decode(iIn);
+      act.mAttemptExDur = ADLDuration.decode(iIn);
+      act.mActivityAbDur = ADLDuration.decode(iIn);
+      act.mActivityExDur = ADLDuration.decode(iIn);
+      act.mBeginTime = iIn.readString();
+      act.mEndTime = iIn.readString();
+
+      if ( iIn.readBoolean() )
+      {
+         act.mPreConditionRules = SeqRuleset.decode(iIn);
+      }
+
+      if ( iIn.readBoolean() )
+      {
+         act.mPostConditionRules = SeqRuleset.decode(iIn);
+      }
+
+      if ( iIn.readBoolean() )
+      {
+         act.mExitActionRules = SeqRuleset.decode(iIn);
+      }
+
+      if ( iIn.readBoolean() )
+      {
+         act.mRollupRules = SeqRollupRuleset.decode(iIn);
+      }
+
+      act.mActiveMeasure = iIn.readBoolean();
+      act.mIsObjectiveRolledUp = iIn.readBoolean();
+      act.mIsProgressRolledUp = iIn.readBoolean();
+      act.mRequiredForSatisfied = iIn.readString();
+      act.mRequiredForNotSatisfied = iIn.readString();
+      act.mRequiredForCompleted = iIn.readString();
+      act.mRequiredForIncomplete = iIn.readString();
+      act.mObjMeasureWeight = iIn.readDouble();
+      act.mSelectTiming = iIn.readString();
+      act.mRandomTiming = iIn.readString();
+      act.mSelectStatus = iIn.readBoolean();
+      act.mSelection = iIn.readBoolean();
+      act.mReorder = iIn.readBoolean();
+      act.mRandomized = iIn.readBoolean();
+      act.mSelectCount = iIn.readInt();
+      act.mIsTracked = iIn.readBoolean();
+      act.mContentSetsCompletion = iIn.readBoolean();
+      act.mContentSetsObj = iIn.readBoolean();
+      act.mProgressDeterminedByMeasure = iIn.readBoolean();
+      act.mPrimaryStatusSetBySCO = iIn.readBoolean();
+      act.mPrimaryProgressSetBySCO = iIn.readBoolean();
+      act.mProgressThreshold = iIn.readDouble();
+      act.mProgressWeight = iIn.readDouble();
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         act.mAuxResources = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            act.mAuxResources.add(ADLAuxiliaryResource.decode(iIn));
+         }
+      }
+
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         act.mObjectives = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            SeqObjective obj = SeqObjective.decode(iIn);
+
+            act.mObjectives.add(obj);
+
+            if ( obj.mMaps != null )
+            {
+               if ( act.mObjMaps == null )
+               {
+                  act.mObjMaps = new Hashtable();
+               }
+
+               act.mObjMaps.put(obj.mObjID, obj.mMaps);
+            }
+         }
+      }
+
+      count = iIn.readInt();
+
+      for ( int i = 0; i < count; i++ )
+      {
+         act.addDataStore(iIn.readString(), iIn.readBoolean(), 
+                          iIn.readBoolean());
+      }
+
+      // Tracking information
+      act.mNumAttempt = iIn.readLong();
+      act.mNumSCOAttempt = iIn.readLong();
+      act.mActivityAbDur_track = ADLDuration.decode(iIn);
+      act.mActivityExDur_track = ADLDuration.decode(iIn);
+
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         act.mTracking = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            act.mTracking.add(ADLTracking.decode(iIn, act.mObjectives));
+         }
+      }
+
+      if ( iIn.readBoolean() )
+      {
+         act.mCurTracking = ADLTracking.decode(iIn, act.mObjectives);
+      }
+
+      // Children
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         act.mChildren = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            SeqActivity child = decode(iIn);
+
+            child.mParent = act;
+            act.mChildren.add(child);
+         }
+      }
+
+      count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         act.mActiveChildren = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            int index = iIn.readInt();
+
+            if ( act.mChildren == null || index < 0 || 
+                 index >= act.mChildren.size() )
+            {
+               throw new IOException("Unknown child activity: " + index);
+            }
+
+            act.mActiveChildren.add(act.mChildren.elementAt(index));
+         }
+      }
+
+      iIn.endRecord();
+
+      return act;
+   }
+
 } // end SeqActivity
@@ -27,12 +27,21 @@ Nothing in this license impairs or restricts the author's moral rights.
 package org.adl.sequencer;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.Set;
 import java.util.Vector;
 import java.util.Enumeration;
 
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
+import org.adl.util.codec.LegacyObjectInputStream;
+
 /**
  * Implementation of an activity tree.<br><br>
  * 
@@ -70,16 +79,21 @@ public class SeqActivityTree implements Serializable
     * This controls display of log messages to the java console
     */
    private static boolean _Debug = DebugIndicator.ON;
-   
+
    /**
-    * The location of the data store collection.
+    * The type code written by <code>toByteArray()</code>.
     */
-   public static String dataStoreLoc;
-   
+   public static final int CODEC_TYPE = 2;
+
    /**
-    * The data store collection.
+    * The type code written by <code>toTrackingByteArray()</code>.
     */
-   public static HashMap dsMap = new HashMap();
+   public static final int TRACKING_CODEC_TYPE = 3;
+
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
    
    /**
     * This the representation of the activity tree
@@ -162,6 +176,48 @@ public class SeqActivityTree implements Serializable
     */
    private boolean mDataScopedForAllAttempts = true;
 
+   /**
+    * The location of this learner's persisted data store collection.  This is
+    * session state and is not persisted with the tree.
+    */
+   private transient String mDataStoreLoc = null;
+
+   /**
+    * This learner's data store collection, mapping each data store to its
+    * current value.  This is session state and is not persisted with the 
+    * tree.
+    */
+   private transient HashMap mDataStoreMap = null;
+
+   /**
+    * Indicates the set of valid navigation requests was last refreshed by 
+    * the sequencer and that, since then, only the tracking status of the
+    * activities in <code>mChangedActivities</code> has changed.  This is 
+    * session state and is not persisted with the tree.
+    */
+   private transient boolean mValidReqCurrent = false;
+
+   /**
+    * The IDs of the activities whose tracking status changed since the set 
+    * of valid navigation requests was last refreshed.  This is session state
+    * and is not persisted with the tree.
+    */
+   private transient HashSet mChangedActivities = null;
+
+   /**
+    * The generation of the learner's global objectives the set of valid 
+    * navigation requests was last refreshed against.  This is session state
+    * and is not persisted with the tree.
+    */
+   private transient long mValidReqGlobalObjs = 0;
+
+   /**
+    * The activities of the tree indexed by their preorder position, or 
+    * <code>null</code> if the activities have not been labelled.  This is 
+    * derived from the tree's structure and is not persisted.
+    */
+   private transient volatile SeqActivity[] mIndex = null;
+
    
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
    
@@ -239,6 +295,7 @@ public class SeqActivityTree implements Serializable
       }
 
       mLearnerID = iLearnerID;
+      invalidateValidRequests();
 
       // Associate each activity in the activity tree with this learner
       // This is required to access certain objectives
@@ -341,6 +398,7 @@ public class SeqActivityTree implements Serializable
       }
 
       mScopeID = iScopeID;
+      invalidateValidRequests();
 
       if ( mScopeID != null )
       {
@@ -544,6 +602,8 @@ public class SeqActivityTree implements Serializable
       }
 
       mRoot = iRoot;
+      mIndex = null;
+      invalidateValidRequests();
 
       if ( _Debug )
       {
@@ -652,6 +712,66 @@ public class SeqActivityTree implements Serializable
       }
    }
 
+   /**
+    * Records that the set of valid navigation requests no longer reflects the
+    * state of the tree.
+    */
+   void invalidateValidRequests()
+   {
+      mValidReqCurrent = false;
+      mChangedActivities = null;
+   }
+
+   /**
+    * Records a change to the tracking status of an activity since the set of
+    * valid navigation requests was last refreshed.
+    * 
+    * @param iActivity The activity whose tracking status changed.
+    */
+   void activityChanged(SeqActivity iActivity)
+   {
+      if ( mValidReqCurrent )
+      {
+         mChangedActivities.add(iActivity.getID());
+      }
+   }
+
+   /**
+    * Records that the set of valid navigation requests has been refreshed and
+    * reflects the current state of the tree.
+    * 
+    * @param iGlobalObjs The generation of the learner's global objectives the
+    *                    set was evaluated against.
+    */
+   void validRequestsRefreshed(long iGlobalObjs)
+   {
+      mValidReqCurrent = true;
+      mChangedActivities = new HashSet();
+      mValidReqGlobalObjs = iGlobalObjs;
+   }
+
+   /**
+    * Provides the activities whose tracking status changed since the set of
+    * valid navigation requests was last refreshed.
+    * 
+    * @param iGlobalObjs The current generation of the learner's global 
+    *                    objectives.
+    * 
+    * @return The IDs (<code>String</code>) of the changed activities, which
+    *         is empty if the set is still valid, or <code>null</code> if the 
+    *         set must be evaluated again in full.
+    */
+   Set getChangedActivities(long iGlobalObjs)
+   {
+      if ( !mValidReqCurrent || mValidReq == null || 
+           mValidReqGlobalObjs != iGlobalObjs )
+      {
+         return null;
+      }
+
+      return mChangedActivities;
+   }
+
    /**
     * Retrieves the set of valid navigation requests (<code>ADLValidRequests
     * </code>) for the activity tree.
@@ -741,7 +861,7 @@ public class SeqActivityTree implements Serializable
       }
 
       mCurActivity = iCurrent;
-
+      invalidateValidRequests();
 
       if ( _Debug )
       {
@@ -824,7 +944,7 @@ public class SeqActivityTree implements Serializable
       }
 
       mFirstCandidate = iFirst;
-
+      invalidateValidRequests();
 
       if ( _Debug )
       {
@@ -862,6 +982,7 @@ public class SeqActivityTree implements Serializable
       }
 
       mSuspendAll = iSuspendTarget;
+      invalidateValidRequests();
 
       if ( _Debug )
       {
@@ -1052,6 +1173,7 @@ public class SeqActivityTree implements Serializable
       }
 
       mActivityMap = null;
+      invalidateValidRequests();
 
       if ( _Debug )
       {
@@ -1172,6 +1294,8 @@ public class SeqActivityTree implements Serializable
          }
       }
 
+      buildIndex();
+
       if ( _Debug )
       {
          System.out.println("  :: SeqActivityTree  --> END   - " +
@@ -1179,6 +1303,172 @@ public class SeqActivityTree implements Serializable
       }
    }
 
+   /**
+    * Retrieves the activity at a preorder position in the activity tree.
+    * 
+    * @param iIndex The preorder position of the activity.
+    * 
+    * @return The activity (<code>SeqActivity</code>), or <code>null</code> 
+    *         if there is no activity at that position.
+    */
+   SeqActivity getActivity(int iIndex)
+   {
+      SeqActivity[] index = getIndex();
+
+      return ( iIndex >= 0 && iIndex < index.length ) ? index[iIndex] : null;
+   }
+
+   /**
+    * Determines if an activity is the same as, or a descendent of, another
+    * activity in the activity tree.
+    * 
+    * @param iAncestor The root of the subtree being looked at.
+    * 
+    * @param iTarget   The activity being tested.
+    * 
+    * @return <code>true</code> if the target is in the subtree, otherwise
+    *         <code>false</code>.
+    */
+   boolean isAncestor(SeqActivity iAncestor, SeqActivity iTarget)
+   {
+      if ( iAncestor == null || iTarget == null )
+      {
+         return false;
+      }
+
+      SeqActivity[] index = getIndex();
+
+      if ( isIndexed(index, iAncestor) && isIndexed(index, iTarget) )
+      {
+         return iAncestor.getPreOrder() <= iTarget.getPreOrder() &&
+                iTarget.getPreOrder() <= iAncestor.getLastDescendent();
+      }
+
+      // The activities are not labelled in this tree; walk the parents
+      SeqActivity walk = iTarget;
+
+      while ( walk != null && walk != iAncestor )
+      {
+         walk = walk.getParent();
+      }
+
+      return walk != null;
+   }
+
+   /**
+    * Finds the deepest activity that is the same as, or an ancestor of, both
+    * activities.
+    * 
+    * @param iFirst  The first activity.
+    * 
+    * @param iSecond The second activity.
+    * 
+    * @return The common ancestor (<code>SeqActivity</code>), or 
+    *         <code>null</code> if the activities are not in the same tree.
+    */
+   SeqActivity getCommonAncestor(SeqActivity iFirst, SeqActivity iSecond)
+   {
+      SeqActivity walk = iFirst;
+
+      while ( walk != null && !isAncestor(walk, iSecond) )
+      {
+         walk = walk.getParent();
+      }
+
+      return walk;
+   }
+
+   /**
+    * Labels each activity with the interval of preorder positions covered 
+    * by it and its descendents, and indexes the activities by position.
+    */
+   synchronized void buildIndex()
+   {
+      Vector activities = new Vector();
+
+      if ( mRoot != null )
+      {
+         // Walk the activity tree in preorder, closing the interval of each
+         // activity once its last descendent has been reached
+         Vector stack = new Vector();
+         Vector exits = new Vector();
+
+         stack.add(mRoot);
+         exits.add(Boolean.FALSE);
+
+         while ( stack.size() != 0 )
+         {
+            SeqActivity walk = (SeqActivity)stack.remove(stack.size() - 1);
+            boolean exit = ((Boolean)exits.remove(exits.size() - 1))
+                           .booleanValue();
+
+            if ( exit )
+            {
+               walk.setInterval(walk.getPreOrder(), activities.size() - 1);
+               continue;
+            }
+
+            walk.setInterval(activities.size(), -1);
+            activities.add(walk);
+
+            stack.add(walk);
+            exits.add(Boolean.TRUE);
+
+            Vector children = walk.getChildren(true);
+
+            if ( children != null )
+            {
+               for ( int i = children.size() - 1; i >= 0; i-- )
+               {
+                  stack.add(children.elementAt(i));
+                  exits.add(Boolean.FALSE);
+               }
+            }
+         }
+      }
+
+      SeqActivity[] index = new SeqActivity[activities.size()];
+      activities.copyInto(index);
+
+      mIndex = index;
+   }
+
+   /**
+    * Provides the activities indexed by preorder position, labelling the 
+    * tree first if it has not been labelled.
+    * 
+    * @return The activities of the tree.
+    */
+   private SeqActivity[] getIndex()
+   {
+      SeqActivity[] index = mIndex;
+
+      if ( index == null )
+      {
+         buildIndex();
+         index = mIndex;
+      }
+
+      return index;
+   }
+
+   /**
+    * Determines if an activity carries the labels of this tree.
+    * 
+    * @param iIndex    The activities of this tree.
+    * 
+    * @param iActivity The activity.
+    * 
+    * @return <code>true</code> if the activity's labels are valid in this 
+    *         tree, otherwise <code>false</code>.
+    */
+   private static boolean isIndexed(SeqActivity[] iIndex, SeqActivity iActivity)
+   {
+      int pos = iActivity.getPreOrder();
+
+      return pos >= 0 && pos < iIndex.length && iIndex[pos] == iActivity;
+   }
+
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
    
     Private Utility Methods Affecting the Activity Tree
@@ -1408,6 +1698,49 @@ public class SeqActivityTree implements Serializable
    {
       return mDataScopedForAllAttempts;
    }
+
+   /**
+    * Sets the location of this learner's persisted data store collection.
+    * 
+    * @param iLocation The file the data store collection is persisted in.
+    */
+   public void setDataStoreLocation(String iLocation)
+   {
+      mDataStoreLoc = iLocation;
+   }
+
+   /**
+    * Retrieves the location of this learner's persisted data store 
+    * collection.
+    * 
+    * @return The file the data store collection is persisted in, or 
+    *         <code>null</code> if none has been assigned.
+    */
+   public String getDataStoreLocation()
+   {
+      return mDataStoreLoc;
+   }
+
+   /**
+    * Sets this learner's data store collection.
+    * 
+    * @param iDataStores The data store collection.
+    */
+   public void setDataStoreMap(HashMap iDataStores)
+   {
+      mDataStoreMap = iDataStores;
+   }
+
+   /**
+    * Retrieves this learner's data store collection.
+    * 
+    * @return The data store collection, or <code>null</code> if it has not
+    *         been loaded.
+    */
+   public HashMap getDataStoreMap()
+   {
+      return mDataStoreMap;
+   }
    
    /**
     * Gets the activity map.
@@ -1422,4 +1755,375 @@ public class SeqActivityTree implements Serializable
       }
       return mActivityMap;
    }
+
+   /**
+    * Creates an activity tree that shares this tree's sequencing definition.
+    * This tree is used as the definition of a course and must not be 
+    * sequenced itself; the copy has no learner and starts from the state the
+    * course was imported in.
+    * 
+    * @return The copy.
+    */
+   public SeqActivityTree copyDefinition()
+   {
+      SeqActivityTree tree = new SeqActivityTree();
+
+      tree.mCourseID = mCourseID;
+      tree.mLearnerID = mLearnerID;
+      tree.mScopeID = mScopeID;
+      tree.mLastLeaf = mLastLeaf;
+      tree.mDataScopedForAllAttempts = mDataScopedForAllAttempts;
+
+      if ( mRoot != null )
+      {
+         tree.mRoot = mRoot.copyDefinition();
+      }
+
+      tree.buildActivityMap();
+
+      return tree;
+   }
+
+   /**
+    * Creates an activity tree that shares this tree's sequencing definition
+    * and starts from a copy of the learner's state of this tree.  Sequencing
+    * requests processed on the copy do not change this tree, so they can be
+    * used to evaluate 'what-if' requests.
+    * 
+    * @return The copy.
+    */
+   SeqActivityTree snapshot()
+   {
+      SeqActivityTree tree = new SeqActivityTree();
+
+      tree.mCourseID = mCourseID;
+      tree.mLearnerID = mLearnerID;
+      tree.mScopeID = mScopeID;
+      tree.mLastLeaf = mLastLeaf;
+      tree.mDataScopedForAllAttempts = mDataScopedForAllAttempts;
+      tree.mDataStoreLoc = mDataStoreLoc;
+      tree.mDataStoreMap = mDataStoreMap;
+
+      // The global objective index only refers to activities by ID
+      tree.mObjSet = mObjSet;
+      tree.mObjMap = mObjMap;
+      tree.mObjScan = mObjScan;
+
+      if ( mRoot != null )
+      {
+         tree.mRoot = mRoot.snapshot();
+      }
+
+      tree.buildActivityMap();
+
+      tree.mCurActivity = tree.getSnapshotActivity(mCurActivity);
+      tree.mFirstCandidate = tree.getSnapshotActivity(mFirstCandidate);
+      tree.mSuspendAll = tree.getSnapshotActivity(mSuspendAll);
+
+      return tree;
+   }
+
+   /**
+    * Finds the activity of this tree that corresponds to an activity of the
+    * tree it was copied from.
+    * 
+    * @param iActivity The activity of the original tree, or 
+    *                  <code>null</code>.
+    * 
+    * @return The activity of this tree, or <code>null</code>.
+    */
+   private SeqActivity getSnapshotActivity(SeqActivity iActivity)
+   {
+      if ( iActivity == null )
+      {
+         return null;
+      }
+
+      return (SeqActivity)mActivityMap.get(iActivity.getID());
+   }
+
+   /**
+    * Encodes the learner's state of this activity tree: the tracking 
+    * information of each activity and the tree's current, first candidate 
+    * and suspended activities.  The sequencing definition is not written;
+    * the tree is read back with <code>fromTrackingByteArray()</code> against
+    * the definition of its course.
+    * 
+    * @return The encoded tracking state.
+    * 
+    * @throws IOException Thrown if the state cannot be encoded.
+    */
+   public byte[] toTrackingByteArray() throws IOException
+   {
+      CodecOutput out = new CodecOutput(TRACKING_CODEC_TYPE);
+
+      SeqActivity[] index = getIndex();
+
+      out.beginRecord(CODEC_VERSION);
+      out.writeString(mCourseID);
+      out.writeString(mLearnerID);
+      out.writeString(mLastLeaf);
+      out.writeBoolean(true);
+      out.writeInt(index.length);
+
+      for ( int i = 0; i < index.length; i++ )
+      {
+         index[i].encodeTracking(out);
+      }
+
+      out.writeString(( mCurActivity != null ) ? 
+                      mCurActivity.getID() : null);
+      out.writeString(( mFirstCandidate != null ) ? 
+                      mFirstCandidate.getID() : null);
+      out.writeString(( mSuspendAll != null ) ? 
+                      mSuspendAll.getID() : null);
+      out.writeBoolean(mValidReq != null);
+
+      if ( mValidReq != null )
+      {
+         mValidReq.encode(out);
+      }
+
+      out.endRecord();
+
+      return out.toByteArray();
+   }
+
+   /**
+    * Encodes the state of a learner who has not started a course; the 
+    * learner's activity tree is the course's definition as imported.
+    * 
+    * @param iCourseID  The ID of the course.
+    * 
+    * @param iLearnerID The ID of the learner.
+    * 
+    * @return The encoded tracking state.
+    * 
+    * @throws IOException Thrown if the state cannot be encoded.
+    */
+   public static byte[] toTrackingByteArray(String iCourseID, 
+                                            String iLearnerID)
+      throws IOException
+   {
+      CodecOutput out = new CodecOutput(TRACKING_CODEC_TYPE);
+
+      out.beginRecord(CODEC_VERSION);
+      out.writeString(iCourseID);
+      out.writeString(iLearnerID);
+      out.writeString(null);
+      out.writeBoolean(false);
+      out.endRecord();
+
+      return out.toByteArray();
+   }
+
+   /**
+    * Indicates if data holds a learner's tracking state, written by
+    * <code>toTrackingByteArray()</code>, rather than a complete activity 
+    * tree.
+    * 
+    * @param iData The data.
+    * 
+    * @return <code>true</code> if the data is tracking state, otherwise
+    *         <code>false</code>.
+    * 
+    * @throws IOException Thrown if the data cannot be read.
+    */
+   public static boolean isTrackingData(byte[] iData) throws IOException
+   {
+      return CodecInput.isEncoded(iData) && 
+             new CodecInput(iData).getType() == TRACKING_CODEC_TYPE;
+   }
+
+   /**
+    * Reads a learner's activity tree from the definition of the course and
+    * the learner's tracking state.
+    * 
+    * @param iDefinition The course's activity tree, as imported.  It is 
+    *                    shared with, not changed by, the learner's tree.
+    * 
+    * @param iData       The tracking state, as returned by 
+    *                    <code>toTrackingByteArray()</code>.
+    * 
+    * @return The learner's activity tree.
+    * 
+    * @throws IOException Thrown if the data is corrupt or does not match the
+    *                     course definition.
+    */
+   public static SeqActivityTree fromTrackingByteArray(
+                                    SeqActivityTree iDefinition, byte[] iData)
+      throws IOException
+   {
+      CodecInput in = new CodecInput(iData);
+
+      if ( in.getType() != TRACKING_CODEC_TYPE )
+      {
+         throw new InvalidObjectException("Not activity tree tracking state");
+      }
+
+      SeqActivityTree tree = iDefinition.copyDefinition();
+
+      in.beginRecord();
+
+      String courseID = in.readString();
+
+      if ( courseID != null && !courseID.equals(tree.mCourseID) )
+      {
+         throw new InvalidObjectException("Tracking state of '" + courseID +
+                                          "' read for '" + tree.mCourseID +
+                                          "'");
+      }
+
+      tree.setLearnerID(in.readString());
+
+      String lastLeaf = in.readString();
+
+      if ( lastLeaf != null )
+      {
+         tree.mLastLeaf = lastLeaf;
+      }
+
+      if ( in.readBoolean() )
+      {
+         SeqActivity[] index = tree.getIndex();
+
+         if ( in.readInt() != index.length )
+         {
+            throw new InvalidObjectException("Tracking state does not match " +
+                                             "the course definition");
+         }
+
+         for ( int i = 0; i < index.length; i++ )
+         {
+            index[i].decodeTracking(in);
+         }
+
+         tree.mCurActivity = tree.getActivity(in.readString());
+         tree.mFirstCandidate = tree.getActivity(in.readString());
+         tree.mSuspendAll = tree.getActivity(in.readString());
+
+         if ( in.readBoolean() )
+         {
+            tree.mValidReq = ADLValidRequests.decode(in, tree.mActivityMap);
+         }
+      }
+
+      in.endRecord();
+
+      return tree;
+   }
+
+   /**
+    * Encodes this activity tree.  Activities referenced from the tree (the
+    * current activity, the first candidate and the suspended activity) are
+    * written as their IDs; the activity map and the global objective index
+    * are rebuilt when the tree is read.
+    * 
+    * @return The encoded activity tree.
+    * 
+    * @throws IOException Thrown if the tree cannot be encoded.
+    */
+   public byte[] toByteArray() throws IOException
+   {
+      CodecOutput out = new CodecOutput(CODEC_TYPE);
+
+      out.beginRecord(CODEC_VERSION);
+      out.writeString(mCourseID);
+      out.writeString(mLearnerID);
+      out.writeString(mScopeID);
+      out.writeString(mLastLeaf);
+      out.writeBoolean(mDataScopedForAllAttempts);
+      out.writeBoolean(mRoot != null);
+
+      if ( mRoot != null )
+      {
+         mRoot.encode(out);
+      }
+
+      out.writeString(( mCurActivity != null ) ? 
+                      mCurActivity.getID() : null);
+      out.writeString(( mFirstCandidate != null ) ? 
+                      mFirstCandidate.getID() : null);
+      out.writeString(( mSuspendAll != null ) ? 
+                      mSuspendAll.getID() : null);
+      out.writeBoolean(mValidReq != null);
+
+      if ( mValidReq != null )
+      {
+         mValidReq.encode(out);
+      }
+
+      out.endRecord();
+
+      return out.toByteArray();
+   }
+
+   /**
+    * Reads an activity tree, either encoded by <code>toByteArray()</code> or
+    * serialized by an earlier version of the Sample RTE.
+    * 
+    * @param iData The encoded or serialized activity tree.
+    * 
+    * @return The activity tree.
+    * 
+    * @throws IOException Thrown if the data cannot be read.
+    * 
+    * @throws ClassNotFoundException Thrown if serialized data refers to an 
+    *                                unknown class.
+    */
+   public static SeqActivityTree fromByteArray(byte[] iData)
+      throws IOException, ClassNotFoundException
+   {
+      if ( !CodecInput.isEncoded(iData) )
+      {
+         LegacyObjectInputStream in = 
+            new LegacyObjectInputStream(new ByteArrayInputStream(iData));
+
+         try
+         {
+            return (SeqActivityTree)in.readObject();
+         }
+         finally
+         {
+            in.close();
+         }
+      }
+
+      CodecInput in = new CodecInput(iData);
+
+      if ( in.getType() != CODEC_TYPE )
+      {
+         throw new InvalidObjectException("Not an activity tree");
+      }
+
+      SeqActivityTree tree = new SeqActivityTree();
+
+      in.beginRecord();
+      tree.mCourseID = in.readString();
+      tree.mLearnerID = in.readString();
+      tree.mScopeID = in.readString();
+      tree.mLastLeaf = in.readString();
+      tree.mDataScopedForAllAttempts = in.readBoolean();
+
+      if ( in.readBoolean() )
+      {
+         tree.mRoot = SeqActivity.decode(in);
+      }
+
+      tree.buildActivityMap();
+
+      tree.mCurActivity = tree.getActivity(in.readString());
+      tree.mFirstCandidate = tree.getActivity(in.readString());
+      tree.mSuspendAll = tree.getActivity(in.readString());
+
+      if ( in.readBoolean() )
+      {
+         tree.mValidReq = ADLValidRequests.decode(in, tree.mActivityMap);
+      }
+
+      in.endRecord();
+
+      return tree;
+   }
+
 }  // end SeqActivityTree
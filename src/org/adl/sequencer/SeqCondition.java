@@ -29,6 +29,9 @@ package org.adl.sequencer;
 import org.adl.util.debug.DebugIndicator;
 
 import java.io.Serializable;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * <strong>Filename:</strong> SeqCondition.java<br><br>
@@ -191,10 +194,86 @@ public class SeqCondition implements Serializable
     */
    public static String NEVER       = "never";
 
+   /**
+    * Opcode of a condition that is not recognized; it always evaluates to 
+    * unknown.
+    */
+   static final int OP_UNKNOWN = 0;
+
+   /**
+    * Opcode of the <code>ALWAYS</code> condition.
+    */
+   static final int OP_ALWAYS = 1;
+
+   /**
+    * Opcode of the <code>NEVER</code> condition.
+    */
+   static final int OP_NEVER = 2;
+
+   /**
+    * Opcode of the <code>SATISFIED</code> condition.
+    */
+   static final int OP_SATISFIED = 3;
+
+   /**
+    * Opcode of the <code>OBJSTATUSKNOWN</code> condition.
+    */
+   static final int OP_OBJSTATUSKNOWN = 4;
+
+   /**
+    * Opcode of the <code>OBJMEASUREKNOWN</code> condition.
+    */
+   static final int OP_OBJMEASUREKNOWN = 5;
+
+   /**
+    * Opcode of the <code>OBJMEASUREGRTHAN</code> condition.
+    */
+   static final int OP_OBJMEASUREGRTHAN = 6;
+
+   /**
+    * Opcode of the <code>OBJMEASURELSTHAN</code> condition.
+    */
+   static final int OP_OBJMEASURELSTHAN = 7;
+
+   /**
+    * Opcode of the <code>COMPLETED</code> condition.
+    */
+   static final int OP_COMPLETED = 8;
+
+   /**
+    * Opcode of the <code>PROGRESSKNOWN</code> condition.
+    */
+   static final int OP_PROGRESSKNOWN = 9;
+
+   /**
+    * Opcode of the <code>ATTEMPTED</code> condition.
+    */
+   static final int OP_ATTEMPTED = 10;
+
+   /**
+    * Opcode of the <code>ATTEMPTSEXCEEDED</code> condition.
+    */
+   static final int OP_ATTEMPTSEXCEEDED = 11;
+
+   /**
+    * Opcode of the <code>TIMELIMITEXCEEDED</code> condition.
+    */
+   static final int OP_TIMELIMITEXCEEDED = 12;
+
+   /**
+    * Opcode of the <code>OUTSIDETIME</code> condition.
+    */
+   static final int OP_OUTSIDETIME = 13;
+
    /**
     * This controls display of log messages to the java console
     */
    private static boolean _Debug = DebugIndicator.ON;
+
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
    
    /**
     * The condition to be evaluated
@@ -243,4 +322,113 @@ public class SeqCondition implements Serializable
       }
    }
 
+   /**
+    * Provides the opcode the condition to be evaluated is compiled to.
+    * 
+    * @return One of the <code>OP_</code> constants.
+    */
+   int getOpcode()
+   {
+      int op = OP_UNKNOWN;
+
+      if ( mCondition == null )
+      {
+         op = OP_UNKNOWN;
+      }
+      else if ( mCondition.equals(ALWAYS) )
+      {
+         op = OP_ALWAYS;
+      }
+      else if ( mCondition.equals(NEVER) )
+      {
+         op = OP_NEVER;
+      }
+      else if ( mCondition.equals(SATISFIED) )
+      {
+         op = OP_SATISFIED;
+      }
+      else if ( mCondition.equals(OBJSTATUSKNOWN) )
+      {
+         op = OP_OBJSTATUSKNOWN;
+      }
+      else if ( mCondition.equals(OBJMEASUREKNOWN) )
+      {
+         op = OP_OBJMEASUREKNOWN;
+      }
+      else if ( mCondition.equals(OBJMEASUREGRTHAN) )
+      {
+         op = OP_OBJMEASUREGRTHAN;
+      }
+      else if ( mCondition.equals(OBJMEASURELSTHAN) )
+      {
+         op = OP_OBJMEASURELSTHAN;
+      }
+      else if ( mCondition.equals(COMPLETED) )
+      {
+         op = OP_COMPLETED;
+      }
+      else if ( mCondition.equals(PROGRESSKNOWN) )
+      {
+         op = OP_PROGRESSKNOWN;
+      }
+      else if ( mCondition.equals(ATTEMPTED) )
+      {
+         op = OP_ATTEMPTED;
+      }
+      else if ( mCondition.equals(ATTEMPTSEXCEEDED) )
+      {
+         op = OP_ATTEMPTSEXCEEDED;
+      }
+      else if ( mCondition.equals(TIMELIMITEXCEEDED) )
+      {
+         op = OP_TIMELIMITEXCEEDED;
+      }
+      else if ( mCondition.equals(OUTSIDETIME) )
+      {
+         op = OP_OUTSIDETIME;
+      }
+
+      return op;
+   }
+
+   /**
+    * Writes this condition.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mCondition);
+      ioOut.writeBoolean(mNot);
+      ioOut.writeString(mObjID);
+      ioOut.writeDouble(mThreshold);
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a condition.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The condition.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqCondition decode(CodecInput iIn) throws IOException
+   {
+      SeqCondition cond = new SeqCondition();
+
+      iIn.beginRecord();
+      cond.mCondition = iIn.readString();
+      cond.mNot = iIn.readBoolean();
+      cond.mObjID = iIn.readString();
+      cond.mThreshold = iIn.readDouble();
+      iIn.endRecord();
+
+      return cond;
+   }
+
 }  // end SeqCondition
@@ -29,6 +29,9 @@ import java.io.Serializable;
 import java.util.Vector;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation of a set of conditions used to evaluate sequencing and rollup
@@ -113,6 +116,11 @@ public class SeqConditionSet implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * Describes the evaluation criteria for this set of conditions.
     */
@@ -136,6 +144,31 @@ public class SeqConditionSet implements Serializable
     */
    private boolean mRollup = false;
 
+   /**
+    * The combination of the compiled conditions; <code>true</code> for 'all', 
+    * <code>false</code> for 'any'.
+    */
+   private transient boolean mCompiledAll = false;
+
+   /**
+    * Indicates the combination of the conditions is not recognized, so the 
+    * set always evaluates to unknown.
+    */
+   private transient boolean mCompiledUnknown = false;
+
+   /**
+    * The opcodes (<code>SeqCondition.OP_</code>) of the compiled conditions,
+    * or <code>null</code> if the set has not been compiled.  Written last by
+    * <code>compile()</code>, so a set shared by several activity trees can
+    * be compiled by whichever evaluates it first.
+    */
+   private transient volatile int[] mOps = null;
+
+   /**
+    * The compiled conditions, in the same order as <code>mOps</code>.
+    */
+   private transient SeqCondition[] mCompiled = null;
+
 
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
    
@@ -201,6 +234,60 @@ public class SeqConditionSet implements Serializable
    
    -*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*/
 
+   /**
+    * Compiles the conditions of this set so they can be evaluated without
+    * comparing their names.  This must be called again if the conditions or
+    * their combination are changed after the set has been evaluated.
+    */
+   void compile()
+   {
+      mCompiledAll = COMBINATION_ALL.equals(mCombination);
+      mCompiledUnknown = !mCompiledAll && 
+                         !COMBINATION_ANY.equals(mCombination);
+
+      int size = ( mConditions != null ) ? mConditions.size() : 0;
+
+      SeqCondition[] compiled = new SeqCondition[size];
+      int[] ops = new int[size];
+
+      for ( int i = 0; i < size; i++ )
+      {
+         compiled[i] = (SeqCondition)mConditions.elementAt(i);
+         ops[i] = compiled[i].getOpcode();
+      }
+
+      mCompiled = compiled;
+      mOps = ops;
+   }
+
+   /**
+    * Indicates if the result of this condition set can change with time
+    * alone.
+    * 
+    * @return <code>true</code> if the set includes a time limit condition,
+    *         otherwise <code>false</code>.
+    */
+   boolean isTimeDependent()
+   {
+      if ( mOps == null )
+      {
+         compile();
+      }
+
+      int[] ops = mOps;
+
+      for ( int i = 0; i < ops.length; i++ )
+      {
+         if ( ops[i] == SeqCondition.OP_TIMELIMITEXCEEDED ||
+              ops[i] == SeqCondition.OP_OUTSIDETIME )
+         {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
    /**
     * Evaluates this condition set
     * 
@@ -254,14 +341,21 @@ public class SeqConditionSet implements Serializable
             }
          }
 
-         if ( mConditions != null )
+         if ( mOps == null )
          {
+            compile();
+         }
+
+         if ( mConditions != null && !mCompiledUnknown )
+         {
+            int[] ops = mOps;
+
             // Evaluate this rule's conditions
-            if ( mCombination.equals(COMBINATION_ALL) )
+            if ( mCompiledAll )
             {
                result = EVALUATE_TRUE;
 
-               for ( int i = 0; i < mConditions.size(); i++ )
+               for ( int i = 0; i < ops.length; i++ )
                {
                   int thisEval = evaluateCondition(i, iThisActivity);
 
@@ -274,12 +368,12 @@ public class SeqConditionSet implements Serializable
                   }
                }
             }
-            else if ( mCombination.equals(COMBINATION_ANY) )
+            else
             {
                // Assume we have enought information to evaluate
                result = EVALUATE_FALSE;
 
-               for ( int i = 0; i < mConditions.size(); i++ )
+               for ( int i = 0; i < ops.length; i++ )
                {
                   int thisEval = evaluateCondition(i, iThisActivity);
 
@@ -342,10 +436,10 @@ public class SeqConditionSet implements Serializable
       int result = EVALUATE_UNKNOWN;
 
       // Make sure this condition exists
-      if ( iIndex < mConditions.size() )
+      if ( iIndex < mOps.length )
       {
 
-         SeqCondition cond = (SeqCondition)mConditions.elementAt(iIndex);
+         SeqCondition cond = mCompiled[iIndex];
 
          if ( _Debug )
          {
@@ -353,110 +447,107 @@ public class SeqConditionSet implements Serializable
          }
 
          // evaluate the current condtion
-         if ( cond.mCondition.equals(SeqCondition.ALWAYS) )
-         {
-            result = EVALUATE_TRUE;
-         }
-         else if ( cond.mCondition.equals(SeqCondition.NEVER) )
-         {
-            result = EVALUATE_FALSE;
-         }
-         else if ( cond.mCondition.equals(SeqCondition.SATISFIED) )
-         {
-            if ( iTarget.getObjStatus(cond.mObjID, mRollup) )
-            {
-               result = 
-                  (iTarget.getObjSatisfied(cond.mObjID, mRollup)) ?
-                  EVALUATE_TRUE : EVALUATE_FALSE;
-            }
-            else
-            {
-               result = EVALUATE_UNKNOWN;
-            }
-         }
-         else if ( cond.mCondition.equals(SeqCondition.OBJSTATUSKNOWN) )
-         {
-            result = iTarget.getObjStatus(cond.mObjID, mRollup) ?
-               EVALUATE_TRUE : EVALUATE_FALSE;
-         }
-         else if ( cond.mCondition.equals(SeqCondition.OBJMEASUREKNOWN) )
-         {
-            result = iTarget.getObjMeasureStatus(cond.mObjID, mRollup) ?
-               EVALUATE_TRUE : EVALUATE_FALSE;
-         }
-         else if ( cond.mCondition.equals(SeqCondition.OBJMEASUREGRTHAN) )
+         switch ( mOps[iIndex] )
          {
-            if ( iTarget.getObjMeasureStatus(cond.mObjID, mRollup) )
-            {
-               result = ( iTarget.getObjMeasure(cond.mObjID, mRollup) >
-                          cond.mThreshold ) ?
-                  EVALUATE_TRUE : EVALUATE_FALSE;           
-            }
-            else
-            {
-               result = EVALUATE_UNKNOWN;
-            }
-         }
-         else if ( cond.mCondition.equals(SeqCondition.OBJMEASURELSTHAN) )
-         {
-            if ( iTarget.getObjMeasureStatus(cond.mObjID, mRollup) )
-            {
+            case SeqCondition.OP_ALWAYS:
+
+               result = EVALUATE_TRUE;
+               break;
 
-               result = ( iTarget.getObjMeasure(cond.mObjID, mRollup) <
-                          cond.mThreshold ) ?
+            case SeqCondition.OP_NEVER:
+
+               result = EVALUATE_FALSE;
+               break;
+
+            case SeqCondition.OP_SATISFIED:
+
+               if ( iTarget.getObjStatus(cond.mObjID, mRollup) )
+               {
+                  result = 
+                     (iTarget.getObjSatisfied(cond.mObjID, mRollup)) ?
+                     EVALUATE_TRUE : EVALUATE_FALSE;
+               }
+               break;
+
+            case SeqCondition.OP_OBJSTATUSKNOWN:
+
+               result = iTarget.getObjStatus(cond.mObjID, mRollup) ?
                   EVALUATE_TRUE : EVALUATE_FALSE;
-            }
-            else
-            {
-               result = EVALUATE_UNKNOWN;
-            }
-         }
-         else if ( cond.mCondition.equals(SeqCondition.COMPLETED) )
-         {
-            if ( iTarget.getProgressStatus(cond.mObjID, mRollup) )
-            {
-               result = iTarget.getAttemptCompleted(cond.mObjID, mRollup) ?
+               break;
+
+            case SeqCondition.OP_OBJMEASUREKNOWN:
+
+               result = iTarget.getObjMeasureStatus(cond.mObjID, mRollup) ?
                   EVALUATE_TRUE : EVALUATE_FALSE;
-            }
-            else
-            {
-               result = EVALUATE_UNKNOWN;
-            }
-         }
-         else if ( cond.mCondition.equals(SeqCondition.PROGRESSKNOWN) )
-         {
-            result = iTarget.getProgressStatus(cond.mObjID, mRollup) ?
-               EVALUATE_TRUE : EVALUATE_FALSE;
-         }
-         else if ( cond.mCondition.equals(SeqCondition.ATTEMPTED) )
-         {
-            result = iTarget.getActivityAttempted() ?
-               EVALUATE_TRUE : EVALUATE_FALSE;
-         }
-         else if ( cond.mCondition.equals(SeqCondition.ATTEMPTSEXCEEDED) )
-         {
-            if ( iTarget.getAttemptLimitControl() )
-            {
-               long maxAttempt = iTarget.getAttemptLimit();
-   
-               // Check if this limit condition exists
-               if ( maxAttempt >= 0 )
+               break;
+
+            case SeqCondition.OP_OBJMEASUREGRTHAN:
+
+               if ( iTarget.getObjMeasureStatus(cond.mObjID, mRollup) )
+               {
+                  result = ( iTarget.getObjMeasure(cond.mObjID, mRollup) >
+                             cond.mThreshold ) ?
+                     EVALUATE_TRUE : EVALUATE_FALSE;           
+               }
+               break;
+
+            case SeqCondition.OP_OBJMEASURELSTHAN:
+
+               if ( iTarget.getObjMeasureStatus(cond.mObjID, mRollup) )
                {
-                  result = ( iTarget.getNumAttempt() >= maxAttempt ) ?
+                  result = ( iTarget.getObjMeasure(cond.mObjID, mRollup) <
+                             cond.mThreshold ) ?
                      EVALUATE_TRUE : EVALUATE_FALSE;
                }
-            }
-         }
-         else if ( cond.mCondition.equals(SeqCondition.TIMELIMITEXCEEDED) )
-         {
-            // add later with other time tracking implementation...
-            // -+- TODO -+-
-         }
-         else if ( cond.mCondition.equals(SeqCondition.OUTSIDETIME) )
-         {
+               break;
 
-            // add later with other time tracking implementation...
-            // -+- TODO -+-
+            case SeqCondition.OP_COMPLETED:
+
+               if ( iTarget.getProgressStatus(cond.mObjID, mRollup) )
+               {
+                  result = iTarget.getAttemptCompleted(cond.mObjID, mRollup) ?
+                     EVALUATE_TRUE : EVALUATE_FALSE;
+               }
+               break;
+
+            case SeqCondition.OP_PROGRESSKNOWN:
+
+               result = iTarget.getProgressStatus(cond.mObjID, mRollup) ?
+                  EVALUATE_TRUE : EVALUATE_FALSE;
+               break;
+
+            case SeqCondition.OP_ATTEMPTED:
+
+               result = iTarget.getActivityAttempted() ?
+                  EVALUATE_TRUE : EVALUATE_FALSE;
+               break;
+
+            case SeqCondition.OP_ATTEMPTSEXCEEDED:
+
+               if ( iTarget.getAttemptLimitControl() )
+               {
+                  long maxAttempt = iTarget.getAttemptLimit();
+      
+                  // Check if this limit condition exists
+                  if ( maxAttempt >= 0 )
+                  {
+                     result = ( iTarget.getNumAttempt() >= maxAttempt ) ?
+                        EVALUATE_TRUE : EVALUATE_FALSE;
+                  }
+               }
+               break;
+
+            case SeqCondition.OP_TIMELIMITEXCEEDED:
+            case SeqCondition.OP_OUTSIDETIME:
+
+               // add later with other time tracking implementation...
+               // -+- TODO -+-
+               break;
+
+            default:
+
+               // Unrecognized conditions are unknown
+               break;
          }
 
          // Account for condition operator
@@ -483,6 +574,70 @@ public class SeqConditionSet implements Serializable
       return result;
    }
 
+   /**
+    * Writes this condition set.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mCombination);
+      ioOut.writeBoolean(mRetry);
+      ioOut.writeBoolean(mRollup);
+
+      if ( mConditions == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mConditions.size());
+
+         for ( int i = 0; i < mConditions.size(); i++ )
+         {
+            ((SeqCondition)mConditions.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a condition set.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The condition set.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqConditionSet decode(CodecInput iIn) throws IOException
+   {
+      SeqConditionSet set = new SeqConditionSet();
 
+      iIn.beginRecord();
+      set.mCombination = iIn.readString();
+      set.mRetry = iIn.readBoolean();
+      set.mRollup = iIn.readBoolean();
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         set.mConditions = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            set.mConditions.add(SeqCondition.decode(iIn));
+         }
+      }
+
+      iIn.endRecord();
+
+      return set;
+   }
 
 }  // end SeqConditionSet
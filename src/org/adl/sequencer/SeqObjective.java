@@ -30,6 +30,9 @@ import java.io.Serializable;
 import java.util.Vector;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation mastery status tracking and behavior.<br><br>
@@ -71,6 +74,11 @@ public class SeqObjective implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * Identifier of this objective.
     */
@@ -205,4 +213,75 @@ public class SeqObjective implements Serializable
          }
       }
    }
+
+   /**
+    * Writes this objective.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mObjID);
+      ioOut.writeBoolean(mSatisfiedByMeasure);
+      ioOut.writeBoolean(mActiveMeasure);
+      ioOut.writeBoolean(mContributesToRollup);
+      ioOut.writeDouble(mMinMeasure);
+
+      if ( mMaps == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mMaps.size());
+
+         for ( int i = 0; i < mMaps.size(); i++ )
+         {
+            ((SeqObjectiveMap)mMaps.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads an objective.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The objective.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqObjective decode(CodecInput iIn) throws IOException
+   {
+      SeqObjective obj = new SeqObjective();
+
+      iIn.beginRecord();
+      obj.mObjID = iIn.readString();
+      obj.mSatisfiedByMeasure = iIn.readBoolean();
+      obj.mActiveMeasure = iIn.readBoolean();
+      obj.mContributesToRollup = iIn.readBoolean();
+      obj.mMinMeasure = iIn.readDouble();
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         obj.mMaps = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            obj.mMaps.add(SeqObjectiveMap.decode(iIn));
+         }
+      }
+
+      iIn.endRecord();
+
+      return obj;
+   }
+
 }  // end SeqObjective
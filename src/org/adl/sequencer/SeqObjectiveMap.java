@@ -28,6 +28,9 @@ package org.adl.sequencer;
 
 import org.adl.util.debug.DebugIndicator;
 import java.io.Serializable;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * <strong>Filename:</strong> SeqObjectiveMap.java<br><br>
@@ -61,6 +64,11 @@ public class SeqObjectiveMap implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * The target global objective.
     */
@@ -237,4 +245,67 @@ public class SeqObjectiveMap implements Serializable
          mWriteProgressMeasure = mWriteProgressMeasure || candidate.mWriteProgressMeasure;
       }
    }
+
+   /**
+    * Writes this objective map.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mGlobalObjID);
+      ioOut.writeBoolean(mReadStatus);
+      ioOut.writeBoolean(mReadMeasure);
+      ioOut.writeBoolean(mReadRawScore);
+      ioOut.writeBoolean(mReadMinScore);
+      ioOut.writeBoolean(mReadMaxScore);
+      ioOut.writeBoolean(mReadCompletionStatus);
+      ioOut.writeBoolean(mReadProgressMeasure);
+      ioOut.writeBoolean(mWriteStatus);
+      ioOut.writeBoolean(mWriteMeasure);
+      ioOut.writeBoolean(mWriteRawScore);
+      ioOut.writeBoolean(mWriteMinScore);
+      ioOut.writeBoolean(mWriteMaxScore);
+      ioOut.writeBoolean(mWriteCompletionStatus);
+      ioOut.writeBoolean(mWriteProgressMeasure);
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads an objective map.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The objective map.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqObjectiveMap decode(CodecInput iIn) throws IOException
+   {
+      SeqObjectiveMap map = new SeqObjectiveMap();
+
+      iIn.beginRecord();
+      map.mGlobalObjID = iIn.readString();
+      map.mReadStatus = iIn.readBoolean();
+      map.mReadMeasure = iIn.readBoolean();
+      map.mReadRawScore = iIn.readBoolean();
+      map.mReadMinScore = iIn.readBoolean();
+      map.mReadMaxScore = iIn.readBoolean();
+      map.mReadCompletionStatus = iIn.readBoolean();
+      map.mReadProgressMeasure = iIn.readBoolean();
+      map.mWriteStatus = iIn.readBoolean();
+      map.mWriteMeasure = iIn.readBoolean();
+      map.mWriteRawScore = iIn.readBoolean();
+      map.mWriteMinScore = iIn.readBoolean();
+      map.mWriteMaxScore = iIn.readBoolean();
+      map.mWriteCompletionStatus = iIn.readBoolean();
+      map.mWriteProgressMeasure = iIn.readBoolean();
+      iIn.endRecord();
+
+      return map;
+   }
+
 }  // end SeqObjectiveMap
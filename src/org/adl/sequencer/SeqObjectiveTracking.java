@@ -29,6 +29,9 @@ import java.io.Serializable;
 import java.util.Vector;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation mastery status tracking and behavior.<br><br>
@@ -60,13 +63,18 @@ import org.adl.util.debug.DebugIndicator;
  * 
  * @author ADL Technical Team
  */
-public class SeqObjectiveTracking implements Serializable
+public class SeqObjectiveTracking implements Serializable, Cloneable
 {
    /**
     * This controls display of log messages to the java console
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * Identifies the learner with which this objective is associated.
     */
@@ -246,6 +254,15 @@ public class SeqObjectiveTracking implements Serializable
 
    -*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*/
 
+   /**
+    * Initializes empty objective tracking information, which is then read 
+    * by <code>decode()</code>.
+    */
+   private SeqObjectiveTracking()
+   {
+      // Filled in by decode()
+   }
+
    /**
     * Initializes the objective tracking information for one objective.
     * 
@@ -2028,4 +2045,166 @@ public class SeqObjectiveTracking implements Serializable
       }
    }
 
+   /**
+    * Creates a copy of this objective's tracking information.  The 
+    * objective's definition and its global objective maps are shared.
+    * 
+    * @return The copy.
+    */
+   SeqObjectiveTracking copy()
+   {
+      try
+      {
+         return (SeqObjectiveTracking)super.clone();
+      }
+      catch ( CloneNotSupportedException e )
+      {
+         throw new InternalError(e.toString());
+      }
+   }
+
+   /**
+    * Writes this objective's tracking information.  The objective is written
+    * as its index in the activity's objectives when it is one of them.
+    * 
+    * @param ioOut The output.
+    * 
+    * @param iObjs The activity's objectives (<code>SeqObjective</code>), or
+    *              <code>null</code>.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut, Vector iObjs) throws IOException
+   {
+      int index = -1;
+
+      for ( int i = 0; iObjs != null && i < iObjs.size(); i++ )
+      {
+         if ( iObjs.elementAt(i) == mObj )
+         {
+            index = i;
+            break;
+         }
+      }
+
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mLearnerID);
+      ioOut.writeString(mScopeID);
+      ioOut.writeInt(index);
+
+      if ( index == -1 )
+      {
+         ioOut.writeBoolean(mObj != null);
+
+         if ( mObj != null )
+         {
+            mObj.encode(ioOut);
+         }
+      }
+
+      ioOut.writeBoolean(mDirtyObj);
+      ioOut.writeBoolean(mSetOK);
+      ioOut.writeBoolean(mHasSatisfied);
+      ioOut.writeBoolean(mSatisfied);
+      ioOut.writeBoolean(mHasMeasure);
+      ioOut.writeBoolean(mHasRawScore);
+      ioOut.writeBoolean(mHasMinScore);
+      ioOut.writeBoolean(mHasMaxScore);
+      ioOut.writeBoolean(mHasProgressMeasure);
+      ioOut.writeBoolean(mHasCompletionStatus);
+      ioOut.writeDouble(mMeasure);
+      ioOut.writeDouble(mRawScore);
+      ioOut.writeDouble(mMinScore);
+      ioOut.writeDouble(mMaxScore);
+      ioOut.writeDouble(mProgressMeasure);
+      ioOut.writeString(mCompletionStatus);
+      ioOut.writeString(mReadStatus);
+      ioOut.writeString(mReadMeasure);
+      ioOut.writeString(mReadRawScore);
+      ioOut.writeString(mReadMinScore);
+      ioOut.writeString(mReadMaxScore);
+      ioOut.writeString(mReadCompletionStatus);
+      ioOut.writeString(mReadProgressMeasure);
+      ioOut.writeStrings(mWriteStatus);
+      ioOut.writeStrings(mWriteMeasure);
+      ioOut.writeStrings(mWriteRawScore);
+      ioOut.writeStrings(mWriteMinScore);
+      ioOut.writeStrings(mWriteMaxScore);
+      ioOut.writeStrings(mWriteCompletionStatus);
+      ioOut.writeStrings(mWriteProgressMeasure);
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads an objective's tracking information.
+    * 
+    * @param iIn   The input.
+    * 
+    * @param iObjs The activity's objectives (<code>SeqObjective</code>), or
+    *              <code>null</code>.
+    * 
+    * @return The tracking information.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqObjectiveTracking decode(CodecInput iIn, Vector iObjs) 
+      throws IOException
+   {
+      SeqObjectiveTracking track = new SeqObjectiveTracking();
+
+      iIn.beginRecord();
+      track.mLearnerID = iIn.readString();
+      track.mScopeID = iIn.readString();
+
+      int index = iIn.readInt();
+
+      if ( index != -1 )
+      {
+         if ( iObjs == null || index < 0 || index >= iObjs.size() )
+         {
+            throw new IOException("Unknown objective: " + index);
+         }
+
+         track.mObj = (SeqObjective)iObjs.elementAt(index);
+      }
+      else if ( iIn.readBoolean() )
+      {
+         track.mObj = SeqObjective.decode(iIn);
+      }
+
+      track.mDirtyObj = iIn.readBoolean();
+      track.mSetOK = iIn.readBoolean();
+      track.mHasSatisfied = iIn.readBoolean();
+      track.mSatisfied = iIn.readBoolean();
+      track.mHasMeasure = iIn.readBoolean();
+      track.mHasRawScore = iIn.readBoolean();
+      track.mHasMinScore = iIn.readBoolean();
+      track.mHasMaxScore = iIn.readBoolean();
+      track.mHasProgressMeasure = iIn.readBoolean();
+      track.mHasCompletionStatus = iIn.readBoolean();
+      track.mMeasure = iIn.readDouble();
+      track.mRawScore = iIn.readDouble();
+      track.mMinScore = iIn.readDouble();
+      track.mMaxScore = iIn.readDouble();
+      track.mProgressMeasure = iIn.readDouble();
+      track.mCompletionStatus = iIn.readString();
+      track.mReadStatus = iIn.readString();
+      track.mReadMeasure = iIn.readString();
+      track.mReadRawScore = iIn.readString();
+      track.mReadMinScore = iIn.readString();
+      track.mReadMaxScore = iIn.readString();
+      track.mReadCompletionStatus = iIn.readString();
+      track.mReadProgressMeasure = iIn.readString();
+      track.mWriteStatus = iIn.readStrings();
+      track.mWriteMeasure = iIn.readStrings();
+      track.mWriteRawScore = iIn.readStrings();
+      track.mWriteMinScore = iIn.readStrings();
+      track.mWriteMaxScore = iIn.readStrings();
+      track.mWriteCompletionStatus = iIn.readStrings();
+      track.mWriteProgressMeasure = iIn.readStrings();
+      iIn.endRecord();
+
+      return track;
+   }
+
 }  // end SeqObjectiveTracking
@@ -0,0 +1,520 @@
+/*******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+*******************************************************************************/
+
+package org.adl.sequencer;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Vector;
+
+/**
+ * Maintains the rollup inputs of a wide cluster.<br><br>
+ * 
+ * <strong>Filename:</strong> SeqRollupAggregate.java<br><br>
+ * 
+ * <strong>Description:</strong><br>
+ * Holds, for each child of a cluster, its contribution to the cluster's
+ * measure and progress measure rollup and the result of each of the 
+ * cluster's rollup rules, together with the running totals of those values.
+ * When the cluster is rolled up, only the children whose state changed since
+ * the last rollup are evaluated again.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * Children report their changes through 
+ * <code>SeqActivity.childRollupStateChanged</code>.  Children whose state can
+ * change without being reported -- those that read global shared objectives
+ * or are only considered for rollup if they are not skipped -- are evaluated
+ * on every rollup, and make the cluster 'volatile'.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Only clusters with at least <code>MIN_CHILDREN</code> children use an
+ * aggregate.  The measure totals are kept exactly, so a rolled up measure is
+ * the correctly rounded sum of the children's weighted measures.  Rules that
+ * evaluate time limits are always evaluated against all children.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>IMS SS 1.0
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ * 
+ * @author ADL Technical Team
+ */
+final class SeqRollupAggregate
+{
+   /**
+    * The fewest children a cluster must have to maintain an aggregate.
+    */
+   static final int MIN_CHILDREN = 32;
+
+   /**
+    * Indicates a child is not included in the evaluation of a rollup rule.
+    */
+   private static final byte EXCLUDED = 2;
+
+   /**
+    * The set of children (<code>SeqActivity</code>) this aggregate describes.
+    */
+   private Vector mChildren = null;
+
+   /**
+    * The position of each child in <code>mChildren</code>.
+    */
+   private HashMap mPositions = null;
+
+   /**
+    * The children whose state changed since the last rollup.
+    */
+   private HashSet mDirty = new HashSet();
+
+   /**
+    * The positions of the children that are evaluated on every rollup.
+    */
+   private int[] mVolatile = null;
+
+   /**
+    * The total weight of the children counted in measure rollup.
+    */
+   private double mObjCounted = 0.0;
+
+   /**
+    * Each child's weighted measure, or <code>null</code> if it has none.
+    */
+   private BigDecimal[] mObjMeasures = null;
+
+   /**
+    * The sum of the children's weighted measures.
+    */
+   private BigDecimal mObjTotal = new BigDecimal(0);
+
+   /**
+    * The total weight of the children counted in progress measure rollup.
+    */
+   private double mProCounted = 0.0;
+
+   /**
+    * Each child's weighted progress measure, or <code>null</code> if it has
+    * none.
+    */
+   private BigDecimal[] mProMeasures = null;
+
+   /**
+    * The sum of the children's weighted progress measures.
+    */
+   private BigDecimal mProTotal = new BigDecimal(0);
+
+   /**
+    * The state (<code>RuleState</code>) kept for each rollup rule, in the
+    * order of the cluster's rollup ruleset.
+    */
+   private Vector mRules = new Vector();
+
+   /**
+    * Initializes the aggregate of a cluster.
+    * 
+    * @param iChildren The cluster's active children (<code>SeqActivity</code>).
+    */
+   SeqRollupAggregate(Vector iChildren)
+   {
+      mChildren = iChildren;
+
+      int size = iChildren.size();
+
+      mPositions = new HashMap(size * 2);
+      mObjMeasures = new BigDecimal[size];
+      mProMeasures = new BigDecimal[size];
+
+      Vector volatileChildren = new Vector();
+
+      for ( int i = 0; i < size; i++ )
+      {
+         SeqActivity child = (SeqActivity)iChildren.elementAt(i);
+
+         mPositions.put(child, new Integer(i));
+
+         // Weights are part of the definition, so these totals never change
+         if ( child.getIsTracked() )
+         {
+            if ( child.getObjMeasureWeight() > 0.0 )
+            {
+               mObjCounted += child.getObjMeasureWeight();
+            }
+
+            if ( child.getProMeasureWeight() > 0.0 )
+            {
+               mProCounted += child.getProMeasureWeight();
+            }
+         }
+
+         if ( isVolatile(child) )
+         {
+            volatileChildren.add(new Integer(i));
+         }
+
+         updateMeasures(i, child);
+      }
+
+      mVolatile = new int[volatileChildren.size()];
+
+      for ( int i = 0; i < mVolatile.length; i++ )
+      {
+         mVolatile[i] = ((Integer)volatileChildren.elementAt(i)).intValue();
+      }
+   }
+
+   /**
+    * Determines if a child's contribution to its parent's rollup can change
+    * without the child reporting it.
+    * 
+    * @param iChild The child activity.
+    * 
+    * @return <code>true</code> if the child must be evaluated on every
+    *         rollup, otherwise <code>false</code>.
+    */
+   static boolean isVolatile(SeqActivity iChild)
+   {
+      String skipped = SeqRollupRule.ROLLUP_CONSIDER_NOTSKIPPED;
+
+      return iChild.readsGlobalObjectives() ||
+             skipped.equals(iChild.getRequiredForSatisfied()) ||
+             skipped.equals(iChild.getRequiredForNotSatisfied()) ||
+             skipped.equals(iChild.getRequiredForCompleted()) ||
+             skipped.equals(iChild.getRequiredForIncomplete());
+   }
+
+   /**
+    * Determines if this aggregate describes the given set of children.
+    * 
+    * @param iChildren The cluster's active children.
+    * 
+    * @return <code>true</code> if the aggregate can be used for the children,
+    *         otherwise <code>false</code>.
+    */
+   boolean isFor(Vector iChildren)
+   {
+      return iChildren == mChildren && iChildren.size() == mPositions.size();
+   }
+
+   /**
+    * Indicates if some children must be evaluated on every rollup.
+    * 
+    * @return <code>true</code> if the cluster must be rolled up whenever it
+    *         is in the rollup set, otherwise <code>false</code>.
+    */
+   boolean isVolatile()
+   {
+      return mVolatile.length > 0;
+   }
+
+   /**
+    * Records that a child's state changed.
+    * 
+    * @param iChild The child activity.
+    */
+   void childChanged(SeqActivity iChild)
+   {
+      mDirty.add(iChild);
+   }
+
+   /**
+    * Evaluates the children whose state changed since the last rollup.
+    */
+   void refresh()
+   {
+      for ( int i = 0; i < mVolatile.length; i++ )
+      {
+         mDirty.add(mChildren.elementAt(mVolatile[i]));
+      }
+
+      // Evaluating a child can report it as changed again
+      Object[] dirty = mDirty.toArray();
+
+      mDirty.clear();
+
+      for ( int k = 0; k < dirty.length; k++ )
+      {
+         SeqActivity child = (SeqActivity)dirty[k];
+         Integer position = (Integer)mPositions.get(child);
+
+         if ( position != null )
+         {
+            int i = position.intValue();
+
+            updateMeasures(i, child);
+
+            for ( int j = 0; j < mRules.size(); j++ )
+            {
+               RuleState state = (RuleState)mRules.elementAt(j);
+
+               if ( state != null )
+               {
+                  state.update(i, child);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Provides the total weight of the children counted in measure rollup.
+    * 
+    * @return The total weight.
+    */
+   double getObjCounted()
+   {
+      return mObjCounted;
+   }
+
+   /**
+    * Provides the sum of the children's weighted measures.
+    * 
+    * @return The sum.
+    */
+   double getObjTotal()
+   {
+      return mObjTotal.doubleValue();
+   }
+
+   /**
+    * Provides the total weight of the children counted in progress measure
+    * rollup.
+    * 
+    * @return The total weight.
+    */
+   double getProCounted()
+   {
+      return mProCounted;
+   }
+
+   /**
+    * Provides the sum of the children's weighted progress measures.
+    * 
+    * @return The sum.
+    */
+   double getProTotal()
+   {
+      return mProTotal.doubleValue();
+   }
+
+   /**
+    * Evaluates one of the cluster's rollup rules.
+    * 
+    * @param iIndex The position of the rule in the cluster's ruleset.
+    * 
+    * @param iRule  The rule.
+    * 
+    * @return The resulting status change caused by the evaluation of the rule.
+    *         This value is a member of the <code>ROLLUP_ACTION_XXX</code>
+    *         enumeration.
+    */
+   int evaluate(int iIndex, SeqRollupRule iRule)
+   {
+      if ( iRule.isTimeDependent() )
+      {
+         return iRule.evaluate(mChildren);
+      }
+
+      RuleState state = null;
+
+      if ( iIndex < mRules.size() )
+      {
+         state = (RuleState)mRules.elementAt(iIndex);
+
+         if ( state == null || state.mRule != iRule )
+         {
+            state = new RuleState(iRule);
+            mRules.setElementAt(state, iIndex);
+         }
+      }
+      else
+      {
+         mRules.setSize(iIndex);
+
+         state = new RuleState(iRule);
+         mRules.add(state);
+      }
+
+      return iRule.evaluate(state.mIncluded, state.mTrue, state.mUnknown);
+   }
+
+   /**
+    * Updates a child's contribution to the measure totals.
+    * 
+    * @param iIndex The position of the child.
+    * 
+    * @param iChild The child activity.
+    */
+   private void updateMeasures(int iIndex, SeqActivity iChild)
+   {
+      BigDecimal obj = null;
+      BigDecimal pro = null;
+
+      if ( iChild.getIsTracked() )
+      {
+         if ( iChild.getObjMeasureWeight() > 0.0 && 
+              iChild.getObjMeasureStatus(false) )
+         {
+            obj = new BigDecimal(iChild.getObjMeasureWeight() * 
+                                 iChild.getObjMeasure(false));
+         }
+
+         if ( iChild.getProMeasureWeight() > 0.0 && 
+              iChild.getProMeasureStatus(false) )
+         {
+            pro = new BigDecimal(iChild.getProMeasureWeight() * 
+                                 iChild.getProMeasure(false));
+         }
+      }
+
+      if ( mObjMeasures[iIndex] != null )
+      {
+         mObjTotal = mObjTotal.subtract(mObjMeasures[iIndex]);
+      }
+
+      if ( obj != null )
+      {
+         mObjTotal = mObjTotal.add(obj);
+      }
+
+      mObjMeasures[iIndex] = obj;
+
+      if ( mProMeasures[iIndex] != null )
+      {
+         mProTotal = mProTotal.subtract(mProMeasures[iIndex]);
+      }
+
+      if ( pro != null )
+      {
+         mProTotal = mProTotal.add(pro);
+      }
+
+      mProMeasures[iIndex] = pro;
+   }
+
+   /**
+    * The per child results of one rollup rule and their counts.
+    */
+   private final class RuleState
+   {
+      /**
+       * The rule these results belong to.
+       */
+      SeqRollupRule mRule = null;
+
+      /**
+       * The result of the rule's conditions for each child, or 
+       * <code>EXCLUDED</code>.
+       */
+      byte[] mResults = null;
+
+      /**
+       * The number of children included in the rule's evaluation.
+       */
+      int mIncluded = 0;
+
+      /**
+       * The number of included children whose conditions evaluate to true.
+       */
+      int mTrue = 0;
+
+      /**
+       * The number of included children whose conditions evaluate to 
+       * unknown.
+       */
+      int mUnknown = 0;
+
+      /**
+       * Evaluates a rule against all of the cluster's children.
+       * 
+       * @param iRule The rollup rule.
+       */
+      RuleState(SeqRollupRule iRule)
+      {
+         mRule = iRule;
+         mResults = new byte[mChildren.size()];
+
+         for ( int i = 0; i < mResults.length; i++ )
+         {
+            mResults[i] = EXCLUDED;
+
+            update(i, (SeqActivity)mChildren.elementAt(i));
+         }
+      }
+
+      /**
+       * Evaluates the rule's conditions for one child again.
+       * 
+       * @param iIndex The position of the child.
+       * 
+       * @param iChild The child activity.
+       */
+      void update(int iIndex, SeqActivity iChild)
+      {
+         count(mResults[iIndex], -1);
+
+         byte result = EXCLUDED;
+
+         if ( mRule.isIncluded(iChild) )
+         {
+            result = (byte)mRule.mConditions.evaluate(iChild);
+         }
+
+         mResults[iIndex] = result;
+
+         count(result, 1);
+      }
+
+      /**
+       * Adjusts the counts for one child's result.
+       * 
+       * @param iResult The child's result.
+       * 
+       * @param iDelta  The adjustment.
+       */
+      private void count(byte iResult, int iDelta)
+      {
+         if ( iResult != EXCLUDED )
+         {
+            mIncluded += iDelta;
+
+            if ( iResult == SeqConditionSet.EVALUATE_TRUE )
+            {
+               mTrue += iDelta;
+            }
+            else if ( iResult == SeqConditionSet.EVALUATE_UNKNOWN )
+            {
+               mUnknown += iDelta;
+            }
+         }
+      }
+   }
+
+} // end SeqRollupAggregate
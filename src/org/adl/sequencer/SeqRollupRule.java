@@ -30,6 +30,9 @@ import java.io.Serializable;
 import java.util.Vector;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulates one rollup rule.<br><br>
@@ -202,6 +205,11 @@ public class SeqRollupRule implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * This describes the rollup rule action (element 5.4)
     */
@@ -379,6 +387,68 @@ public class SeqRollupRule implements Serializable
       return action;
    }
 
+   /**
+    * Evaluates this rollup rule from the number of included children and the
+    * results of their conditions.  The result is the same as evaluating the
+    * rule against the children.
+    * 
+    * @param iIncluded The number of children included in the evaluation.
+    * 
+    * @param iTrue     The number of included children whose conditions
+    *                  evaluate to <code>EVALUATE_TRUE</code>.
+    * 
+    * @param iUnknown  The number of included children whose conditions
+    *                  evaluate to <code>EVALUATE_UNKNOWN</code>.
+    * 
+    * @return The resulting status change caused by the evaluation of the rule.
+    *         This value is a member of the <code>ROLLUP_ACTION_XXX</code>
+    *         enumeration.
+    */
+   int evaluate(int iIncluded, int iTrue, int iUnknown)
+   {
+      boolean result = false;
+
+      // An empty set is one where every included child evaluated 'unknown'
+      boolean emptySet = ( iUnknown == iIncluded );
+
+      if ( mChildActivitySet.equals(SeqRollupRule.ROLLUP_SET_ALL) )
+      {
+         result = ( iTrue == iIncluded );
+      }
+      else if ( mChildActivitySet.equals(SeqRollupRule.ROLLUP_SET_ANY) )
+      {
+         result = ( iTrue > 0 );
+      }
+      else if ( mChildActivitySet.equals(SeqRollupRule.ROLLUP_SET_NONE) )
+      {
+         result = ( iTrue == 0 && iUnknown == 0 );
+      }
+      else if ( mChildActivitySet.
+                equals(SeqRollupRule.ROLLUP_SET_ATLEASTCOUNT) )
+      {
+         result = ( mMinCount > 0 && iTrue >= mMinCount );
+      }
+      else if ( mChildActivitySet.
+                equals(SeqRollupRule.ROLLUP_SET_ATLEASTPERCENT) )
+      {
+         result = !emptySet && 
+                  ( iTrue >= (long)((mMinPercent * iIncluded) + 0.5) );
+      }
+
+      return ( result ) ? mAction : SeqRollupRule.ROLLUP_ACTION_NOCHANGE;
+   }
+
+   /**
+    * Indicates if the result of this rule can change with time alone.
+    * 
+    * @return <code>true</code> if the rule's conditions evaluate time limits,
+    *         otherwise <code>false</code>.
+    */
+   boolean isTimeDependent()
+   {
+      return mConditions != null && mConditions.isTimeDependent();
+   }
+
 
    /*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-*-
    
@@ -394,7 +464,7 @@ public class SeqRollupRule implements Serializable
     * @return <code>true</code> if the activity should be included in the
     *         evaluation of its parent's rollup, otherwise <code>false</code>.
     */
-   private boolean isIncluded(SeqActivity iActivity)
+   boolean isIncluded(SeqActivity iActivity)
    {
 
       if ( _Debug )
@@ -828,4 +898,58 @@ public class SeqRollupRule implements Serializable
       }
       return result;
    }
+
+   /**
+    * Writes this rollup rule.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeInt(mAction);
+      ioOut.writeString(mChildActivitySet);
+      ioOut.writeLong(mMinCount);
+      ioOut.writeDouble(mMinPercent);
+      ioOut.writeBoolean(mConditions != null);
+
+      if ( mConditions != null )
+      {
+         mConditions.encode(ioOut);
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a rollup rule.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The rollup rule.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqRollupRule decode(CodecInput iIn) throws IOException
+   {
+      SeqRollupRule rule = new SeqRollupRule();
+
+      iIn.beginRecord();
+      rule.mAction = iIn.readInt();
+      rule.mChildActivitySet = iIn.readString();
+      rule.mMinCount = iIn.readLong();
+      rule.mMinPercent = iIn.readDouble();
+
+      if ( iIn.readBoolean() )
+      {
+         rule.mConditions = SeqConditionSet.decode(iIn);
+      }
+
+      iIn.endRecord();
+
+      return rule;
+   }
+
 }  // end SeqRollupRule
@@ -30,6 +30,9 @@ import java.io.Serializable;
 import java.util.Vector;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation of a set of rollup rules associated with an activity.<br><br>
@@ -70,6 +73,11 @@ public class SeqRollupRuleset implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * This is the set of rollup rules applied to the activity.
     */
@@ -186,11 +194,19 @@ public class SeqRollupRuleset implements Serializable
 
          if ( ioThisActivity.getChildren(false) != null )
          {
+            // Wide clusters only evaluate the children that changed
+            SeqRollupAggregate aggregate = ioThisActivity.getRollupAggregate();
+
+            if ( aggregate != null )
+            {
+               aggregate.refresh();
+            }
+
             // Step 3.1 -- apply the Measure Rollup Process
-            applyMeasureRollup(ioThisActivity);
+            applyMeasureRollup(ioThisActivity, aggregate);
             
             // Apply Progress Measure Rollup Process
-            applyProgressMeasureRollup(ioThisActivity);
+            applyProgressMeasureRollup(ioThisActivity, aggregate);
 
             boolean satisfiedRule = false;
             boolean completedRule = false;
@@ -372,7 +388,16 @@ public class SeqRollupRuleset implements Serializable
                   }
                }
 
-               int result = rule.evaluate(ioThisActivity.getChildren(false));
+               int result = SeqRollupRule.ROLLUP_ACTION_NOCHANGE;
+
+               if ( aggregate != null )
+               {
+                  result = aggregate.evaluate(i, rule);
+               }
+               else
+               {
+                  result = rule.evaluate(ioThisActivity.getChildren(false));
+               }
 
                // Track state changes
                switch ( result )
@@ -526,8 +551,13 @@ public class SeqRollupRuleset implements Serializable
     * Applies the Measure Rollup Process to the activity (RB.1.1).
     *
     * @param ioThisActivity The target activity of the rollup evaluation.
+    *
+    * @param iAggregate     The activity's rollup aggregate, or 
+    *                       <code>null</code> if the children are to be
+    *                       examined.
     */
-   private void applyMeasureRollup(SeqActivity ioThisActivity)
+   private void applyMeasureRollup(SeqActivity ioThisActivity,
+                                   SeqRollupAggregate iAggregate)
    {
       if ( _Debug )
       {
@@ -540,28 +570,37 @@ public class SeqRollupRuleset implements Serializable
 
       Vector children = ioThisActivity.getChildren(false);
 
-      // Measure Rollup Behavior 
-      for ( int i = 0; i < children.size(); i++ )
+      if ( iAggregate != null )
       {
-         SeqActivity child = (SeqActivity)children.elementAt(i);
-
-         if ( _Debug )
+         // The totals are current, there is no need to look at the children
+         total = iAggregate.getObjTotal();
+         countedMeasure = iAggregate.getObjCounted();
+      }
+      else
+      {
+         // Measure Rollup Behavior 
+         for ( int i = 0; i < children.size(); i++ )
          {
-            System.out.println("  ::--> Look At :: " + child.getID());
-         }
+            SeqActivity child = (SeqActivity)children.elementAt(i);
 
-         if ( child.getIsTracked() )
-         {
-            // Make sure a non-zero weight is defined
-            if ( child.getObjMeasureWeight() > 0.0 )
+            if ( _Debug )
             {
-               countedMeasure += child.getObjMeasureWeight();
+               System.out.println("  ::--> Look At :: " + child.getID());
+            }
 
-               // If a measure is defined for the child
-               if ( child.getObjMeasureStatus(false) )
+            if ( child.getIsTracked() )
+            {
+               // Make sure a non-zero weight is defined
+               if ( child.getObjMeasureWeight() > 0.0 )
                {
-                  total += child.getObjMeasureWeight() * 
-                           child.getObjMeasure(false);
+                  countedMeasure += child.getObjMeasureWeight();
+
+                  // If a measure is defined for the child
+                  if ( child.getObjMeasureStatus(false) )
+                  {
+                     total += child.getObjMeasureWeight() * 
+                              child.getObjMeasure(false);
+                  }
                }
             }
          }
@@ -603,8 +642,13 @@ public class SeqRollupRuleset implements Serializable
     * Applies the Progress Measure Rollup Process to the activity (RB.1.1 b).
     *
     * @param ioThisActivity The target activity of the rollup evaluation.
+    *
+    * @param iAggregate     The activity's rollup aggregate, or 
+    *                       <code>null</code> if the children are to be
+    *                       examined.
     */
-   private void applyProgressMeasureRollup(SeqActivity ioThisActivity)
+   private void applyProgressMeasureRollup(SeqActivity ioThisActivity,
+                                           SeqRollupAggregate iAggregate)
    {
       if ( _Debug )
       {
@@ -617,45 +661,61 @@ public class SeqRollupRuleset implements Serializable
 
       Vector children = ioThisActivity.getChildren(false);
 
-      // Progress Measure Rollup Behavior 
-      for ( int i = 0; i < children.size(); i++ )
+      if ( iAggregate != null )
       {
-         SeqActivity child = (SeqActivity)children.elementAt(i);
-
-         if ( _Debug )
+         // The totals are current, there is no need to look at the children
+         total = iAggregate.getProTotal();
+         countedMeasure = iAggregate.getProCounted();
+      }
+      else
+      {
+         // Progress Measure Rollup Behavior 
+         for ( int i = 0; i < children.size(); i++ )
          {
-            System.out.println("  ::--> Look At :: " + child.getID());
-         }
+            SeqActivity child = (SeqActivity)children.elementAt(i);
 
-         if ( child.getIsTracked() )
-         {
-            // Make sure a non-zero weight is defined
-            if ( child.getProMeasureWeight() > 0.0 )
+            if ( _Debug )
             {
-               countedMeasure += child.getProMeasureWeight();
+               System.out.println("  ::--> Look At :: " + child.getID());
+            }
 
-               // If a measure is defined for the child
-               if ( child.getProMeasureStatus(false) )
+            if ( child.getIsTracked() )
+            {
+               // Make sure a non-zero weight is defined
+               if ( child.getProMeasureWeight() > 0.0 )
                {
-                  double pretotal = total;
-                  total += child.getProMeasureWeight() * 
-                           child.getProMeasure(false);
-                  if ( _Debug )
+                  countedMeasure += child.getProMeasureWeight();
+
+                  // If a measure is defined for the child
+                  if ( child.getProMeasureStatus(false) )
                   {
-                     System.out.println("  ::--> Pro Measure eval for " + child.getID());
-                     System.out.println("\t  ::--> Pro Measure weight: " + child.getProMeasureWeight());
-                     System.out.println("\t  ::--> Pro Measure: " + child.getProMeasure(false));
-                     System.out.println("\t  ::--> Pro weight * measure: " + (child.getProMeasureWeight() * 
-                           child.getProMeasure(false)));
-                     System.out.println("\t  ::--> pretotal: " + pretotal);
-                     System.out.println("\t  ::--> new total: " + total);
+                     double pretotal = total;
+                     total += child.getProMeasureWeight() * 
+                              child.getProMeasure(false);
+                     if ( _Debug )
+                     {
+                        System.out.println("  ::--> Pro Measure eval for " + child.getID());
+                        System.out.println("\t  ::--> Pro Measure weight: " + child.getProMeasureWeight());
+                        System.out.println("\t  ::--> Pro Measure: " + child.getProMeasure(false));
+                        System.out.println("\t  ::--> Pro weight * measure: " + (child.getProMeasureWeight() * 
+                              child.getProMeasure(false)));
+                        System.out.println("\t  ::--> pretotal: " + pretotal);
+                        System.out.println("\t  ::--> new total: " + total);
+                     }
+                  }
+                  else
+                  {
+                     if ( _Debug )
+                     {
+                        System.out.println("Progress Measure Status not defined");
+                     }
                   }
                }
                else
                {
                   if ( _Debug )
                   {
-                     System.out.println("Progress Measure Status not defined");
+                     System.out.println("Progress Measure Weight is 0");
                   }
                }
             }
@@ -663,17 +723,10 @@ public class SeqRollupRuleset implements Serializable
             {
                if ( _Debug )
                {
-                  System.out.println("Progress Measure Weight is 0");
+                  System.out.println("NOT TRACKED");
                }
             }
          }
-         else
-         {
-            if ( _Debug )
-            {
-               System.out.println("NOT TRACKED");
-            }
-         }
       }
 
       if ( countedMeasure > 0.0 )
@@ -711,6 +764,29 @@ public class SeqRollupRuleset implements Serializable
    
    }
 
+   /**
+    * Indicates if the result of this set of rollup rules can change with time
+    * alone.
+    * 
+    * @return <code>true</code> if any of the rules evaluates time limits,
+    *         otherwise <code>false</code>.
+    */
+   boolean isTimeDependent()
+   {
+      if ( mRollupRules != null )
+      {
+         for ( int i = 0; i < mRollupRules.size(); i++ )
+         {
+            if ( ((SeqRollupRule)mRollupRules.elementAt(i)).isTimeDependent() )
+            {
+               return true;
+            }
+         }
+      }
+
+      return false;
+   }
+
    /**
     * Describes the number of rollup rules in this set
     * 
@@ -726,4 +802,97 @@ public class SeqRollupRuleset implements Serializable
       return 0;
    }
 
+   /**
+    * Writes this rollup rule set.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeBoolean(mIsSatisfied);
+      ioOut.writeBoolean(mIsNotSatisfied);
+      ioOut.writeBoolean(mIsCompleted);
+      ioOut.writeBoolean(mIsIncomplete);
+
+      if ( mRollupRules == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mRollupRules.size());
+
+         for ( int i = 0; i < mRollupRules.size(); i++ )
+         {
+            ((SeqRollupRule)mRollupRules.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Creates a rollup rule set with the same rules as this one.  The rules
+    * themselves are shared; the copy has its own evaluation state and its
+    * own list, so default rules added while evaluating the copy do not 
+    * affect this rule set.
+    * 
+    * @return The copy.
+    */
+   SeqRollupRuleset copy()
+   {
+      SeqRollupRuleset rules = new SeqRollupRuleset();
+
+      if ( mRollupRules != null )
+      {
+         rules.mRollupRules = (Vector)mRollupRules.clone();
+      }
+
+      rules.mIsSatisfied = mIsSatisfied;
+      rules.mIsNotSatisfied = mIsNotSatisfied;
+      rules.mIsCompleted = mIsCompleted;
+      rules.mIsIncomplete = mIsIncomplete;
+
+      return rules;
+   }
+
+   /**
+    * Reads a rollup rule set.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The rollup rule set.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqRollupRuleset decode(CodecInput iIn) throws IOException
+   {
+      SeqRollupRuleset rules = new SeqRollupRuleset();
+
+      iIn.beginRecord();
+      rules.mIsSatisfied = iIn.readBoolean();
+      rules.mIsNotSatisfied = iIn.readBoolean();
+      rules.mIsCompleted = iIn.readBoolean();
+      rules.mIsIncomplete = iIn.readBoolean();
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         rules.mRollupRules = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            rules.mRollupRules.add(SeqRollupRule.decode(iIn));
+         }
+      }
+
+      iIn.endRecord();
+
+      return rules;
+   }
+
 }  // end SeqRollupRuleset
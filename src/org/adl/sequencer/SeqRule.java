@@ -29,6 +29,9 @@ package org.adl.sequencer;
 import org.adl.util.debug.DebugIndicator;
 
 import java.io.Serializable;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * <strong>Filename:</strong> SeqRule.java<br><br>
@@ -185,6 +188,11 @@ public class SeqRule implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * This describes the rollup rule Child Activity Set (element 2.3)
     */
@@ -361,4 +369,51 @@ public class SeqRule implements Serializable
 
    }
 
+   /**
+    * Writes this rule.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+      ioOut.writeString(mAction);
+      ioOut.writeBoolean(mConditions != null);
+
+      if ( mConditions != null )
+      {
+         mConditions.encode(ioOut);
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a rule.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The rule.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqRule decode(CodecInput iIn) throws IOException
+   {
+      SeqRule rule = new SeqRule();
+
+      iIn.beginRecord();
+      rule.mAction = iIn.readString();
+
+      if ( iIn.readBoolean() )
+      {
+         rule.mConditions = SeqConditionSet.decode(iIn);
+      }
+
+      iIn.endRecord();
+
+      return rule;
+   }
+
 }  // end SeqRule
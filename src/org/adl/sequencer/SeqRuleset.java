@@ -30,6 +30,9 @@ import java.io.Serializable;
 import java.util.Vector;
 
 import org.adl.util.debug.DebugIndicator;
+import java.io.IOException;
+import org.adl.util.codec.CodecInput;
+import org.adl.util.codec.CodecOutput;
 
 /**
  * Encapsulation of a set of sequencing rules associated with an activity.
@@ -131,6 +134,11 @@ public class SeqRuleset implements Serializable
     */
    private static boolean _Debug = DebugIndicator.ON;
 
+   /**
+    * The schema version of the encoded form of this class.
+    */
+   private static final int CODEC_VERSION = 1;
+
    /**
     * This is the set of sequencing rules defined for an activity
     */
@@ -245,4 +253,64 @@ public class SeqRuleset implements Serializable
       return 0;
    }
 
+   /**
+    * Writes this rule set.
+    * 
+    * @param ioOut The output.
+    * 
+    * @throws IOException Thrown if the record cannot be completed.
+    */
+   void encode(CodecOutput ioOut) throws IOException
+   {
+      ioOut.beginRecord(CODEC_VERSION);
+
+      if ( mRules == null )
+      {
+         ioOut.writeInt(-1);
+      }
+      else
+      {
+         ioOut.writeInt(mRules.size());
+
+         for ( int i = 0; i < mRules.size(); i++ )
+         {
+            ((SeqRule)mRules.elementAt(i)).encode(ioOut);
+         }
+      }
+
+      ioOut.endRecord();
+   }
+
+   /**
+    * Reads a rule set.
+    * 
+    * @param iIn The input.
+    * 
+    * @return The rule set.
+    * 
+    * @throws IOException Thrown if the input is corrupt.
+    */
+   static SeqRuleset decode(CodecInput iIn) throws IOException
+   {
+      Vector rules = null;
+
+      iIn.beginRecord();
+
+      int count = iIn.readInt();
+
+      if ( count >= 0 )
+      {
+         rules = new Vector(count);
+
+         for ( int i = 0; i < count; i++ )
+         {
+            rules.add(SeqRule.decode(iIn));
+         }
+      }
+
+      iIn.endRecord();
+
+      return new SeqRuleset(rules);
+   }
+
 }  // end SeqRuleset
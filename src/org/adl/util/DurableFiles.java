@@ -0,0 +1,187 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+package org.adl.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <strong>Filename:</strong> DurableFiles.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Replaces files so that a crash leaves either the old or the new contents.
+ * The new contents are written to a temporary file beside the target and
+ * synced, the temporary file is renamed over the target in one step, and
+ * the parent directory is synced so that the rename itself survives a
+ * crash.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * This implementation is intended to be used by the SCORM 2004 4th Edition 
+ * Sample Run-Time Environment.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * <code>File.renameTo()</code> can not replace an existing file on every 
+ * platform, so the rename is an atomic move; this requires a Java 7 
+ * runtime.  Some platforms (for example Windows) can not open a directory
+ * to sync it; there the directory sync is skipped and the file system's
+ * own metadata journal is relied on.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br>
+ * A crash between writing and renaming leaves the temporary file behind;
+ * it is overwritten by the next replacement.<br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public final class DurableFiles
+{
+   /**
+    * The suffix of the temporary file a replacement is written to.
+    */
+   public static final String TEMP_SUFFIX = ".tmp";
+
+   /**
+    * Not instantiated.
+    */
+   private DurableFiles()
+   {
+      // Static methods only
+   }
+
+   /**
+    * Returns the temporary file a replacement of a file is written to.
+    * 
+    * @param iTarget The file being replaced.
+    * 
+    * @return The temporary file.
+    */
+   public static File getTempFile(File iTarget)
+   {
+      return new File(iTarget.getPath() + TEMP_SUFFIX);
+   }
+
+   /**
+    * Replaces the contents of a file.
+    * 
+    * @param iTarget The file to replace.
+    * 
+    * @param iData   The new contents.
+    * 
+    * @throws IOException Thrown if the file could not be replaced; the old
+    *                     contents are left in place.
+    */
+   public static void write(File iTarget, byte[] iData) throws IOException
+   {
+      File temp = getTempFile(iTarget);
+      FileOutputStream fos = new FileOutputStream(temp);
+
+      try
+      {
+         fos.write(iData);
+         fos.getFD().sync();
+      }
+      finally
+      {
+         fos.close();
+      }
+
+      replace(temp, iTarget);
+   }
+
+   /**
+    * Renames a synced temporary file over its target and syncs the target's
+    * directory.
+    * 
+    * @param iTemp   The temporary file, already written and synced.
+    * 
+    * @param iTarget The file to replace.
+    * 
+    * @throws IOException Thrown if the file could not be renamed; the old
+    *                     contents are left in place.
+    */
+   public static void replace(File iTemp, File iTarget) throws IOException
+   {
+      try
+      {
+         Files.move(iTemp.toPath(), iTarget.toPath(), 
+                    StandardCopyOption.ATOMIC_MOVE);
+      }
+      catch ( AtomicMoveNotSupportedException amnse )
+      {
+         throw new IOException("Can not replace " + iTarget + 
+                               " atomically: " + amnse.getMessage());
+      }
+
+      File parent = iTarget.getAbsoluteFile().getParentFile();
+
+      if ( parent != null )
+      {
+         syncDirectory(parent);
+      }
+   }
+
+   /**
+    * Syncs a directory, making renames and new entries in it durable.  
+    * Nothing is done where the platform can not open a directory.
+    * 
+    * @param iDir The directory.
+    * 
+    * @throws IOException Thrown if the directory could be opened but not
+    *                     synced.
+    */
+   public static void syncDirectory(File iDir) throws IOException
+   {
+      FileChannel dir = null;
+
+      try
+      {
+         dir = FileChannel.open(iDir.toPath(), StandardOpenOption.READ);
+      }
+      catch ( IOException ioe )
+      {
+         // Directories can not be opened here
+         return;
+      }
+
+      try
+      {
+         dir.force(true);
+      }
+      finally
+      {
+         dir.close();
+      }
+   }
+
+} // DurableFiles
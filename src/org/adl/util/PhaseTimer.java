@@ -0,0 +1,226 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.util;
+
+/**
+ * <strong>Filename:</strong> PhaseTimer.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Splits the time a thread spends handling one request between a fixed set
+ * of phases.  Code doing phase work brackets it with <code>enter()</code>
+ * and <code>exit()</code>:
+ * <pre>
+ *    int previous = PhaseTimer.enter(PhaseTimer.DATABASE);
+ *    try
+ *    {
+ *       ...
+ *    }
+ *    finally
+ *    {
+ *       PhaseTimer.exit(previous);
+ *    }
+ * </pre>
+ * Phases nest; time spent in an inner phase is charged to the inner phase
+ * only, so the phase times of a request add up to its elapsed time.<br><br>
+ * 
+ * <strong>Design Issues:</strong><br>
+ * The timer lives in the utility package so that the sequencer and the data
+ * model code can report their phases without depending on the servlet that
+ * collects them.<br><br>
+ * 
+ * <strong>Implementation Issues:</strong><br>
+ * Outside <code>start()</code> and <code>stop()</code> the bracketing 
+ * methods do nothing, so background threads (for example cache flushes) are
+ * not timed.<br><br>
+ * 
+ * <strong>Known Problems:</strong><br><br>
+ * 
+ * <strong>Side Effects:</strong><br><br>
+ * 
+ * @author ADL Technical Team
+ */
+public final class PhaseTimer
+{
+   /**
+    * Time not spent in any other phase.
+    */
+   public static final int OTHER = 0;
+
+   /**
+    * Reading and writing serialized or encoded objects.
+    */
+   public static final int SERIALIZATION = 1;
+
+   /**
+    * Evaluating sequencing requests and updating the activity tree.
+    */
+   public static final int SEQUENCING = 2;
+
+   /**
+    * Calls to the global objectives database.
+    */
+   public static final int DATABASE = 3;
+
+   /**
+    * Reading and writing learner state files.
+    */
+   public static final int FILE_IO = 4;
+
+   /**
+    * The number of phases.
+    */
+   public static final int PHASES = 5;
+
+   /**
+    * The name of each phase, indexed by phase.
+    */
+   private static final String[] NAMES = 
+      { "other", "serialization", "sequencing", "database", "fileIO" };
+
+   /**
+    * The timer of the current thread, or <code>null</code> if the thread is
+    * not being timed.
+    */
+   private static final ThreadLocal sTimer = new ThreadLocal();
+
+   /**
+    * The nanoseconds charged to each phase.
+    */
+   private long[] mTimes = new long[PHASES];
+
+   /**
+    * The phase being timed.
+    */
+   private int mPhase = OTHER;
+
+   /**
+    * When the current phase was entered or resumed.
+    */
+   private long mSince = System.nanoTime();
+
+   /**
+    * Timers are created by <code>start()</code>.
+    */
+   private PhaseTimer()
+   {
+      // Use start()
+   }
+
+   /**
+    * Starts timing the current thread, in the <code>OTHER</code> phase.
+    */
+   public static void start()
+   {
+      sTimer.set(new PhaseTimer());
+   }
+
+   /**
+    * Stops timing the current thread.
+    * 
+    * @return The nanoseconds charged to each phase, indexed by phase, or 
+    *         <code>null</code> if the thread was not being timed.
+    */
+   public static long[] stop()
+   {
+      PhaseTimer timer = (PhaseTimer)sTimer.get();
+
+      if ( timer == null )
+      {
+         return null;
+      }
+
+      sTimer.set(null);
+      timer.charge();
+
+      return timer.mTimes;
+   }
+
+   /**
+    * Enters a phase.
+    * 
+    * @param iPhase The phase entered.
+    * 
+    * @return The phase to pass to <code>exit()</code>.
+    */
+   public static int enter(int iPhase)
+   {
+      PhaseTimer timer = (PhaseTimer)sTimer.get();
+
+      if ( timer == null )
+      {
+         return OTHER;
+      }
+
+      int previous = timer.mPhase;
+
+      timer.charge();
+      timer.mPhase = iPhase;
+
+      return previous;
+   }
+
+   /**
+    * Leaves the current phase.
+    * 
+    * @param iPrevious The value returned by the matching <code>enter()</code>.
+    */
+   public static void exit(int iPrevious)
+   {
+      PhaseTimer timer = (PhaseTimer)sTimer.get();
+
+      if ( timer != null )
+      {
+         timer.charge();
+         timer.mPhase = iPrevious;
+      }
+   }
+
+   /**
+    * Provides the name of a phase.
+    * 
+    * @param iPhase The phase.
+    * 
+    * @return The name of the phase.
+    */
+   public static String getName(int iPhase)
+   {
+      return NAMES[iPhase];
+   }
+
+   /**
+    * Charges the time since the current phase was entered or resumed to it.
+    */
+   private void charge()
+   {
+      long now = System.nanoTime();
+
+      mTimes[mPhase] += now - mSince;
+      mSince = now;
+   }
+
+} // PhaseTimer
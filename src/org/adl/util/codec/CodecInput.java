@@ -0,0 +1,486 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.util.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.Vector;
+
+/**
+ * Reads objects written by <code>CodecOutput</code>.<br><br>
+ *
+ * <strong>Filename:</strong> CodecInput.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Checks the header, loads the string table and then reads the payload in 
+ * the order it was written.  <code>endRecord()</code> moves to the end of
+ * the current record, so fields appended by a newer version of a class are
+ * skipped; <code>hasMore()</code> tells a reader whether an older record 
+ * ends before the fields it knows about.<br><br>
+ *
+ * <code>isEncoded()</code> tells encoded data from the Java serialization
+ * used by earlier versions of the Sample RTE, so callers can fall back to
+ * <code>ObjectInputStream</code> for files written before the codec 
+ * existed.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * The encoded object is read into memory first; all reads are bounds checked
+ * against the current record, so a truncated or corrupt file fails with an
+ * <code>IOException</code>.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * An instance reads one root object and is not thread safe.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class CodecInput
+{
+   /**
+    * The encoded object.
+    */
+   private byte[] mData = null;
+
+   /**
+    * The position of the next byte to read.
+    */
+   private int mPos = 0;
+
+   /**
+    * The type code of the root object.
+    */
+   private int mType = 0;
+
+   /**
+    * The string table.
+    */
+   private String[] mStrings = null;
+
+   /**
+    * The end positions of the records being read; the first is the end of 
+    * the payload.
+    */
+   private int[] mEnds = new int[8];
+
+   /**
+    * The number of records being read, the root payload included.
+    */
+   private int mDepth = 1;
+
+   /**
+    * The booleans left from the last byte of booleans read.
+    */
+   private int mBits = 0;
+
+   /**
+    * The number of booleans left in <code>mBits</code>.
+    */
+   private int mBitCount = 0;
+
+   /**
+    * Initializes an input from an encoded object.
+    *
+    * @param iData The encoded object.
+    *
+    * @throws IOException Thrown if the data is not an encoded object or was 
+    *                     written by a newer format version.
+    */
+   public CodecInput(byte[] iData) throws IOException
+   {
+      if ( !isEncoded(iData) )
+      {
+         throw new StreamCorruptedException("Not an encoded object");
+      }
+
+      mData = iData;
+      mPos = 4;
+      mEnds[0] = iData.length;
+
+      int version = readVarInt();
+
+      if ( version > CodecOutput.FORMAT_VERSION )
+      {
+         throw new StreamCorruptedException("Unsupported format version: " + 
+                                            version);
+      }
+
+      mType = readVarInt();
+      mStrings = new String[readLength()];
+
+      for ( int i = 0; i < mStrings.length; i++ )
+      {
+         int length = readLength();
+
+         mStrings[i] = new String(mData, mPos, length, "UTF-8");
+         mPos += length;
+      }
+   }
+
+   /**
+    * Initializes an input from a stream holding an encoded object.
+    *
+    * @param iIn The stream; it is read to its end.
+    *
+    * @throws IOException Thrown if the stream cannot be read or does not 
+    *                     hold an encoded object.
+    */
+   public CodecInput(InputStream iIn) throws IOException
+   {
+      this(readAll(iIn));
+   }
+
+   /**
+    * Determines if data was written by <code>CodecOutput</code>.
+    *
+    * @param iData The data.
+    *
+    * @return <code>true</code> if the data starts with the codec's magic
+    *         number, otherwise <code>false</code>.
+    */
+   public static boolean isEncoded(byte[] iData)
+   {
+      if ( iData == null || iData.length < 4 )
+      {
+         return false;
+      }
+
+      int magic = ((iData[0] & 0xFF) << 24) | ((iData[1] & 0xFF) << 16) |
+                  ((iData[2] & 0xFF) << 8) | (iData[3] & 0xFF);
+
+      return magic == CodecOutput.MAGIC;
+   }
+
+   /**
+    * Reads a stream to its end.
+    *
+    * @param iIn The stream.
+    *
+    * @return The bytes read.
+    *
+    * @throws IOException Thrown if the stream cannot be read.
+    */
+   public static byte[] readAll(InputStream iIn) throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read = iIn.read(buffer);
+
+      while ( read != -1 )
+      {
+         bytes.write(buffer, 0, read);
+         read = iIn.read(buffer);
+      }
+
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Returns the type code of the root object.
+    *
+    * @return The type code given to <code>CodecOutput</code>.
+    */
+   public int getType()
+   {
+      return mType;
+   }
+
+   /**
+    * Starts reading a record.
+    *
+    * @return The schema version the record was written with.
+    *
+    * @throws IOException Thrown if the record is corrupt.
+    */
+   public int beginRecord() throws IOException
+   {
+      mBitCount = 0;
+
+      int version = readVarInt();
+      int length = readLength();
+
+      if ( mDepth == mEnds.length )
+      {
+         int[] ends = new int[mDepth * 2];
+         System.arraycopy(mEnds, 0, ends, 0, mDepth);
+         mEnds = ends;
+      }
+
+      mEnds[mDepth] = mPos + length;
+      mDepth++;
+
+      return version;
+   }
+
+   /**
+    * Determines if the current record has unread fields.
+    *
+    * @return <code>true</code> if there is more to read in the current 
+    *         record, otherwise <code>false</code>.
+    */
+   public boolean hasMore()
+   {
+      return mPos < mEnds[mDepth - 1];
+   }
+
+   /**
+    * Completes the current record, skipping any fields not read.
+    *
+    * @throws IOException Thrown if there is no record to complete.
+    */
+   public void endRecord() throws IOException
+   {
+      if ( mDepth == 1 )
+      {
+         throw new StreamCorruptedException("No record to end");
+      }
+
+      mBitCount = 0;
+      mDepth--;
+      mPos = mEnds[mDepth];
+   }
+
+   /**
+    * Reads a boolean.
+    *
+    * @return The value.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   public boolean readBoolean() throws IOException
+   {
+      if ( mBitCount == 0 )
+      {
+         mBits = readByte();
+         mBitCount = 8;
+      }
+
+      boolean value = (mBits & 1) != 0;
+
+      mBits >>>= 1;
+      mBitCount--;
+
+      return value;
+   }
+
+   /**
+    * Reads an integer.
+    *
+    * @return The value.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   public int readInt() throws IOException
+   {
+      mBitCount = 0;
+
+      int value = readVarInt();
+
+      return (value >>> 1) ^ -(value & 1);
+   }
+
+   /**
+    * Reads a long.
+    *
+    * @return The value.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   public long readLong() throws IOException
+   {
+      mBitCount = 0;
+
+      long value = 0;
+
+      for ( int shift = 0; ; shift += 7 )
+      {
+         if ( shift > 63 )
+         {
+            throw new StreamCorruptedException("Malformed long");
+         }
+
+         int b = readByte();
+         value |= (long)(b & 0x7F) << shift;
+
+         if ( (b & 0x80) == 0 )
+         {
+            break;
+         }
+      }
+
+      return (value >>> 1) ^ -(value & 1);
+   }
+
+   /**
+    * Reads a double.
+    *
+    * @return The value.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   public double readDouble() throws IOException
+   {
+      mBitCount = 0;
+
+      long bits = 0;
+
+      for ( int i = 0; i < 8; i++ )
+      {
+         bits = (bits << 8) | readByte();
+      }
+
+      return Double.longBitsToDouble(bits);
+   }
+
+   /**
+    * Reads a string.
+    *
+    * @return The value, which may be <code>null</code>.
+    *
+    * @throws IOException Thrown if the current record has no more data or
+    *                     the string is not in the table.
+    */
+   public String readString() throws IOException
+   {
+      mBitCount = 0;
+
+      int index = readVarInt();
+
+      if ( index == 0 )
+      {
+         return null;
+      }
+
+      if ( index < 0 || index > mStrings.length )
+      {
+         throw new StreamCorruptedException("Unknown string: " + index);
+      }
+
+      return mStrings[index - 1];
+   }
+
+   /**
+    * Reads a list of strings.
+    *
+    * @return The values, which may be <code>null</code>.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   public Vector readStrings() throws IOException
+   {
+      int size = readInt();
+
+      if ( size < 0 )
+      {
+         return null;
+      }
+
+      Vector values = new Vector(size);
+
+      for ( int i = 0; i < size; i++ )
+      {
+         values.add(readString());
+      }
+
+      return values;
+   }
+
+   /**
+    * Reads one byte of the current record.
+    *
+    * @return The byte, from 0 to 255.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   private int readByte() throws IOException
+   {
+      if ( mPos >= mEnds[mDepth - 1] )
+      {
+         throw new StreamCorruptedException("Unexpected end of record");
+      }
+
+      return mData[mPos++] & 0xFF;
+   }
+
+   /**
+    * Reads an unsigned variable length integer.
+    *
+    * @return The value.
+    *
+    * @throws IOException Thrown if the current record has no more data.
+    */
+   private int readVarInt() throws IOException
+   {
+      int value = 0;
+
+      for ( int shift = 0; ; shift += 7 )
+      {
+         if ( shift > 28 )
+         {
+            throw new StreamCorruptedException("Malformed integer");
+         }
+
+         int b = readByte();
+         value |= (b & 0x7F) << shift;
+
+         if ( (b & 0x80) == 0 )
+         {
+            return value;
+         }
+      }
+   }
+
+   /**
+    * Reads a length that must fit in the current record.
+    *
+    * @return The length.
+    *
+    * @throws IOException Thrown if the length is negative or too large.
+    */
+   private int readLength() throws IOException
+   {
+      int length = readVarInt();
+
+      if ( length < 0 || length > mEnds[mDepth - 1] - mPos )
+      {
+         throw new StreamCorruptedException("Bad length: " + length);
+      }
+
+      return length;
+   }
+
+} // CodecInput
@@ -0,0 +1,480 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.util.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Writes objects in the Sample RTE's compact binary format.<br><br>
+ *
+ * <strong>Filename:</strong> CodecOutput.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Persisted objects encode their own fields, in a fixed order, through the
+ * methods of this class; <code>CodecInput</code> reads them back in the same
+ * order.  The encoded form is:
+ * <ul>
+ *    <li>the magic number <code>ADLC</code>, the format version and a type
+ *        code identifying the root object</li>
+ *    <li>a table of every distinct string written, each stored once in 
+ *        UTF-8</li>
+ *    <li>the payload, in which strings are table indexes</li>
+ * </ul>
+ * Integers are variable length (small values take one byte), consecutive
+ * booleans are packed eight to a byte and each object is written as a 
+ * record: its schema version followed by its length.  A reader skips any
+ * fields a newer version appended to a record, and can tell from the version
+ * which fields an older writer did not write.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * There are no class descriptors, field names or object handles in the 
+ * encoded form; each class decides what it writes.  Shared references are
+ * not preserved unless a class writes them as IDs or indexes itself.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br>
+ * The payload is built in memory, since the string table is written ahead
+ * of it and record lengths are only known once a record is complete.  An
+ * instance encodes one root object and is not thread safe.<br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class CodecOutput
+{
+   /**
+    * The first four bytes of every encoded object, <code>ADLC</code>.
+    */
+   public static final int MAGIC = 0x41444C43;
+
+   /**
+    * The version of the encoded form written by this class.
+    */
+   public static final int FORMAT_VERSION = 1;
+
+   /**
+    * The type code of the root object.
+    */
+   private int mType = 0;
+
+   /**
+    * The buffers of the records being written; the last one is the current
+    * record.  Buffers are reused for later records at the same depth.
+    */
+   private ArrayList mBuffers = new ArrayList();
+
+   /**
+    * The schema versions of the records being written.
+    */
+   private int[] mVersions = new int[8];
+
+   /**
+    * The number of records being written, the root payload included.
+    */
+   private int mDepth = 1;
+
+   /**
+    * The buffer of the current record.
+    */
+   private Buffer mCurrent = null;
+
+   /**
+    * The index of each distinct string written so far.
+    */
+   private HashMap mStringIndex = new HashMap();
+
+   /**
+    * The distinct strings written so far, in index order.
+    */
+   private ArrayList mStrings = new ArrayList();
+
+   /**
+    * The booleans waiting to be written as one byte.
+    */
+   private int mBits = 0;
+
+   /**
+    * The number of booleans in <code>mBits</code>.
+    */
+   private int mBitCount = 0;
+
+   /**
+    * Initializes an output for one root object.
+    *
+    * @param iType The type code of the root object; readers use it to check
+    *              they were given the kind of object they expect.
+    */
+   public CodecOutput(int iType)
+   {
+      mType = iType;
+
+      mCurrent = new Buffer();
+      mBuffers.add(mCurrent);
+   }
+
+   /**
+    * Starts a record.  Everything written until the matching 
+    * <code>endRecord()</code> belongs to it.
+    *
+    * @param iVersion The schema version of the record's fields.
+    */
+   public void beginRecord(int iVersion)
+   {
+      flushBits();
+
+      if ( mDepth == mVersions.length )
+      {
+         int[] versions = new int[mDepth * 2];
+         System.arraycopy(mVersions, 0, versions, 0, mDepth);
+         mVersions = versions;
+      }
+
+      mVersions[mDepth] = iVersion;
+
+      if ( mDepth == mBuffers.size() )
+      {
+         mBuffers.add(new Buffer());
+      }
+
+      mCurrent = (Buffer)mBuffers.get(mDepth);
+      mCurrent.mCount = 0;
+      mDepth++;
+   }
+
+   /**
+    * Completes the current record, writing its version and length to the 
+    * enclosing record.
+    *
+    * @throws IOException Thrown if there is no record to complete.
+    */
+   public void endRecord() throws IOException
+   {
+      flushBits();
+
+      if ( mDepth == 1 )
+      {
+         throw new IOException("No record to end");
+      }
+
+      mDepth--;
+
+      Buffer record = mCurrent;
+      mCurrent = (Buffer)mBuffers.get(mDepth - 1);
+
+      mCurrent.writeVarInt(mVersions[mDepth]);
+      mCurrent.writeVarInt(record.mCount);
+      mCurrent.write(record.mBytes, 0, record.mCount);
+   }
+
+   /**
+    * Writes a boolean.  Consecutive booleans share a byte.
+    *
+    * @param iValue The value.
+    */
+   public void writeBoolean(boolean iValue)
+   {
+      if ( iValue )
+      {
+         mBits |= 1 << mBitCount;
+      }
+
+      mBitCount++;
+
+      if ( mBitCount == 8 )
+      {
+         flushBits();
+      }
+   }
+
+   /**
+    * Writes an integer; values close to zero take fewer bytes.
+    *
+    * @param iValue The value.
+    */
+   public void writeInt(int iValue)
+   {
+      flushBits();
+      mCurrent.writeVarInt((iValue << 1) ^ (iValue >> 31));
+   }
+
+   /**
+    * Writes a long; values close to zero take fewer bytes.
+    *
+    * @param iValue The value.
+    */
+   public void writeLong(long iValue)
+   {
+      flushBits();
+      mCurrent.writeVarLong((iValue << 1) ^ (iValue >> 63));
+   }
+
+   /**
+    * Writes a double.
+    *
+    * @param iValue The value.
+    */
+   public void writeDouble(double iValue)
+   {
+      flushBits();
+
+      long bits = Double.doubleToLongBits(iValue);
+
+      for ( int i = 56; i >= 0; i -= 8 )
+      {
+         mCurrent.write((int)(bits >>> i));
+      }
+   }
+
+   /**
+    * Writes a string, which may be <code>null</code>.  Each distinct string
+    * is stored once, however often it is written.
+    *
+    * @param iValue The value.
+    */
+   public void writeString(String iValue)
+   {
+      flushBits();
+
+      if ( iValue == null )
+      {
+         mCurrent.writeVarInt(0);
+         return;
+      }
+
+      Integer index = (Integer)mStringIndex.get(iValue);
+
+      if ( index == null )
+      {
+         index = new Integer(mStrings.size());
+         mStringIndex.put(iValue, index);
+         mStrings.add(iValue);
+      }
+
+      mCurrent.writeVarInt(index.intValue() + 1);
+   }
+
+   /**
+    * Writes a list of strings, which may be <code>null</code>.
+    *
+    * @param iValues The values.
+    */
+   public void writeStrings(List iValues)
+   {
+      if ( iValues == null )
+      {
+         writeInt(-1);
+         return;
+      }
+
+      writeInt(iValues.size());
+
+      for ( int i = 0; i < iValues.size(); i++ )
+      {
+         writeString((String)iValues.get(i));
+      }
+   }
+
+   /**
+    * Writes the encoded object to a stream.
+    *
+    * @param oOut The stream.
+    *
+    * @throws IOException Thrown if a record is still open or the stream 
+    *                     cannot be written.
+    */
+   public void writeTo(OutputStream oOut) throws IOException
+   {
+      flushBits();
+
+      if ( mDepth != 1 )
+      {
+         throw new IOException("Record not ended");
+      }
+
+      Buffer header = new Buffer();
+
+      for ( int i = 24; i >= 0; i -= 8 )
+      {
+         header.write(MAGIC >>> i);
+      }
+
+      header.writeVarInt(FORMAT_VERSION);
+      header.writeVarInt(mType);
+      header.writeVarInt(mStrings.size());
+
+      for ( int i = 0; i < mStrings.size(); i++ )
+      {
+         byte[] utf = ((String)mStrings.get(i)).getBytes("UTF-8");
+
+         header.writeVarInt(utf.length);
+         header.write(utf, 0, utf.length);
+      }
+
+      oOut.write(header.mBytes, 0, header.mCount);
+
+      Buffer payload = (Buffer)mBuffers.get(0);
+      oOut.write(payload.mBytes, 0, payload.mCount);
+   }
+
+   /**
+    * Returns the encoded object.
+    *
+    * @return The encoded bytes.
+    *
+    * @throws IOException Thrown if a record is still open.
+    */
+   public byte[] toByteArray() throws IOException
+   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+      writeTo(bytes);
+
+      return bytes.toByteArray();
+   }
+
+   /**
+    * Writes any pending booleans.
+    */
+   private void flushBits()
+   {
+      if ( mBitCount > 0 )
+      {
+         mCurrent.write(mBits);
+         mBits = 0;
+         mBitCount = 0;
+      }
+   }
+
+   /**
+    * A growable byte array.
+    */
+   private static class Buffer
+   {
+      /**
+       * The bytes.
+       */
+      byte[] mBytes = new byte[256];
+
+      /**
+       * The number of bytes used.
+       */
+      int mCount = 0;
+
+      /**
+       * Appends one byte.
+       *
+       * @param iByte The byte, in the low eight bits.
+       */
+      void write(int iByte)
+      {
+         ensure(1);
+         mBytes[mCount++] = (byte)iByte;
+      }
+
+      /**
+       * Appends bytes.
+       *
+       * @param iBytes  The source.
+       *
+       * @param iOffset The offset of the first byte.
+       *
+       * @param iLength The number of bytes.
+       */
+      void write(byte[] iBytes, int iOffset, int iLength)
+      {
+         ensure(iLength);
+         System.arraycopy(iBytes, iOffset, mBytes, mCount, iLength);
+         mCount += iLength;
+      }
+
+      /**
+       * Appends an unsigned variable length integer, seven bits per byte.
+       *
+       * @param iValue The value, treated as unsigned.
+       */
+      void writeVarInt(int iValue)
+      {
+         ensure(5);
+
+         while ( (iValue & ~0x7F) != 0 )
+         {
+            mBytes[mCount++] = (byte)((iValue & 0x7F) | 0x80);
+            iValue >>>= 7;
+         }
+
+         mBytes[mCount++] = (byte)iValue;
+      }
+
+      /**
+       * Appends an unsigned variable length long, seven bits per byte.
+       *
+       * @param iValue The value, treated as unsigned.
+       */
+      void writeVarLong(long iValue)
+      {
+         ensure(10);
+
+         while ( (iValue & ~0x7FL) != 0 )
+         {
+            mBytes[mCount++] = (byte)((iValue & 0x7F) | 0x80);
+            iValue >>>= 7;
+         }
+
+         mBytes[mCount++] = (byte)iValue;
+      }
+
+      /**
+       * Makes room for more bytes.
+       *
+       * @param iLength The number of bytes about to be appended.
+       */
+      private void ensure(int iLength)
+      {
+         if ( mCount + iLength > mBytes.length )
+         {
+            byte[] bytes = new byte[Math.max(mBytes.length * 2, 
+                                             mCount + iLength)];
+            System.arraycopy(mBytes, 0, bytes, 0, mCount);
+            mBytes = bytes;
+         }
+      }
+   }
+
+} // CodecOutput
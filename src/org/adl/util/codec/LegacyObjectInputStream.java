@@ -0,0 +1,167 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+
+package org.adl.util.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+
+/**
+ * Reads objects serialized by earlier versions of the Sample RTE.<br><br>
+ *
+ * <strong>Filename:</strong> LegacyObjectInputStream.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Activity trees and SCO data were persisted with Java serialization before
+ * the codec existed.  None of the persisted classes declares a
+ * <code>serialVersionUID</code>, so the computed one changes whenever a 
+ * method is added and the old files can no longer be read.  This stream 
+ * accepts a class whose <code>serialVersionUID</code> differs from the 
+ * serialized one as long as its serializable fields are the same, which is
+ * enough to read files written before the codec and then write them again 
+ * in the encoded form.<br><br>
+ *
+ * <strong>Design Issues:</strong><br>
+ * Classes whose serializable fields changed must declare the 
+ * <code>serialVersionUID</code> of their earlier version instead; default
+ * serialization then fills in the new fields with their defaults.<br><br>
+ *
+ * <strong>Implementation Issues:</strong><br><br>
+ *
+ * <strong>Known Problems:</strong><br><br>
+ *
+ * <strong>Side Effects:</strong><br><br>
+ *
+ * <strong>References:</strong><br>
+ * <ul>
+ *     <li>SCORM 2004 4th Edition
+ * </ul>
+ *
+ * @author ADL Technical Team
+ */
+public class LegacyObjectInputStream extends ObjectInputStream
+{
+   /**
+    * Initializes a stream.
+    *
+    * @param iIn The serialized objects.
+    *
+    * @throws IOException Thrown if the stream header cannot be read.
+    */
+   public LegacyObjectInputStream(InputStream iIn) throws IOException
+   {
+      super(iIn);
+   }
+
+   /**
+    * Reads a class descriptor, replacing it with the local class's descriptor
+    * when only the <code>serialVersionUID</code> differs.
+    *
+    * @return The descriptor to read the class's data with.
+    *
+    * @throws IOException Thrown if the descriptor cannot be read.
+    *
+    * @throws ClassNotFoundException Thrown if the descriptor refers to an 
+    *                                unknown class.
+    */
+   protected ObjectStreamClass readClassDescriptor() 
+      throws IOException, ClassNotFoundException
+   {
+      ObjectStreamClass stored = super.readClassDescriptor();
+      ObjectStreamClass local = null;
+
+      try
+      {
+         local = ObjectStreamClass.lookup(resolveClass(stored));
+      }
+      catch ( ClassNotFoundException cnfe )
+      {
+         // Let the stream report the missing class
+      }
+
+      if ( local != null && 
+           local.getSerialVersionUID() != stored.getSerialVersionUID() &&
+           sameFields(local, stored) )
+      {
+         return local;
+      }
+
+      return stored;
+   }
+
+   /**
+    * Compares the serializable fields of two class descriptors.
+    *
+    * @param iLocal  The local class's descriptor.
+    *
+    * @param iStored The serialized descriptor.
+    *
+    * @return <code>true</code> if both have the same field names and types,
+    *         otherwise <code>false</code>.
+    */
+   private static boolean sameFields(ObjectStreamClass iLocal, 
+                                     ObjectStreamClass iStored)
+   {
+      ObjectStreamField[] local = iLocal.getFields();
+      ObjectStreamField[] stored = iStored.getFields();
+
+      if ( local.length != stored.length )
+      {
+         return false;
+      }
+
+      for ( int i = 0; i < local.length; i++ )
+      {
+         if ( !local[i].getName().equals(stored[i].getName()) ||
+              local[i].getTypeCode() != stored[i].getTypeCode() ||
+              !same(local[i].getTypeString(), stored[i].getTypeString()) )
+         {
+            return false;
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Compares two strings, either of which may be <code>null</code>.
+    *
+    * @param iValue A string.
+    *
+    * @param iOther The string to compare it with.
+    *
+    * @return <code>true</code> if the strings are equal.
+    */
+   private static boolean same(String iValue, String iOther)
+   {
+      return ( iValue == null ) ? iOther == null : iValue.equals(iOther);
+   }
+
+} // LegacyObjectInputStream
@@ -0,0 +1,386 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work. 
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes. 
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one. 
+
+For any reuse or distribution, you must make clear to others the license terms of this work. 
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative. 
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+package org.adl.samplerte.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.adl.sequencer.SeqActivity;
+import org.adl.sequencer.SeqActivityTree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <strong>Filename:</strong> ActivityTreeCacheStressTest.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Drives read-modify-write cycles on cached activity trees from many 
+ * threads, the way concurrent requests for a learner do, and checks that 
+ * no update is lost.  Each cycle takes the learner's lock 
+ * (<code>LearnerLocks</code>), reads the tree from the cache, increments a
+ * counter held in the root activity's title and puts the tree back.  The 
+ * cache is kept small and flushed often, so trees are evicted, written 
+ * and read back while other threads are updating them.<br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class ActivityTreeCacheStressTest
+{
+   /**
+    * The number of threads updating trees.
+    */
+   private static final int THREADS = 16;
+
+   /**
+    * The number of updates each thread makes.
+    */
+   private static final int UPDATES = 500;
+
+   /**
+    * The number of trees held in memory; far fewer than the learners.
+    */
+   private static final int MAX_ENTRIES = 4;
+
+   /**
+    * The interval, in milliseconds, between write-behind flushes.
+    */
+   private static final long FLUSH_INTERVAL = 5L;
+
+   /**
+    * The course every learner is registered for.
+    */
+   private static final String COURSE = "course";
+
+   /**
+    * The ID of the root activity, whose title holds the counter.
+    */
+   private static final String ROOT = "root";
+
+   /**
+    * The directory holding the learners' course directories.
+    */
+   private File mRoot = null;
+
+   /**
+    * The cache under test.
+    */
+   private ActivityTreeCache mCache = null;
+
+   /**
+    * Creates an empty file store and a cache over it.
+    * 
+    * @throws Exception Thrown if the store can not be created.
+    */
+   @Before
+   public void setUp() throws Exception
+   {
+      mRoot = File.createTempFile("trees", "");
+      mRoot.delete();
+      mRoot.mkdirs();
+
+      mCache = new ActivityTreeCache(MAX_ENTRIES, FLUSH_INTERVAL, 
+                                     mRoot.getPath());
+   }
+
+   /**
+    * Stops the cache and removes the file store.
+    */
+   @After
+   public void tearDown()
+   {
+      mCache.shutdown();
+      delete(mRoot);
+   }
+
+   /**
+    * Every thread updates the same learner's tree.
+    * 
+    * @throws Exception Thrown if a tree can not be read or written.
+    */
+   @Test
+   public void testOneLearnerLosesNoUpdates() throws Exception
+   {
+      String[] learners = createLearners(1);
+
+      int[] expected = run(learners);
+
+      assertEquals(THREADS * UPDATES, expected[0]);
+      assertCounts(learners, expected);
+   }
+
+   /**
+    * Threads update the trees of many learners, chosen at random, so 
+    * learners share lock stripes and trees are evicted while in use.
+    * 
+    * @throws Exception Thrown if a tree can not be read or written.
+    */
+   @Test
+   public void testManyLearnersLoseNoUpdates() throws Exception
+   {
+      String[] learners = createLearners(64);
+
+      int[] expected = run(learners);
+
+      assertCounts(learners, expected);
+      assertTrue(mCache.getEvictions() > 0);
+      assertEquals(0, mCache.getFlushErrors());
+   }
+
+   /**
+    * The same learner and course always map to the same lock.
+    */
+   @Test
+   public void testLockIsStablePerLearner()
+   {
+      LearnerLocks locks = LearnerLocks.getInstance();
+
+      for ( int i = 0; i < 1000; i++ )
+      {
+         assertSame(locks.getLock("learner" + i, COURSE), 
+                    locks.getLock(new String("learner" + i), COURSE));
+      }
+   }
+
+   /**
+    * Creates learners, each with a tree whose counter is zero.
+    * 
+    * @param iCount The number of learners.
+    * 
+    * @return The IDs of the learners.
+    * 
+    * @throws Exception Thrown if a tree can not be written.
+    */
+   private String[] createLearners(int iCount) throws Exception
+   {
+      String[] learners = new String[iCount];
+
+      for ( int i = 0; i < iCount; i++ )
+      {
+         learners[i] = "learner" + i;
+
+         new File(mRoot, learners[i] + File.separator + COURSE).mkdirs();
+
+         SeqActivity root = new SeqActivity();
+         root.setID(ROOT);
+         root.setTitle("0");
+
+         mCache.putTree(learners[i], COURSE, 
+                        new SeqActivityTree(COURSE, learners[i], null, root));
+      }
+
+      mCache.flushAll();
+
+      return learners;
+   }
+
+   /**
+    * Runs the updating threads to completion.
+    * 
+    * @param iLearners The learners whose trees are updated.
+    * 
+    * @return The number of updates made to each learner's tree.
+    * 
+    * @throws Exception Thrown if an update failed.
+    */
+   private int[] run(final String[] iLearners) throws Exception
+   {
+      final AtomicInteger[] counts = new AtomicInteger[iLearners.length];
+      final List failures = new ArrayList();
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] threads = new Thread[THREADS];
+
+      for ( int i = 0; i < counts.length; i++ )
+      {
+         counts[i] = new AtomicInteger();
+      }
+
+      for ( int i = 0; i < THREADS; i++ )
+      {
+         final Random random = new Random(i);
+
+         threads[i] = new Thread()
+         {
+            public void run()
+            {
+               try
+               {
+                  start.await();
+
+                  for ( int j = 0; j < UPDATES; j++ )
+                  {
+                     int learner = random.nextInt(iLearners.length);
+
+                     increment(iLearners[learner]);
+                     counts[learner].incrementAndGet();
+                  }
+               }
+               catch ( Throwable t )
+               {
+                  synchronized ( failures )
+                  {
+                     failures.add(t);
+                  }
+               }
+            }
+         };
+
+         threads[i].start();
+      }
+
+      start.countDown();
+
+      for ( int i = 0; i < THREADS; i++ )
+      {
+         threads[i].join();
+      }
+
+      if ( !failures.isEmpty() )
+      {
+         throw new AssertionError(failures.get(0));
+      }
+
+      int[] expected = new int[counts.length];
+
+      for ( int i = 0; i < counts.length; i++ )
+      {
+         expected[i] = counts[i].get();
+      }
+
+      return expected;
+   }
+
+   /**
+    * Increments a learner's counter under the learner's lock.
+    * 
+    * @param iLearner The learner.
+    * 
+    * @throws Exception Thrown if the tree can not be read.
+    */
+   private void increment(String iLearner) throws Exception
+   {
+      Lock lock = LearnerLocks.getInstance().getLock(iLearner, COURSE);
+
+      lock.lock();
+
+      try
+      {
+         SeqActivityTree tree = mCache.getTree(iLearner, COURSE);
+         SeqActivity root = tree.getActivity(ROOT);
+
+         root.setTitle(String.valueOf(Integer.parseInt(root.getTitle()) + 1));
+
+         mCache.putTree(iLearner, COURSE, tree);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Checks each learner's counter, both in the cache and as written to the
+    * file store.
+    * 
+    * @param iLearners The learners.
+    * 
+    * @param iExpected The number of updates made to each learner's tree.
+    * 
+    * @throws Exception Thrown if a tree can not be read.
+    */
+   private void assertCounts(String[] iLearners, int[] iExpected) 
+      throws Exception
+   {
+      mCache.flushAll();
+
+      ActivityTreeCache reread = new ActivityTreeCache(MAX_ENTRIES, 
+                                                       FLUSH_INTERVAL,
+                                                       mRoot.getPath());
+
+      try
+      {
+         for ( int i = 0; i < iLearners.length; i++ )
+         {
+            String expected = String.valueOf(iExpected[i]);
+
+            assertEquals(iLearners[i], expected, 
+                         getCount(mCache, iLearners[i]));
+            assertEquals(iLearners[i], expected, 
+                         getCount(reread, iLearners[i]));
+         }
+      }
+      finally
+      {
+         reread.shutdown();
+      }
+   }
+
+   /**
+    * Reads a learner's counter from a cache.
+    * 
+    * @param iCache   The cache.
+    * 
+    * @param iLearner The learner.
+    * 
+    * @return The counter.
+    * 
+    * @throws Exception Thrown if the tree can not be read.
+    */
+   private static String getCount(ActivityTreeCache iCache, String iLearner)
+      throws Exception
+   {
+      return iCache.getTree(iLearner, COURSE).getActivity(ROOT).getTitle();
+   }
+
+   /**
+    * Deletes a file or a directory and its contents.
+    * 
+    * @param iFile The file or directory.
+    */
+   private static void delete(File iFile)
+   {
+      File[] children = iFile.listFiles();
+
+      for ( int i = 0; children != null && i < children.length; i++ )
+      {
+         delete(children[i]);
+      }
+
+      iFile.delete();
+   }
+
+} // ActivityTreeCacheStressTest
@@ -0,0 +1,438 @@
+/******************************************************************************
+
+ADL SCORM 2004 4th Edition Sample Run-Time Environment
+
+The ADL SCORM 2004 4th Ed. Sample Run-Time Environment is licensed under
+Creative Commons Attribution-Noncommercial-Share Alike 3.0 United States.
+
+The Advanced Distributed Learning Initiative allows you to:
+  *  Share - to copy, distribute and transmit the work.
+  *  Remix - to adapt the work.
+
+Under the following conditions:
+  *  Attribution. You must attribute the work in the manner specified by the author or
+     licensor (but not in any way that suggests that they endorse you or your use
+     of the work).
+  *  Noncommercial. You may not use this work for commercial purposes.
+  *  Share Alike. If you alter, transform, or build upon this work, you may distribute
+     the resulting work only under the same or similar license to this one.
+
+For any reuse or distribution, you must make clear to others the license terms of this work.
+
+Any of the above conditions can be waived if you get permission from the ADL Initiative.
+Nothing in this license impairs or restricts the author's moral rights.
+
+******************************************************************************/
+
+package org.adl.samplerte.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <strong>Filename:</strong> ConnectionPoolTest.java<br><br>
+ *
+ * <strong>Description:</strong><br>
+ * Checks the <code>ConnectionPool</code> against an in-memory H2 database:
+ * requests that wait longer than the maximum wait fail, connections held
+ * longer than the leak threshold are reported, prepared statements are
+ * taken from the statement cache, and work left uncommitted on a handle
+ * whose auto-commit mode was changed is rolled back when the handle is
+ * returned.<br><br>
+ *
+ * @author ADL Technical Team
+ */
+public class ConnectionPoolTest
+{
+   /**
+    * The statement used to exercise the statement cache.
+    */
+   private static final String SELECT =
+      "SELECT COUNT(*) FROM Learner WHERE Name = ?";
+
+   /**
+    * The number of databases created, used to give each test its own.
+    */
+   private static int sDatabases = 0;
+
+   /**
+    * The pool under test.
+    */
+   private ConnectionPool mPool = null;
+
+   /**
+    * Creates a database holding an empty table, and a pool of connections
+    * to it.
+    *
+    * @throws Exception Thrown if the database can not be created.
+    */
+   @Before
+   public void setUp() throws Exception
+   {
+      String url = "jdbc:h2:mem:pool" + ( ++sDatabases ) + ";DB_CLOSE_DELAY=-1";
+
+      mPool = new ConnectionPool("test", "org.h2.Driver", url, null);
+
+      Connection conn = mPool.getConnection();
+      Statement stmt = conn.createStatement();
+      stmt.execute("CREATE TABLE Learner (Name VARCHAR(32))");
+      stmt.close();
+      conn.close();
+   }
+
+   /**
+    * Drops the database and closes the pool's connections.
+    *
+    * @throws Exception Thrown if the database can not be dropped.
+    */
+   @After
+   public void tearDown() throws Exception
+   {
+      mPool.configure(ConnectionPool.DEFAULT_MAX_SIZE, 1000, 0, 0);
+
+      Connection conn = mPool.getConnection();
+      Statement stmt = conn.createStatement();
+      stmt.execute("SHUTDOWN");
+      stmt.close();
+      conn.close();
+
+      mPool.closeIdle();
+   }
+
+   /**
+    * A request fails once it has waited the maximum wait, and a request
+    * that is waiting is given a connection as soon as one is returned.
+    *
+    * @throws Exception Thrown if the test fails.
+    */
+   @Test
+   public void testMaxWait() throws Exception
+   {
+      mPool.configure(1, 200, 0, 0);
+
+      final Connection held = mPool.getConnection();
+      long start = System.currentTimeMillis();
+
+      try
+      {
+         mPool.getConnection();
+         fail("A connection was provided beyond the maximum size");
+      }
+      catch ( SQLException se )
+      {
+         // Expected; no connection was returned within the maximum wait
+      }
+
+      assertTrue(System.currentTimeMillis() - start >= 200);
+      assertEquals(1, getStatistic("timeouts"));
+
+      mPool.configure(1, 10000, 0, 0);
+
+      Thread returner = new Thread()
+      {
+         public void run()
+         {
+            try
+            {
+               Thread.sleep(100);
+               held.close();
+            }
+            catch ( Exception e )
+            {
+               // The waiting request times out and fails the test
+            }
+         }
+      };
+
+      start = System.currentTimeMillis();
+      returner.start();
+
+      Connection conn = mPool.getConnection();
+      long waited = System.currentTimeMillis() - start;
+      returner.join();
+
+      assertTrue("Waited " + waited + " ms", waited < 5000);
+      assertEquals(1, getStatistic("timeouts"));
+      assertEquals(2, getStatistic("waits"));
+      assertEquals(1, getStatistic("created"));
+
+      conn.close();
+   }
+
+   /**
+    * A connection held longer than the leak threshold is reported once,
+    * with the stack that obtained it.
+    *
+    * @throws Exception Thrown if the test fails.
+    */
+   @Test
+   public void testLeakDetection() throws Exception
+   {
+      mPool.configure(2, 1000, 50, 0);
+
+      final List warnings = new ArrayList();
+      Handler handler = new Handler()
+      {
+         public void publish(LogRecord iRecord)
+         {
+            if ( iRecord.getLevel() == Level.WARNING )
+            {
+               synchronized ( warnings )
+               {
+                  warnings.add(iRecord);
+               }
+            }
+         }
+
+         public void flush()
+         {
+         }
+
+         public void close()
+         {
+         }
+      };
+
+      // The expected warning is not written to the console
+      Logger logger = Logger.getLogger("org.adl.util.debug.samplerte");
+      boolean useParent = logger.getUseParentHandlers();
+      logger.setUseParentHandlers(false);
+      logger.addHandler(handler);
+
+      try
+      {
+         Connection quick = mPool.getConnection();
+         quick.close();
+
+         Connection leaked = mPool.getConnection();
+         Thread.sleep(150);
+
+         assertEquals(1, getStatistic("leaks"));
+         assertEquals(1, getStatistic("leaks"));
+
+         synchronized ( warnings )
+         {
+            assertEquals(1, warnings.size());
+
+            LogRecord record = (LogRecord)warnings.get(0);
+            assertNotNull(record.getThrown());
+            assertEquals("Connection obtained here",
+                         record.getThrown().getMessage());
+         }
+
+         leaked.close();
+      }
+      finally
+      {
+         logger.removeHandler(handler);
+         logger.setUseParentHandlers(useParent);
+      }
+
+      assertEquals(1, getStatistic("leaks"));
+      assertEquals(0, mPool.getActiveCount());
+   }
+
+   /**
+    * A statement prepared again, on the same handle or on a later handle
+    * of the same connection, is taken from the cache with its parameters
+    * cleared; a statement prepared while the cached one is in use is not.
+    *
+    * @throws Exception Thrown if the test fails.
+    */
+   @Test
+   public void testStatementCache() throws Exception
+   {
+      mPool.configure(1, 1000, 0, 4);
+
+      Connection conn = mPool.getConnection();
+      Statement insert = conn.createStatement();
+      insert.executeUpdate("INSERT INTO Learner VALUES ('joe')");
+      insert.close();
+
+      assertEquals(1, count(conn, "joe"));
+      assertEquals(1, getStatistic("statementMisses"));
+      assertEquals(0, getStatistic("statementHits"));
+
+      assertEquals(0, count(conn, "bob"));
+      assertEquals(1, getStatistic("statementHits"));
+
+      PreparedStatement open = conn.prepareStatement(SELECT);
+      assertEquals(2, getStatistic("statementHits"));
+
+      // The cached statement is in use, so this one is prepared
+      assertEquals(1, count(conn, "joe"));
+      assertEquals(2, getStatistic("statementMisses"));
+
+      // The parameters set on the cached statement are cleared when it is
+      // closed
+      open.setString(1, "joe");
+      open.close();
+      conn.close();
+
+      conn = mPool.getConnection();
+      PreparedStatement again = conn.prepareStatement(SELECT);
+      assertEquals(3, getStatistic("statementHits"));
+
+      try
+      {
+         again.executeQuery();
+         fail("The parameters of a cached statement were kept");
+      }
+      catch ( SQLException se )
+      {
+         // Expected; the parameter is not set
+      }
+
+      again.close();
+
+      try
+      {
+         again.executeQuery();
+         fail("A closed statement was used");
+      }
+      catch ( SQLException se )
+      {
+         // Expected
+      }
+
+      conn.close();
+
+      assertEquals(1, getStatistic("created"));
+   }
+
+   /**
+    * Work left uncommitted on a handle whose auto-commit mode was changed
+    * is rolled back when the handle is returned, and the connection is
+    * returned to auto-commit mode; committed work is kept.
+    *
+    * @throws Exception Thrown if the test fails.
+    */
+   @Test
+   public void testRollbackOnReturn() throws Exception
+   {
+      mPool.configure(1, 1000, 0, 4);
+
+      Connection conn = mPool.getConnection();
+      conn.setAutoCommit(false);
+
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate("INSERT INTO Learner VALUES ('joe')");
+      stmt.close();
+      conn.commit();
+
+      stmt = conn.createStatement();
+      stmt.executeUpdate("INSERT INTO Learner VALUES ('bob')");
+
+      // The statement is left open; returning the handle closes it
+      conn.close();
+
+      assertTrue(stmt.isClosed());
+      assertTrue(conn.isClosed());
+
+      try
+      {
+         conn.createStatement();
+         fail("A returned connection was used");
+      }
+      catch ( SQLException se )
+      {
+         // Expected
+      }
+
+      conn = mPool.getConnection();
+
+      assertTrue(conn.getAutoCommit());
+      assertEquals(1, count(conn, "joe"));
+      assertEquals(0, count(conn, "bob"));
+
+      // Work done in auto-commit mode is kept
+      stmt = conn.createStatement();
+      stmt.executeUpdate("INSERT INTO Learner VALUES ('bob')");
+      stmt.close();
+      conn.close();
+
+      conn = mPool.getConnection();
+      assertEquals(1, count(conn, "bob"));
+      assertFalse(conn.isClosed());
+      conn.close();
+
+      assertEquals(1, getStatistic("created"));
+   }
+
+   /**
+    * Counts the learners with a name, using the cached statement.
+    *
+    * @param iConn The connection to use.
+    *
+    * @param iName The name.
+    *
+    * @return The number of learners with the name.
+    *
+    * @throws SQLException Thrown if the query fails.
+    */
+   private int count(Connection iConn, String iName) throws SQLException
+   {
+      PreparedStatement stmt = iConn.prepareStatement(SELECT);
+
+      try
+      {
+         stmt.setString(1, iName);
+
+         ResultSet rs = stmt.executeQuery();
+         rs.next();
+         int count = rs.getInt(1);
+         rs.close();
+
+         return count;
+      }
+      finally
+      {
+         stmt.close();
+      }
+   }
+
+   /**
+    * Reads a counter from the pool statistics.
+    *
+    * @param iName The name of the counter.
+    *
+    * @return The value of the counter.
+    */
+   private long getStatistic(String iName)
+   {
+      StringTokenizer tokens = new StringTokenizer(mPool.getStatistics());
+
+      while ( tokens.hasMoreTokens() )
+      {
+         String token = tokens.nextToken();
+
+         if ( token.startsWith(iName + "=") )
+         {
+            return Long.parseLong(token.substring(iName.length() + 1));
+         }
+      }
+
+      throw new IllegalArgumentException("No statistic " + iName);
+   }
+
+} // ConnectionPoolTest